@@ -442,6 +442,17 @@ public class BootstrapDBMetaDataDAO
 
 
 
+  /**
+   * @param srcid     the source id
+   * @return the max row id in the snapshot (tab) table of the source; 0 if the table is empty
+   */
+  public long getMaxSnapshotRowId(int srcid)
+      throws SQLException
+  {
+    String sql = "select max(id) from " + _bootstrapConn.getSrcTableName(srcid);
+    return _bootstrapConn.executeQueryAndGetLong(sql, 0);
+  }
+
   public List<SourceStatusInfo> getSourceIdAndStatusFromName(List<String> sourceList, boolean activeCheck)
       throws SQLException,BootstrapDatabaseTooOldException
   {
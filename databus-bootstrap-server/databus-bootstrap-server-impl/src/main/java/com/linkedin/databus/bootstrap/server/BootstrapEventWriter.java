@@ -19,6 +19,8 @@ package com.linkedin.databus.bootstrap.server;
  *
  */
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.sql.ResultSet;
@@ -33,15 +35,29 @@ import com.linkedin.databus.core.Checkpoint;
 import com.linkedin.databus.core.DbusEventFactory;
 import com.linkedin.databus.core.DbusEventV1Factory;
 import com.linkedin.databus.core.DbusEventInternalReadable;
+import com.linkedin.databus.core.DbusEventPayloadDictionaries;
+import com.linkedin.databus.core.DbusEventV2;
 import com.linkedin.databus.core.Encoding;
 import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
 import com.linkedin.databus2.core.filter.DbusFilter;
 
+/**
+ * Writes the events of a bootstrap response to the client channel.
+ *
+ * <p>If a write batch size is specified and the encoding is binary, the events are copied to a
+ * direct staging buffer which is written to the channel when full, before a checkpoint event and on
+ * {@link #flush()}. The staging buffer is reused by all writers created by the same thread, so a
+ * thread must not use more than one such writer at a time. The staged events are counted as sent
+ * only after they have been written to the channel. If writing the staged events fails, they are
+ * dropped, no further checkpoints are sent and {@link #hasWriteError()} returns true.
+ */
 public class BootstrapEventWriter implements BootstrapEventCallback
 {
   public static final String        MODULE              =
                                                             BootstrapEventWriter.class.getName();
   public static final Logger        LOG                 = Logger.getLogger(MODULE);
+  private static final ThreadLocal<ByteBuffer> STAGING_BUFFER = new ThreadLocal<ByteBuffer>();
+  private static final int          INITIAL_ROW_BUFFER_SIZE = 4096;
   public final DbusEventFactory     _eventFactory;
   public boolean                    _debug;
 
@@ -49,16 +65,58 @@ public class BootstrapEventWriter implements BootstrapEventCallback
   private long                      _clientFreeBufferSize;
   private long                      _bytesSent;
   private long                      _numRowsWritten;
+  // the events in the staging buffer which have not been written to the channel yet
+  private long                      _bytesStaged;
+  private long                      _numRowsStaged;
+  private boolean                   _writeError;
   // Size of event that could not be sent because of client buffer threshold
   private int                       _sizeOfPendingEvent = -1;
   private DbusEventInternalReadable _event;
   private DbusFilter                _filter;
   private Encoding                  _encoding;
+  // the serialized current event; it always starts at offset 0
+  private byte[]                    _eventBytes;
+  // reusable buffer for the events read from the DB
+  private byte[]                    _rowBytes;
+  private ByteBuffer                _rowBuffer;
+  private final ByteBuffer          _stagingBuffer;
+  private final boolean             _verifyBodyCrc;
+  private final DbusEventPayloadDictionaries _payloadDictionaries;
 
   public BootstrapEventWriter(WritableByteChannel writeChannel,
                               long clientFreeBufferSize,
                               DbusFilter filter,
                               Encoding enc)
+  {
+    this(writeChannel, clientFreeBufferSize, filter, enc, 0, true);
+  }
+
+  public BootstrapEventWriter(WritableByteChannel writeChannel,
+                              long clientFreeBufferSize,
+                              DbusFilter filter,
+                              Encoding enc,
+                              int writeBatchSize,
+                              boolean verifyBodyCrc)
+  {
+    this(writeChannel, clientFreeBufferSize, filter, enc, writeBatchSize, verifyBodyCrc,
+         new DbusEventPayloadDictionaries());
+  }
+
+  /**
+   * @param writeBatchSize    the size of the staging buffer for batching event writes; 0 to write each
+   *                          event to the channel separately
+   * @param verifyBodyCrc     if false, only the header CRCs of the events read from the DB are verified;
+   *                          their body CRCs were verified when they were written to the DB
+   * @param payloadDictionaries the dictionaries to decompress compressed payloads with; clients
+   *                          always get the original payloads
+   */
+  public BootstrapEventWriter(WritableByteChannel writeChannel,
+                              long clientFreeBufferSize,
+                              DbusFilter filter,
+                              Encoding enc,
+                              int writeBatchSize,
+                              boolean verifyBodyCrc,
+                              DbusEventPayloadDictionaries payloadDictionaries)
   {
     _eventFactory = new DbusEventV1Factory();
     _event = null;
@@ -69,6 +127,22 @@ public class BootstrapEventWriter implements BootstrapEventCallback
     _numRowsWritten = 0;
     _filter = filter;
     _debug = LOG.isDebugEnabled();
+    _stagingBuffer = (writeBatchSize > 0 && Encoding.BINARY == enc) ? getStagingBuffer(writeBatchSize)
+                                                                    : null;
+    _verifyBodyCrc = verifyBodyCrc;
+    _payloadDictionaries = payloadDictionaries;
+  }
+
+  private static ByteBuffer getStagingBuffer(int size)
+  {
+    ByteBuffer buffer = STAGING_BUFFER.get();
+    if (null == buffer || buffer.capacity() != size)
+    {
+      buffer = ByteBuffer.allocateDirect(size);
+      STAGING_BUFFER.set(buffer);
+    }
+    buffer.clear();
+    return buffer;
   }
 
   @Override
@@ -76,37 +150,22 @@ public class BootstrapEventWriter implements BootstrapEventCallback
                                              DbusEventsStatisticsCollector statsCollector) throws BootstrapProcessingException
   {
     long rid = -1;
-    boolean exceededBufferLimit = false;
-    boolean dropped = true;
     try
     {
-      if (null == _event)
-      {
-        ByteBuffer tmpBuffer = ByteBuffer.wrap(rs.getBytes(4));
-        if (_debug)
-        {
-          LOG.debug("BUFFER SIZE:" + tmpBuffer.limit());
-        }
-        _event =
-            _eventFactory.createReadOnlyDbusEventFromBuffer(tmpBuffer,
-                                                            tmpBuffer.position());
-      }
-      else
+      int eventLen = readRowEvent(rs);
+      if (_debug)
       {
-        ByteBuffer tmpBuffer = ByteBuffer.wrap(rs.getBytes(4));
-        if (_debug)
-        {
-          LOG.debug("Resized BUFFER SIZE:" + tmpBuffer.limit());
-        }
-        _event = _event.reset(tmpBuffer, 0);
+        LOG.debug("BUFFER SIZE:" + eventLen);
       }
+      _rowBuffer.limit(eventLen).position(0);
+      setCurrentEvent(_rowBytes, _rowBuffer);
 
       if (_debug)
       {
         LOG.debug("Event fetched: " + _event.size() + " for source:" + _event.srcId());
       }
 
-      if (!_event.isValid())
+      if (!_event.isValid(true, _verifyBodyCrc))
       {
         LOG.error("got an error event :" + _event.toString());
         return BootstrapEventProcessResult.getFailedEventProcessingResult(_numRowsWritten);
@@ -114,90 +173,237 @@ public class BootstrapEventWriter implements BootstrapEventCallback
 
       rid = rs.getLong(1);
 
-      if (_debug)
+      return sendEvent(statsCollector);
+    }
+    catch (SQLException e)
+    {
+      LOG.error("SQLException encountered while sending to client row " + rid);
+      throw new BootstrapProcessingException(e);
+    }
+    catch (IOException e)
+    {
+      LOG.error("IOException encountered while reading row " + rid);
+      throw new BootstrapProcessingException(e);
+    }
+  }
+
+  /**
+   * Reads the serialized event of the current row into the reusable row buffer without allocating a
+   * new array per row.
+   * @return the length of the event
+   */
+  private int readRowEvent(ResultSet rs) throws SQLException, IOException
+  {
+    if (null == _rowBytes)
+    {
+      _rowBytes = new byte[INITIAL_ROW_BUFFER_SIZE];
+      _rowBuffer = ByteBuffer.wrap(_rowBytes);
+    }
+
+    InputStream in = rs.getBinaryStream(4);
+    int len = 0;
+    try
+    {
+      int n;
+      while ((n = in.read(_rowBytes, len, _rowBytes.length - len)) >= 0)
       {
-        LOG.debug("sending: " + _event.getDbusEventKey() + " " + _event.sequence());
-        LOG.debug("event size:" + _event.size());
+        len += n;
+        if (len == _rowBytes.length)
+        {
+          byte[] newRowBytes = new byte[2 * _rowBytes.length];
+          System.arraycopy(_rowBytes, 0, newRowBytes, 0, len);
+          _rowBytes = newRowBytes;
+          _rowBuffer = ByteBuffer.wrap(_rowBytes);
+        }
       }
+    }
+    finally
+    {
+      in.close();
+    }
+
+    return len;
+  }
+
+  private void setCurrentEvent(byte[] eventBytes, ByteBuffer eventBuffer)
+  {
+    _eventBytes = eventBytes;
+    _event = (null == _event) ? _eventFactory.createReadOnlyDbusEventFromBuffer(eventBuffer, 0)
+                              : _event.reset(eventBuffer, 0);
+    if (_event.isPayloadCompressed())
+    {
+      // the bootstrap protocol does not negotiate compressed payloads; the shared event bytes
+      // are not modified
+      ByteBuffer uncompressed =
+          ((DbusEventV2)_event).createUncompressedCopy(_payloadDictionaries).getRawBytes();
+      _eventBytes = new byte[uncompressed.remaining()];
+      uncompressed.get(_eventBytes);
+      _event = _eventFactory.createReadOnlyDbusEventFromBuffer(
+          ByteBuffer.wrap(_eventBytes).order(eventBuffer.order()), 0);
+    }
+  }
+
+  /**
+   * Sends an event which has already been validated, e.g. a row of a cached snapshot chunk. The
+   * event bytes are not modified and can be shared by concurrent writers.
+   */
+  public BootstrapEventProcessResult onValidatedEvent(byte[] eventBytes,
+                                                      DbusEventsStatisticsCollector statsCollector)
+  {
+    setCurrentEvent(eventBytes, ByteBuffer.wrap(eventBytes));
+    return sendEvent(statsCollector);
+  }
+
+  /** Applies the filter to the current event and writes it if the client has enough space */
+  private BootstrapEventProcessResult sendEvent(DbusEventsStatisticsCollector statsCollector)
+  {
+    boolean exceededBufferLimit = false;
+    boolean dropped = true;
+
+    if (_debug)
+    {
+      LOG.debug("sending: " + _event.getDbusEventKey() + " " + _event.sequence());
+      LOG.debug("event size:" + _event.size());
+    }
 
-      if ((null == _filter) || (_filter.allow(_event)))
+    if ((null == _filter) || (_filter.allow(_event)))
+    {
+      if (_debug)
       {
-        if (_debug)
+        if (null != _filter)
         {
-          if (null != _filter)
-          {
-            LOG.debug("Event :" + _event.getDbusEventKey() + " passed filter check !!");
-          }
+          LOG.debug("Event :" + _event.getDbusEventKey() + " passed filter check !!");
         }
+      }
 
-        // client has enough space for this event
-        if (_bytesSent + _event.size() < _clientFreeBufferSize)
+      // client has enough space for this event
+      if (_bytesSent + _bytesStaged + _event.size() < _clientFreeBufferSize)
+      {
+        if (!writeEvent())
         {
-          int sentBytes = _event.writeTo(_writeChannel, _encoding);
-          // On exception, sentBytes are set to 0
-          if (0 >= sentBytes)
-          {
-            // Did not write successfully because of error. Done and dont write checkpoint
-            // to avoid successive write failures !!
-            return BootstrapEventProcessResult.getFailedEventProcessingResult(_numRowsWritten);
-          }
-
-          _bytesSent += sentBytes;
-          _numRowsWritten++; // tracks processed Rows only
-          dropped = false;
+          // Did not write successfully because of error. Done and dont write checkpoint
+          // to avoid successive write failures !!
+          return BootstrapEventProcessResult.getFailedEventProcessingResult(_numRowsWritten);
+        }
+        dropped = false;
 
+        if (_debug)
+        {
+          LOG.debug("SENT " + _bytesSent + " STAGED " + _bytesStaged);
+        }
+        if (null != statsCollector)
+        {
+          statsCollector.registerDataEvent(_event);
           if (_debug)
           {
-            LOG.debug("SENT " + _bytesSent);
-          }
-          if (null != statsCollector)
-          {
-            statsCollector.registerDataEvent(_event);
-            if (_debug)
-            {
-              LOG.debug("Stats NumEvents :"
-                  + statsCollector.getTotalStats().getNumDataEvents());
-            }
+            LOG.debug("Stats NumEvents :"
+                + statsCollector.getTotalStats().getNumDataEvents());
           }
         }
-        else
-        {
-          exceededBufferLimit = true;
-          _sizeOfPendingEvent = _event.size();
-          LOG.info("Terminating batch with max. size of "
-              + _clientFreeBufferSize
-              + "; Bytes sent in the current batch is "
-              + _bytesSent
-              + "; Rows processed in the batch is "
-              + _numRowsWritten
-              + ((_numRowsWritten <= 0) ? ", Pending Event Size is : "
-                  + _sizeOfPendingEvent : ""));
-        }
       }
       else
       {
-        if (null != statsCollector)
+        exceededBufferLimit = true;
+        _sizeOfPendingEvent = _event.size();
+        LOG.info("Terminating batch with max. size of "
+            + _clientFreeBufferSize
+            + "; Bytes sent in the current batch is "
+            + (_bytesSent + _bytesStaged)
+            + "; Rows processed in the batch is "
+            + (_numRowsWritten + _numRowsStaged)
+            + ((_numRowsWritten + _numRowsStaged <= 0) ? ", Pending Event Size is : "
+                + _sizeOfPendingEvent : ""));
+      }
+    }
+    else
+    {
+      if (null != statsCollector)
+      {
+        statsCollector.registerDataEventFiltered(_event);
+        if (_debug)
         {
-          statsCollector.registerDataEventFiltered(_event);
-          if (_debug)
-          {
-            LOG.debug("Stats NumFilteredEvents :"
-                + statsCollector.getTotalStats().getNumDataEventsFiltered());
-          }
-          if (_debug)
-          {
-            LOG.debug("Event :" + _event.getDbusEventKey() + " failed filter check !!");
-          }
+          LOG.debug("Stats NumFilteredEvents :"
+              + statsCollector.getTotalStats().getNumDataEventsFiltered());
+        }
+        if (_debug)
+        {
+          LOG.debug("Event :" + _event.getDbusEventKey() + " failed filter check !!");
         }
       }
     }
-    catch (SQLException e)
+
+    // the staged rows are processed: the checkpoint which follows them flushes them
+    return new BootstrapEventProcessResult(_numRowsWritten + _numRowsStaged, exceededBufferLimit,
+                                           dropped);
+  }
+
+  /**
+   * Writes the current event to the staging buffer or directly to the channel
+   * @return false if the write failed
+   */
+  private boolean writeEvent()
+  {
+    int size = _event.size();
+    if (null != _stagingBuffer && size > _stagingBuffer.remaining() && !flush())
     {
-      LOG.error("SQLException encountered while sending to client row " + rid);
-      throw new BootstrapProcessingException(e);
+      return false;
+    }
+
+    if (null == _stagingBuffer || size > _stagingBuffer.capacity())
+    {
+      int sentBytes = _event.writeTo(_writeChannel, _encoding);
+      // On exception, sentBytes are set to 0
+      if (0 >= sentBytes)
+      {
+        return false;
+      }
+      _bytesSent += sentBytes;
+      _numRowsWritten++; // tracks processed Rows only
+    }
+    else
+    {
+      _stagingBuffer.put(_eventBytes, 0, size);
+      _bytesStaged += size;
+      _numRowsStaged++;
     }
 
-    return new BootstrapEventProcessResult(_numRowsWritten, exceededBufferLimit, dropped);
+    return true;
+  }
+
+  /**
+   * Writes any staged events to the channel.
+   * @return false if the write failed
+   */
+  public boolean flush()
+  {
+    if (null == _stagingBuffer || 0 == _stagingBuffer.position())
+    {
+      return true;
+    }
+
+    _stagingBuffer.flip();
+    try
+    {
+      while (_stagingBuffer.hasRemaining())
+      {
+        _writeChannel.write(_stagingBuffer);
+      }
+      _bytesSent += _bytesStaged;
+      _numRowsWritten += _numRowsStaged;
+      return true;
+    }
+    catch (IOException e)
+    {
+      LOG.error("binary write error: " + e.getMessage(), e);
+      _writeError = true;
+      return false;
+    }
+    finally
+    {
+      _stagingBuffer.clear();
+      _bytesStaged = 0;
+      _numRowsStaged = 0;
+    }
   }
 
   @Override
@@ -210,6 +416,13 @@ public class BootstrapEventWriter implements BootstrapEventCallback
     // store values in the internal structure
     currentCheckpoint.bootstrapCheckPoint();
 
+    // the checkpoint must follow the events it covers; never send it if they were lost
+    if (_writeError || !flush())
+    {
+      LOG.error("skipping checkpoint after a failed write of the staged events: " + currentCheckpoint);
+      return;
+    }
+
     // write ckpt back to client
     DbusEventInternalReadable checkpointEvent =
         _eventFactory.createCheckpointEvent(currentCheckpoint);
@@ -217,11 +430,18 @@ public class BootstrapEventWriter implements BootstrapEventCallback
     // LOG.info("Sending snapshot checkpoint to client: " + currentCheckpoint.toString());
   }
 
+  /** The number of rows written to the channel; the staged rows are not included */
   public long getNumRowsWritten()
   {
     return _numRowsWritten;
   }
 
+  /** true if writing the staged events to the channel has failed */
+  public boolean hasWriteError()
+  {
+    return _writeError;
+  }
+
   public int getSizeOfPendingEvent()
   {
     return _sizeOfPendingEvent;
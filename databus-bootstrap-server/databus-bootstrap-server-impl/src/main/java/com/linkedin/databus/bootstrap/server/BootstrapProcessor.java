@@ -22,11 +22,14 @@ package com.linkedin.databus.bootstrap.server;
 */
 
 
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.log4j.Logger;
 
@@ -38,6 +41,9 @@ import com.linkedin.databus.bootstrap.common.BootstrapDBMetaDataDAO;
 import com.linkedin.databus.bootstrap.common.BootstrapDBTimedQuery;
 import com.linkedin.databus.core.Checkpoint;
 import com.linkedin.databus.core.DbusClientMode;
+import com.linkedin.databus.core.DbusEventFactory;
+import com.linkedin.databus.core.DbusEventInternalReadable;
+import com.linkedin.databus.core.DbusEventV1Factory;
 import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
 import com.linkedin.databus2.core.DatabusException;
 import com.linkedin.databus2.core.container.request.BootstrapDatabaseTooOldException;
@@ -59,12 +65,15 @@ public class BootstrapProcessor
   public final static String            PHASE_COMPLETED_HEADER_NAME = "PhaseCompleted";
   public final static String            PHASE_COMPLETED_HEADER_TRUE = "TRUE";
   public final static String            EMPTY_STRING = "";
+  /** The max number of rid ranges a snapshot is split into for a parallel snapshot */
+  public final static int               MAX_SNAPSHOT_RANGES = 16;
   private final long                    _maxSnapshotRowsPerFetch;
   private final long                    _maxCatchupRowsPerFetch;
   private final int                     _queryTimeInSec;
   private BootstrapDBMetaDataDAO                _dbDao;
   private final DbusEventsStatisticsCollector _curStatsCollector;
   private DbusKeyFilter                 keyFilter;
+  private SnapshotChunkCache            _snapshotChunkCache;
   //Bootstrap server config
   BootstrapServerStaticConfig config;
 
@@ -118,6 +127,20 @@ public class BootstrapProcessor
     this.keyFilter = keyFilter;
   }
 
+  public SnapshotChunkCache getSnapshotChunkCache()
+  {
+    return _snapshotChunkCache;
+  }
+
+  /**
+   * Sets the cache of snapshot chunks shared with the other bootstrap requests. If null, every
+   * snapshot chunk is read from the DB.
+   */
+  public void setSnapshotChunkCache(SnapshotChunkCache snapshotChunkCache)
+  {
+    _snapshotChunkCache = snapshotChunkCache;
+  }
+
   // Get specified number of catchup rows
   public boolean streamCatchupRows(Checkpoint currState, BootstrapEventCallback callBack) throws SQLException,
   BootstrapProcessingException,
@@ -247,7 +270,16 @@ public class BootstrapProcessor
        return getSnapshotSQLString(snapShotTable, null);
   }
 
-    public String getSnapshotSQLString(String snapShotTable, String source)
+  public String getSnapshotSQLString(String snapShotTable, String source)
+  {
+    return getSnapshotSQLString(snapShotTable, source, false);
+  }
+
+  /**
+   * @param rangeBounded      if true, the query has an additional parameter for the last rid of a
+   *                          snapshot rid range after the start rid
+   */
+  public String getSnapshotSQLString(String snapShotTable, String source, boolean rangeBounded)
   {
     StringBuilder sql = new StringBuilder();
     String filterSql = getFilterSQL();
@@ -264,6 +296,8 @@ public class BootstrapProcessor
     sql.append(snapShotTable);
     sql.append(" where ");
     sql.append(" id > ? ");
+    if (rangeBounded)
+      sql.append(" and id <= ? ");
     sql.append(" and scn < ? ");
     sql.append(" and scn >= ? ");
     if (predicatePushDown)
@@ -356,24 +390,56 @@ public class BootstrapProcessor
       {
         LOG.debug("Bypassing minScn check!");
       }
-      String snapshotSQL = getSnapshotSQLString(_dbDao.getBootstrapConn().getSrcTableName(srcIdStatusPair.getSrcId()), currState.getSnapshotSource());
-      stmt =
-          conn.prepareStatement(snapshotSQL);
-      long offset = currState.getSnapshotOffset();
-      int i = 1;
-      stmt.setLong(i++, offset);
-      stmt.setLong(i++, currState.getBootstrapStartScn());
-      stmt.setLong(i++, currState.getBootstrapSinceScn());
-      stmt.setLong(i++, _maxSnapshotRowsPerFetch);
-      LOG.info("SnapshotSQL string: "
-               + snapshotSQL
-               + ", " + offset
-               + ", " + currState.getBootstrapStartScn()
-               + ", " + currState.getBootstrapSinceScn()
-               + ", "  + _maxSnapshotRowsPerFetch);
-
-      rs = new BootstrapDBTimedQuery(stmt,_queryTimeInSec).executeQuery();
-      phaseCompleted = streamOutRows(currState, rs, callBack,_maxSnapshotRowsPerFetch);
+      if (initSnapshotRanges(srcIdStatusPair.getSrcId(), currState))
+      {
+        // the client pulls the ranges in parallel starting with the next request
+        callBack.onCheckpointEvent(currState, _curStatsCollector);
+        return false;
+      }
+
+      final int rangeIndex = currState.getSnapshotRangeIndex();
+      final boolean rangeBounded = Checkpoint.UNSET_SNAPSHOT_RANGE_INDEX != rangeIndex;
+      final long endRid = rangeBounded ? currState.getSnapshotRangeEndRid(rangeIndex) : Long.MAX_VALUE;
+      String snapshotSQL = getSnapshotSQLString(_dbDao.getBootstrapConn().getSrcTableName(srcIdStatusPair.getSrcId()),
+                                                currState.getSnapshotSource(), rangeBounded);
+      if (null != _snapshotChunkCache && callBack instanceof BootstrapEventWriter)
+      {
+        // the user-level filter (if any) is applied by the writer, so it is not part of the key
+        long snapshotScn = _snapshotChunkCache.getSharedStartScn(srcIdStatusPair.getSrcId(), startSCN);
+        SnapshotChunkCache.Key chunkKey =
+            new SnapshotChunkCache.Key(srcIdStatusPair.getSrcId(), snapshotSQL,
+                                       currState.getSnapshotOffset(), endRid, snapshotScn, sinceSCN,
+                                       _maxSnapshotRowsPerFetch);
+        SnapshotChunkCache.Chunk chunk =
+            _snapshotChunkCache.getOrLoad(chunkKey, createSnapshotChunkLoader(conn, snapshotSQL, rangeBounded,
+                                                                              endRid, snapshotScn,
+                                                                              currState));
+        phaseCompleted = streamOutCachedRows(currState, chunk, (BootstrapEventWriter)callBack,
+                                             _maxSnapshotRowsPerFetch, snapshotSQL);
+      }
+      else
+      {
+        stmt =
+            conn.prepareStatement(snapshotSQL);
+        long offset = currState.getSnapshotOffset();
+        int i = 1;
+        stmt.setLong(i++, offset);
+        if (rangeBounded)
+          stmt.setLong(i++, endRid);
+        stmt.setLong(i++, currState.getBootstrapStartScn());
+        stmt.setLong(i++, currState.getBootstrapSinceScn());
+        stmt.setLong(i++, _maxSnapshotRowsPerFetch);
+        LOG.info("SnapshotSQL string: "
+                 + snapshotSQL
+                 + ", " + offset
+                 + (rangeBounded ? ", " + endRid : EMPTY_STRING)
+                 + ", " + currState.getBootstrapStartScn()
+                 + ", " + currState.getBootstrapSinceScn()
+                 + ", "  + _maxSnapshotRowsPerFetch);
+
+        rs = new BootstrapDBTimedQuery(stmt,_queryTimeInSec).executeQuery();
+        phaseCompleted = streamOutRows(currState, rs, callBack,_maxSnapshotRowsPerFetch);
+      }
     }
     catch (SQLException e)
     {
@@ -394,6 +460,156 @@ public class BootstrapProcessor
     return phaseCompleted;
   }
 
+  /**
+   * Splits the snapshot of a large source into rid ranges if the client requested a parallel
+   * snapshot and the snapshot has not started yet.
+   * @return true if the ranges have been added to the checkpoint
+   */
+  private boolean initSnapshotRanges(int srcId, Checkpoint currState) throws SQLException
+  {
+    int rangesNum = Math.min(currState.getSnapshotRangesRequested(), MAX_SNAPSHOT_RANGES);
+    if (rangesNum <= 1 || 0 != currState.getSnapshotRangesNum() || 0 != currState.getSnapshotOffset())
+    {
+      return false;
+    }
+
+    long maxRid = _dbDao.getMaxSnapshotRowId(srcId);
+    if (maxRid < rangesNum * _maxSnapshotRowsPerFetch)
+    {
+      // not worth the extra connections
+      return false;
+    }
+
+    currState.initSnapshotRanges(splitSnapshotRids(maxRid, rangesNum));
+    LOG.info("split snapshot of source " + currState.getSnapshotSource() + " with max rid " + maxRid
+             + " into " + rangesNum + " ranges");
+    return true;
+  }
+
+  /**
+   * @return the last rids of rangesNum ranges of about the same size; the last range is unbounded
+   */
+  static long[] splitSnapshotRids(long maxRid, int rangesNum)
+  {
+    long[] endRids = new long[rangesNum];
+    for (int i = 0; i < rangesNum - 1; ++i)
+    {
+      endRids[i] = maxRid / rangesNum * (i + 1);
+    }
+    endRids[rangesNum - 1] = Long.MAX_VALUE;
+    return endRids;
+  }
+
+  private Callable<SnapshotChunkCache.Chunk> createSnapshotChunkLoader(final Connection conn,
+                                                                     final String snapshotSQL,
+                                                                     final boolean rangeBounded,
+                                                                     final long endRid,
+                                                                     final long startScn,
+                                                                     Checkpoint currState)
+  {
+    final long offset = currState.getSnapshotOffset();
+    final long sinceScn = currState.getBootstrapSinceScn();
+    return new Callable<SnapshotChunkCache.Chunk>()
+    {
+      @Override
+      public SnapshotChunkCache.Chunk call() throws SQLException
+      {
+        LOG.info("SnapshotSQL string (cached): " + snapshotSQL + ", " + offset + ", " + startScn
+                 + ", " + sinceScn + ", " + _maxSnapshotRowsPerFetch);
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try
+        {
+          stmt = conn.prepareStatement(snapshotSQL);
+          int i = 1;
+          stmt.setLong(i++, offset);
+          if (rangeBounded)
+            stmt.setLong(i++, endRid);
+          stmt.setLong(i++, startScn);
+          stmt.setLong(i++, sinceScn);
+          stmt.setLong(i++, _maxSnapshotRowsPerFetch);
+          rs = new BootstrapDBTimedQuery(stmt, _queryTimeInSec).executeQuery();
+          return readSnapshotChunk(rs);
+        }
+        finally
+        {
+          DBHelper.close(rs, stmt, null);
+        }
+      }
+    };
+  }
+
+  /**
+   * Reads the rows of a snapshot chunk and validates their events. Reading stops after the first
+   * invalid event.
+   */
+  static SnapshotChunkCache.Chunk readSnapshotChunk(ResultSet rs) throws SQLException
+  {
+    List<Long> rids = new ArrayList<Long>();
+    List<byte[]> events = new ArrayList<byte[]>();
+    DbusEventFactory eventFactory = new DbusEventV1Factory();
+    DbusEventInternalReadable event = null;
+    int validRowsNum = -1;
+    while (rs.next())
+    {
+      rids.add(rs.getLong(1));
+      byte[] eventBytes = rs.getBytes(4);
+      events.add(eventBytes);
+
+      ByteBuffer tmpBuffer = ByteBuffer.wrap(eventBytes);
+      event = (null == event) ? eventFactory.createReadOnlyDbusEventFromBuffer(tmpBuffer, 0)
+                              : event.reset(tmpBuffer, 0);
+      if (!event.isValid())
+      {
+        LOG.error("got an error event :" + event.toString());
+        validRowsNum = rids.size() - 1;
+        break;
+      }
+    }
+
+    long[] ridsArray = new long[rids.size()];
+    for (int i = 0; i < ridsArray.length; ++i)
+    {
+      ridsArray[i] = rids.get(i);
+    }
+    return new SnapshotChunkCache.Chunk(ridsArray, events.toArray(new byte[events.size()][]),
+                                        validRowsNum >= 0 ? validRowsNum : ridsArray.length);
+  }
+
+  /**
+   * Streams out the rows of a snapshot chunk obtained from the {@link SnapshotChunkCache}. Mirrors
+   * {@link #streamOutRows(Checkpoint, ResultSet, BootstrapEventCallback, long)} for the snapshot
+   * phase.
+   */
+  boolean streamOutCachedRows(Checkpoint ckpt,
+                              SnapshotChunkCache.Chunk chunk,
+                              BootstrapEventWriter writer,
+                              long maxRowsPerFetch,
+                              String snapshotSQL) throws SQLException
+  {
+    BootstrapEventProcessResult result = null;
+    long numRowsReadFromDb = 0;
+    for (int i = 0; i < chunk.getRowsNum(); ++i)
+    {
+      numRowsReadFromDb++;
+      if (i >= chunk.getValidRowsNum())
+      {
+        result = BootstrapEventProcessResult.getFailedEventProcessingResult(writer.getNumRowsWritten());
+        break;
+      }
+
+      result = writer.onValidatedEvent(chunk.getEvent(i), _curStatsCollector);
+      if ((result.isClientBufferLimitExceeded()) || (result.isError()))
+      {
+        break;
+      }
+      ckpt.onSnapshotEvent(chunk.getRid(i));
+    }
+
+    writeCkptIfAppropriate(result, writer, numRowsReadFromDb, ckpt, snapshotSQL);
+    return computeIsPhaseCompleted(result, ckpt, numRowsReadFromDb, maxRowsPerFetch, Long.MIN_VALUE);
+  }
+
   private boolean streamOutRows(Checkpoint ckpt,
                                 ResultSet rs,
                                 BootstrapEventCallback callback,
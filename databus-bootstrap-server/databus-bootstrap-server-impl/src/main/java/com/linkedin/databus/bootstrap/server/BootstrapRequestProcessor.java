@@ -34,6 +34,7 @@ import com.linkedin.databus.core.DatabusComponentStatus;
 import com.linkedin.databus.core.DbusClientMode;
 import com.linkedin.databus.core.Encoding;
 import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
+import com.linkedin.databus.core.monitoring.mbean.LatencyHistogramStats;
 import com.linkedin.databus.core.monitoring.mbean.StatsCollectors;
 import com.linkedin.databus2.core.container.DatabusHttpHeaders;
 import com.linkedin.databus2.core.container.request.BootstrapDBException;
@@ -63,8 +64,13 @@ public class BootstrapRequestProcessor extends BootstrapRequestProcessorBase
   public static final int          DEFAULT_BUFFER_MARGIN_SPACE = 900;
   // To keep track of JSON format overhead characters like ( {, }, [, ], ", :)
   public static final int          DEFAULT_JSON_OVERHEAD_BYTES = 10;
+  public static final String       SNAPSHOT_LATENCY_STATS_NAME = "bootstrap.snapshotChunk";
+  public static final String       CATCHUP_LATENCY_STATS_NAME = "bootstrap.catchupChunk";
 
   private final DatabusComponentStatus _componentStatus;
+  private final LatencyHistogramStats _snapshotLatencyStats;
+  private final LatencyHistogramStats _catchupLatencyStats;
+  private final SnapshotChunkCache _snapshotChunkCache;
 
   public BootstrapRequestProcessor(ExecutorService executorService,
                                    BootstrapServerStaticConfig config,
@@ -75,6 +81,14 @@ public class BootstrapRequestProcessor extends BootstrapRequestProcessorBase
                                    {
 	super(executorService,config,bootstrapServer);
     _componentStatus = bootstrapServer.getComponentStatus();
+    _snapshotLatencyStats = bootstrapServer.getLatencyStatisticsCollector()
+        .getOrAddStats(SNAPSHOT_LATENCY_STATS_NAME);
+    _catchupLatencyStats = bootstrapServer.getLatencyStatisticsCollector()
+        .getOrAddStats(CATCHUP_LATENCY_STATS_NAME);
+    _snapshotChunkCache = config.getSnapshotChunkCacheMaxSizeInBytes() > 0 ?
+        new SnapshotChunkCache(config.getSnapshotChunkCacheMaxSizeInBytes(),
+                               config.getSnapshotChunkCacheTtlMs()) :
+        null;
                                    }
 
   /*
@@ -110,6 +124,7 @@ public class BootstrapRequestProcessor extends BootstrapRequestProcessorBase
             ds.addStatsCollector(threadName, threadCollector);
         }
         processor = new BootstrapProcessor(_config, threadCollector);
+        processor.setSnapshotChunkCache(_snapshotChunkCache);
     }
       catch (Exception e)
       {
@@ -191,15 +206,18 @@ public class BootstrapRequestProcessor extends BootstrapRequestProcessorBase
       try
       {
         boolean phaseCompleted = false;
+        long chunkStartNs = System.nanoTime();
         switch (consumptionMode)
         {
         case BOOTSTRAP_SNAPSHOT:
           phaseCompleted = processor.streamSnapShotRows(new Checkpoint(
               checkpointString), writer);
+          _snapshotLatencyStats.registerLatencySince(chunkStartNs);
           break;
         case BOOTSTRAP_CATCHUP:
           phaseCompleted = processor.streamCatchupRows(new Checkpoint(
               checkpointString), writer);
+          _catchupLatencyStats.registerLatencySince(chunkStartNs);
           break;
         default:
           if (null != bootstrapStatsCollector)
@@ -208,6 +226,15 @@ public class BootstrapRequestProcessor extends BootstrapRequestProcessorBase
           throw new RequestProcessingException("Unexpected mode: "
               + consumptionMode);
         }
+        // events not followed by a checkpoint may still be staged
+        if (!writer.flush() || writer.hasWriteError())
+        {
+          if (null != bootstrapStatsCollector)
+            bootstrapStatsCollector.registerErrBootstrap();
+
+          throw new RequestProcessingException("error writing bootstrap events to the client: checkpoint="
+                                               + checkpointString);
+        }
 
         if (null != bootstrapStatsCollector)
           bootstrapStatsCollector.registerBootStrapReq(cp, System.currentTimeMillis()-startTime, clientFreeBufferSize);
@@ -269,7 +296,10 @@ public class BootstrapRequestProcessor extends BootstrapRequestProcessorBase
 
   protected BootstrapEventWriter createEventWriter(DatabusRequest request, long clientFreeBufferSize, DbusFilter keyFilter, Encoding enc)
   {
-  	BootstrapEventWriter writer = new BootstrapEventWriter(request.getResponseContent(), clientFreeBufferSize, keyFilter, enc);
+  	BootstrapEventWriter writer = new BootstrapEventWriter(request.getResponseContent(), clientFreeBufferSize, keyFilter, enc,
+  	                                                       _config.getWriteBatchSizeInBytes(),
+  	                                                       _config.isVerifyEventBodyCrc(),
+  	                                                       _config.getPayloadDictionaries());
   	return writer;
   }
 }
@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.linkedin.databus.bootstrap.common.BootstrapConfig;
+import com.linkedin.databus.core.DbusEventPayloadDictionaries;
 import com.linkedin.databus.core.util.ConfigBuilder;
 import com.linkedin.databus.core.util.InvalidConfigException;
 
@@ -43,6 +44,12 @@ public class BootstrapServerConfig implements
   // Default timeout in sec for bootstrap DB query execution;
   public static final int DEFAULT_BOOTSTRAP_DB_QUERY_EXECUTION_TIMEOUT_IN_SEC = 3600;
 
+  // Snapshot chunk cache disabled by default
+  public static final long DEFAULT_SNAPSHOT_CHUNK_CACHE_MAX_SIZE_IN_BYTES = 0;
+  public static final long DEFAULT_SNAPSHOT_CHUNK_CACHE_TTL_MS = 60000;
+
+  public static final int DEFAULT_WRITE_BATCH_SIZE_IN_BYTES = 64 * 1024;
+
   // if the number of events between sinceSCN and start SCN is less than this
   // threshold, then snapshot could be disabled.
   private Long defaultRowsThresholdForSnapshotBypass = DEFAULT_DEFAULT_THRESHOLD_FOR_SNAPSHOT_BYPASS;
@@ -70,6 +77,23 @@ public class BootstrapServerConfig implements
 
   private long longestDbTxnTimeMins = DEFAULT_LONGEST_DB_TXN_TIME_MINS;
 
+  // Max total size of the snapshot chunks cached for concurrent bootstraps; 0 disables the cache
+  private long snapshotChunkCacheMaxSizeInBytes = DEFAULT_SNAPSHOT_CHUNK_CACHE_MAX_SIZE_IN_BYTES;
+
+  // Max time a cached snapshot chunk is served after it was read from the DB
+  private long snapshotChunkCacheTtlMs = DEFAULT_SNAPSHOT_CHUNK_CACHE_TTL_MS;
+
+  // Size of the staging buffer for batching event writes to the client; 0 disables batching
+  private int writeBatchSizeInBytes = DEFAULT_WRITE_BATCH_SIZE_IN_BYTES;
+
+  // If false, only the header CRCs of the events read from the DB are verified; their body CRCs
+  // were verified by the producer before they were stored
+  private boolean verifyEventBodyCrc = true;
+
+  // Dictionaries to decompress the compressed payloads of the events read from the DB as a
+  // comma-separated list of srcId:schemaVersion:path entries
+  private String payloadCompressionDictionaries = "";
+
   public boolean getPredicatePushDown()
   {
     return predicatePushDown;
@@ -83,6 +107,35 @@ public class BootstrapServerConfig implements
   @Override
   public BootstrapServerStaticConfig build() throws InvalidConfigException
   {
+    if (snapshotChunkCacheMaxSizeInBytes < 0)
+    {
+      throw new InvalidConfigException("invalid snapshotChunkCacheMaxSizeInBytes: " +
+                                       snapshotChunkCacheMaxSizeInBytes);
+    }
+    if (snapshotChunkCacheTtlMs < 0)
+    {
+      throw new InvalidConfigException("invalid snapshotChunkCacheTtlMs: " + snapshotChunkCacheTtlMs);
+    }
+    if (writeBatchSizeInBytes < 0)
+    {
+      throw new InvalidConfigException("invalid writeBatchSizeInBytes: " + writeBatchSizeInBytes);
+    }
+    DbusEventPayloadDictionaries payloadDictionaries;
+    try
+    {
+      payloadDictionaries = DbusEventPayloadDictionaries.load(payloadCompressionDictionaries);
+    }
+    catch (IOException e)
+    {
+      throw new InvalidConfigException("unable to load payloadCompressionDictionaries: " +
+                                       payloadCompressionDictionaries, e);
+    }
+    catch (IllegalArgumentException e)
+    {
+      throw new InvalidConfigException("invalid payloadCompressionDictionaries: " +
+                                       payloadCompressionDictionaries, e);
+    }
+
     return new BootstrapServerStaticConfig(defaultRowsThresholdForSnapshotBypass,
                                            rowsThresholdForSnapshotBypass,
                                            disableSnapshotBypass,
@@ -91,7 +144,12 @@ public class BootstrapServerConfig implements
                                            queryTimeoutInSec,
                                            enableMinScnCheck,
                                            db.build(),
-                                           longestDbTxnTimeMins);
+                                           longestDbTxnTimeMins,
+                                           snapshotChunkCacheMaxSizeInBytes,
+                                           snapshotChunkCacheTtlMs,
+                                           writeBatchSizeInBytes,
+                                           verifyEventBodyCrc,
+                                           payloadDictionaries);
   }
 
   public Long getDefaultRowsThresholdForSnapshotBypass()
@@ -178,6 +236,56 @@ public class BootstrapServerConfig implements
     this.longestDbTxnTimeMins = longestDbTxnTimeMins;
   }
 
+  public long getSnapshotChunkCacheMaxSizeInBytes()
+  {
+    return snapshotChunkCacheMaxSizeInBytes;
+  }
+
+  public void setSnapshotChunkCacheMaxSizeInBytes(long snapshotChunkCacheMaxSizeInBytes)
+  {
+    this.snapshotChunkCacheMaxSizeInBytes = snapshotChunkCacheMaxSizeInBytes;
+  }
+
+  public long getSnapshotChunkCacheTtlMs()
+  {
+    return snapshotChunkCacheTtlMs;
+  }
+
+  public void setSnapshotChunkCacheTtlMs(long snapshotChunkCacheTtlMs)
+  {
+    this.snapshotChunkCacheTtlMs = snapshotChunkCacheTtlMs;
+  }
+
+  public int getWriteBatchSizeInBytes()
+  {
+    return writeBatchSizeInBytes;
+  }
+
+  public void setWriteBatchSizeInBytes(int writeBatchSizeInBytes)
+  {
+    this.writeBatchSizeInBytes = writeBatchSizeInBytes;
+  }
+
+  public boolean isVerifyEventBodyCrc()
+  {
+    return verifyEventBodyCrc;
+  }
+
+  public void setVerifyEventBodyCrc(boolean verifyEventBodyCrc)
+  {
+    this.verifyEventBodyCrc = verifyEventBodyCrc;
+  }
+
+  public String getPayloadCompressionDictionaries()
+  {
+    return payloadCompressionDictionaries;
+  }
+
+  public void setPayloadCompressionDictionaries(String payloadCompressionDictionaries)
+  {
+    this.payloadCompressionDictionaries = payloadCompressionDictionaries;
+  }
+
   public BootstrapConfig getDb()
   {
     return db;
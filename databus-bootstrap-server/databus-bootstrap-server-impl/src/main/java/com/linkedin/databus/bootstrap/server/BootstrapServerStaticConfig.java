@@ -22,6 +22,7 @@ package com.linkedin.databus.bootstrap.server;
 import java.util.Map;
 
 import com.linkedin.databus.bootstrap.common.BootstrapReadOnlyConfig;
+import com.linkedin.databus.core.DbusEventPayloadDictionaries;
 
 public class BootstrapServerStaticConfig
 {
@@ -59,6 +60,17 @@ public class BootstrapServerStaticConfig
     //Enable minScn query
     private final boolean enableMinScnCheck;
 
+    //Max total size of the snapshot chunks cached for concurrent bootstraps; 0 disables the cache
+    private final long snapshotChunkCacheMaxSizeInBytes;
+    //Max time a cached snapshot chunk is served after it was read from the DB
+    private final long snapshotChunkCacheTtlMs;
+    //Size of the staging buffer for batching event writes to the client; 0 disables batching
+    private final int writeBatchSizeInBytes;
+    //If false, only the header CRCs of the events read from the DB are verified
+    private final boolean verifyEventBodyCrc;
+    //Dictionaries to decompress the compressed payloads of the events read from the DB
+    private final DbusEventPayloadDictionaries payloadDictionaries;
+
     public BootstrapServerStaticConfig(Long defaultRowsThresholdForSnapshotBypass,
                                        Map<String, Long> rowsThresholdForSnapshotBypass,
                                        Map<String, Boolean> disableSnapshotBypass,
@@ -68,6 +80,46 @@ public class BootstrapServerStaticConfig
                                        boolean enableMinScnCheck,
                                        BootstrapReadOnlyConfig db,
                                        long longestDbTxnTimeMins)
+    {
+      this(defaultRowsThresholdForSnapshotBypass, rowsThresholdForSnapshotBypass, disableSnapshotBypass,
+           predicatePushDown, predicatePushDownBypass, queryTimeoutInSec, enableMinScnCheck, db,
+           longestDbTxnTimeMins, 0, 0, 0, true);
+    }
+
+    public BootstrapServerStaticConfig(Long defaultRowsThresholdForSnapshotBypass,
+                                       Map<String, Long> rowsThresholdForSnapshotBypass,
+                                       Map<String, Boolean> disableSnapshotBypass,
+                                       boolean predicatePushDown,
+                                       Map<String, Boolean> predicatePushDownBypass,
+                                       int queryTimeoutInSec,
+                                       boolean enableMinScnCheck,
+                                       BootstrapReadOnlyConfig db,
+                                       long longestDbTxnTimeMins,
+                                       long snapshotChunkCacheMaxSizeInBytes,
+                                       long snapshotChunkCacheTtlMs,
+                                       int writeBatchSizeInBytes,
+                                       boolean verifyEventBodyCrc)
+    {
+      this(defaultRowsThresholdForSnapshotBypass, rowsThresholdForSnapshotBypass, disableSnapshotBypass,
+           predicatePushDown, predicatePushDownBypass, queryTimeoutInSec, enableMinScnCheck, db,
+           longestDbTxnTimeMins, snapshotChunkCacheMaxSizeInBytes, snapshotChunkCacheTtlMs,
+           writeBatchSizeInBytes, verifyEventBodyCrc, new DbusEventPayloadDictionaries());
+    }
+
+    public BootstrapServerStaticConfig(Long defaultRowsThresholdForSnapshotBypass,
+                                       Map<String, Long> rowsThresholdForSnapshotBypass,
+                                       Map<String, Boolean> disableSnapshotBypass,
+                                       boolean predicatePushDown,
+                                       Map<String, Boolean> predicatePushDownBypass,
+                                       int queryTimeoutInSec,
+                                       boolean enableMinScnCheck,
+                                       BootstrapReadOnlyConfig db,
+                                       long longestDbTxnTimeMins,
+                                       long snapshotChunkCacheMaxSizeInBytes,
+                                       long snapshotChunkCacheTtlMs,
+                                       int writeBatchSizeInBytes,
+                                       boolean verifyEventBodyCrc,
+                                       DbusEventPayloadDictionaries payloadDictionaries)
     {
 		  super();
 		  this.defaultRowsThresholdForSnapshotBypass = defaultRowsThresholdForSnapshotBypass;
@@ -79,6 +131,11 @@ public class BootstrapServerStaticConfig
           this.enableMinScnCheck = enableMinScnCheck;
 		  this.db = db;
       this._longestDbTxnTimeMins = longestDbTxnTimeMins;
+      this.snapshotChunkCacheMaxSizeInBytes = snapshotChunkCacheMaxSizeInBytes;
+      this.snapshotChunkCacheTtlMs = snapshotChunkCacheTtlMs;
+      this.writeBatchSizeInBytes = writeBatchSizeInBytes;
+      this.verifyEventBodyCrc = verifyEventBodyCrc;
+      this.payloadDictionaries = payloadDictionaries;
 	  }
 
 	  @Override
@@ -91,6 +148,11 @@ public class BootstrapServerStaticConfig
 				  + queryTimeoutInSec
 				  + " predicatePushDown= " + predicatePushDown
 				  + " enableMinScnCheck= " + enableMinScnCheck
+				  + " snapshotChunkCacheMaxSizeInBytes= " + snapshotChunkCacheMaxSizeInBytes
+				  + " snapshotChunkCacheTtlMs= " + snapshotChunkCacheTtlMs
+				  + " writeBatchSizeInBytes= " + writeBatchSizeInBytes
+				  + " verifyEventBodyCrc= " + verifyEventBodyCrc
+				  + " payloadDictionaries= " + payloadDictionaries
 				  + ", db=" + db + "]";
 	  }
 
@@ -157,6 +219,31 @@ public class BootstrapServerStaticConfig
       return enableMinScnCheck;
     }
 
+    public long getSnapshotChunkCacheMaxSizeInBytes()
+    {
+      return snapshotChunkCacheMaxSizeInBytes;
+    }
+
+    public long getSnapshotChunkCacheTtlMs()
+    {
+      return snapshotChunkCacheTtlMs;
+    }
+
+    public int getWriteBatchSizeInBytes()
+    {
+      return writeBatchSizeInBytes;
+    }
+
+    public boolean isVerifyEventBodyCrc()
+    {
+      return verifyEventBodyCrc;
+    }
+
+    public DbusEventPayloadDictionaries getPayloadDictionaries()
+    {
+      return payloadDictionaries;
+    }
+
 	  public long getRowsThresholdForSnapshotBypass(String source)
 	  {
 		  long threshold = defaultRowsThresholdForSnapshotBypass;
@@ -0,0 +1,371 @@
+package com.linkedin.databus.bootstrap.server;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.log4j.Logger;
+
+import com.linkedin.databus.bootstrap.api.BootstrapProcessingException;
+
+/**
+ * A bounded in-memory cache of snapshot chunks shared by all bootstrap requests of a server. When
+ * many clients bootstrap the same source at the same time, they issue the same chunked snapshot
+ * queries. The first reader of a chunk runs the query and the other readers of the same chunk wait
+ * for its result instead of running the query again.
+ *
+ * <p>Clients which start bootstrapping at slightly different times get different bootstrap start
+ * SCNs, so their queries would never match. Instead, the snapshot queries of a source use the
+ * shared start SCN returned by {@link #getSharedStartScn(int, long)}: the highest start SCN
+ * requested so far for the source. Reading the snapshot as of an SCN which is not lower than the
+ * client's start SCN is safe because the catchup phase replays all changes since the client's start
+ * SCN; the rows updated in between are only delivered twice. The effectiveness of the cache can be
+ * monitored through {@link #getHitsNum()} and {@link #getMissesNum()}.
+ *
+ * <p>The chunks are evicted in LRU order when the total size of the cached events exceeds the
+ * configured limit and they expire after a configured time. Serving a snapshot row which has been
+ * updated since the chunk was read is safe because the update has a higher SCN than the bootstrap
+ * start SCN and it will be delivered in the catchup phase.
+ */
+public class SnapshotChunkCache
+{
+  public static final String MODULE = SnapshotChunkCache.class.getName();
+  public static final Logger LOG = Logger.getLogger(MODULE);
+
+  private final long _maxSizeInBytes;
+  private final long _ttlMs;
+  /** the cached chunks in access order */
+  private final LinkedHashMap<Key, Chunk> _chunks = new LinkedHashMap<Key, Chunk>(16, 0.75f, true);
+  /** the chunks being read from the DB */
+  private final Map<Key, FutureTask<Chunk>> _pendingLoads = new HashMap<Key, FutureTask<Chunk>>();
+  /** the snapshot start SCN shared by the requests for each source id */
+  private final Map<Integer, Long> _sharedStartScns = new HashMap<Integer, Long>();
+  private long _sizeInBytes;
+  private long _hitsNum;
+  private long _missesNum;
+
+  /**
+   * @param maxSizeInBytes    the max total size of the cached events
+   * @param ttlMs             the max time a chunk is served from the cache after it was read
+   */
+  public SnapshotChunkCache(long maxSizeInBytes, long ttlMs)
+  {
+    _maxSizeInBytes = maxSizeInBytes;
+    _ttlMs = ttlMs;
+  }
+
+  /**
+   * Obtains the start SCN to be used for the snapshot queries of a source by a client with a given
+   * bootstrap start SCN. The result is never lower than the client's start SCN.
+   *
+   * @param srcId         the source id
+   * @param startScn      the bootstrap start SCN of the client
+   */
+  public synchronized long getSharedStartScn(int srcId, long startScn)
+  {
+    Long sharedScn = _sharedStartScns.get(srcId);
+    if (null != sharedScn && sharedScn >= startScn)
+    {
+      return sharedScn;
+    }
+    _sharedStartScns.put(srcId, startScn);
+    return startScn;
+  }
+
+  /**
+   * Obtains a chunk from the cache. If the chunk is not cached, it is read using the specified loader
+   * unless another thread is already reading it, in which case the call waits for that thread.
+   */
+  public Chunk getOrLoad(final Key key, final Callable<Chunk> loader)
+         throws SQLException, BootstrapProcessingException
+  {
+    FutureTask<Chunk> load = null;
+    boolean isLoader = false;
+    synchronized (this)
+    {
+      Chunk chunk = _chunks.get(key);
+      if (null != chunk)
+      {
+        if (System.currentTimeMillis() - chunk.getLoadTimeMs() <= _ttlMs)
+        {
+          ++_hitsNum;
+          return chunk;
+        }
+        removeChunk(key);
+      }
+
+      load = _pendingLoads.get(key);
+      if (null == load)
+      {
+        load = new FutureTask<Chunk>(new Callable<Chunk>()
+        {
+          @Override
+          public Chunk call() throws Exception
+          {
+            try
+            {
+              Chunk chunk = loader.call();
+              addChunk(key, chunk);
+              return chunk;
+            }
+            finally
+            {
+              removePendingLoad(key);
+            }
+          }
+        });
+        _pendingLoads.put(key, load);
+        isLoader = true;
+        ++_missesNum;
+      }
+      else
+      {
+        ++_hitsNum;
+      }
+    }
+
+    if (isLoader)
+    {
+      load.run();
+    }
+
+    try
+    {
+      return load.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new BootstrapProcessingException("interrupted while waiting for snapshot chunk " + key);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException) throw (SQLException)cause;
+      if (cause instanceof BootstrapProcessingException) throw (BootstrapProcessingException)cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      throw new BootstrapProcessingException(cause);
+    }
+  }
+
+  private synchronized void removePendingLoad(Key key)
+  {
+    _pendingLoads.remove(key);
+  }
+
+  private synchronized void addChunk(Key key, Chunk chunk)
+  {
+    if (!chunk.isCacheable() || chunk.getSizeInBytes() > _maxSizeInBytes)
+    {
+      return;
+    }
+
+    removeChunk(key);
+    _chunks.put(key, chunk);
+    _sizeInBytes += chunk.getSizeInBytes();
+
+    Iterator<Chunk> lruIter = _chunks.values().iterator();
+    while (_sizeInBytes > _maxSizeInBytes && lruIter.hasNext())
+    {
+      _sizeInBytes -= lruIter.next().getSizeInBytes();
+      lruIter.remove();
+    }
+  }
+
+  private void removeChunk(Key key)
+  {
+    Chunk chunk = _chunks.remove(key);
+    if (null != chunk)
+    {
+      _sizeInBytes -= chunk.getSizeInBytes();
+    }
+  }
+
+  public synchronized void clear()
+  {
+    _chunks.clear();
+    _sharedStartScns.clear();
+    _sizeInBytes = 0;
+  }
+
+  public synchronized long getSizeInBytes()
+  {
+    return _sizeInBytes;
+  }
+
+  public synchronized int getChunksNum()
+  {
+    return _chunks.size();
+  }
+
+  public synchronized long getHitsNum()
+  {
+    return _hitsNum;
+  }
+
+  public synchronized long getMissesNum()
+  {
+    return _missesNum;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "SnapshotChunkCache [chunksNum=" + _chunks.size() + ", sizeInBytes=" + _sizeInBytes
+        + ", hitsNum=" + _hitsNum + ", missesNum=" + _missesNum + "]";
+  }
+
+  /**
+   * Identifies a snapshot chunk. The query string captures the source table and any pushed-down
+   * filter; the remaining fields are the query parameters.
+   */
+  public static class Key
+  {
+    private final int _srcId;
+    private final String _query;
+    private final long _startRid;
+    private final long _endRid;
+    private final long _startScn;
+    private final long _sinceScn;
+    private final long _chunkSize;
+
+    public Key(int srcId, String query, long startRid, long startScn, long sinceScn, long chunkSize)
+    {
+      this(srcId, query, startRid, Long.MAX_VALUE, startScn, sinceScn, chunkSize);
+    }
+
+    /**
+     * @param endRid      the last rid of the snapshot rid range of the query
+     */
+    public Key(int srcId, String query, long startRid, long endRid, long startScn, long sinceScn,
+               long chunkSize)
+    {
+      _srcId = srcId;
+      _query = query;
+      _startRid = startRid;
+      _endRid = endRid;
+      _startScn = startScn;
+      _sinceScn = sinceScn;
+      _chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (this == obj) return true;
+      if (!(obj instanceof Key)) return false;
+      Key other = (Key)obj;
+      return _srcId == other._srcId && _startRid == other._startRid && _endRid == other._endRid
+          && _startScn == other._startScn
+          && _sinceScn == other._sinceScn && _chunkSize == other._chunkSize
+          && _query.equals(other._query);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      int result = _srcId;
+      result = 31 * result + (int)(_startRid ^ (_startRid >>> 32));
+      result = 31 * result + (int)(_endRid ^ (_endRid >>> 32));
+      result = 31 * result + (int)(_startScn ^ (_startScn >>> 32));
+      result = 31 * result + (int)(_sinceScn ^ (_sinceScn >>> 32));
+      result = 31 * result + (int)(_chunkSize ^ (_chunkSize >>> 32));
+      result = 31 * result + _query.hashCode();
+      return result;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "{srcId=" + _srcId + ", startRid=" + _startRid + ", endRid=" + _endRid + ", startScn=" + _startScn
+          + ", sinceScn=" + _sinceScn + ", chunkSize=" + _chunkSize + "}";
+    }
+  }
+
+  /**
+   * The rows of a snapshot chunk: the row ids and the serialized events. The events before
+   * {@link #getValidRowsNum()} have been validated. If the chunk contains an invalid event, it is the
+   * last row, and the chunk is not cached.
+   */
+  public static class Chunk
+  {
+    private final long[] _rids;
+    private final byte[][] _events;
+    private final int _validRowsNum;
+    private final long _sizeInBytes;
+    private final long _loadTimeMs;
+
+    public Chunk(long[] rids, byte[][] events, int validRowsNum)
+    {
+      _rids = rids;
+      _events = events;
+      _validRowsNum = validRowsNum;
+      long size = 0;
+      for (byte[] e: events)
+      {
+        size += e.length;
+      }
+      _sizeInBytes = size;
+      _loadTimeMs = System.currentTimeMillis();
+    }
+
+    public int getRowsNum()
+    {
+      return _rids.length;
+    }
+
+    public int getValidRowsNum()
+    {
+      return _validRowsNum;
+    }
+
+    public long getRid(int i)
+    {
+      return _rids[i];
+    }
+
+    public byte[] getEvent(int i)
+    {
+      return _events[i];
+    }
+
+    public boolean isCacheable()
+    {
+      return _validRowsNum == _rids.length;
+    }
+
+    public long getSizeInBytes()
+    {
+      return _sizeInBytes;
+    }
+
+    public long getLoadTimeMs()
+    {
+      return _loadTimeMs;
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package com.linkedin.databus.bootstrap.server;
+
+/*
+*
+* Copyright 2013 LinkedIn Corp. All rights reserved
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+*/
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.databus.bootstrap.api.BootstrapEventProcessResult;
+import com.linkedin.databus.core.Checkpoint;
+import com.linkedin.databus.core.DbusEventFactory;
+import com.linkedin.databus.core.DbusEventInfo;
+import com.linkedin.databus.core.DbusEventKey;
+import com.linkedin.databus.core.DbusEventV1Factory;
+import com.linkedin.databus.core.DbusOpcode;
+import com.linkedin.databus.core.Encoding;
+
+public class TestBootstrapEventWriter
+{
+  private static byte[] createEvent(long key, int payloadSize)
+  {
+    DbusEventFactory eventFactory = new DbusEventV1Factory();
+    byte[] payload = new byte[payloadSize];
+    Arrays.fill(payload, (byte)key);
+    DbusEventInfo eventInfo = new DbusEventInfo(DbusOpcode.UPSERT, 100 + key, (short)0, (short)0,
+                                                key, (short)1, new byte[16], payload, false, true,
+                                                DbusEventFactory.DBUS_EVENT_V1, (short)1, null);
+    ByteBuffer buf = ByteBuffer.allocate(payloadSize + 1000).order(eventFactory.getByteOrder());
+    int len;
+    try
+    {
+      len = DbusEventFactory.serializeEvent(new DbusEventKey(key), buf, eventInfo);
+    }
+    catch (Exception e)
+    {
+      throw new RuntimeException(e);
+    }
+    return Arrays.copyOf(buf.array(), len);
+  }
+
+  /** A result set over the (id, scn, srckey, val) rows of a snapshot query */
+  private static ResultSet createResultSet(final List<byte[]> events)
+  {
+    final int[] curRow = {-1};
+    return (ResultSet)Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                                             new Class<?>[]{ResultSet.class},
+                                             new InvocationHandler()
+    {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args)
+      {
+        String name = method.getName();
+        if (name.equals("next")) return ++curRow[0] < events.size();
+        if (name.equals("getLong")) return (long)curRow[0] + 1;
+        if (name.equals("getBytes")) return events.get(curRow[0]).clone();
+        if (name.equals("getBinaryStream")) return new ByteArrayInputStream(events.get(curRow[0]));
+        throw new UnsupportedOperationException(name);
+      }
+    });
+  }
+
+  private static class CollectingChannel implements WritableByteChannel
+  {
+    final ByteArrayOutputStream _out = new ByteArrayOutputStream();
+    int _writesNum;
+
+    @Override
+    public int write(ByteBuffer src)
+    {
+      int len = src.remaining();
+      byte[] bytes = new byte[len];
+      src.get(bytes);
+      _out.write(bytes, 0, len);
+      ++_writesNum;
+      return len;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+      return true;
+    }
+
+    @Override
+    public void close()
+    {
+    }
+  }
+
+  /** Fails the first write and accepts the following ones */
+  private static class FailingChannel implements WritableByteChannel
+  {
+    final CollectingChannel _delegate = new CollectingChannel();
+    boolean _failed;
+
+    @Override
+    public int write(ByteBuffer src) throws IOException
+    {
+      if (!_failed)
+      {
+        _failed = true;
+        throw new IOException("test write failure");
+      }
+      return _delegate.write(src);
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+      return true;
+    }
+
+    @Override
+    public void close()
+    {
+    }
+  }
+
+  private static long writeAll(BootstrapEventWriter writer, List<byte[]> events) throws Exception
+  {
+    ResultSet rs = createResultSet(events);
+    long rowsNum = 0;
+    while (rs.next())
+    {
+      BootstrapEventProcessResult result = writer.onEvent(rs, null);
+      Assert.assertFalse(result.isError());
+      Assert.assertFalse(result.isClientBufferLimitExceeded());
+      ++rowsNum;
+    }
+    Assert.assertTrue(writer.flush());
+    return rowsNum;
+  }
+
+  @Test
+  public void testBatchedWrites() throws Exception
+  {
+    List<byte[]> events = new ArrayList<byte[]>();
+    for (int i = 0; i < 100; ++i)
+    {
+      //include events larger than the row buffer and the staging buffer
+      events.add(createEvent(i, 0 == i % 25 ? 5000 : 10 + i));
+    }
+
+    CollectingChannel unbatchedChannel = new CollectingChannel();
+    BootstrapEventWriter unbatched = new BootstrapEventWriter(unbatchedChannel, 1000000, null,
+                                                              Encoding.BINARY);
+    writeAll(unbatched, events);
+
+    CollectingChannel batchedChannel = new CollectingChannel();
+    BootstrapEventWriter batched = new BootstrapEventWriter(batchedChannel, 1000000, null,
+                                                            Encoding.BINARY, 2048, true);
+    writeAll(batched, events);
+
+    Assert.assertEquals(batched.getNumRowsWritten(), unbatched.getNumRowsWritten());
+    Assert.assertEquals(batchedChannel._out.toByteArray(), unbatchedChannel._out.toByteArray());
+    Assert.assertEquals(unbatchedChannel._writesNum, events.size());
+    Assert.assertTrue(batchedChannel._writesNum < events.size() / 4);
+
+    //cached events go through the same staging buffer
+    CollectingChannel cachedChannel = new CollectingChannel();
+    BootstrapEventWriter cached = new BootstrapEventWriter(cachedChannel, 1000000, null,
+                                                           Encoding.BINARY, 2048, true);
+    for (byte[] e: events)
+    {
+      Assert.assertFalse(cached.onValidatedEvent(e, null).isError());
+    }
+    cached.flush();
+    Assert.assertEquals(cachedChannel._out.toByteArray(), unbatchedChannel._out.toByteArray());
+  }
+
+  @Test
+  public void testBodyCrcVerification() throws Exception
+  {
+    byte[] corrupted = createEvent(1, 100);
+    corrupted[corrupted.length - 1] ^= 0x55;
+    List<byte[]> events = new ArrayList<byte[]>();
+    events.add(corrupted);
+
+    BootstrapEventWriter verifying = new BootstrapEventWriter(new CollectingChannel(), 1000000, null,
+                                                              Encoding.BINARY, 2048, true);
+    ResultSet rs = createResultSet(events);
+    rs.next();
+    Assert.assertTrue(verifying.onEvent(rs, null).isError());
+
+    //header-only validation trusts the CRC checks done when the event was stored
+    BootstrapEventWriter headerOnly = new BootstrapEventWriter(new CollectingChannel(), 1000000, null,
+                                                               Encoding.BINARY, 2048, false);
+    rs = createResultSet(events);
+    rs.next();
+    Assert.assertFalse(headerOnly.onEvent(rs, null).isError());
+  }
+
+  /** A checkpoint must not be sent after its staged events failed to be written */
+  @Test
+  public void testStagedWriteFailure() throws Exception
+  {
+    List<byte[]> events = new ArrayList<byte[]>();
+    for (int i = 0; i < 10; ++i)
+    {
+      events.add(createEvent(i, 50));
+    }
+
+    FailingChannel channel = new FailingChannel();
+    BootstrapEventWriter writer = new BootstrapEventWriter(channel, 1000000, null, Encoding.BINARY,
+                                                           4096, true);
+    ResultSet rs = createResultSet(events);
+    BootstrapEventProcessResult result = null;
+    while (rs.next())
+    {
+      result = writer.onEvent(rs, null);
+      Assert.assertFalse(result.isError());
+    }
+    //the staged rows are processed but not sent yet
+    Assert.assertEquals(result.getNumRowsWritten(), events.size());
+    Assert.assertEquals(writer.getNumRowsWritten(), 0);
+
+    Checkpoint ckpt = new Checkpoint("{\"consumption_mode\":\"BOOTSTRAP_SNAPSHOT\", \"bootstrap_since_scn\":0," +
+        "\"bootstrap_start_scn\":1000,\"bootstrap_target_scn\":2000,\"bootstrap_catchup_source_index\":0," +
+        "\"bootstrap_snapshot_source_index\":1}");
+    writer.onCheckpointEvent(ckpt, null);
+    Assert.assertTrue(writer.hasWriteError());
+    //the staged events are lost and the checkpoint must not be sent after them
+    Assert.assertEquals(channel._delegate._out.size(), 0);
+    Assert.assertEquals(writer.getNumRowsWritten(), 0);
+    Assert.assertTrue(writer.flush());
+  }
+}
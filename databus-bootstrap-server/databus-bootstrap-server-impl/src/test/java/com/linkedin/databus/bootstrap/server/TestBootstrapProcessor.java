@@ -177,4 +177,15 @@ public class TestBootstrapProcessor
 
   }
 
+  @Test
+  public void testSplitSnapshotRids()
+  {
+    long[] endRids = BootstrapProcessor.splitSnapshotRids(1000, 4);
+    Assert.assertEquals(4, endRids.length);
+    Assert.assertEquals(250, endRids[0]);
+    Assert.assertEquals(500, endRids[1]);
+    Assert.assertEquals(750, endRids[2]);
+    // rows added after the split belong to the last range
+    Assert.assertEquals(Long.MAX_VALUE, endRids[3]);
+  }
 }
@@ -0,0 +1,251 @@
+package com.linkedin.databus.bootstrap.server;
+
+/*
+*
+* Copyright 2013 LinkedIn Corp. All rights reserved
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+*/
+
+
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestSnapshotChunkCache
+{
+  private static final String QUERY = "Select id, scn, srckey, val from tab_1 where id > ?";
+
+  private static SnapshotChunkCache.Chunk createChunk(long startRid, int rowsNum, int eventSize,
+                                                      int validRowsNum)
+  {
+    long[] rids = new long[rowsNum];
+    byte[][] events = new byte[rowsNum][];
+    for (int i = 0; i < rowsNum; ++i)
+    {
+      rids[i] = startRid + i + 1;
+      events[i] = new byte[eventSize];
+    }
+    return new SnapshotChunkCache.Chunk(rids, events, validRowsNum);
+  }
+
+  private static SnapshotChunkCache.Key createKey(long startRid)
+  {
+    return new SnapshotChunkCache.Key(1, QUERY, startRid, 1000, 0, 10);
+  }
+
+  private static Callable<SnapshotChunkCache.Chunk> createLoader(final SnapshotChunkCache.Chunk chunk,
+                                                                 final AtomicInteger loadsNum)
+  {
+    return new Callable<SnapshotChunkCache.Chunk>()
+    {
+      @Override
+      public SnapshotChunkCache.Chunk call()
+      {
+        loadsNum.incrementAndGet();
+        return chunk;
+      }
+    };
+  }
+
+  @Test
+  public void testHitsAndEviction() throws Exception
+  {
+    SnapshotChunkCache cache = new SnapshotChunkCache(250, 60000);
+    AtomicInteger loadsNum = new AtomicInteger();
+
+    SnapshotChunkCache.Chunk c0 = createChunk(0, 10, 10, 10);
+    Assert.assertSame(cache.getOrLoad(createKey(0), createLoader(c0, loadsNum)), c0);
+    Assert.assertSame(cache.getOrLoad(createKey(0), createLoader(c0, loadsNum)), c0);
+    Assert.assertEquals(loadsNum.get(), 1);
+    Assert.assertEquals(cache.getSizeInBytes(), 100);
+    Assert.assertEquals(cache.getHitsNum(), 1);
+    Assert.assertEquals(cache.getMissesNum(), 1);
+
+    //a different start rid is a different chunk
+    SnapshotChunkCache.Chunk c10 = createChunk(10, 10, 10, 10);
+    Assert.assertSame(cache.getOrLoad(createKey(10), createLoader(c10, loadsNum)), c10);
+    Assert.assertEquals(loadsNum.get(), 2);
+
+    //touch c0 so that c10 is the least recently used chunk
+    cache.getOrLoad(createKey(0), createLoader(c0, loadsNum));
+    SnapshotChunkCache.Chunk c20 = createChunk(20, 10, 10, 10);
+    cache.getOrLoad(createKey(20), createLoader(c20, loadsNum));
+    Assert.assertEquals(cache.getChunksNum(), 2);
+    Assert.assertEquals(cache.getSizeInBytes(), 200);
+    cache.getOrLoad(createKey(0), createLoader(c0, loadsNum));
+    Assert.assertEquals(loadsNum.get(), 3);
+    cache.getOrLoad(createKey(10), createLoader(c10, loadsNum));
+    Assert.assertEquals(loadsNum.get(), 4);
+
+    //chunks larger than the cache are served but not cached
+    SnapshotChunkCache.Chunk big = createChunk(30, 10, 30, 10);
+    Assert.assertSame(cache.getOrLoad(createKey(30), createLoader(big, loadsNum)), big);
+    cache.getOrLoad(createKey(30), createLoader(big, loadsNum));
+    Assert.assertEquals(loadsNum.get(), 6);
+    Assert.assertTrue(cache.getSizeInBytes() <= 250);
+  }
+
+  @Test
+  public void testInvalidChunkAndExpiration() throws Exception
+  {
+    SnapshotChunkCache cache = new SnapshotChunkCache(1000, 0);
+    AtomicInteger loadsNum = new AtomicInteger();
+
+    //chunks with invalid events are not cached
+    SnapshotChunkCache.Chunk invalid = createChunk(0, 5, 10, 4);
+    Assert.assertFalse(invalid.isCacheable());
+    Assert.assertSame(cache.getOrLoad(createKey(0), createLoader(invalid, loadsNum)), invalid);
+    Assert.assertEquals(cache.getChunksNum(), 0);
+
+    SnapshotChunkCache.Chunk c10 = createChunk(10, 5, 10, 5);
+    cache.getOrLoad(createKey(10), createLoader(c10, loadsNum));
+    Assert.assertEquals(cache.getChunksNum(), 1);
+    Thread.sleep(5);
+    cache.getOrLoad(createKey(10), createLoader(c10, loadsNum));
+    Assert.assertEquals(loadsNum.get(), 3);
+  }
+
+  @Test
+  public void testConcurrentLoad() throws Exception
+  {
+    final SnapshotChunkCache cache = new SnapshotChunkCache(1000, 60000);
+    final AtomicInteger loadsNum = new AtomicInteger();
+    final CountDownLatch loadStarted = new CountDownLatch(1);
+    final CountDownLatch loadAllowed = new CountDownLatch(1);
+    final SnapshotChunkCache.Chunk chunk = createChunk(0, 10, 10, 10);
+    final Callable<SnapshotChunkCache.Chunk> slowLoader = new Callable<SnapshotChunkCache.Chunk>()
+    {
+      @Override
+      public SnapshotChunkCache.Chunk call() throws Exception
+      {
+        loadsNum.incrementAndGet();
+        loadStarted.countDown();
+        loadAllowed.await();
+        return chunk;
+      }
+    };
+
+    final AtomicReference<SnapshotChunkCache.Chunk> firstResult = new AtomicReference<SnapshotChunkCache.Chunk>();
+    Thread firstReader = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          firstResult.set(cache.getOrLoad(createKey(0), slowLoader));
+        }
+        catch (Exception e)
+        {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    firstReader.start();
+    Assert.assertTrue(loadStarted.await(10, TimeUnit.SECONDS));
+
+    final AtomicReference<SnapshotChunkCache.Chunk> secondResult = new AtomicReference<SnapshotChunkCache.Chunk>();
+    Thread secondReader = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          secondResult.set(cache.getOrLoad(createKey(0), slowLoader));
+        }
+        catch (Exception e)
+        {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    secondReader.start();
+    Thread.sleep(50);
+    Assert.assertNull(secondResult.get());
+
+    loadAllowed.countDown();
+    firstReader.join(10000);
+    secondReader.join(10000);
+    Assert.assertSame(firstResult.get(), chunk);
+    Assert.assertSame(secondResult.get(), chunk);
+    Assert.assertEquals(loadsNum.get(), 1);
+  }
+
+  @Test
+  public void testLoadFailure() throws Exception
+  {
+    SnapshotChunkCache cache = new SnapshotChunkCache(1000, 60000);
+    Callable<SnapshotChunkCache.Chunk> failingLoader = new Callable<SnapshotChunkCache.Chunk>()
+    {
+      @Override
+      public SnapshotChunkCache.Chunk call() throws SQLException
+      {
+        throw new SQLException("test failure");
+      }
+    };
+
+    try
+    {
+      cache.getOrLoad(createKey(0), failingLoader);
+      Assert.fail("SQLException expected");
+    }
+    catch (SQLException e)
+    {
+      Assert.assertEquals(e.getMessage(), "test failure");
+    }
+
+    //the failure is not cached
+    AtomicInteger loadsNum = new AtomicInteger();
+    SnapshotChunkCache.Chunk chunk = createChunk(0, 10, 10, 10);
+    Assert.assertSame(cache.getOrLoad(createKey(0), createLoader(chunk, loadsNum)), chunk);
+    Assert.assertEquals(loadsNum.get(), 1);
+  }
+
+  /** Requests with close start SCNs must use the same snapshot SCN to share chunks */
+  @Test
+  public void testSharedStartScn() throws Exception
+  {
+    SnapshotChunkCache cache = new SnapshotChunkCache(1000, 60000);
+    AtomicInteger loadsNum = new AtomicInteger();
+
+    Assert.assertEquals(cache.getSharedStartScn(1, 100), 100);
+    //an older client reads the snapshot as of the shared SCN
+    Assert.assertEquals(cache.getSharedStartScn(1, 90), 100);
+    //other sources are independent
+    Assert.assertEquals(cache.getSharedStartScn(2, 50), 50);
+
+    SnapshotChunkCache.Chunk c0 = createChunk(0, 10, 10, 10);
+    long scn1 = cache.getSharedStartScn(1, 95);
+    Assert.assertSame(cache.getOrLoad(new SnapshotChunkCache.Key(1, QUERY, 0, scn1, 0, 10),
+                                      createLoader(c0, loadsNum)), c0);
+    long scn2 = cache.getSharedStartScn(1, 99);
+    Assert.assertSame(cache.getOrLoad(new SnapshotChunkCache.Key(1, QUERY, 0, scn2, 0, 10),
+                                      createLoader(c0, loadsNum)), c0);
+    Assert.assertEquals(loadsNum.get(), 1);
+    Assert.assertEquals(cache.getHitsNum(), 1);
+
+    //a newer client must never read a snapshot older than its start SCN
+    Assert.assertEquals(cache.getSharedStartScn(1, 120), 120);
+    Assert.assertEquals(cache.getSharedStartScn(1, 110), 120);
+  }
+}
@@ -40,6 +40,7 @@ import com.linkedin.databus.bootstrap.utils.bst_reader.filter.PayloadFieldEqFilt
 import com.linkedin.databus.bootstrap.utils.bst_reader.filter.PayloadFieldGtFilter;
 import com.linkedin.databus.bootstrap.utils.bst_reader.filter.PayloadFieldLtFilter;
 import com.linkedin.databus.core.BaseCli;
+import com.linkedin.databus.core.DbusEventPayloadDictionaries;
 import com.linkedin.databus.core.util.InvalidConfigException;
 import com.linkedin.databus2.schemas.FileSystemVersionedSchemaSetProvider;
 import com.linkedin.databus2.schemas.ResourceVersionedSchemaSetProvider;
@@ -77,6 +78,10 @@ public class BootstrapReaderV2Main
     public static final String SRCNAME_OPT_NAME = "srcname";
     public static final String SCHEMAS_PATH_OPT_NAME = "schemas_registry";
     public static final String PAYLOAD_COND_OPT_NAME = "payload_matches";
+    public static final String EXPORT_DIR_OPT_NAME = "export_dir";
+    public static final String THREADS_OPT_NAME = "threads";
+    public static final String PAYLOAD_DICTIONARIES_OPT_NAME = "payload_dictionaries";
+    private static final int EXPORT_QUERY_BATCH_SIZE = 10000;
 
     private static final Pattern PAYLOAD_COND_REGEX = Pattern.compile("(\\w+)(<=|<|>|>=|==|!=|~)(.+)");
 
@@ -87,6 +92,9 @@ public class BootstrapReaderV2Main
     private final List<String> _tableNames = new ArrayList<String>();
     private final List<BootstrapReaderFilter> _eventFilters =
         new ArrayList<BootstrapReaderFilter>();
+    private File _exportDir = null;
+    private int _threadsNum = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private DbusEventPayloadDictionaries _payloadDictionaries = new DbusEventPayloadDictionaries();
     private VersionedSchemaSetProvider _schemaSetProvider =
         new ResourceVersionedSchemaSetProvider(this.getClass().getClassLoader());
 
@@ -129,6 +137,14 @@ public class BootstrapReaderV2Main
            .addLine("-H example.host.com --with-snaptshot-table --with-log-tables 100,200  " +
                     "--srcid 201 --payload_matches key>123 --payload_matches isDeleted==N")
            .addLine()
+           .addLine("* Export the records in tab_201 with scn >= 1000 and isDeleted == N into " +
+                    "Avro files in export_201/ using 8 threads")
+           .addLine()
+           .add("java ")
+           .add(BootstrapReaderV2Main.class.getName())
+           .addLine("-H example.host.com --with-snaptshot-table --srcid 201 --scns 1000, " +
+                    "--payload_matches isDeleted==N --export_dir export_201 --threads 8")
+           .addLine()
          .finish()
          .build();
     }
@@ -210,6 +226,25 @@ public class BootstrapReaderV2Main
                        .hasArg()
                        .withArgName("field_name<OP>constant")
                        .create(PAYLOAD_COND_OPT_NAME));
+      _cliOptions.addOption(
+          OptionBuilder.withDescription("export the matching records as Avro files to the given " +
+                                        "directory instead of printing them; each table is split " +
+                                        "into id ranges which are read in parallel")
+                       .hasArg()
+                       .withArgName("dir")
+                       .create(EXPORT_DIR_OPT_NAME));
+      _cliOptions.addOption(
+          OptionBuilder.withDescription("number of export threads (one output file per thread); " +
+                                        "default is the number of CPUs")
+                       .hasArg()
+                       .withArgName("num")
+                       .create(THREADS_OPT_NAME));
+      _cliOptions.addOption(
+          OptionBuilder.withDescription("dictionaries to decompress compressed payloads with: a " +
+                                        "comma-separated list of srcId:schemaVersion:path")
+                       .hasArg()
+                       .withArgName("dictionaries")
+                       .create(PAYLOAD_DICTIONARIES_OPT_NAME));
     }
 
     @Override
@@ -240,6 +275,10 @@ public class BootstrapReaderV2Main
       {
         return false;
       }
+      if (!processExport())
+      {
+        return false;
+      }
 
       return true;
     }
@@ -506,6 +545,56 @@ public class BootstrapReaderV2Main
       return true;
     }
 
+    private boolean processExport()
+    {
+      if (_cmd.hasOption(THREADS_OPT_NAME))
+      {
+        try
+        {
+          _threadsNum = Integer.parseInt(_cmd.getOptionValue(THREADS_OPT_NAME));
+        }
+        catch (NumberFormatException e)
+        {
+          printError("invalid number of threads: " + _cmd.getOptionValue(THREADS_OPT_NAME), false);
+          return false;
+        }
+        if (_threadsNum <= 0)
+        {
+          printError("invalid number of threads: " + _threadsNum, false);
+          return false;
+        }
+      }
+      if (_cmd.hasOption(EXPORT_DIR_OPT_NAME))
+      {
+        _exportDir = new File(_cmd.getOptionValue(EXPORT_DIR_OPT_NAME));
+        if (_exportDir.exists() && !_exportDir.isDirectory())
+        {
+          printError("not a directory: " + _exportDir, false);
+          return false;
+        }
+        _bstCfg.setBootstrapBatchSize(EXPORT_QUERY_BATCH_SIZE);
+      }
+      if (_cmd.hasOption(PAYLOAD_DICTIONARIES_OPT_NAME))
+      {
+        String spec = _cmd.getOptionValue(PAYLOAD_DICTIONARIES_OPT_NAME);
+        try
+        {
+          _payloadDictionaries = DbusEventPayloadDictionaries.load(spec);
+        }
+        catch (IOException e)
+        {
+          printError("unable to load payload dictionaries " + spec + ": " + e.getMessage(), false);
+          return false;
+        }
+        catch (IllegalArgumentException e)
+        {
+          printError("invalid payload dictionaries: " + e.getMessage(), false);
+          return false;
+        }
+      }
+      return true;
+    }
+
     public BootstrapReadOnlyConfig getBstCfg() throws InvalidConfigException
     {
       return _bstCfg.build();
@@ -530,6 +619,23 @@ public class BootstrapReaderV2Main
     {
       return _schemaSetProvider.loadSchemas();
     }
+
+    /** the dictionaries to decompress compressed payloads with */
+    public DbusEventPayloadDictionaries getPayloadDictionaries()
+    {
+      return _payloadDictionaries;
+    }
+
+    /** the directory to export to or null to print the records */
+    public File getExportDir()
+    {
+      return _exportDir;
+    }
+
+    public int getThreadsNum()
+    {
+      return _threadsNum;
+    }
   }
 
   public static void main(String[] args) throws Exception
@@ -540,6 +646,21 @@ public class BootstrapReaderV2Main
       System.exit(1);
     }
 
+    if (null != cli.getExportDir())
+    {
+      VersionedSchemaSet schemaSet = cli.getSchemaSet();
+      for (String table: cli.getTableNames())
+      {
+        LOG.info("exporting table " + table);
+        BootstrapTableExporter exporter =
+            new BootstrapTableExporter(table, cli.getMetadataFilters(), schemaSet,
+                                       cli.getEventFilters(), cli.getBstCfg(), cli.getExportDir(),
+                                       cli.getThreadsNum(), cli.getPayloadDictionaries(), null);
+        exporter.execute();
+      }
+      return;
+    }
+
     BootstrapReaderEventHandler eventHandler = new BootstrapDBReader.DumpEventHandler();
 
     for (String table: cli.getTableNames())
@@ -0,0 +1,459 @@
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package com.linkedin.databus.bootstrap.utils.bst_reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.Encoder;
+import org.apache.log4j.Logger;
+
+import com.linkedin.databus.bootstrap.common.BootstrapConn;
+import com.linkedin.databus.bootstrap.common.BootstrapReadOnlyConfig;
+import com.linkedin.databus.bootstrap.utils.bst_reader.filter.BootstrapReaderFilter;
+import com.linkedin.databus.client.DbusEventAvroDecoder;
+import com.linkedin.databus.client.DbusEventLazyRecord;
+import com.linkedin.databus.core.DbusEventFactory;
+import com.linkedin.databus.core.DbusEventInternalReadable;
+import com.linkedin.databus.core.DbusEventPayloadCompressor;
+import com.linkedin.databus.core.DbusEventPayloadDictionaries;
+import com.linkedin.databus.core.DbusEventV1Factory;
+import com.linkedin.databus2.schemas.VersionedSchema;
+import com.linkedin.databus2.schemas.VersionedSchemaSet;
+import com.linkedin.databus2.util.DBHelper;
+
+/**
+ * Exports the payloads of a bootstrap table into Avro container files using several threads.
+ *
+ * <p>The id (rid) span of the table is split into ranges which are pulled from a shared queue by
+ * the worker threads; each worker has its own bootstrap DB connection and writes its own shard
+ * file <code>&lt;table&gt;_&lt;worker&gt;.avro</code> in the output directory. The key and SCN
+ * filters are evaluated by MySQL. Payloads are decoded only to evaluate payload filters (and then
+ * only the fields the filters access) or to convert an older schema version to the latest one;
+ * payloads serialized with the latest schema are copied into the shard files as they are.
+ */
+public class BootstrapTableExporter
+{
+  public static final int DEFAULT_RANGES_PER_THREAD = 8;
+
+  private final String _tableName;
+  private final MetaDataFilters _metadataFilters;
+  private final VersionedSchemaSet _schemaSet;
+  private final DbusEventAvroDecoder _decoder;
+  private final DbusEventPayloadDictionaries _payloadDictionaries;
+  private final List<BootstrapReaderFilter> _eventFilters;
+  private final BootstrapReadOnlyConfig _bstConfig;
+  private final File _outputDir;
+  private final int _threadsNum;
+  private final Logger _log;
+  private final String _queryString;
+  private final ConcurrentLinkedQueue<long[]> _ranges = new ConcurrentLinkedQueue<long[]>();
+  private final AtomicLong _scannedNum = new AtomicLong(0);
+  private final AtomicLong _exportedNum = new AtomicLong(0);
+  private volatile Exception _error = null;
+
+  public BootstrapTableExporter(String tableName,
+                                MetaDataFilters metadataFilters,
+                                VersionedSchemaSet schemaSet,
+                                List<BootstrapReaderFilter> eventFilters,
+                                BootstrapReadOnlyConfig bstConfig,
+                                File outputDir,
+                                int threadsNum,
+                                Logger log)
+  {
+    this(tableName, metadataFilters, schemaSet, eventFilters, bstConfig, outputDir, threadsNum,
+         new DbusEventPayloadDictionaries(), log);
+  }
+
+  public BootstrapTableExporter(String tableName,
+                                MetaDataFilters metadataFilters,
+                                VersionedSchemaSet schemaSet,
+                                List<BootstrapReaderFilter> eventFilters,
+                                BootstrapReadOnlyConfig bstConfig,
+                                File outputDir,
+                                int threadsNum,
+                                DbusEventPayloadDictionaries payloadDictionaries,
+                                Logger log)
+  {
+    _log = null != log ? log : Logger.getLogger(BootstrapTableExporter.class);
+    _tableName = tableName;
+    _metadataFilters = metadataFilters;
+    _schemaSet = schemaSet;
+    _payloadDictionaries = payloadDictionaries;
+    _decoder = new DbusEventAvroDecoder(schemaSet, null, payloadDictionaries);
+    _eventFilters = new ArrayList<BootstrapReaderFilter>(eventFilters);
+    _bstConfig = bstConfig;
+    _outputDir = outputDir;
+    _threadsNum = threadsNum;
+    _queryString = createQueryString();
+  }
+
+  /**
+   * Exports the table and waits for all workers to finish
+   * @return the number of exported events
+   */
+  public long execute() throws SQLException, IOException, InterruptedException
+  {
+    long[] idSpan = getIdSpan();
+    if (idSpan[1] < idSpan[0])
+    {
+      _log.info("table " + _tableName + " is empty");
+      return 0;
+    }
+    if (!_outputDir.exists() && !_outputDir.mkdirs())
+    {
+      throw new IOException("unable to create output directory: " + _outputDir.getAbsolutePath());
+    }
+
+    long rangesNum = (long)_threadsNum * DEFAULT_RANGES_PER_THREAD;
+    long rangeSize = Math.max(1, (idSpan[1] - idSpan[0] + rangesNum) / rangesNum);
+    for (long start = idSpan[0] - 1; start < idSpan[1]; start += rangeSize)
+    {
+      _ranges.add(new long[]{start, Math.min(start + rangeSize, idSpan[1])});
+    }
+    _log.info("exporting " + _tableName + " ids [" + idSpan[0] + ", " + idSpan[1] + "] in " +
+              _ranges.size() + " ranges with " + _threadsNum + " threads: " + _queryString);
+
+    long startTs = System.currentTimeMillis();
+    List<ExportWorker> workers = new ArrayList<ExportWorker>(_threadsNum);
+    for (int i = 0; i < _threadsNum; ++i)
+    {
+      ExportWorker worker = new ExportWorker(i);
+      workers.add(worker);
+      worker.start();
+    }
+    for (ExportWorker worker: workers)
+    {
+      worker.join();
+    }
+
+    if (null != _error)
+    {
+      if (_error instanceof SQLException) throw (SQLException)_error;
+      if (_error instanceof IOException) throw (IOException)_error;
+      throw new IOException("export of " + _tableName + " failed: " + _error.getMessage(), _error);
+    }
+    _log.info("exported " + _tableName + ": scanned=" + _scannedNum.get() + " exported=" +
+              _exportedNum.get() + " elapsed, ms=" + (System.currentTimeMillis() - startTs));
+    return _exportedNum.get();
+  }
+
+  public long getScannedNum()
+  {
+    return _scannedNum.get();
+  }
+
+  public long getExportedNum()
+  {
+    return _exportedNum.get();
+  }
+
+  private long[] getIdSpan() throws SQLException
+  {
+    BootstrapConn conn = createBstConnection();
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try
+    {
+      stmt = conn.getDBConn().prepareStatement("SELECT min(id), max(id) FROM " + _tableName);
+      rs = stmt.executeQuery();
+      if (!rs.next()) return new long[]{1, 0};
+      long minId = rs.getLong(1);
+      return rs.wasNull() ? new long[]{1, 0} : new long[]{minId, rs.getLong(2)};
+    }
+    finally
+    {
+      DBHelper.close(rs);
+      DBHelper.close(stmt);
+      conn.close();
+    }
+  }
+
+  private BootstrapConn createBstConnection() throws SQLException
+  {
+    BootstrapConn bstConn = new BootstrapConn();
+    try
+    {
+      bstConn.initBootstrapConn(true,
+                                _bstConfig.getBootstrapDBUsername(),
+                                _bstConfig.getBootstrapDBPassword(),
+                                _bstConfig.getBootstrapDBHostname(),
+                                _bstConfig.getBootstrapDBName());
+    }
+    catch (InstantiationException e)
+    {
+      throw new SQLException("unable to load the JDBC driver: " + e.getMessage(), e);
+    }
+    catch (IllegalAccessException e)
+    {
+      throw new SQLException("unable to load the JDBC driver: " + e.getMessage(), e);
+    }
+    catch (ClassNotFoundException e)
+    {
+      throw new SQLException("unable to load the JDBC driver: " + e.getMessage(), e);
+    }
+    return bstConn;
+  }
+
+  /** The range query; the metadata filters are bound as parameters by {@link #bindQuery} */
+  private String createQueryString()
+  {
+    StringBuilder sql = new StringBuilder();
+
+    sql.append("SELECT id,val FROM ").append(_tableName).append(" WHERE id > ? AND id <= ?");
+    if (null != _metadataFilters.getMinKey())
+    {
+      sql.append(" AND srckey >= ?");
+    }
+    if (null != _metadataFilters.getMaxKey())
+    {
+      sql.append(" AND srckey <= ?");
+    }
+    if (0 < _metadataFilters.getMinScn())
+    {
+      sql.append(" AND scn >= ?");
+    }
+    if (0 < _metadataFilters.getMaxScn())
+    {
+      sql.append(" AND scn <= ?");
+    }
+
+    sql.append(" ORDER BY id LIMIT ?");
+
+    return sql.toString();
+  }
+
+  private void bindQuery(PreparedStatement query, long afterId, long endId) throws SQLException
+  {
+    int paramIdx = 1;
+    query.setLong(paramIdx++, afterId);
+    query.setLong(paramIdx++, endId);
+    if (null != _metadataFilters.getMinKey())
+    {
+      query.setString(paramIdx++, _metadataFilters.getMinKey());
+    }
+    if (null != _metadataFilters.getMaxKey())
+    {
+      query.setString(paramIdx++, _metadataFilters.getMaxKey());
+    }
+    if (0 < _metadataFilters.getMinScn())
+    {
+      query.setLong(paramIdx++, _metadataFilters.getMinScn());
+    }
+    if (0 < _metadataFilters.getMaxScn())
+    {
+      query.setLong(paramIdx++, _metadataFilters.getMaxScn());
+    }
+    query.setLong(paramIdx++, _bstConfig.getBootstrapBatchSize());
+  }
+
+  /**
+   * Writes either an already serialized payload (a ByteBuffer) as is or a GenericRecord with the
+   * file schema.
+   */
+  private static class PayloadDatumWriter implements DatumWriter<Object>
+  {
+    private final GenericDatumWriter<Object> _recordWriter = new GenericDatumWriter<Object>();
+
+    @Override
+    public void setSchema(Schema schema)
+    {
+      _recordWriter.setSchema(schema);
+    }
+
+    @Override
+    public void write(Object datum, Encoder out) throws IOException
+    {
+      if (datum instanceof ByteBuffer)
+      {
+        ByteBuffer payload = (ByteBuffer)datum;
+        out.writeFixed(payload.array(), payload.arrayOffset() + payload.position(),
+                       payload.remaining());
+      }
+      else
+      {
+        _recordWriter.write(datum, out);
+      }
+    }
+  }
+
+  private class ExportWorker extends Thread
+  {
+    private final int _workerId;
+    private final DbusEventFactory _eventFactory = new DbusEventV1Factory();
+    /** readers converting older schema versions to the file schema, by writer schema version */
+    private final HashMap<VersionedSchema, GenericDatumReader<GenericRecord>> _readers =
+        new HashMap<VersionedSchema, GenericDatumReader<GenericRecord>>();
+    private DataFileWriter<Object> _fileWriter;
+    private VersionedSchema _fileSchema;
+    private DbusEventLazyRecord _lazyRecord;
+    private BinaryDecoder _binDecoder;
+
+    ExportWorker(int workerId)
+    {
+      super("bst-export-" + _tableName + "-" + workerId);
+      _workerId = workerId;
+    }
+
+    @Override
+    public void run()
+    {
+      BootstrapConn bstConn = null;
+      PreparedStatement query = null;
+      try
+      {
+        bstConn = createBstConnection();
+        query = bstConn.getDBConn().prepareStatement(_queryString);
+        DbusEventInternalReadable event = null;
+
+        long[] range;
+        while (null == _error && null != (range = _ranges.poll()))
+        {
+          long curId = range[0];
+          boolean hasMore = true;
+          while (hasMore && null == _error)
+          {
+            bindQuery(query, curId, range[1]);
+            ResultSet rs = query.executeQuery();
+            try
+            {
+              hasMore = false;
+              while (rs.next())
+              {
+                hasMore = true;
+                curId = rs.getLong(1);
+                ByteBuffer buffer = ByteBuffer.wrap(rs.getBytes(2));
+                event = null == event ? _eventFactory.createReadOnlyDbusEventFromBuffer(buffer, 0)
+                                      : event.reset(buffer, 0);
+                _scannedNum.incrementAndGet();
+                if (export(event)) _exportedNum.incrementAndGet();
+              }
+            }
+            finally
+            {
+              rs.close();
+            }
+          }
+          _log.debug(getName() + ": finished range (" + range[0] + ", " + range[1] + "]");
+        }
+      }
+      catch (Exception e)
+      {
+        _log.error(getName() + ": export failed: " + e.getMessage(), e);
+        if (null == _error) _error = e;
+      }
+      finally
+      {
+        if (null != _fileWriter)
+        {
+          try
+          {
+            _fileWriter.close();
+          }
+          catch (IOException e)
+          {
+            _log.error(getName() + ": unable to close the output: " + e.getMessage(), e);
+            if (null == _error) _error = e;
+          }
+        }
+        DBHelper.close(query);
+        if (null != bstConn) bstConn.close();
+      }
+    }
+
+    private boolean export(DbusEventInternalReadable event) throws IOException
+    {
+      if (!_eventFilters.isEmpty())
+      {
+        // decode only the fields accessed by the filters
+        _lazyRecord = _decoder.getLazyGenericRecord(event, _lazyRecord);
+        for (BootstrapReaderFilter filter: _eventFilters)
+        {
+          if (! filter.matches(event, _lazyRecord))
+          {
+            return false;
+          }
+        }
+      }
+
+      VersionedSchema writerSchema = _decoder.getPayloadSchema(event);
+      if (null == writerSchema)
+      {
+        throw new IOException("no schema available to decode event " + event);
+      }
+      if (null == _fileWriter)
+      {
+        openShard(writerSchema);
+      }
+
+      ByteBuffer payload = DbusEventPayloadCompressor.getUncompressedValue(event, _payloadDictionaries);
+      if (_fileSchema.equals(writerSchema))
+      {
+        _fileWriter.append(payload);
+      }
+      else
+      {
+        GenericDatumReader<GenericRecord> reader = _readers.get(writerSchema);
+        if (null == reader)
+        {
+          reader = new GenericDatumReader<GenericRecord>(writerSchema.getSchema(),
+                                                         _fileSchema.getSchema());
+          _readers.put(writerSchema, reader);
+        }
+        _binDecoder = DecoderFactory.defaultFactory().createBinaryDecoder(
+            payload.array(), payload.arrayOffset() + payload.position(), payload.remaining(),
+            _binDecoder);
+        _fileWriter.append(reader.read(null, _binDecoder));
+      }
+      return true;
+    }
+
+    /** The shard is written with the latest version of the source schema */
+    private void openShard(VersionedSchema writerSchema) throws IOException
+    {
+      _fileSchema = _schemaSet.getLatestVersionByName(writerSchema.getSchemaBaseName());
+      if (null == _fileSchema)
+      {
+        _fileSchema = writerSchema;
+      }
+      File shardFile = new File(_outputDir, _tableName + "_" + _workerId + ".avro");
+      _log.info(getName() + ": writing " + shardFile.getAbsolutePath() + " with schema " +
+                _fileSchema.getId());
+      _fileWriter = new DataFileWriter<Object>(new PayloadDatumWriter());
+      _fileWriter.create(_fileSchema.getSchema(), shardFile);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.linkedin.databus.client.pub;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+
+/**
+ * An optional interface for stream consumers that can process data events in batches.
+ *
+ * <p>If a consumer registered with the client implements both {@link DatabusCombinedConsumer} and
+ * this interface, and the connection has consumer callback batching enabled (see
+ * <code>consumerCallbackBatchSize</code> in the connection configuration), the client library
+ * calls {@link #onDataEventBatch(DbusEventBatch, DbusEventDecoder)} instead of
+ * {@link DatabusStreamConsumer#onDataEvent}. All other callbacks are
+ * delivered as usual. A batch never spans event windows or sources: all events of a batch are
+ * delivered before the onEndSource() or onEndDataEventSequence() callback that follows them.
+ *
+ * <p>Consumers that do not implement the interface still have batches of events delivered in a
+ * single task through one onDataEvent() call per event.
+ */
+public interface DatabusStreamBatchConsumer
+{
+  /**
+   * Denotes a batch of new data events.
+   *
+   * @param  batch              provides access to the data events in the batch; see
+   *                            {@link DbusEventBatch} for restrictions on its use
+   * @param  eventDecoder       A converter that can be used for access to the SpecificRecord
+   *                            version of the event payloads.
+   *
+   * @return the callback result code for the whole batch; ERROR causes a rollback
+   * @exception RuntimeException exceptions are treated as a return code  ERROR
+   */
+  ConsumerCallbackResult onDataEventBatch(DbusEventBatch batch, DbusEventDecoder eventDecoder);
+}
@@ -0,0 +1,43 @@
+package com.linkedin.databus.client.pub;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+
+import com.linkedin.databus.core.DbusEvent;
+
+/**
+ * A read-only view over a sequence of consecutive data events from the same event window and
+ * the same source, as passed to {@link DatabusStreamBatchConsumer#onDataEventBatch(DbusEventBatch, DbusEventDecoder)}.
+ *
+ * <b>IMPORTANT:</b> The batch and the event objects it returns are reused by the client library
+ * after the callback returns. The consumer should not save references to them and should copy any
+ * data it needs before returning from the callback.
+ */
+public interface DbusEventBatch
+{
+  /** The number of events in the batch */
+  int size();
+
+  /**
+   * Returns the event at the given position in the batch
+   * @param  index      the position of the event; must be in [0, size())
+   */
+  DbusEvent getEvent(int index);
+}
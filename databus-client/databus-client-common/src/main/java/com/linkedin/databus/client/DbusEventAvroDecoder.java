@@ -27,6 +27,7 @@ import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericDatumReader;
@@ -49,6 +50,8 @@ import com.linkedin.databus.client.pub.DbusEventDecoder;
 import com.linkedin.databus.core.DatabusRuntimeException;
 import com.linkedin.databus.core.DbusEvent;
 import com.linkedin.databus.core.DbusEventPart;
+import com.linkedin.databus.core.DbusEventPayloadCompressor;
+import com.linkedin.databus.core.DbusEventPayloadDictionaries;
 import com.linkedin.databus2.schemas.SchemaId;
 import com.linkedin.databus2.schemas.SchemaRegistryService;
 import com.linkedin.databus2.schemas.VersionedSchema;
@@ -67,6 +70,11 @@ public class DbusEventAvroDecoder implements DbusEventDecoder
 
   private final VersionedSchemaSet _schemaSet;
   private final VersionedSchemaSet _metadataSchemaSet;
+  /** the dictionaries to decompress compressed payloads with */
+  private final DbusEventPayloadDictionaries _payloadDictionaries;
+  /** precomputed layouts of the payload schemas for lazy records */
+  private final ConcurrentHashMap<SchemaId, DbusEventLazyRecord.Layout> _lazyRecordLayouts =
+      new ConcurrentHashMap<SchemaId, DbusEventLazyRecord.Layout>();
 
   public DbusEventAvroDecoder(VersionedSchemaSet schemaSet)
   {
@@ -74,10 +82,27 @@ public class DbusEventAvroDecoder implements DbusEventDecoder
   }
 
   public DbusEventAvroDecoder(VersionedSchemaSet schemaSet, VersionedSchemaSet metadataSchemaSet)
+  {
+    this(schemaSet, metadataSchemaSet, new DbusEventPayloadDictionaries());
+  }
+
+  /**
+   * @param payloadDictionaries   the dictionaries to decompress compressed payloads with; usually
+   *                              the dictionaries of the event buffer the events come from
+   */
+  public DbusEventAvroDecoder(VersionedSchemaSet schemaSet, VersionedSchemaSet metadataSchemaSet,
+                              DbusEventPayloadDictionaries payloadDictionaries)
   {
     super();
     _schemaSet = schemaSet;
     _metadataSchemaSet = metadataSchemaSet;
+    _payloadDictionaries = payloadDictionaries;
+  }
+
+  /** @return the dictionaries to decompress compressed payloads with */
+  public DbusEventPayloadDictionaries getPayloadDictionaries()
+  {
+    return _payloadDictionaries;
   }
 
   @Override
@@ -94,7 +119,58 @@ public class DbusEventAvroDecoder implements DbusEventDecoder
       throw new DatabusRuntimeException("No schema available to decode event " + e);
     }
 
+    byte[] valueBytes = getValueBytes(e);
+
+    return getGenericRecord(valueBytes, writerSchema.getSchema(), reuse);
+  }
+
+  /**
+   * Returns a lazy view of the event payload which decodes fields only when they are accessed,
+   * directly from the event bytes. This avoids decoding (and allocating) the fields which the
+   * consumer does not read. The view is valid only until the consumer callback for the event
+   * returns; consumers that need to keep the record should use
+   * {@link #getGenericRecord(DbusEvent, GenericRecord)}.
+   *
+   * @param e       the Databus event whose payload is to be viewed
+   * @param reuse   an existing view object to be pointed to the event or null to allocate a new one
+   * @return the view; this will be either <b>reuse</b> or the newly allocated object
+   * @throws DatabusRuntimeException if the payload schema is missing
+   */
+  public DbusEventLazyRecord getLazyGenericRecord(DbusEvent e, DbusEventLazyRecord reuse)
+  {
+    byte[] md5 = new byte[16];
+    e.schemaId(md5);
+    SchemaId schemaId = new SchemaId(md5);
+    DbusEventLazyRecord.Layout layout = _lazyRecordLayouts.get(schemaId);
+    if (null == layout)
+    {
+      VersionedSchema writerSchema = _schemaSet.getById(schemaId);
+      if (null == writerSchema)
+      {
+        LOG.error("Unable to find schema for id " + schemaId + "; event = " + e);
+        throw new DatabusRuntimeException("No schema available to decode event " + e);
+      }
+      layout = new DbusEventLazyRecord.Layout(writerSchema.getSchema());
+      _lazyRecordLayouts.putIfAbsent(schemaId, layout);
+    }
+
+    ByteBuffer payload = DbusEventPayloadCompressor.getUncompressedValue(e, _payloadDictionaries);
+    DbusEventLazyRecord result = null != reuse ? reuse : new DbusEventLazyRecord();
+    result.wrap(layout, payload);
+
+    return result;
+  }
+
+  /**
+   * Returns the payload bytes of the event; compressed payloads are decompressed.
+   */
+  private byte[] getValueBytes(DbusEvent e)
+  {
     ByteBuffer valueBuffer = e.value();
+    if (e.isPayloadCompressed())
+    {
+      return DbusEventPayloadCompressor.decompress(valueBuffer, _payloadDictionaries);
+    }
 
     byte[] valueBytes = null;
     if (valueBuffer.hasArray())
@@ -106,8 +182,7 @@ public class DbusEventAvroDecoder implements DbusEventDecoder
       valueBytes = new byte[valueBuffer.remaining()];
       valueBuffer.get(valueBytes);
     }
-
-    return getGenericRecord(valueBytes, writerSchema.getSchema(), reuse);
+    return valueBytes;
   }
 
   /**
@@ -233,9 +308,7 @@ public class DbusEventAvroDecoder implements DbusEventDecoder
       throw new DatabusRuntimeException("No schema available to decode event " + e);
     }
 
-    ByteBuffer valueBuffer = e.value();
-    byte[] valueBytes = new byte[valueBuffer.remaining()];
-    valueBuffer.get(valueBytes);
+    byte[] valueBytes = getValueBytes(e);
     try
     {
       //JsonDecoder jsonDec = new JsonDecoder(sourceSchema.getSchema(),new ByteArrayInputStream(valueBytes));
@@ -257,9 +330,7 @@ public class DbusEventAvroDecoder implements DbusEventDecoder
     e.schemaId(md5);
     SchemaId schemaId = new SchemaId(md5);
     VersionedSchema sourceSchema = _schemaSet.getById(schemaId);
-    ByteBuffer valueBuffer = e.value();
-    byte[] valueBytes = new byte[valueBuffer.remaining()];
-    valueBuffer.get(valueBytes);
+    byte[] valueBytes = getValueBytes(e);
 
     try {
       Schema schema = sourceSchema.getSchema();
@@ -0,0 +1,378 @@
+package com.linkedin.databus.client;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.util.Utf8;
+
+import com.linkedin.databus.core.DatabusRuntimeException;
+
+/**
+ * A flyweight {@link GenericRecord} view over the Avro-serialized payload of a Databus event. The
+ * fields are decoded lazily on access directly from the payload bytes (which usually live in the
+ * client event buffer) and each decoded value is cached until the view is pointed to another
+ * payload. Consumers which read only a few fields of wide records do not pay for decoding the whole
+ * record.
+ *
+ * <p>The offsets of the leading fixed-width fields are precomputed once per schema; the offsets of
+ * the remaining fields are found by skipping over the preceding fields and are remembered for the
+ * current payload. Values of type <code>bytes</code> are returned as read-only slices of the
+ * payload without copying.
+ *
+ * <p>Since the view references the event buffer, it (and any <code>bytes</code> values obtained
+ * from it) is valid only until the consumer callback for the event returns. The view is not
+ * thread-safe. Values can be overridden with {@link #put(int, Object)} until the next payload.
+ *
+ * @see DbusEventAvroDecoder#getLazyGenericRecord(com.linkedin.databus.core.DbusEvent, DbusEventLazyRecord)
+ */
+public class DbusEventLazyRecord implements GenericRecord
+{
+  private static final Schema STRING_SCHEMA = Schema.create(Schema.Type.STRING);
+
+  private Layout _layout;
+  private ByteBuffer _payload;
+  /** the start offset of each field; valid for fields [0, _knownFieldsNum] */
+  private int[] _fieldOfs;
+  private int _knownFieldsNum;
+  /** decoded (or overridden) field values; valid if the corresponding stamp is current */
+  private Object[] _values;
+  private int[] _valueStamps;
+  private int _stamp;
+  /** the offset after the last read by the decoding methods */
+  private int _cursor;
+
+  /** Points the view to a new payload serialized with the writer schema of the given layout. */
+  void wrap(Layout layout, ByteBuffer payload)
+  {
+    if (_layout != layout)
+    {
+      _layout = layout;
+      final int fieldsNum = _layout.getFields().size();
+      _fieldOfs = new int[fieldsNum + 1];
+      _values = new Object[fieldsNum];
+      _valueStamps = new int[fieldsNum];
+      _stamp = 0;
+    }
+    //value stamps are never 0 after this, so a freshly allocated stamp array is invalid
+    if (++_stamp == 0) ++_stamp;
+    _payload = payload;
+
+    final int[] prefixOfs = _layout.getFixedPrefixOfs();
+    final int base = payload.position();
+    for (int i = 0; i < prefixOfs.length; ++i)
+    {
+      _fieldOfs[i] = base + prefixOfs[i];
+    }
+    _knownFieldsNum = prefixOfs.length - 1;
+  }
+
+  @Override
+  public Schema getSchema()
+  {
+    return _layout.getSchema();
+  }
+
+  @Override
+  public void put(int i, Object v)
+  {
+    _values[i] = v;
+    _valueStamps[i] = _stamp;
+  }
+
+  @Override
+  public Object get(int i)
+  {
+    if (_valueStamps[i] != _stamp)
+    {
+      final Field field = _layout.getFields().get(i);
+      try
+      {
+        _values[i] = decode(field.schema(), getFieldOffset(i));
+      }
+      catch (RuntimeException e)
+      {
+        throw new DatabusRuntimeException("unable to decode field " + field.name() + " of " +
+                                          getSchema().getFullName(), e);
+      }
+      _valueStamps[i] = _stamp;
+    }
+    return _values[i];
+  }
+
+  @Override
+  public void put(String key, Object v)
+  {
+    Field field = getSchema().getField(key);
+    if (null == field)
+    {
+      throw new DatabusRuntimeException("unknown field: " + key);
+    }
+    put(field.pos(), v);
+  }
+
+  @Override
+  public Object get(String key)
+  {
+    Field field = getSchema().getField(key);
+    return null == field ? null : get(field.pos());
+  }
+
+  @Override
+  public String toString()
+  {
+    return GenericData.get().toString(this);
+  }
+
+  /** Finds the start offset of field i, skipping over the preceding fields if necessary */
+  private int getFieldOffset(int i)
+  {
+    final List<Field> fields = _layout.getFields();
+    while (_knownFieldsNum < i)
+    {
+      _fieldOfs[_knownFieldsNum + 1] = skip(fields.get(_knownFieldsNum).schema(),
+                                            _fieldOfs[_knownFieldsNum]);
+      ++_knownFieldsNum;
+    }
+    return _fieldOfs[i];
+  }
+
+  private Object decode(Schema schema, int ofs)
+  {
+    switch (schema.getType())
+    {
+      case NULL: return null;
+      case BOOLEAN: return _payload.get(ofs) != 0;
+      case INT: return (int)readLong(ofs);
+      case LONG: return readLong(ofs);
+      case FLOAT: return Float.intBitsToFloat(readFixedInt(ofs));
+      case DOUBLE:
+      {
+        long bits = (readFixedInt(ofs) & 0xFFFFFFFFL) | ((long)readFixedInt(ofs + 4) << 32);
+        return Double.longBitsToDouble(bits);
+      }
+      case STRING:
+      {
+        int len = (int)readLong(ofs);
+        return new Utf8(copyBytes(_cursor, _cursor + len));
+      }
+      case BYTES:
+      {
+        int len = (int)readLong(ofs);
+        ByteBuffer result = _payload.asReadOnlyBuffer();
+        result.limit(_cursor + len).position(_cursor);
+        return result.slice();
+      }
+      case UNION:
+      {
+        int branch = (int)readLong(ofs);
+        return decode(schema.getTypes().get(branch), _cursor);
+      }
+      default:
+      {
+        //complex types are rare in Databus payloads; decode them through Avro
+        byte[] bytes = copyBytes(ofs, skip(schema, ofs));
+        try
+        {
+          BinaryDecoder decoder = DecoderFactory.defaultFactory().createBinaryDecoder(bytes, null);
+          return new GenericDatumReader<Object>(schema).read(null, decoder);
+        }
+        catch (IOException e)
+        {
+          throw new DatabusRuntimeException("error decoding " + schema.getType() + " value", e);
+        }
+      }
+    }
+  }
+
+  /** @return the offset after a serialized value of the given schema */
+  private int skip(Schema schema, int ofs)
+  {
+    switch (schema.getType())
+    {
+      case NULL: return ofs;
+      case BOOLEAN: return ofs + 1;
+      case INT: case LONG: case ENUM: readLong(ofs); return _cursor;
+      case FLOAT: return ofs + 4;
+      case DOUBLE: return ofs + 8;
+      case FIXED: return ofs + schema.getFixedSize();
+      case STRING: case BYTES:
+      {
+        long len = readLong(ofs);
+        return _cursor + (int)len;
+      }
+      case UNION:
+      {
+        int branch = (int)readLong(ofs);
+        return skip(schema.getTypes().get(branch), _cursor);
+      }
+      case RECORD:
+      {
+        int pos = ofs;
+        for (Field f: schema.getFields())
+        {
+          pos = skip(f.schema(), pos);
+        }
+        return pos;
+      }
+      case ARRAY: case MAP:
+      {
+        int pos = ofs;
+        long count = readLong(pos);
+        pos = _cursor;
+        while (0 != count)
+        {
+          if (count < 0)
+          {
+            //negative count is followed by the block size in bytes
+            long blockSize = readLong(pos);
+            pos = _cursor + (int)blockSize;
+          }
+          else
+          {
+            for (long i = 0; i < count; ++i)
+            {
+              if (schema.getType() == Schema.Type.MAP)
+              {
+                pos = skip(STRING_SCHEMA, pos);
+                pos = skip(schema.getValueType(), pos);
+              }
+              else
+              {
+                pos = skip(schema.getElementType(), pos);
+              }
+            }
+          }
+          count = readLong(pos);
+          pos = _cursor;
+        }
+        return pos;
+      }
+      default: throw new DatabusRuntimeException("unsupported type: " + schema.getType());
+    }
+  }
+
+  /** Reads a zig-zag encoded variable-length int or long; sets {@link #_cursor} after it. */
+  private long readLong(int ofs)
+  {
+    long n = 0;
+    int shift = 0;
+    int pos = ofs;
+    int b;
+    do
+    {
+      if (shift > 63)
+      {
+        throw new DatabusRuntimeException("invalid long encoding at offset " + ofs);
+      }
+      b = _payload.get(pos++) & 0xFF;
+      n |= (long)(b & 0x7F) << shift;
+      shift += 7;
+    }
+    while (0 != (b & 0x80));
+    _cursor = pos;
+
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  private byte[] copyBytes(int start, int end)
+  {
+    byte[] result = new byte[end - start];
+    ByteBuffer src = _payload.duplicate();
+    src.limit(end).position(start);
+    src.get(result);
+    return result;
+  }
+
+  /** Reads a little-endian 4-byte int */
+  private int readFixedInt(int ofs)
+  {
+    return (_payload.get(ofs) & 0xFF) | ((_payload.get(ofs + 1) & 0xFF) << 8) |
+           ((_payload.get(ofs + 2) & 0xFF) << 16) | ((_payload.get(ofs + 3) & 0xFF) << 24);
+  }
+
+  /** Per-schema precomputed information */
+  static class Layout
+  {
+    private final Schema _schema;
+    private final List<Field> _fields;
+    /** the relative offsets of the fields [0, N] where fields [0, N) have fixed serialized width */
+    private final int[] _fixedPrefixOfs;
+
+    public Layout(Schema schema)
+    {
+      if (schema.getType() != Schema.Type.RECORD)
+      {
+        throw new DatabusRuntimeException("record schema expected: " + schema.getFullName());
+      }
+      _schema = schema;
+      _fields = schema.getFields();
+
+      int prefixLen = 0;
+      while (prefixLen < _fields.size() && fixedWidth(_fields.get(prefixLen).schema()) >= 0)
+      {
+        ++prefixLen;
+      }
+      _fixedPrefixOfs = new int[prefixLen + 1];
+      for (int i = 0; i < prefixLen; ++i)
+      {
+        _fixedPrefixOfs[i + 1] = _fixedPrefixOfs[i] + fixedWidth(_fields.get(i).schema());
+      }
+    }
+
+    /** @return the serialized width of values of the schema or -1 if it is variable */
+    static int fixedWidth(Schema schema)
+    {
+      switch (schema.getType())
+      {
+        case NULL: return 0;
+        case BOOLEAN: return 1;
+        case FLOAT: return 4;
+        case DOUBLE: return 8;
+        case FIXED: return schema.getFixedSize();
+        default: return -1;
+      }
+    }
+
+    public Schema getSchema()
+    {
+      return _schema;
+    }
+
+    public List<Field> getFields()
+    {
+      return _fields;
+    }
+
+    public int[] getFixedPrefixOfs()
+    {
+      return _fixedPrefixOfs;
+    }
+  }
+}
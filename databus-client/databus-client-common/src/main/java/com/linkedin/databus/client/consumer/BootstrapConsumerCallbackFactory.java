@@ -73,6 +73,19 @@ public class BootstrapConsumerCallbackFactory implements ConsumerCallbackFactory
     }
   }
 
+  @Override
+  public DataEventBatchCallable createDataEventBatchCallable(long currentNanos,
+                                                             DataEventBatch batch,
+                                                             DatabusCombinedConsumer consumer,
+                                                             boolean updateStats)
+  {
+    if (updateStats) {
+      return new BootstrapDataEventBatchCallable(currentNanos, batch, consumer, _consumerStats, _unifiedClientStats);
+    } else {
+      return new BootstrapDataEventBatchCallable(currentNanos, batch, consumer, null, null);
+    }
+  }
+
   @Override
   public ConsumerCallable<ConsumerCallbackResult> createEndConsumptionCallable(long currentNanos,
                                                                                DatabusCombinedConsumer consumer,
@@ -343,6 +356,24 @@ class BootstrapDataEventCallable extends ConsumerCallable<ConsumerCallbackResult
   }
 }
 
+class BootstrapDataEventBatchCallable extends DataEventBatchCallable
+{
+  public BootstrapDataEventBatchCallable(long currentNanos,
+                                         DataEventBatch batch,
+                                         DatabusCombinedConsumer consumer,
+                                         ConsumerCallbackStats consumerStats,
+                                         UnifiedClientStats unifiedClientStats)
+  {
+    super(currentNanos, batch, consumer, consumerStats, unifiedClientStats);
+  }
+
+  @Override
+  protected ConsumerCallbackResult callConsumer(DbusEvent e, DbusEventDecoder eventDecoder)
+  {
+    return _consumer.onBootstrapEvent(e, eventDecoder);
+  }
+}
+
 class StopBootstrapCallable extends ConsumerCallable<ConsumerCallbackResult>
 {
   private final DatabusCombinedConsumer _consumer;
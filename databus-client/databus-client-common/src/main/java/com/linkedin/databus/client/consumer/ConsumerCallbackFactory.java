@@ -49,6 +49,12 @@ public interface ConsumerCallbackFactory<C>
                                                                    C consumer,
                                                                    boolean updateStats);
 
+  /** Creates a callable that delivers all events of a batch to the consumer in a single task */
+  DataEventBatchCallable createDataEventBatchCallable(long currentNanos,
+                                                      DataEventBatch batch,
+                                                      C consumer,
+                                                      boolean updateStats);
+
   ConsumerCallable<ConsumerCallbackResult> createEndSourceCallable(long currentNanos,
                                                                    String source,
                                                                    Schema sourceSchema,
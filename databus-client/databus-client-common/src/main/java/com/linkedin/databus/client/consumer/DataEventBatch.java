@@ -0,0 +1,140 @@
+package com.linkedin.databus.client.consumer;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.linkedin.databus.client.pub.DbusEventBatch;
+import com.linkedin.databus.client.pub.DbusEventDecoder;
+import com.linkedin.databus.core.DbusEvent;
+import com.linkedin.databus.core.DbusEventInternalWritable;
+
+/**
+ * A batch of data events waiting to be delivered to a consumer in a single callback task. The
+ * batch does not copy the events; it keeps one event object per position that points into the
+ * client event buffer. The event objects are reused when the batch is filled again after
+ * {@link #clear()}, so a batch filled with n events allocates nothing once it has been used for
+ * n events before.
+ *
+ * <p>The class is not thread-safe. It is filled and cleared by the dispatcher thread and read by
+ * the callback task only while it is not being filled.
+ */
+public class DataEventBatch implements DbusEventBatch
+{
+  private final List<DbusEvent> _events;
+  private int _size;
+  private DbusEventDecoder _eventDecoder;
+  /** The time when the first event was added to the batch; -1 if the batch is empty */
+  private long _firstEventNanos;
+
+  public DataEventBatch(int capacity)
+  {
+    _events = new ArrayList<DbusEvent>(capacity);
+    _size = 0;
+    _firstEventNanos = -1;
+  }
+
+  /**
+   * Appends an event to the batch.
+   * @param  e                  the event; must be a {@link DbusEventInternalWritable}
+   * @param  eventDecoder       the decoder for the event payload
+   * @param  curNanos           the current time in nanoseconds
+   */
+  public void add(DbusEvent e, DbusEventDecoder eventDecoder, long curNanos)
+  {
+    if (!(e instanceof DbusEventInternalWritable)) {
+      throw new UnsupportedClassVersionError("Cannot support cloning on non-DbusEvent");
+    }
+    DbusEventInternalWritable writableEvent = (DbusEventInternalWritable)e;
+    if (_size < _events.size())
+    {
+      DbusEvent reuse = _events.get(_size);
+      if (reuse.getClass() != e.getClass())
+      {
+        // the event version changed; the old view cannot be reset to the new event
+        _events.set(_size, writableEvent.clone(null));
+      }
+      else
+      {
+        writableEvent.clone(reuse);
+      }
+    }
+    else
+    {
+      _events.add(writableEvent.clone(null));
+    }
+
+    if (0 == _size)
+    {
+      _firstEventNanos = curNanos;
+      _eventDecoder = eventDecoder;
+    }
+    ++_size;
+  }
+
+  /** Removes all events from the batch; the event objects are kept for reuse */
+  public void clear()
+  {
+    _size = 0;
+    _eventDecoder = null;
+    _firstEventNanos = -1;
+  }
+
+  public boolean isEmpty()
+  {
+    return 0 == _size;
+  }
+
+  @Override
+  public int size()
+  {
+    return _size;
+  }
+
+  @Override
+  public DbusEvent getEvent(int index)
+  {
+    if (index < 0 || index >= _size)
+    {
+      throw new IndexOutOfBoundsException("index " + index + " not in [0, " + _size + ")");
+    }
+    return _events.get(index);
+  }
+
+  /** The decoder for the payloads of the events in the batch; null if the batch is empty */
+  public DbusEventDecoder getEventDecoder()
+  {
+    return _eventDecoder;
+  }
+
+  /** The time in nanoseconds when the first event was added to the batch; -1 if it is empty */
+  public long getFirstEventNanos()
+  {
+    return _firstEventNanos;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "DataEventBatch [size=" + _size + "]";
+  }
+}
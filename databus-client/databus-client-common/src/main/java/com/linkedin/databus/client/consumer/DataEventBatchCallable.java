@@ -0,0 +1,109 @@
+package com.linkedin.databus.client.consumer;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+
+import com.linkedin.databus.client.pub.ConsumerCallbackResult;
+import com.linkedin.databus.client.pub.DatabusCombinedConsumer;
+import com.linkedin.databus.client.pub.DbusEventDecoder;
+import com.linkedin.databus.client.pub.mbean.ConsumerCallbackStats;
+import com.linkedin.databus.client.pub.mbean.UnifiedClientStats;
+import com.linkedin.databus.core.DbusConstants;
+import com.linkedin.databus.core.DbusEvent;
+
+/**
+ * A callable that delivers a {@link DataEventBatch} to a consumer in a single task. By default,
+ * the events are passed one at a time through {@link #callConsumer(DbusEvent, DbusEventDecoder)}
+ * until the first failure.
+ */
+public abstract class DataEventBatchCallable extends ConsumerCallable<ConsumerCallbackResult>
+{
+  protected final DataEventBatch _batch;
+  protected final DatabusCombinedConsumer _consumer;
+  private final ConsumerCallbackStats _consumerStats;
+  private final UnifiedClientStats _unifiedClientStats;
+
+  protected DataEventBatchCallable(long currentNanos,
+                                   DataEventBatch batch,
+                                   DatabusCombinedConsumer consumer,
+                                   ConsumerCallbackStats consumerStats,
+                                   UnifiedClientStats unifiedClientStats)
+  {
+    super(currentNanos);
+    _batch = batch;
+    _consumer = consumer;
+    _consumerStats = consumerStats;
+    _unifiedClientStats = unifiedClientStats;
+  }
+
+  public DataEventBatch getBatch()
+  {
+    return _batch;
+  }
+
+  /** Delivers a single event of the batch to the consumer */
+  protected abstract ConsumerCallbackResult callConsumer(DbusEvent e, DbusEventDecoder eventDecoder);
+
+  @Override
+  protected ConsumerCallbackResult doCall() throws Exception
+  {
+    ConsumerCallbackResult result = ConsumerCallbackResult.SUCCESS;
+    DbusEventDecoder eventDecoder = _batch.getEventDecoder();
+    for (int i = 0; i < _batch.size(); ++i)
+    {
+      ConsumerCallbackResult eventResult = callConsumer(_batch.getEvent(i), eventDecoder);
+      if (!ConsumerCallbackResult.isSuccess(eventResult))
+      {
+        //skip the rest of the batch; it will be redelivered after the rollback
+        return eventResult;
+      }
+      result = ConsumerCallbackResult.max(result, eventResult);
+    }
+    return result;
+  }
+
+  @Override
+  protected void doEndCall(ConsumerCallbackResult result)
+  {
+    if (result==ConsumerCallbackResult.ERROR || result==ConsumerCallbackResult.ERROR_FATAL)
+    {
+      if (_consumerStats != null) _consumerStats.registerDataErrorsProcessed();
+      if (_unifiedClientStats != null) _unifiedClientStats.registerCallbackError();
+    }
+    else
+    {
+      //each event is charged its share of the run time of the batch and the time in the queue
+      int batchSize = _batch.size();
+      long eventNanoRunTime = batchSize > 0 ? getNanoRunTime() / batchSize : 0;
+      long eventTime = (eventNanoRunTime + getNanoTimeInQueue()) / DbusConstants.NUM_NSECS_IN_MSEC;
+      for (int i = 0; i < batchSize; ++i)
+      {
+        if (_consumerStats != null)
+        {
+          _consumerStats.registerDataEventsProcessed(1, eventTime, _batch.getEvent(i));
+        }
+        if (_unifiedClientStats != null)
+        {
+          _unifiedClientStats.registerCallbacksProcessed(eventNanoRunTime);
+        }
+      }
+    }
+  }
+}
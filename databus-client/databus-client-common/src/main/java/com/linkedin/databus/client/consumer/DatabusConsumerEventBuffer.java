@@ -24,6 +24,7 @@ import java.nio.ByteBuffer;
 import org.apache.avro.Schema;
 import org.apache.log4j.Logger;
 
+import com.linkedin.databus.client.DbusEventAvroDecoder;
 import com.linkedin.databus.client.SingleSourceSCN;
 import com.linkedin.databus.client.pub.ConsumerCallbackResult;
 import com.linkedin.databus.client.pub.DatabusCombinedConsumer;
@@ -32,6 +33,8 @@ import com.linkedin.databus.client.pub.SCN;
 import com.linkedin.databus.core.DbusEvent;
 import com.linkedin.databus.core.DbusEventBufferAppendable;
 import com.linkedin.databus.core.DbusEventKey;
+import com.linkedin.databus.core.DbusEventPayloadCompressor;
+import com.linkedin.databus.core.DbusEventPayloadDictionaries;
 import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
 import com.linkedin.databus2.core.DatabusException;
 import com.linkedin.databus2.core.seq.MaxSCNWriter;
@@ -162,9 +165,21 @@ public class DatabusConsumerEventBuffer implements DatabusCombinedConsumer
 			k = new DbusEventKey(e.keyBytes());
 		}
 		ByteBuffer payload = e.value();
-		byte[] value = new byte[payload.limit()];
-		payload.get(value,0,value.length);
-		payload.position(0);
+		byte[] value;
+		if (e.isPayloadCompressed())
+		{
+			// the decoder knows the dictionaries of the buffer the event comes from
+			DbusEventPayloadDictionaries dictionaries = eventDecoder instanceof DbusEventAvroDecoder ?
+					((DbusEventAvroDecoder)eventDecoder).getPayloadDictionaries() :
+					new DbusEventPayloadDictionaries();
+			value = DbusEventPayloadCompressor.decompress(payload, dictionaries);
+		}
+		else
+		{
+			value = new byte[payload.limit()];
+			payload.get(value,0,value.length);
+			payload.position(0);
+		}
 		_eventBuffer.appendEvent(k, e.physicalPartitionId(),
 				e.logicalPartitionId(), e.timestampInNanos(), e.srcId(),
 				e.schemaId(),value, false, _stats);
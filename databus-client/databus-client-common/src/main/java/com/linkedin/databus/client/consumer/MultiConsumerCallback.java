@@ -22,6 +22,8 @@ package com.linkedin.databus.client.consumer;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
@@ -46,11 +48,16 @@ import com.linkedin.databus.client.pub.mbean.UnifiedClientStats;
 import com.linkedin.databus.core.DbusConstants;
 import com.linkedin.databus.core.DbusEvent;
 import com.linkedin.databus.core.data_model.DatabusSubscription;
+import com.linkedin.databus.core.monitoring.mbean.LatencyHistogramStats;
 import com.linkedin.databus.core.util.IdNamePair;
 
 /**
  * Implements callbacks to multiple databus consumers in parallel. It also enforces
  * a configurable time budget.
+ *
+ * <p>If data event batching is enabled (see {@link #setDataEventBatching(int, long)}), consecutive
+ * data events for the same registration are collected in a {@link DataEventBatch} and delivered to
+ * the consumer in a single task instead of one task per event.
  */
 public class MultiConsumerCallback implements DatabusStreamConsumer
 {
@@ -71,6 +78,17 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
   //local stats accumulators
   private final ConsumerCallbackStats _consumerStats;
   private final UnifiedClientStats _unifiedClientStats;
+  /** Distribution of the run times of the consumer callbacks; can be null */
+  private volatile LatencyHistogramStats _callbackLatencyStats;
+
+  /** Max number of data events delivered to a consumer in one task; 1 disables batching */
+  private int _maxDataEventBatchSize;
+  /** Max time a data event can wait in a batch before the batch is submitted; 0 for no limit */
+  private long _maxDataEventBatchDelayNanos;
+  /** Batches that have not been submitted yet by registration; the null key is for the logging consumer */
+  private final Map<DatabusV2ConsumerRegistration, DataEventBatch> _pendingBatches;
+  /** Batches whose callbacks have completed and that can be refilled */
+  private final List<DataEventBatch> _freeBatches;
 
 
   // used only by tests
@@ -102,6 +120,10 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
             new TimestampedFutureComparator<ConsumerCallbackResult>());
     _consumerStats = consumerStats;
     _unifiedClientStats = unifiedClientStats;
+    _maxDataEventBatchSize = 1;
+    _maxDataEventBatchDelayNanos = 0;
+    _pendingBatches = new IdentityHashMap<DatabusV2ConsumerRegistration, DataEventBatch>();
+    _freeBatches = new ArrayList<DataEventBatch>();
     // loggingConsumer, log may be null in unit tests
     _loggingConsumer = loggingConsumer;
     if (null != log)
@@ -122,7 +144,9 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
     if (0 >= curNanos) curNanos = System.nanoTime();
     try
     {
-      if (barrierBefore) retValue = flushCallQueue(curNanos);
+      //pending data events have to be delivered before any callback that requires a barrier
+      if (barrierBefore || barrierAfter) retValue = submitPendingDataEventBatches(curNanos);
+      if (barrierBefore && ConsumerCallbackResult.isSuccess(retValue)) retValue = flushCallQueue(curNanos);
 
       if (ConsumerCallbackResult.isSuccess(retValue))
       {
@@ -130,10 +154,7 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
                                                     : "";
         for (ConsumerCallable<ConsumerCallbackResult> call: _currentBatch)
         {
-          Future<ConsumerCallbackResult> future = _executorService.submit(call);
-          _submittedCalls.add(new TimestampedFuture<ConsumerCallbackResult>(call, future,
-              batchName, ++_runCallsCounter));
-
+          submitCall(call, batchName);
         }
       }
       _currentBatch.clear();
@@ -153,6 +174,140 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
     return retValue;
   }
 
+  private void submitCall(ConsumerCallable<ConsumerCallbackResult> call, String callType)
+  {
+    Future<ConsumerCallbackResult> future = _executorService.submit(call);
+    _submittedCalls.add(new TimestampedFuture<ConsumerCallbackResult>(call, future,
+        callType, ++_runCallsCounter));
+  }
+
+  /** Submits the callbacks for all batches that have not been submitted yet */
+  private ConsumerCallbackResult submitPendingDataEventBatches(long curNanos)
+  {
+    if (_pendingBatches.isEmpty()) return ConsumerCallbackResult.SUCCESS;
+
+    ConsumerCallbackResult result = ConsumerCallbackResult.SUCCESS;
+    try
+    {
+      for (Map.Entry<DatabusV2ConsumerRegistration, DataEventBatch> entry: _pendingBatches.entrySet())
+      {
+        ConsumerCallable<ConsumerCallbackResult> batchCallable =
+            createDataEventBatchCallable(curNanos, entry.getKey(), entry.getValue());
+        submitCall(batchCallable, batchCallable.getClass().getSimpleName());
+      }
+    }
+    catch (RuntimeException e)
+    {
+      _log.error("internal callback error: " + e.getMessage(), e);
+      result = ConsumerCallbackResult.ERROR;
+    }
+    _pendingBatches.clear();
+    return result;
+  }
+
+  /** Drops the events of all batches that have not been submitted yet */
+  private void discardPendingDataEventBatches()
+  {
+    for (DataEventBatch batch: _pendingBatches.values())
+    {
+      batch.clear();
+      _freeBatches.add(batch);
+    }
+    _pendingBatches.clear();
+  }
+
+  /** Adds a data event to the batch of a registration (null for the logging consumer) */
+  private void addToDataEventBatch(DatabusV2ConsumerRegistration reg, DbusEvent e,
+                                   DbusEventDecoder eventDecoder, long curNanos)
+  {
+    DataEventBatch batch = _pendingBatches.get(reg);
+    if (null == batch)
+    {
+      int freeNum = _freeBatches.size();
+      batch = freeNum > 0 ? _freeBatches.remove(freeNum - 1) : new DataEventBatch(_maxDataEventBatchSize);
+      _pendingBatches.put(reg, batch);
+    }
+    batch.add(e, eventDecoder, curNanos);
+    if (batch.size() >= _maxDataEventBatchSize)
+    {
+      _pendingBatches.remove(reg);
+      _currentBatch.add(createDataEventBatchCallable(curNanos, reg, batch));
+    }
+  }
+
+  /** Moves the batches whose oldest event has exceeded the max batch delay to the current call batch */
+  private void addExpiredDataEventBatches(long curNanos)
+  {
+    if (0 >= _maxDataEventBatchDelayNanos) return;
+
+    Iterator<Map.Entry<DatabusV2ConsumerRegistration, DataEventBatch>> iter =
+        _pendingBatches.entrySet().iterator();
+    while (iter.hasNext())
+    {
+      Map.Entry<DatabusV2ConsumerRegistration, DataEventBatch> entry = iter.next();
+      DataEventBatch batch = entry.getValue();
+      if (curNanos - batch.getFirstEventNanos() >= _maxDataEventBatchDelayNanos)
+      {
+        //IdentityHashMap entries cannot be read after they are removed
+        DatabusV2ConsumerRegistration reg = entry.getKey();
+        iter.remove();
+        _currentBatch.add(createDataEventBatchCallable(curNanos, reg, batch));
+      }
+    }
+  }
+
+  /**
+   * Submits the data event batches whose oldest event has waited for the max batch delay. The
+   * dispatcher calls this while it waits for new events, so the delay is enforced even if no
+   * further event arrives.
+   * @param  curNanos       the current time in nanoseconds; if not positive, System.nanoTime() is used
+   */
+  public ConsumerCallbackResult submitExpiredDataEventBatches(long curNanos)
+  {
+    if (_pendingBatches.isEmpty()) return ConsumerCallbackResult.SUCCESS;
+    if (0 >= curNanos) curNanos = System.nanoTime();
+    addExpiredDataEventBatches(curNanos);
+    return _currentBatch.isEmpty() ? ConsumerCallbackResult.SUCCESS
+                                   : submitBatch(curNanos, false, false);
+  }
+
+  /**
+   * The time in nanoseconds until the oldest pending data event batch reaches the max batch
+   * delay: 0 if it already has, -1 if there are no pending batches or the delay is not limited.
+   */
+  public long getNanosToDataEventBatchExpiry(long curNanos)
+  {
+    if (_pendingBatches.isEmpty() || 0 >= _maxDataEventBatchDelayNanos) return -1;
+    long oldestNanos = Long.MAX_VALUE;
+    for (DataEventBatch batch: _pendingBatches.values())
+    {
+      oldestNanos = Math.min(oldestNanos, batch.getFirstEventNanos());
+    }
+    return Math.max(0, oldestNanos + _maxDataEventBatchDelayNanos - curNanos);
+  }
+
+  private DataEventBatchCallable createDataEventBatchCallable(long curNanos,
+                                                              DatabusV2ConsumerRegistration reg,
+                                                              DataEventBatch batch)
+  {
+    return null != reg ? _callbackFactory.createDataEventBatchCallable(curNanos, batch, reg.getConsumer(), true)
+                       : _callbackFactory.createDataEventBatchCallable(curNanos, batch, _loggingConsumer, false);
+  }
+
+  /**
+   * Makes the batch of a completed call available for reuse. Batches of calls that were cancelled
+   * or timed out are left to the garbage collector since the consumer may still be reading them.
+   */
+  private void recycleDataEventBatch(ConsumerCallable<ConsumerCallbackResult> callable)
+  {
+    if (callable instanceof DataEventBatchCallable && callable.isDone())
+    {
+      DataEventBatch batch = ((DataEventBatchCallable)callable).getBatch();
+      batch.clear();
+      _freeBatches.add(batch);
+    }
+  }
+
   private ConsumerCallbackResult cleanUpCallQueue(long curNanos)
   {
     ConsumerCallbackResult result = ConsumerCallbackResult.SUCCESS;
@@ -202,7 +357,13 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
 
       if (null == future) return;
       ConsumerCallable<ConsumerCallbackResult> callable = future.getCallable();
+      LatencyHistogramStats latencyStats = _callbackLatencyStats;
+      if (null != latencyStats && callable.isDone())
+      {
+        latencyStats.registerLatency(callable.getNanoRunTime(), TimeUnit.NANOSECONDS);
+      }
       callable.endCall(result);
+      recycleDataEventBatch(callable);
     }
     finally
     {
@@ -268,6 +429,7 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
       {
         if (! top.getFuture().isDone()) top.getFuture().cancel(true);
         top.getCallable().endCall(ConsumerCallbackResult.ERROR);
+        recycleDataEventBatch(top.getCallable());
       }
       catch (RuntimeException e)
       {
@@ -279,8 +441,8 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
   /** Acts as a barrier for all outstanding calls in the call queue */
   public ConsumerCallbackResult flushCallQueue(long curTime)
   {
-    ConsumerCallbackResult result = ConsumerCallbackResult.SUCCESS;
     if (0 >= curTime) curTime = System.nanoTime();
+    ConsumerCallbackResult result = submitPendingDataEventBatches(curTime);
 
     TimestampedFuture<ConsumerCallbackResult> top = null;
     while (_submittedCalls.size() > 0)
@@ -389,6 +551,7 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
       return ConsumerCallbackResult.ERROR;
     }
 
+    boolean batchingEnabled = _maxDataEventBatchSize > 1;
     for (DatabusV2ConsumerRegistration reg: _registrations)
     {
       DatabusSubscription eventSourceName = DatabusSubscription.createSubscription(eventSource, lPartitionId);
@@ -397,19 +560,34 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
       {
 
         if (debugEnabled) _log.debug("consumer matches:" + reg.getConsumer());
-        ConsumerCallable<ConsumerCallbackResult> dataEventCallable =
-            _callbackFactory.createDataEventCallable(curNanos, e, eventDecoder, reg.getConsumer(), true);
-        _currentBatch.add(dataEventCallable);
+        if (batchingEnabled)
+        {
+          addToDataEventBatch(reg, e, eventDecoder, curNanos);
+        }
+        else
+        {
+          ConsumerCallable<ConsumerCallbackResult> dataEventCallable =
+              _callbackFactory.createDataEventCallable(curNanos, e, eventDecoder, reg.getConsumer(), true);
+          _currentBatch.add(dataEventCallable);
+        }
         if (_consumerStats != null) _consumerStats.registerDataEventReceived(e);
         if (_unifiedClientStats != null) _unifiedClientStats.registerDataEventReceived(e);
       }
     }
     if (_loggingConsumer != null)
     {
-      ConsumerCallable<ConsumerCallbackResult> dataEventCallable =
-          _callbackFactory.createDataEventCallable(curNanos, e, eventDecoder, _loggingConsumer, false);
-      _currentBatch.add(dataEventCallable);
+      if (batchingEnabled)
+      {
+        addToDataEventBatch(null, e, eventDecoder, curNanos);
+      }
+      else
+      {
+        ConsumerCallable<ConsumerCallbackResult> dataEventCallable =
+            _callbackFactory.createDataEventCallable(curNanos, e, eventDecoder, _loggingConsumer, false);
+        _currentBatch.add(dataEventCallable);
+      }
     }
+    if (batchingEnabled) addExpiredDataEventBatches(curNanos);
     if (debugEnabled)
     {
       long endNanos = System.nanoTime();
@@ -482,6 +660,8 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
   public ConsumerCallbackResult onRollback(SCN startScn)
   {
     long curNanos = System.nanoTime();
+    //the events will be delivered again after the rollback
+    discardPendingDataEventBatches();
     for (DatabusV2ConsumerRegistration consumerReg: _registrations)
     {
       for (DatabusCombinedConsumer consumer: consumerReg.getConsumers())
@@ -665,6 +845,41 @@ public class MultiConsumerCallback implements DatabusStreamConsumer
     return submitBatch(curNanos, true, true);
   }
 
+  /**
+   * Enables or disables the delivery of data events in batches. A batch is submitted when it
+   * reaches maxBatchSize events, when its oldest event has waited for maxBatchDelayMs, or before
+   * any other callback or {@link #flushCallQueue(long)}, so batches never span event windows or
+   * sources. Should be called before the first callback.
+   *
+   * @param maxBatchSize      the max number of events in a batch; 1 disables batching
+   * @param maxBatchDelayMs   the max time an event can wait in a batch; 0 for no limit
+   */
+  public void setDataEventBatching(int maxBatchSize, long maxBatchDelayMs)
+  {
+    if (maxBatchSize < 1)
+    {
+      throw new IllegalArgumentException("invalid data event batch size: " + maxBatchSize);
+    }
+    _maxDataEventBatchSize = maxBatchSize;
+    _maxDataEventBatchDelayNanos = maxBatchDelayMs * DbusConstants.NUM_NSECS_IN_MSEC;
+  }
+
+  public int getMaxDataEventBatchSize()
+  {
+    return _maxDataEventBatchSize;
+  }
+
+  /** Sets the stats for the distribution of the run times of the consumer callbacks */
+  public void setCallbackLatencyStats(LatencyHistogramStats callbackLatencyStats)
+  {
+    _callbackLatencyStats = callbackLatencyStats;
+  }
+
+  public LatencyHistogramStats getCallbackLatencyStats()
+  {
+    return _callbackLatencyStats;
+  }
+
   public ConsumerCallbackStats getStats()
   {
       return _consumerStats;
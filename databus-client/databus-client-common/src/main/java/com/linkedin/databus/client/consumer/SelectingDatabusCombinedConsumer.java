@@ -19,8 +19,12 @@ package com.linkedin.databus.client.consumer;
 */
 
 
+import com.linkedin.databus.client.pub.ConsumerCallbackResult;
 import com.linkedin.databus.client.pub.DatabusBootstrapConsumer;
+import com.linkedin.databus.client.pub.DatabusStreamBatchConsumer;
 import com.linkedin.databus.client.pub.DatabusStreamConsumer;
+import com.linkedin.databus.client.pub.DbusEventBatch;
+import com.linkedin.databus.client.pub.DbusEventDecoder;
 
 /**
  * A that delegates all class to another consumer. This class is
@@ -28,6 +32,7 @@ import com.linkedin.databus.client.pub.DatabusStreamConsumer;
  * care of the rest of the callbacks.
  * */
 public class SelectingDatabusCombinedConsumer extends DelegatingDatabusCombinedConsumer
+       implements DatabusStreamBatchConsumer
 {
 
   public SelectingDatabusCombinedConsumer(DatabusStreamConsumer streamDelegate)
@@ -48,4 +53,37 @@ public class SelectingDatabusCombinedConsumer extends DelegatingDatabusCombinedC
 		  return false;
   }
 
+  /**
+   * Passes the batch to the stream delegate if it is a {@link DatabusStreamBatchConsumer};
+   * otherwise, calls {@link #onDataEvent} for each event until the first failure.
+   */
+  @Override
+  public ConsumerCallbackResult onDataEventBatch(DbusEventBatch batch, DbusEventDecoder eventDecoder)
+  {
+    if (_streamDelegate instanceof DatabusStreamBatchConsumer)
+    {
+      try
+      {
+        return ((DatabusStreamBatchConsumer)_streamDelegate).onDataEventBatch(batch, eventDecoder);
+      }
+      catch (RuntimeException re)
+      {
+        _log.error("onDataEventBatch error: " + re.getMessage(), re);
+        return ConsumerCallbackResult.ERROR;
+      }
+    }
+
+    ConsumerCallbackResult result = ConsumerCallbackResult.SUCCESS;
+    for (int i = 0; i < batch.size(); ++i)
+    {
+      ConsumerCallbackResult eventResult = onDataEvent(batch.getEvent(i), eventDecoder);
+      if (!ConsumerCallbackResult.isSuccess(eventResult))
+      {
+        return eventResult;
+      }
+      result = ConsumerCallbackResult.max(result, eventResult);
+    }
+    return result;
+  }
+
 }
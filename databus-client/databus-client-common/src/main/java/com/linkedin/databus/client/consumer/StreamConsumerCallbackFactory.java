@@ -23,6 +23,7 @@ import org.apache.avro.Schema;
 
 import com.linkedin.databus.client.pub.ConsumerCallbackResult;
 import com.linkedin.databus.client.pub.DatabusCombinedConsumer;
+import com.linkedin.databus.client.pub.DatabusStreamBatchConsumer;
 import com.linkedin.databus.client.pub.DbusEventDecoder;
 import com.linkedin.databus.client.pub.SCN;
 import com.linkedin.databus.client.pub.mbean.ConsumerCallbackStats;
@@ -73,6 +74,19 @@ public class StreamConsumerCallbackFactory implements ConsumerCallbackFactory<Da
     }
   }
 
+  @Override
+  public DataEventBatchCallable createDataEventBatchCallable(long currentNanos,
+                                                             DataEventBatch batch,
+                                                             DatabusCombinedConsumer consumer,
+                                                             boolean updateStats)
+  {
+    if (updateStats) {
+      return new OnDataEventBatchCallable(currentNanos, batch, consumer, _consumerStats, _unifiedClientStats);
+    } else {
+      return new OnDataEventBatchCallable(currentNanos, batch, consumer, null, null);
+    }
+  }
+
   @Override
   public ConsumerCallable<ConsumerCallbackResult> createEndConsumptionCallable(long currentNanos,
                                                                                DatabusCombinedConsumer consumer,
@@ -343,6 +357,34 @@ class OnDataEventCallable extends ConsumerCallable<ConsumerCallbackResult>
   }
 }
 
+class OnDataEventBatchCallable extends DataEventBatchCallable
+{
+  public OnDataEventBatchCallable(long currentNanos,
+                                  DataEventBatch batch,
+                                  DatabusCombinedConsumer consumer,
+                                  ConsumerCallbackStats consumerStats,
+                                  UnifiedClientStats unifiedClientStats)
+  {
+    super(currentNanos, batch, consumer, consumerStats, unifiedClientStats);
+  }
+
+  @Override
+  protected ConsumerCallbackResult doCall() throws Exception
+  {
+    if (_consumer instanceof DatabusStreamBatchConsumer)
+    {
+      return ((DatabusStreamBatchConsumer)_consumer).onDataEventBatch(_batch, _batch.getEventDecoder());
+    }
+    return super.doCall();
+  }
+
+  @Override
+  protected ConsumerCallbackResult callConsumer(DbusEvent e, DbusEventDecoder eventDecoder)
+  {
+    return _consumer.onDataEvent(e, eventDecoder);
+  }
+}
+
 class StopConsumptionCallable extends ConsumerCallable<ConsumerCallbackResult>
 {
   private final DatabusCombinedConsumer _consumer;
@@ -0,0 +1,169 @@
+package com.linkedin.databus.client;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.util.Utf8;
+import org.apache.log4j.Level;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.databus.core.DbusEvent;
+import com.linkedin.databus.core.DbusEventFactory;
+import com.linkedin.databus.core.DbusEventInfo;
+import com.linkedin.databus.core.DbusEventKey;
+import com.linkedin.databus.core.DbusEventV2Factory;
+import com.linkedin.databus.core.DbusOpcode;
+import com.linkedin.databus2.schemas.SchemaId;
+import com.linkedin.databus2.schemas.VersionedSchema;
+import com.linkedin.databus2.schemas.VersionedSchemaSet;
+import com.linkedin.databus2.test.TestUtil;
+
+public class TestDbusEventLazyRecord
+{
+  private static final String SCHEMA_STR =
+      "{\"type\":\"record\",\"name\":\"Wide\",\"namespace\":\"com.linkedin.events.test\",\"fields\":[" +
+      "{\"name\":\"flag\",\"type\":\"boolean\"}," +
+      "{\"name\":\"ratio\",\"type\":\"double\"}," +
+      "{\"name\":\"weight\",\"type\":\"float\"}," +
+      "{\"name\":\"id\",\"type\":\"long\"}," +
+      "{\"name\":\"name\",\"type\":\"string\"}," +
+      "{\"name\":\"count\",\"type\":[\"null\",\"int\"]}," +
+      "{\"name\":\"blob\",\"type\":\"bytes\"}," +
+      "{\"name\":\"tags\",\"type\":{\"type\":\"array\",\"items\":\"string\"}}," +
+      "{\"name\":\"attrs\",\"type\":{\"type\":\"map\",\"values\":\"long\"}}," +
+      "{\"name\":\"comment\",\"type\":[\"null\",\"string\"]}]}";
+  private static final Schema SCHEMA = Schema.parse(SCHEMA_STR);
+
+  @BeforeClass
+  public void setUpClass()
+  {
+    TestUtil.setupLogging(true, null, Level.ERROR);
+  }
+
+  private static GenericRecord createRecord(long id, String comment)
+  {
+    GenericRecord r = new GenericData.Record(SCHEMA);
+    r.put("flag", Boolean.TRUE);
+    r.put("ratio", -1.5e10);
+    r.put("weight", 3.25f);
+    r.put("id", id);
+    r.put("name", new Utf8("name-" + id));
+    r.put("count", (int)-id);
+    r.put("blob", ByteBuffer.wrap(new byte[]{1, 2, 3, (byte)id}));
+    GenericData.Array<Utf8> tags =
+        new GenericData.Array<Utf8>(2, SCHEMA.getField("tags").schema());
+    tags.add(new Utf8("a"));
+    tags.add(new Utf8("bb"));
+    r.put("tags", tags);
+    r.put("attrs", new HashMap<Utf8, Long>());
+    r.put("comment", null == comment ? null : new Utf8(comment));
+    return r;
+  }
+
+  private static DbusEvent createEvent(GenericRecord r) throws Exception
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = new BinaryEncoder(out);
+    new GenericDatumWriter<GenericRecord>(SCHEMA).write(r, encoder);
+    encoder.flush();
+
+    DbusEventInfo eventInfo = new DbusEventInfo(DbusOpcode.UPSERT, 100L, (short)1, (short)1,
+                                                System.nanoTime(), (short)10,
+                                                SchemaId.createWithMd5(SCHEMA).getByteArray(),
+                                                out.toByteArray(), false, true,
+                                                DbusEventFactory.DBUS_EVENT_V2, (short)1, null);
+    DbusEventFactory eventFactory = new DbusEventV2Factory();
+    ByteBuffer serialBuf = ByteBuffer.allocateDirect(1000).order(eventFactory.getByteOrder());
+    DbusEventFactory.serializeEvent(new DbusEventKey((Long)r.get("id")), serialBuf, eventInfo);
+
+    return eventFactory.createReadOnlyDbusEventFromBuffer(serialBuf, 0);
+  }
+
+  private static DbusEventAvroDecoder createDecoder()
+  {
+    VersionedSchemaSet schemaSet = new VersionedSchemaSet();
+    schemaSet.add(new VersionedSchema("com.linkedin.events.test.Wide", (short)1, SCHEMA, SCHEMA_STR));
+    return new DbusEventAvroDecoder(schemaSet);
+  }
+
+  @Test
+  public void testFieldAccess() throws Exception
+  {
+    DbusEventAvroDecoder decoder = createDecoder();
+    DbusEvent event = createEvent(createRecord(12345L, "hello"));
+    GenericRecord expected = decoder.getGenericRecord(event, null);
+
+    DbusEventLazyRecord lazy = decoder.getLazyGenericRecord(event, null);
+    //access the fields out of order
+    Assert.assertEquals(lazy.get("comment"), expected.get("comment"));
+    Assert.assertEquals(lazy.get("id"), expected.get("id"));
+    Assert.assertEquals(lazy.get("flag"), expected.get("flag"));
+    Assert.assertEquals(lazy.get("ratio"), expected.get("ratio"));
+    Assert.assertEquals(lazy.get("weight"), expected.get("weight"));
+    Assert.assertEquals(lazy.get("name"), expected.get("name"));
+    Assert.assertEquals(lazy.get("count"), expected.get("count"));
+    Assert.assertEquals(lazy.get("blob"), expected.get("blob"));
+    Assert.assertEquals(lazy.get("tags").toString(), expected.get("tags").toString());
+    Assert.assertEquals(lazy.get("attrs").toString(), expected.get("attrs").toString());
+    Assert.assertNull(lazy.get("noSuchField"));
+    Assert.assertEquals(lazy.toString(), expected.toString());
+
+    //cached values are returned on repeated access
+    Assert.assertSame(lazy.get("name"), lazy.get("name"));
+    lazy.put("name", new Utf8("overridden"));
+    Assert.assertEquals(lazy.get("name"), new Utf8("overridden"));
+  }
+
+  @Test
+  public void testReuse() throws Exception
+  {
+    DbusEventAvroDecoder decoder = createDecoder();
+    DbusEventLazyRecord lazy = null;
+    for (long i = 1; i <= 5; ++i)
+    {
+      DbusEvent event = createEvent(createRecord(i, 0 == i % 2 ? null : "c" + i));
+      DbusEventLazyRecord result = decoder.getLazyGenericRecord(event, lazy);
+      if (null != lazy)
+      {
+        Assert.assertSame(result, lazy);
+      }
+      lazy = result;
+      GenericRecord expected = decoder.getGenericRecord(event, null);
+      Assert.assertEquals(lazy.get("name"), expected.get("name"));
+      Assert.assertEquals(lazy.get("comment"), expected.get("comment"));
+      Assert.assertEquals(lazy.get("count"), expected.get("count"));
+      ByteBuffer blob = (ByteBuffer)lazy.get("blob");
+      byte[] blobBytes = new byte[blob.remaining()];
+      blob.get(blobBytes);
+      Assert.assertTrue(Arrays.equals(blobBytes, new byte[]{1, 2, 3, (byte)i}));
+    }
+  }
+}
@@ -31,6 +31,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.avro.Schema;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.easymock.EasyMock;
@@ -49,9 +50,13 @@ import org.testng.annotations.Test;
 import com.linkedin.databus.client.SingleSourceSCN;
 import com.linkedin.databus.client.pub.ConsumerCallbackResult;
 import com.linkedin.databus.client.pub.DatabusCombinedConsumer;
+import com.linkedin.databus.client.pub.DatabusStreamBatchConsumer;
 import com.linkedin.databus.client.pub.DatabusStreamConsumer;
+import com.linkedin.databus.client.pub.DbusEventBatch;
+import com.linkedin.databus.client.pub.DbusEventDecoder;
 import com.linkedin.databus.client.pub.mbean.ConsumerCallbackStats;
 import com.linkedin.databus.client.pub.mbean.UnifiedClientStats;
+import com.linkedin.databus.core.DbusConstants;
 import com.linkedin.databus.core.DbusEvent;
 import com.linkedin.databus.core.DbusEventBuffer;
 import com.linkedin.databus.core.DbusEventBuffer.AllocationPolicy;
@@ -397,6 +402,186 @@ public class TestMultiConsumerCallback
 
   }
 
+  private DbusEvent initBatchingTest(Map<Long, IdNamePair> sourcesMap, List<String> sources)
+  {
+    for (int i = 1; i <= 3; ++i)
+    {
+      IdNamePair sourcePair = new IdNamePair((long)i, "source" + i);
+      sources.add(sourcePair.getName());
+      sourcesMap.put(sourcePair.getId(), sourcePair);
+    }
+
+    Hashtable<Long, AtomicInteger> keyCounts = new Hashtable<Long, AtomicInteger>();
+    DbusEventBuffer eventsBuf = new DbusEventBuffer(_generic100KBufferStaticConfig);
+    eventsBuf.start(0);
+    eventsBuf.startEvents();
+    initBufferWithEvents(eventsBuf, 1, 1, (short)1, keyCounts);
+    eventsBuf.endEvents(100L);
+
+    DbusEventBuffer.DbusEventIterator iter = eventsBuf.acquireIterator("myIter1");
+    assert iter.hasNext() : "unable to read event";
+    //skip the EOP event written by start(0)
+    iter.next();
+    assert iter.hasNext() : "unable to read event";
+    return iter.next();
+  }
+
+  @Test(groups = {"small", "functional"})
+  public void testDataEventBatching()
+  {
+    LOG.info("\n\nstarting testDataEventBatching()");
+
+    List<String> sources = new ArrayList<String>();
+    Map<Long, IdNamePair> sourcesMap = new HashMap<Long, IdNamePair>();
+    DbusEvent event1 = initBatchingTest(sourcesMap, sources);
+
+    BatchCountingConsumer batchConsumer = new BatchCountingConsumer();
+    DatabusV2ConsumerRegistration consumerReg =
+        new DatabusV2ConsumerRegistration(new SelectingDatabusCombinedConsumer(batchConsumer), sources, null);
+    ConsumerCallbackStats consumerStatsCollector = new ConsumerCallbackStats(1, "test","test", true,false, null);
+    UnifiedClientStats unifiedStatsCollector = new UnifiedClientStats(1, "test","test.unified");
+
+    ThreadPoolExecutor executor = (ThreadPoolExecutor)Executors.newCachedThreadPool();
+    MultiConsumerCallback callback =
+        new MultiConsumerCallback(
+            Arrays.asList(consumerReg),
+            executor,
+            60000,
+            new StreamConsumerCallbackFactory(consumerStatsCollector, unifiedStatsCollector),
+            consumerStatsCollector,
+            unifiedStatsCollector,
+            null,
+            null);
+    callback.setSourceMap(sourcesMap);
+    callback.setDataEventBatching(100, 0);
+
+    assert ConsumerCallbackResult.isSuccess(callback.onStartConsumption());
+    assert ConsumerCallbackResult.isSuccess(callback.onStartDataEventSequence(new SingleSourceSCN(1, 1)));
+    assert ConsumerCallbackResult.isSuccess(callback.onStartSource("source1", null));
+    for (int i = 0; i < 1050; ++i)
+    {
+      assert ConsumerCallbackResult.isSuccess(callback.onDataEvent(event1, null));
+    }
+    assert ConsumerCallbackResult.isSuccess(callback.onEndSource("source1", null));
+    assert ConsumerCallbackResult.isSuccess(callback.onEndDataEventSequence(new SingleSourceSCN(1, 1)));
+    assert ConsumerCallbackResult.isSuccess(callback.onStopConsumption());
+
+    Assert.assertEquals(batchConsumer.getEventsNum(), 1050);
+    //10 full batches and the partial one submitted by onEndSource
+    Assert.assertEquals(batchConsumer.getBatchesNum(), 11);
+    Assert.assertEquals(batchConsumer.getEventsNumAtEndSource(), 1050);
+    Assert.assertEquals(consumerStatsCollector.getNumDataEventsProcessed(),
+                        consumerStatsCollector.getNumDataEventsReceived());
+    Assert.assertTrue(executor.getTaskCount() < 20, "task count: " + executor.getTaskCount());
+  }
+
+  @Test(groups = {"small", "functional"})
+  public void testDataEventBatchingNonBatchConsumer()
+  {
+    LOG.info("\n\nstarting testDataEventBatchingNonBatchConsumer()");
+
+    List<String> sources = new ArrayList<String>();
+    Map<Long, IdNamePair> sourcesMap = new HashMap<Long, IdNamePair>();
+    DbusEvent event1 = initBatchingTest(sourcesMap, sources);
+
+    final AtomicInteger eventsNum = new AtomicInteger();
+    DatabusStreamConsumer countingConsumer = new AbstractDatabusStreamConsumer()
+    {
+      @Override
+      public ConsumerCallbackResult onDataEvent(DbusEvent e, DbusEventDecoder eventDecoder)
+      {
+        eventsNum.incrementAndGet();
+        return ConsumerCallbackResult.SUCCESS;
+      }
+    };
+    DatabusV2ConsumerRegistration consumerReg =
+        new DatabusV2ConsumerRegistration(new SelectingDatabusCombinedConsumer(countingConsumer), sources, null);
+
+    MultiConsumerCallback callback =
+        new MultiConsumerCallback(
+            Arrays.asList(consumerReg),
+            Executors.newCachedThreadPool(),
+            60000,
+            new StreamConsumerCallbackFactory(null, null),
+            null,
+            null,
+            null,
+            null);
+    callback.setSourceMap(sourcesMap);
+    callback.setDataEventBatching(64, 1000);
+
+    assert ConsumerCallbackResult.isSuccess(callback.onStartConsumption());
+    assert ConsumerCallbackResult.isSuccess(callback.onStartDataEventSequence(new SingleSourceSCN(1, 1)));
+    assert ConsumerCallbackResult.isSuccess(callback.onStartSource("source1", null));
+    for (int i = 0; i < 250; ++i)
+    {
+      assert ConsumerCallbackResult.isSuccess(callback.onDataEvent(event1, null));
+    }
+    //pending events are delivered by the barrier
+    assert ConsumerCallbackResult.isSuccess(callback.flushCallQueue(-1));
+    Assert.assertEquals(eventsNum.get(), 250);
+
+    //events that have not been delivered are dropped on rollback
+    assert ConsumerCallbackResult.isSuccess(callback.onDataEvent(event1, null));
+    assert ConsumerCallbackResult.isSuccess(callback.onRollback(new SingleSourceSCN(1, 1)));
+    Assert.assertEquals(eventsNum.get(), 250);
+  }
+
+  @Test(groups = {"small", "functional"})
+  public void testDataEventBatchDelayWithoutNewEvents() throws Exception
+  {
+    LOG.info("\n\nstarting testDataEventBatchDelayWithoutNewEvents()");
+
+    List<String> sources = new ArrayList<String>();
+    Map<Long, IdNamePair> sourcesMap = new HashMap<Long, IdNamePair>();
+    DbusEvent event1 = initBatchingTest(sourcesMap, sources);
+
+    BatchCountingConsumer batchConsumer = new BatchCountingConsumer();
+    DatabusV2ConsumerRegistration consumerReg =
+        new DatabusV2ConsumerRegistration(new SelectingDatabusCombinedConsumer(batchConsumer), sources, null);
+    MultiConsumerCallback callback =
+        new MultiConsumerCallback(
+            Arrays.asList(consumerReg),
+            Executors.newCachedThreadPool(),
+            60000,
+            new StreamConsumerCallbackFactory(null, null),
+            null,
+            null,
+            null,
+            null);
+    callback.setSourceMap(sourcesMap);
+    callback.setDataEventBatching(100, 20);
+
+    assert ConsumerCallbackResult.isSuccess(callback.onStartConsumption());
+    assert ConsumerCallbackResult.isSuccess(callback.onStartDataEventSequence(new SingleSourceSCN(1, 1)));
+    assert ConsumerCallbackResult.isSuccess(callback.onStartSource("source1", null));
+    Assert.assertEquals(callback.getNanosToDataEventBatchExpiry(System.nanoTime()), -1);
+    for (int i = 0; i < 5; ++i)
+    {
+      assert ConsumerCallbackResult.isSuccess(callback.onDataEvent(event1, null));
+    }
+
+    //the batch is not submitted before its delay has passed
+    assert ConsumerCallbackResult.isSuccess(callback.submitExpiredDataEventBatches(-1));
+    long waitNanos = callback.getNanosToDataEventBatchExpiry(System.nanoTime());
+    Assert.assertTrue(waitNanos > 0 && waitNanos <= 20 * DbusConstants.NUM_NSECS_IN_MSEC,
+                      "wait: " + waitNanos);
+    Assert.assertEquals(batchConsumer.getBatchesNum(), 0);
+
+    //no new event arrives; the dispatcher submits the batch once it has expired
+    Thread.sleep(waitNanos / DbusConstants.NUM_NSECS_IN_MSEC + 1);
+    assert ConsumerCallbackResult.isSuccess(callback.submitExpiredDataEventBatches(-1));
+    Assert.assertEquals(callback.getNanosToDataEventBatchExpiry(System.nanoTime()), -1);
+    for (int i = 0; i < 100 && batchConsumer.getEventsNum() < 5; ++i)
+    {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(batchConsumer.getEventsNum(), 5);
+    Assert.assertEquals(batchConsumer.getBatchesNum(), 1);
+    assert ConsumerCallbackResult.isSuccess(callback.onEndSource("source1", null));
+    Assert.assertEquals(batchConsumer.getBatchesNum(), 1);
+  }
+
   @Test(groups = {"small", "functional"})
   public void test1StreamConsumerHappyPath()
   {
@@ -1271,6 +1456,55 @@ public class TestMultiConsumerCallback
     }
   }
 
+  static class BatchCountingConsumer extends AbstractDatabusStreamConsumer
+                                     implements DatabusStreamBatchConsumer
+  {
+    private final AtomicInteger _batchesNum = new AtomicInteger();
+    private final AtomicInteger _eventsNum = new AtomicInteger();
+    private volatile int _eventsNumAtEndSource = -1;
+
+    @Override
+    public ConsumerCallbackResult onDataEventBatch(DbusEventBatch batch, DbusEventDecoder eventDecoder)
+    {
+      for (int i = 0; i < batch.size(); ++i)
+      {
+        Assert.assertTrue(batch.getEvent(i).isValid());
+      }
+      _batchesNum.incrementAndGet();
+      _eventsNum.addAndGet(batch.size());
+      return ConsumerCallbackResult.SUCCESS;
+    }
+
+    @Override
+    public ConsumerCallbackResult onDataEvent(DbusEvent e, DbusEventDecoder eventDecoder)
+    {
+      Assert.fail("onDataEvent called for a batch consumer");
+      return ConsumerCallbackResult.ERROR;
+    }
+
+    @Override
+    public ConsumerCallbackResult onEndSource(String source, Schema sourceSchema)
+    {
+      _eventsNumAtEndSource = _eventsNum.get();
+      return ConsumerCallbackResult.SUCCESS;
+    }
+
+    public int getBatchesNum()
+    {
+      return _batchesNum.get();
+    }
+
+    public int getEventsNum()
+    {
+      return _eventsNum.get();
+    }
+
+    public int getEventsNumAtEndSource()
+    {
+      return _eventsNumAtEndSource;
+    }
+  }
+
   class TimingOutMultiConsumerCallback extends MultiConsumerCallback
   {
 
@@ -0,0 +1,199 @@
+package com.linkedin.databus.client;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+
+import com.linkedin.databus.core.DbusConstants;
+
+/**
+ * Sizes the /stream requests of a {@link RelayPullThread} from what it observes about the
+ * relay and the dispatcher:
+ *
+ * <ul>
+ *   <li>the response latency: the time from sending a /stream request until its response has
+ *   been read into the event buffer;</li>
+ *   <li>the dispatcher drain rate: how fast free space appears in the event buffer between the
+ *   end of a response and the next request. The puller is the only writer to the buffer, so any
+ *   space freed in that interval has been freed by the dispatcher;</li>
+ *   <li>the event rate: the number of events per response and per ms of response latency.</li>
+ * </ul>
+ *
+ * <p>The dispatcher keeps freeing space while a request is in flight. The controller therefore
+ * asks for the current free space plus the bytes expected to be freed during one response
+ * latency, and lets the request be sent before the full free buffer threshold is available. If
+ * the last response filled a good part of the fetch size, the relay most likely has more, and the
+ * next request is sent without the poll delay. Smaller responses, e.g. a single control event
+ * from a relay that is only trickling events, still get the poll delay so that the puller does
+ * not loop on them.
+ *
+ * <p>The class is not thread-safe; it is used only by the puller.
+ */
+public class AdaptiveFetchController
+{
+  /** The weight of a new sample in the moving averages */
+  static final double SAMPLE_WEIGHT = 0.25;
+  /** A request is never sent with less than this fraction of the free buffer threshold available */
+  static final double MIN_FREE_SPACE_FRACTION = 0.25;
+  /** Drain rate samples over shorter intervals are too noisy to be used */
+  static final long MIN_DRAIN_SAMPLE_NANOS = DbusConstants.NUM_NSECS_IN_MSEC;
+  /** Responses smaller than this fraction of the fetch size are followed by the poll delay */
+  static final double MIN_FULL_RESPONSE_FRACTION = 0.1;
+
+  private double _avgLatencyMs = -1.0;
+  private double _avgDrainBytesPerMs = -1.0;
+  private double _avgEventsPerResponse = -1.0;
+  private double _avgEventsPerMs = -1.0;
+  private long _lastRequestNanos = -1;
+  private long _lastResponseNanos = -1;
+  private long _freeSpaceAtLastResponse = -1;
+  private int _lastEventsNum = 0;
+  private long _lastResponseBytes = 0;
+  private int _lastFetchSize = -1;
+
+  private static double addSample(double avg, double sample)
+  {
+    return avg < 0 ? sample : (1.0 - SAMPLE_WEIGHT) * avg + SAMPLE_WEIGHT * sample;
+  }
+
+  /**
+   * Records that a /stream request is about to be sent
+   * @param  nowNanos       the current time
+   * @param  freeSpace      the current free space in the event buffer
+   */
+  public void onRequest(long nowNanos, long freeSpace)
+  {
+    if (_lastResponseNanos > 0 && _freeSpaceAtLastResponse >= 0)
+    {
+      long elapsedNanos = nowNanos - _lastResponseNanos;
+      if (elapsedNanos >= MIN_DRAIN_SAMPLE_NANOS)
+      {
+        double freedBytes = Math.max(0, freeSpace - _freeSpaceAtLastResponse);
+        double elapsedMs = (double)elapsedNanos / DbusConstants.NUM_NSECS_IN_MSEC;
+        _avgDrainBytesPerMs = addSample(_avgDrainBytesPerMs, freedBytes / elapsedMs);
+      }
+    }
+    _lastRequestNanos = nowNanos;
+  }
+
+  /**
+   * Records that the response of the last /stream request has been read into the event buffer
+   * @param  nowNanos       the current time
+   * @param  eventsNum      the number of events in the response
+   * @param  responseBytes  the size of the response body
+   * @param  freeSpace      the free space in the event buffer after the response has been read
+   */
+  public void onResponse(long nowNanos, int eventsNum, long responseBytes, long freeSpace)
+  {
+    if (_lastRequestNanos > 0)
+    {
+      double latencyMs = (double)(nowNanos - _lastRequestNanos) / DbusConstants.NUM_NSECS_IN_MSEC;
+      _avgLatencyMs = addSample(_avgLatencyMs, latencyMs);
+      if (latencyMs > 0)
+      {
+        _avgEventsPerMs = addSample(_avgEventsPerMs, eventsNum / latencyMs);
+      }
+    }
+    _avgEventsPerResponse = addSample(_avgEventsPerResponse, eventsNum);
+    _lastEventsNum = eventsNum;
+    _lastResponseBytes = responseBytes;
+    _lastResponseNanos = nowNanos;
+    _freeSpaceAtLastResponse = freeSpace;
+  }
+
+  /** Forgets the measurements of the current request, e.g. after a connection error */
+  public void reset()
+  {
+    _lastRequestNanos = -1;
+    _lastResponseNanos = -1;
+    _freeSpaceAtLastResponse = -1;
+    _lastEventsNum = 0;
+    _lastResponseBytes = 0;
+  }
+
+  /** The number of bytes the dispatcher is expected to free while a request is in flight */
+  public long getExpectedDrainBytes()
+  {
+    if (_avgLatencyMs < 0 || _avgDrainBytesPerMs < 0) return 0;
+    return (long)(_avgLatencyMs * _avgDrainBytesPerMs);
+  }
+
+  /**
+   * Computes the minimum free space in the event buffer required to send the next request
+   * @param  freeBufferThreshold    the configured threshold
+   */
+  public int computeMinFreeSpace(int freeBufferThreshold)
+  {
+    long minFreeSpace = freeBufferThreshold - getExpectedDrainBytes();
+    return (int)Math.max((long)(freeBufferThreshold * MIN_FREE_SPACE_FRACTION), minFreeSpace);
+  }
+
+  /**
+   * Computes the fetch size for the next request
+   * @param  freeReadSpace    the space currently available for reading events into the buffer
+   * @param  minFetchSize     the smallest allowed fetch size
+   * @param  maxFetchSize     the largest allowed fetch size
+   */
+  public int computeFetchSize(int freeReadSpace, int minFetchSize, int maxFetchSize)
+  {
+    long fetchSize = freeReadSpace + getExpectedDrainBytes();
+    fetchSize = Math.min(maxFetchSize, fetchSize);
+    _lastFetchSize = (int)Math.max(minFetchSize, fetchSize);
+    return _lastFetchSize;
+  }
+
+  /** Checks if the relay is likely to have more events for an immediate request */
+  public boolean isMoreDataExpected()
+  {
+    if (_lastEventsNum <= 0 || _lastFetchSize <= 0) return false;
+    return _lastResponseBytes >= (long)(_lastFetchSize * MIN_FULL_RESPONSE_FRACTION);
+  }
+
+  public double getAvgLatencyMs()
+  {
+    return _avgLatencyMs;
+  }
+
+  public double getAvgDrainBytesPerMs()
+  {
+    return _avgDrainBytesPerMs;
+  }
+
+  public double getAvgEventsPerResponse()
+  {
+    return _avgEventsPerResponse;
+  }
+
+  public double getAvgEventsPerMs()
+  {
+    return _avgEventsPerMs;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "AdaptiveFetchController [avgLatencyMs=" + _avgLatencyMs
+        + ", avgDrainBytesPerMs=" + _avgDrainBytesPerMs
+        + ", avgEventsPerResponse=" + _avgEventsPerResponse
+        + ", avgEventsPerMs=" + _avgEventsPerMs
+        + ", lastEventsNum=" + _lastEventsNum
+        + ", lastResponseBytes=" + _lastResponseBytes
+        + ", lastFetchSize=" + _lastFetchSize + "]";
+  }
+}
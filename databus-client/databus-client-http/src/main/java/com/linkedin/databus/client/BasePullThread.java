@@ -22,6 +22,8 @@ package com.linkedin.databus.client;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 
 import javax.management.MBeanServer;
 
@@ -33,6 +35,7 @@ import com.linkedin.databus.client.pub.mbean.UnifiedClientStats;
 import com.linkedin.databus.core.DatabusComponentStatus;
 import com.linkedin.databus.core.DatabusComponentStatus.Status;
 import com.linkedin.databus.core.DbusEventBuffer;
+import com.linkedin.databus.core.DbusEventBufferStateListener;
 import com.linkedin.databus.core.DbusEventFactory;
 import com.linkedin.databus.core.async.AbstractActorMessageQueue;
 import com.linkedin.databus.core.async.LifecycleMessage;
@@ -61,6 +64,21 @@ public abstract class BasePullThread extends AbstractActorMessageQueue
   /*  Filter to clear message queue before adding PickServer */
   private final MessageQueueFilter pickServerFilter = new PickServerEnqueueFilter();
 
+  /** Wakes up the puller on a shared executor when the dispatcher frees buffer space */
+  private final DbusEventBufferStateListener _bufferSpaceListener = new DbusEventBufferStateListener()
+  {
+    @Override
+    public void onEventsAppended()
+    {
+    }
+
+    @Override
+    public void onSpaceFreed()
+    {
+      wakeUp();
+    }
+  };
+
   public BasePullThread(String name,
                         BackoffTimerStaticConfig pullerRetries,
                         DatabusSourcesConnection sourcesConn,
@@ -271,6 +289,22 @@ public abstract class BasePullThread extends AbstractActorMessageQueue
     else _status.retryOnLastError();
   }
 
+  /**
+   * Same as {@link #backoffOnPullError()} but, if the puller runs on a shared executor, the
+   * backoff delays the next message instead of blocking the executor thread.
+   */
+  protected void backoffOnPullErrorLater()
+  {
+    if (!isOnSharedExecutor())
+    {
+      backoffOnPullError();
+      return;
+    }
+    long sleepMs = _status.isRunningStatus() ? _status.retryOnErrorLater("pull error")
+                                             : _status.retryOnLastErrorLater();
+    delayNextMessage(sleepMs);
+  }
+
   @Override
   protected boolean shouldRetainMessageOnPause(Object msg)
   {
@@ -425,6 +459,22 @@ public abstract class BasePullThread extends AbstractActorMessageQueue
     _sourcesConn = conn;
   }
 
+  @Override
+  public void runOn(ScheduledExecutorService executor, Executor blockingExecutor)
+  {
+    _currentState.getDataEventsBuffer().addStateListener(_bufferSpaceListener);
+    super.runOn(executor, blockingExecutor);
+  }
+
+  /** Stops the wake-ups from the buffer; to be called by {@link #onShutdown()} */
+  protected void removeBufferStateListener()
+  {
+    if (isOnSharedExecutor())
+    {
+      _currentState.getDataEventsBuffer().removeStateListener(_bufferSpaceListener);
+    }
+  }
+
   @Override
   protected Object preEnqueue(Object message)
   {
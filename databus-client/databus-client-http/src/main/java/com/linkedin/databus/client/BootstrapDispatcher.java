@@ -47,6 +47,8 @@ public class BootstrapDispatcher extends GenericDispatcher<DatabusCombinedConsum
   private final RelayPullThread _relayPuller;
   private Checkpoint _lastCkpt;
   private DbusClientMode _bootstrapMode;
+  /** Set when the bootstrap is complete until the memory of the drained buffer has been released */
+  private boolean _releaseBufferWhenIdle;
 
   public BootstrapDispatcher(String name,
                              StaticConfig connConfig,
@@ -69,9 +71,49 @@ public class BootstrapDispatcher extends GenericDispatcher<DatabusCombinedConsum
   {
     _bootstrapMode = DbusClientMode.BOOTSTRAP_SNAPSHOT;
     _lastCkpt = null;
+    _releaseBufferWhenIdle = false;
     super.doStartDispatchEvents();
   }
 
+  @Override
+  protected void doDispatchEvents()
+  {
+    if (_releaseBufferWhenIdle)
+    {
+      releaseIdleBuffer();
+    }
+    super.doDispatchEvents();
+  }
+
+  /**
+   * Once all events of a completed bootstrap have been dispatched, removes them from the buffer
+   * (no checkpoint is stored for the final checkpoint event, so it is not removed otherwise) and
+   * lets the connection give the buffer memory back to the client buffer budget.
+   */
+  private void releaseIdleBuffer()
+  {
+    if (DbusClientMode.ONLINE_CONSUMPTION != _bootstrapMode)
+    {
+      // a new bootstrap has started
+      _releaseBufferWhenIdle = false;
+      return;
+    }
+    DispatcherState curState = getDispatcherState();
+    if (DispatcherState.StateId.EXPECT_EVENT_WINDOW != curState.getStateId() ||
+        curState.getEventsIterator().hasNext())
+    {
+      return;
+    }
+
+    removeEvents(curState);
+    DatabusSourcesConnection sourcesConn = _relayPuller.getSourcesConnection();
+    if (null != sourcesConn)
+    {
+      sourcesConn.releaseIdleBootstrapBuffer();
+    }
+    _releaseBufferWhenIdle = false;
+  }
+
   @Override
   protected boolean processSysEvent(DispatcherState curState, DbusEvent event)
   {
@@ -106,6 +148,7 @@ public class BootstrapDispatcher extends GenericDispatcher<DatabusCombinedConsum
             Checkpoint restartCkpt = _lastCkpt.clone();
             _relayPuller.enqueueMessage(
                 BootstrapResultMessage.createBootstrapCompleteMessage(restartCkpt));
+            _releaseBufferWhenIdle = true;
           }
         }
         catch (RuntimeException e )
@@ -22,6 +22,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -103,6 +104,12 @@ public class BootstrapPullThread extends BasePullThread
 
   private ReentrantLock _v3BootstrapLock = null;
 
+  // the number of rid ranges of a snapshot source to pull concurrently
+  private final int _snapshotParallelism;
+  // the in-flight pulls of the rid ranges of the current snapshot source
+  private final List<BootstrapSnapshotRangePull> _rangePulls = new ArrayList<BootstrapSnapshotRangePull>();
+  private int _rangePullsGeneration = 0;
+
   public BootstrapPullThread(String name,
       DatabusSourcesConnection sourcesConn,
       DbusEventBuffer dbusEventBuffer,
@@ -139,6 +146,7 @@ public class BootstrapPullThread extends BasePullThread
     _remoteExceptionHandler = new RemoteExceptionHandler(sourcesConn, dbusEventBuffer, eventFactory);
     _pullerBufferUtilizationPct = pullerBufferUtilPct;
     _v3BootstrapLock = v3BootstrapLock;
+    _snapshotParallelism = sourcesConn.getConnectionConfig().getBstSnapshotParallelism();
 
     // TODO (DDSDBUS-84): if resumeCkpt is not empty, i.e. we are starting fresh, make sure the
     // sources passed in are exactly the same as what's stored in the checkpoint -
@@ -152,6 +160,19 @@ public class BootstrapPullThread extends BasePullThread
     // }
   }
 
+  /** Reading the response of a /bootstrap request or of a snapshot range blocks while the data arrives */
+  @Override
+  protected boolean isBlockingMessage(Object message)
+  {
+    if (message instanceof ConnectionStateMessage)
+    {
+      return ((ConnectionStateMessage)message).getStateId() == StateId.STREAM_REQUEST_SUCCESS;
+    }
+    return message instanceof BootstrapSnapshotRangePull &&
+           ((BootstrapSnapshotRangePull)message).getStateId() ==
+               BootstrapSnapshotRangePull.StateId.STREAM_REQUEST_SUCCESS;
+  }
+
   @Override
   protected boolean shouldDelayTearConnection(StateId stateId)
   {
@@ -221,6 +242,10 @@ public class BootstrapPullThread extends BasePullThread
         }
       }
     }
+    else if (message instanceof BootstrapSnapshotRangePull)
+    {
+      doSnapshotRangePull(_currentState, (BootstrapSnapshotRangePull)message);
+    }
     else if (message instanceof SourcesMessage)
     {
       SourcesMessage sourcesMessage = (SourcesMessage)message;
@@ -350,6 +375,8 @@ public class BootstrapPullThread extends BasePullThread
   {
     try
     {
+      removeBufferStateListener();
+      closeSnapshotRangePulls();
       if (null != _lastOpenConnection)
       {
         _log.info("closing open connection");
@@ -634,18 +661,26 @@ public class BootstrapPullThread extends BasePullThread
     if (debugEnabled) _log.debug("Checking for free space");
 
     //curState.getDataEventsBuffer().waitForFreeSpace(FREE_BUFFER_THRESHOLD);
-    int freeBufferThreshold=(int)(_sourcesConn.getConnectionConfig().getFreeBufferThreshold() *
-        100.0 / _pullerBufferUtilizationPct);
+    int freeBufferThreshold = getFreeBufferThreshold();
     int freeSpace = curState.getDataEventsBuffer().getBufferFreeReadSpace();
     if (freeSpace >= freeBufferThreshold)
     {
       Checkpoint cp = curState.getCheckpoint();
       if (debugEnabled) _log.debug("Checkpoint at RequestBootstrapData: " + cp.toString());
 
+      if (cp.getConsumptionMode() == DbusClientMode.BOOTSTRAP_SNAPSHOT && _snapshotParallelism > 1)
+      {
+        if (cp.getSnapshotRangesNum() > 0)
+        {
+          startSnapshotRangePulls(curState);
+          return;
+        }
+        // the server splits a large snapshot into ranges in the response to this request
+        cp.setSnapshotRangesRequested(_snapshotParallelism);
+      }
 
       _log.debug("Sending /bootstrap request");
 
-      Map<String, IdNamePair> srcNameMap = curState.getSourcesNameMap();
       String curSrcName = null;
       if (cp.getConsumptionMode() == DbusClientMode.BOOTSTRAP_SNAPSHOT)
       {
@@ -654,63 +689,315 @@ public class BootstrapPullThread extends BasePullThread
         curSrcName = cp.getCatchupSource();
       }
 
+      DbusKeyFilter filter = getSourceFilter(curState, curSrcName);
 
-      if ( null == _bootstrapFilter)
+      int fetchSize = (int)((curState.getDataEventsBuffer().getBufferFreeReadSpace() / 100.0) *
+                      _pullerBufferUtilizationPct);
+      fetchSize = Math.max(freeBufferThreshold, fetchSize);
+      curState.switchToStreamRequestSent();
+      sendHeartbeat(_sourcesConn.getUnifiedClientStats());
+      curState.getBootstrapConnection().requestStream(
+          curState.getSourcesIdListString(),
+          filter,
+          fetchSize,
+          cp, curState);
+    }
+    else
+    {
+      awaitWakeUp(50);
+      enqueueMessage(curState);
+    }
+  }
+
+  private int getFreeBufferThreshold()
+  {
+    return (int)(_sourcesConn.getConnectionConfig().getFreeBufferThreshold() *
+        100.0 / _pullerBufferUtilizationPct);
+  }
+
+  private DbusKeyFilter getSourceFilter(ConnectionState curState, String srcName)
+  {
+    Map<String, IdNamePair> srcNameMap = curState.getSourcesNameMap();
+
+    if ( null == _bootstrapFilter)
+    {
+      _bootstrapFilter = new DbusKeyCompositeFilter();
+
+      for (DbusKeyCompositeFilterConfig conf : _bootstrapFilterConfigs)
       {
-        _bootstrapFilter = new DbusKeyCompositeFilter();
-        Map<String, IdNamePair> srcNameIdMap = curState.getSourcesNameMap();
+        Map<String, KeyFilterConfigHolder> cMap = conf.getConfigMap();
 
-        for (DbusKeyCompositeFilterConfig conf : _bootstrapFilterConfigs)
+        Map<Long, KeyFilterConfigHolder> fConfMap = new HashMap<Long, KeyFilterConfigHolder>();
+        for ( Entry<String, KeyFilterConfigHolder> e : cMap.entrySet())
         {
-          Map<String, KeyFilterConfigHolder> cMap = conf.getConfigMap();
+          IdNamePair idName = srcNameMap.get(e.getKey());
 
-          Map<Long, KeyFilterConfigHolder> fConfMap = new HashMap<Long, KeyFilterConfigHolder>();
-          for ( Entry<String, KeyFilterConfigHolder> e : cMap.entrySet())
+          if ( null != idName)
           {
-            IdNamePair idName = srcNameIdMap.get(e.getKey());
-
-            if ( null != idName)
-            {
-              fConfMap.put(idName.getId(),e.getValue());
-            }
+            fConfMap.put(idName.getId(),e.getValue());
           }
-
-          _bootstrapFilter.merge(new DbusKeyCompositeFilter(fConfMap));
         }
-        _bootstrapFilter.dedupe();
+
+        _bootstrapFilter.merge(new DbusKeyCompositeFilter(fConfMap));
       }
+      _bootstrapFilter.dedupe();
+    }
+
+    DbusKeyFilter filter = null;
+    IdNamePair srcEntry = srcNameMap.get(srcName);
 
-      DbusKeyFilter filter = null;
-      IdNamePair srcEntry = srcNameMap.get(curSrcName);
+    if ( null != srcEntry)
+    {
+      Map<Long, DbusKeyFilter> fMap = _bootstrapFilter.getFilterMap();
+
+      if ( null != fMap)
+        filter = fMap.get(srcEntry.getId());
+    }
+    return filter;
+  }
+
+  /**
+   * Starts concurrent pulls of the incomplete rid ranges of the current snapshot source, each on
+   * its own connection. The puller state stays STREAM_REQUEST_SENT until all ranges have been
+   * pulled or a range pull fails.
+   */
+  private void startSnapshotRangePulls(ConnectionState curState)
+  {
+    Checkpoint cp = curState.getCheckpoint();
+    // the checkpoint persisted from a range response may still have the index of the range
+    cp.setSnapshotRangeIndex(Checkpoint.UNSET_SNAPSHOT_RANGE_INDEX);
+    closeSnapshotRangePulls();
+    if (cp.areSnapshotRangesCompleted())
+    {
+      // the client was restarted after the last range completed
+      curState.getBstCheckpointHandler().finalizeSnapshotPhase(cp);
+      curState.switchToStreamResponseDone();
+      enqueueMessage(curState);
+      return;
+    }
 
-      if ( null != srcEntry)
+    curState.switchToStreamRequestSent();
+    for (int i = 0; i < cp.getSnapshotRangesNum(); ++i)
+    {
+      if (cp.isSnapshotRangeCompleted(i)) continue;
+      try
       {
-        Map<Long, DbusKeyFilter> fMap = _bootstrapFilter.getFilterMap();
+        DatabusBootstrapConnection rangeConn =
+            _sourcesConn.getBootstrapConnFactory().createConnection(_curServer, this, _remoteExceptionHandler);
+        _rangePulls.add(new BootstrapSnapshotRangePull(i, _rangePullsGeneration, rangeConn));
+      }
+      catch (Exception e)
+      {
+        _log.error("Unable to get connection to bootstrap server:" + _curServer, e);
+        abortSnapshotRangePulls(curState);
+        return;
+      }
+    }
+
+    _log.info("pulling " + _rangePulls.size() + " snapshot ranges of source " + cp.getSnapshotSource()
+              + " concurrently");
+    sendHeartbeat(_sourcesConn.getUnifiedClientStats());
+    for (BootstrapSnapshotRangePull pull: new ArrayList<BootstrapSnapshotRangePull>(_rangePulls))
+    {
+      doRequestSnapshotRange(curState, pull);
+    }
+  }
+
+  private void doSnapshotRangePull(ConnectionState curState, BootstrapSnapshotRangePull pull)
+  {
+    if (pull.getGeneration() != _rangePullsGeneration)
+    {
+      if (_log.isDebugEnabled()) _log.debug("ignoring stale range pull: " + pull);
+      return;
+    }
 
-        if ( null != fMap)
-          filter = fMap.get(srcEntry.getId());
+    switch (pull.getStateId())
+    {
+      case IDLE: doRequestSnapshotRange(curState, pull); break;
+      case STREAM_REQUEST_SUCCESS: doReadSnapshotRange(curState, pull); break;
+      case STREAM_REQUEST_ERROR:
+      case STREAM_RESPONSE_ERROR:
+      {
+        _log.error("snapshot range pull failed: " + pull);
+        abortSnapshotRangePulls(curState);
+        break;
       }
+      default:
+      {
+        _log.error("Unexpected snapshot range pull state: " + pull);
+        break;
+      }
+    }
+  }
 
-      int fetchSize = (int)((curState.getDataEventsBuffer().getBufferFreeReadSpace() / 100.0) *
-                      _pullerBufferUtilizationPct);
-      fetchSize = Math.max(freeBufferThreshold, fetchSize);
-      curState.switchToStreamRequestSent();
-      sendHeartbeat(_sourcesConn.getUnifiedClientStats());
-      curState.getBootstrapConnection().requestStream(
-          curState.getSourcesIdListString(),
-          filter,
-          fetchSize,
-          cp, curState);
+  private void doRequestSnapshotRange(ConnectionState curState, BootstrapSnapshotRangePull pull)
+  {
+    // the responses of the requests in flight will use up to their fetch sizes of the free space
+    int outstandingFetchSize = 0;
+    int idlePullsNum = 0;
+    for (BootstrapSnapshotRangePull rangePull: _rangePulls)
+    {
+      if (BootstrapSnapshotRangePull.StateId.IDLE == rangePull.getStateId())
+      {
+        ++idlePullsNum;
+      }
+      else
+      {
+        outstandingFetchSize += rangePull.getOutstandingFetchSize();
+      }
     }
-    else
+
+    int freeBufferThreshold = getFreeBufferThreshold();
+    int freeSpace = curState.getDataEventsBuffer().getBufferFreeReadSpace() - outstandingFetchSize;
+    if (freeSpace < freeBufferThreshold)
     {
-      try
+      awaitWakeUp(50);
+      enqueueMessage(pull);
+      return;
+    }
+
+    // the idle pulls share the unclaimed free space of the buffer
+    int fetchSize = (int)((freeSpace / 100.0) * _pullerBufferUtilizationPct) / Math.max(1, idlePullsNum);
+    fetchSize = Math.max(freeBufferThreshold, fetchSize);
+    Checkpoint cp = curState.getCheckpoint();
+    Checkpoint rangeCkpt = cp.createSnapshotRangeCheckpoint(pull.getRangeIndex());
+    pull.requestStream(curState.getSourcesIdListString(),
+                       getSourceFilter(curState, cp.getSnapshotSource()),
+                       fetchSize,
+                       rangeCkpt);
+  }
+
+  private void doReadSnapshotRange(ConnectionState curState, BootstrapSnapshotRangePull pull)
+  {
+    boolean success = true;
+    try
+    {
+      Checkpoint cp = curState.getCheckpoint();
+      DbusEventBuffer eventBuffer = curState.getDataEventsBuffer();
+      ChunkedBodyReadableByteChannel readChannel = pull.getReadChannel();
+
+      String remoteErrorName = RemoteExceptionHandler.getExceptionName(readChannel);
+      Throwable remoteError = _remoteExceptionHandler.getException(readChannel);
+      if (null != remoteError &&
+          remoteError instanceof BootstrapDatabaseTooOldException)
+      {
+        _log.error("Bootstrap database is too old!");
+        _remoteExceptionHandler.handleException(remoteError);
+        success = false;
+      }
+      else if (null != remoteErrorName)
       {
-        Thread.sleep(50);
+        //remote processing error
+        _log.error("read events error: " + RemoteExceptionHandler.getExceptionMessage(readChannel));
+        success = false;
       }
-      catch (InterruptedException ie) {}
-      enqueueMessage(curState);
+      else
+      {
+        UnifiedClientStats unifiedClientStats = _sourcesConn.getUnifiedClientStats();
+        sendHeartbeat(unifiedClientStats);
+        int eventsNum = eventBuffer.readEvents(readChannel, pull.getListeners(),
+                                               _sourcesConn.getBootstrapEventsStatsCollector());
+
+        if (eventsNum == 0 &&
+            _remoteExceptionHandler.getPendingEventSize(readChannel) > eventBuffer.getMaxReadBufferCapacity())
+        {
+          String err = "ReadBuffer max capacity(" + eventBuffer.getMaxReadBufferCapacity() +
+                       ") is less than event size(" +
+                       _remoteExceptionHandler.getPendingEventSize(readChannel) +
+                       "). Increase databus.client.connectionDefaults.bstEventBuffer.maxEventSize and restart.";
+          _log.fatal(err);
+          closeSnapshotRangePulls();
+          enqueueMessage(LifecycleMessage.createSuspendOnErroMessage(new PendingEventTooLargeException(err)));
+          return;
+        }
+
+        resetServerRetries();
+        numEventsInCurrentState += eventsNum;
+
+        // merge the progress of the range into the checkpoint of the source
+        final int rangeIndex = pull.getRangeIndex();
+        if (null != readChannel.getMetadata("PhaseCompleted"))
+        {
+          cp.setSnapshotRangeOffset(rangeIndex, Checkpoint.FULLY_CONSUMED_WINDOW_OFFSET);
+          _log.info("Snapshot range " + rangeIndex + " of source " + cp.getSnapshotSource() + " completed");
+        }
+        else if (eventsNum > 0)
+        {
+          Checkpoint rangeCkpt = pull.getCheckpoint();
+          rangeCkpt.bootstrapCheckPoint();
+          cp.setSnapshotRangeOffset(rangeIndex, rangeCkpt.getSnapshotOffset());
+        }
+
+        // the checkpoints in the response only have the progress of this range
+        DbusEventInternalReadable cpEvent = getEventFactory().createCheckpointEvent(cp);
+        if (!eventBuffer.injectEvent(cpEvent))
+        {
+          _log.error("Unable to write bootstrap range checkpoint");
+        }
+
+        if (cp.areSnapshotRangesCompleted())
+        {
+          closeSnapshotRangePulls();
+          curState.getBstCheckpointHandler().finalizeSnapshotPhase(cp);
+          _log.info("Bootstrap events read :" + numEventsInCurrentState + " during phase:"
+                    + cp.getConsumptionMode() + " [" + cp.getBootstrapSnapshotSourceIndex()
+                    + "," + cp.getBootstrapCatchupSourceIndex() + "]");
+          numEventsInCurrentState = 0;
+          curState.switchToStreamResponseDone();
+          enqueueMessage(curState);
+        }
+        else if (cp.isSnapshotRangeCompleted(rangeIndex))
+        {
+          pull.close();
+          _rangePulls.remove(pull);
+        }
+        else
+        {
+          pull.switchToIdle();
+          doRequestSnapshotRange(curState, pull);
+        }
+      }
+    }
+    catch (InterruptedException ie)
+    {
+      _log.error("interupted", ie);
+      success = false;
+    }
+    catch (InvalidEventException e)
+    {
+      _log.error("error reading events from server: " + e.getMessage(), e);
+      success = false;
+    }
+    catch (RuntimeException e)
+    {
+      _log.error("runtime error reading events from server: " + e.getMessage(), e);
+      success = false;
+    }
+
+    if (!success)
+    {
+      abortSnapshotRangePulls(curState);
+    }
+  }
+
+  /** Closes the range pulls and restarts the snapshot of the ranges from the merged checkpoint */
+  private void abortSnapshotRangePulls(ConnectionState curState)
+  {
+    closeSnapshotRangePulls();
+    processStreamResponseError(curState);
+  }
+
+  private void closeSnapshotRangePulls()
+  {
+    if (_rangePulls.isEmpty()) return;
+
+    // any callbacks still in flight for these pulls will be ignored
+    ++_rangePullsGeneration;
+    for (BootstrapSnapshotRangePull pull: _rangePulls)
+    {
+      pull.close();
     }
+    _rangePulls.clear();
   }
 
   protected void doReadBootstrapEvents(ConnectionState curState)
@@ -1055,6 +1342,7 @@ public class BootstrapPullThread extends BasePullThread
   @Override
   protected void resetConnection()
   {
+    closeSnapshotRangePulls();
     DatabusServerConnection bootstrapConnection =  _currentState.getBootstrapConnection();
     if ( null != bootstrapConnection)
     {
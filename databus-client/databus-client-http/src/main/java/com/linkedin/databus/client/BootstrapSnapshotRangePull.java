@@ -0,0 +1,207 @@
+package com.linkedin.databus.client;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.Collections;
+import java.util.List;
+
+import com.linkedin.databus.client.pub.ServerInfo;
+import com.linkedin.databus.core.Checkpoint;
+import com.linkedin.databus.core.InternalDatabusEventsListener;
+import com.linkedin.databus2.core.filter.DbusKeyFilter;
+
+/**
+ * The pull of one rid range of a parallel bootstrap snapshot (see
+ * {@link Checkpoint#getSnapshotRangesNum()}). Each range has its own connection to the bootstrap
+ * server so that the server reads the ranges concurrently. The connection callbacks are sent to the
+ * {@link BootstrapPullThread} as this object.
+ */
+class BootstrapSnapshotRangePull implements DatabusBootstrapConnectionStateMessage
+{
+  public enum StateId
+  {
+    IDLE,
+    STREAM_REQUEST_SENT,
+    STREAM_REQUEST_SUCCESS,
+    STREAM_REQUEST_ERROR,
+    STREAM_RESPONSE_ERROR
+  }
+
+  private final int _rangeIndex;
+  /** the pulls of the puller before its last reset are stale */
+  private final int _generation;
+  private final DatabusBootstrapConnection _connection;
+  private volatile StateId _stateId = StateId.IDLE;
+  private Checkpoint _checkpoint;
+  private List<InternalDatabusEventsListener> _listeners;
+  private ChunkedBodyReadableByteChannel _readChannel;
+  /** the fetch size of the request in flight; 0 if idle */
+  private int _fetchSize;
+
+  public BootstrapSnapshotRangePull(int rangeIndex, int generation, DatabusBootstrapConnection connection)
+  {
+    _rangeIndex = rangeIndex;
+    _generation = generation;
+    _connection = connection;
+  }
+
+  /**
+   * Requests the next chunk of the range
+   * @param  checkpoint     the checkpoint for the range; updated from the response events
+   */
+  public void requestStream(String sourcesIdList, DbusKeyFilter filter, int freeBufferSpace,
+                            Checkpoint checkpoint)
+  {
+    _checkpoint = checkpoint;
+    _listeners = Collections.<InternalDatabusEventsListener>singletonList(checkpoint);
+    _readChannel = null;
+    _fetchSize = freeBufferSpace;
+    _stateId = StateId.STREAM_REQUEST_SENT;
+    _connection.requestStream(sourcesIdList, filter, freeBufferSpace, checkpoint, this);
+  }
+
+  public void switchToIdle()
+  {
+    _readChannel = null;
+    _fetchSize = 0;
+    _stateId = StateId.IDLE;
+  }
+
+  public void close()
+  {
+    _connection.close();
+  }
+
+  public int getRangeIndex()
+  {
+    return _rangeIndex;
+  }
+
+  public int getGeneration()
+  {
+    return _generation;
+  }
+
+  public StateId getStateId()
+  {
+    return _stateId;
+  }
+
+  /** The buffer space that the response to the request in flight may still use */
+  public int getOutstandingFetchSize()
+  {
+    return StateId.IDLE == _stateId ? 0 : _fetchSize;
+  }
+
+  public Checkpoint getCheckpoint()
+  {
+    return _checkpoint;
+  }
+
+  public List<InternalDatabusEventsListener> getListeners()
+  {
+    return _listeners;
+  }
+
+  public ChunkedBodyReadableByteChannel getReadChannel()
+  {
+    return _readChannel;
+  }
+
+  @Override
+  public void switchToStreamRequestError()
+  {
+    _stateId = StateId.STREAM_REQUEST_ERROR;
+  }
+
+  @Override
+  public void switchToStreamResponseError()
+  {
+    _stateId = StateId.STREAM_RESPONSE_ERROR;
+  }
+
+  @Override
+  public void switchToStreamSuccess(ChunkedBodyReadableByteChannel result)
+  {
+    _readChannel = result;
+    _stateId = StateId.STREAM_REQUEST_SUCCESS;
+  }
+
+  // Only /bootstrap requests are sent on range connections. Treat any other callback as an error.
+
+  @Override
+  public void switchToStartScnRequestError()
+  {
+    _stateId = StateId.STREAM_REQUEST_ERROR;
+  }
+
+  @Override
+  public void switchToStartScnResponseError()
+  {
+    _stateId = StateId.STREAM_RESPONSE_ERROR;
+  }
+
+  @Override
+  public void switchToStartScnSuccess(Checkpoint cp, DatabusBootstrapConnection bootstrapConnection,
+                                      ServerInfo serverInfo)
+  {
+    _stateId = StateId.STREAM_RESPONSE_ERROR;
+  }
+
+  @Override
+  public void switchToStartScnRequestSent()
+  {
+  }
+
+  @Override
+  public void switchToTargetScnRequestError()
+  {
+    _stateId = StateId.STREAM_REQUEST_ERROR;
+  }
+
+  @Override
+  public void switchToTargetScnResponseError()
+  {
+    _stateId = StateId.STREAM_RESPONSE_ERROR;
+  }
+
+  @Override
+  public void switchToTargetScnSuccess()
+  {
+    _stateId = StateId.STREAM_RESPONSE_ERROR;
+  }
+
+  @Override
+  public void switchToTargetScnRequestSent()
+  {
+  }
+
+  @Override
+  public void switchToBootstrapDone()
+  {
+  }
+
+  @Override
+  public String toString()
+  {
+    return "BootstrapSnapshotRangePull [rangeIndex=" + _rangeIndex + ", generation=" + _generation
+        + ", stateId=" + _stateId + ", fetchSize=" + _fetchSize + "]";
+  }
+}
@@ -41,6 +41,7 @@ import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 
 import com.linkedin.databus.client.netty.HttpResponseProcessor;
+import com.linkedin.databus.core.ChunkedReadableByteChannel;
 import com.linkedin.databus2.core.container.DatabusHttpHeaders;
 
 
@@ -50,10 +51,12 @@ import com.linkedin.databus2.core.container.DatabusHttpHeaders;
  * chunks are buffered until the reader consumes them. The number buffered HTTP chunks and the
  * total size of buffered chunks is bounded.
  *
+ * <p>Chunks can also be consumed whole through {@link #readChunk()} which avoids copying them.
+ *
  * @author cbotev
  *
  */
-public class ChunkedBodyReadableByteChannel implements ReadableByteChannel, HttpResponseProcessor
+public class ChunkedBodyReadableByteChannel implements ChunkedReadableByteChannel, HttpResponseProcessor
 {
   public static final String MODULE = ChunkedBodyReadableByteChannel.class.getName();
   public static final Logger LOG = Logger.getLogger(MODULE);
@@ -82,6 +85,8 @@ public class ChunkedBodyReadableByteChannel implements ReadableByteChannel, Http
   private final Queue<ChannelBuffer> _chunks;
   /** The number of currently buffered bytes */
   private int _totalBufferedBytes;
+  /** The number of body bytes consumed by the reader so far */
+  private long _totalReadBytes;
   /** A flag if we have reached the end of the stream */
   private volatile boolean _noMoreChunks;
 
@@ -148,18 +153,7 @@ public class ChunkedBodyReadableByteChannel implements ReadableByteChannel, Http
       if (-1 != saveLimit) buffer.limit(saveLimit);
       if (0 == _currentBuffer.readableBytes())
       {
-        _currentBuffer.resetReaderIndex();
-        _chunkQueueLock.lock();
-        try
-        {
-          _totalBufferedBytes -= _currentBuffer.readableBytes();
-          _hasChunkSpaceCondition.signalAll();
-        }
-        finally
-        {
-          _chunkQueueLock.unlock();
-        }
-        _currentBuffer = null;
+        releaseCurrentBuffer();
       }
       destRemaining = buffer.remaining();
     }
@@ -167,6 +161,59 @@ public class ChunkedBodyReadableByteChannel implements ReadableByteChannel, Http
     return saveRemaining - destRemaining;
   }
 
+  /** The number of body bytes consumed through {@link #read(ByteBuffer)} and {@link #readChunk()} */
+  public long getTotalReadBytes()
+  {
+    _chunkQueueLock.lock();
+    try
+    {
+      return _totalReadBytes;
+    }
+    finally
+    {
+      _chunkQueueLock.unlock();
+    }
+  }
+
+  @Override
+  public ByteBuffer readChunk() throws IOException
+  {
+    if (!_open.get()) return null;
+
+    while (null == _currentBuffer || 0 == _currentBuffer.readableBytes())
+    {
+      if (null != _currentBuffer)
+      {
+        releaseCurrentBuffer();
+      }
+      if (!getChunk()) return null;
+    }
+
+    //heap chunks are wrapped rather than copied
+    ByteBuffer result = _currentBuffer.toByteBuffer();
+    releaseCurrentBuffer();
+
+    return result;
+  }
+
+  /** Releases the space of a consumed chunk for new chunks */
+  private void releaseCurrentBuffer()
+  {
+    _currentBuffer.resetReaderIndex();
+    _chunkQueueLock.lock();
+    try
+    {
+      _totalBufferedBytes -= _currentBuffer.readableBytes();
+      _totalReadBytes += _currentBuffer.readableBytes();
+      _hasChunkSpaceCondition.signalAll();
+    }
+    finally
+    {
+      _chunkQueueLock.unlock();
+    }
+    _currentBuffer = null;
+  }
+
   /**
    * Checks if there is enough space to buffer a chunk with the specified size. The semantics is to
    * enforce the upper bounds of max number of chunks and total size of chunks but also allow the
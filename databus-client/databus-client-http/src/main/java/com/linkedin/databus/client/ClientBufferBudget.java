@@ -0,0 +1,420 @@
+package com.linkedin.databus.client;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.io.File;
+import java.util.IdentityHashMap;
+
+import org.apache.log4j.Logger;
+
+import com.linkedin.databus.client.pub.DatabusClientException;
+import com.linkedin.databus.core.DbusEventBuffer;
+import com.linkedin.databus.core.DbusEventBuffer.AllocationPolicy;
+import com.linkedin.databus.core.DbusEventFactory;
+import com.linkedin.databus.core.util.ConfigBuilder;
+import com.linkedin.databus.core.util.InvalidConfigException;
+
+/**
+ * A client-wide memory budget for the event buffers of the {@link DatabusSourcesConnection}s.
+ *
+ * <p>Without a budget, every connection allocates its relay and bootstrap buffers with the sizes
+ * from its static config, so the memory of a client with many registrations (e.g. one per cluster
+ * partition) grows with the number of registrations. With a budget, each buffer gets
+ * min(configured size, maxConnectionBufferSize, remaining budget) bytes but never less than
+ * minConnectionBufferSize. The bytes are returned to the budget when the connection is stopped,
+ * so later registrations can use them.
+ *
+ * <p>A shrunk buffer keeps the configured max event size, so it must still fit one event of that
+ * size plus the staging (read) buffer. The grant is raised to that size if needed; if the budget
+ * cannot accommodate it, the buffer creation fails. Buffers with the default max event size
+ * (derived from the buffer size) therefore cannot be shrunk; set the max event size explicitly to
+ * let the budget reduce them.
+ *
+ * <p>Bootstrap buffers are only needed while a connection bootstraps. They are created by
+ * {@link #createOnDemandEventBuffer(DbusEventBuffer.StaticConfig, File, DbusEventFactory)} without
+ * memory and their size is taken from the budget by {@link #allocate(DbusEventBuffer)} when the
+ * connection enters bootstrap. {@link #free(DbusEventBuffer)} gives it back when the connection
+ * has returned to online consumption.
+ */
+public class ClientBufferBudget
+{
+  public static final String MODULE = ClientBufferBudget.class.getName();
+  public static final Logger LOG = Logger.getLogger(MODULE);
+
+  private final StaticConfig _staticConfig;
+  /** The granted sizes of the buffers created through the budget */
+  private final IdentityHashMap<DbusEventBuffer, Long> _allocations;
+  /** The sizes of the buffers whose memory is allocated on demand */
+  private final IdentityHashMap<DbusEventBuffer, Long> _onDemandSizes;
+  private long _allocatedBytes;
+
+  public ClientBufferBudget(StaticConfig staticConfig)
+  {
+    _staticConfig = staticConfig;
+    _allocations = new IdentityHashMap<DbusEventBuffer, Long>();
+    _onDemandSizes = new IdentityHashMap<DbusEventBuffer, Long>();
+    _allocatedBytes = 0;
+  }
+
+  public boolean isEnabled()
+  {
+    return _staticConfig.getMaxTotalSize() > 0;
+  }
+
+  /**
+   * Computes the size of a new buffer and reserves it from the budget.
+   * @param  requestedSize      the configured buffer size
+   * @param  minRequiredSize    the smallest size which the buffer can work with
+   * @return the number of bytes granted
+   * @throws DatabusClientException if the budget cannot accommodate the minimum buffer size
+   */
+  synchronized long acquire(long requestedSize, long minRequiredSize) throws DatabusClientException
+  {
+    if (!isEnabled())
+    {
+      return requestedSize;
+    }
+
+    long available = _staticConfig.getMaxTotalSize() - _allocatedBytes;
+    long size = computeSize(requestedSize, minRequiredSize, available);
+    _allocatedBytes += size;
+    return size;
+  }
+
+  /**
+   * Computes the size of a buffer: min(requestedSize, maxConnectionBufferSize, available) but at
+   * least the minimum buffer size
+   * @throws DatabusClientException if the minimum buffer size is bigger than the available bytes
+   */
+  private long computeSize(long requestedSize, long minRequiredSize, long available)
+          throws DatabusClientException
+  {
+    long size = requestedSize;
+    if (_staticConfig.getMaxConnectionBufferSize() > 0)
+    {
+      size = Math.min(size, _staticConfig.getMaxConnectionBufferSize());
+    }
+    long minSize = Math.min(requestedSize,
+                            Math.max(minRequiredSize, _staticConfig.getMinConnectionBufferSize()));
+    size = Math.max(minSize, Math.min(size, available));
+    if (size > available)
+    {
+      throw new DatabusClientException("client buffer budget exhausted: requested " + requestedSize +
+                                       " bytes; min " + minSize + " bytes; available " + available +
+                                       " bytes");
+    }
+    return size;
+  }
+
+  /** Returns bytes obtained through {@link #acquire(long, long)} which were not used for a buffer */
+  synchronized void release(long size)
+  {
+    if (isEnabled())
+    {
+      _allocatedBytes -= size;
+    }
+  }
+
+  /**
+   * Creates an event buffer whose size is granted by the budget. The buffer has to be given back
+   * using {@link #release(DbusEventBuffer)}.
+   * @param  cfg              the buffer configuration
+   * @param  mmapDirectory    the directory for mmapped buffers
+   * @param  eventFactory     the factory for the buffer events
+   */
+  public DbusEventBuffer createEventBuffer(DbusEventBuffer.StaticConfig cfg, File mmapDirectory,
+                                           DbusEventFactory eventFactory)
+         throws DatabusClientException
+  {
+    // a buffer must fit one max-size event and the staging buffer
+    long minRequiredSize = (long)cfg.getMaxEventSize() + cfg.getReadBufferSize();
+    long size = acquire(cfg.getMaxSize(), minRequiredSize);
+    if (size < cfg.getMaxSize())
+    {
+      LOG.info("event buffer size reduced by the client buffer budget from " + cfg.getMaxSize() +
+               " to " + size + " bytes; maxEventSize=" + cfg.getMaxEventSize());
+    }
+
+    DbusEventBuffer result = null;
+    try
+    {
+      result = new DbusEventBuffer(cfg.copyWithMaxSize(size, mmapDirectory), null, eventFactory);
+    }
+    finally
+    {
+      if (null == result)
+      {
+        release(size);
+      }
+    }
+
+    if (isEnabled())
+    {
+      synchronized (this)
+      {
+        _allocations.put(result, size);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Creates an event buffer whose memory is only taken from the budget by
+   * {@link #allocate(DbusEventBuffer)}. The size of the buffer is computed as for
+   * {@link #createEventBuffer(DbusEventBuffer.StaticConfig, File, DbusEventFactory)} but
+   * against the whole budget, since nothing is reserved yet. The memory of the new buffer is
+   * released right away, so the buffer must not be started before it is allocated. Mmapped
+   * buffers cannot release their memory and are created as by
+   * {@link #createEventBuffer(DbusEventBuffer.StaticConfig, File, DbusEventFactory)}.
+   */
+  public DbusEventBuffer createOnDemandEventBuffer(DbusEventBuffer.StaticConfig cfg,
+                                                   File mmapDirectory,
+                                                   DbusEventFactory eventFactory)
+         throws DatabusClientException
+  {
+    if (!isEnabled() || AllocationPolicy.MMAPPED_MEMORY == cfg.getAllocationPolicy())
+    {
+      return createEventBuffer(cfg, mmapDirectory, eventFactory);
+    }
+
+    long minRequiredSize = (long)cfg.getMaxEventSize() + cfg.getReadBufferSize();
+    long size = computeSize(cfg.getMaxSize(), minRequiredSize, _staticConfig.getMaxTotalSize());
+    DbusEventBuffer result = new DbusEventBuffer(cfg.copyWithMaxSize(size, mmapDirectory), null,
+                                                 eventFactory);
+    result.releaseMemory();
+    synchronized (this)
+    {
+      _onDemandSizes.put(result, size);
+    }
+    return result;
+  }
+
+  /**
+   * Takes the memory of a buffer created by
+   * {@link #createOnDemandEventBuffer(DbusEventBuffer.StaticConfig, File, DbusEventFactory)} from
+   * the budget and allocates it.
+   * @return true if the memory has been allocated now; false if the buffer already has it or is
+   *         not allocated on demand
+   * @throws DatabusClientException if the budget does not have the bytes for the buffer
+   */
+  public boolean allocate(DbusEventBuffer buffer) throws DatabusClientException
+  {
+    long size;
+    synchronized (this)
+    {
+      Long onDemandSize = _onDemandSizes.get(buffer);
+      if (null == onDemandSize || _allocations.containsKey(buffer))
+      {
+        return false;
+      }
+      size = onDemandSize;
+      long available = _staticConfig.getMaxTotalSize() - _allocatedBytes;
+      if (size > available)
+      {
+        throw new DatabusClientException("client buffer budget exhausted: requested " + size +
+                                         " bytes; available " + available + " bytes");
+      }
+      _allocatedBytes += size;
+      _allocations.put(buffer, size);
+    }
+
+    boolean success = false;
+    try
+    {
+      buffer.allocateMemory();
+      success = true;
+    }
+    finally
+    {
+      if (!success)
+      {
+        synchronized (this)
+        {
+          _allocations.remove(buffer);
+          _allocatedBytes -= size;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Releases the memory of a buffer allocated by {@link #allocate(DbusEventBuffer)} and returns
+   * it to the budget. The buffer must be empty.
+   * @return false if the buffer still has events; true otherwise
+   */
+  public synchronized boolean free(DbusEventBuffer buffer)
+  {
+    if (!_onDemandSizes.containsKey(buffer) || !_allocations.containsKey(buffer))
+    {
+      return true;
+    }
+    if (!buffer.releaseMemory())
+    {
+      return false;
+    }
+    _allocatedBytes -= _allocations.remove(buffer);
+    return true;
+  }
+
+  /**
+   * Returns the bytes of a buffer created by {@link #createEventBuffer(DbusEventBuffer.StaticConfig, File, DbusEventFactory)}
+   * or {@link #createOnDemandEventBuffer(DbusEventBuffer.StaticConfig, File, DbusEventFactory)}
+   * to the budget.
+   * @return true if the buffer was created by the budget
+   */
+  public synchronized boolean release(DbusEventBuffer buffer)
+  {
+    boolean onDemand = null != _onDemandSizes.remove(buffer);
+    Long size = _allocations.remove(buffer);
+    if (null == size)
+    {
+      return onDemand;
+    }
+    _allocatedBytes -= size;
+    return true;
+  }
+
+  /** The number of bytes currently allocated from the budget */
+  public synchronized long getAllocatedBytes()
+  {
+    return _allocatedBytes;
+  }
+
+  /** The number of bytes still available in the budget */
+  public synchronized long getAvailableBytes()
+  {
+    return isEnabled() ? _staticConfig.getMaxTotalSize() - _allocatedBytes : Long.MAX_VALUE;
+  }
+
+  public StaticConfig getStaticConfig()
+  {
+    return _staticConfig;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "{\"maxTotalSize\":" + _staticConfig.getMaxTotalSize() + ",\"allocatedBytes\":" +
+           _allocatedBytes + ",\"numBuffers\":" + _allocations.size() + ",\"numOnDemandBuffers\":" +
+           _onDemandSizes.size() + "}";
+  }
+
+  public static class StaticConfig
+  {
+    private final long _maxTotalSize;
+    private final long _minConnectionBufferSize;
+    private final long _maxConnectionBufferSize;
+
+    public StaticConfig(long maxTotalSize, long minConnectionBufferSize, long maxConnectionBufferSize)
+    {
+      _maxTotalSize = maxTotalSize;
+      _minConnectionBufferSize = minConnectionBufferSize;
+      _maxConnectionBufferSize = maxConnectionBufferSize;
+    }
+
+    /** The total bytes for all event buffers of the client; &lt;= 0 disables the budget */
+    public long getMaxTotalSize()
+    {
+      return _maxTotalSize;
+    }
+
+    /**
+     * The minimum size of an event buffer (or the configured size if smaller). The buffer must be
+     * big enough for the largest expected event.
+     */
+    public long getMinConnectionBufferSize()
+    {
+      return _minConnectionBufferSize;
+    }
+
+    /** The maximum size of an event buffer; &lt;= 0 means the configured buffer size */
+    public long getMaxConnectionBufferSize()
+    {
+      return _maxConnectionBufferSize;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "{\"maxTotalSize\":" + _maxTotalSize + ",\"minConnectionBufferSize\":" +
+             _minConnectionBufferSize + ",\"maxConnectionBufferSize\":" + _maxConnectionBufferSize +
+             "}";
+    }
+  }
+
+  public static class Config implements ConfigBuilder<StaticConfig>
+  {
+    public static final long DEFAULT_MIN_CONNECTION_BUFFER_SIZE = 1024 * 1024;
+
+    private long _maxTotalSize = 0;
+    private long _minConnectionBufferSize = DEFAULT_MIN_CONNECTION_BUFFER_SIZE;
+    private long _maxConnectionBufferSize = 0;
+
+    public long getMaxTotalSize()
+    {
+      return _maxTotalSize;
+    }
+
+    public void setMaxTotalSize(long maxTotalSize)
+    {
+      _maxTotalSize = maxTotalSize;
+    }
+
+    public long getMinConnectionBufferSize()
+    {
+      return _minConnectionBufferSize;
+    }
+
+    public void setMinConnectionBufferSize(long minConnectionBufferSize)
+    {
+      _minConnectionBufferSize = minConnectionBufferSize;
+    }
+
+    public long getMaxConnectionBufferSize()
+    {
+      return _maxConnectionBufferSize;
+    }
+
+    public void setMaxConnectionBufferSize(long maxConnectionBufferSize)
+    {
+      _maxConnectionBufferSize = maxConnectionBufferSize;
+    }
+
+    @Override
+    public StaticConfig build() throws InvalidConfigException
+    {
+      if (_maxTotalSize > 0)
+      {
+        if (_minConnectionBufferSize <= 0 || _minConnectionBufferSize > _maxTotalSize)
+        {
+          throw new InvalidConfigException("invalid minConnectionBufferSize: " +
+                                           _minConnectionBufferSize);
+        }
+        if (_maxConnectionBufferSize > 0 && _maxConnectionBufferSize < _minConnectionBufferSize)
+        {
+          throw new InvalidConfigException("maxConnectionBufferSize < minConnectionBufferSize: " +
+                                           _maxConnectionBufferSize);
+        }
+      }
+      return new StaticConfig(_maxTotalSize, _minConnectionBufferSize, _maxConnectionBufferSize);
+    }
+  }
+}
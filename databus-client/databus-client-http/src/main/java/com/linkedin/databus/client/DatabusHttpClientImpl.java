@@ -35,6 +35,10 @@ import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import org.apache.log4j.Logger;
 
@@ -89,6 +93,7 @@ import com.linkedin.databus.core.util.ConfigBuilder;
 import com.linkedin.databus.core.util.ConfigLoader;
 import com.linkedin.databus.core.util.ConfigManager;
 import com.linkedin.databus.core.util.InvalidConfigException;
+import com.linkedin.databus.core.util.NamedThreadFactory;
 import com.linkedin.databus2.core.DatabusException;
 import com.linkedin.databus2.core.container.monitoring.mbean.DatabusComponentAdmin;
 import com.linkedin.databus2.core.container.monitoring.mbean.HttpStatisticsCollector;
@@ -151,6 +156,14 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
   protected DatabusClientDSCUpdater _dscUpdater = null;
 
   protected final DbusEventFactory _eventFactory;
+  /** Memory budget shared by the event buffers of all connections */
+  private final ClientBufferBudget _bufferBudget;
+  /** Runs the pullers and dispatchers of all connections; null if each of them has a thread */
+  private final ScheduledExecutorService _sharedActorExecutor;
+  /** Reads the responses for the pullers on _sharedActorExecutor; null if not shared */
+  private final ExecutorService _sharedActorBlockingExecutor;
+  /** Runs the consumer callbacks of all connections; null if each connection has an executor */
+  private final ExecutorService _sharedCallbackExecutor;
 
   /**
    * Private instance variables
@@ -269,6 +282,18 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
     _eventFactory = new DbusEventV2Factory(byteOrder);
 
     _clientStaticConfig = config;
+    _bufferBudget = new ClientBufferBudget(config.getBufferBudget());
+    _sharedActorExecutor = 0 < config.getSharedActorThreadsNum() ?
+        new ScheduledThreadPoolExecutor(config.getSharedActorThreadsNum(),
+                                        new NamedThreadFactory("actor", true)) :
+        null;
+    _sharedActorBlockingExecutor = 0 < config.getSharedActorThreadsNum() ?
+        Executors.newCachedThreadPool(new NamedThreadFactory("actor-blocking", true)) :
+        null;
+    _sharedCallbackExecutor = 0 < config.getSharedCallbackThreadsNum() ?
+        Executors.newFixedThreadPool(config.getSharedCallbackThreadsNum(),
+                                     new NamedThreadFactory("callback", true)) :
+        null;
 
     _bootstrapEventsStatsCollector = new AggregatedDbusEventsStatisticsCollector(getContainerStaticConfig().getId(),
                                                          "eventsBootstrap",
@@ -995,6 +1020,19 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
     }
     _httpStatsCollector.registerMastershipStatus(0);
 
+    if (null != _sharedActorExecutor)
+    {
+      _sharedActorExecutor.shutdown();
+    }
+    if (null != _sharedActorBlockingExecutor)
+    {
+      _sharedActorBlockingExecutor.shutdown();
+    }
+    if (null != _sharedCallbackExecutor)
+    {
+      _sharedCallbackExecutor.shutdown();
+    }
+
     super.doShutdown();
     LOG.info(getClass().getSimpleName() +": shutdown complete.");
   }
@@ -1236,7 +1274,10 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
           }
         }
 
-        DbusEventBuffer eventBuffer = connConfig.getEventBuffer().getOrCreateEventBuffer(_eventFactory);
+        DbusEventBuffer.StaticConfig bufCfg = connConfig.getEventBuffer();
+        DbusEventBuffer eventBuffer = null != bufCfg.getExistingBuffer() || !_bufferBudget.isEnabled() ?
+            bufCfg.getOrCreateEventBuffer(_eventFactory) :
+            _bufferBudget.createEventBuffer(bufCfg, bufCfg.getMmapDirectory(), _eventFactory);
         eventBuffer.setDropOldEvents(true);
         eventBuffer.start(0);
 
@@ -1244,9 +1285,20 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
         DbusEventBuffer bootstrapBuffer = null;
         // create bootstrap only if it is enabled
         if(_clientStaticConfig.getRuntime().getBootstrap().isEnabled()) {
-          bootstrapBuffer = new DbusEventBuffer(connConfig.getEventBuffer());
+          try
+          {
+            bootstrapBuffer = _bufferBudget.isEnabled() ?
+                _bufferBudget.createOnDemandEventBuffer(bufCfg, bufCfg.getMmapDirectory(), _eventFactory) :
+                new DbusEventBuffer(bufCfg);
+          }
+          catch (DatabusClientException e)
+          {
+            _bufferBudget.release(eventBuffer);
+            throw e;
+          }
           bootstrapBuffer.setDropOldEvents(false);
-          bootstrapBuffer.start(0);
+          // an on-demand buffer is started by the connection when it enters bootstrap
+          if (!bootstrapBuffer.isMemoryReleased()) bootstrapBuffer.start(0);
         }
 
         LOG.info("The sourcesList is " + sourcesStrList);
@@ -1260,27 +1312,15 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
 
         _bootstrapEventsStats.addStatsCollector(
             statsCollectorName,
-            new DbusEventsStatisticsCollector(ownerId,
-                                              statsCollectorName + ".inbound.bs",
-                                              true,
-                                              false,
-                                              getMbeanServer()));
+            createEventStatsCollector(statsCollectorName + ".inbound.bs", false));
 
         _inBoundStatsCollectors.addStatsCollector(
             statsCollectorName,
-            new DbusEventsStatisticsCollector(ownerId,
-                                              statsCollectorName + ".inbound",
-                                              true,
-                                              false,
-                                              getMbeanServer()));
+            createEventStatsCollector(statsCollectorName + ".inbound", false));
 
         _outBoundStatsCollectors.addStatsCollector(
             statsCollectorName,
-            new DbusEventsStatisticsCollector(ownerId,
-                                              statsCollectorName + ".outbound",
-                                              true,
-                                              false,
-                                              getMbeanServer()));
+            createEventStatsCollector(statsCollectorName + ".outbound", false));
 
         _consumerStatsCollectors.addStatsCollector(
             statsCollectorName,
@@ -2338,6 +2378,9 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
     private final boolean _enablePerConnectionStats;
     private final boolean _usesDynamicRelayConfiguration;
     private final Map<String, ClusterRegistrationStaticConfig> _clientClusters;
+    private final ClientBufferBudget.StaticConfig _bufferBudget;
+    private final int _sharedActorThreadsNum;
+    private final int _sharedCallbackThreadsNum;
 
     public StaticConfig(CheckpointPersistenceStaticConfig checkpointPersistence,
                         ServerContainer.StaticConfig container,
@@ -2354,7 +2397,10 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
                         boolean enableReadLatestOnRelayFallOff,
                         boolean enablePerConnectionStats,
                         boolean usesDynamicRelayConfiguration,
-                        Map<String, ClusterRegistrationStaticConfig> clientClusters)
+                        Map<String, ClusterRegistrationStaticConfig> clientClusters,
+                        ClientBufferBudget.StaticConfig bufferBudget,
+                        int sharedActorThreadsNum,
+                        int sharedCallbackThreadsNum)
     {
       super();
       _checkpointPersistence = checkpointPersistence;
@@ -2373,6 +2419,9 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
       _enablePerConnectionStats = enablePerConnectionStats;
       _usesDynamicRelayConfiguration = usesDynamicRelayConfiguration;
       _clientClusters = clientClusters;
+      _bufferBudget = bufferBudget;
+      _sharedActorThreadsNum = sharedActorThreadsNum;
+      _sharedCallbackThreadsNum = sharedCallbackThreadsNum;
     }
 
     // NOT USED
@@ -2464,6 +2513,30 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
       return _enablePerConnectionStats;
     }
 
+    /** The memory budget shared by the event buffers of all connections */
+    public ClientBufferBudget.StaticConfig getBufferBudget()
+    {
+      return _bufferBudget;
+    }
+
+    /**
+     * The number of threads shared by the pullers and dispatchers of all connections. If 0, each
+     * puller and dispatcher runs in its own thread.
+     */
+    public int getSharedActorThreadsNum()
+    {
+      return _sharedActorThreadsNum;
+    }
+
+    /**
+     * The number of threads shared by the consumer callbacks of all connections. If 0, each
+     * connection creates an executor with consumerParallelism threads.
+     */
+    public int getSharedCallbackThreadsNum()
+    {
+      return _sharedCallbackThreadsNum;
+    }
+
     /**
      * The relays used by the client can be configured either statically or, with a ZooKeeper
      * setup, dynamically.  The v2 codebase (this) supports only static configs, but the v3
@@ -2498,6 +2571,9 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
              + ", _enablePerConnectionStats=" + _enablePerConnectionStats
              + ", _usesDynamicRelayConfiguration=" + _usesDynamicRelayConfiguration
              + ", _clientClusters=" + _clientClusters
+             + ", _bufferBudget=" + _bufferBudget
+             + ", _sharedActorThreadsNum=" + _sharedActorThreadsNum
+             + ", _sharedCallbackThreadsNum=" + _sharedCallbackThreadsNum
              + "]";
     }
   }
@@ -2518,6 +2594,9 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
     protected int _pullerBufferUtilizationPct;
     protected boolean _enablePerConnectionStats = false;
     protected Map<String, ClusterRegistrationConfig> _clientClusters;
+    protected ClientBufferBudget.Config _bufferBudget;
+    protected int _sharedActorThreadsNum = 0;
+    protected int _sharedCallbackThreadsNum = 0;
 
     // Flag to do streamFromLastScn on SCNNotFoundException
     protected boolean _enableReadLatestOnRelayFallOff;
@@ -2546,6 +2625,7 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
       _httpStatsCollector = new HttpStatisticsCollector.Config();
       _loggingListener = new LoggingConsumer.Config();
       _cluster= new DatabusClientNode.Config();
+      _bufferBudget = new ClientBufferBudget.Config();
     }
 
     protected void verifyConfig() throws InvalidConfigException
@@ -2555,6 +2635,16 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
         throw new InvalidConfigException("invalid puller buffer utilization percentage:" +
             _pullerBufferUtilizationPct);
       }
+      if (_sharedActorThreadsNum < 0)
+      {
+        throw new InvalidConfigException("invalid number of shared actor threads:" +
+            _sharedActorThreadsNum);
+      }
+      if (_sharedCallbackThreadsNum < 0)
+      {
+        throw new InvalidConfigException("invalid number of shared callback threads:" +
+            _sharedCallbackThreadsNum);
+      }
     }
 
     public CheckpointPersistenceStaticConfigBuilder getCheckpointPersistence()
@@ -2730,6 +2820,36 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
       _enablePerConnectionStats = enablePerConnectionStats;
     }
 
+    public ClientBufferBudget.Config getBufferBudget()
+    {
+      return _bufferBudget;
+    }
+
+    public void setBufferBudget(ClientBufferBudget.Config bufferBudget)
+    {
+      _bufferBudget = bufferBudget;
+    }
+
+    public int getSharedActorThreadsNum()
+    {
+      return _sharedActorThreadsNum;
+    }
+
+    public void setSharedActorThreadsNum(int sharedActorThreadsNum)
+    {
+      _sharedActorThreadsNum = sharedActorThreadsNum;
+    }
+
+    public int getSharedCallbackThreadsNum()
+    {
+      return _sharedCallbackThreadsNum;
+    }
+
+    public void setSharedCallbackThreadsNum(int sharedCallbackThreadsNum)
+    {
+      _sharedCallbackThreadsNum = sharedCallbackThreadsNum;
+    }
+
     /**
      * The relays used by the client can be configured either statically or, with a ZooKeeper
      * setup, dynamically.  The v2 codebase (this) supports only static configs, but the v3
@@ -2802,7 +2922,10 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
                               _enableReadLatestOnRelayFallOff,
                               _enablePerConnectionStats,
                               usesDynamicRelayConfiguration(),
-                              clientClusterStaticConfigs);
+                              clientClusterStaticConfigs,
+                              getBufferBudget().build(),
+                              _sharedActorThreadsNum,
+                              _sharedCallbackThreadsNum);
     }
 
   }
@@ -2949,6 +3072,32 @@ public class DatabusHttpClientImpl extends ServerContainer implements DatabusCli
     return _eventFactory;
   }
 
+  public ClientBufferBudget getBufferBudget()
+  {
+    return _bufferBudget;
+  }
+
+  /** The executor for the pullers and dispatchers of all connections or null if not shared */
+  public ScheduledExecutorService getSharedActorExecutor()
+  {
+    return _sharedActorExecutor;
+  }
+
+  /**
+   * The executor for the blocking response reads of the pullers on the shared actor executor or
+   * null if not shared
+   */
+  public ExecutorService getSharedActorBlockingExecutor()
+  {
+    return _sharedActorBlockingExecutor;
+  }
+
+  /** The executor for the consumer callbacks of all connections or null if not shared */
+  public ExecutorService getSharedCallbackExecutor()
+  {
+    return _sharedCallbackExecutor;
+  }
+
   /**
    * Fetch all the client clusters which have been registered in this client instance keyed by their
    * registrationIds. This has been overridden by V3 client to provide both V2 and V3 clusters.
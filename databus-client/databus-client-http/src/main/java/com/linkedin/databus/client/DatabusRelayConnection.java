@@ -38,4 +38,7 @@ public interface DatabusRelayConnection
   /* Callback to let the Relay client request streamFromLatestSCN from the relay */
   void enableReadFromLatestScn(boolean enable);
 
+  /* Lets the relay send compressed payloads as they are; otherwise it decompresses them */
+  void enableCompressedPayloads(boolean enable);
+
 }
@@ -25,6 +25,9 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -37,6 +40,7 @@ import com.linkedin.databus.client.consumer.LoggingConsumer;
 import com.linkedin.databus.client.consumer.MultiConsumerCallback;
 import com.linkedin.databus.client.consumer.StreamConsumerCallbackFactory;
 import com.linkedin.databus.client.pub.CheckpointPersistenceProvider;
+import com.linkedin.databus.client.pub.DatabusClientException;
 import com.linkedin.databus.client.pub.DatabusCombinedConsumer;
 import com.linkedin.databus.client.pub.RegistrationId;
 import com.linkedin.databus.client.pub.ServerInfo;
@@ -48,6 +52,7 @@ import com.linkedin.databus.core.DatabusRuntimeException;
 import com.linkedin.databus.core.DbusEventBuffer;
 import com.linkedin.databus.core.DbusEventBuffer.QueuePolicy;
 import com.linkedin.databus.core.DbusEventFactory;
+import com.linkedin.databus.core.async.AbstractActorMessageQueue;
 import com.linkedin.databus.core.async.LifecycleMessage;
 import com.linkedin.databus.core.data_model.DatabusSubscription;
 import com.linkedin.databus.core.data_model.LogicalSource;
@@ -76,6 +81,8 @@ public class DatabusSourcesConnection
   public static final long CONNECT_TIMEOUT_MS = 100;
   public static final long REGISTER_TIMEOUT_MS = 1000;
   public static final int MAX_CONSUMER_AWAIT_SHUTDOWN_MS = 5000;
+  public static final String RELAY_CALLBACK_LATENCY_STATS_NAME = "client.relay.callback";
+  public static final String BOOTSTRAP_CALLBACK_LATENCY_STATS_NAME = "client.bootstrap.callback";
 
   public final Logger _log;
   // Legacy naming for a DatabusSourcesConnection which is of the form conn[AnyPPart_Person]_DatabusFileLoggingConsumer_23d9d8dc
@@ -91,7 +98,19 @@ public class DatabusSourcesConnection
   private final GenericDispatcher<DatabusCombinedConsumer> _bootstrapDispatcher;
   private final DbusEventBuffer _dataEventsBuffer;
   private final DbusEventBuffer _bootstrapEventsBuffer;
+  /** The budget the event buffers may have been allocated from; may be null */
+  private final ClientBufferBudget _bufferBudget;
+  /** Guards the memory of a bootstrap buffer allocated on demand from the budget */
+  private final Object _bootstrapBufferLock = new Object();
+  /** Whether the connection is bootstrapping and needs the bootstrap buffer memory */
+  private boolean _bootstrapInProgress = false;
+  /** Whether the bootstrap buffer has been started; on-demand buffers are started when first allocated */
+  private boolean _bootstrapBufferStarted = true;
   private final ExecutorService _ioThreadPool;
+  /** The executor shared by the pullers and dispatchers of the client; null if they have threads */
+  private final ScheduledExecutorService _sharedActorExecutor;
+  /** Reads the responses for the pullers on _sharedActorExecutor */
+  private final ExecutorService _sharedActorBlockingExecutor;
   private final CheckpointPersistenceProvider _checkpointPersistenceProvider;
   private final ContainerStatisticsCollector _containerStatisticsCollector;
   // Statistics collector about databus events
@@ -119,7 +138,10 @@ public class DatabusSourcesConnection
   private UncaughtExceptionTrackingThread _bootstrapDispatcherThread;
   private final Thread _messageQueuesMonitorThread;
   private Thread _nannyThread;
+  private ScheduledFuture<?> _nannyFuture;
   private ExecutorService _consumerCallbackExecutor;
+  /** False if the consumer callback executor is shared with other connections */
+  private boolean _ownsConsumerCallbackExecutor;
 
   private final boolean _isBootstrapEnabled;
   private final RegistrationId _registrationId;
@@ -213,6 +235,10 @@ public class DatabusSourcesConnection
     _connectionConfig = connConfig;
     _dataEventsBuffer = dataEventsBuffer;
     _bootstrapEventsBuffer = bootstrapEventsBuffer;
+    _bufferBudget = null != serverHandle ? serverHandle.getBufferBudget() : null;
+    _bootstrapBufferStarted = null == bootstrapEventsBuffer || !bootstrapEventsBuffer.isMemoryReleased();
+    _sharedActorExecutor = null != serverHandle ? serverHandle.getSharedActorExecutor() : null;
+    _sharedActorBlockingExecutor = null != serverHandle ? serverHandle.getSharedActorBlockingExecutor() : null;
     _subscriptions = subscriptions;
     _ioThreadPool = ioThreadPool;
     _checkpointPersistenceProvider = checkpointPersistenceProvider;
@@ -260,7 +286,11 @@ public class DatabusSourcesConnection
     }
 
     int consumerParallelism = connConfig.getConsumerParallelism();
-    if (1 == consumerParallelism) {
+    _ownsConsumerCallbackExecutor = true;
+    if (null != serverHandle && null != serverHandle.getSharedCallbackExecutor()) {
+      _consumerCallbackExecutor = serverHandle.getSharedCallbackExecutor();
+      _ownsConsumerCallbackExecutor = false;
+    } else if (1 == consumerParallelism) {
       _consumerCallbackExecutor = Executors
           .newSingleThreadExecutor(new NamedThreadFactory("callback"));
     } else {
@@ -309,6 +339,20 @@ public class DatabusSourcesConnection
                                   loggingConsumer,
                                   _log);
 
+    relayAsyncCallback.setDataEventBatching(connConfig.getConsumerCallbackBatchSize(),
+                                            connConfig.getConsumerCallbackBatchMaxDelayMs());
+    bootstrapAsyncCallback.setDataEventBatching(connConfig.getConsumerCallbackBatchSize(),
+                                                connConfig.getConsumerCallbackBatchMaxDelayMs());
+
+    if (null != serverHandle)
+    {
+      //callbacks of all connections of the client share the same histograms
+      relayAsyncCallback.setCallbackLatencyStats(serverHandle.getLatencyStatisticsCollector()
+          .getOrAddStats(RELAY_CALLBACK_LATENCY_STATS_NAME));
+      bootstrapAsyncCallback.setCallbackLatencyStats(serverHandle.getLatencyStatisticsCollector()
+          .getOrAddStats(BOOTSTRAP_CALLBACK_LATENCY_STATS_NAME));
+    }
+
     if (_bootstrapEventsBuffer != null) {
       _bootstrapPuller = new BootstrapPullThread(_connRawId
           + "-BootstrapPuller", this, _bootstrapEventsBuffer, _connStateFactory,
@@ -386,6 +430,9 @@ public class DatabusSourcesConnection
     _bootstrapDispatcher = null;
     _dataEventsBuffer = null;
     _bootstrapEventsBuffer = null;
+    _bufferBudget = null;
+    _sharedActorExecutor = null;
+    _sharedActorBlockingExecutor = null;
     _ioThreadPool = null;
     _checkpointPersistenceProvider = null;
     _containerStatisticsCollector = null;
@@ -411,6 +458,7 @@ public class DatabusSourcesConnection
     _messageQueuesMonitorThread = null;
     _nannyThread = null;
     _consumerCallbackExecutor = null;
+    _ownsConsumerCallbackExecutor = false;
     _isBootstrapEnabled = false;
     _registrationId = null;
     _connRawId = null;
@@ -464,6 +512,14 @@ public class DatabusSourcesConnection
   {
     _log.info("Starting http relay connection for sources:"
         + _subscriptions);
+    if (null != _sharedActorExecutor)
+    {
+      _connectionStatus.start();
+      _nannyFuture = _sharedActorExecutor.scheduleWithFixedDelay(new SharedNannyTask(),
+          NannyRunnable.SLEEP_DURATION_MS, NannyRunnable.SLEEP_DURATION_MS, TimeUnit.MILLISECONDS);
+      return;
+    }
+
     // Thread names are represented by a hyphen(-) followed by its logical name
     _nannyThread = new Thread(_nannyRunnable, _connRawId + "-Nanny");
     _nannyThread.setDaemon(true);
@@ -473,14 +529,25 @@ public class DatabusSourcesConnection
     _nannyThread.start();
   }
 
+  /** Checks if an actor is running either in its thread or on the shared executor */
+  private static boolean isActorRunning(AbstractActorMessageQueue actor,
+                                        UncaughtExceptionTrackingThread thread)
+  {
+    if (null != thread)
+    {
+      return thread.isAlive();
+    }
+    return null != actor && actor.isOnSharedExecutor() && !actor.isShutdown();
+  }
+
   public boolean isRunning()
   {
-    boolean pullThreadRunning = _relayPullerThread.isAlive();
-    boolean dispatcherThreadRunning = _relayDispatcherThread.isAlive();
+    boolean pullThreadRunning = isActorRunning(_relayPuller, _relayPullerThread);
+    boolean dispatcherThreadRunning = isActorRunning(_relayDispatcher, _relayDispatcherThread);
 
     if (!pullThreadRunning)
       _log.info("Pull thread is DEAD!");
-    if (null != _relayPullerThread.getLastException()) {
+    if (null != _relayPullerThread && null != _relayPullerThread.getLastException()) {
       _log.error(" Reason: "
           + _relayPullerThread.getLastException().getMessage(),
           _relayPullerThread.getLastException());
@@ -488,7 +555,7 @@ public class DatabusSourcesConnection
 
     if (!dispatcherThreadRunning)
       _log.info("Dispatch thread is DEAD!");
-    if (null != _relayDispatcherThread.getLastException()) {
+    if (null != _relayDispatcherThread && null != _relayDispatcherThread.getLastException()) {
       _log.error(" Reason: "
           + _relayDispatcherThread.getLastException().getMessage(),
           _relayDispatcherThread.getLastException());
@@ -517,42 +584,53 @@ public class DatabusSourcesConnection
     unregisterMbeans();
     _connectionStatus.shutdown();
 
-      if (_relayPullerThread.isAlive())
+      if (isActorRunning(_relayPuller, _relayPullerThread))
       {
         _log.info("shutting down relay puller ...");
         _relayPuller.awaitShutdown();
       }
-      if (_relayDispatcherThread.isAlive())
+      if (isActorRunning(_relayDispatcher, _relayDispatcherThread))
       {
           _log.info("shutting down relay dispatcher ...");
         _relayDispatcher.awaitShutdown();
       }
 
     if (_isBootstrapEnabled) {
-        if (_bootstrapDispatcherThread.isAlive())
+        if (isActorRunning(_bootstrapDispatcher, _bootstrapDispatcherThread))
         {
             _log.info("shutting down bootstrap dispatcher ...");
           _bootstrapDispatcher.awaitShutdown();
         }
-        if (_bootstrapPullerThread.isAlive())
+        if (isActorRunning(_bootstrapPuller, _bootstrapPullerThread))
         {
             _log.info("shutting down bootstrap puller ...");
           _bootstrapPuller.awaitShutdown();
         }
     }
 
-    _consumerCallbackExecutor.shutdown();
-
-    try
-    {
-      _consumerCallbackExecutor.awaitTermination(MAX_CONSUMER_AWAIT_SHUTDOWN_MS, TimeUnit.MILLISECONDS);
-    }
-    catch (InterruptedException ex)
+    if (_ownsConsumerCallbackExecutor)
     {
-      _log.error("Shutting consumerCallbackExecutor down with exception: ", ex);
+      _consumerCallbackExecutor.shutdown();
+
+      try
+      {
+        _consumerCallbackExecutor.awaitTermination(MAX_CONSUMER_AWAIT_SHUTDOWN_MS, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException ex)
+      {
+        _log.error("Shutting consumerCallbackExecutor down with exception: ", ex);
+      }
     }
 
     _dataEventsBuffer.forceReleaseDirectMemory();
+    if (null != _bufferBudget)
+    {
+      _bufferBudget.release(_dataEventsBuffer);
+      if (null != _bootstrapEventsBuffer && _bufferBudget.release(_bootstrapEventsBuffer))
+      {
+        _bootstrapEventsBuffer.forceReleaseDirectMemory();
+      }
+    }
 
     _log.info("Stopped ... ");
   }
@@ -652,6 +730,60 @@ public class DatabusSourcesConnection
     return _bootstrapEventsBuffer;
   }
 
+  /**
+   * Called when the connection enters bootstrap. Allocates the memory of a bootstrap buffer
+   * created on demand by the client buffer budget; a no-op for other bootstrap buffers.
+   * @throws DatabusClientException if the budget does not have the bytes for the buffer
+   */
+  public void acquireBootstrapBuffer() throws DatabusClientException
+  {
+    synchronized (_bootstrapBufferLock)
+    {
+      if (null != _bufferBudget && null != _bootstrapEventsBuffer)
+      {
+        _bufferBudget.allocate(_bootstrapEventsBuffer);
+        if (!_bootstrapBufferStarted)
+        {
+          _bootstrapEventsBuffer.start(0);
+          _bootstrapBufferStarted = true;
+        }
+      }
+      _bootstrapInProgress = true;
+    }
+  }
+
+  /**
+   * Called when the connection has returned to online consumption after a bootstrap. Gives the
+   * memory of an on-demand bootstrap buffer back to the budget if the bootstrap dispatcher has
+   * consumed all events; otherwise {@link #releaseIdleBootstrapBuffer()} does it later.
+   */
+  public void onBootstrapComplete()
+  {
+    synchronized (_bootstrapBufferLock)
+    {
+      _bootstrapInProgress = false;
+      releaseIdleBootstrapBuffer();
+    }
+  }
+
+  /**
+   * Gives the memory of an on-demand bootstrap buffer back to the budget if the connection is not
+   * bootstrapping and the buffer is empty.
+   * @return true if the buffer has no memory from the budget after the call
+   */
+  public boolean releaseIdleBootstrapBuffer()
+  {
+    synchronized (_bootstrapBufferLock)
+    {
+      if (_bootstrapInProgress)
+      {
+        return false;
+      }
+      return null == _bufferBudget || null == _bootstrapEventsBuffer ||
+             _bufferBudget.free(_bootstrapEventsBuffer);
+    }
+  }
+
   public Checkpoint loadPersistentCheckpoint()
   {
     if (_checkpointPersistenceProvider != null)
@@ -684,6 +816,20 @@ public class DatabusSourcesConnection
     public void run()
     {
       while (getConnectionStatus().getStatus() != DatabusComponentStatus.Status.SHUTDOWN) {
+        if (isAnyActorShutdown()) {
+          stop();
+        }
+
+        try {
+          Thread.sleep(SLEEP_DURATION_MS);
+        } catch (InterruptedException e) {
+          _log.info("nanny: who woke me up?");
+        }
+      }
+    }
+
+    boolean isAnyActorShutdown()
+    {
         boolean runShutdown = false;
         if (null != _relayPuller
             && _relayPuller.getComponentStatus().getStatus() == DatabusComponentStatus.Status.SHUTDOWN) {
@@ -706,19 +852,40 @@ public class DatabusSourcesConnection
           _log.error("nanny: detected that the bootstrap dispatcher is shutdown!");
           runShutdown = true;
         }
+        return runShutdown;
+    }
 
-        if (runShutdown) {
-          stop();
-        }
+  }
 
-        try {
-          Thread.sleep(SLEEP_DURATION_MS);
-        } catch (InterruptedException e) {
-          _log.info("nanny: who woke me up?");
-        }
+  /**
+   * The nanny for connections whose pullers and dispatchers run on the shared executor. It is run
+   * periodically on that executor. The stop of the connection waits for the pullers and
+   * dispatchers, so it is done in a separate thread.
+   */
+  class SharedNannyTask implements Runnable
+  {
+    private boolean _stopping = false;
+
+    @Override
+    public void run()
+    {
+      if (_stopping || getConnectionStatus().getStatus() == DatabusComponentStatus.Status.SHUTDOWN) {
+        return;
+      }
+      if (_nannyRunnable.isAnyActorShutdown()) {
+        _stopping = true;
+        Thread stopThread = new Thread(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            stop();
+          }
+        }, _connRawId + "-Nanny");
+        stopThread.setDaemon(true);
+        stopThread.start();
       }
     }
-
   }
 
   public class SourcesConnectionStatus extends DatabusComponentStatus
@@ -733,6 +900,19 @@ public class DatabusSourcesConnection
     {
       super.start();
 
+      if (null != _sharedActorExecutor)
+      {
+        // the pullers read the responses on the blocking executor
+        _relayPuller.runOn(_sharedActorExecutor, _sharedActorBlockingExecutor);
+        _relayDispatcher.runOn(_sharedActorExecutor);
+        if (_isBootstrapEnabled) {
+          _bootstrapPuller.runOn(_sharedActorExecutor, _sharedActorBlockingExecutor);
+          _bootstrapDispatcher.runOn(_sharedActorExecutor);
+        }
+        _sharedActorExecutor.execute(new SharedMessageQueuesMonitorTask());
+        return;
+      }
+
       _relayPullerThread = new UncaughtExceptionTrackingThread(
           _relayPuller, _relayPuller.getName());
       _relayPullerThread.setDaemon(true);
@@ -771,17 +951,27 @@ public class DatabusSourcesConnection
         _bootstrapDispatcher.shutdown();
       }
 
-      _relayPullerThread.interrupt();
-      _relayDispatcherThread.interrupt();
+      if (null != _relayPullerThread)
+      {
+        _relayPullerThread.interrupt();
+        _relayDispatcherThread.interrupt();
+      }
 
-      if (_isBootstrapEnabled)
+      if (_isBootstrapEnabled && null != _bootstrapPullerThread)
       {
         _bootstrapPullerThread.interrupt();
         _bootstrapDispatcherThread.interrupt();
       }
 
       super.shutdown();
-      _nannyThread.interrupt();
+      if (null != _nannyThread)
+      {
+        _nannyThread.interrupt();
+      }
+      if (null != _nannyFuture)
+      {
+        _nannyFuture.cancel(false);
+      }
       _log.info("connection shut down.");
     }
 
@@ -830,6 +1020,8 @@ public class DatabusSourcesConnection
     private final long _consumerTimeBudgetMs;
     private final long _bstConsumerTimeBudgetMs;
     private final int _consumerParallelism;
+    private final int _consumerCallbackBatchSize;
+    private final long _consumerCallbackBatchMaxDelayMs;
     private final double _checkpointThresholdPct;
     private final Range _keyRange;
     private final BackoffTimerStaticConfig _bsPullerRetriesBeforeCkptCleanup;
@@ -845,10 +1037,14 @@ public class DatabusSourcesConnection
     private final boolean _enablePullerMessageQueueLogging;
     private final int _numRetriesOnFallOff;
     private final int _noEventsConnectionResetTimeSec;
+    private final boolean _adaptiveFetchEnabled;
+    private final int _bstSnapshotParallelism;
+    private final boolean _acceptCompressedPayloads;
 
     public StaticConfig(DbusEventBuffer.StaticConfig eventBuffer,
         DbusEventBuffer.StaticConfig bstEventBuffer,
         long consumerTimeBudgetMs, long bstConsumerTimeBudgetMs, int consumerParallelism,
+        int consumerCallbackBatchSize, long consumerCallbackBatchMaxDelayMs,
         double checkpointThresholdPct, Range keyRange,
         BackoffTimerStaticConfig bsPullerRetriesBeforeCkptCleanup,
         BackoffTimerStaticConfig pullerRetries,
@@ -859,7 +1055,10 @@ public class DatabusSourcesConnection
         boolean consumeCurrent, boolean readLatestScnOnError,
         double pullerBufferUtilizationPct, int id,
         boolean enablePullerMessageQueueLogging,
-        int noEventsConnectionResetTimeSec
+        int noEventsConnectionResetTimeSec,
+        boolean adaptiveFetchEnabled,
+        int bstSnapshotParallelism,
+        boolean acceptCompressedPayloads
         )
     {
       super();
@@ -868,6 +1067,8 @@ public class DatabusSourcesConnection
       _consumerTimeBudgetMs = consumerTimeBudgetMs;
       _bstConsumerTimeBudgetMs = bstConsumerTimeBudgetMs;
       _consumerParallelism = consumerParallelism;
+      _consumerCallbackBatchSize = consumerCallbackBatchSize;
+      _consumerCallbackBatchMaxDelayMs = consumerCallbackBatchMaxDelayMs;
       _checkpointThresholdPct = checkpointThresholdPct;
       _keyRange = keyRange;
       _bsPullerRetriesBeforeCkptCleanup = bsPullerRetriesBeforeCkptCleanup;
@@ -883,7 +1084,9 @@ public class DatabusSourcesConnection
       _id = id;
       _enablePullerMessageQueueLogging = enablePullerMessageQueueLogging;
       _noEventsConnectionResetTimeSec = noEventsConnectionResetTimeSec;
-
+      _adaptiveFetchEnabled = adaptiveFetchEnabled;
+      _bstSnapshotParallelism = bstSnapshotParallelism;
+      _acceptCompressedPayloads = acceptCompressedPayloads;
     }
 
 
@@ -891,6 +1094,34 @@ public class DatabusSourcesConnection
     {
       return _noEventsConnectionResetTimeSec;
     }
+
+    /**
+     * Whether the relay puller sizes its /stream requests from the observed response latency and
+     * dispatcher drain rate, and skips the poll delay while the relay returns events
+     */
+    public boolean isAdaptiveFetchEnabled()
+    {
+      return _adaptiveFetchEnabled;
+    }
+
+    /**
+     * The number of rid ranges of a large snapshot source which the bootstrap puller pulls
+     * concurrently over separate connections; 1 means sequentially
+     */
+    public int getBstSnapshotParallelism()
+    {
+      return _bstSnapshotParallelism;
+    }
+
+    /**
+     * Whether the relay may send compressed event payloads as they are. The consumers then have to
+     * decompress them (e.g. through DbusEventAvroDecoder); otherwise the relay decompresses them.
+     */
+    public boolean isAcceptCompressedPayloads()
+    {
+      return _acceptCompressedPayloads;
+    }
+
     public DbusEventBuffer.StaticConfig getBstEventBuffer()
     {
       return _bstEventBuffer;
@@ -955,6 +1186,24 @@ public class DatabusSourcesConnection
       return _consumerParallelism;
     }
 
+    /**
+     * Max number of consecutive data events delivered to a consumer in a single callback task;
+     * 1 disables batching
+     */
+    public int getConsumerCallbackBatchSize()
+    {
+      return _consumerCallbackBatchSize;
+    }
+
+    /**
+     * Max time in ms a data event can wait for its batch to fill up before the batch is delivered;
+     * 0 means no limit
+     */
+    public long getConsumerCallbackBatchMaxDelayMs()
+    {
+      return _consumerCallbackBatchMaxDelayMs;
+    }
+
     /**
      * The percentage of event buffer occupancy that will trigger a
      * checkpoint attempt. This is to ensure that we can make progress in
@@ -1033,6 +1282,8 @@ public class DatabusSourcesConnection
           + ", _consumerTimeBudgetMs=" + _consumerTimeBudgetMs
           + ", _bstConsumerTimeBudgetMs=" + _bstConsumerTimeBudgetMs
           + ", _consumerParallelism=" + _consumerParallelism
+          + ", _consumerCallbackBatchSize=" + _consumerCallbackBatchSize
+          + ", _consumerCallbackBatchMaxDelayMs=" + _consumerCallbackBatchMaxDelayMs
           + ", _checkpointThresholdPct=" + _checkpointThresholdPct
           + ", _keyRange=" + _keyRange
           + ", _bsPullerRetriesBeforeCkptCleanup="
@@ -1042,7 +1293,10 @@ public class DatabusSourcesConnection
           + _bstDispatcherRetries + ", _freeBufferThreshold="
           + _freeBufferThreshold
           + ", _enablePullerMessageQueueLogging="
-          + _enablePullerMessageQueueLogging + "]";
+          + _enablePullerMessageQueueLogging
+          + ", _adaptiveFetchEnabled=" + _adaptiveFetchEnabled
+          + ", _bstSnapshotParallelism=" + _bstSnapshotParallelism
+          + ", _acceptCompressedPayloads=" + _acceptCompressedPayloads + "]";
     }
   }
 
@@ -1079,6 +1333,8 @@ public class DatabusSourcesConnection
     private long _bstConsumerTimeBudgetMs = 300000;
     private boolean _setBstConsumerTimeBudgetCalled = false;
     private int _consumerParallelism = 1;
+    private int _consumerCallbackBatchSize = 1;
+    private long _consumerCallbackBatchMaxDelayMs = 10;
     private double _checkpointThresholdPct;
     private long _keyMin;
     private long _keyMax;
@@ -1100,6 +1356,9 @@ public class DatabusSourcesConnection
     private int _id;
     private boolean _enablePullerMessageQueueLogging;
     private int _noEventsConnectionResetTimeSec = 15*60; // if there is no events for 15 min - disconnect
+    private boolean _adaptiveFetchEnabled = false;
+    private int _bstSnapshotParallelism = 1;
+    private boolean _acceptCompressedPayloads = false;
 
     private void makeEvbConfig(DbusEventBuffer.Config evbConfig,
                                 QueuePolicy qPolicy,
@@ -1266,6 +1525,22 @@ public class DatabusSourcesConnection
         throw new InvalidConfigException("checkpointThresholdPct must be in (0, 100]");
       }
 
+      if (_bstSnapshotParallelism < 1)
+      {
+        throw new InvalidConfigException("invalid bstSnapshotParallelism: " + _bstSnapshotParallelism);
+      }
+
+      if (_consumerCallbackBatchSize < 1)
+      {
+        throw new InvalidConfigException("invalid consumerCallbackBatchSize: " + _consumerCallbackBatchSize);
+      }
+
+      if (_consumerCallbackBatchMaxDelayMs < 0)
+      {
+        throw new InvalidConfigException("invalid consumerCallbackBatchMaxDelayMs: " +
+                                         _consumerCallbackBatchMaxDelayMs);
+      }
+
       validateMaxEventSize(_eventBuffer);
       if(_bstEventBuffer != null)
       {
@@ -1275,6 +1550,7 @@ public class DatabusSourcesConnection
       StaticConfig config = new StaticConfig(_eventBuffer.build(),
           _bstEventBuffer != null ? _bstEventBuffer.build() : _eventBuffer.build(),
           getConsumerTimeBudgetMs(), getBstConsumerTimeBudgetMs(), getConsumerParallelism(),
+          getConsumerCallbackBatchSize(), getConsumerCallbackBatchMaxDelayMs(),
           getCheckpointThresholdPct(), keyRange,
           _bsPullerRetriesBeforeCkptCleanup.build(),
           _pullerRetries.build(), _bstPullerRetries != null ? _bstPullerRetries.build() : _pullerRetries.build(),
@@ -1284,7 +1560,10 @@ public class DatabusSourcesConnection
           _consumeCurrent, _readLatestScnOnError,
           _pullerBufferUtilizationPct, _id,
           _enablePullerMessageQueueLogging,
-          _noEventsConnectionResetTimeSec
+          _noEventsConnectionResetTimeSec,
+          _adaptiveFetchEnabled,
+          _bstSnapshotParallelism,
+          _acceptCompressedPayloads
           );
       _log.info("Init readBufferSize=" + config.getEventBuffer().getReadBufferSize());
       validateConfigs(config);
@@ -1393,6 +1672,26 @@ public class DatabusSourcesConnection
       _consumerParallelism = consumerParallelism;
     }
 
+    public int getConsumerCallbackBatchSize()
+    {
+      return _consumerCallbackBatchSize;
+    }
+
+    public void setConsumerCallbackBatchSize(int consumerCallbackBatchSize)
+    {
+      _consumerCallbackBatchSize = consumerCallbackBatchSize;
+    }
+
+    public long getConsumerCallbackBatchMaxDelayMs()
+    {
+      return _consumerCallbackBatchMaxDelayMs;
+    }
+
+    public void setConsumerCallbackBatchMaxDelayMs(long consumerCallbackBatchMaxDelayMs)
+    {
+      _consumerCallbackBatchMaxDelayMs = consumerCallbackBatchMaxDelayMs;
+    }
+
     public double getCheckpointThresholdPct()
     {
       return _checkpointThresholdPct;
@@ -1514,6 +1813,36 @@ public class DatabusSourcesConnection
       _enablePullerMessageQueueLogging = enablePullerMessageQueueLogging;
     }
 
+    public boolean getAdaptiveFetchEnabled()
+    {
+      return _adaptiveFetchEnabled;
+    }
+
+    public void setAdaptiveFetchEnabled(boolean adaptiveFetchEnabled)
+    {
+      _adaptiveFetchEnabled = adaptiveFetchEnabled;
+    }
+
+    public int getBstSnapshotParallelism()
+    {
+      return _bstSnapshotParallelism;
+    }
+
+    public void setBstSnapshotParallelism(int bstSnapshotParallelism)
+    {
+      _bstSnapshotParallelism = bstSnapshotParallelism;
+    }
+
+    public boolean getAcceptCompressedPayloads()
+    {
+      return _acceptCompressedPayloads;
+    }
+
+    public void setAcceptCompressedPayloads(boolean acceptCompressedPayloads)
+    {
+      _acceptCompressedPayloads = acceptCompressedPayloads;
+    }
+
   }
 
   public DbusEventsStatisticsCollector getBootstrapEventsStatsCollector()
@@ -1554,6 +1883,21 @@ public class DatabusSourcesConnection
     public void run()
     {
       while (_connectionStatus.getStatus() != DatabusComponentStatus.Status.SHUTDOWN) {
+        long sleepDuration = logQueues();
+
+        try {
+          Thread.sleep(sleepDuration);
+        } catch (InterruptedException ie) {
+        }
+      }
+    }
+
+    /**
+     * Logs the message queues if they have changed
+     * @return the time until the next check
+     */
+    long logQueues()
+    {
         StringBuilder sb = new StringBuilder(1000);
 
         if (null != _relayPuller)
@@ -1583,10 +1927,30 @@ public class DatabusSourcesConnection
         else if (Level.INFO == logLevel)
           sleepDuration = INFO_SLEEP_MS;
 
-        try {
-          Thread.sleep(sleepDuration);
-        } catch (InterruptedException ie) {
-        }
+        return sleepDuration;
+    }
+  }
+
+  /** Runs the {@link MessageQueuesMonitor} on the shared executor */
+  class SharedMessageQueuesMonitorTask implements Runnable
+  {
+    private final MessageQueuesMonitor _monitor = new MessageQueuesMonitor();
+
+    @Override
+    public void run()
+    {
+      if (_connectionStatus.getStatus() == DatabusComponentStatus.Status.SHUTDOWN)
+      {
+        return;
+      }
+      long sleepDuration = _monitor.logQueues();
+      try
+      {
+        _sharedActorExecutor.schedule(this, sleepDuration, TimeUnit.MILLISECONDS);
+      }
+      catch (RejectedExecutionException e)
+      {
+        // the client is shutting down
       }
     }
   }
@@ -30,6 +30,7 @@ import org.apache.log4j.Logger;
 import com.linkedin.databus.client.pub.SCN;
 import com.linkedin.databus.core.Checkpoint;
 import com.linkedin.databus.core.DbusEventBuffer;
+import com.linkedin.databus.core.DbusEventPayloadDictionaries;
 import com.linkedin.databus.core.DbusLogAccumulator;
 import com.linkedin.databus.core.util.IdNamePair;
 import com.linkedin.databus2.core.container.request.RegisterResponseEntry;
@@ -266,7 +267,9 @@ public class DispatcherState
         }
       }
 
-      _eventDecoder = new DbusEventAvroDecoder(_schemaSet,_metadataSchemasSet);
+      _eventDecoder = new DbusEventAvroDecoder(_schemaSet,_metadataSchemasSet,
+                                               null != _buffer ? _buffer.getPayloadDictionaries()
+                                                               : new DbusEventPayloadDictionaries());
     }
     catch (Exception e)
     {
@@ -24,6 +24,8 @@ package com.linkedin.databus.client;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -41,9 +43,11 @@ import com.linkedin.databus.client.pub.SharedCheckpointPersistenceProvider;
 import com.linkedin.databus.core.Checkpoint;
 import com.linkedin.databus.core.DatabusComponentStatus;
 import com.linkedin.databus.core.DbusClientMode;
+import com.linkedin.databus.core.DbusConstants;
 import com.linkedin.databus.core.DbusErrorEvent;
 import com.linkedin.databus.core.DbusEvent;
 import com.linkedin.databus.core.DbusEventBuffer;
+import com.linkedin.databus.core.DbusEventBufferStateListener;
 import com.linkedin.databus.core.DbusEventInternalReadable;
 import com.linkedin.databus.core.DbusEventSerializable;
 import com.linkedin.databus.core.DbusPrettyLogUtils;
@@ -70,11 +74,30 @@ public abstract class GenericDispatcher<C> extends AbstractActorMessageQueue
   }
 
   public static final String MODULE = GenericDispatcher.class.getName();
+  /**
+   * The longest wait for new events when running on a shared executor; the dispatcher is woken up
+   * earlier when events are appended to the buffer
+   */
+  public static final long SHARED_EXECUTOR_EVENTS_WAIT_MS = 100;
 
   private final AtomicBoolean _stopDispatch = new AtomicBoolean(false);
   private final List<DatabusSubscription> _subsList;
   private final CheckpointPersistenceProvider _checkpointPersistor;
   private final DbusEventBuffer _dataEventsBuffer;
+  /** Wakes up the dispatcher on a shared executor when events are appended to the buffer */
+  private final DbusEventBufferStateListener _bufferEventsListener = new DbusEventBufferStateListener()
+  {
+    @Override
+    public void onEventsAppended()
+    {
+      wakeUp();
+    }
+
+    @Override
+    public void onSpaceFreed()
+    {
+    }
+  };
   private final MultiConsumerCallback _asyncCallback;
   private final DispatcherState _internalState;
   private final DatabusReadOnlyStatus _statusMbean;
@@ -281,7 +304,12 @@ public abstract class GenericDispatcher<C> extends AbstractActorMessageQueue
 
     	if (success)
     	{
-    		if (0 == getStatus().getRetriesNum()) getStatus().retryOnError("rollback");
+    		if (isOnSharedExecutor())
+    		{
+    		  delayNextMessage(0 == getStatus().getRetriesNum() ? getStatus().retryOnErrorLater("rollback")
+    		                                                     : getStatus().retryOnLastErrorLater());
+    		}
+    		else if (0 == getStatus().getRetriesNum()) getStatus().retryOnError("rollback");
     		else getStatus().retryOnLastError();
     	}
     }
@@ -681,7 +709,30 @@ public abstract class GenericDispatcher<C> extends AbstractActorMessageQueue
     if (! _stopDispatch.get() && !curState.getEventsIterator().hasNext() && !checkForShutdownRequest())
     {
       if (debugEnabled) _log.debug("Waiting for events");
-      curState.getEventsIterator().await(50, TimeUnit.MILLISECONDS);
+      // batched data events must not wait for the next event past their max delay
+      if (!ConsumerCallbackResult.isSuccess(getAsyncCallback().submitExpiredDataEventBatches(-1)))
+      {
+        _log.error("Unable to deliver delayed data event batches");
+        curState.switchToRollback();
+        doRollback(curState);
+        enqueueMessage(curState);
+        return;
+      }
+      long waitNanos = getAsyncCallback().getNanosToDataEventBatchExpiry(System.nanoTime());
+      if (isOnSharedExecutor())
+      {
+        // do not block the shared executor; check again when events are appended
+        long waitMs = SHARED_EXECUTOR_EVENTS_WAIT_MS;
+        if (waitNanos >= 0) waitMs = Math.min(waitMs, waitNanos / DbusConstants.NUM_NSECS_IN_MSEC);
+        awaitWakeUp(waitMs);
+      }
+      else
+      {
+        long maxWaitNanos = 50 * DbusConstants.NUM_NSECS_IN_MSEC;
+        curState.getEventsIterator().await(waitNanos >= 0 ? Math.min(maxWaitNanos, waitNanos)
+                                                          : maxWaitNanos,
+                                           TimeUnit.NANOSECONDS);
+      }
     }
     boolean success = true;
     boolean hasQueuedEvents = false;
@@ -1150,9 +1201,18 @@ public abstract class GenericDispatcher<C> extends AbstractActorMessageQueue
      super.shutdown();
   }
 
+  @Override
+  public void runOn(ScheduledExecutorService executor, Executor blockingExecutor)
+  {
+    _dataEventsBuffer.addStateListener(_bufferEventsListener);
+    super.runOn(executor, blockingExecutor);
+  }
+
   @Override
   protected void onShutdown()
   {
+    if (isOnSharedExecutor())
+      _dataEventsBuffer.removeStateListener(_bufferEventsListener);
     if (DispatcherState.StateId.CLOSED != _internalState.getStateId())
       _internalState.switchToClosed();
   }
@@ -36,6 +36,7 @@ import org.apache.log4j.Logger;
 
 import com.linkedin.databus.client.ConnectionState.StateId;
 import com.linkedin.databus.client.netty.RemoteExceptionHandler;
+import com.linkedin.databus.client.pub.DatabusClientException;
 import com.linkedin.databus.client.pub.ServerInfo;
 import com.linkedin.databus.client.pub.mbean.UnifiedClientStats;
 import com.linkedin.databus.core.Checkpoint;
@@ -70,6 +71,11 @@ import com.linkedin.databus2.core.filter.KeyFilterConfigHolder;
 public class RelayPullThread extends BasePullThread
 {
   private final static int RELAY_CALLS_MERGE_FREQ = 10;
+  /**
+   * The longest wait for free buffer space when running on a shared executor; the puller is
+   * woken up earlier when the dispatcher frees space
+   */
+  private final static long SHARED_EXECUTOR_FREE_SPACE_WAIT_MS = 100;
   private static final ArrayList<RegisterResponseEntry> EMPTY_REGISTER_LIST =
       new ArrayList<RegisterResponseEntry>();
   private static final ArrayList<Integer> EMPTY_STREAM_LIST =
@@ -130,6 +136,8 @@ public class RelayPullThread extends BasePullThread
   final private RemoteExceptionHandler _remoteExceptionHandler;
   private final boolean _isReadLatestScnOnErrorEnabled;
   private final double _pullerBufferUtilizationPct ;
+  /** Sizes the /stream requests from the observed relay and dispatcher behavior; null if disabled */
+  private final AdaptiveFetchController _fetchController;
 
 
 
@@ -158,6 +166,8 @@ public class RelayPullThread extends BasePullThread
     _retriesOnFallOff = new BackoffTimer("RetriesOnFallOff",
         new BackoffTimerStaticConfig(0, 0, 1, 0, sourcesConn.getConnectionConfig().getNumRetriesOnFallOff()));
     _noEventsConnectionResetTimeSec = noEventsConnectionResetTimeSec;
+    _fetchController = sourcesConn.getConnectionConfig().isAdaptiveFetchEnabled() ?
+        new AdaptiveFetchController() : null;
   }
 
 
@@ -171,6 +181,7 @@ public class RelayPullThread extends BasePullThread
   @Override
   protected void onShutdown()
   {
+    removeBufferStateListener();
     if (null != _lastOpenConnection)
     {
       _log.info("closing open connection during onShutdown()");
@@ -194,6 +205,14 @@ public class RelayPullThread extends BasePullThread
     sendHeartbeat(_sourcesConn.getUnifiedClientStats(), -1);
   }
 
+  /** Reading the response of a /stream request blocks while the data arrives */
+  @Override
+  protected boolean isBlockingMessage(Object message)
+  {
+    return message instanceof ConnectionStateMessage &&
+           ((ConnectionStateMessage)message).getStateId() == StateId.STREAM_REQUEST_SUCCESS;
+  }
+
   @Override
   protected boolean shouldDelayTearConnection(StateId stateId)
   {
@@ -318,6 +337,7 @@ public class RelayPullThread extends BasePullThread
     else
     {
       _currentState.setRelayFellOff(false);
+      _sourcesConn.onBootstrapComplete();
 
       DbusClientMode consumptionMode = cp.getConsumptionMode();
 
@@ -390,7 +410,7 @@ public class RelayPullThread extends BasePullThread
                 ", Backoff Timer :" + _status.getRetriesCounter() +
                 ", Are we retrying because of SCNNotFoundException : " + curState.isRelayFellOff());
 
-      backoffOnPullError();
+      backoffOnPullErrorLater();
 
       _curServerIdx =  (_curServerIdx < 0) ? rng.nextInt(serversNum)
                                            : (_curServerIdx + 1) % serversNum;
@@ -402,12 +422,21 @@ public class RelayPullThread extends BasePullThread
       {
         relayConn = _sourcesConn.getRelayConnFactory().createRelayConnection(
             serverInfo, this, _remoteExceptionHandler);
+        relayConn.enableCompressedPayloads(_sourcesConn.getConnectionConfig().isAcceptCompressedPayloads());
         _log.info("picked a relay:" + serverInfo.toSimpleString());
       }
       catch (Exception e)
       {
         _log.error("Unable to get connection to relay:" + serverInfo.toSimpleString(), e);
       }
+
+      if (null == relayConn && isOnSharedExecutor() && _status.getRetriesLeft() >= 0)
+      {
+        // do not spin on the shared executor; retry after the backoff
+        _status.setRetriesCounter(originalCounter);
+        enqueueMessage(curState);
+        return;
+      }
     }
 
     _status.setRetriesCounter(originalCounter);
@@ -722,15 +751,31 @@ public class RelayPullThread extends BasePullThread
     if (debugEnabled) _log.debug("Checking for free space in buffer");
     int freeBufferThreshold=(int)(_sourcesConn.getConnectionConfig().getFreeBufferThreshold() *
         100.0 / _pullerBufferUtilizationPct);
-    try
+    if (isOnSharedExecutor())
     {
-      curState.getDataEventsBuffer().waitForFreeSpace(freeBufferThreshold);
+      if (curState.getDataEventsBuffer().getBufferFreeReadSpace() < freeBufferThreshold)
+      {
+        // do not block the shared executor; check again when space is freed
+        awaitWakeUp(SHARED_EXECUTOR_FREE_SPACE_WAIT_MS);
+        enqueueMessage(curState);
+        return;
+      }
     }
-    catch (InterruptedException ie)
+    else
     {
-      //loop
-      enqueueMessage(curState);
-      return;
+      try
+      {
+        // with adaptive fetches, send the request while the dispatcher frees the rest of the space
+        int minFreeSpace = null != _fetchController ?
+            _fetchController.computeMinFreeSpace(freeBufferThreshold) : freeBufferThreshold;
+        curState.getDataEventsBuffer().waitForFreeSpace(minFreeSpace);
+      }
+      catch (InterruptedException ie)
+      {
+        //loop
+        enqueueMessage(curState);
+        return;
+      }
     }
 
     Checkpoint cp = curState.getCheckpoint();
@@ -771,6 +816,13 @@ public class RelayPullThread extends BasePullThread
     if (null != _relayCallsStats)
       _relayCallsStats.registerStreamRequest(cp, EMPTY_STREAM_LIST);
     int fetchSize = (int)((curState.getDataEventsBuffer().getBufferFreeReadSpace() / 100.0) * _pullerBufferUtilizationPct);
+    if (null != _fetchController)
+    {
+      _fetchController.onRequest(System.nanoTime(), curState.getDataEventsBuffer().getBufferFreeSpace());
+      fetchSize = _fetchController.computeFetchSize(fetchSize, freeBufferThreshold,
+                                                    curState.getDataEventsBuffer().getMaxReadBufferCapacity());
+      if (debugEnabled) _log.debug("fetchSize=" + fetchSize + " " + _fetchController);
+    }
     fetchSize = Math.max(freeBufferThreshold, fetchSize);
     CheckpointMult cpMult = new CheckpointMult();
     String args;
@@ -872,6 +924,12 @@ public class RelayPullThread extends BasePullThread
                                                                   curState.getListeners(),
                                                                   connCollector);
 
+        if (null != _fetchController)
+        {
+          _fetchController.onResponse(System.nanoTime(), eventsNum, readChannel.getTotalReadBytes(),
+                                      curState.getDataEventsBuffer().getBufferFreeSpace());
+        }
+
         boolean resetConnection = false;
         if (eventsNum > 0) {
           _timeSinceEventsSec = System.currentTimeMillis();
@@ -959,7 +1017,18 @@ public class RelayPullThread extends BasePullThread
       mergeRelayCallsStats();
     }
 
-    _status.getRetriesCounter().sleep();
+    // with adaptive fetches, do not wait while the relay keeps returning full responses
+    if (null == _fetchController || !_fetchController.isMoreDataExpected())
+    {
+      if (isOnSharedExecutor())
+      {
+        delayNextMessage(_status.getRetriesCounter().getCurrentSleepMs());
+      }
+      else
+      {
+        _status.getRetriesCounter().sleep();
+      }
+    }
 
     curState.switchToRequestStream(cp);
     enqueueMessage(curState);
@@ -980,6 +1049,17 @@ public class RelayPullThread extends BasePullThread
       return;
     }
     try
+    {
+      _sourcesConn.acquireBootstrapBuffer();
+    }
+    catch (DatabusClientException e)
+    {
+      _log.warn("unable to allocate the bootstrap buffer; will retry: " + e.getMessage());
+      backoffOnPullErrorLater();
+      enqueueMessage(curState);
+      return;
+    }
+    try
     {
       bootstrapCkpt = curState.getCheckpoint().clone();
     }
@@ -1135,6 +1215,7 @@ public class RelayPullThread extends BasePullThread
   @Override
   protected void resetConnection()
   {
+    if (null != _fetchController) _fetchController.reset();
     DatabusServerConnection conn =  _currentState.getRelayConnection();
 
     if ( null != conn)
@@ -91,6 +91,8 @@ public class NettyHttpDatabusRelayConnection
   private int _freeBufferSpace;
   private DbusKeyCompositeFilter _filter;
   private boolean _enableReadFromLatestSCN = false;
+  private int _compactionWindows = 0;
+  private boolean _acceptCompressedPayloads = false;
 
   //private MyConnectListener _connectListener;
 
@@ -142,6 +144,21 @@ public class NettyHttpDatabusRelayConnection
     return _enableReadFromLatestSCN;
   }
 
+  public int getCompactionWindows()
+  {
+    return _compactionWindows;
+  }
+
+  /**
+   * Asks the relay to compact up to the given number of consecutive windows into one, streaming
+   * only the last event per source and key. Useful for catching up quickly when only the latest
+   * values are needed; 0 disables compaction.
+   */
+  public void setCompactionWindows(int compactionWindows)
+  {
+    _compactionWindows = compactionWindows;
+  }
+
   @Override
   public void requestSources(DatabusRelayConnectionStateMessage stateReuse)
   {
@@ -297,6 +314,15 @@ public class NettyHttpDatabusRelayConnection
                .append("=")
                .append(_maxEventVersion);
     }
+    if (_compactionWindows > 0)
+    {
+      fmtString.append("&compactWindows=")
+               .append(_compactionWindows);
+    }
+    if (_acceptCompressedPayloads)
+    {
+      fmtString.append("&compressedPayloads=true");
+    }
 
     formatter.format(fmtString.toString(), _sourcesSubsList, Boolean.toString(_enableReadFromLatestSCN),
                      (getProtocolVersion() >= 3) ?
@@ -385,6 +411,12 @@ public class NettyHttpDatabusRelayConnection
     _enableReadFromLatestSCN  = enable;
   }
 
+  @Override
+  public void enableCompressedPayloads(boolean enable)
+  {
+    _acceptCompressedPayloads = enable;
+  }
+
   private void onConnectSuccess(Channel channel)
   {
 
@@ -31,6 +31,7 @@ import javax.management.MBeanServer;
 
 import org.apache.log4j.Logger;
 
+import com.linkedin.databus.client.ClientBufferBudget;
 import com.linkedin.databus.client.ConnectionStateFactory;
 import com.linkedin.databus.client.DatabusHttpClientImpl;
 import com.linkedin.databus.client.DatabusSourcesConnection;
@@ -354,51 +355,35 @@ public class DatabusV2RegistrationImpl
     if (null == connConfig)
       connConfig = _client.getClientStaticConfig().getConnectionDefaults();
 
-      DbusEventBuffer eventBuffer = null;
-      {
-        DbusEventBuffer.StaticConfig cfg = connConfig.getEventBuffer();
-        eventBuffer = new DbusEventBuffer(cfg.getMaxSize(),
-                                          cfg.getMaxIndividualBufferSize(),
-                                          cfg.getScnIndexSize(),
-                                          cfg.getReadBufferSize(),
-                                          cfg.getMaxEventSize(),
-                                          cfg.getAllocationPolicy(),
-                                          new File(cfg.getMmapDirectory().getAbsolutePath() + "_stream_" + _id),
-                                          cfg.getQueuePolicy(),
-                                          cfg.getTrace(),
-                                          null,
-                                          cfg.getAssertLevel(),
-                                          cfg.getBufferRemoveWaitPeriod(),
-                                          cfg.getRestoreMMappedBuffers(),
-                                          cfg.getRestoreMMappedBuffersValidateEvents(),
-                                          cfg.isEnableScnIndex(),
-                                          _client.getEventFactory());
-        eventBuffer.setDropOldEvents(true);
-        eventBuffer.start(0);
+    ClientBufferBudget bufferBudget = _client.getBufferBudget();
+    DbusEventBuffer eventBuffer = null;
+    {
+      DbusEventBuffer.StaticConfig cfg = connConfig.getEventBuffer();
+      eventBuffer = bufferBudget.createEventBuffer(cfg,
+                                                   new File(cfg.getMmapDirectory().getAbsolutePath() + "_stream_" + _id),
+                                                   _client.getEventFactory());
+      eventBuffer.setDropOldEvents(true);
+      eventBuffer.start(0);
     }
 
     DbusEventBuffer bootstrapBuffer = null;
     if (enableBootstrap && canConsumerBootstrap)
     {
       DbusEventBuffer.StaticConfig bstCfg = connConfig.getBstEventBuffer();
-      bootstrapBuffer = new DbusEventBuffer(bstCfg.getMaxSize(),
-                                            bstCfg.getMaxIndividualBufferSize(),
-                                            bstCfg.getScnIndexSize(),
-                                            bstCfg.getReadBufferSize(),
-                                            bstCfg.getMaxEventSize(),
-                                            bstCfg.getAllocationPolicy(),
-                                            new File(bstCfg.getMmapDirectory().getAbsolutePath() + "_bootstrap_" + _id ),
-                                            bstCfg.getQueuePolicy(),
-                                            bstCfg.getTrace(),
-                                            null,
-                                            bstCfg.getAssertLevel(),
-                                            bstCfg.getBufferRemoveWaitPeriod(),
-                                            bstCfg.getRestoreMMappedBuffers(),
-                                            bstCfg.getRestoreMMappedBuffersValidateEvents(),
-                                            bstCfg.isEnableScnIndex(),
-                                            _client.getEventFactory());
+      try
+      {
+        bootstrapBuffer = bufferBudget.createOnDemandEventBuffer(bstCfg,
+                                                                 new File(bstCfg.getMmapDirectory().getAbsolutePath() + "_bootstrap_" + _id ),
+                                                                 _client.getEventFactory());
+      }
+      catch (DatabusClientException e)
+      {
+        bufferBudget.release(eventBuffer);
+        throw e;
+      }
       bootstrapBuffer.setDropOldEvents(false);
-      bootstrapBuffer.start(0);
+      // an on-demand buffer is started by the connection when it enters bootstrap
+      if (!bootstrapBuffer.isMemoryReleased()) bootstrapBuffer.start(0);
     }
 
     List<DatabusSubscription> subs = createSubscriptions(_sources);
@@ -0,0 +1,116 @@
+package com.linkedin.databus.client;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.databus.core.DbusConstants;
+
+public class TestAdaptiveFetchController
+{
+  private static final long MS = DbusConstants.NUM_NSECS_IN_MSEC;
+
+  @Test
+  public void testNoMeasurements()
+  {
+    AdaptiveFetchController controller = new AdaptiveFetchController();
+    Assert.assertEquals(controller.getExpectedDrainBytes(), 0);
+    Assert.assertEquals(controller.computeMinFreeSpace(10000), 10000);
+    Assert.assertEquals(controller.computeFetchSize(50000, 10000, 100000), 50000);
+    Assert.assertEquals(controller.computeFetchSize(5000, 10000, 100000), 10000);
+    Assert.assertFalse(controller.isMoreDataExpected());
+  }
+
+  @Test
+  public void testAdaptsToDrainRateAndLatency()
+  {
+    AdaptiveFetchController controller = new AdaptiveFetchController();
+    long now = 1000 * MS;
+
+    // request answered in 20 ms with 100 events
+    controller.onRequest(now, 50000);
+    Assert.assertEquals(controller.computeFetchSize(50000, 10000, 100000), 50000);
+    now += 20 * MS;
+    controller.onResponse(now, 100, 40000, 10000);
+    Assert.assertTrue(controller.isMoreDataExpected());
+    Assert.assertEquals(controller.getAvgLatencyMs(), 20.0, 0.001);
+    Assert.assertEquals(controller.getAvgEventsPerMs(), 5.0, 0.001);
+
+    // the dispatcher freed 5000 bytes in 10 ms before the next request
+    now += 10 * MS;
+    controller.onRequest(now, 15000);
+    Assert.assertEquals(controller.getAvgDrainBytesPerMs(), 500.0, 0.001);
+    Assert.assertEquals(controller.getExpectedDrainBytes(), 10000);
+
+    // ask for the free space plus what is drained during one request; stay within the limits
+    Assert.assertEquals(controller.computeFetchSize(15000, 10000, 100000), 25000);
+    Assert.assertEquals(controller.computeFetchSize(95000, 10000, 100000), 100000);
+
+    // do not wait for the full threshold but never go below the minimum fraction
+    Assert.assertEquals(controller.computeMinFreeSpace(16000), 6000);
+    Assert.assertEquals(controller.computeMinFreeSpace(12000), 3000);
+
+    now += 20 * MS;
+    controller.onResponse(now, 0, 0, 10000);
+    Assert.assertFalse(controller.isMoreDataExpected());
+  }
+
+  @Test
+  public void testSmallResponsesBackOff()
+  {
+    AdaptiveFetchController controller = new AdaptiveFetchController();
+    long now = 1000 * MS;
+
+    // a single event in response to a 100000 bytes fetch: the relay is only trickling events
+    controller.onRequest(now, 100000);
+    Assert.assertEquals(controller.computeFetchSize(100000, 10000, 100000), 100000);
+    now += 5 * MS;
+    controller.onResponse(now, 1, 200, 99800);
+    Assert.assertFalse(controller.isMoreDataExpected());
+
+    // a response that fills a good part of the fetch size
+    now += 5 * MS;
+    controller.onRequest(now, 100000);
+    controller.computeFetchSize(100000, 10000, 100000);
+    now += 5 * MS;
+    controller.onResponse(now, 50, (long)(100000 * AdaptiveFetchController.MIN_FULL_RESPONSE_FRACTION),
+                          90000);
+    Assert.assertTrue(controller.isMoreDataExpected());
+  }
+
+  @Test
+  public void testReset()
+  {
+    AdaptiveFetchController controller = new AdaptiveFetchController();
+    long now = 1000 * MS;
+    controller.onRequest(now, 50000);
+    now += 20 * MS;
+    controller.computeFetchSize(50000, 10000, 100000);
+    controller.onResponse(now, 10, 40000, 10000);
+    Assert.assertTrue(controller.isMoreDataExpected());
+    controller.reset();
+    Assert.assertFalse(controller.isMoreDataExpected());
+
+    // no drain sample across a reset
+    now += 10 * MS;
+    controller.onRequest(now, 40000);
+    Assert.assertEquals(controller.getAvgDrainBytesPerMs(), -1.0, 0.001);
+  }
+}
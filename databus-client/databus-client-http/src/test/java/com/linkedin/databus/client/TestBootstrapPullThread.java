@@ -2197,6 +2197,183 @@ public class TestBootstrapPullThread
     }
   }
 
+  /**
+   * Moves a puller with parallel snapshots to REQUEST_STREAM for a snapshot of source1 split into
+   * three rid ranges. The range requests are not answered automatically.
+   */
+  private MockBootstrapConnection startSnapshotRangesTest(BootstrapPullThread bsPuller, Checkpoint rangesCkpt)
+      throws Exception
+  {
+    Checkpoint cp = _ckptHandlerSource1.createInitialBootstrapCheckpoint(null, 0L);
+    cp.setBootstrapServerInfo(_serverInfoName);
+
+    bsPuller.getComponentStatus().start();
+    ConnectionState connState = bsPuller.getConnectionState();
+    connState.switchToBootstrap(cp);
+    testTransitionCase(bsPuller, StateId.BOOTSTRAP, StateId.REQUEST_START_SCN, cp);
+
+    bsPuller.getMessageQueue().clear();
+    testTransitionCase(bsPuller, StateId.REQUEST_START_SCN, StateId.START_SCN_RESPONSE_SUCCESS, null);
+    bsPuller.getMessageQueue().clear();
+    Map<Long, List<RegisterResponseEntry>> entries = new HashMap<Long, List<RegisterResponseEntry>>();
+    entries.put(1L, new ArrayList<RegisterResponseEntry>());
+    connState.setSourcesSchemas(entries);
+
+    testTransitionCase(bsPuller, StateId.START_SCN_RESPONSE_SUCCESS, StateId.REQUEST_STREAM, null);
+    bsPuller.getMessageQueue().clear();
+    connState.getSourcesNameMap().put("source1", new IdNamePair(1L, "source1"));
+    connState.getSourceIdMap().put(1L, new IdNamePair(1L, "source1"));
+
+    if (null == rangesCkpt)
+    {
+      rangesCkpt = connState.getCheckpoint();
+      rangesCkpt.initSnapshotRanges(new long[]{1000L, 2000L, Long.MAX_VALUE});
+    }
+    connState.switchToRequestStream(rangesCkpt);
+
+    MockBootstrapConnection mockConn = (MockBootstrapConnection)connState.getBootstrapConnection();
+    mockConn.setMuteTransition(true);
+    mockConn.setStreamCallCounter(0);
+    mockConn.getStreamStates().clear();
+    mockConn.getStreamCheckpoints().clear();
+    mockConn.getStreamFetchSizes().clear();
+    return mockConn;
+  }
+
+  private static ChunkedBodyReadableByteChannel createRangeResponse(boolean phaseCompleted)
+  {
+    ChunkedBodyReadableByteChannel channel = EasyMock.createMock(ChunkedBodyReadableByteChannel.class);
+    EasyMock.expect(channel.getMetadata("x-dbus-error-cause")).andReturn(null).anyTimes();
+    EasyMock.expect(channel.getMetadata("x-dbus-req-id")).andReturn(null).anyTimes();
+    EasyMock.expect(channel.getMetadata("x-dbus-error")).andReturn(null).anyTimes();
+    EasyMock.expect(channel.getMetadata("PhaseCompleted")).andReturn(phaseCompleted ? "true" : null).anyTimes();
+    EasyMock.replay(channel);
+    return channel;
+  }
+
+  private void answerRangePull(BootstrapPullThread bsPuller, MockBootstrapConnection mockConn, int requestIdx,
+                               boolean phaseCompleted)
+  {
+    BootstrapSnapshotRangePull pull = (BootstrapSnapshotRangePull)mockConn.getStreamStates().get(requestIdx);
+    pull.switchToStreamSuccess(createRangeResponse(phaseCompleted));
+    doExecuteAndChangeState(bsPuller, pull);
+  }
+
+  private static int getRangeIndex(MockBootstrapConnection mockConn, int requestIdx)
+  {
+    return mockConn.getStreamCheckpoints().get(requestIdx).getSnapshotRangeIndex();
+  }
+
+  @Test
+  /** The ranges of a parallel snapshot may complete in any order */
+  public void testSnapshotRangesCompleteOutOfOrder() throws Exception
+  {
+    final int freeReadSpace = 1000000;
+    BootstrapPullThread bsPuller =
+        createBootstrapPullThread(false, false, false, false, false, null, freeReadSpace, 1, false, 10, 10, 3,
+                                  "source1");
+    MockBootstrapConnection mockConn = startSnapshotRangesTest(bsPuller, null);
+    ConnectionState connState = bsPuller.getConnectionState();
+    Checkpoint cp = connState.getCheckpoint();
+
+    doExecuteAndChangeState(bsPuller, connState);
+    Assert.assertEquals(connState.getStateId(), StateId.STREAM_REQUEST_SENT);
+    Assert.assertEquals(mockConn.getStreamCallCounter(), 3);
+    int totalFetchSize = 0;
+    for (int i = 0; i < 3; ++i)
+    {
+      Assert.assertEquals(getRangeIndex(mockConn, i), i);
+      totalFetchSize += mockConn.getStreamFetchSizes().get(i);
+    }
+    //the concurrent requests must not claim more than the free space
+    Assert.assertTrue(totalFetchSize <= freeReadSpace, "total fetch size: " + totalFetchSize);
+
+    //the last range completes first
+    answerRangePull(bsPuller, mockConn, 2, true);
+    Assert.assertTrue(cp.isSnapshotRangeCompleted(2));
+    Assert.assertFalse(cp.isSnapshotRangeCompleted(0));
+    Assert.assertFalse(cp.isSnapshotRangeCompleted(1));
+    Assert.assertEquals(mockConn.getStreamCallCounter(), 3);
+    Assert.assertEquals(connState.getStateId(), StateId.STREAM_REQUEST_SENT);
+
+    //the first range needs another chunk; range 1 is still in flight
+    answerRangePull(bsPuller, mockConn, 0, false);
+    Assert.assertEquals(mockConn.getStreamCallCounter(), 4);
+    Assert.assertEquals(getRangeIndex(mockConn, 3), 0);
+    int inFlightFetchSize = mockConn.getStreamFetchSizes().get(1) + mockConn.getStreamFetchSizes().get(3);
+    Assert.assertTrue(inFlightFetchSize <= freeReadSpace, "in-flight fetch size: " + inFlightFetchSize);
+
+    answerRangePull(bsPuller, mockConn, 1, true);
+    Assert.assertTrue(cp.isSnapshotRangeCompleted(1));
+    Assert.assertEquals(connState.getStateId(), StateId.STREAM_REQUEST_SENT);
+
+    answerRangePull(bsPuller, mockConn, 3, true);
+    Assert.assertEquals(mockConn.getStreamCallCounter(), 4);
+    Assert.assertEquals(connState.getStateId(), StateId.STREAM_RESPONSE_DONE);
+  }
+
+  @Test
+  /** A failed range pull aborts the other ranges and their late responses are ignored */
+  public void testSnapshotRangeFailureAbortsOtherRanges() throws Exception
+  {
+    BootstrapPullThread bsPuller =
+        createBootstrapPullThread(false, false, false, false, false, null, 1000000, 1, false, 10, 10, 3,
+                                  "source1");
+    MockBootstrapConnection mockConn = startSnapshotRangesTest(bsPuller, null);
+    ConnectionState connState = bsPuller.getConnectionState();
+    Checkpoint cp = connState.getCheckpoint();
+
+    doExecuteAndChangeState(bsPuller, connState);
+    Assert.assertEquals(mockConn.getStreamCallCounter(), 3);
+    int closeCallsNum = mockConn.getCloseCallCounter();
+
+    BootstrapSnapshotRangePull failedPull = (BootstrapSnapshotRangePull)mockConn.getStreamStates().get(1);
+    failedPull.switchToStreamResponseError();
+    bsPuller.getMessageQueue().clear();
+    doExecuteAndChangeState(bsPuller, failedPull);
+    Assert.assertEquals(mockConn.getCloseCallCounter(), closeCallsNum + 3);
+    Assert.assertEquals(connState.getStateId(), StateId.PICK_SERVER);
+
+    //the response of an aborted range must not change the checkpoint or send new requests
+    answerRangePull(bsPuller, mockConn, 0, true);
+    Assert.assertFalse(cp.isSnapshotRangeCompleted(0));
+    Assert.assertEquals(mockConn.getStreamCallCounter(), 3);
+    Assert.assertEquals(connState.getStateId(), StateId.PICK_SERVER);
+  }
+
+  @Test
+  /** The pulls resume from the range offsets of a persisted checkpoint */
+  public void testSnapshotRangesResumeFromCheckpoint() throws Exception
+  {
+    BootstrapPullThread bsPuller =
+        createBootstrapPullThread(false, false, false, false, false, null, 1000000, 1, false, 10, 10, 3,
+                                  "source1");
+
+    Checkpoint cp = _ckptHandlerSource1.createInitialBootstrapCheckpoint(null, 0L);
+    cp.setBootstrapStartScn(10L);
+    cp.setBootstrapServerInfo(_serverInfoName);
+    cp.initSnapshotRanges(new long[]{1000L, 2000L, Long.MAX_VALUE});
+    cp.setSnapshotRangeOffset(0, 500L);
+    cp.setSnapshotRangeOffset(1, Checkpoint.FULLY_CONSUMED_WINDOW_OFFSET);
+    cp.setSnapshotRangeOffset(2, 2500L);
+    Checkpoint persistedCp = new Checkpoint(cp.toString());
+
+    MockBootstrapConnection mockConn = startSnapshotRangesTest(bsPuller, persistedCp);
+    ConnectionState connState = bsPuller.getConnectionState();
+
+    doExecuteAndChangeState(bsPuller, connState);
+    Assert.assertEquals(connState.getStateId(), StateId.STREAM_REQUEST_SENT);
+    Assert.assertEquals(mockConn.getStreamCallCounter(), 2);
+    Assert.assertEquals(getRangeIndex(mockConn, 0), 0);
+    Assert.assertEquals(mockConn.getStreamCheckpoints().get(0).getSnapshotOffset().longValue(), 500L);
+    Assert.assertEquals(getRangeIndex(mockConn, 1), 2);
+    Assert.assertEquals(mockConn.getStreamCheckpoints().get(1).getSnapshotOffset().longValue(), 2500L);
+
+    answerRangePull(bsPuller, mockConn, 0, true);
+    answerRangePull(bsPuller, mockConn, 1, true);
+    Assert.assertEquals(connState.getStateId(), StateId.STREAM_RESPONSE_DONE);
+  }
+
   private ServerSetChangeMessage createSetServerMessage(boolean keepCurrent, BasePullThread puller)
   {
     Set<ServerInfo> serverInfoSet = new HashSet<ServerInfo>();
@@ -2301,6 +2478,26 @@ public class TestBootstrapPullThread
                               long targetScn,
                               String... sourceNames)
   throws Exception
+  {
+    return createBootstrapPullThread(failBsConnection, throwBSConnException, muteTransition, readDataThrowException,
+                                     readDataException, exceptionName, freeReadSpace, numBytesRead, phaseCompleted,
+                                     startScn, targetScn, 1, sourceNames);
+  }
+
+  private BootstrapPullThread createBootstrapPullThread(boolean failBsConnection,
+                              boolean throwBSConnException,
+                              boolean muteTransition,
+                              boolean readDataThrowException,
+                              boolean readDataException,
+                              String exceptionName,
+                              int freeReadSpace,
+                              int numBytesRead,
+                              boolean phaseCompleted,
+                              long startScn,
+                              long targetScn,
+                              int snapshotParallelism,
+                              String... sourceNames)
+  throws Exception
   {
     List<String> sources = Arrays.asList(sourceNames);
 
@@ -2338,6 +2535,8 @@ public class TestBootstrapPullThread
     clientProps.setProperty("client.connectionDefaults.pullerRetries.sleepIncFactor", "1.0");
     clientProps.setProperty("client.connectionDefaults.pullerRetries.sleepIncDelta", "1");
     clientProps.setProperty("client.connectionDefaults.pullerRetries.initSleep", "1");
+    clientProps.setProperty("client.connectionDefaults.bstSnapshotParallelism",
+                            Integer.toString(snapshotParallelism));
 
     DatabusHttpClientImpl.Config clientConfBuilder = new DatabusHttpClientImpl.Config();
     ConfigLoader<DatabusHttpClientImpl.StaticConfig> configLoader =
@@ -2525,6 +2724,10 @@ class MockBootstrapConnection implements DatabusBootstrapConnection
   private final long _startScn;
   private final long _targetScn;
   private Checkpoint _cp = null;
+  private final List<DatabusBootstrapConnectionStateMessage> _streamStates =
+      new ArrayList<DatabusBootstrapConnectionStateMessage>();
+  private final List<Checkpoint> _streamCheckpoints = new ArrayList<Checkpoint>();
+  private final List<Integer> _streamFetchSizes = new ArrayList<Integer>();
 
   public void setMuteTransition(boolean muteTransition)
   {
@@ -2655,6 +2858,9 @@ class MockBootstrapConnection implements DatabusBootstrapConnection
                             DatabusBootstrapConnectionStateMessage stateReuse)
   {
     ++_streamCallCounter;
+    _streamStates.add(stateReuse);
+    _streamCheckpoints.add(cp);
+    _streamFetchSizes.add(freeBufferSpace);
     if (null == _streamResponse)
     {
       if ( !_muteTransition) stateReuse.switchToStreamRequestError();
@@ -2668,6 +2874,22 @@ class MockBootstrapConnection implements DatabusBootstrapConnection
     if (null != _callback && !_muteTransition) _callback.enqueueMessage(stateReuse);
   }
 
+  /** The state objects of the /bootstrap requests in the order they were sent */
+  public List<DatabusBootstrapConnectionStateMessage> getStreamStates()
+  {
+    return _streamStates;
+  }
+
+  public List<Checkpoint> getStreamCheckpoints()
+  {
+    return _streamCheckpoints;
+  }
+
+  public List<Integer> getStreamFetchSizes()
+  {
+    return _streamFetchSizes;
+  }
+
   public int getStartScnCallCounter()
   {
     return _startScnCallCounter;
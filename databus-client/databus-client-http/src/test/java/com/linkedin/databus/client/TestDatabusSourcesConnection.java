@@ -29,8 +29,12 @@ import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.linkedin.databus.client.pub.DatabusClientException;
 import com.linkedin.databus.core.DbusEventBuffer;
 import com.linkedin.databus.core.DbusEventBuffer.AllocationPolicy;
+import com.linkedin.databus.core.DbusEventBuffer.DbusEventIterator;
+import com.linkedin.databus.core.DbusEventKey;
+import com.linkedin.databus.core.DbusEventV2Factory;
 import com.linkedin.databus.core.data_model.DatabusSubscription;
 import com.linkedin.databus2.test.TestUtil;
 
@@ -211,4 +215,192 @@ public class TestDatabusSourcesConnection
     Object prettyName = constructPrettyNameForLogging.invoke(dsc, ds, "test_1234");
     Assert.assertEquals(prettyName, "dbPrefix1_tableName1_dbPrefix2_tableName2_test_1234");
   }
+
+  @Test
+  public void testBufferBudget() throws Exception
+  {
+    DbusEventBuffer.Config bufConfig = new DbusEventBuffer.Config();
+    bufConfig.setMaxSize(100000);
+    bufConfig.setAverageEventSize(20000);
+    bufConfig.setMaxEventSize(20000);
+    bufConfig.setScnIndexSize(1024);
+    bufConfig.setAllocationPolicy(AllocationPolicy.HEAP_MEMORY.toString());
+    bufConfig.setPayloadCompressionThreshold(1000);
+    bufConfig.setTrackIterators(false);
+    DbusEventBuffer.StaticConfig bufStaticConfig = bufConfig.build();
+
+    ClientBufferBudget.Config budgetConfig = new ClientBufferBudget.Config();
+    budgetConfig.setMaxTotalSize(250000);
+    budgetConfig.setMinConnectionBufferSize(50000);
+    budgetConfig.setMaxConnectionBufferSize(80000);
+    ClientBufferBudget budget = new ClientBufferBudget(budgetConfig.build());
+    DbusEventV2Factory eventFactory = new DbusEventV2Factory();
+
+    //buffers are capped by maxConnectionBufferSize and then by the remaining budget
+    DbusEventBuffer buf1 = budget.createEventBuffer(bufStaticConfig, bufStaticConfig.getMmapDirectory(),
+                                                    eventFactory);
+    DbusEventBuffer buf2 = budget.createEventBuffer(bufStaticConfig, bufStaticConfig.getMmapDirectory(),
+                                                    eventFactory);
+    DbusEventBuffer buf3 = budget.createEventBuffer(bufStaticConfig, bufStaticConfig.getMmapDirectory(),
+                                                    eventFactory);
+    Assert.assertEquals(buf1.getAllocatedSize(), 80000);
+    Assert.assertEquals(buf2.getAllocatedSize(), 80000);
+    Assert.assertEquals(buf3.getAllocatedSize(), 80000);
+    Assert.assertEquals(budget.getAvailableBytes(), 10000);
+    //shrunk buffers keep the max event size and the other settings
+    Assert.assertEquals(buf1.getMaxReadBufferCapacity(), 20000);
+    Assert.assertNotNull(buf1.getPayloadCompressor());
+    Assert.assertSame(buf1.getPayloadDictionaries(), bufStaticConfig.getPayloadDictionaries());
+    Assert.assertFalse(buf1.isTrackIterators());
+
+    //not enough for the minimum
+    try
+    {
+      budget.createEventBuffer(bufStaticConfig, bufStaticConfig.getMmapDirectory(), eventFactory);
+      Assert.fail("budget exhaustion expected");
+    }
+    catch (DatabusClientException e)
+    {
+      //expected
+    }
+    Assert.assertEquals(budget.getAvailableBytes(), 10000);
+
+    //released bytes can be reused
+    Assert.assertTrue(budget.release(buf2));
+    Assert.assertFalse(budget.release(buf2));
+    Assert.assertEquals(budget.getAvailableBytes(), 90000);
+    DbusEventBuffer buf4 = budget.createEventBuffer(bufStaticConfig, bufStaticConfig.getMmapDirectory(),
+                                                    eventFactory);
+    Assert.assertEquals(buf4.getAllocatedSize(), 80000);
+    budget.release(buf1);
+    budget.release(buf3);
+    budget.release(buf4);
+    Assert.assertEquals(budget.getAllocatedBytes(), 0);
+
+    //the grant is raised above maxConnectionBufferSize to fit a max-size event and the staging buffer
+    bufConfig.setMaxEventSize(70000);
+    DbusEventBuffer.StaticConfig bigEventsConfig = bufConfig.build();
+    DbusEventBuffer buf6 = budget.createEventBuffer(bigEventsConfig, bigEventsConfig.getMmapDirectory(),
+                                                    eventFactory);
+    Assert.assertEquals(buf6.getAllocatedSize(), 90000);
+    Assert.assertEquals(buf6.getMaxReadBufferCapacity(), 70000);
+    DbusEventBuffer buf7 = budget.createEventBuffer(bigEventsConfig, bigEventsConfig.getMmapDirectory(),
+                                                    eventFactory);
+    Assert.assertEquals(buf7.getAllocatedSize(), 90000);
+
+    //and the creation fails if the budget cannot fit that
+    try
+    {
+      budget.createEventBuffer(bigEventsConfig, bigEventsConfig.getMmapDirectory(), eventFactory);
+      Assert.fail("budget exhaustion expected");
+    }
+    catch (DatabusClientException e)
+    {
+      //expected
+    }
+    Assert.assertEquals(budget.getAvailableBytes(), 70000);
+    budget.release(buf6);
+    budget.release(buf7);
+
+    //disabled budget does not change the buffer sizes
+    ClientBufferBudget noBudget = new ClientBufferBudget(new ClientBufferBudget.Config().build());
+    DbusEventBuffer buf5 = noBudget.createEventBuffer(bufStaticConfig, bufStaticConfig.getMmapDirectory(),
+                                                      eventFactory);
+    Assert.assertEquals(buf5.getAllocatedSize(), 100000);
+    Assert.assertFalse(noBudget.release(buf5));
+  }
+
+  @Test
+  public void testOnDemandBufferBudget() throws Exception
+  {
+    DbusEventBuffer.Config bufConfig = new DbusEventBuffer.Config();
+    bufConfig.setMaxSize(100000);
+    bufConfig.setAverageEventSize(20000);
+    bufConfig.setMaxEventSize(20000);
+    bufConfig.setScnIndexSize(1024);
+    bufConfig.setAllocationPolicy(AllocationPolicy.DIRECT_MEMORY.toString());
+    DbusEventBuffer.StaticConfig bufStaticConfig = bufConfig.build();
+
+    ClientBufferBudget.Config budgetConfig = new ClientBufferBudget.Config();
+    budgetConfig.setMaxTotalSize(250000);
+    budgetConfig.setMinConnectionBufferSize(50000);
+    budgetConfig.setMaxConnectionBufferSize(80000);
+    ClientBufferBudget budget = new ClientBufferBudget(budgetConfig.build());
+    DbusEventV2Factory eventFactory = new DbusEventV2Factory();
+
+    DbusEventBuffer relayBuf = budget.createEventBuffer(bufStaticConfig, bufStaticConfig.getMmapDirectory(),
+                                                        eventFactory);
+    Assert.assertEquals(budget.getAvailableBytes(), 170000);
+
+    //on-demand buffers take nothing from the budget until they are allocated
+    DbusEventBuffer bstBuf1 = budget.createOnDemandEventBuffer(bufStaticConfig,
+                                                               bufStaticConfig.getMmapDirectory(),
+                                                               eventFactory);
+    DbusEventBuffer bstBuf2 = budget.createOnDemandEventBuffer(bufStaticConfig,
+                                                               bufStaticConfig.getMmapDirectory(),
+                                                               eventFactory);
+    DbusEventBuffer bstBuf3 = budget.createOnDemandEventBuffer(bufStaticConfig,
+                                                               bufStaticConfig.getMmapDirectory(),
+                                                               eventFactory);
+    Assert.assertEquals(bstBuf1.getAllocatedSize(), 80000);
+    Assert.assertTrue(bstBuf1.isMemoryReleased());
+    Assert.assertEquals(budget.getAvailableBytes(), 170000);
+
+    Assert.assertTrue(budget.allocate(bstBuf1));
+    Assert.assertFalse(bstBuf1.isMemoryReleased());
+    Assert.assertFalse(budget.allocate(bstBuf1));
+    Assert.assertFalse(budget.allocate(relayBuf));
+    Assert.assertTrue(budget.allocate(bstBuf2));
+    Assert.assertEquals(budget.getAvailableBytes(), 10000);
+    try
+    {
+      budget.allocate(bstBuf3);
+      Assert.fail("budget exhaustion expected");
+    }
+    catch (DatabusClientException e)
+    {
+      //expected
+    }
+    Assert.assertTrue(bstBuf3.isMemoryReleased());
+    Assert.assertEquals(budget.getAvailableBytes(), 10000);
+
+    //a buffer with events keeps its memory
+    bstBuf1.start(0);
+    DbusEventIterator iter = bstBuf1.acquireIterator("testOnDemandBufferBudget");
+    appendWindow(bstBuf1, 10);
+    Assert.assertFalse(budget.free(bstBuf1));
+    while (iter.hasNext()) iter.next();
+    iter.remove();
+    Assert.assertTrue(budget.free(bstBuf1));
+    Assert.assertTrue(bstBuf1.isMemoryReleased());
+    Assert.assertEquals(budget.getAvailableBytes(), 90000);
+    Assert.assertTrue(budget.allocate(bstBuf3));
+
+    //a reallocated buffer continues after the consumed events
+    Assert.assertTrue(budget.free(bstBuf3));
+    Assert.assertTrue(budget.allocate(bstBuf1));
+    appendWindow(bstBuf1, 20);
+    Assert.assertTrue(iter.hasNext());
+    Assert.assertEquals(iter.next().sequence(), 20);
+    Assert.assertEquals(iter.next().sequence(), 20);
+    Assert.assertTrue(iter.next().isEndOfPeriodMarker());
+    bstBuf1.releaseIterator(iter);
+
+    Assert.assertTrue(budget.release(bstBuf1));
+    Assert.assertTrue(budget.release(bstBuf2));
+    Assert.assertTrue(budget.release(bstBuf3));
+    Assert.assertTrue(budget.release(relayBuf));
+    Assert.assertEquals(budget.getAllocatedBytes(), 0);
+  }
+
+  private static void appendWindow(DbusEventBuffer buf, long scn)
+  {
+    buf.startEvents();
+    for (int i = 0; i < 2; ++i)
+    {
+      Assert.assertTrue(buf.appendEvent(new DbusEventKey(i), (short)0, (short)0, System.nanoTime(),
+                                        (short)1, new byte[16], "value".getBytes(), false));
+    }
+    buf.endEvents(scn);
+  }
 }
@@ -364,6 +364,10 @@ public class TestRelayPullThread
     EasyMock.expect(sourcesConn2.getBootstrapServices()).andReturn(null).anyTimes();
     EasyMock.expect(sourcesConn2.getBootstrapPuller()).andReturn(mockBsPuller).anyTimes();
     EasyMock.expect(sourcesConn2.getRelayDispatcher()).andReturn(mockDispatcher).anyTimes();
+    sourcesConn2.acquireBootstrapBuffer();
+    EasyMock.expectLastCall().anyTimes();
+    sourcesConn2.onBootstrapComplete();
+    EasyMock.expectLastCall().anyTimes();
 
 
     EasyMock.makeThreadSafe(mockConnFactory, true);
@@ -3073,6 +3077,9 @@ class MockRelayConnection implements DatabusRelayConnection
   @Override
   public void enableReadFromLatestScn(boolean enable) {  enableReadLatest = enable;}
 
+  @Override
+  public void enableCompressedPayloads(boolean enable) {}
+
 
   public boolean isReadFromLatestScn()
   {
@@ -3151,6 +3158,12 @@ class MockChunkedBodyReadableByteChannel extends ChunkedBodyReadableByteChannel
     return 0;
   }
 
+  @Override
+  public ByteBuffer readChunk() throws IOException
+  {
+    return null;
+  }
+
   @Override
   public String getMetadata(String key)
   {
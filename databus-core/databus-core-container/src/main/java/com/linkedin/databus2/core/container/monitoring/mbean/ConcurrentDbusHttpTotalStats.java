@@ -0,0 +1,230 @@
+package com.linkedin.databus2.core.container.monitoring.mbean;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import com.linkedin.databus.core.Checkpoint;
+import com.linkedin.databus.core.util.StripedLongCounters;
+import com.linkedin.databus2.core.container.monitoring.events.DbusHttpTotalStatsEvent;
+
+/**
+ * A {@link DbusHttpTotalStats} whose per-request register methods do not take the read/write lock.
+ * Updates are accumulated in striped counters and folded into the _event snapshot only when the
+ * stats are read (JMX getters, /stats, merges). See
+ * {@link com.linkedin.databus.core.monitoring.mbean.ConcurrentDbusEventsTotalStats}.
+ */
+public class ConcurrentDbusHttpTotalStats extends DbusHttpTotalStats
+{
+  //summed counters
+  private static final int NUM_REGISTER_CALLS = 0;
+  private static final int NUM_SOURCES_CALLS = 1;
+  private static final int NUM_STREAM_CALLS = 2;
+  private static final int TIME_STREAM_CALLS_MS = 3;
+  private static final int NUM_ERR_STREAM_CALLS = 4;
+  private static final int NUM_ERR_INVALID_PARAMS_STREAM_CALLS = 5;
+  private static final int NUM_ERR_SCN_NOT_FOUND_STREAM_CALLS = 6;
+  private static final int NUM_ERR_SOURCES_CALLS = 7;
+  private static final int NUM_ERR_INVALID_PARAMS_SOURCES_CALLS = 8;
+  private static final int NUM_ERR_INVALID_PARAMS_REGISTER_CALLS = 9;
+  //max counters
+  private static final int MAX_STREAM_WIN_SCN = 10;
+  private static final int COUNTERS_NUM = 11;
+
+  private final StripedLongCounters _pending;
+  private final AtomicLong _pendingMinStreamWinScn;
+  /** Peers seen since the last fold */
+  private final ConcurrentHashMap<String, Boolean> _pendingPeers;
+
+  public ConcurrentDbusHttpTotalStats(int ownerId, String dimension, boolean enabled,
+                                      boolean threadSafe, DbusHttpTotalStatsEvent initData)
+  {
+    this(ownerId, dimension, enabled, threadSafe, initData,
+         2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param stripesNum    the number of stripes for the counters; stats updated by few threads
+   *                      (e.g. per-peer stats) can use fewer stripes to save memory
+   */
+  public ConcurrentDbusHttpTotalStats(int ownerId, String dimension, boolean enabled,
+                                      boolean threadSafe, DbusHttpTotalStatsEvent initData,
+                                      int stripesNum)
+  {
+    super(ownerId, dimension, enabled, threadSafe, initData);
+    _pending = new StripedLongCounters(COUNTERS_NUM, stripesNum);
+    _pending.reset(MAX_STREAM_WIN_SCN, DEFAULT_MAX_LONG_VALUE);
+    _pendingMinStreamWinScn = new AtomicLong(DEFAULT_MIN_LONG_VALUE);
+    _pendingPeers = new ConcurrentHashMap<String, Boolean>(16);
+  }
+
+  private void addPendingPeer(String peer)
+  {
+    if (!_pendingPeers.containsKey(peer)) _pendingPeers.putIfAbsent(peer, Boolean.TRUE);
+  }
+
+  @Override
+  public void registerRegisterCall(String peer)
+  {
+    if (! _enabled.get()) return;
+    _pending.increment(NUM_REGISTER_CALLS);
+    addPendingPeer(peer);
+  }
+
+  @Override
+  public void registerSourcesCall(String peer)
+  {
+    if (! _enabled.get()) return;
+    _pending.increment(NUM_SOURCES_CALLS);
+    addPendingPeer(peer);
+  }
+
+  @Override
+  public void registerStreamResponse(long totalTime)
+  {
+    if (! _enabled.get()) return;
+    _pending.increment(NUM_STREAM_CALLS);
+    _pending.add(TIME_STREAM_CALLS_MS, totalTime);
+  }
+
+  @Override
+  public void registerStreamRequest(String peer, Checkpoint cp)
+  {
+    long winScn = cp.getWindowScn();
+    _pending.accumulateMax(MAX_STREAM_WIN_SCN, winScn);
+
+    long curMin = _pendingMinStreamWinScn.get();
+    while (DEFAULT_MIN_LONG_VALUE == curMin || winScn < curMin)
+    {
+      if (_pendingMinStreamWinScn.compareAndSet(curMin, winScn)) break;
+      curMin = _pendingMinStreamWinScn.get();
+    }
+    addPendingPeer(peer);
+  }
+
+  @Override
+  public void registerInvalidStreamRequest(String peer)
+  {
+    addPendingPeer(peer);
+    _pending.increment(NUM_ERR_STREAM_CALLS);
+    _pending.increment(NUM_ERR_INVALID_PARAMS_STREAM_CALLS);
+  }
+
+  @Override
+  public void registerScnNotFoundStreamResponse(String peer)
+  {
+    addPendingPeer(peer);
+    _pending.increment(NUM_ERR_STREAM_CALLS);
+    _pending.increment(NUM_ERR_SCN_NOT_FOUND_STREAM_CALLS);
+  }
+
+  @Override
+  public void registerInvalidSourceRequest(String peer)
+  {
+    addPendingPeer(peer);
+    _pending.increment(NUM_ERR_INVALID_PARAMS_SOURCES_CALLS);
+    _pending.increment(NUM_ERR_SOURCES_CALLS);
+  }
+
+  @Override
+  public void registerInvalidRegisterCall(String peer)
+  {
+    addPendingPeer(peer);
+    _pending.increment(NUM_ERR_STREAM_CALLS);
+    _pending.increment(NUM_ERR_INVALID_PARAMS_REGISTER_CALLS);
+  }
+
+  /**
+   * Folds the updates accumulated in the striped counters into the _event snapshot.
+   * @param  otherLock     a lock held by the caller on another object (can be null)
+   */
+  protected void foldPendingUpdates(Lock otherLock)
+  {
+    //the constructor of the parent class resets the stats before our fields are initialized
+    if (null == _pending) return;
+    //cannot upgrade a read lock to a write lock; the caller will see the last folded state
+    if (isReadLockHeldByCurrentThread()) return;
+
+    Lock writeLock = acquireWriteLock(otherLock);
+    try
+    {
+      _event.numRegisterCalls += (int)_pending.drainSum(NUM_REGISTER_CALLS);
+      _event.numSourcesCalls += (int)_pending.drainSum(NUM_SOURCES_CALLS);
+      _event.numStreamCalls += _pending.drainSum(NUM_STREAM_CALLS);
+      _event.timeStreamCallsMs += _pending.drainSum(TIME_STREAM_CALLS_MS);
+      _event.numErrStreamCalls += _pending.drainSum(NUM_ERR_STREAM_CALLS);
+      _event.numErrInvalidParamsStreamCalls += _pending.drainSum(NUM_ERR_INVALID_PARAMS_STREAM_CALLS);
+      _event.numErrScnNotFoundStreamCalls += _pending.drainSum(NUM_ERR_SCN_NOT_FOUND_STREAM_CALLS);
+      _event.numErrSourcesCalls += (int)_pending.drainSum(NUM_ERR_SOURCES_CALLS);
+      _event.numErrInvalidParamsSourcesCalls +=
+          (int)_pending.drainSum(NUM_ERR_INVALID_PARAMS_SOURCES_CALLS);
+      _event.numErrInvalidParamsRegisterCalls +=
+          (int)_pending.drainSum(NUM_ERR_INVALID_PARAMS_REGISTER_CALLS);
+
+      long maxStreamWinScn = _pending.drainMax(MAX_STREAM_WIN_SCN, DEFAULT_MAX_LONG_VALUE);
+      _event.maxStreamWinScn = maxValue(_event.maxStreamWinScn, maxStreamWinScn);
+      _event.minStreamWinScn = minValue(_event.minStreamWinScn, _pendingMinStreamWinScn.get());
+
+      Iterator<String> peerIter = _pendingPeers.keySet().iterator();
+      while (peerIter.hasNext())
+      {
+        registerPeer(peerIter.next());
+        peerIter.remove();
+      }
+    }
+    finally
+    {
+      releaseLock(writeLock);
+    }
+  }
+
+  @Override
+  protected Lock acquireReadLock()
+  {
+    foldPendingUpdates(null);
+    return super.acquireReadLock();
+  }
+
+  @Override
+  protected Lock acquireReadLock(Lock otherLock)
+  {
+    foldPendingUpdates(otherLock);
+    return super.acquireReadLock(otherLock);
+  }
+
+  @Override
+  protected void resetData()
+  {
+    super.resetData();
+    //the constructor of the parent class resets the stats before our fields are initialized
+    if (null == _pending) return;
+
+    for (int i = 0; i < COUNTERS_NUM; ++i)
+    {
+      _pending.reset(i, 0);
+    }
+    _pending.reset(MAX_STREAM_WIN_SCN, DEFAULT_MAX_LONG_VALUE);
+    _pendingMinStreamWinScn.set(DEFAULT_MIN_LONG_VALUE);
+    _pendingPeers.clear();
+  }
+}
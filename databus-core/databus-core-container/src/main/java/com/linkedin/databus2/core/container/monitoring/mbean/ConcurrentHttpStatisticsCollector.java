@@ -0,0 +1,444 @@
+package com.linkedin.databus2.core.container.monitoring.mbean;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanServer;
+
+import com.linkedin.databus.core.Checkpoint;
+import com.linkedin.databus2.core.container.request.RegisterResponseEntry;
+
+/**
+ * An {@link HttpStatisticsCollector} for servers with many, possibly short-lived, clients.
+ *
+ * <ul>
+ *   <li>The total and per-source stats are {@link ConcurrentDbusHttpTotalStats} so registering
+ *   a call does not take any locks.</li>
+ *   <li>The per-connection collectors returned by {@link #createForClientConnection(String)} are
+ *   lightweight views that record directly into this collector. Merging them back is a no-op, so
+ *   there is no per-request merge under the collector's write lock.</li>
+ *   <li>The per-peer table is bounded to maxPeers entries. When a new peer arrives and the table
+ *   is full, a peer that has not been used recently is evicted using the clock (second chance)
+ *   algorithm, which approximates LRU in amortized constant time: looking up a peer only sets its
+ *   reference bit. The stats of the evicted peer are merged into the "peer.evicted" aggregate and
+ *   its MBean is unregistered. The MBeans are registered and unregistered outside of the lock of
+ *   the table. Updates racing with the eviction of their peer may be lost from the per-peer stats
+ *   (the total stats are not affected).</li>
+ * </ul>
+ */
+public class ConcurrentHttpStatisticsCollector extends HttpStatisticsCollector
+{
+  public static final int DEFAULT_MAX_PEERS = 1000;
+  /** Per-peer stats are updated by few threads and there can be many of them */
+  private static final int PEER_STATS_STRIPES = 4;
+
+  /** The global collector for per-connection views; null for the global collector */
+  private final ConcurrentHttpStatisticsCollector _parent;
+  private final int _maxPeers;
+  private final String _perPeerPrefix;
+  private final ConcurrentHashMap<String, PeerEntry> _peerStats;
+  /** The clock of the peers in _peerStats for eviction; guarded by the lock on _peerStats */
+  private final ArrayDeque<PeerEntry> _peersClock;
+  /** Serializes the registration of the per-peer MBeans; never held with the lock on _peerStats */
+  private final Object _peerMBeansLock;
+  private final DbusHttpTotalStats _evictedPeersStats;
+
+  public ConcurrentHttpStatisticsCollector(int id, String name, boolean enabled, int maxPeers,
+                                           MBeanServer mbeanServer)
+  {
+    super(id, name, enabled, true, NO_PEER, mbeanServer);
+    _parent = null;
+    _maxPeers = maxPeers;
+    _perPeerPrefix = name + ".peer.";
+    _peerStats = new ConcurrentHashMap<String, PeerEntry>(Math.min(maxPeers, 1000));
+    _peersClock = new ArrayDeque<PeerEntry>(Math.min(maxPeers, 1000));
+    _peerMBeansLock = new Object();
+    _evictedPeersStats = new DbusHttpTotalStats(id, _perPeerPrefix + "evicted", true, true, null);
+    if (null != mbeanServer)
+    {
+      _evictedPeersStats.registerAsMbean(mbeanServer);
+    }
+  }
+
+  private ConcurrentHttpStatisticsCollector(ConcurrentHttpStatisticsCollector parent, String peer)
+  {
+    super(parent.getOwnerId(), parent.getName(), true, false, peer, null);
+    _parent = parent;
+    _maxPeers = 0;
+    _perPeerPrefix = parent._perPeerPrefix;
+    _peerStats = null;
+    _peersClock = null;
+    _peerMBeansLock = null;
+    _evictedPeersStats = null;
+  }
+
+  @Override
+  protected DbusHttpTotalStats makeDbusHttpTotalStats(int ownerId, String dimension, boolean enabled,
+                                                      boolean threadSafe)
+  {
+    //the per-connection views do not use their own stats
+    return threadSafe ? new ConcurrentDbusHttpTotalStats(ownerId, dimension, enabled, true, null)
+                      : super.makeDbusHttpTotalStats(ownerId, dimension, enabled, threadSafe);
+  }
+
+  @Override
+  public HttpStatisticsCollector createForClientConnection(String client)
+  {
+    return new ConcurrentHttpStatisticsCollector(getGlobal(), client);
+  }
+
+  /** The collector where the stats are recorded */
+  private ConcurrentHttpStatisticsCollector getGlobal()
+  {
+    return null == _parent ? this : _parent;
+  }
+
+  public int getMaxPeers()
+  {
+    return getGlobal()._maxPeers;
+  }
+
+  /** Aggregated stats of all peers evicted from the per-peer table since the last reset */
+  public DbusHttpTotalStats getEvictedPeersStats()
+  {
+    return getGlobal()._evictedPeersStats;
+  }
+
+  /** Returns the peer stats for the global collector, or null for {@link #NO_PEER} */
+  private DbusHttpTotalStats getOrAddPeerStats(String peer)
+  {
+    if (NO_PEER == peer) return null;
+
+    PeerEntry entry = _peerStats.get(peer);
+    if (null != entry)
+    {
+      entry.touch();
+      return entry.getStats();
+    }
+
+    List<PeerEntry> evicted = null;
+    boolean added = false;
+    synchronized (_peerStats)
+    {
+      entry = _peerStats.get(peer);
+      if (null == entry)
+      {
+        while (_peerStats.size() >= _maxPeers && !_peersClock.isEmpty())
+        {
+          if (null == evicted) evicted = new ArrayList<PeerEntry>(1);
+          evicted.add(evictPeer());
+        }
+        entry = new PeerEntry(peer, new ConcurrentDbusHttpTotalStats(getOwnerId(), _perPeerPrefix + peer,
+                                                                     true, true, null,
+                                                                     PEER_STATS_STRIPES));
+        _peerStats.put(peer, entry);
+        _peersClock.addLast(entry);
+        added = true;
+      }
+    }
+
+    if (null != evicted)
+    {
+      for (PeerEntry e: evicted)
+      {
+        _evictedPeersStats.mergeStats(e.getStats());
+        updatePeerMBean(e);
+        if (LOG.isDebugEnabled())
+        {
+          LOG.debug(getName() + ": evicted stats for peer " + e.getPeer());
+        }
+      }
+    }
+    if (added)
+    {
+      updatePeerMBean(entry);
+    }
+    else
+    {
+      entry.touch();
+    }
+
+    return entry.getStats();
+  }
+
+  /**
+   * Removes the first peer in the clock whose reference bit is not set, clearing the bits of the
+   * peers before it. Gives up on the second chances after one full turn so that the eviction is
+   * bounded even if all peers are being used. Must be called while synchronized on _peerStats.
+   */
+  private PeerEntry evictPeer()
+  {
+    int secondChances = _peersClock.size();
+    PeerEntry entry = _peersClock.pollFirst();
+    while (entry.clearReferenced() && secondChances-- > 0)
+    {
+      _peersClock.addLast(entry);
+      entry = _peersClock.pollFirst();
+    }
+    _peerStats.remove(entry.getPeer());
+    return entry;
+  }
+
+  /**
+   * Registers the MBean of a peer which is in the table or unregisters the MBean of an evicted
+   * peer. A newer entry for the same peer replaces the MBean, so the MBean of an evicted entry is
+   * unregistered only if the peer has not been added again.
+   */
+  private void updatePeerMBean(PeerEntry entry)
+  {
+    MBeanServer mbeanServer = getMBeanServer();
+    if (null == mbeanServer) return;
+
+    synchronized (_peerMBeansLock)
+    {
+      PeerEntry current = _peerStats.get(entry.getPeer());
+      if (current == entry)
+      {
+        entry.getStats().registerAsMbean(mbeanServer);
+      }
+      else if (null == current)
+      {
+        entry.getStats().unregisterMbean(mbeanServer);
+      }
+    }
+  }
+
+  @Override
+  public List<String> getPeers()
+  {
+    if (null != _parent) return super.getPeers();
+    return new ArrayList<String>(_peerStats.keySet());
+  }
+
+  @Override
+  public DbusHttpTotalStats getPeerStats(String peer)
+  {
+    if (null != _parent) return super.getPeerStats(peer);
+    PeerEntry entry = _peerStats.get(peer);
+    return null == entry ? null : entry.getStats();
+  }
+
+  @Override
+  public void registerRegisterCall(List<RegisterResponseEntry> sources)
+  {
+    ConcurrentHttpStatisticsCollector global = getGlobal();
+    if (!global.isEnabled()) return;
+
+    String peer = getCurPeer();
+    global.getTotalStats().registerRegisterCall(peer);
+    for (RegisterResponseEntry respEntry: sources)
+    {
+      global.getSourceStats((int)respEntry.getId()).registerRegisterCall(peer);
+    }
+    DbusHttpTotalStats peerStats = global.getOrAddPeerStats(peer);
+    if (null != peerStats) peerStats.registerRegisterCall(peer);
+  }
+
+  @Override
+  public void registerSourcesCall()
+  {
+    ConcurrentHttpStatisticsCollector global = getGlobal();
+    if (!global.isEnabled()) return;
+
+    String peer = getCurPeer();
+    global.getTotalStats().registerSourcesCall(peer);
+    DbusHttpTotalStats peerStats = global.getOrAddPeerStats(peer);
+    if (null != peerStats) peerStats.registerSourcesCall(peer);
+  }
+
+  @Override
+  public void registerStreamResponse(long streamCallDuration)
+  {
+    ConcurrentHttpStatisticsCollector global = getGlobal();
+    if (!global.isEnabled()) return;
+
+    global.getTotalStats().registerStreamResponse(streamCallDuration);
+    DbusHttpTotalStats peerStats = global.getOrAddPeerStats(getCurPeer());
+    if (null != peerStats) peerStats.registerStreamResponse(streamCallDuration);
+  }
+
+  @Override
+  public void registerStreamRequest(Checkpoint cp, Collection<Integer> sourceIds)
+  {
+    ConcurrentHttpStatisticsCollector global = getGlobal();
+    if (!global.isEnabled()) return;
+
+    String peer = getCurPeer();
+    global.getTotalStats().registerStreamRequest(peer, cp);
+    for (Integer srcId: sourceIds)
+    {
+      global.getSourceStats(srcId).registerStreamRequest(peer, cp);
+    }
+    DbusHttpTotalStats peerStats = global.getOrAddPeerStats(peer);
+    if (null != peerStats) peerStats.registerStreamRequest(peer, cp);
+  }
+
+  @Override
+  public void registerInvalidStreamRequest()
+  {
+    ConcurrentHttpStatisticsCollector global = getGlobal();
+    if (!global.isEnabled()) return;
+
+    String peer = getCurPeer();
+    global.getTotalStats().registerInvalidStreamRequest(peer);
+    DbusHttpTotalStats peerStats = global.getOrAddPeerStats(peer);
+    if (null != peerStats) peerStats.registerInvalidStreamRequest(peer);
+  }
+
+  @Override
+  public void registerScnNotFoundStreamResponse()
+  {
+    ConcurrentHttpStatisticsCollector global = getGlobal();
+    if (!global.isEnabled()) return;
+
+    String peer = getCurPeer();
+    global.getTotalStats().registerScnNotFoundStreamResponse(peer);
+    DbusHttpTotalStats peerStats = global.getOrAddPeerStats(peer);
+    if (null != peerStats) peerStats.registerScnNotFoundStreamResponse(peer);
+  }
+
+  @Override
+  public void registerInvalidSourceRequest()
+  {
+    ConcurrentHttpStatisticsCollector global = getGlobal();
+    if (!global.isEnabled()) return;
+
+    String peer = getCurPeer();
+    global.getTotalStats().registerInvalidSourceRequest(peer);
+    DbusHttpTotalStats peerStats = global.getOrAddPeerStats(peer);
+    if (null != peerStats) peerStats.registerInvalidSourceRequest(peer);
+  }
+
+  @Override
+  public void registerInvalidRegisterCall()
+  {
+    ConcurrentHttpStatisticsCollector global = getGlobal();
+    if (!global.isEnabled()) return;
+
+    String peer = getCurPeer();
+    global.getTotalStats().registerInvalidRegisterCall(peer);
+    DbusHttpTotalStats peerStats = global.getOrAddPeerStats(peer);
+    if (null != peerStats) peerStats.registerInvalidRegisterCall(peer);
+  }
+
+  @Override
+  public void registerMastershipStatus(int i)
+  {
+    getGlobal().getTotalStats().registerMastershipStatus(i);
+  }
+
+  @Override
+  public void merge(HttpStatisticsCollector other)
+  {
+    if (other instanceof ConcurrentHttpStatisticsCollector &&
+        getGlobal() == ((ConcurrentHttpStatisticsCollector)other).getGlobal())
+    {
+      //the per-connection views record directly into the global collector
+      return;
+    }
+    if (null != _parent)
+    {
+      _parent.merge(other);
+      return;
+    }
+
+    getTotalStats().mergeStats(other.getTotalStats());
+    for (Integer srcId: other.getSources())
+    {
+      getSourceStats(srcId).mergeStats(other.getSourceStats(srcId));
+    }
+    for (String peer: other.getPeers())
+    {
+      DbusHttpTotalStats otherPeerStats = other.getPeerStats(peer);
+      DbusHttpTotalStats peerStats = getOrAddPeerStats(peer);
+      if (null != otherPeerStats && null != peerStats) peerStats.mergeStats(otherPeerStats);
+    }
+  }
+
+  @Override
+  public void reset()
+  {
+    //the per-connection views have no state of their own
+    if (null != _parent) return;
+
+    super.reset();
+    for (PeerEntry entry: _peerStats.values())
+    {
+      entry.getStats().reset();
+    }
+    _evictedPeersStats.reset();
+  }
+
+  @Override
+  public void unregisterMBeans()
+  {
+    super.unregisterMBeans();
+    if (null != _parent || null == getMBeanServer()) return;
+
+    for (PeerEntry entry: _peerStats.values())
+    {
+      entry.getStats().unregisterMbean(getMBeanServer());
+    }
+    _evictedPeersStats.unregisterMbean(getMBeanServer());
+  }
+
+  private static class PeerEntry
+  {
+    private final String _peer;
+    private final DbusHttpTotalStats _stats;
+    /** The reference bit of the clock */
+    private volatile boolean _referenced;
+
+    public PeerEntry(String peer, DbusHttpTotalStats stats)
+    {
+      _peer = peer;
+      _stats = stats;
+    }
+
+    public String getPeer()
+    {
+      return _peer;
+    }
+
+    public DbusHttpTotalStats getStats()
+    {
+      return _stats;
+    }
+
+    public void touch()
+    {
+      //avoid writing the shared field if it is already set
+      if (!_referenced) _referenced = true;
+    }
+
+    /** Clears the reference bit and returns its previous value */
+    public boolean clearReferenced()
+    {
+      boolean result = _referenced;
+      if (result) _referenced = false;
+      return result;
+    }
+  }
+}
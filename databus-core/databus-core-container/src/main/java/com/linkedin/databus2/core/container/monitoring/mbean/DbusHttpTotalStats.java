@@ -209,7 +209,7 @@ public class DbusHttpTotalStats extends AbstractMonitoringMBean<DbusHttpTotalSta
   }
 
   /** Not thread-safe! Make sure you are holding a write lock*/
-  private void registerPeer(String peer)
+  protected void registerPeer(String peer)
   {
     _peers.add(peer);
     _event.numPeers = _peers.size();
@@ -21,9 +21,9 @@ package com.linkedin.databus2.core.container.monitoring.mbean;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 
@@ -50,11 +50,12 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
   public static final String MODULE = HttpStatisticsCollector.class.getName();
   public static final Logger LOG = Logger.getLogger(MODULE);
 
-  private final static String NO_PEER = "NONE";
+  protected final static String NO_PEER = "NONE";
 
   private final DbusHttpTotalStats _totalStats;
-  private final HashMap<Integer, DbusHttpTotalStats> _perSourceStats;
-  private final HashMap<String, DbusHttpTotalStats> _perClientStats;
+  /** Lookups are lock-free; new entries are added only under the write lock */
+  private final ConcurrentHashMap<Integer, DbusHttpTotalStats> _perSourceStats;
+  private final ConcurrentHashMap<String, DbusHttpTotalStats> _perClientStats;
   private final MBeanServer _mbeanServer;
   private final ObjectName _collectorObjName;
 
@@ -71,8 +72,8 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
     this(id, name, enabled, threadSafe, NO_PEER, mbeanServer);
   }
 
-  private HttpStatisticsCollector(int relayId, String name, boolean enabled, boolean threadSafe,
-                                  String peer, MBeanServer mbeanServer)
+  protected HttpStatisticsCollector(int relayId, String name, boolean enabled, boolean threadSafe,
+                                    String peer, MBeanServer mbeanServer)
   {
     super(threadSafe);
 
@@ -84,10 +85,10 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
     _perSourceNamePrefix = _name + ".source.";
     _perPeerPrefix = _name + ".peer.";
 
-    _totalStats = new DbusHttpTotalStats(_id, _name + ".total", enabled, threadSafe, null);
+    _totalStats = makeDbusHttpTotalStats(_id, _name + ".total", enabled, threadSafe);
 
-    _perSourceStats = new HashMap<Integer, DbusHttpTotalStats>(100);
-    _perClientStats = new HashMap<String, DbusHttpTotalStats>(1000);
+    _perSourceStats = new ConcurrentHashMap<Integer, DbusHttpTotalStats>(100);
+    _perClientStats = new ConcurrentHashMap<String, DbusHttpTotalStats>(1000);
 
     ObjectName jmxName = null;
     try
@@ -164,6 +165,13 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
     }
   }
 
+  /** Creates the stats object for the total, a source or a peer dimension */
+  protected DbusHttpTotalStats makeDbusHttpTotalStats(int ownerId, String dimension, boolean enabled,
+                                                      boolean threadSafe)
+  {
+    return new DbusHttpTotalStats(ownerId, dimension, enabled, threadSafe, null);
+  }
+
   /** Creates a copy */
   public HttpStatisticsCollector createForClientConnection(String client)
   {
@@ -383,6 +391,10 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
 
   private DbusHttpTotalStats getOrAddPerSourceCollector(Integer srcId, Lock writeLock)
   {
+    //fast path: no locking once the source has been seen
+    DbusHttpTotalStats existing = _perSourceStats.get(srcId);
+    if (null != existing) return existing;
+
     Lock myWriteLock = null;
     if (null == writeLock) myWriteLock = acquireWriteLock();
 
@@ -392,7 +404,7 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
       DbusHttpTotalStats data = _perSourceStats.get(srcId);
       if (null == data)
       {
-        data = new DbusHttpTotalStats(_id, _perSourceNamePrefix + srcId, true, isThreadSafe(), null);
+        data = makeDbusHttpTotalStats(_id, _perSourceNamePrefix + srcId, true, isThreadSafe());
         _perSourceStats.put(srcId, data);
 
         if (null != _mbeanServer)
@@ -411,6 +423,10 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
 
   private DbusHttpTotalStats getOrAddPerPeerCollector(String client, Lock writeLock)
   {
+    //fast path: no locking once the peer has been seen
+    DbusHttpTotalStats existing = _perClientStats.get(client);
+    if (null != existing) return existing;
+
     Lock myWriteLock = null;
     if (null == writeLock) myWriteLock = acquireWriteLock();
     try
@@ -418,7 +434,7 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
       DbusHttpTotalStats clientStats = _perClientStats.get(client);
       if (null == clientStats)
       {
-        clientStats = new DbusHttpTotalStats(_id, _perPeerPrefix + client, true, isThreadSafe(), null);
+        clientStats = makeDbusHttpTotalStats(_id, _perPeerPrefix + client, true, isThreadSafe());
         _perClientStats.put(client, clientStats);
 
         if (null != _mbeanServer)
@@ -534,11 +550,21 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
   {
     private final RuntimeConfigBuilder _runtime;
     private final HttpStatisticsCollector _existingStatsCollector;
+    private final boolean _concurrent;
+    private final int _maxPeers;
 
     public StaticConfig(RuntimeConfigBuilder runtime, HttpStatisticsCollector existingStatsCollector)
+    {
+      this(runtime, existingStatsCollector, false, ConcurrentHttpStatisticsCollector.DEFAULT_MAX_PEERS);
+    }
+
+    public StaticConfig(RuntimeConfigBuilder runtime, HttpStatisticsCollector existingStatsCollector,
+                        boolean concurrent, int maxPeers)
     {
       _runtime = runtime;
       _existingStatsCollector = existingStatsCollector;
+      _concurrent = concurrent;
+      _maxPeers = maxPeers;
     }
 
     /** Runtime configuration */
@@ -551,12 +577,38 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
     {
       return _existingStatsCollector;
     }
+
+    /**
+     * A flag if a {@link ConcurrentHttpStatisticsCollector} is to be used. It does not lock on
+     * per-request updates and keeps per-peer stats only for the most recently seen peers.
+     */
+    public boolean isConcurrent()
+    {
+      return _concurrent;
+    }
+
+    /** The max number of peers with per-peer stats in the concurrent collector */
+    public int getMaxPeers()
+    {
+      return _maxPeers;
+    }
+
+    /** Creates a new collector based on this configuration */
+    public HttpStatisticsCollector createStatsCollector(int id, String name, boolean enabled,
+                                                        MBeanServer mbeanServer)
+    {
+      return _concurrent ?
+          new ConcurrentHttpStatisticsCollector(id, name, enabled, _maxPeers, mbeanServer) :
+          new HttpStatisticsCollector(id, name, enabled, true, mbeanServer);
+    }
   }
 
   public static class Config implements ConfigBuilder<StaticConfig>
   {
     private final RuntimeConfigBuilder _runtime;
     private HttpStatisticsCollector _existingStatsCollector = null;
+    private boolean _concurrent = false;
+    private int _maxPeers = ConcurrentHttpStatisticsCollector.DEFAULT_MAX_PEERS;
 
     public Config()
     {
@@ -579,10 +631,34 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
       _existingStatsCollector = existingStatsCollector;
     }
 
+    public boolean isConcurrent()
+    {
+      return _concurrent;
+    }
+
+    public void setConcurrent(boolean concurrent)
+    {
+      _concurrent = concurrent;
+    }
+
+    public int getMaxPeers()
+    {
+      return _maxPeers;
+    }
+
+    public void setMaxPeers(int maxPeers)
+    {
+      _maxPeers = maxPeers;
+    }
+
     @Override
     public StaticConfig build() throws InvalidConfigException
     {
-      return new StaticConfig(_runtime, _existingStatsCollector);
+      if (_maxPeers <= 0)
+      {
+        throw new InvalidConfigException("invalid max peers: " + _maxPeers);
+      }
+      return new StaticConfig(_runtime, _existingStatsCollector, _concurrent, _maxPeers);
     }
 
   }
@@ -593,6 +669,22 @@ public class HttpStatisticsCollector extends ReadWriteSyncedObject
     return _name;
   }
 
+  public int getOwnerId()
+  {
+    return _id;
+  }
+
+  /** The peer this collector has been created for or {@link #NO_PEER} */
+  protected String getCurPeer()
+  {
+    return _curPeer;
+  }
+
+  protected MBeanServer getMBeanServer()
+  {
+    return _mbeanServer;
+  }
+
   @Override
   public void registerInvalidStreamRequest()
   {
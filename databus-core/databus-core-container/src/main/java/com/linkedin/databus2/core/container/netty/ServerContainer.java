@@ -76,7 +76,9 @@ import org.jboss.netty.util.Timer;
 
 import com.linkedin.databus.core.DatabusComponentStatus;
 import com.linkedin.databus.core.monitoring.mbean.AggregatedDbusEventsStatisticsCollector;
+import com.linkedin.databus.core.monitoring.mbean.ConcurrentDbusEventsStatisticsCollector;
 import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
+import com.linkedin.databus.core.monitoring.mbean.LatencyStatisticsCollector;
 import com.linkedin.databus.core.monitoring.mbean.StatsCollectorMergeable;
 import com.linkedin.databus.core.monitoring.mbean.StatsCollectors;
 import com.linkedin.databus.core.util.ConfigApplier;
@@ -126,6 +128,7 @@ public abstract class ServerContainer
   private final Condition _shutdownFinishedCondition = _controlLock.newCondition();
   protected final StatsCollectors<DbusEventsStatisticsCollector> _inBoundStatsCollectors;
   protected final StatsCollectors<DbusEventsStatisticsCollector> _outBoundStatsCollectors;
+  private final LatencyStatisticsCollector _latencyStatsCollector;
   private final DatabusComponentAdmin _componentAdmin;
   private final DatabusComponentStatus _componentStatus;
   protected final GlobalStatsCalc _globalStatsMerger;
@@ -243,6 +246,8 @@ public abstract class ServerContainer
 
     _inBoundStatsCollectors = new StatsCollectors<DbusEventsStatisticsCollector>(inboundEventStatisticsCollector);
     _outBoundStatsCollectors = new StatsCollectors<DbusEventsStatisticsCollector>(outboundEventStatisticsCollector);
+    _latencyStatsCollector = new LatencyStatisticsCollector(getContainerStaticConfig().getId(),
+                                                            getMbeanServer());
 
    _containerRuntimeConfigMgr = new ConfigManager<RuntimeConfig>(
        _containerStaticConfig.getRuntimeConfigPropertyPrefix(), _containerStaticConfig.getRuntime());
@@ -595,6 +600,7 @@ public abstract class ServerContainer
     getContainerStatsCollector().unregisterMBeans();
     getInboundEventStatisticsCollector().unregisterMBeans();
     getOutboundEventStatisticsCollector().unregisterMBeans();
+    _latencyStatsCollector.unregisterMBeans();
     for (DbusEventsStatisticsCollector coll: _inBoundStatsCollectors.getStatsCollectors())
     {
     	coll.unregisterMBeans();
@@ -1415,6 +1421,7 @@ public abstract class ServerContainer
     private final TcpStaticConfig _tcp;
     private final boolean _enableHttpCompression;
     private final String _containerBaseDir;
+    private final boolean _concurrentEventStats;
 
     public StaticConfig(int id, JmxStaticConfig jmxConfig, int httpPort,
                         MBeanServer existingMbeanServer,
@@ -1426,7 +1433,8 @@ public abstract class ServerContainer
                         long writeTimeoutMs,
                         TcpStaticConfig tcp,
                         boolean enableHttpCompression,
-                        String containerBaseDir)
+                        String containerBaseDir,
+                        boolean concurrentEventStats)
     {
       super();
       _id = id;
@@ -1442,6 +1450,7 @@ public abstract class ServerContainer
       _tcp = tcp;
       _enableHttpCompression = enableHttpCompression;
       _containerBaseDir = containerBaseDir;
+      _concurrentEventStats = concurrentEventStats;
     }
     /** container base directory */
     public String getContainerBaseDir() {
@@ -1535,6 +1544,15 @@ public abstract class ServerContainer
       return _enableHttpCompression;
     }
 
+    /**
+     * Whether per-partition event statistics collectors use lock-free striped counters
+     * ({@link ConcurrentDbusEventsStatisticsCollector}) instead of a read/write lock per event
+     */
+    public boolean isConcurrentEventStats()
+    {
+      return _concurrentEventStats;
+    }
+
 	@Override
 	public String toString() {
 		return "StaticConfig [_id=" + _id + ", _jmxConfig=" + _jmxConfig
@@ -1545,6 +1563,7 @@ public abstract class ServerContainer
 				+ _healthcheckPath + ", _readTimeoutMs=" + _readTimeoutMs
 				+ ", _writeTimeoutMs=" + _writeTimeoutMs + ", _tcp=" + _tcp
 				+ ", _enableHttpCompression=" + _enableHttpCompression
+				+ ", _concurrentEventStats=" + _concurrentEventStats
 				+ "]";
 	}
   }
@@ -1566,6 +1585,7 @@ public abstract class ServerContainer
     private final TcpStaticConfigBuilder _tcp;
     private boolean _enableHttpCompression      = false;
     private String _containerBaseDir = ".";
+    private boolean _concurrentEventStats       = false;
 
     public Config()
     {
@@ -1647,7 +1667,8 @@ public abstract class ServerContainer
                               _writeTimeoutMs,
                               _tcp.build(),
                               _enableHttpCompression,
-                              _containerBaseDir);
+                              _containerBaseDir,
+                              _concurrentEventStats);
     }
 
 
@@ -1750,6 +1771,16 @@ public abstract class ServerContainer
     {
       _enableHttpCompression = enableHttpCompression;
     }
+
+    public boolean isConcurrentEventStats()
+    {
+      return _concurrentEventStats;
+    }
+
+    public void setConcurrentEventStats(boolean concurrentEventStats)
+    {
+      _concurrentEventStats = concurrentEventStats;
+    }
   }
 
   public StatsCollectors<DbusEventsStatisticsCollector> getInBoundStatsCollectors()
@@ -1772,6 +1803,28 @@ public abstract class ServerContainer
     return  _outBoundStatsCollectors.getStatsCollector();
   }
 
+  /** Latency histograms of the request paths of this container */
+  public LatencyStatisticsCollector getLatencyStatisticsCollector()
+  {
+    return _latencyStatsCollector;
+  }
+
+  /**
+   * Creates a non-aggregated event statistics collector (e.g. for a physical partition or a
+   * subscription). Depending on {@link StaticConfig#isConcurrentEventStats()}, the collector uses
+   * either lock-free striped counters or the default locked implementation.
+   */
+  public DbusEventsStatisticsCollector createEventStatsCollector(String name, boolean threadSafe)
+  {
+    if (_containerStaticConfig.isConcurrentEventStats())
+    {
+      return new ConcurrentDbusEventsStatisticsCollector(_containerStaticConfig.getId(), name, true,
+                                                         true, getMbeanServer());
+    }
+    return new DbusEventsStatisticsCollector(_containerStaticConfig.getId(), name, true, threadSafe,
+                                             getMbeanServer());
+  }
+
   public abstract void pause();
 
   public abstract void resume();
@@ -30,6 +30,8 @@ import org.jboss.netty.handler.codec.http.HttpMethod;
 
 import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
 import com.linkedin.databus.core.monitoring.mbean.DbusEventsTotalStats;
+import com.linkedin.databus.core.monitoring.mbean.LatencyHistogramStats;
+import com.linkedin.databus.core.monitoring.mbean.LatencyStatisticsCollector;
 import com.linkedin.databus.core.monitoring.mbean.StatsCollectors;
 import com.linkedin.databus2.core.container.monitoring.mbean.ContainerStatisticsCollector;
 import com.linkedin.databus2.core.container.monitoring.mbean.ContainerStats;
@@ -56,6 +58,8 @@ public class ContainerStatsRequestProcessor extends AbstractStatsRequestProcesso
   private final static String INBOUND_EVENTS_SOURCE_PREFIX = "inbound/events/source/";
   private final static String INBOUND_EVENTS_PSOURCES_KEY = "inbound/events/psources";
   protected final static String INBOUND_EVENTS_PSOURCE_PREFIX = "inbound/events/psource/";
+  private final static String LATENCY_KEY = "latency";
+  private final static String LATENCY_PREFIX = "latency/";
 
   private final ServerContainer _container;
   private final ContainerStatisticsCollector _containerStatsCollector;
@@ -157,6 +161,14 @@ public class ContainerStatsRequestProcessor extends AbstractStatsRequestProcesso
     {
       processInboundTrafficTotalStats(request);
     }
+    else if (category.equals(LATENCY_KEY))
+    {
+      processLatencyStatsList(_container.getLatencyStatisticsCollector(), request);
+    }
+    else if (category.startsWith(LATENCY_PREFIX))
+    {
+      processLatencyStats(_container.getLatencyStatisticsCollector(), LATENCY_PREFIX, request);
+    }
     else
     {
       success = false;
@@ -404,4 +416,46 @@ public class ContainerStatsRequestProcessor extends AbstractStatsRequestProcesso
 
   }
 
+  private void processLatencyStatsList(LatencyStatisticsCollector statsCollector,
+                                       DatabusRequest request) throws IOException
+  {
+    if (null == statsCollector) return;
+
+    List<String> namesList = statsCollector.getNames();
+    writeJsonObjectToResponse(namesList, request);
+  }
+
+  private void processLatencyStats(LatencyStatisticsCollector statsCollector,
+                                   String prefix,
+                                   DatabusRequest request)
+                                   throws IOException, RequestProcessingException
+  {
+    if (null == statsCollector) return;
+
+    String category = request.getParams().getProperty(DatabusRequest.PATH_PARAM_NAME);
+    String name = category.substring(prefix.length());
+
+    LatencyHistogramStats stats = statsCollector.getStats(name);
+    if (null == stats)
+    {
+      throw new InvalidRequestParamValueException(request.getName(), prefix, name);
+    }
+
+    writeJsonObjectToResponse(stats, request);
+
+    if (request.getRequestType() == HttpMethod.PUT || request.getRequestType() == HttpMethod.POST)
+    {
+      String enabledStr = request.getParams().getProperty(ENABLED_PARAM);
+      if (null != enabledStr)
+      {
+        stats.setEnabled(Boolean.parseBoolean(enabledStr));
+      }
+
+      if (null != request.getParams().getProperty(RESET_PARAM))
+      {
+        stats.reset();
+      }
+    }
+  }
+
 }
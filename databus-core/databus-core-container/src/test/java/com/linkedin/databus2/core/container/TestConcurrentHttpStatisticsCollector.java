@@ -0,0 +1,231 @@
+package com.linkedin.databus2.core.container;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.Test;
+
+import com.linkedin.databus.core.Checkpoint;
+import com.linkedin.databus2.core.container.monitoring.mbean.ConcurrentHttpStatisticsCollector;
+import com.linkedin.databus2.core.container.monitoring.mbean.DbusHttpTotalStats;
+import com.linkedin.databus2.core.container.monitoring.mbean.HttpStatisticsCollector;
+import com.linkedin.databus2.core.container.request.RegisterResponseEntry;
+
+public class TestConcurrentHttpStatisticsCollector
+{
+
+  private static Checkpoint createCheckpoint(long scn)
+  {
+    Checkpoint cp = new Checkpoint();
+    cp.setWindowScn(scn);
+    return cp;
+  }
+
+  @Test
+  public void testSameResultsAsLockedCollector()
+  {
+    HttpStatisticsCollector locked = new HttpStatisticsCollector(1, "locked", true, true, null);
+    HttpStatisticsCollector concurrent =
+        new ConcurrentHttpStatisticsCollector(1, "concurrent", true, 100, null);
+
+    List<RegisterResponseEntry> sources = new ArrayList<RegisterResponseEntry>();
+    sources.add(new RegisterResponseEntry(1, (short)1, "schema1"));
+    sources.add(new RegisterResponseEntry(2, (short)1, "schema2"));
+    List<Integer> srcIds = Arrays.asList(1, 2);
+
+    for (HttpStatisticsCollector global: new HttpStatisticsCollector[]{locked, concurrent})
+    {
+      for (int c = 0; c < 5; ++c)
+      {
+        HttpStatisticsCollector conn = global.createForClientConnection("client" + c);
+        conn.registerSourcesCall();
+        conn.registerRegisterCall(sources);
+        for (int i = 1; i <= 10; ++i)
+        {
+          conn.registerStreamRequest(createCheckpoint(100 * c + i), srcIds);
+          conn.registerStreamResponse(i);
+        }
+        conn.registerScnNotFoundStreamResponse();
+        global.merge(conn);
+      }
+      global.registerInvalidStreamRequest();
+    }
+
+    Assert.assertEquals(locked.getTotalStats().getNumSourcesCalls(),
+                        concurrent.getTotalStats().getNumSourcesCalls());
+    Assert.assertEquals(locked.getTotalStats().getNumRegisterCalls(),
+                        concurrent.getTotalStats().getNumRegisterCalls());
+    Assert.assertEquals(locked.getTotalStats().getNumStreamCalls(),
+                        concurrent.getTotalStats().getNumStreamCalls());
+    Assert.assertEquals(locked.getTotalStats().getLatencyStreamCalls(),
+                        concurrent.getTotalStats().getLatencyStreamCalls());
+    Assert.assertEquals(locked.getTotalStats().getMaxStreamWinScn(),
+                        concurrent.getTotalStats().getMaxStreamWinScn());
+    Assert.assertEquals(locked.getTotalStats().getMinStreamWinScn(),
+                        concurrent.getTotalStats().getMinStreamWinScn());
+    Assert.assertEquals(locked.getTotalStats().getNumErrStream(),
+                        concurrent.getTotalStats().getNumErrStream());
+    Assert.assertEquals(locked.getTotalStats().getNumScnNotFoundStream(),
+                        concurrent.getTotalStats().getNumScnNotFoundStream());
+    Assert.assertEquals(locked.getTotalStats().getNumPeers(),
+                        concurrent.getTotalStats().getNumPeers());
+
+    Assert.assertEquals(locked.getSources().size(), concurrent.getSources().size());
+    for (Integer srcId: locked.getSources())
+    {
+      Assert.assertEquals(locked.getSourceStats(srcId).getNumRegisterCalls(),
+                          concurrent.getSourceStats(srcId).getNumRegisterCalls());
+      Assert.assertEquals(locked.getSourceStats(srcId).getMaxStreamWinScn(),
+                          concurrent.getSourceStats(srcId).getMaxStreamWinScn());
+    }
+
+    Assert.assertEquals(locked.getPeers().size(), concurrent.getPeers().size());
+    for (String peer: locked.getPeers())
+    {
+      Assert.assertEquals(locked.getPeerStats(peer).getNumStreamCalls(),
+                          concurrent.getPeerStats(peer).getNumStreamCalls());
+      Assert.assertEquals(locked.getPeerStats(peer).getMinStreamWinScn(),
+                          concurrent.getPeerStats(peer).getMinStreamWinScn());
+    }
+
+    concurrent.reset();
+    Assert.assertEquals(0, concurrent.getTotalStats().getNumStreamCalls());
+  }
+
+  @Test
+  public void testPeersBound()
+  {
+    ConcurrentHttpStatisticsCollector global =
+        new ConcurrentHttpStatisticsCollector(1, "bounded", true, 10, null);
+
+    for (int c = 0; c < 50; ++c)
+    {
+      HttpStatisticsCollector conn = global.createForClientConnection("client" + c);
+      conn.registerSourcesCall();
+      global.merge(conn);
+    }
+
+    Assert.assertEquals(10, global.getPeers().size());
+    Assert.assertEquals(50, global.getTotalStats().getNumSourcesCalls());
+    //nothing is lost: the evicted peers are aggregated
+    int sum = global.getEvictedPeersStats().getNumSourcesCalls();
+    for (String peer: global.getPeers())
+    {
+      sum += global.getPeerStats(peer).getNumSourcesCalls();
+    }
+    Assert.assertEquals(50, sum);
+    Assert.assertEquals(40, global.getEvictedPeersStats().getNumPeers());
+  }
+
+  @Test
+  public void testPeersEviction() throws Exception
+  {
+    MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+    ConcurrentHttpStatisticsCollector global =
+        new ConcurrentHttpStatisticsCollector(1, "eviction", true, 3, mbeanServer);
+
+    for (String peer: new String[]{"a", "b", "c"})
+    {
+      global.createForClientConnection(peer).registerSourcesCall();
+    }
+    DbusHttpTotalStats statsA = global.getPeerStats("a");
+    DbusHttpTotalStats statsB = global.getPeerStats("b");
+    Assert.assertTrue(mbeanServer.isRegistered(statsA.generateObjectName()));
+    Assert.assertTrue(mbeanServer.isRegistered(statsB.generateObjectName()));
+
+    //the peer used since it was added gets a second chance
+    global.createForClientConnection("a").registerSourcesCall();
+    global.createForClientConnection("d").registerSourcesCall();
+    Assert.assertEquals(3, global.getPeers().size());
+    Assert.assertNotNull(global.getPeerStats("a"));
+    Assert.assertNull(global.getPeerStats("b"));
+    Assert.assertEquals(1, global.getEvictedPeersStats().getNumSourcesCalls());
+    Assert.assertTrue(mbeanServer.isRegistered(statsA.generateObjectName()));
+    Assert.assertFalse(mbeanServer.isRegistered(statsB.generateObjectName()));
+    Assert.assertTrue(mbeanServer.isRegistered(global.getPeerStats("d").generateObjectName()));
+
+    //a peer that comes back gets a new MBean
+    global.createForClientConnection("b").registerSourcesCall();
+    Assert.assertNotNull(global.getPeerStats("b"));
+    Assert.assertTrue(mbeanServer.isRegistered(global.getPeerStats("b").generateObjectName()));
+    Assert.assertEquals(3, global.getPeers().size());
+  }
+
+  @Test
+  public void testConcurrentUpdates() throws Exception
+  {
+    final ConcurrentHttpStatisticsCollector global =
+        new ConcurrentHttpStatisticsCollector(1, "concurrent", true, 16, null);
+    final int numThreads = 8;
+    final int numIterations = 10000;
+    final List<Integer> srcIds = Arrays.asList(1, 2, 3);
+
+    Thread[] writers = new Thread[numThreads];
+    for (int t = 0; t < numThreads; ++t)
+    {
+      final int threadId = t;
+      writers[t] = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          for (int i = 0; i < numIterations; ++i)
+          {
+            //more peers than the bound to exercise the eviction
+            HttpStatisticsCollector conn = global.createForClientConnection(
+                "client" + (threadId * 7 + i) % 40);
+            conn.registerStreamRequest(createCheckpoint(i + 1), srcIds);
+            conn.registerStreamResponse(1);
+            global.merge(conn);
+          }
+        }
+      });
+      writers[t].start();
+    }
+
+    for (Thread w: writers)
+    {
+      w.join();
+    }
+
+    long expected = (long)numThreads * numIterations;
+    Assert.assertEquals(expected, global.getTotalStats().getNumStreamCalls());
+    Assert.assertEquals(numIterations, global.getTotalStats().getMaxStreamWinScn());
+    Assert.assertEquals(1, global.getTotalStats().getMinStreamWinScn());
+    Assert.assertTrue(global.getPeers().size() <= 16);
+
+    long sum = global.getEvictedPeersStats().getNumStreamCalls();
+    for (String peer: global.getPeers())
+    {
+      sum += global.getPeerStats(peer).getNumStreamCalls();
+    }
+    //updates racing with the eviction of their peer may be lost
+    Assert.assertTrue(sum <= expected);
+    Assert.assertTrue(sum > 0);
+  }
+}
@@ -141,6 +141,7 @@ public class BootstrapCheckpointHandler
   {
     assertBootstrapCheckpoint(ckpt);
     ckpt.endSnapShotSource();
+    ckpt.clearSnapshotRanges();
   }
 
   /**
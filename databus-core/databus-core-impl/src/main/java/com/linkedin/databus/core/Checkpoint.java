@@ -197,6 +197,9 @@ public class Checkpoint
   //     (i)  snapshot_offset field has the avro block number to seek within the avro file in v3 bootstrap
   //     (ii) snapshot_file_record_offset is used to skip records
   // 12. (V3 only) When storage in on Espresso, this refers to storage cluster name
+  // 13. (Parallel snapshot only) The number of rid ranges requested by the client, the rid ranges
+  //     of the snapshot source with the snapshot_offset of each range, and the index of the range
+  //     served by a request (-1 for the checkpoint that tracks all ranges)
 
   private static final String CONSUMPTION_MODE     = "consumption_mode";
   private static final String BOOTSTRAP_START_SCN  = "bootstrap_start_scn";
@@ -211,6 +214,10 @@ public class Checkpoint
   public static final String SNAPSHOT_FILE_RECORD_OFFSET = "bootstrap_snapshot_file_record_offset";
   public static final String STORAGE_CLUSTER_NAME = "storage_cluster_name";
   public static final String BOOTSTRAP_START_TSNSECS = "bootstrap_start_tsnsecs";
+  public static final String SNAPSHOT_RANGES_REQUESTED = "bootstrap_snapshot_ranges_requested";
+  public static final String SNAPSHOT_RANGES = "bootstrap_snapshot_ranges";
+  public static final String SNAPSHOT_RANGE_INDEX = "bootstrap_snapshot_range_index";
+  public static final int UNSET_SNAPSHOT_RANGE_INDEX = -1;
 
   private static final ObjectMapper mapper               = new ObjectMapper();
   private final Map<String, Object> internalData;
@@ -396,6 +403,12 @@ public class Checkpoint
     }
     internalData.put(SNAPSHOT_OFFSET, Long.valueOf(snapshotOffset));
     this.snapShotOffset = snapshotOffset;
+
+    final int rangeIndex = getSnapshotRangeIndex();
+    if (UNSET_SNAPSHOT_RANGE_INDEX != rangeIndex)
+    {
+      setSnapshotRangeOffset(rangeIndex, snapshotOffset);
+    }
   }
 
   protected void clearSnapshotOffset()
@@ -504,6 +517,132 @@ public class Checkpoint
     return number2Long((Number)internalData.get(SNAPSHOT_OFFSET), FULLY_CONSUMED_WINDOW_OFFSET);
   }
 
+  public void setSnapshotRangesRequested(int rangesNum)
+  {
+    internalData.put(SNAPSHOT_RANGES_REQUESTED, rangesNum);
+  }
+
+  /** The number of rid ranges the client wants to snapshot in parallel; 0 or 1 means sequentially */
+  public int getSnapshotRangesRequested()
+  {
+    return number2Integer((Number)internalData.get(SNAPSHOT_RANGES_REQUESTED), 0);
+  }
+
+  /**
+   * Splits the snapshot of the current source into rid ranges. Range i covers the rids
+   * (endRids[i-1], endRids[i]] (range 0 starts after rid 0) and starts at the beginning.
+   */
+  public void initSnapshotRanges(long[] endRids)
+  {
+    long[] ranges = new long[2 * endRids.length];
+    for (int i = 0; i < endRids.length; ++i)
+    {
+      ranges[2 * i] = (0 == i) ? 0 : endRids[i - 1];
+      ranges[2 * i + 1] = endRids[i];
+    }
+    putSnapshotRanges(ranges);
+    setSnapshotRangeIndex(UNSET_SNAPSHOT_RANGE_INDEX);
+  }
+
+  public void clearSnapshotRanges()
+  {
+    internalData.remove(SNAPSHOT_RANGES_REQUESTED);
+    internalData.remove(SNAPSHOT_RANGES);
+    internalData.remove(SNAPSHOT_RANGE_INDEX);
+  }
+
+  /** @return the number of rid ranges of the snapshot source; 0 if it is snapshot sequentially */
+  public int getSnapshotRangesNum()
+  {
+    return getSnapshotRanges().length / 2;
+  }
+
+  /** @return the last rid (inclusive) of the specified range */
+  public long getSnapshotRangeEndRid(int rangeIndex)
+  {
+    return getSnapshotRanges()[2 * rangeIndex + 1];
+  }
+
+  /** @return the last rid consumed from the specified range or -1 if the range is completed */
+  public long getSnapshotRangeOffset(int rangeIndex)
+  {
+    return getSnapshotRanges()[2 * rangeIndex];
+  }
+
+  public void setSnapshotRangeOffset(int rangeIndex, long snapshotOffset)
+  {
+    long[] ranges = getSnapshotRanges();
+    ranges[2 * rangeIndex] = snapshotOffset;
+    putSnapshotRanges(ranges);
+  }
+
+  public boolean isSnapshotRangeCompleted(int rangeIndex)
+  {
+    return FULLY_CONSUMED_WINDOW_OFFSET.longValue() == getSnapshotRangeOffset(rangeIndex);
+  }
+
+  public boolean areSnapshotRangesCompleted()
+  {
+    for (int i = 0; i < getSnapshotRangesNum(); ++i)
+    {
+      if (!isSnapshotRangeCompleted(i)) return false;
+    }
+    return true;
+  }
+
+  /** Sets the index of the rid range served by the request for this checkpoint */
+  public void setSnapshotRangeIndex(int rangeIndex)
+  {
+    internalData.put(SNAPSHOT_RANGE_INDEX, rangeIndex);
+  }
+
+  public int getSnapshotRangeIndex()
+  {
+    return number2Integer((Number)internalData.get(SNAPSHOT_RANGE_INDEX), UNSET_SNAPSHOT_RANGE_INDEX);
+  }
+
+  /**
+   * Creates the checkpoint for a request for a single rid range: a copy of this checkpoint whose
+   * snapshot_offset is the offset of the range.
+   */
+  public Checkpoint createSnapshotRangeCheckpoint(int rangeIndex)
+  {
+    Checkpoint rangeCkpt = clone();
+    rangeCkpt.setSnapshotRangeIndex(rangeIndex);
+    rangeCkpt.setSnapshotOffset(getSnapshotRangeOffset(rangeIndex));
+    return rangeCkpt;
+  }
+
+  /** The ranges are stored as a string of "offset:endRid" pairs so that they are immutable */
+  private long[] getSnapshotRanges()
+  {
+    String rangesStr = (String)internalData.get(SNAPSHOT_RANGES);
+    if (null == rangesStr || rangesStr.isEmpty())
+    {
+      return new long[0];
+    }
+    String[] rangeStrs = rangesStr.split(",");
+    long[] ranges = new long[2 * rangeStrs.length];
+    for (int i = 0; i < rangeStrs.length; ++i)
+    {
+      int sep = rangeStrs[i].indexOf(':');
+      ranges[2 * i] = Long.parseLong(rangeStrs[i].substring(0, sep));
+      ranges[2 * i + 1] = Long.parseLong(rangeStrs[i].substring(sep + 1));
+    }
+    return ranges;
+  }
+
+  private void putSnapshotRanges(long[] ranges)
+  {
+    StringBuilder rangesStr = new StringBuilder();
+    for (int i = 0; i < ranges.length; i += 2)
+    {
+      if (i > 0) rangesStr.append(',');
+      rangesStr.append(ranges[i]).append(':').append(ranges[i + 1]);
+    }
+    internalData.put(SNAPSHOT_RANGES, rangesStr.toString());
+  }
+
   public String getCatchupSource()
   {
     return (String) internalData.get(CATCHUP_SOURCE);
@@ -671,6 +810,11 @@ public class Checkpoint
    */
   protected void copyBootstrapSnapshotCheckpoint(Checkpoint ckpt)
   {
+    // the server splits the snapshot into rid ranges if the client requested a parallel snapshot
+    if (0 == getSnapshotRangesNum() && 0 < ckpt.getSnapshotRangesNum())
+    {
+      internalData.put(SNAPSHOT_RANGES, ckpt.internalData.get(SNAPSHOT_RANGES));
+    }
     setSnapshotOffset(ckpt.getSnapshotOffset());
     setSnapshotSource(ckpt.getBootstrapSnapshotSourceIndex(), ckpt.getSnapshotSource());
     //setBootstrapSnapshotSourceIndex(ckpt.getBootstrapSnapshotSourceIndex());
@@ -858,6 +1002,7 @@ public class Checkpoint
   {
 	  clearBootstrapSinceScn();
 	  clearSnapshotOffset();
+	  clearSnapshotRanges();
 	  setWindowOffset(FULLY_CONSUMED_WINDOW_OFFSET);
 	  clearBootstrapStartScn();
 	  clearBootstrapTargetScn();
@@ -877,6 +1022,7 @@ public class Checkpoint
   protected void resetForServerChange()
   {
     setConsumptionMode(DbusClientMode.BOOTSTRAP_SNAPSHOT);
+    clearSnapshotRanges();
     setSnapshotOffset(0L);
     setWindowOffset(FULLY_CONSUMED_WINDOW_OFFSET);
     setWindowScn(getBootstrapSinceScn());
@@ -0,0 +1,42 @@
+package com.linkedin.databus.core;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A {@link ReadableByteChannel} whose data arrives in discrete chunks which can be handed out
+ * without copying. {@link DbusEventBuffer#readEvents(ReadableByteChannel)} validates events
+ * directly in such chunks and copies each complete event once into the buffer; only events that
+ * span chunk boundaries go through the staging buffer.
+ */
+public interface ChunkedReadableByteChannel extends ReadableByteChannel
+{
+  /**
+   * Removes the next chunk of data from the channel. Any bytes of the current chunk not yet consumed
+   * by {@link #read(ByteBuffer)} are returned first. The method blocks until a chunk is available.
+   *
+   * @return a buffer whose remaining bytes are the chunk data or null if the end of the stream has
+   *         been reached. The caller owns the returned buffer.
+   */
+  ByteBuffer readChunk() throws IOException;
+}
@@ -0,0 +1,229 @@
+package com.linkedin.databus.core;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedHashMap;
+
+import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
+
+/**
+ * Accumulates consecutive windows of events for compacted streaming. Only the last event for every
+ * (source id, key) pair is kept; the events are streamed in the order of their last update with
+ * the sequence number of the last window, followed by the end-of-period marker of the last window.
+ * To the client, the compacted windows look like a single window with the SCN of the last one.
+ *
+ * <p>The scanned events are counted in the stats only when the compacted windows are streamed, so
+ * that windows which are dropped, e.g. because they do not fit and are streamed again without
+ * compaction, are not counted twice.
+ */
+class CompactionWindow
+{
+  private final LinkedHashMap<Object, DbusEventInternalWritable> _events;
+  /** The stats of the scanned events which have not been streamed yet; null if there are no stats */
+  private final DeferredDbusEventsStatisticsCollector _scannedStats;
+  private DbusEventInternalWritable _lastEop;
+  private int _numWindows;
+  private int _size;
+
+  /**
+   * @param  statsCollector   the collector the scanned events are counted in once they are
+   *                          streamed; can be null
+   */
+  CompactionWindow(DbusEventsStatisticsCollector statsCollector)
+  {
+    _events = new LinkedHashMap<Object, DbusEventInternalWritable>();
+    _scannedStats = null == statsCollector ? null :
+        new DeferredDbusEventsStatisticsCollector(statsCollector);
+    clear();
+  }
+
+  /** Records a scanned event, whether or not it is kept in the compacted windows */
+  public void registerScannedEvent(DbusEventInternalWritable e)
+  {
+    if (null != _scannedStats)
+    {
+      _scannedStats.registerDataEvent(e);
+    }
+  }
+
+  /** Adds a copy of a data or a control event (other than the end-of-period marker) */
+  public void addEvent(DbusEventInternalWritable e)
+  {
+    Object key = compactionKey(e);
+    DbusEventInternalWritable prev = _events.remove(key);
+    if (null != prev)
+    {
+      _size -= prev.size();
+    }
+    _events.put(key, e.createCopy());
+    _size += e.size();
+  }
+
+  /** Ends the current window with a copy of its end-of-period marker */
+  public void endWindow(DbusEventInternalWritable eop)
+  {
+    if (null != _lastEop)
+    {
+      _size -= _lastEop.size();
+    }
+    _lastEop = eop.createCopy();
+    _size += eop.size();
+    ++_numWindows;
+  }
+
+  public int getNumWindows()
+  {
+    return _numWindows;
+  }
+
+  public int getNumEvents()
+  {
+    return _events.size();
+  }
+
+  /** The number of bytes to stream for the complete windows */
+  public int getSize()
+  {
+    return _size;
+  }
+
+  public void clear()
+  {
+    _events.clear();
+    _lastEop = null;
+    _numWindows = 0;
+    _size = 0;
+    if (null != _scannedStats)
+    {
+      _scannedStats.discard();
+    }
+  }
+
+  /**
+   * Streams the compacted events and the end-of-period marker of the last window and clears the
+   * compaction window. The checkpoint is moved to the end of the last window only if all events
+   * have been written; otherwise, it stays at the window boundary where the compaction started.
+   * @return the number of bytes written or -1 if the channel did not accept all events
+   */
+  public int streamTo(WritableByteChannel writeChannel,
+                      Encoding encoding,
+                      Checkpoint checkPoint,
+                      DbusEventsStatisticsCollector statsCollector,
+                      StreamEventsResult result)
+  {
+    if (null == _lastEop)
+    {
+      return 0;
+    }
+
+    long windowScn = _lastEop.sequence();
+    int bytesWritten = 0;
+    try
+    {
+      if (null != _scannedStats)
+      {
+        _scannedStats.flush();
+      }
+      for (DbusEventInternalWritable e: _events.values())
+      {
+        if (e.sequence() != windowScn)
+        {
+          e.setSequence(windowScn);
+          e.applyCrc();
+        }
+        if (!streamEvent(e, writeChannel, encoding, statsCollector, result))
+        {
+          return -1;
+        }
+        bytesWritten += e.size();
+      }
+      if (!streamEvent(_lastEop, writeChannel, encoding, statsCollector, result))
+      {
+        return -1;
+      }
+      bytesWritten += _lastEop.size();
+
+      // the compacted windows are complete; only now can the checkpoint move past them
+      for (DbusEventInternalWritable e: _events.values())
+      {
+        checkPoint.onEvent(e);
+      }
+      checkPoint.onEvent(_lastEop);
+    }
+    finally
+    {
+      clear();
+    }
+    return bytesWritten;
+  }
+
+  private static boolean streamEvent(DbusEventInternalWritable e,
+                                     WritableByteChannel writeChannel,
+                                     Encoding encoding,
+                                     DbusEventsStatisticsCollector statsCollector,
+                                     StreamEventsResult result)
+  {
+    if (0 >= e.writeTo(writeChannel, encoding))
+    {
+      return false;
+    }
+    if (null != statsCollector)
+      statsCollector.registerDataEventFiltered(e);
+    result.incNumEventsStreamed(1);
+    return true;
+  }
+
+  private static Object compactionKey(DbusEventInternalWritable e)
+  {
+    DbusEventKey key = e.isControlMessage() ? null : e.getDbusEventKey();
+    // events without a key are never compacted
+    return null == key ? new Object() : new SourceKey(e.getSourceId(), key);
+  }
+
+  private static class SourceKey
+  {
+    private final int _srcId;
+    private final DbusEventKey _key;
+
+    SourceKey(int srcId, DbusEventKey key)
+    {
+      _srcId = srcId;
+      _key = key;
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return 31 * _srcId + _key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (!(obj instanceof SourceKey))
+      {
+        return false;
+      }
+      SourceKey other = (SourceKey)obj;
+      return _srcId == other._srcId && _key.equals(other._key);
+    }
+  }
+}
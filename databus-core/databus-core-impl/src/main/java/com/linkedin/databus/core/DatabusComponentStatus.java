@@ -245,6 +245,25 @@ public class DatabusComponentStatus
     return _retriesCounter.backoffAndSleep();
   }
 
+  /**
+   * Same as {@link #retryOnError(String)} but does not sleep. Used by components which cannot
+   * block their thread and wait for the returned time some other way.
+   * @return the time to wait before the retry in ms
+   */
+  public long retryOnErrorLater(String message)
+  {
+    setStatus(Status.ERROR_RETRY, message);
+    _retriesCounter.backoff();
+    return _retriesCounter.getCurrentSleepMs();
+  }
+
+  /** Same as {@link #retryOnLastError()} but does not sleep; returns the time to wait in ms */
+  public long retryOnLastErrorLater()
+  {
+    _retriesCounter.backoff();
+    return _retriesCounter.getCurrentSleepMs();
+  }
+
   public void suspendOnError(Throwable error)
   {
     setStatus(Status.SUSPENDED_ON_ERROR, null != error ? error.toString() : "unknown error");
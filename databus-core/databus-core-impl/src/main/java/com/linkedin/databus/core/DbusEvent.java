@@ -166,6 +166,17 @@ public abstract class DbusEvent
    */
   public abstract ByteBuffer value();
 
+  /**
+   * Returns true if the bytes returned by {@link #value()} are compressed with
+   * {@link DbusEventPayloadCompressor}; use
+   * {@link DbusEventPayloadCompressor#getUncompressedValue(DbusEvent, DbusEventPayloadDictionaries)}
+   * to get the original payload.
+   */
+  public boolean isPayloadCompressed()
+  {
+    return false;
+  }
+
   /**
    * Returns a copy of the serialized event with the (implicitly) specified byte order.
    * TODO Deprecate this when getPayloadPart() is fully implemented.
@@ -25,7 +25,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
-import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
@@ -40,7 +39,12 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -48,6 +52,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Level;
@@ -63,12 +68,15 @@ import com.linkedin.databus.core.util.BufferPositionParser;
 import com.linkedin.databus.core.util.ByteSizeConstants;
 import com.linkedin.databus.core.util.ConfigBuilder;
 import com.linkedin.databus.core.util.InvalidConfigException;
+import com.linkedin.databus.core.util.NamedThreadFactory;
 import com.linkedin.databus.core.util.Range;
 import com.linkedin.databus.core.util.RangeBasedReaderWriterLock;
 import com.linkedin.databus.core.util.RangeBasedReaderWriterLock.LockToken;
 import com.linkedin.databus.core.util.StringUtils;
+import com.linkedin.databus.core.util.WeakRefRegistry;
 import com.linkedin.databus2.core.AssertLevel;
 import com.linkedin.databus2.core.DatabusException;
+import com.linkedin.databus2.core.filter.DbusBlockFilter;
 import sun.nio.ch.DirectBuffer;
 
 // TODO Decide if we really want to provide a writable iterator to classes outside of DbusEventBuffer.
@@ -88,6 +96,21 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
   private final long _bufferRemoveWaitPeriodSec; // wait period before buffer is removed (if refCount is 0)
   private final double _nanoSecsInMSec = 1000000.0;
   private final DbusEventFactory _eventFactory;
+  /** if checksums of the ByteBuffer segments are saved and used to validate restored buffers */
+  private final boolean _segmentChecksumsEnabled;
+  /** The daemon pool shared by all buffers to compute segment checksums; created on first use */
+  private static ExecutorService _checksumExecutor;
+  /** compresses the payloads of appended V2 data events; null if compression is disabled */
+  private volatile DbusEventPayloadCompressor _payloadCompressor;
+  /** the dictionaries to compress payloads with and to decompress them for readers that cannot
+   *  handle compressed payloads */
+  private DbusEventPayloadDictionaries _payloadDictionaries = new DbusEventPayloadDictionaries();
+  /** verifies the CRCs of large batches in readEvents() in parallel; null for serial verification */
+  private volatile ParallelEventValidator _readEventsValidator;
+  /** if readEvents() verifies the body CRCs of the events; the header CRCs are always verified */
+  private volatile boolean _readEventsVerifyBodyCrc = true;
+  /** per-block summaries of the events used to skip blocks in streamEvents(); null if disabled */
+  private volatile EventBlockSummaryIndex _blockSummaryIndex;
 
   private byte _eventSerializationVersion = -1;  // TODO:  nuke this; use _eventFactory.getVersion() instead
   private boolean _scnRegress = false;
@@ -155,6 +178,12 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     protected final BufferPosition _iteratorTail;
     protected DbusEventInternalWritable _iteratingEvent;  // TODO Make this readable
     protected String _identifier;
+    /** The registration in {@link DbusEventBuffer#_busyIteratorPool}; null if not tracked */
+    protected WeakRefRegistry.Slot<BaseEventIterator> _trackingSlot;
+    /** true while the iterator is in the pool of released iterators; guarded by the iterator */
+    protected boolean _pooled;
+    /** Incremented every time the iterator is handed out again from the pool of released iterators */
+    protected int _generation;
 
     public BaseEventIterator(long head, long tail, String iteratorName)
     {
@@ -260,6 +289,16 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       untrackIterator(this);
     }
 
+    /**
+     * The owner token of the iterator. It changes every time the iterator is reused, so a release
+     * with an older token through {@link DbusEventBuffer#releaseIterator(BaseEventIterator, int)}
+     * does not affect the current owner.
+     */
+    public synchronized int getGeneration()
+    {
+      return _generation;
+    }
+
     /**
      * Copy local state into the passed in iterator. If a new iterator is allocated, it is
      * caller's responsibility to release it.
@@ -479,6 +518,17 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       return destinationIterator;
     }
 
+    /**
+     * Moves the iterator to a later event without reading the events in between. The caller has to
+     * make sure that there is an event at the position within the iterator range.
+     */
+    protected void skipTo(long position)
+    {
+      assert position >= _currentPosition.getPosition() && position <= _iteratorTail.getPosition()
+          : "position:" + position + "; iterator:" + this;
+      _currentPosition.setPosition(position);
+    }
+
     //INTERNAL STATE MANAGEMENT
 
     /**
@@ -906,8 +956,8 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
         long newTs = -1;
         if (0 <= newHead && newHead < _tail.getPosition())
         {
-          DbusEvent e = currentEvent();
-          assert e.isValid();
+          DbusEventInternalReadable e = currentEvent();
+          assert e.isValid(true, _readEventsVerifyBodyCrc);
           newScn = e.sequence();
           newTs = e.timestampInNanos();
         }
@@ -960,6 +1010,8 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
   }
 
   private static int MIN_INITIAL_ITERATORS = 30;
+  /** The maximum number of released internal iterators kept for reuse */
+  private static final int MAX_FREE_INTERNAL_ITERATORS = 64;
 
 
   // Locks and state around locks
@@ -1046,9 +1098,14 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
 
   /** Allocated memory for the buffer */
   private final long _allocatedSize;
+  /** The limits of the ByteBuffers while their memory is released; null if the memory is allocated */
+  private int[] _releasedLimits;
 
   private final HashSet<InternalDatabusEventsListener> _internalListeners =
       new HashSet<InternalDatabusEventsListener>();
+  /** Notified together with the _notEmpty and _notFull conditions */
+  private final CopyOnWriteArrayList<DbusEventBufferStateListener> _stateListeners =
+      new CopyOnWriteArrayList<DbusEventBufferStateListener>();
   private final AllocationPolicy _allocationPolicy;
   private final QueuePolicy _queueingPolicy;
   private File _mmapSessionDirectory;
@@ -1058,8 +1115,14 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
   // Cached objects to prevent frequent 'new'-s
 
   // Pool of iterators
-  protected final Set<WeakReference<BaseEventIterator>> _busyIteratorPool =
-          new HashSet<WeakReference<BaseEventIterator>>(MIN_INITIAL_ITERATORS);
+  protected final WeakRefRegistry<BaseEventIterator> _busyIteratorPool =
+          new WeakRefRegistry<BaseEventIterator>(MIN_INITIAL_ITERATORS);
+  /** if false, the iterators are not registered in _busyIteratorPool */
+  private boolean _trackIterators = true;
+  /** Released {@link InternalEventIterator}s which can be reused */
+  private final ConcurrentLinkedQueue<InternalEventIterator> _freeInternalIterators =
+      new ConcurrentLinkedQueue<InternalEventIterator>();
+  private final AtomicInteger _freeInternalIteratorsNum = new AtomicInteger(0);
 
   /** Should the buffer check asserts and how strict */
   private final AssertLevel _assertLevel;
@@ -1101,6 +1164,73 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
 	  return _physicalPartition;
   }
 
+  /**
+   * @return the compressor for the payloads of appended data events or null if the compression is
+   *         disabled. Producers can use it to add compression dictionaries for their sources.
+   */
+  public DbusEventPayloadCompressor getPayloadCompressor()
+  {
+    return _payloadCompressor;
+  }
+
+  /**
+   * Enables the compression of the payloads of appended V2 data events (or disables it if the
+   * compressor is null). The compressor should use the {@link #getPayloadDictionaries() buffer
+   * dictionaries}, so that the buffer can decompress the payloads for readers that cannot handle
+   * compressed payloads.
+   */
+  public void setPayloadCompressor(DbusEventPayloadCompressor payloadCompressor)
+  {
+    if (null != payloadCompressor && _eventFactory.getVersion() < DbusEventFactory.DBUS_EVENT_V2)
+    {
+      throw new DatabusRuntimeException("payload compression requires V2 events");
+    }
+    _payloadCompressor = payloadCompressor;
+  }
+
+  /** @return the dictionaries to compress and decompress the payloads of the events with */
+  public DbusEventPayloadDictionaries getPayloadDictionaries()
+  {
+    return _payloadDictionaries;
+  }
+
+  /**
+   * Enables the per-block summaries of the events which allow streamEvents() to skip the blocks
+   * that cannot match the request filter. Requires the SCN index.
+   *
+   * @param numBuckets    the numbers of buckets used by mod-partitioned clients for which to track
+   *                      the key buckets in each block; null disables the summaries
+   */
+  public void setBlockSummaryNumBuckets(long[] numBuckets)
+  {
+    if (null != numBuckets && !_scnIndex.isEnabled())
+    {
+      throw new DatabusRuntimeException("block summaries require the scn index");
+    }
+    _blockSummaryIndex = null != numBuckets ? new EventBlockSummaryIndex(_scnIndex, numBuckets) : null;
+  }
+
+  /**
+   * Configures the verification of the events received by readEvents().
+   *
+   * @param validationThreads   the maximum number of tasks verifying the CRCs of a large batch of
+   *                            events in parallel on the shared validation pool; 0 means serial
+   *                            verification
+   * @param verifyBodyCrc       if false, only the header CRCs are verified; meant for events from
+   *                            trusted sources
+   */
+  public void setReadEventsValidation(int validationThreads, boolean verifyBodyCrc)
+  {
+    _readEventsValidator = validationThreads > 0 && verifyBodyCrc ?
+        new ParallelEventValidator(validationThreads) : null;
+    _readEventsVerifyBodyCrc = verifyBodyCrc;
+  }
+
+  public DbusEventFactory getEventFactory()
+  {
+    return _eventFactory;
+  }
+
   public synchronized void increaseRefCounter() {
     _refCount ++;
     _tsRefCounterUpdate = System.currentTimeMillis();
@@ -1134,6 +1264,92 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     }
   }
 
+  /**
+   * Frees the memory of an empty buffer which is not going to be written for a while, e.g. a client
+   * bootstrap buffer between bootstraps. The positions of the buffer and of its iterators are kept,
+   * so readers can continue after {@link #allocateMemory()}, which must be called before any events
+   * are written again. Mmapped buffers are not released.
+   * @return true if the memory has been released (now or before)
+   */
+  public boolean releaseMemory()
+  {
+    acquireWriteLock();
+    try
+    {
+      if (null != _releasedLimits)
+      {
+        return true;
+      }
+      if (!empty() || AllocationPolicy.MMAPPED_MEMORY == _allocationPolicy)
+      {
+        return false;
+      }
+
+      int[] limits = new int[_buffers.length];
+      for (int i = 0; i < _buffers.length; ++i)
+      {
+        ByteBuffer buf = _buffers[i];
+        limits[i] = buf.limit();
+        _buffers[i] = ByteBuffer.allocate(0).order(buf.order());
+        if (buf.isDirect())
+        {
+          ((DirectBuffer)buf).cleaner().clean();
+        }
+      }
+      _releasedLimits = limits;
+      _log.info("released " + _allocatedSize + " bytes of event buffer memory");
+      return true;
+    }
+    finally
+    {
+      releaseWriteLock();
+    }
+  }
+
+  /** Allocates again the memory freed by {@link #releaseMemory()}; a no-op if it is allocated */
+  public void allocateMemory()
+  {
+    acquireWriteLock();
+    try
+    {
+      if (null == _releasedLimits)
+      {
+        return;
+      }
+
+      long allocatedSize = 0;
+      for (int i = 0; i < _buffers.length; ++i)
+      {
+        int nextSize = (int) Math.min(_maxBufferSize, (_allocatedSize - allocatedSize));
+        ByteBuffer buffer = allocateByteBuffer(nextSize, _eventFactory.getByteOrder(), _allocationPolicy,
+                                               false, _mmapSessionDirectory, null);
+        buffer.limit(_releasedLimits[i]);
+        _buffers[i] = buffer;
+        allocatedSize += nextSize;
+      }
+      _releasedLimits = null;
+      _log.info("allocated " + allocatedSize + " bytes of event buffer memory");
+    }
+    finally
+    {
+      releaseWriteLock();
+    }
+  }
+
+  /** Whether the memory of the buffer has been freed by {@link #releaseMemory()} */
+  public boolean isMemoryReleased()
+  {
+    acquireWriteLock();
+    try
+    {
+      return null != _releasedLimits;
+    }
+    finally
+    {
+      releaseWriteLock();
+    }
+  }
+
   /**
    * Clears the buffer. Should be only called by consumers who are using the buffer
    * like a "producer - consumer" queue.
@@ -1179,6 +1395,8 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
    */
   private void lockFreeClear() {
     _scnIndex.clear();
+    final EventBlockSummaryIndex blockSummaryIndex = _blockSummaryIndex;
+    if (null != blockSummaryIndex) blockSummaryIndex.clear();
     _head.setPosition(0L);
     _tail.setPosition(0L);
     _currentWritePosition.setPosition(0L);
@@ -1194,6 +1412,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       buf.clear();
     }
     _notFull.signalAll();
+    notifySpaceFreed();
     //		notifyIterators(head, tail);
   }
 
@@ -1215,7 +1434,17 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
          config.getAllocationPolicy(), config.getMmapDirectory(),
          config.getQueuePolicy(), config.getTrace(), null, config.getAssertLevel(),
          config.getBufferRemoveWaitPeriod(), config.getRestoreMMappedBuffers(),
-         config.getRestoreMMappedBuffersValidateEvents(), config.isEnableScnIndex(), new DbusEventV1Factory());
+         config.getRestoreMMappedBuffersValidateEvents(),
+         config.getRestoreMMappedBuffersValidateChecksums(), config.isEnableScnIndex(),
+         new DbusEventV1Factory());
+    _trackIterators = config.isTrackIterators();
+    _payloadDictionaries = config.getPayloadDictionaries();
+    setReadEventsValidation(config.getReadEventsValidationThreads(),
+                            config.getReadEventsValidateBodyCrc());
+    if (config.isEnableBlockSummaryIndex())
+    {
+      setBlockSummaryNumBuckets(config.getBlockSummaryNumBuckets());
+    }
   }
 
   public DbusEventBuffer(StaticConfig config, PhysicalPartition pPartition, DbusEventFactory eventFactory)
@@ -1225,7 +1454,23 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
          config.getAllocationPolicy(), config.getMmapDirectory(),
          config.getQueuePolicy(), config.getTrace(), pPartition, config.getAssertLevel(),
          config.getBufferRemoveWaitPeriod(), config.getRestoreMMappedBuffers(),
-         config.getRestoreMMappedBuffersValidateEvents(), config.isEnableScnIndex(), eventFactory);
+         config.getRestoreMMappedBuffersValidateEvents(),
+         config.getRestoreMMappedBuffersValidateChecksums(), config.isEnableScnIndex(),
+         eventFactory);
+    _trackIterators = config.isTrackIterators();
+    _payloadDictionaries = config.getPayloadDictionaries();
+    setReadEventsValidation(config.getReadEventsValidationThreads(),
+                            config.getReadEventsValidateBodyCrc());
+    if (config.isEnableBlockSummaryIndex())
+    {
+      setBlockSummaryNumBuckets(config.getBlockSummaryNumBuckets());
+    }
+    if (config.getPayloadCompressionThreshold() > 0 &&
+        eventFactory.getVersion() == DbusEventFactory.DBUS_EVENT_V2)
+    {
+      _payloadCompressor = new DbusEventPayloadCompressor(config.getPayloadCompressionThreshold(),
+                                                          _payloadDictionaries);
+    }
   }
 
   /**
@@ -1239,6 +1484,28 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
                          boolean restoreBuffers, boolean validateEventesInRestoredBuffers,
                          boolean enableScnIndex, DbusEventFactory eventFactory)
   {
+    this(maxEventBufferSize, maxIndividualBufferSize, maxIndexSize, initReadBufferSize, maxEventSize,
+         allocationPolicy, mmapDirectory, queuePolicy, traceOption, physicalPartition, assertLevel,
+         bufRemovalWaitPeriod, restoreBuffers, validateEventesInRestoredBuffers, false,
+         enableScnIndex, eventFactory);
+  }
+
+  /**
+   * Fine-grained constructor.
+   * @param validateChecksumsInRestoredBuffers  if true, the checksums of the ByteBuffer segments
+   *        are saved with the meta info; restored buffers are validated against these checksums
+   *        and only the events after the last SCN index entry are scanned
+   */
+  public DbusEventBuffer(long maxEventBufferSize, int maxIndividualBufferSize, int maxIndexSize,
+                         int initReadBufferSize, int maxEventSize,
+                         AllocationPolicy allocationPolicy, File mmapDirectory,
+                         QueuePolicy queuePolicy, RelayEventTraceOption traceOption,
+                         PhysicalPartition physicalPartition, AssertLevel assertLevel, long bufRemovalWaitPeriod,
+                         boolean restoreBuffers, boolean validateEventesInRestoredBuffers,
+                         boolean validateChecksumsInRestoredBuffers,
+                         boolean enableScnIndex, DbusEventFactory eventFactory)
+  {
+    _segmentChecksumsEnabled = validateChecksumsInRestoredBuffers;
     //TODO replace all occurrences of LOG with _log so we get partition info
     _log = (null == physicalPartition) ? LOG :
            Logger.getLogger(MODULE + "." + physicalPartition.toSimpleString());
@@ -1387,8 +1654,13 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     if(mi != null && mi.isValid())
       try {
         initBuffersWithMetaInfo(mi); // init some of the DbusEvent Buffer fields from MetaFile if available
-        if(validateEventesInRestoredBuffers)
-          validateEventsInBuffer();
+        if(validateEventesInRestoredBuffers) {
+          int [] checksummedExtents = _segmentChecksumsEnabled ? validateSegmentChecksums(mi) : null;
+          if(null != checksummedExtents)
+            validateEventsAfterChecksummedData(checksummedExtents);
+          else
+            validateEventsInBuffer();
+        }
       } catch (DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException e) {
         throw new RuntimeException(e);
       }
@@ -1493,6 +1765,206 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     }
   }
 
+  /**
+   * Validates the restored ByteBuffers against the checksums saved in the meta info. Only the
+   * prefix of every ByteBuffer which held events at the time of the save is checksummed (see
+   * {@link #getWrittenExtents()}). The segments are validated in parallel.
+   * @return the checksummed extents of the ByteBuffers or null if there are no checksums in the
+   *         meta info
+   * @throws DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException if a checksum does not match
+   */
+  private int[] validateSegmentChecksums(DbusEventBufferMetaInfo mi)
+      throws DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException {
+    DbusEventBufferMetaInfo.SegmentChecksum [] checksums = mi.getSegmentChecksums();
+    if(checksums == null) {
+      _log.info("no segment checksums in " + mi + "; will validate all events");
+      return null;
+    }
+    if(checksums.length != _buffers.length) {
+      throw new DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException(mi,
+            "number of segment checksums " + checksums.length + " doesn't match number of buffers " + _buffers.length);
+    }
+
+    long start = System.currentTimeMillis();
+    int [] highWaterMarks = new int[checksums.length];
+    for(int i = 0; i < checksums.length; i++) {
+      highWaterMarks[i] = checksums[i].getHighWaterMark();
+      if(highWaterMarks[i] < 0 || highWaterMarks[i] > _buffers[i].limit()) {
+        throw new DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException(mi,
+              "invalid high-water mark for buffer " + i + ": " + highWaterMarks[i] + "; limit=" + _buffers[i].limit());
+      }
+    }
+    long [] actual = computeSegmentChecksums(_buffers, highWaterMarks);
+    for(int i = 0; i < checksums.length; i++) {
+      if(actual[i] != checksums[i].getChecksum()) {
+        throw new DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException(mi,
+              "Buffer validation failed. checksum mismatch for buffer " + i + ": expected=" +
+              checksums[i].getChecksum() + "; actual=" + actual[i]);
+      }
+    }
+    _log.info("validated checksums of " + checksums.length + " buffers in " +
+              (System.currentTimeMillis() - start) + " msec");
+    return highWaterMarks;
+  }
+
+  /**
+   * Validates the events between the end of the checksummed data in the ByteBuffer with the tail
+   * and the tail. The checksums are saved together with the tail, so normally they cover all
+   * events and nothing is scanned; the data before the checksummed extents has been validated with
+   * {@link #validateSegmentChecksums(DbusEventBufferMetaInfo)}.
+   * @param  checksummedExtents    the checksummed extents of the ByteBuffers
+   * @throws DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException
+   */
+  private void validateEventsAfterChecksummedData(int[] checksummedExtents)
+      throws DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException {
+    if(empty()) {
+      return;
+    }
+
+    final long tail = _bufferPositionParser.sanitize(_tail.getPosition(), _buffers);
+    final int tailIdx = _bufferPositionParser.bufferIndex(tail);
+    if(checksummedExtents[tailIdx] >= _bufferPositionParser.bufferOffset(tail)) {
+      _log.info("all events are covered by the segment checksums");
+      return;
+    }
+
+    final long startOffset = _bufferPositionParser.setOffset(tail, checksummedExtents[tailIdx]);
+    InternalEventIterator eventIterator =
+        acquireInternalIterator(startOffset, tail, "validateUncheckedEventsIterator");
+    final int iteratorGeneration = eventIterator.getGeneration();
+    DbusEvent e = null;
+    int num = 0;
+    long start = System.currentTimeMillis();
+    try {
+      while (eventIterator.hasNext()) {
+        e = eventIterator.next();
+        num ++;
+        if(!e.isValid()) {
+          LOG.error("event " + e + " is not valid");
+          throw new DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException(
+                "Buffer validation failed. There are some invalid events");
+        }
+      }
+      long time = System.currentTimeMillis() - start;
+      LOG.info("scanned " + num + " events after the checksummed data in " + time +
+               " msec. event at the end of the buffer: " + e);
+      if(e != null && _lastWrittenSequence != e.sequence()) {
+        throw new DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException(
+              "Buffer validation failed. e.sequence=" + e.sequence() + " and _lastWrittenSeq=" + _lastWrittenSequence);
+      }
+    } finally {
+      releaseIterator(eventIterator, iteratorGeneration);
+    }
+  }
+
+  /**
+   * Computes for every ByteBuffer the end of the prefix that has to be checksummed to cover the
+   * events between the head and the tail: the tail offset for the ByteBuffer with the tail, the
+   * limit for the other ByteBuffers with events and 0 for the ByteBuffers without events.
+   */
+  private int[] getWrittenExtents()
+  {
+    final int[] result = new int[_buffers.length];
+    if (empty())
+    {
+      return result;
+    }
+
+    final long head = _head.getPosition();
+    final long tail = _bufferPositionParser.sanitize(_tail.getPosition(), _buffers);
+    final int headIdx = _bufferPositionParser.bufferIndex(head);
+    final int tailIdx = _bufferPositionParser.bufferIndex(tail);
+    final int tailOfs = _bufferPositionParser.bufferOffset(tail);
+    if (headIdx != tailIdx || _bufferPositionParser.bufferOffset(head) >= tailOfs)
+    {
+      //the events span from the head to the end of its buffer and the following buffers up to the
+      //one with the tail
+      int idx = headIdx;
+      do
+      {
+        result[idx] = _buffers[idx].limit();
+        idx = (idx + 1) % _buffers.length;
+      } while (idx != tailIdx);
+    }
+    result[tailIdx] = Math.max(result[tailIdx], tailOfs);
+    return result;
+  }
+
+  /**
+   * Computes the CRC32 checksums of the ByteBuffer segments up to their high-water marks. The
+   * segments are processed in parallel.
+   */
+  static long[] computeSegmentChecksums(final ByteBuffer[] buffers, final int[] highWaterMarks)
+  {
+    final long[] result = new long[buffers.length];
+    if (buffers.length <= 1 || Runtime.getRuntime().availableProcessors() <= 1)
+    {
+      for (int i = 0; i < buffers.length; ++i)
+      {
+        result[i] = computeSegmentChecksum(buffers[i], highWaterMarks[i]);
+      }
+      return result;
+    }
+
+    ExecutorService executor = getChecksumExecutor();
+    try
+    {
+      List<Future<?>> futures = new ArrayList<Future<?>>(buffers.length);
+      for (int i = 0; i < buffers.length; ++i)
+      {
+        final int idx = i;
+        futures.add(executor.submit(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            result[idx] = computeSegmentChecksum(buffers[idx], highWaterMarks[idx]);
+          }
+        }));
+      }
+      for (Future<?> f: futures)
+      {
+        f.get();
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new DatabusRuntimeException("interrupted while computing buffer checksums", e);
+    }
+    catch (ExecutionException e)
+    {
+      throw new DatabusRuntimeException("error computing buffer checksums", e.getCause());
+    }
+    return result;
+  }
+
+  private static synchronized ExecutorService getChecksumExecutor()
+  {
+    if (null == _checksumExecutor)
+    {
+      _checksumExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                                       new NamedThreadFactory("bufferChecksums", true));
+    }
+    return _checksumExecutor;
+  }
+
+  private static long computeSegmentChecksum(ByteBuffer buffer, int highWaterMark)
+  {
+    CRC32 crc = new CRC32();
+    ByteBuffer buf = buffer.duplicate();
+    buf.clear();
+    buf.limit(highWaterMark);
+    byte[] chunk = new byte[(int)Math.min(64 * 1024, Math.max(highWaterMark, 1))];
+    while (buf.hasRemaining())
+    {
+      int len = Math.min(chunk.length, buf.remaining());
+      buf.get(chunk, 0, len);
+      crc.update(chunk, 0, len);
+    }
+    return crc.getValue();
+  }
+
   /**
    * compare and match data between the metaFile and passed in in the constructor
    * @param mi
@@ -1753,12 +2225,39 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     return appendEvent(key, eventInfo, statsCollector);
   }
 
+  /**
+   * Compresses the payload of a data event if compression is enabled and the payload is large
+   * enough. This is done before acquiring the write lock.
+   * @return a copy of the event info with the compressed payload or the original event info if
+   *         the payload is not compressed; the original is never changed
+   */
+  private DbusEventInfo compressPayload(DbusEventInfo eventInfo)
+  {
+    DbusEventPayloadCompressor compressor = _payloadCompressor;
+    if (null == compressor || eventInfo.isPayloadCompressed() || eventInfo.getSrcId() < 0 ||
+        eventInfo.getEventSerializationVersion() != DbusEventFactory.DBUS_EVENT_V2)
+    {
+      return eventInfo;
+    }
+    ByteBuffer compressed = compressor.compress(eventInfo.getSrcId(), eventInfo.getPayloadSchemaVersion(),
+                                                eventInfo.getValueByteBuffer());
+    if (null == compressed)
+    {
+      return eventInfo;
+    }
+    DbusEventInfo result = new DbusEventInfo(eventInfo);
+    result.setValueByteBuffer(compressed);
+    result.setPayloadCompressed(true);
+    return result;
+  }
+
   @Override
   public boolean appendEvent(DbusEventKey key,
-                             DbusEventInfo eventInfo,
+                             DbusEventInfo origEventInfo,
                              DbusEventsStatisticsCollector statsCollector)
   {
     boolean isDebugEnabled = LOG.isDebugEnabled();
+    final DbusEventInfo eventInfo = compressPayload(origEventInfo);
     acquireWriteLock();
     try {
       assert((_eventState == WindowState.STARTED) || (_eventState == WindowState.EVENTS_ADDED));
@@ -2057,7 +2556,8 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       // tracked by the buffer
       boolean updatedIndex = false;
 
-      if ( updateWindowScn || updateIndex || callListener )
+      final EventBlockSummaryIndex blockSummaryIndex = _blockSummaryIndex;
+      if ( updateWindowScn || updateIndex || callListener || null != blockSummaryIndex )
       {
         // HACK
         _eventStartIndex.sanitize();
@@ -2065,6 +2565,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
             acquireInternalIterator(_eventStartIndex.getPosition(),
                                     _currentWritePosition.getPosition(),
                                     "endEventsIterator");
+        final int iteratorGeneration = eventIterator.getGeneration();
 
         try {
           LOG.debug("acquired iterator");
@@ -2080,6 +2581,10 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
             if (null != statsCollector) {
               statsCollector.registerDataEvent(e);
             }
+            if (null != blockSummaryIndex)
+            {
+              updateBlockSummary(blockSummaryIndex, e, eventPosition);
+            }
 
             if ( updateIndex)
             {
@@ -2113,7 +2618,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
             }
           }
         } finally {
-          releaseIterator(eventIterator);
+          releaseIterator(eventIterator, iteratorGeneration);
         }
       }
 
@@ -2167,6 +2672,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       _empty = false;
       updateFirstEventMetadata();
       _notEmpty.signalAll();
+      notifyEventsAppended();
 
 
     } catch (KeyTypeNotImplementedException ex)
@@ -2268,6 +2774,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     boolean skipWindowScn = messagesToSkip < 0;
 
     InternalEventIterator eventIterator = null;
+    int iteratorGeneration = 0;
     try {
 
       ScnIndex.ScnIndexEntry entry = null;
@@ -2292,6 +2799,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
               acquireInternalIterator(_head.getPosition(),
                                       _bufferPositionParser.sanitize(_tail.getPosition(), _buffers),
                                       "streamEventsIterator");
+          iteratorGeneration = eventIterator.getGeneration();
           minScn = getMinScn();
 
           if (isDebugEnabled)
@@ -2375,6 +2883,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
                                                 _bufferPositionParser.sanitize(_tail.getPosition(),
                                                                                _buffers),
                                                 "streamEventsIterator");
+        iteratorGeneration = eventIterator.getGeneration();
         if (isDebugEnabled)
         {
           _log.debug("Stream:offset:" + _bufferPositionParser.toString(offset, _buffers));
@@ -2384,6 +2893,23 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
         }
       }
 
+      // skip the blocks of the buffer which cannot match the filter
+      final EventBlockSummaryIndex blockSummaryIndex = _blockSummaryIndex;
+      EventBlockSummaryIndex.Cursor blockCursor =
+          null != blockSummaryIndex && args.getFilter() instanceof DbusBlockFilter ?
+          blockSummaryIndex.createCursor((DbusBlockFilter)args.getFilter(),
+                                         eventIterator.getCurrentPosition()) :
+          null;
+
+      // readers which did not declare that they can handle compressed payloads get the original ones
+      final boolean decompressPayloads =
+          !args.isAcceptCompressedPayloads() || Encoding.BINARY != args.getEncoding();
+
+      // compaction is only possible if we start at a window boundary
+      int compactionWindows = args.getCompactionWindows();
+      CompactionWindow compactionWindow = (compactionWindows > 0 && messagesToSkip <= 0) ?
+          new CompactionWindow(statsCollector) : null;
+
       EventScanningState state = EventScanningState.LOOKING_FOR_FIRST_VALID_EVENT; // looking for first valid event
       int skippedMessages = 0;
       // Iterate over the buffer to locate batchFetchSize events
@@ -2401,6 +2927,20 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
         // since we intentionally split the getOffset from the getIterator call
         DbusEventInternalWritable e;
         int eventVersion;
+        long eventPosition = null != blockCursor ? eventIterator.getCurrentPosition() : -1;
+        if (null != blockCursor && state == EventScanningState.VALID_ZONE)
+        {
+          long nextPosition = blockCursor.skipBlocks(eventPosition, eventIterator._iteratorTail.getPosition());
+          if (nextPosition != eventPosition)
+          {
+            eventIterator.skipTo(nextPosition);
+            if (!eventIterator.hasNext())
+            {
+              break;
+            }
+            eventPosition = eventIterator.getCurrentPosition();
+          }
+        }
 
         try
         {
@@ -2411,7 +2951,12 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
           // For now we also assume that clientVersion equals to the eventVersion that the client understands
           // if convertToDifferentVersion() cannot convert - it will throw a runtime exception
           if (eventVersion > maxClientEventVersion) {
-            e = DbusEventInternalWritable.convertToDifferentVersion(e, (byte)maxClientEventVersion);
+            e = DbusEventInternalWritable.convertToDifferentVersion(e, (byte)maxClientEventVersion,
+                                                                    _payloadDictionaries);
+          }
+          if (decompressPayloads && e.isPayloadCompressed())
+          {
+            e = ((DbusEventV2)e).createUncompressedCopy(_payloadDictionaries);
           }
 
           if ( isFirstEvent)
@@ -2530,10 +3075,81 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
           }
         }
 
+        if (state == EventScanningState.VALID_ZONE && null != compactionWindow)
+        {
+          if (e.isEndOfPeriodMarker())
+          {
+            compactionWindow.endWindow(e);
+          }
+          else if (e.isControlMessage() ||
+                   ((null == blockCursor || blockCursor.mayMatch(eventPosition)) && args.getFilter().allow(e)))
+          {
+            compactionWindow.addEvent(e);
+          }
+          compactionWindow.registerScannedEvent(e);
+
+          // the copied events are capped by the space left in the response: windows that exceed
+          // it are not accumulated any further but passed through without compaction
+          int remaining = batchFetchSize - batchSize;
+          int compactedSize = compactionWindow.getSize();
+          if (!e.isEndOfPeriodMarker() && compactedSize <= remaining)
+          {
+            continue;
+          }
+
+          if (compactedSize > remaining)
+          {
+            if (0 == batchSize)
+            {
+              // nothing has been streamed and the compacted windows do not fit; stream this
+              // request without compaction so that it can use partial windows
+              _log.info("compacted windows (" + compactedSize + " bytes) do not fit in " + batchFetchSize +
+                        " bytes; streaming without compaction");
+              args.setCompactionWindows(0);
+              try
+              {
+                return streamEvents(checkPoint, writeChannel, args);
+              }
+              finally
+              {
+                args.setCompactionWindows(compactionWindows);
+              }
+            }
+            break;
+          }
+
+          // Flush if we have compacted enough windows, or we are running out of space, or this is
+          // the last window in the buffer
+          if (compactionWindow.getNumWindows() >= compactionWindows || compactedSize > remaining / 2 ||
+              !eventIterator.hasNext())
+          {
+            int numWindows = compactionWindow.getNumWindows();
+            int bytesWritten = compactionWindow.streamTo(writeChannel, args.getEncoding(), checkPoint,
+                                                         statsCollector, result);
+            if (0 > bytesWritten)
+            {
+              done = true;
+            }
+            else
+            {
+              batchSize += bytesWritten;
+              if (isDebugEnabled)
+                _log.debug("buf.stream: compacted " + numWindows + " windows into " + bytesWritten +
+                           " bytes; scn=" + e.sequence());
+              if (oneWindowAtATime)
+              {
+                break;
+              }
+            }
+          }
+          continue;
+        }
+
         if (state == EventScanningState.VALID_ZONE)
         {
           boolean controlMessage = e.isControlMessage();
-          boolean filterAllowed = args.getFilter().allow(e);
+          boolean filterAllowed =
+              (null == blockCursor || blockCursor.mayMatch(eventPosition)) && args.getFilter().allow(e);
           if (controlMessage || filterAllowed)
           {
             if (batchSize + e.size() > batchFetchSize)
@@ -2637,6 +3253,10 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
         if (isDebugEnabled)
           _log.debug("No events were sent out.");
       }
+      if (null != blockCursor && isDebugEnabled)
+      {
+        _log.debug("skipped blocks: " + blockCursor.getSkippedBlocksNum());
+      }
 
       long endTimeTs2 = System.nanoTime();
       if (PERF_LOG.isDebugEnabled())
@@ -2646,7 +3266,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
 
     } finally {
       if(eventIterator != null)
-        releaseIterator(eventIterator);
+        releaseIterator(eventIterator, iteratorGeneration);
     }
 
     if (isDebugEnabled)
@@ -2702,7 +3322,10 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       while (currentBufferOffset != endBufferOffset)
       {
         e = e.reset(buf, currentBufferOffset);
-        e.writeTo(writeChannel, encoding);
+        // JSON readers cannot handle compressed payloads
+        DbusEventInternalReadable writeEvent = e.isPayloadCompressed() ?
+            ((DbusEventV2)e).createUncompressedCopy(_payloadDictionaries) : e;
+        writeEvent.writeTo(writeChannel, encoding);
         currentBufferOffset += e.size();
       }
     }
@@ -2866,11 +3489,19 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     long _lastSeenStgWin;
     /** A flag if _scnRegress flag has to be reset after the current event is processed */
     boolean _resetScnRegress;
+    /**
+     * the events starting before this offset have already had their CRCs verified; kept across
+     * {@link #startIteration()} as long as the staged data does not move
+     */
+    int _verifiedEnd;
     /**
      * used for reading bytes into a staging area
      * before inserting into the primary buffer
      */
     private ByteBuffer _readBuffer;
+    /** the staging buffer while {@link #_readBuffer} points to a chunk taken from a
+     * {@link ChunkedReadableByteChannel}; null otherwise */
+    private ByteBuffer _savedStgBuffer;
 
     public ReadEventsReadPosition()
     {
@@ -3016,7 +3647,8 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       try
       {
         _curEvent = (DbusEventInternalWritable)_curEvent.reset(_readBuffer, _pos);
-        final EventScanStatus eventScanStatus = _curEvent.scanEvent(false);
+        final EventScanStatus eventScanStatus =
+            _curEvent.scanEvent(false, _readEventsVerifyBodyCrc && _pos >= _verifiedEnd);
         switch (eventScanStatus)
         {
           case PARTIAL:
@@ -3109,41 +3741,126 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       return _curEvent;
     }
 
-	public long getLastSeenStgWin() {
-		return _lastSeenStgWin;
-	}
+	public long getLastSeenStgWin() {
+		return _lastSeenStgWin;
+	}
+
+  /**
+   * @return the readBuffer
+   */
+  public ByteBuffer getReadBuffer()
+  {
+    return _readBuffer;
+  }
+
+  /**
+   * Grows the read buffer to a new size. The _curEvent object is reset to null in the process. The method does not
+   * enforce an upper-bound of the new size. This is responsibility of the caller.
+   */
+  public ByteBuffer growReadBuffer(int newSize)
+  {
+    assert 0 == _readBuffer.position() : "readBuffer position not 0; data before it will be lost!";
+
+    if (newSize <= _readBuffer.capacity())
+    {
+      throw new DatabusRuntimeException("invalid new event staging buffer size: " + newSize + "; current buffer: "
+                                        + _readBuffer);
+    }
+    if (_log.isDebugEnabled())
+    {
+      _log.debug("growing event staging buffer from " + _readBuffer.capacity() + " to " + newSize);
+    }
+    ByteBuffer newBuf = ByteBuffer.allocate(newSize).order(_eventFactory.getByteOrder());
+    newBuf.put(_readBuffer);
+    _curEvent = null;
+    _readBuffer = newBuf;
+
+    return newBuf;
+  }
+
+  /**
+   * Notifies that the first bytesRemoved bytes of the staging buffer have been dropped and the
+   * rest has been moved to its start
+   */
+  public void shiftVerifiedEnd(int bytesRemoved)
+  {
+    _verifiedEnd = Math.max(0, _verifiedEnd - bytesRemoved);
+  }
+
+  /**
+   * Empties the read buffer once all of its events have been processed. The next data read into it
+   * has not been verified yet.
+   */
+  public void clearReadBuffer()
+  {
+    _readBuffer.clear();
+    _verifiedEnd = 0;
+  }
 
   /**
-   * @return the readBuffer
+   * Verifies the CRCs of the unprocessed events in the read buffer in parallel. Events that have
+   * already been verified are skipped.
    */
-  public ByteBuffer getReadBuffer()
+  public void verifyEvents(ParallelEventValidator validator)
   {
-    return _readBuffer;
+    if (_verifiedEnd >= _end) return;
+    _verifiedEnd = validator.validate(_readBuffer, Math.max(_pos, _verifiedEnd), _end);
+    if (_log.isDebugEnabled())
+      _log.debug("verified events in parallel: " + this + "; verifiedEnd=" + _verifiedEnd);
   }
 
   /**
-   * Grows the read buffer to a new size. The _curEvent object is reset to null in the process. The method does not
-   * enforce an upper-bound of the new size. This is responsibility of the caller.
+   * Makes a chunk received from the channel the current read buffer so that its events can be
+   * verified and copied to the main buffer without going through the staging buffer. Can be called
+   * only while the staging buffer is empty.
    */
-  public ByteBuffer growReadBuffer(int newSize)
+  public ByteBuffer useChunk(ByteBuffer chunk)
   {
+    assert null == _savedStgBuffer : "chunk already in use: " + this;
     assert 0 == _readBuffer.position() : "readBuffer position not 0; data before it will be lost!";
 
-    if (newSize <= _readBuffer.capacity())
+    _savedStgBuffer = _readBuffer;
+    _readBuffer = chunk.slice().order(_eventFactory.getByteOrder());
+    _verifiedEnd = 0;
+    //mark the chunk as filled up like a staging buffer that has just been read into
+    _readBuffer.position(_readBuffer.limit());
+
+    return _readBuffer;
+  }
+
+  public boolean isReadingChunk()
+  {
+    return null != _savedStgBuffer;
+  }
+
+  /**
+   * Switches back from the current chunk to the staging buffer. Any unprocessed bytes of the chunk
+   * (i.e. a partial event at its end) are moved to the staging buffer, growing it if necessary.
+   * The caller must make sure that these bytes do not exceed the max staging buffer capacity.
+   */
+  public void releaseChunk()
+  {
+    if (null == _savedStgBuffer) return;
+
+    final ByteBuffer chunk = _readBuffer;
+    final int remaining = bytesRemaining();
+    _readBuffer = _savedStgBuffer;
+    _savedStgBuffer = null;
+    _readBuffer.clear();
+    _verifiedEnd = 0;
+    if (remaining > _readBuffer.capacity())
     {
-      throw new DatabusRuntimeException("invalid new event staging buffer size: " + newSize + "; current buffer: "
-                                        + _readBuffer);
+      _readBuffer = ByteBuffer.allocate(remaining).order(_eventFactory.getByteOrder());
+      _curEvent = null;
     }
-    if (_log.isDebugEnabled())
+    if (remaining > 0)
     {
-      _log.debug("growing event staging buffer from " + _readBuffer.capacity() + " to " + newSize);
+      if (_log.isDebugEnabled())
+        _log.debug("moving " + remaining + " bytes of a partial event from chunk to the staging buffer");
+      chunk.limit(_end).position(_pos);
+      _readBuffer.put(chunk);
     }
-    ByteBuffer newBuf = ByteBuffer.allocate(newSize).order(_eventFactory.getByteOrder());
-    newBuf.put(_readBuffer);
-    _curEvent = null;
-    _readBuffer = newBuf;
-
-    return newBuf;
+    startIteration();
   }
 
   }
@@ -3293,6 +4010,9 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
 
     ReadEventsReadPosition readPos = new ReadEventsReadPosition();
     ReadEventsWritePosition writePos = new ReadEventsWritePosition();
+    final ChunkedReadableByteChannel chunkedChannel =
+        readChannel instanceof ChunkedReadableByteChannel ? (ChunkedReadableByteChannel)readChannel
+                                                          : null;
 
     _readBufferLock.lock();
     try
@@ -3310,18 +4030,36 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       {
         while (mightHaveMoreData)
         {
-          final ByteBuffer readBuffer = readPos.getReadBuffer();
-          boolean success = readEventsFromChannel(readChannel, readBuffer, logDebugEnabled);
-          readPos.startIteration();
+          final ByteBuffer readBuffer;
+          if (null != chunkedChannel && 0 == readPos.getReadBuffer().position())
+          {
+            //nothing pending in the staging buffer: verify the events directly in the next chunk
+            final ByteBuffer chunk = readChunkFromChannel(chunkedChannel, logDebugEnabled);
+            mightHaveMoreData = null != chunk;
+            readBuffer = mightHaveMoreData ? readPos.useChunk(chunk) : readPos.getReadBuffer();
+            readPos.startIteration();
+          }
+          else
+          {
+            readBuffer = readPos.getReadBuffer();
+            boolean success = readEventsFromChannel(readChannel, readBuffer, logDebugEnabled);
+            readPos.startIteration();
 
-          final int numBytesRead = readPos.bytesRemaining();
+            //if there is an error we'll try to process whatever was read but stop after that
+            mightHaveMoreData = success && (readPos.bytesRemaining() > 0) &&
+                (readBuffer.position() == readBuffer.limit());
+          }
 
-          //if there is an error we'll try to process whatever was read but stop after that
-          mightHaveMoreData = success && (numBytesRead > 0) &&
-              (readBuffer.position() == readBuffer.limit());
+          final int numBytesRead = readPos.bytesRemaining();
 
           if (numBytesRead > 0)
           {
+            //verify the CRCs of big batches in parallel before blocking readers with the lock
+            final ParallelEventValidator validator = _readEventsValidator;
+            if (null != validator)
+            {
+              readPos.verifyEvents(validator);
+            }
             _queueLock.lock();
             try
             {
@@ -3444,7 +4182,20 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
                   final int curCapacity = readBuffer.capacity();
                   if (logDebugEnabled)
                     _log.debug("partial event at " + readPos);
-                  if (0 != readPos.getReadStart())
+                  if (readPos.isReadingChunk())
+                  {
+                    //the event continues in the next chunk(s); finish it in the staging buffer
+                    if (readPos.bytesRemaining() > getMaxReadBufferCapacity())
+                    {
+                      throw new InvalidEventException("event too big to fit in staging buffer with capacity : " +
+                          getMaxReadBufferCapacity()
+                          + "; readPos:" + readPos + "; consider increasing connectionDefaults.eventBuffer.maxSize" +
+                             " or connectionDefaults.eventBuffer.maxEventSize if set explicitly.");
+                    }
+                    readPos.releaseChunk();
+                    hasMoreInStgBuffer = false;
+                  }
+                  else if (0 != readPos.getReadStart())
                   {
                     //compact stg buffer and try to read more data from the network
                     compactStgBuffer(readPos, logDebugEnabled);
@@ -3506,8 +4257,9 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
 
               if (!readPos.hasNext())
               {
-                readBuffer.clear();
+                readPos.clearReadBuffer();
               }
+              readPos.releaseChunk();
             } finally {
               _queueLock.unlock();
             }
@@ -3574,6 +4326,35 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     return success;
   }
 
+  /**
+   * Takes the next chunk from a chunked channel for readEvents().
+   *
+   * @param readChannel      the channel to read from
+   * @param logDebugEnabled  if debug logging is enabled
+   * @return the chunk or null if the end of the stream has been reached or the read failed
+   */
+  private ByteBuffer readChunkFromChannel(ChunkedReadableByteChannel readChannel,
+                                          boolean logDebugEnabled)
+  {
+    ByteBuffer chunk = null;
+    try
+    {
+      do
+      {
+        chunk = readChannel.readChunk();
+      }
+      while (null != chunk && !chunk.hasRemaining());
+      if (logDebugEnabled)
+        _log.debug("Read chunk " + chunk);
+    }
+    catch (IOException e)
+    {
+      _log.error("readEvents error: " + e.getMessage(), e);
+    }
+
+    return chunk;
+  }
+
   /**
    * Used by readEventsInternal to move the partial event at the end to the beginning of the
    * staging buffer so we can try to read more data.
@@ -3585,6 +4366,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
   {
     final ByteBuffer readBuffer = readPos.getReadBuffer();
 
+    readPos.shiftVerifiedEnd(readPos.getPosition());
     readBuffer.clear();//despite its name, clear() does not remove the data
     if (readPos.hasNext())
     {
@@ -3909,6 +4691,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
         _empty = false;
         updateFirstEventMetadata();
         _notEmpty.signalAll();
+        notifyEventsAppended();
         assert assertBuffersLimits();
       } else {
         //This should not happen - if validity is true and endPosition > startPosition,
@@ -3953,7 +4736,8 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
 
     try
     {
-      assert e.isValid() : e.toString();
+      //the body CRCs of events from trusted sources are not verified
+      assert e.isValid(true, _readEventsVerifyBodyCrc) : e.toString();
 
       //commit the data to the buffer before any internal listeners process it so that a
       //RuntimeException does not leave the buffer in an inconsistent state
@@ -3961,6 +4745,10 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
         statsCollector.registerDataEvent(e);
       readPos.eventWritten();
       ++eventsWritten;
+      //the block summary has to be updated before the event becomes visible to streamEvents()
+      final EventBlockSummaryIndex blockSummaryIndex = _blockSummaryIndex;
+      if (null != blockSummaryIndex)
+        updateBlockSummary(blockSummaryIndex, e, currentPosition);
       _tail.setPosition(currentPosition + e.size());
       _currentWritePosition.setPosition(_tail.getPosition());
 
@@ -3991,6 +4779,23 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     return eventsWritten;
   }
 
+  /**
+   * Adds a new event to the block summaries. A summary missing an event may cause streamEvents() to
+   * skip it, so the summaries are disabled if the update fails.
+   */
+  private void updateBlockSummary(EventBlockSummaryIndex blockSummaryIndex, DbusEvent e, long position)
+  {
+    try
+    {
+      blockSummaryIndex.onEvent(e, position);
+    }
+    catch (RuntimeException ex)
+    {
+      _log.error("disabling block summaries after error for event " + e + ": " + ex.getMessage(), ex);
+      _blockSummaryIndex = null;
+    }
+  }
+
   private void callListeners(DbusEventInternalWritable event, long currentPosition,
                              Iterable<InternalDatabusEventsListener> eventListeners) {
     if (eventListeners != null)
@@ -4018,8 +4823,8 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
   {
     final int proposedHeadIdx = _bufferPositionParser.bufferIndex(pos);
     final int proposedHeadOfs = _bufferPositionParser.bufferOffset(pos);
-    DbusEvent e = _eventFactory.createReadOnlyDbusEventFromBuffer(_buffers[proposedHeadIdx], proposedHeadOfs);
-    assert e.isValid();
+    DbusEventInternalReadable e = _eventFactory.createReadOnlyDbusEventFromBuffer(_buffers[proposedHeadIdx], proposedHeadOfs);
+    assert e.isValid(true, _readEventsVerifyBodyCrc);
     return e;
   }
 
@@ -4102,6 +4907,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       if (logDebugEnabled)
           _log.debug("moved head to " + _head.toString() + "; scn=" + newScn);
       _notFull.signalAll();
+      notifySpaceFreed();
     }
     finally
     {
@@ -4436,34 +5242,50 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     return 0;
   }
 
-  //TODO we can add a flag to control if we want to track iterators since it is used only for
-  //debugging and it has overhead associated with it
+  /**
+   * Registers an iterator in {@link #_busyIteratorPool}. The registration is O(1) and can be
+   * disabled with {@link #setTrackIterators(boolean)}.
+   */
   protected void trackIterator(BaseEventIterator eventIterator)
   {
-    synchronized (_busyIteratorPool)
+    if (_trackIterators && null == eventIterator._trackingSlot)
     {
-      _busyIteratorPool.add(new WeakReference<BaseEventIterator>(eventIterator));
+      eventIterator._trackingSlot = _busyIteratorPool.register(eventIterator);
     }
   }
 
+  /**
+   * Unregisters an iterator from {@link #_busyIteratorPool}. If eventIterator is null, removes the
+   * registrations of all garbage-collected iterators.
+   */
   protected void untrackIterator(BaseEventIterator eventIterator)
   {
-    synchronized (_busyIteratorPool)
+    if (null == eventIterator)
     {
-      Iterator<WeakReference<BaseEventIterator>> refIter = _busyIteratorPool.iterator();
-      //both remove specified iterator and clean up GC'ed references
-      while (refIter.hasNext())
-      {
-        WeakReference<BaseEventIterator> curRef = refIter.next();
-        BaseEventIterator iter = curRef.get();
-        if (null == iter)
-          refIter.remove();
-        else if (iter.equals(eventIterator))
-          refIter.remove();
-      }
+      _busyIteratorPool.purge();
+    }
+    else
+    {
+      WeakRefRegistry.Slot<BaseEventIterator> slot = eventIterator._trackingSlot;
+      eventIterator._trackingSlot = null;
+      _busyIteratorPool.unregister(slot);
     }
   }
 
+  /**
+   * Enables or disables the tracking of the open iterators. The tracking is only used for
+   * debugging and can be disabled to save the registration cost on the streaming path.
+   */
+  public void setTrackIterators(boolean trackIterators)
+  {
+    _trackIterators = trackIterators;
+  }
+
+  public boolean isTrackIterators()
+  {
+    return _trackIterators;
+  }
+
   /**
    * Creates a long-lived iterator over events. It has the ability to wait if there are no
    * immediately-available events. It is responsibility of the caller to free the iterator
@@ -4491,7 +5313,21 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
    */
   protected InternalEventIterator acquireInternalIterator(long head, long tail, String iteratorName)
   {
-    InternalEventIterator eventIterator = new InternalEventIterator(head, tail, iteratorName);
+    InternalEventIterator eventIterator = _freeInternalIterators.poll();
+    if (null == eventIterator)
+    {
+      return new InternalEventIterator(head, tail, iteratorName);
+    }
+
+    //reuse a released iterator
+    _freeInternalIteratorsNum.decrementAndGet();
+    synchronized (eventIterator)
+    {
+      eventIterator._pooled = false;
+      ++eventIterator._generation;
+    }
+    eventIterator.reset(head, tail, iteratorName);
+    trackIterator(eventIterator);
     return eventIterator;
   }
 
@@ -4536,9 +5372,51 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     }
   }
 
+  /**
+   * Releases the resources of an iterator. Released {@link InternalEventIterator}s are kept for
+   * reuse by {@link #acquireInternalIterator(long, long, String)}, so the iterator must not be
+   * used after this call. Releasing an iterator which is in the pool of released iterators is
+   * ignored; owners of pooled iterators should use {@link #releaseIterator(BaseEventIterator, int)}
+   * so that a late release cannot affect the next owner either.
+   */
   public void releaseIterator(BaseEventIterator e)
   {
-    e.close();
+    if (e.getClass() != InternalEventIterator.class)
+    {
+      e.close();
+      return;
+    }
+    releaseIterator(e, e.getGeneration());
+  }
+
+  /**
+   * Releases an iterator on behalf of the owner which acquired it with the given
+   * {@link BaseEventIterator#getGeneration()} token. Stale releases, i.e. releases of an iterator
+   * which has already been released or has been handed out again to a new owner, are ignored.
+   */
+  public void releaseIterator(BaseEventIterator e, int generation)
+  {
+    synchronized (e)
+    {
+      if (e._pooled || e._generation != generation)
+      {
+        LOG.warn("ignoring stale release of iterator " + e.getIdentifier() + ": generation "
+                 + generation + " vs " + e._generation);
+        return;
+      }
+      e.close();
+      if (e.getClass() != InternalEventIterator.class)
+      {
+        return;
+      }
+      if (_freeInternalIteratorsNum.incrementAndGet() > MAX_FREE_INTERNAL_ITERATORS)
+      {
+        _freeInternalIteratorsNum.decrementAndGet();
+        return;
+      }
+      e._pooled = true;
+    }
+    _freeInternalIterators.offer((InternalEventIterator)e);
   }
 
   public void addInternalListener(InternalDatabusEventsListener listener)
@@ -4554,6 +5432,32 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     return _internalListeners.remove(listener);
   }
 
+  public void addStateListener(DbusEventBufferStateListener listener)
+  {
+    _stateListeners.addIfAbsent(listener);
+  }
+
+  public boolean removeStateListener(DbusEventBufferStateListener listener)
+  {
+    return _stateListeners.remove(listener);
+  }
+
+  private void notifyEventsAppended()
+  {
+    for (DbusEventBufferStateListener listener: _stateListeners)
+    {
+      listener.onEventsAppended();
+    }
+  }
+
+  private void notifySpaceFreed()
+  {
+    for (DbusEventBufferStateListener listener: _stateListeners)
+    {
+      listener.onSpaceFreed();
+    }
+  }
+
   /**
    * package private to allow helper classes to inspect internal details
    */
@@ -4759,6 +5663,15 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     private final long _bufferRemoveWaitPeriod;
     private final boolean _restoreMMappedBuffers;
     private final boolean _restoreMMappedBuffersValidateEvents;
+    private final boolean _restoreMMappedBuffersValidateChecksums;
+    private final int _payloadCompressionThreshold;
+    private final DbusEventPayloadDictionaries _payloadDictionaries;
+    private final boolean _trackIterators;
+    private final int _readEventsValidationThreads;
+    private final boolean _readEventsValidateBodyCrc;
+    private final boolean _enableBlockSummaryIndex;
+    private final long[] _blockSummaryNumBuckets;
+    private final int _streamPartitionsThreads;
 
     private final boolean _enableScnIndex;
 
@@ -4778,8 +5691,50 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
                         boolean restoreMMappedBuffers,
                         boolean restoreMMappedBuffersValidateEvents,
                         boolean enableScnIndex)
+    {
+      this(maxSize, maxIndividualBufferSize, readBufferSize, maxEventSize, scnIndexSize,
+           allocationPolicy, mmapDirectory, defaultMemUsage, queuePolicy, existingBuffer, trace,
+           assertLevel, bufferRemoveWaitPeriod, restoreMMappedBuffers,
+           restoreMMappedBuffersValidateEvents, false, 0, new DbusEventPayloadDictionaries(), true,
+           0, true, false, new long[0], 0, enableScnIndex);
+    }
+
+    public StaticConfig(long maxSize,
+                        int maxIndividualBufferSize,
+                        int readBufferSize,
+                        int maxEventSize,
+                        int scnIndexSize,
+                        AllocationPolicy allocationPolicy,
+                        File mmapDirectory,
+                        double defaultMemUsage,
+                        QueuePolicy queuePolicy,
+                        DbusEventBuffer existingBuffer,
+                        RelayEventTraceOption trace,
+                        AssertLevel assertLevel,
+                        long bufferRemoveWaitPeriod,
+                        boolean restoreMMappedBuffers,
+                        boolean restoreMMappedBuffersValidateEvents,
+                        boolean restoreMMappedBuffersValidateChecksums,
+                        int payloadCompressionThreshold,
+                        DbusEventPayloadDictionaries payloadDictionaries,
+                        boolean trackIterators,
+                        int readEventsValidationThreads,
+                        boolean readEventsValidateBodyCrc,
+                        boolean enableBlockSummaryIndex,
+                        long[] blockSummaryNumBuckets,
+                        int streamPartitionsThreads,
+                        boolean enableScnIndex)
     {
       super();
+      _restoreMMappedBuffersValidateChecksums = restoreMMappedBuffersValidateChecksums;
+      _payloadCompressionThreshold = payloadCompressionThreshold;
+      _payloadDictionaries = payloadDictionaries;
+      _trackIterators = trackIterators;
+      _readEventsValidationThreads = readEventsValidationThreads;
+      _readEventsValidateBodyCrc = readEventsValidateBodyCrc;
+      _enableBlockSummaryIndex = enableBlockSummaryIndex;
+      _blockSummaryNumBuckets = blockSummaryNumBuckets;
+      _streamPartitionsThreads = streamPartitionsThreads;
       _maxSize = maxSize;
       _maxIndividualBufferSize = maxIndividualBufferSize;
       _readBufferSize = readBufferSize;
@@ -4808,10 +5763,86 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       return _restoreMMappedBuffersValidateEvents;
     }
 
+    /**
+     * If the checksums of the ByteBuffer segments are saved with the buffer meta info. When
+     * validating restored buffers, the segments are checked against these checksums in parallel
+     * and only the events of the last window are scanned.
+     */
+    public boolean getRestoreMMappedBuffersValidateChecksums() {
+      return _restoreMMappedBuffersValidateChecksums;
+    }
+
     public boolean getRestoreMMappedBuffers() {
       return _restoreMMappedBuffers;
     }
 
+    /**
+     * The minimum payload size of V2 data events to be compressed when they are appended to the
+     * buffer; 0 disables the compression.
+     */
+    public int getPayloadCompressionThreshold() {
+      return _payloadCompressionThreshold;
+    }
+
+    /**
+     * The dictionaries to compress the payloads with and to decompress them for readers that
+     * cannot handle compressed payloads. Buffers created from the same config share them.
+     */
+    public DbusEventPayloadDictionaries getPayloadDictionaries() {
+      return _payloadDictionaries;
+    }
+
+    /**
+     * The number of threads used by readEvents() to verify the CRCs of large batches of received
+     * events in parallel; 0 means that the events are verified serially by the reading thread.
+     */
+    public int getReadEventsValidationThreads() {
+      return _readEventsValidationThreads;
+    }
+
+    /**
+     * If readEvents() verifies the body CRCs of received events. Disabling it is meant only for
+     * buffers fed from trusted sources (e.g. relays in the same data center); the header CRCs are
+     * always verified.
+     */
+    public boolean getReadEventsValidateBodyCrc() {
+      return _readEventsValidateBodyCrc;
+    }
+
+    /**
+     * If per-block summaries of the events (source ids, key mod buckets, key range) are maintained
+     * so that streamEvents() can skip blocks which cannot match the request filters. Requires the
+     * scn index and adds about (33 + 8 * number of bucket counts) bytes per scn index entry. Skipped
+     * events are not counted in the per-event statistics of the stream requests.
+     */
+    public boolean isEnableBlockSummaryIndex() {
+      return _enableBlockSummaryIndex;
+    }
+
+    /** The numbers of buckets of mod-partitioned clients for which the block summaries track buckets */
+    public long[] getBlockSummaryNumBuckets() {
+      return _blockSummaryNumBuckets;
+    }
+
+    /**
+     * The number of threads used by {@link DbusEventBufferMult} to read the physical partitions of
+     * a multi-partition stream request in parallel; 0 means that the partitions are read serially
+     * by the request thread. Each partition is read into a staging area with an equal share of the
+     * fetch size; partitions whose window does not fit the share are read again serially, so their
+     * events may be counted twice in the outbound statistics.
+     */
+    public int getStreamPartitionsThreads() {
+      return _streamPartitionsThreads;
+    }
+
+    /**
+     * If the open iterators of the buffer are tracked for debugging purposes. Disabling the
+     * tracking saves a registration per iterator on the streaming path.
+     */
+    public boolean isTrackIterators() {
+      return _trackIterators;
+    }
+
     /**
      * wait time before a buffer with ref count 0 is removed
      * from bufferMult
@@ -4954,6 +5985,23 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     {
       return _maxEventSize;
     }
+
+    /**
+     * Creates a copy of this config for a buffer with a different size and mmap directory; all
+     * other settings are kept.
+     */
+    public StaticConfig copyWithMaxSize(long maxSize, File mmapDirectory)
+    {
+      return new StaticConfig(maxSize, _maxIndividualBufferSize, _readBufferSize, _maxEventSize,
+                              _scnIndexSize, _allocationPolicy, mmapDirectory, _defaultMemUsage,
+                              _queuePolicy, _existingBuffer, _trace, _assertLevel,
+                              _bufferRemoveWaitPeriod, _restoreMMappedBuffers,
+                              _restoreMMappedBuffersValidateEvents,
+                              _restoreMMappedBuffersValidateChecksums, _payloadCompressionThreshold,
+                              _payloadDictionaries, _trackIterators, _readEventsValidationThreads,
+                              _readEventsValidateBodyCrc, _enableBlockSummaryIndex,
+                              _blockSummaryNumBuckets, _streamPartitionsThreads, _enableScnIndex);
+    }
   }
 
   public static class Config implements ConfigBuilder<StaticConfig>
@@ -4986,6 +6034,15 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     private long _bufferRemoveWaitPeriodSec;
     private boolean _restoreMMappedBuffers = false;
     private boolean _restoreMMappedBuffersValidateEvents = false;
+    private boolean _restoreMMappedBuffersValidateChecksums = false;
+    private int _payloadCompressionThreshold = 0;
+    private String _payloadCompressionDictionaries = "";
+    private boolean _trackIterators = true;
+    private int _readEventsValidationThreads = 0;
+    private boolean _readEventsValidateBodyCrc = true;
+    private boolean _enableBlockSummaryIndex = false;
+    private String _blockSummaryNumBuckets = "";
+    private int _streamPartitionsThreads = 0;
 
     private boolean _enableScnIndex = true;
 
@@ -5020,6 +6077,15 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       _trace = new RelayEventTraceOptionBuilder(other._trace);
       _bufferRemoveWaitPeriodSec = other._bufferRemoveWaitPeriodSec;
       _restoreMMappedBuffers = other._restoreMMappedBuffers;
+      _restoreMMappedBuffersValidateChecksums = other._restoreMMappedBuffersValidateChecksums;
+      _payloadCompressionThreshold = other._payloadCompressionThreshold;
+      _payloadCompressionDictionaries = other._payloadCompressionDictionaries;
+      _trackIterators = other._trackIterators;
+      _readEventsValidationThreads = other._readEventsValidationThreads;
+      _readEventsValidateBodyCrc = other._readEventsValidateBodyCrc;
+      _enableBlockSummaryIndex = other._enableBlockSummaryIndex;
+      _blockSummaryNumBuckets = other._blockSummaryNumBuckets;
+      _streamPartitionsThreads = other._streamPartitionsThreads;
       _enableScnIndex = other._enableScnIndex;
     }
 
@@ -5051,6 +6117,66 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     public boolean getRestoreMMappedBuffersValidateEvents() {
       return _restoreMMappedBuffersValidateEvents;
     }
+    public void setRestoreMMappedBuffersValidateChecksums(boolean restoreMMappedBuffersValidateChecksums) {
+      _restoreMMappedBuffersValidateChecksums = restoreMMappedBuffersValidateChecksums;
+    }
+    public boolean getRestoreMMappedBuffersValidateChecksums() {
+      return _restoreMMappedBuffersValidateChecksums;
+    }
+    public void setPayloadCompressionThreshold(int payloadCompressionThreshold) {
+      _payloadCompressionThreshold = payloadCompressionThreshold;
+    }
+    public int getPayloadCompressionThreshold() {
+      return _payloadCompressionThreshold;
+    }
+    /**
+     * Sets the compression dictionaries as a comma-separated list of srcId:schemaVersion:path
+     * entries, where path is a file with the dictionary for the payloads of the source with that
+     * schema version
+     */
+    public void setPayloadCompressionDictionaries(String payloadCompressionDictionaries) {
+      _payloadCompressionDictionaries = payloadCompressionDictionaries;
+    }
+    public String getPayloadCompressionDictionaries() {
+      return _payloadCompressionDictionaries;
+    }
+    public void setReadEventsValidationThreads(int readEventsValidationThreads) {
+      _readEventsValidationThreads = readEventsValidationThreads;
+    }
+    public int getReadEventsValidationThreads() {
+      return _readEventsValidationThreads;
+    }
+    public void setReadEventsValidateBodyCrc(boolean readEventsValidateBodyCrc) {
+      _readEventsValidateBodyCrc = readEventsValidateBodyCrc;
+    }
+    public boolean getReadEventsValidateBodyCrc() {
+      return _readEventsValidateBodyCrc;
+    }
+    public void setEnableBlockSummaryIndex(boolean enableBlockSummaryIndex) {
+      _enableBlockSummaryIndex = enableBlockSummaryIndex;
+    }
+    public boolean isEnableBlockSummaryIndex() {
+      return _enableBlockSummaryIndex;
+    }
+    /** A comma-separated list of numbers of buckets, e.g. "64,128" */
+    public void setBlockSummaryNumBuckets(String blockSummaryNumBuckets) {
+      _blockSummaryNumBuckets = blockSummaryNumBuckets;
+    }
+    public String getBlockSummaryNumBuckets() {
+      return _blockSummaryNumBuckets;
+    }
+    public void setStreamPartitionsThreads(int streamPartitionsThreads) {
+      _streamPartitionsThreads = streamPartitionsThreads;
+    }
+    public int getStreamPartitionsThreads() {
+      return _streamPartitionsThreads;
+    }
+    public void setTrackIterators(boolean trackIterators) {
+      _trackIterators = trackIterators;
+    }
+    public boolean isTrackIterators() {
+      return _trackIterators;
+    }
     public void setRestoreMMappedBuffers(boolean restoreMMappedBuffers) {
       _restoreMMappedBuffers = restoreMMappedBuffers;
     }
@@ -5250,12 +6376,82 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
 
       int initReadBufferSize = Math.min(_readBufferSize, realMaxEventsSize);
       LOG.info("Initial staging event buffer size: " + initReadBufferSize);
+
+      if (_readEventsValidationThreads < 0)
+      {
+        throw new InvalidConfigException("invalid readEventsValidationThreads: " +
+                                         _readEventsValidationThreads);
+      }
+      if (!_readEventsValidateBodyCrc)
+      {
+        LOG.info("readEvents will not validate event body CRCs");
+      }
+      if (_streamPartitionsThreads < 0)
+      {
+        throw new InvalidConfigException("invalid streamPartitionsThreads: " +
+                                         _streamPartitionsThreads);
+      }
+      long[] blockSummaryNumBuckets = parseBlockSummaryNumBuckets();
+      DbusEventPayloadDictionaries payloadDictionaries;
+      try
+      {
+        payloadDictionaries = DbusEventPayloadDictionaries.load(_payloadCompressionDictionaries);
+      }
+      catch (IOException e)
+      {
+        throw new InvalidConfigException("unable to load payloadCompressionDictionaries: " +
+                                         _payloadCompressionDictionaries, e);
+      }
+      catch (IllegalArgumentException e)
+      {
+        throw new InvalidConfigException("invalid payloadCompressionDictionaries: " +
+                                         _payloadCompressionDictionaries, e);
+      }
+      if (_enableBlockSummaryIndex)
+      {
+        if (!_enableScnIndex)
+        {
+          throw new InvalidConfigException("block summary index requires the scn index");
+        }
+        LOG.info("Event buffer block summaries enabled for bucket counts: " +
+                 Arrays.toString(blockSummaryNumBuckets));
+      }
       return new StaticConfig(_maxSize, _maxIndividualBufferSize, initReadBufferSize, realMaxEventsSize,
                               _scnIndexSize, allocPolicy,
                               mmapDirectory, _defaultMemUsage, queuePolicy, _existingBuffer,
                               _trace.build(), assertLevel, _bufferRemoveWaitPeriodSec,
                               _restoreMMappedBuffers, _restoreMMappedBuffersValidateEvents,
-                              _enableScnIndex);
+                              _restoreMMappedBuffersValidateChecksums, _payloadCompressionThreshold,
+                              payloadDictionaries, _trackIterators, _readEventsValidationThreads,
+                              _readEventsValidateBodyCrc, _enableBlockSummaryIndex,
+                              blockSummaryNumBuckets, _streamPartitionsThreads, _enableScnIndex);
+    }
+
+    private long[] parseBlockSummaryNumBuckets() throws InvalidConfigException
+    {
+      String str = null != _blockSummaryNumBuckets ? _blockSummaryNumBuckets.trim() : "";
+      if (str.isEmpty())
+      {
+        return new long[0];
+      }
+      String[] tokens = str.split(",");
+      long[] result = new long[tokens.length];
+      for (int i = 0; i < tokens.length; ++i)
+      {
+        try
+        {
+          result[i] = Long.parseLong(tokens[i].trim());
+        }
+        catch (NumberFormatException e)
+        {
+          throw new InvalidConfigException("invalid blockSummaryNumBuckets: " + _blockSummaryNumBuckets);
+        }
+        if (result[i] <= 0)
+        {
+          throw new InvalidConfigException("invalid blockSummaryNumBuckets: " + _blockSummaryNumBuckets);
+        }
+      }
+      return result;
     }
 
     public RelayEventTraceOptionBuilder getTrace()
@@ -5356,6 +6552,7 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
       }
 
       setClosed(); // done under writelock
+      setReadEventsValidation(0, _readEventsVerifyBodyCrc);
 
     } catch (DatabusException e) {
       _log.warn("for buffer " + toString(), e);
@@ -5508,6 +6705,20 @@ DbusEventBufferAppendable, DbusEventBufferStreamAppendable
     }
     mi.setVal(DbusEventBufferMetaInfo.BYTE_BUFFER_INFO, bufferInfo.toString());
 
+    if (_segmentChecksumsEnabled) {
+      long start = System.currentTimeMillis();
+      int [] highWaterMarks = getWrittenExtents();
+      long [] checksums = computeSegmentChecksums(_buffers, highWaterMarks);
+      DbusEventBufferMetaInfo.SegmentChecksum [] segmentChecksums =
+          new DbusEventBufferMetaInfo.SegmentChecksum[_buffers.length];
+      for (int i = 0; i < _buffers.length; i++) {
+        segmentChecksums[i] = new DbusEventBufferMetaInfo.SegmentChecksum(checksums[i], highWaterMarks[i]);
+      }
+      mi.setSegmentChecksums(segmentChecksums);
+      _log.info("computed checksums of " + _buffers.length + " buffers in " +
+                (System.currentTimeMillis() - start) + " msec");
+    }
+
     String currentWritePosition = Long.toString(_currentWritePosition.getPosition());
     mi.setVal(DbusEventBufferMetaInfo.CURRENT_WRITE_POSITION, currentWritePosition);
 
@@ -57,4 +57,16 @@ public interface DbusEventBufferBatchReadable
   * specify max DbusEvent version client supports
   */
  public void setClientMaxEventVersion(int version);
+
+ /**
+  * specify the max number of consecutive windows to compact (only the last event per source and
+  * key is streamed); 0 disables compaction
+  */
+ public void setCompactionWindows(int compactionWindows);
+
+ /**
+  * specify if the client can handle compressed payloads; otherwise they are decompressed before
+  * they are streamed
+  */
+ public void setAcceptCompressedPayloads(boolean acceptCompressedPayloads);
 }
@@ -53,6 +53,7 @@ public class DbusEventBufferMetaInfo {
   public static final String CURRENT_WRITE_POSITION = "currentWritePosition";
   public static final String BYTE_BUFFER_INFO = "ByteBufferInfo";
   public static final String NUM_BYTE_BUFFER = "ByteBufferNum";
+  public static final String SEGMENT_CHECKSUMS = "segmentChecksums";
 
     /**
    * helper class for buffer serialization
@@ -88,6 +89,38 @@ public class DbusEventBufferMetaInfo {
     }
   }
 
+  /**
+   * helper class for serialization of the checksum of a ByteBuffer segment. The checksum covers
+   * the bytes of the segment up to its high-water mark.
+   */
+  public static class SegmentChecksum {
+    public static final String DELIMITER = ",";
+    private final long _checksum;
+    private final int _highWaterMark;
+    public SegmentChecksum(long checksum, int highWaterMark) {
+      _checksum = checksum; _highWaterMark = highWaterMark;
+    }
+    SegmentChecksum(String fromString) throws DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException { // string format is "checksum,highWaterMark"
+      String [] info = fromString.split(DELIMITER);
+      if(info.length != 2)
+        throw new DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException("parsing SegmentChecksum failed for " + fromString);
+      try {
+        _checksum = Long.parseLong(info[0]);
+        _highWaterMark = Integer.parseInt(info[1]);
+      } catch (NumberFormatException e) {
+        throw new DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException(
+              "parsing SegmentChecksum failed for " + fromString + " " + e.getLocalizedMessage());
+      }
+    }
+    public long getChecksum() { return _checksum; }
+    public int getHighWaterMark() { return _highWaterMark; }
+
+    @Override
+    public String toString() {
+      return _checksum + DELIMITER + _highWaterMark;
+    }
+  }
+
     public static class DbusEventBufferMetaInfoException extends IOException {
       public DbusEventBufferMetaInfoException(String string) {
         super(string);
@@ -289,6 +322,32 @@ public class DbusEventBufferMetaInfo {
       return bInfos;
     }
 
+    public void setSegmentChecksums(DbusEventBufferMetaInfo.SegmentChecksum[] checksums) {
+      StringBuilder sb = new StringBuilder();
+      for (DbusEventBufferMetaInfo.SegmentChecksum c : checksums) {
+        sb.append(c.toString());
+        sb.append(" ");
+      }
+      setVal(SEGMENT_CHECKSUMS, sb.toString());
+    }
+
+    /**
+     * reads the checksums of the ByteBuffer segments
+     * @return the checksums or null if they were not saved
+     * @throws DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException
+     */
+    public DbusEventBufferMetaInfo.SegmentChecksum[] getSegmentChecksums() throws DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException {
+      String checksumsAll = _info.get(SEGMENT_CHECKSUMS);
+      if(checksumsAll == null)
+        return null;
+      String [] checksums = checksumsAll.trim().split(" ");
+      DbusEventBufferMetaInfo.SegmentChecksum [] result = new DbusEventBufferMetaInfo.SegmentChecksum[checksums.length];
+      for(int i=0; i<checksums.length; i++) {
+        result[i] = new DbusEventBufferMetaInfo.SegmentChecksum(checksums[i]);
+      }
+      return result;
+    }
+
     public void saveAndClose() throws IOException {
       // update version
       setVal("version", Integer.toString(META_INFO_VERSION));
@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -36,6 +37,11 @@ import java.util.NavigableSet;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
@@ -47,6 +53,7 @@ import com.linkedin.databus.core.data_model.PhysicalSource;
 import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
 import com.linkedin.databus.core.monitoring.mbean.StatsCollectors;
 import com.linkedin.databus.core.util.InvalidConfigException;
+import com.linkedin.databus.core.util.NamedThreadFactory;
 import com.linkedin.databus2.core.BufferNotFoundException;
 import com.linkedin.databus2.core.DatabusException;
 import com.linkedin.databus2.core.filter.AllowAllDbusFilter;
@@ -91,6 +98,9 @@ public class DbusEventBufferMult
   // specify if we want to drop SCN less then current when adding new events to this buffers
   boolean _dropOldEvents = false;
 
+  // reads the partitions of multi-partition stream requests in parallel; null for serial reads
+  private volatile ExecutorService _streamExecutor = null;
+
   private final double _nanoSecsInMSec = 1000000.0;
   public static final String BAK_DIRNAME_SUFFIX = ".BAK";
 
@@ -109,6 +119,7 @@ public class DbusEventBufferMult
   throws InvalidConfigException
   {
     _eventFactory = eventFactory;
+    setStreamPartitionsThreads(config.getStreamPartitionsThreads());
 
     if(pConfigs == null) {
       // if we expect to get partitions configs from relay - we can create an EMPTY relay
@@ -278,6 +289,10 @@ public class DbusEventBufferMult
 
     if(buf != null) {
       LOG.info("Adding new buffer. Buffer " + buf.hashCode() + " already exists for: " + pConfig);
+      // the buffer serves the logical sources of all physical sources of the partition
+      for(LogicalSourceStaticConfig lSrc: pConfig.getSources()) {
+        updateLogicalSourceMapping(pKey, lSrc.getLogicalSource(), lSrc.getPartition());
+      }
     } else {
       if (pConfig.isDbusEventBufferSet())
       {
@@ -372,6 +387,8 @@ public class DbusEventBufferMult
 
   public synchronized void close()
   {
+    setStreamPartitionsThreads(0);
+
     if (_mmapDirectory != null)
     {
       // Move all meta files. We will create new ones when each buffer gets closed.
@@ -628,6 +645,22 @@ public class DbusEventBufferMult
     _logicalId2LogicalSource.put(lSource.getId(), lSource);
   }
 
+  /**
+   * Sets the number of threads used to read the physical partitions of multi-partition stream
+   * requests in parallel; 0 means that the partitions are read serially by the request thread.
+   */
+  public void setStreamPartitionsThreads(int threadsNum)
+  {
+    ExecutorService oldExecutor = _streamExecutor;
+    _streamExecutor = threadsNum > 0 ?
+        Executors.newFixedThreadPool(threadsNum, new NamedThreadFactory("streamPartitions", true)) :
+        null;
+    if (null != oldExecutor)
+    {
+      oldExecutor.shutdown();
+    }
+  }
+
   public void setDropOldEvents(boolean val) {
     _dropOldEvents = val;
     for(DbusEventBuffer buf : _uniqBufs) {
@@ -663,6 +696,42 @@ public class DbusEventBufferMult
 
   }
 
+  /**
+   * Collects the events streamed from one partition by a parallel stream request until they can be
+   * written to the response in the partitions order.
+   */
+  static class StagingWritableByteChannel implements WritableByteChannel {
+    private byte[] _bytes = new byte[1024];
+    private int _size = 0;
+
+    public int size() {
+      return _size;
+    }
+
+    public void writeTo(WritableByteChannel ch) throws IOException {
+      ByteBuffer src = ByteBuffer.wrap(_bytes, 0, _size);
+      while (src.hasRemaining() && ch.write(src) > 0);
+      if (src.hasRemaining()) {
+        throw new IOException("unable to write staged events: " + src.remaining() + " of " + _size
+                              + " bytes left");
+      }
+    }
+
+    @Override public boolean isOpen() { return true; }
+    @Override public void close() { }
+    @Override
+    public int write(ByteBuffer src)
+    {
+      int len = src.remaining();
+      if (_size + len > _bytes.length) {
+        _bytes = Arrays.copyOf(_bytes, Math.max(2 * _bytes.length, _size + len));
+      }
+      src.get(_bytes, _size, len);
+      _size += len;
+      return len;
+    }
+  }
+
   /**
    * this object is created with the list of source and the checkpoints
    * allows to read from different buffers (mapped by the sources) one window at a time
@@ -671,6 +740,8 @@ public class DbusEventBufferMult
     private final NavigableSet<PhysicalPartitionKey> _pKeys;
     CheckpointMult _checkPoints;
     int _clientEventVersion = 0;
+    int _compactionWindows = 0;
+    boolean _acceptCompressedPayloads = false;
 	  private final StatsCollectors<DbusEventsStatisticsCollector> _statsCollectors;
 
     public DbusEventBufferBatchReader(CheckpointMult cpMult,
@@ -805,43 +876,63 @@ public class DbusEventBufferMult
       // buffer, then send back the size of the smallest of such events to the client. It could well be
       // that the client can make progress in other partitions, but one partition could be blocked forever
       // because of this event if the client was offering its full buffer size.
+      //by default we stream one Window worth of events
+      if(_pKeys.size() == 1) // for single buffer just read as much as you can
+        mode = DbusEventBuffer.StreamingMode.CONTINUOUS;
+      ExecutorService streamExecutor = _pKeys.size() > 1 ? _streamExecutor : null;
+
       int minPendingEventSize = 0;
+      boolean partialWindowSent = false;
       boolean done = false;
       while (!done) {
         boolean somethingStreamed = false;
 
+        // with a stream executor, all partitions of the pass are first read in parallel into
+        // staging channels, each with an equal share of the remaining fetch size
+        Map<PhysicalPartitionKey, StagedPartition> stagedPartitions = null;
+        if (null != streamExecutor && workingSet.size() > 1) {
+          stagedPartitions = stagePartitions(streamExecutor, workingSet, streamFromLatestState,
+                                             streamFromLatestScn,
+                                             (batchFetchSize - batchFetchSoFar) / workingSet.size(),
+                                             encoding, filter);
+        }
+
         // go over relevant buffers
         for(PhysicalPartitionKey pKey : workingSet) {
-          DbusEventBuffer buf = _bufsMap.get(pKey);
-          if (null == buf)
-          {
-            // in this case we want to disconnect the client
-        	  String errMsg = "Buffer not found for physicalPartitionKey " + pKey;
-        	  LOG.error(errMsg);
-        	  throw new BufferNotFoundException(errMsg);
-          }
+          DbusEventBuffer buf = getPartitionBuffer(pKey);
           PhysicalPartition pPartition = pKey.getPhysicalPartition();
-          DbusEventsStatisticsCollector statsCollector = _statsCollectors == null ? null : _statsCollectors.getStatsCollector(pPartition.toSimpleString());
-
-          Checkpoint cp=null;
-          cp = _checkPoints.getCheckpoint(pKey.getPhysicalPartition());// get the corresponding checkpoint
-          if(debugEnabled)
-            LOG.debug("get Checkpoint by pPartition" + pPartition + ";cp=" + cp);
-          if(cp == null) {
-            cp = new Checkpoint(); // create a checkpoint, NOTE: these values won't get back to V2 callers
-            cp.setFlexible();
-            _checkPoints.addCheckpoint(pPartition, cp);
+          Checkpoint cp = getPartitionCheckpoint(pPartition);
+          int maxSize = batchFetchSize - batchFetchSoFar;
+
+          StreamEventsResult result = null;
+          StagedPartition staged = null == stagedPartitions ? null : stagedPartitions.get(pKey);
+          boolean streamFromLatestScnForPartition;
+          if (null != staged) {
+            streamFromLatestScnForPartition = staged._streamFromLatestScn;
+            result = staged.getResult();
+            if (staged._channel.size() <= maxSize && (!staged.isSizeLimited() || staged._maxSize >= maxSize)) {
+              // the staged events are exactly what a serial read with the remaining size would return
+              try {
+                staged._channel.writeTo(ch);
+              }
+              catch (IOException e) {
+                throw new DatabusRuntimeException("error writing staged events of partition " + pPartition, e);
+              }
+              staged.mergeStats();
+              cp = staged._checkpoint;
+            } else {
+              if (debugEnabled)
+                LOG.debug("re-reading partition " + pPartition + " that did not fit its staged share");
+              result = null;
+            }
+          } else {
+            streamFromLatestScnForPartition = computeStreamFromLatestScnForPartition(pKey, streamFromLatestState, streamFromLatestScn);
+          }
+          if (null == result) {
+            result = buf.streamEvents(cp, ch, createStreamEventsArgs(pPartition, maxSize, mode,
+                                                                     streamFromLatestScnForPartition,
+                                                                     encoding, filter));
           }
-
-          //by default we stream one Window worth of events
-          if(_pKeys.size() == 1) // for single buffer just read as much as you can
-            mode = DbusEventBuffer.StreamingMode.CONTINUOUS;
-
-          StreamEventsArgs args = new StreamEventsArgs(batchFetchSize - batchFetchSoFar);
-          boolean streamFromLatestScnForPartition = computeStreamFromLatestScnForPartition(pKey, streamFromLatestState, streamFromLatestScn);
-          args.setEncoding(encoding).setStreamFromLatestScn(streamFromLatestScnForPartition);
-          args.setSMode(mode).setFilter(filter).setStatsCollector(statsCollector).setMaxClientEventVersion(_clientEventVersion);
-          StreamEventsResult result =  buf.streamEvents(cp, ch, args);
           int numEvents = result.getNumEventsStreamed();
           if (numEvents == 0 && result.getSizeOfPendingEvent() > 0)
           {
@@ -872,8 +963,20 @@ public class DbusEventBufferMult
           if(batchFetchSoFar >=  batchFetchSize) {
             break;
           }
+          if (cp.isPartialWindow()) {
+            // only one partition can have a partial window; the next request has to finish it first
+            partialWindowSent = true;
+            break;
+          }
+        }
+        if (null != stagedPartitions) {
+          // the staged reads of the partitions after a full batch are not needed; reads that have
+          // already started still complete, but their events are not counted as they are not sent
+          for (StagedPartition staged: stagedPartitions.values()) {
+            staged._result.cancel(false);
+          }
         }
-        if (batchFetchSoFar >= batchFetchSize) {
+        if (batchFetchSoFar >= batchFetchSize || partialWindowSent) {
           done = true;
         } else if (!somethingStreamed && (workingSet.size() == _pKeys.size())) {
           done = true;
@@ -892,6 +995,95 @@ public class DbusEventBufferMult
                                     minPendingEventSize > 0 ? minPendingEventSize : 0);
     }
 
+    private DbusEventBuffer getPartitionBuffer(PhysicalPartitionKey pKey) throws BufferNotFoundException
+    {
+      DbusEventBuffer buf = _bufsMap.get(pKey);
+      if (null == buf)
+      {
+        // in this case we want to disconnect the client
+        String errMsg = "Buffer not found for physicalPartitionKey " + pKey;
+        LOG.error(errMsg);
+        throw new BufferNotFoundException(errMsg);
+      }
+      return buf;
+    }
+
+    private Checkpoint getPartitionCheckpoint(PhysicalPartition pPartition)
+    {
+      Checkpoint cp = _checkPoints.getCheckpoint(pPartition);// get the corresponding checkpoint
+      if(LOG.isDebugEnabled())
+        LOG.debug("get Checkpoint by pPartition" + pPartition + ";cp=" + cp);
+      if(cp == null) {
+        cp = new Checkpoint(); // create a checkpoint, NOTE: these values won't get back to V2 callers
+        cp.setFlexible();
+        _checkPoints.addCheckpoint(pPartition, cp);
+      }
+      return cp;
+    }
+
+    private StreamEventsArgs createStreamEventsArgs(PhysicalPartition pPartition,
+                                                    int maxSize,
+                                                    DbusEventBuffer.StreamingMode mode,
+                                                    boolean streamFromLatestScnForPartition,
+                                                    Encoding encoding,
+                                                    DbusFilter filter)
+    {
+      DbusEventsStatisticsCollector statsCollector = _statsCollectors == null ? null : _statsCollectors.getStatsCollector(pPartition.toSimpleString());
+      StreamEventsArgs args = new StreamEventsArgs(maxSize);
+      args.setEncoding(encoding).setStreamFromLatestScn(streamFromLatestScnForPartition);
+      args.setSMode(mode).setFilter(filter).setStatsCollector(statsCollector).setMaxClientEventVersion(_clientEventVersion);
+      args.setCompactionWindows(_compactionWindows);
+      args.setAcceptCompressedPayloads(_acceptCompressedPayloads);
+      return args;
+    }
+
+    /**
+     * Reads one window from each partition of the working set in parallel into staging channels.
+     * The reads use copies of the partition checkpoints so that nothing changes for the partitions
+     * whose staged events are not sent. Read errors are reported when the partition is reached in
+     * the partitions order.
+     */
+    private Map<PhysicalPartitionKey, StagedPartition> stagePartitions(ExecutorService executor,
+                                                                       NavigableSet<PhysicalPartitionKey> workingSet,
+                                                                       Set<PhysicalPartitionKey> streamFromLatestState,
+                                                                       boolean streamFromLatestScn,
+                                                                       int maxSize,
+                                                                       Encoding encoding,
+                                                                       DbusFilter filter)
+    {
+      Map<PhysicalPartitionKey, StagedPartition> result =
+          new HashMap<PhysicalPartitionKey, StagedPartition>(workingSet.size() * 2);
+      for (PhysicalPartitionKey pKey: workingSet)
+      {
+        final DbusEventBuffer buf = _bufsMap.get(pKey);
+        if (null == buf)
+        {
+          continue;
+        }
+        PhysicalPartition pPartition = pKey.getPhysicalPartition();
+        boolean streamFromLatestScnForPartition = computeStreamFromLatestScnForPartition(pKey, streamFromLatestState, streamFromLatestScn);
+        final StreamEventsArgs args = createStreamEventsArgs(pPartition, maxSize,
+                                                             DbusEventBuffer.StreamingMode.WINDOW_AT_TIME,
+                                                             streamFromLatestScnForPartition,
+                                                             encoding, filter);
+        final StagedPartition staged = new StagedPartition(getPartitionCheckpoint(pPartition).clone(),
+                                                           maxSize, streamFromLatestScnForPartition,
+                                                           args.getDbusEventsStatisticsCollector());
+        // the events of a staged read are counted only if they are sent
+        args.setStatsCollector(staged._stats);
+        staged._result = executor.submit(new Callable<StreamEventsResult>()
+        {
+          @Override
+          public StreamEventsResult call() throws Exception
+          {
+            return buf.streamEvents(staged._checkpoint, staged._channel, args);
+          }
+        });
+        result.put(pKey, staged);
+      }
+      return result;
+    }
+
     @Override
     public CheckpointMult getCheckpointMult()
     {
@@ -904,6 +1096,18 @@ public class DbusEventBufferMult
       _clientEventVersion = version;
     }
 
+    @Override
+    public void setCompactionWindows(int compactionWindows)
+    {
+      _compactionWindows = compactionWindows;
+    }
+
+    @Override
+    public void setAcceptCompressedPayloads(boolean acceptCompressedPayloads)
+    {
+      _acceptCompressedPayloads = acceptCompressedPayloads;
+    }
+
     /**
      * A helper method to deal with enableStreamFromLatestScn logic between DbusEventBufferMult and DbusEventBuffer
      * If streamFromLatest==true, invoke streamEvents call on DbusEventBuffer exactly once with streamFromLatest==true.
@@ -937,6 +1141,63 @@ public class DbusEventBufferMult
     }
   }
 
+  /** The events read from one partition by a parallel stream request */
+  static class StagedPartition
+  {
+    final Checkpoint _checkpoint;
+    final int _maxSize;
+    final boolean _streamFromLatestScn;
+    final StagingWritableByteChannel _channel = new StagingWritableByteChannel();
+    /** The stats of the staged read, registered with the partition stats only when the events are sent */
+    final DeferredDbusEventsStatisticsCollector _stats;
+    Future<StreamEventsResult> _result;
+
+    StagedPartition(Checkpoint checkpoint, int maxSize, boolean streamFromLatestScn,
+                    DbusEventsStatisticsCollector partitionStats)
+    {
+      _checkpoint = checkpoint;
+      _maxSize = maxSize;
+      _streamFromLatestScn = streamFromLatestScn;
+      _stats = null == partitionStats ? null : new DeferredDbusEventsStatisticsCollector(partitionStats);
+    }
+
+    /** Counts the staged events in the partition stats once they have been sent */
+    void mergeStats()
+    {
+      if (null != _stats) _stats.flush();
+    }
+
+    StreamEventsResult getResult() throws ScnNotFoundException, OffsetNotFoundException
+    {
+      try
+      {
+        return _result.get();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new DatabusRuntimeException("interrupted while streaming partitions", e);
+      }
+      catch (ExecutionException e)
+      {
+        Throwable cause = e.getCause();
+        if (cause instanceof ScnNotFoundException) throw (ScnNotFoundException)cause;
+        if (cause instanceof OffsetNotFoundException) throw (OffsetNotFoundException)cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+        throw new DatabusRuntimeException("error streaming partition", cause);
+      }
+    }
+
+    /**
+     * If the read may have stopped because of the size limit: it ended in the middle of a window or
+     * the next event did not fit
+     */
+    boolean isSizeLimited() throws ScnNotFoundException, OffsetNotFoundException
+    {
+      return _checkpoint.getWindowOffset() >= 0 || getResult().getSizeOfPendingEvent() > 0;
+    }
+  }
+
   /**
    * @return number of unique buffers
    */
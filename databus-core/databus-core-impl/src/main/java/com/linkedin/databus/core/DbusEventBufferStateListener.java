@@ -0,0 +1,38 @@
+package com.linkedin.databus.core;
+/*
+*
+* Copyright 2013 LinkedIn Corp. All rights reserved
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+*/
+
+
+
+/**
+ * Listener for changes of the readable events or the free space of a {@link DbusEventBuffer}. It
+ * lets readers and writers which do not own a thread (e.g. actors on a shared executor) react to
+ * the buffer instead of polling it.
+ *
+ * <p>The callbacks are invoked while the buffer lock is held; they must be quick and must not
+ * block or call back into the buffer.
+ */
+public interface DbusEventBufferStateListener
+{
+  /** New events have become readable in the buffer */
+  public void onEventsAppended();
+
+  /** Space has been freed in the buffer */
+  public void onSpaceFreed();
+}
@@ -41,6 +41,8 @@ public class DbusEventInfo
   private short _payloadSchemaVersion;
   /** Flag to determine if the event is replicated into the source DB **/
   private boolean _isReplicated;
+  /** Flag to determine if the payload bytes are compressed with {@link DbusEventPayloadCompressor} */
+  private boolean _payloadCompressed;
 
   private DbusEventPart _metadata;
 
@@ -93,6 +95,27 @@ public class DbusEventInfo
     _metadata = null;
   }
 
+  /** Creates a shallow copy: the payload, schema id and metadata are shared with the original */
+  public DbusEventInfo(DbusEventInfo other)
+  {
+    super();
+    _opCode = other._opCode;
+    _sequenceId = other._sequenceId;
+    _pPartitionId = other._pPartitionId;
+    _lPartitionId = other._lPartitionId;
+    _timeStampInNanos = other._timeStampInNanos;
+    _srcId = other._srcId;
+    _payloadSchemaMd5 = other._payloadSchemaMd5;
+    _payloadBuffer = other._payloadBuffer;
+    _enableTracing = other._enableTracing;
+    _autocommit = other._autocommit;
+    _eventSerializationVersion = other._eventSerializationVersion;
+    _payloadSchemaVersion = other._payloadSchemaVersion;
+    _isReplicated = other._isReplicated;
+    _payloadCompressed = other._payloadCompressed;
+    _metadata = other._metadata;
+  }
+
 
   /** if opCode value is null - it means use default */
   public DbusOpcode getOpCode()
@@ -228,6 +251,16 @@ public class DbusEventInfo
     _isReplicated = replicated;
   }
 
+  public boolean isPayloadCompressed()
+  {
+    return _payloadCompressed;
+  }
+
+  public void setPayloadCompressed(boolean payloadCompressed)
+  {
+    _payloadCompressed = payloadCompressed;
+  }
+
   public DbusEventPart getMetadata()
   {
     return _metadata;
@@ -250,6 +283,7 @@ public class DbusEventInfo
         ", _eventSerializationVersion=" + _eventSerializationVersion +
         ", _payloadSchemaVersion=" + _payloadSchemaVersion +
         ", _isReplicated=" + _isReplicated +
+        ", _payloadCompressed=" + _payloadCompressed +
         ", _metadata=" + _metadata +
         '}';
   }
@@ -43,6 +43,12 @@ public abstract class DbusEventInternalReadable extends DbusEvent
 
   public abstract long headerCrc();
   protected abstract EventScanStatus scanEvent(boolean logErrors);
+  /**
+   * Same as {@link #scanEvent(boolean)} but the verification of the body CRC can be skipped, e.g.
+   * if it has already been verified or the event comes from a trusted source. The header CRC is
+   * always verified.
+   */
+  protected abstract EventScanStatus scanEvent(boolean logErrors, boolean verifyBodyCrc);
 
   /**
    * <pre>
@@ -67,6 +73,11 @@ public abstract class DbusEventInternalReadable extends DbusEvent
    */
   public abstract short schemaVersion();
   public abstract boolean isValid(boolean logErrors);
+  /**
+   * Same as {@link #isValid(boolean)} but the verification of the body CRC can be skipped, e.g. for
+   * events whose CRCs were verified when they were stored.
+   */
+  public abstract boolean isValid(boolean logErrors, boolean verifyBodyCrc);
   protected abstract HeaderScanStatus scanHeader(boolean logErrors);
   protected abstract boolean isPartial();
   public abstract boolean isControlSrcId();
@@ -101,11 +101,19 @@ public abstract class DbusEventInternalWritable extends DbusEventInternalReadabl
   public abstract void recomputeCrcsAfterEspressoRewrite();
 
   public static DbusEventInternalWritable convertToDifferentVersion(DbusEventInternalWritable event, byte toVer) {
+    return convertToDifferentVersion(event, toVer, new DbusEventPayloadDictionaries());
+  }
+
+  /**
+   * @param dictionaries    the dictionaries to decompress compressed payloads with
+   */
+  public static DbusEventInternalWritable convertToDifferentVersion(DbusEventInternalWritable event, byte toVer,
+                                                                    DbusEventPayloadDictionaries dictionaries) {
     byte fromVer = event.getVersion();
     // currently the only conversion we support is from V2 to V1
     if(fromVer == DbusEventFactory.DBUS_EVENT_V2 && toVer == DbusEventFactory.DBUS_EVENT_V1)
       try {
-        return ((DbusEventV2)event).convertToV1();
+        return ((DbusEventV2)event).convertToV1(dictionaries);
       } catch (KeyTypeNotImplementedException e) {
         throw new DatabusRuntimeException("failed to convert V2 event to V1, because of unsupported key type:" +
               e.getLocalizedMessage());
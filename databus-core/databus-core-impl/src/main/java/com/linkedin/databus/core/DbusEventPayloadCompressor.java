@@ -0,0 +1,283 @@
+package com.linkedin.databus.core;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Compresses and decompresses the payloads of {@link DbusEventV2} events.
+ *
+ * <p>A compressed payload is stored in the payload part of the event as:
+ * <pre>
+ *   Uncompressed length (4 bytes, big-endian)
+ *   zlib stream
+ * </pre>
+ * The zlib stream may use a preset dictionary. Dictionaries are configured per source id and
+ * payload schema version at the producer. The zlib stream carries the Adler-32 checksum of the
+ * dictionary, which is used to look it up when decompressing, so consumers only have to
+ * {@link DbusEventPayloadDictionaries#register(byte[]) register} the same dictionaries.
+ *
+ * <p>The CRCs of the event are computed over the stored (compressed) bytes, so the relay can
+ * validate, store and ship the events without decompressing them.
+ */
+public class DbusEventPayloadCompressor
+{
+  public static final String MODULE = DbusEventPayloadCompressor.class.getName();
+  public static final Logger LOG = Logger.getLogger(MODULE);
+
+  private static final int UNCOMPRESSED_LEN_SIZE = 4;
+
+  private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>()
+  {
+    @Override
+    protected Inflater initialValue()
+    {
+      return new Inflater();
+    }
+  };
+
+  private final int _minPayloadSize;
+  private final int _level;
+  private final DbusEventPayloadDictionaries _dictionaries;
+  private final ThreadLocal<Deflater> _deflater;
+  private final ThreadLocal<byte[]> _scratch;
+
+  /**
+   * @param minPayloadSize    payloads smaller than this size are not compressed
+   * @param level             the zlib compression level (0-9)
+   * @param dictionaries      the dictionaries to compress and decompress with
+   */
+  public DbusEventPayloadCompressor(int minPayloadSize, final int level,
+                                    DbusEventPayloadDictionaries dictionaries)
+  {
+    _minPayloadSize = minPayloadSize;
+    _level = level;
+    _dictionaries = dictionaries;
+    _deflater = new ThreadLocal<Deflater>()
+    {
+      @Override
+      protected Deflater initialValue()
+      {
+        return new Deflater(level);
+      }
+    };
+    _scratch = new ThreadLocal<byte[]>()
+    {
+      @Override
+      protected byte[] initialValue()
+      {
+        return new byte[0];
+      }
+    };
+  }
+
+  public DbusEventPayloadCompressor(int minPayloadSize, DbusEventPayloadDictionaries dictionaries)
+  {
+    this(minPayloadSize, Deflater.DEFAULT_COMPRESSION, dictionaries);
+  }
+
+  public DbusEventPayloadCompressor(int minPayloadSize)
+  {
+    this(minPayloadSize, new DbusEventPayloadDictionaries());
+  }
+
+  public int getMinPayloadSize()
+  {
+    return _minPayloadSize;
+  }
+
+  public int getLevel()
+  {
+    return _level;
+  }
+
+  public DbusEventPayloadDictionaries getDictionaries()
+  {
+    return _dictionaries;
+  }
+
+  /**
+   * Sets the preset dictionary used to compress the payloads of the given source and schema
+   * version. The dictionary is also registered for decompression.
+   */
+  public void addDictionary(short srcId, short schemaVersion, byte[] dictionary)
+  {
+    _dictionaries.add(srcId, schemaVersion, dictionary);
+  }
+
+  /**
+   * Compresses a payload.
+   * @return the compressed payload or null if the payload is below the size threshold or does not
+   *         become smaller
+   */
+  public ByteBuffer compress(short srcId, short schemaVersion, ByteBuffer payload)
+  {
+    int len = null == payload ? 0 : payload.remaining();
+    if (len < _minPayloadSize || 0 == len)
+    {
+      return null;
+    }
+
+    byte[] input;
+    int inputOffset;
+    if (payload.hasArray())
+    {
+      input = payload.array();
+      inputOffset = payload.arrayOffset() + payload.position();
+    }
+    else
+    {
+      input = getScratch(len);
+      inputOffset = 0;
+      payload.duplicate().get(input, 0, len);
+    }
+
+    // Compressed bytes are only useful if they are fewer than the original ones
+    byte[] output = new byte[len];
+    Deflater deflater = _deflater.get();
+    deflater.reset();
+    byte[] dictionary = _dictionaries.getForSource(srcId, schemaVersion);
+    if (null != dictionary)
+    {
+      deflater.setDictionary(dictionary);
+    }
+    deflater.setInput(input, inputOffset, len);
+    deflater.finish();
+    int outLen = UNCOMPRESSED_LEN_SIZE;
+    while (!deflater.finished() && outLen < output.length)
+    {
+      outLen += deflater.deflate(output, outLen, output.length - outLen);
+    }
+    if (!deflater.finished())
+    {
+      return null;
+    }
+
+    ByteBuffer result = ByteBuffer.wrap(output, 0, outLen);
+    result.putInt(0, len);
+    return result;
+  }
+
+  private byte[] getScratch(int len)
+  {
+    byte[] scratch = _scratch.get();
+    if (scratch.length < len)
+    {
+      scratch = new byte[len];
+      _scratch.set(scratch);
+    }
+    return scratch;
+  }
+
+  /**
+   * Decompresses a payload with the dictionaries of this compressor
+   * @see #decompress(ByteBuffer, DbusEventPayloadDictionaries)
+   */
+  public byte[] decompress(ByteBuffer compressed)
+  {
+    return decompress(compressed, _dictionaries);
+  }
+
+  /**
+   * @return the payload of the event, decompressed if necessary
+   * @throws DatabusRuntimeException if the payload is corrupted or the dictionary is unknown
+   */
+  public static ByteBuffer getUncompressedValue(DbusEvent event, DbusEventPayloadDictionaries dictionaries)
+  {
+    ByteBuffer value = event.value();
+    if (null == value || !event.isPayloadCompressed())
+    {
+      return value;
+    }
+    return ByteBuffer.wrap(decompress(value, dictionaries));
+  }
+
+  /**
+   * Decompresses a payload stored by {@link #compress(short, short, ByteBuffer)}. Does not change
+   * the position of the buffer.
+   * @param dictionaries      the dictionaries to look up the preset dictionary of the payload
+   * @throws DatabusRuntimeException if the payload is corrupted or the dictionary is unknown
+   */
+  public static byte[] decompress(ByteBuffer compressed, DbusEventPayloadDictionaries dictionaries)
+  {
+    int len = compressed.remaining();
+    if (len < UNCOMPRESSED_LEN_SIZE)
+    {
+      throw new DatabusRuntimeException("invalid compressed payload length: " + len);
+    }
+    ByteBuffer buf = compressed.duplicate().order(ByteOrder.BIG_ENDIAN);
+    int uncompressedLen = buf.getInt();
+    byte[] input = new byte[len - UNCOMPRESSED_LEN_SIZE];
+    buf.get(input);
+
+    byte[] result = new byte[uncompressedLen];
+    Inflater inflater = INFLATER.get();
+    inflater.reset();
+    inflater.setInput(input);
+    try
+    {
+      int n = 0;
+      while (n < uncompressedLen)
+      {
+        int m = inflater.inflate(result, n, uncompressedLen - n);
+        if (0 == m)
+        {
+          if (inflater.needsDictionary())
+          {
+            byte[] dictionary = dictionaries.getById(inflater.getAdler());
+            if (null == dictionary)
+            {
+              throw new DatabusRuntimeException("unknown compression dictionary: " + inflater.getAdler());
+            }
+            inflater.setDictionary(dictionary);
+          }
+          else if (inflater.finished() || inflater.needsInput())
+          {
+            break;
+          }
+        }
+        n += m;
+      }
+      if (n != uncompressedLen)
+      {
+        throw new DatabusRuntimeException("truncated compressed payload: expected " + uncompressedLen +
+                                          " bytes; got " + n);
+      }
+    }
+    catch (DataFormatException e)
+    {
+      throw new DatabusRuntimeException("corrupted compressed payload", e);
+    }
+    return result;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "{\"minPayloadSize\":" + _minPayloadSize + ",\"level\":" + _level +
+           ",\"dictionaries\":" + _dictionaries + "}";
+  }
+}
@@ -0,0 +1,170 @@
+package com.linkedin.databus.core;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+
+/**
+ * The preset dictionaries used by {@link DbusEventPayloadCompressor} to compress and decompress
+ * payloads.
+ *
+ * <p>Each dictionary is known by its id (its Adler-32 checksum), which the zlib stream carries, so
+ * readers can decompress the payload without knowing the source of the event. Writers
+ * additionally map a source id and payload schema version to the dictionary to compress with.
+ *
+ * <p>Each {@link DbusEventBuffer} gets its dictionaries from its
+ * {@link DbusEventBuffer.StaticConfig#getPayloadDictionaries() configuration}.
+ */
+public class DbusEventPayloadDictionaries
+{
+  /** All dictionaries by their id */
+  private final ConcurrentHashMap<Long, byte[]> _byId = new ConcurrentHashMap<Long, byte[]>();
+  /** The dictionaries used for compression by source id and payload schema version */
+  private final ConcurrentHashMap<Integer, byte[]> _bySource = new ConcurrentHashMap<Integer, byte[]>();
+
+  /**
+   * Sets the dictionary used to compress the payloads of the given source and schema version. The
+   * dictionary is also registered for decompression.
+   * @return the id of the dictionary
+   */
+  public long add(short srcId, short schemaVersion, byte[] dictionary)
+  {
+    byte[] copy = dictionary.clone();
+    _bySource.put(sourceKey(srcId, schemaVersion), copy);
+    return register(copy);
+  }
+
+  /**
+   * Registers a dictionary so that payloads compressed with it can be decompressed
+   * @return the id of the dictionary (its Adler-32 checksum)
+   */
+  public long register(byte[] dictionary)
+  {
+    long id = getId(dictionary);
+    _byId.put(id, dictionary.clone());
+    return id;
+  }
+
+  /** @return the dictionary with the given id or null if it is unknown */
+  public byte[] getById(long id)
+  {
+    return _byId.get(id);
+  }
+
+  /** @return the dictionary to compress the payloads of the source or null if there is none */
+  public byte[] getForSource(short srcId, short schemaVersion)
+  {
+    return _bySource.get(sourceKey(srcId, schemaVersion));
+  }
+
+  /** @return the number of the known dictionaries */
+  public int size()
+  {
+    return _byId.size();
+  }
+
+  public static long getId(byte[] dictionary)
+  {
+    Adler32 adler = new Adler32();
+    adler.update(dictionary, 0, dictionary.length);
+    return adler.getValue();
+  }
+
+  private static Integer sourceKey(short srcId, short schemaVersion)
+  {
+    return (srcId << 16) | (schemaVersion & 0xFFFF);
+  }
+
+  /**
+   * Loads dictionaries from files.
+   * @param  spec     a comma-separated list of srcId:schemaVersion:path entries; an empty or null
+   *                  string means no dictionaries
+   * @throws IllegalArgumentException if the spec is malformed
+   * @throws IOException if a dictionary file cannot be read
+   */
+  public static DbusEventPayloadDictionaries load(String spec) throws IOException
+  {
+    DbusEventPayloadDictionaries result = new DbusEventPayloadDictionaries();
+    if (null == spec || spec.trim().isEmpty())
+    {
+      return result;
+    }
+    for (String entry: spec.split(","))
+    {
+      String[] parts = entry.trim().split(":", 3);
+      if (3 != parts.length)
+      {
+        throw new IllegalArgumentException("srcId:schemaVersion:path expected: " + entry);
+      }
+      short srcId;
+      short schemaVersion;
+      try
+      {
+        srcId = Short.parseShort(parts[0].trim());
+        schemaVersion = Short.parseShort(parts[1].trim());
+      }
+      catch (NumberFormatException e)
+      {
+        throw new IllegalArgumentException("invalid source id or schema version: " + entry, e);
+      }
+      result.add(srcId, schemaVersion, readFile(new File(parts[2].trim())));
+    }
+    return result;
+  }
+
+  private static byte[] readFile(File file) throws IOException
+  {
+    long len = file.length();
+    if (len <= 0 || len > Integer.MAX_VALUE)
+    {
+      throw new IOException("invalid dictionary file: " + file.getAbsolutePath());
+    }
+    byte[] result = new byte[(int)len];
+    FileInputStream in = new FileInputStream(file);
+    try
+    {
+      int n = 0;
+      while (n < result.length)
+      {
+        int m = in.read(result, n, result.length - n);
+        if (m < 0)
+        {
+          throw new IOException("unexpected end of dictionary file: " + file.getAbsolutePath());
+        }
+        n += m;
+      }
+    }
+    finally
+    {
+      in.close();
+    }
+    return result;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "{\"numDictionaries\":" + _byId.size() + ",\"numSources\":" + _bySource.size() + "}";
+  }
+}
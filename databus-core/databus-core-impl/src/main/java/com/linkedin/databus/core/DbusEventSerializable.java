@@ -347,6 +347,12 @@ public abstract class DbusEventSerializable extends DbusEventInternalWritable
     return (_buf != null) && (scanEvent(logErrors) == EventScanStatus.OK);
   }
 
+  @Override
+  public boolean isValid(boolean logErrors, boolean verifyBodyCrc)
+  {
+    return (_buf != null) && (scanEvent(logErrors, verifyBodyCrc) == EventScanStatus.OK);
+  }
+
   @Override
   public ByteBuffer getRawBytes()
   {
@@ -767,6 +767,11 @@ implements Cloneable
    */
   @Override
   protected EventScanStatus scanEvent(boolean logErrors) {
+	  return scanEvent(logErrors, true);
+  }
+
+  @Override
+  protected EventScanStatus scanEvent(boolean logErrors, boolean verifyBodyCrc) {
 	  HeaderScanStatus h = scanHeader(logErrors);
 
 	  if (h != HeaderScanStatus.OK)  {
@@ -780,6 +785,9 @@ implements Cloneable
 	  if (isPartial(logErrors)) {
 		  return EventScanStatus.PARTIAL;
 	  }
+	  if (!verifyBodyCrc) {
+		  return EventScanStatus.OK;
+	  }
 
 	  int payloadLength = payloadLength();
 	  long calculatedValueCrc = getCalculatedValueCrc();
@@ -40,6 +40,7 @@ public class DbusEventV2 extends DbusEventSerializable
    *     BodyCRC (4 bytes)        // CRC of the rest of the event
    *     Total Length (4 bytes)   // Total length, including header and body
    *     Attributes (2 bytes)     // (MSB)12-bit flags, 2 bits opcode, 2-bits key-type (LSB)
+   *                              // flag 0x100 is set if the payload bytes are compressed
    *     NanoTimestamp (8 bytes)  // Time (in nanoseconds) at which the event was generated
    *     SourceId (4 bytes)       // SourceId for the event
    *     PartitionId (2 bytes)    // Partition ID for the event
@@ -108,6 +109,7 @@ public class DbusEventV2 extends DbusEventSerializable
   private static final short FLAG_TRACE_ON = 0x20;
   private static final short FLAG_HAS_PAYLOAD_METADATA_PART = 0x40;
   private static final short FLAG_HAS_PAYLOAD_PART = 0x80;
+  private static final short FLAG_PAYLOAD_COMPRESSED = 0x100;
 
   private static final int MAGIC = 0xCAFEDEED;
 
@@ -239,6 +241,12 @@ public class DbusEventV2 extends DbusEventSerializable
   // TODO:  should this also check _inited?  if _inited == false, presumably we should return ERR
   @Override
   public EventScanStatus scanEvent(boolean logErrors)
+  {
+    return scanEvent(logErrors, true);
+  }
+
+  @Override
+  protected EventScanStatus scanEvent(boolean logErrors, boolean verifyBodyCrc)
   {
     HeaderScanStatus h = scanHeader(logErrors);
     if (h != HeaderScanStatus.OK)
@@ -254,6 +262,10 @@ public class DbusEventV2 extends DbusEventSerializable
     {
       return EventScanStatus.PARTIAL;
     }
+    if (!verifyBodyCrc)
+    {
+      return EventScanStatus.OK;
+    }
     // We know that we have exactly the number of bytes we expect to have.
     long calculatedBodyCrc = getCalculatedValueCrc();
     long bodyCrc = bodyCrc();
@@ -299,7 +311,9 @@ public class DbusEventV2 extends DbusEventSerializable
   @Override
   public DbusEventInternalWritable createCopy()
   {
-    throw new UnsupportedOperationException("Not imeplemented");
+    ByteBuffer cloned = ByteBuffer.allocate(size()).order(_buf.order());
+    cloned.put(getRawBytes());
+    return new DbusEventV2(cloned, 0);
   }
 
   // We really mean the payload schema version here.
@@ -420,6 +434,12 @@ public class DbusEventV2 extends DbusEventSerializable
     return isAttributeSet(FLAG_HAS_PAYLOAD_PART);
   }
 
+  @Override
+  public boolean isPayloadCompressed()
+  {
+    return isAttributeSet(FLAG_PAYLOAD_COMPRESSED);
+  }
+
   private boolean hasMetadata()
   {
     return isAttributeSet(FLAG_HAS_PAYLOAD_METADATA_PART);
@@ -788,6 +808,10 @@ public class DbusEventV2 extends DbusEventSerializable
     if (shouldEncodePayloadPart(dbusEventInfo))
     {
       attributes |= FLAG_HAS_PAYLOAD_PART;
+      if (dbusEventInfo.isPayloadCompressed())
+      {
+        attributes |= FLAG_PAYLOAD_COMPRESSED;
+      }
     }
     if (metadata != null)
     {
@@ -901,13 +925,69 @@ public class DbusEventV2 extends DbusEventSerializable
     return evtLen;
   }
 
+  /**
+   * Creates a copy of the event with the original (uncompressed) payload. Readers that cannot
+   * handle {@link #isPayloadCompressed() compressed} payloads get such copies.
+   * @param dictionaries      the dictionaries the payload may have been compressed with
+   * @throws DatabusRuntimeException if the payload cannot be decompressed
+   */
+  public DbusEventInternalWritable createUncompressedCopy(DbusEventPayloadDictionaries dictionaries)
+  {
+    if (!isPayloadCompressed())
+    {
+      return createCopy();
+    }
+
+    DbusEventKey key;
+    try
+    {
+      key = isKeyNumber() ? new DbusEventKey(key()) :
+            isKeyString() ? new DbusEventKey(keyBytes()) : new DbusEventKey(getKeyPart());
+    }
+    catch (UnsupportedKeyException e)
+    {
+      throw new DatabusRuntimeException("unable to copy the key of event: " + this, e);
+    }
+
+    DbusEventInfo eventInfo = new DbusEventInfo(getOpcode(), sequence(), physicalPartitionId(),
+                                                logicalPartitionId(), timestampInNanos(), srcId(),
+                                                schemaId(), null, isTraceEnabled(), true,
+                                                DbusEventFactory.DBUS_EVENT_V2, schemaVersion(),
+                                                getPayloadMetadataPart());
+    eventInfo.setReplicated(isExtReplicatedEvent());
+    eventInfo.setValueByteBuffer(ByteBuffer.wrap(DbusEventPayloadCompressor.decompress(value(),
+                                                                                       dictionaries)));
+
+    try
+    {
+      ByteBuffer serializationBuffer = ByteBuffer.allocate(computeEventLength(key, eventInfo))
+                                                 .order(_buf.order());
+      serializeEvent(key, serializationBuffer, eventInfo);
+      return new DbusEventV2(serializationBuffer, 0);
+    }
+    catch (KeyTypeNotImplementedException e)
+    {
+      throw new DatabusRuntimeException("unable to copy the key of event: " + this, e);
+    }
+  }
+
   public DbusEventInternalWritable convertToV1() throws KeyTypeNotImplementedException
+  {
+    return convertToV1(new DbusEventPayloadDictionaries());
+  }
+
+  /**
+   * @param dictionaries      the dictionaries to decompress the payload with; V1 events cannot
+   *                          carry compressed payloads
+   */
+  public DbusEventInternalWritable convertToV1(DbusEventPayloadDictionaries dictionaries)
+         throws KeyTypeNotImplementedException
   {
     DbusEventKey key;
     DbusEventFactory eventV1Factory =  new DbusEventV1Factory();
 
     // to create new event we need to get data from ByteBuffer of the current event
-    ByteBuffer curValue = value();
+    ByteBuffer curValue = DbusEventPayloadCompressor.getUncompressedValue(this, dictionaries);
 
     // create the key
     if(isKeyNumber()) {
@@ -0,0 +1,108 @@
+package com.linkedin.databus.core;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
+
+/**
+ * Holds back the event stats of a read whose events may not be sent. The scanned and the streamed
+ * events are registered with the target collector only on {@link #flush()}, in the order in which
+ * they were read, so that the target sees the same calls as for a direct read. This does not rely
+ * on {@link DbusEventsStatisticsCollector#merge(DbusEventsStatisticsCollector)}, which works only
+ * for aggregated collectors.
+ *
+ * <p>Errors and buffer metrics are not held back.
+ */
+class DeferredDbusEventsStatisticsCollector extends DbusEventsStatisticsCollector
+{
+  private final DbusEventsStatisticsCollector _target;
+  /** Copies of the read events */
+  private final List<DbusEventInternalReadable> _events = new ArrayList<DbusEventInternalReadable>();
+  /** Whether the event at the same index has been streamed, i.e. passed the filter */
+  private final List<Boolean> _filtered = new ArrayList<Boolean>();
+
+  /**
+   * @param  target    the collector to register the events with on {@link #flush()}
+   */
+  DeferredDbusEventsStatisticsCollector(DbusEventsStatisticsCollector target)
+  {
+    super(target.getOwnerId(), target.getName(), true, false, null);
+    _target = target;
+  }
+
+  @Override
+  public void registerDataEvent(DbusEventInternalReadable e)
+  {
+    _events.add(e.createCopy());
+    _filtered.add(Boolean.FALSE);
+  }
+
+  @Override
+  public void registerDataEventFiltered(DbusEventInternalReadable e)
+  {
+    _events.add(e.createCopy());
+    _filtered.add(Boolean.TRUE);
+  }
+
+  @Override
+  public void registerEventError(DbusEventInternalReadable.EventScanStatus writingEventStatus)
+  {
+    _target.registerEventError(writingEventStatus);
+  }
+
+  @Override
+  public void registerBufferMetrics(long r, long s, long since, long freeSpace)
+  {
+    _target.registerBufferMetrics(r, s, since, freeSpace);
+  }
+
+  @Override
+  public void registerTimestampOfFirstEvent(long ts)
+  {
+    _target.registerTimestampOfFirstEvent(ts);
+  }
+
+  /** Registers the held back events with the target collector */
+  public void flush()
+  {
+    for (int i = 0; i < _events.size(); ++i)
+    {
+      if (_filtered.get(i))
+      {
+        _target.registerDataEventFiltered(_events.get(i));
+      }
+      else
+      {
+        _target.registerDataEvent(_events.get(i));
+      }
+    }
+    discard();
+  }
+
+  /** Drops the held back events */
+  public void discard()
+  {
+    _events.clear();
+    _filtered.clear();
+  }
+}
@@ -0,0 +1,368 @@
+package com.linkedin.databus.core;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.linkedin.databus.core.util.BufferPositionParser;
+import com.linkedin.databus.core.util.Range;
+import com.linkedin.databus2.core.filter.DbusBlockFilter;
+import com.linkedin.databus2.core.filter.DbusEventBlockSummary;
+import com.linkedin.databus2.core.filter.DbusKeyFilter;
+import com.linkedin.databus2.core.filter.KeyModFilter;
+
+/**
+ * Maintains a small summary of the data events in each block of the event buffer address space
+ * (the same blocks as the {@link ScnIndex}) so that
+ * {@link DbusEventBuffer#streamEvents(Checkpoint, java.nio.channels.WritableByteChannel, StreamEventsArgs)}
+ * can skip the blocks which cannot match the request filter. Each summary contains:
+ * <ul>
+ *   <li>the ids of the sources (a small sorted array) and a bitmap of the source ids (mod 64);
+ *   blocks with more than {@link #MAX_BLOCK_SOURCES} sources only keep the bitmap and cannot be
+ *   skipped because of sources without filters</li>
+ *   <li>for each of the configured numbers of buckets, a bitmap of the key mod buckets (mod 64)</li>
+ *   <li>the min and max numeric key</li>
+ *   <li>if there are control events in the block; such blocks cannot be skipped</li>
+ * </ul>
+ *
+ * <p>A summary covers the events which start in the block in the generation of its first event.
+ * The summaries are updated by the writer before the events become visible to readers and are
+ * only read for blocks fully protected by the reader's iterator lock.
+ */
+class EventBlockSummaryIndex
+{
+  private static final byte HAS_CONTROL_EVENTS = 1;
+  private static final byte HAS_NON_NUMERIC_KEYS = 2;
+  private static final byte HAS_MANY_SOURCES = 4;
+
+  /** the max number of exact source ids kept per block */
+  static final int MAX_BLOCK_SOURCES = 8;
+
+  private final ScnIndex _scnIndex;
+  private final BufferPositionParser _parser;
+  private final long[] _numBuckets;
+  private final int _blocksNum;
+  /** the gen-id position of the first event in the block; -1 if none */
+  private final long[] _firstEventPos;
+  private final long[] _sourceMasks;
+  /** the sorted source ids of the events in the block; only the first _sourcesNum are valid */
+  private final short[][] _sources;
+  private final byte[] _sourcesNum;
+  /** a bitmap per number of buckets */
+  private final long[][] _bucketMasks;
+  private final long[] _minKeys;
+  private final long[] _maxKeys;
+  private final byte[] _flags;
+
+  /**
+   * @param scnIndex      the SCN index which determines the blocks; must be enabled
+   * @param numBuckets    the numbers of mod buckets for which to maintain bucket bitmaps
+   */
+  public EventBlockSummaryIndex(ScnIndex scnIndex, long[] numBuckets)
+  {
+    _scnIndex = scnIndex;
+    _parser = scnIndex.getPositionParser();
+    _numBuckets = numBuckets.clone();
+    _blocksNum = scnIndex.getBlocksNum();
+    _firstEventPos = new long[_blocksNum];
+    _sourceMasks = new long[_blocksNum];
+    _sources = new short[_blocksNum][MAX_BLOCK_SOURCES];
+    _sourcesNum = new byte[_blocksNum];
+    _bucketMasks = new long[_numBuckets.length][_blocksNum];
+    _minKeys = new long[_blocksNum];
+    _maxKeys = new long[_blocksNum];
+    _flags = new byte[_blocksNum];
+    clear();
+  }
+
+  public void clear()
+  {
+    Arrays.fill(_firstEventPos, -1L);
+  }
+
+  /**
+   * Adds an event to the summary of its block. Must be called by the writer in the order of the
+   * events and before the event becomes visible to readers.
+   */
+  public void onEvent(DbusEvent e, long position)
+  {
+    final int block = _scnIndex.getBlockNumber(position);
+    final long firstPos = _firstEventPos[block];
+    if (firstPos < 0 || _parser.bufferGenId(firstPos) != _parser.bufferGenId(position))
+    {
+      //first event in the block for this generation
+      _sourceMasks[block] = 0;
+      _sourcesNum[block] = 0;
+      for (long[] masks: _bucketMasks)
+      {
+        masks[block] = 0;
+      }
+      _minKeys[block] = Long.MAX_VALUE;
+      _maxKeys[block] = Long.MIN_VALUE;
+      _flags[block] = 0;
+      _firstEventPos[block] = position;
+    }
+
+    if (e.isControlMessage())
+    {
+      _flags[block] |= HAS_CONTROL_EVENTS;
+      return;
+    }
+
+    _sourceMasks[block] |= 1L << (e.srcId() & 63);
+    addSource(block, e.srcId());
+
+    long bucketKey;
+    if (e.isKeyNumber())
+    {
+      bucketKey = e.key();
+      addKey(block, bucketKey);
+    }
+    else if (e.isKeyString())
+    {
+      byte[] keyBytes = e.keyBytes();
+      Long key = DbusKeyFilter.parseLongKey(keyBytes);
+      if (null != key)
+      {
+        bucketKey = key;
+        addKey(block, bucketKey);
+      }
+      else
+      {
+        bucketKey = KeyModFilter.getStringBucketKey(keyBytes);
+        _flags[block] |= HAS_NON_NUMERIC_KEYS;
+      }
+    }
+    else
+    {
+      //schema keys cannot be filtered
+      _flags[block] |= HAS_NON_NUMERIC_KEYS;
+      for (long[] masks: _bucketMasks)
+      {
+        masks[block] = -1L;
+      }
+      return;
+    }
+
+    for (int i = 0; i < _numBuckets.length; ++i)
+    {
+      long bktId = Math.abs(bucketKey) % _numBuckets[i];
+      _bucketMasks[i][block] |= 1L << (bktId & 63);
+    }
+  }
+
+  private void addSource(int block, short srcId)
+  {
+    if (0 != (_flags[block] & HAS_MANY_SOURCES))
+    {
+      return;
+    }
+    final short[] sources = _sources[block];
+    final int num = _sourcesNum[block];
+    int idx = Arrays.binarySearch(sources, 0, num, srcId);
+    if (idx >= 0)
+    {
+      return;
+    }
+    if (num == MAX_BLOCK_SOURCES)
+    {
+      _flags[block] |= HAS_MANY_SOURCES;
+      return;
+    }
+    idx = -idx - 1;
+    System.arraycopy(sources, idx, sources, idx + 1, num - idx);
+    sources[idx] = srcId;
+    _sourcesNum[block] = (byte)(num + 1);
+  }
+
+  private void addKey(int block, long key)
+  {
+    if (key < _minKeys[block]) _minKeys[block] = key;
+    if (key > _maxKeys[block]) _maxKeys[block] = key;
+  }
+
+  /**
+   * Creates a cursor for skipping the blocks which do not match a filter while iterating over the
+   * events in a range of the buffer.
+   *
+   * @param filter          the filter
+   * @param iteratorStart   the gen-id start position of the iterator range; the iterator must hold
+   *                        a read lock from that position
+   */
+  public Cursor createCursor(DbusBlockFilter filter, long iteratorStart)
+  {
+    return new Cursor(filter, iteratorStart);
+  }
+
+  /** Combines the given range of buckets into a bitmap of buckets mod 64 */
+  static long bucketMask(Range buckets)
+  {
+    final long width = buckets.end - buckets.start;
+    if (buckets.start >= buckets.end || width < 0 || width >= 64)
+    {
+      return -1L;
+    }
+    long mask = 0;
+    for (long b = buckets.start; b < buckets.end; ++b)
+    {
+      mask |= 1L << (b & 63);
+    }
+    return mask;
+  }
+
+  /**
+   * Tracks the block of the current event of a reader. Not thread-safe.
+   */
+  public class Cursor implements DbusEventBlockSummary
+  {
+    private final DbusBlockFilter _filter;
+    private final int _startBlock;
+    private int _block = -1;
+    private boolean _blockValid;
+    private boolean _blockMayMatch;
+    private long _skippedBlocksNum;
+
+    private Cursor(DbusBlockFilter filter, long iteratorStart)
+    {
+      _filter = filter;
+      _startBlock = _scnIndex.getBlockNumber(iteratorStart);
+    }
+
+    /** Moves the cursor to the block of the event at the given position */
+    private void moveTo(long position)
+    {
+      final int block = _scnIndex.getBlockNumber(position);
+      if (block == _block)
+      {
+        return;
+      }
+      _block = block;
+      //the summary of the block where the iterator starts may be reset by the writer
+      final long firstPos = _firstEventPos[block];
+      _blockValid = block != _startBlock && firstPos >= 0 && firstPos <= position &&
+          _parser.bufferGenId(firstPos) == _parser.bufferGenId(position);
+      _blockMayMatch = !_blockValid || _filter.mayAllow(this);
+    }
+
+    /**
+     * @return false if the data event at the given position cannot pass the filter
+     */
+    public boolean mayMatch(long position)
+    {
+      moveTo(position);
+      return _blockMayMatch;
+    }
+
+    /**
+     * Finds the first event at or after the given position which may need to be processed, i.e.
+     * it skips the blocks with no control events and no events matching the filter.
+     *
+     * @param position        the position of the current event
+     * @param iteratorTail    the end of the iterator range
+     * @return the position of the next event to process
+     */
+    public long skipBlocks(long position, long iteratorTail)
+    {
+      long result = position;
+      moveTo(result);
+      while (_blockValid && !_blockMayMatch && 0 == (_flags[_block] & HAS_CONTROL_EVENTS))
+      {
+        //all events in the block can be skipped if we know where the next block starts
+        final int nextBlock = _block + 1 == _blocksNum ? 0 : _block + 1;
+        final long nextPos = _firstEventPos[nextBlock];
+        //an older generation or a position past the iterator range means that the next block has
+        //no events yet
+        if (nextPos <= result || nextPos > iteratorTail)
+        {
+          break;
+        }
+        result = nextPos;
+        ++_skippedBlocksNum;
+        moveTo(result);
+      }
+      return result;
+    }
+
+    public long getSkippedBlocksNum()
+    {
+      return _skippedBlocksNum;
+    }
+
+    @Override
+    public boolean mayContainSource(long srcId)
+    {
+      if (0 == (_sourceMasks[_block] & (1L << (srcId & 63))))
+      {
+        return false;
+      }
+      if (0 != (_flags[_block] & HAS_MANY_SOURCES))
+      {
+        return true;
+      }
+      //the bitmap may have a collision of ids with the same value mod 64
+      return srcId == (short)srcId &&
+          Arrays.binarySearch(_sources[_block], 0, _sourcesNum[_block], (short)srcId) >= 0;
+    }
+
+    @Override
+    public boolean mayContainOtherSources(Collection<Long> srcIds)
+    {
+      if (0 != (_flags[_block] & HAS_MANY_SOURCES))
+      {
+        return true;
+      }
+      final short[] sources = _sources[_block];
+      final int num = _sourcesNum[_block];
+      for (int i = 0; i < num; ++i)
+      {
+        if (!srcIds.contains(Long.valueOf(sources[i])))
+        {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public boolean mayContainBuckets(long numBuckets, Range buckets)
+    {
+      for (int i = 0; i < _numBuckets.length; ++i)
+      {
+        if (_numBuckets[i] == numBuckets)
+        {
+          return 0 != (_bucketMasks[i][_block] & bucketMask(buckets));
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean mayContainKeys(Range keys)
+    {
+      if (0 != (_flags[_block] & HAS_NON_NUMERIC_KEYS) || keys.start >= keys.end)
+      {
+        return true;
+      }
+      return _minKeys[_block] < keys.end && _maxKeys[_block] >= keys.start;
+    }
+  }
+}
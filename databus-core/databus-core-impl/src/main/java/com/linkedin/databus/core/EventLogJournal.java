@@ -0,0 +1,389 @@
+package com.linkedin.databus.core;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import com.linkedin.databus.core.DbusEventBuffer.StreamingMode;
+import com.linkedin.databus.core.DbusEventInternalReadable.HeaderScanStatus;
+import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
+
+/**
+ * An index over the binary files written by an {@link EventLogWriter} which maps the SCNs of the
+ * windows to their locations in the files. It allows serving /stream requests for checkpoints
+ * which are no longer in the in-memory event buffer but are still in the journal.
+ *
+ * <p>Each index entry records the SCN of a window, the SCN of the window before it and the file
+ * and offset where the window starts. A checkpoint for a fully consumed window W can be served if
+ * there is an entry whose previous window SCN is &lt;= W and whose SCN is &gt; W, i.e. there are
+ * no missing windows between W and the entry.
+ *
+ * <p>Events are read sequentially from the files with a read-ahead buffer and streamed to the
+ * client the same way {@link DbusEventBuffer#streamEvents(Checkpoint, WritableByteChannel, StreamEventsArgs)}
+ * does it.
+ */
+public class EventLogJournal
+{
+  public static final String MODULE = EventLogJournal.class.getName();
+  public static final Logger LOG = Logger.getLogger(MODULE);
+
+  public static final int DEFAULT_READ_AHEAD_BYTES = 1024 * 1024;
+
+  private final TreeMap<Long, WindowEntry> _windows;
+  /** The journal files in the order they were written */
+  private final List<File> _files;
+  private final DbusEventFactory _eventFactory;
+  private final int _readAheadBytes;
+  private final DbusEventPayloadDictionaries _payloadDictionaries;
+
+  public EventLogJournal(DbusEventFactory eventFactory, int readAheadBytes)
+  {
+    this(eventFactory, readAheadBytes, new DbusEventPayloadDictionaries());
+  }
+
+  /**
+   * @param payloadDictionaries   the dictionaries to decompress payloads with for readers which
+   *                              cannot handle compressed payloads
+   */
+  public EventLogJournal(DbusEventFactory eventFactory, int readAheadBytes,
+                         DbusEventPayloadDictionaries payloadDictionaries)
+  {
+    _windows = new TreeMap<Long, WindowEntry>();
+    _files = new ArrayList<File>();
+    _eventFactory = eventFactory;
+    _readAheadBytes = readAheadBytes;
+    _payloadDictionaries = payloadDictionaries;
+  }
+
+  /** Registers a new journal file; files have to be added in the order they are written */
+  public synchronized void addFile(File file)
+  {
+    _files.add(file);
+  }
+
+  /** Removes a file (e.g. because it was deleted) and all windows that start in it */
+  public synchronized void removeFile(File file)
+  {
+    _files.remove(file);
+    Iterator<WindowEntry> iter = _windows.values().iterator();
+    while (iter.hasNext())
+    {
+      if (iter.next().getFile().equals(file)) iter.remove();
+    }
+  }
+
+  /**
+   * Adds a window to the index
+   * @param scn           the SCN of the window
+   * @param prevScn       the SCN of the window before it
+   * @param file          the file where the window starts
+   * @param fileOffset    the offset of the first event of the window in the file
+   */
+  public synchronized void addWindow(long scn, long prevScn, File file, long fileOffset)
+  {
+    if (!_windows.isEmpty() && _windows.lastKey().longValue() >= scn)
+    {
+      //SCN regression; the older windows cannot be served consistently anymore
+      LOG.warn("SCN regression in event log journal: " + scn + " <= " + _windows.lastKey() +
+               "; resetting the index");
+      _windows.clear();
+    }
+    _windows.put(scn, new WindowEntry(scn, prevScn, file, fileOffset));
+  }
+
+  public synchronized void clear()
+  {
+    _windows.clear();
+    _files.clear();
+  }
+
+  /** The SCN of the oldest window in the journal or -1 if it is empty */
+  public synchronized long getMinScn()
+  {
+    return _windows.isEmpty() ? -1 : _windows.firstKey();
+  }
+
+  /** The SCN of the newest window in the journal or -1 if it is empty */
+  public synchronized long getMaxScn()
+  {
+    return _windows.isEmpty() ? -1 : _windows.lastKey();
+  }
+
+  public synchronized int getNumWindows()
+  {
+    return _windows.size();
+  }
+
+  /**
+   * Finds the first window after the given fully consumed window SCN.
+   * @return the window entry or null if the journal does not have all windows after scn
+   */
+  public synchronized WindowEntry findWindowAfter(long scn)
+  {
+    Map.Entry<Long, WindowEntry> e = _windows.higherEntry(scn);
+    if (null == e || e.getValue().getPrevScn() > scn) return null;
+    return e.getValue();
+  }
+
+  private synchronized File getNextFile(File file)
+  {
+    int idx = _files.indexOf(file);
+    return (idx < 0 || idx + 1 >= _files.size()) ? null : _files.get(idx + 1);
+  }
+
+  /**
+   * Streams events from the journal after the window in the checkpoint. Only checkpoints for
+   * fully consumed windows are supported. Every event is validated before it is streamed; the
+   * stream stops before the first invalid event.
+   *
+   * @throws ScnNotFoundException if the journal does not contain the windows after the checkpoint
+   *         or the first event to stream is invalid
+   */
+  public StreamEventsResult streamEvents(Checkpoint checkPoint,
+                                         WritableByteChannel writeChannel,
+                                         StreamEventsArgs args)
+         throws ScnNotFoundException
+  {
+    if (checkPoint.getFlexible() || args.isStreamFromLatestScn() || checkPoint.isPartialWindow())
+    {
+      throw new ScnNotFoundException("event log journal can only serve fully consumed windows");
+    }
+
+    long sinceScn = checkPoint.getWindowScn();
+    WindowEntry start = findWindowAfter(sinceScn);
+    if (null == start)
+    {
+      throw new ScnNotFoundException("event log journal does not contain scn " + sinceScn);
+    }
+
+    if (LOG.isDebugEnabled())
+      LOG.debug("streaming from event log journal: sinceScn=" + sinceScn + " start=" + start);
+
+    StreamEventsResult result = new StreamEventsResult(0, 0);
+    boolean oneWindowAtATime = args.getSMode() == StreamingMode.WINDOW_AT_TIME;
+    int batchFetchSize = args.getBatchFetchSize();
+    int maxClientEventVersion = args.getMaxClientEventVersion();
+    DbusEventsStatisticsCollector statsCollector = args.getDbusEventsStatisticsCollector();
+    boolean decompressPayloads =
+        !args.isAcceptCompressedPayloads() || Encoding.BINARY != args.getEncoding();
+
+    ByteBuffer readBuf = ByteBuffer.allocate(_readAheadBytes).order(_eventFactory.getByteOrder());
+    readBuf.limit(0);
+    File file = start.getFile();
+    FileInputStream in = null;
+    int batchSize = 0;
+    boolean invalidEvent = false;
+    try
+    {
+      in = new FileInputStream(file);
+      FileChannel readChannel = in.getChannel();
+      readChannel.position(start.getFileOffset());
+
+      boolean done = false;
+      while (!done)
+      {
+        DbusEventInternalWritable e = null;
+        HeaderScanStatus headerStatus = HeaderScanStatus.PARTIAL;
+        if (readBuf.hasRemaining())
+        {
+          e = _eventFactory.createWritableDbusEventFromBuffer(readBuf, readBuf.position());
+          headerStatus = e.scanHeader();
+        }
+        if (HeaderScanStatus.ERR == headerStatus)
+        {
+          LOG.error("invalid event header in event log journal file " + file + "; stopping");
+          invalidEvent = true;
+          break;
+        }
+        if (HeaderScanStatus.PARTIAL == headerStatus || e.size() > readBuf.remaining())
+        {
+          //read ahead
+          if (HeaderScanStatus.OK == headerStatus && e.size() > readBuf.capacity())
+          {
+            ByteBuffer newBuf = ByteBuffer.allocate(e.size()).order(_eventFactory.getByteOrder());
+            newBuf.put(readBuf);
+            readBuf = newBuf;
+          }
+          else
+          {
+            readBuf.compact();
+          }
+          int bytesRead = readChannel.read(readBuf);
+          readBuf.flip();
+          if (bytesRead <= 0)
+          {
+            if (readBuf.hasRemaining())
+            {
+              //partial event at the end of the file which is still being written
+              break;
+            }
+            File nextFile = getNextFile(file);
+            if (null == nextFile) break;
+            in.close();
+            file = nextFile;
+            in = new FileInputStream(file);
+            readChannel = in.getChannel();
+          }
+          continue;
+        }
+
+        if (!e.isValid(false))
+        {
+          LOG.error("invalid event in event log journal file " + file + "; stopping: " + e);
+          invalidEvent = true;
+          break;
+        }
+
+        int eventSize = e.size();
+        if (e.getVersion() > maxClientEventVersion)
+        {
+          e = DbusEventInternalWritable.convertToDifferentVersion(e, (byte)maxClientEventVersion,
+                                                                  _payloadDictionaries);
+        }
+        if (decompressPayloads && e.isPayloadCompressed())
+        {
+          e = ((DbusEventV2)e).createUncompressedCopy(_payloadDictionaries);
+        }
+
+        if (e.isControlMessage() || args.getFilter().allow(e))
+        {
+          if (batchSize + e.size() > batchFetchSize)
+          {
+            result.setSizeOfPendingEvent(e.size());
+            break;
+          }
+          int bytesWritten = e.writeTo(writeChannel, args.getEncoding());
+          if (0 >= bytesWritten)
+          {
+            done = true;
+          }
+          else
+          {
+            if (null != statsCollector) statsCollector.registerDataEventFiltered(e);
+            checkPoint.onEvent(e);
+            batchSize += e.size();
+            result.incNumEventsStreamed(1);
+          }
+        }
+        if (null != statsCollector) statsCollector.registerDataEvent(e);
+
+        readBuf.position(readBuf.position() + eventSize);
+        if (e.isEndOfPeriodMarker() && oneWindowAtATime) break;
+      }
+    }
+    catch (IOException ioe)
+    {
+      //the file was probably rolled out of the journal; return what we have streamed so far
+      LOG.warn("error reading event log journal file " + file + ": " + ioe.getMessage());
+      if (0 == result.getNumEventsStreamed())
+      {
+        throw new ScnNotFoundException(ioe);
+      }
+    }
+    finally
+    {
+      if (null != in)
+      {
+        try
+        {
+          in.close();
+        }
+        catch (IOException ioe)
+        {
+          LOG.warn("unable to close " + file + ": " + ioe.getMessage());
+        }
+      }
+    }
+
+    if (invalidEvent && 0 == result.getNumEventsStreamed())
+    {
+      //the events streamed so far are good; the next request will fall back at the invalid event
+      throw new ScnNotFoundException("invalid event in event log journal file " + file);
+    }
+
+    if (LOG.isDebugEnabled())
+      LOG.debug("streamed " + result.getNumEventsStreamed() + " events (" + batchSize +
+                " bytes) from event log journal");
+    return result;
+  }
+
+  @Override
+  public synchronized String toString()
+  {
+    return "{\"minScn\":" + getMinScn() + ",\"maxScn\":" + getMaxScn() + ",\"numWindows\":" +
+           _windows.size() + ",\"numFiles\":" + _files.size() + "}";
+  }
+
+  /** The location of a window in the journal */
+  public static class WindowEntry
+  {
+    private final long _scn;
+    private final long _prevScn;
+    private final File _file;
+    private final long _fileOffset;
+
+    public WindowEntry(long scn, long prevScn, File file, long fileOffset)
+    {
+      _scn = scn;
+      _prevScn = prevScn;
+      _file = file;
+      _fileOffset = fileOffset;
+    }
+
+    public long getScn()
+    {
+      return _scn;
+    }
+
+    public long getPrevScn()
+    {
+      return _prevScn;
+    }
+
+    public File getFile()
+    {
+      return _file;
+    }
+
+    public long getFileOffset()
+    {
+      return _fileOffset;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "{\"scn\":" + _scn + ",\"prevScn\":" + _prevScn + ",\"file\":\"" + _file +
+             "\",\"offset\":" + _fileOffset + "}";
+    }
+  }
+}
@@ -25,6 +25,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -32,19 +33,23 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.log4j.Logger;
 
+import com.linkedin.databus.core.util.BufferPositionParser;
 import com.linkedin.databus.core.util.ByteSizeConstants;
 import com.linkedin.databus.core.util.ConfigBuilder;
 import com.linkedin.databus.core.util.InvalidConfigException;
+import com.linkedin.databus.core.util.Range;
 import com.linkedin.databus.core.util.RangeBasedReaderWriterLock;
 import com.linkedin.databus.core.util.RangeBasedReaderWriterLock.LockToken;
 
 /**
  * A continuous journal writer of the events as they flow into the DbusEventBuffer
  * This journal can be used for refilling the buffer on startup using the EventLogReader class.
+ *
+ * <p>If the journal is indexed (BINARY encoding only), the writer also maintains an
+ * {@link EventLogJournal} with the file offsets of the windows, so that the relay can serve
+ * clients whose checkpoints are no longer in the event buffer from the journal files.
  * @author sdas
- * @deprecated
  */
-@Deprecated
 public class EventLogWriter extends InternalDatabusEventsListenerAbstract implements Runnable
 {
   public static final String MODULE = EventLogWriter.class.getName();
@@ -85,6 +90,13 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
   private final ReentrantLock _writeLock;
   private final long _fsyncIntervalInMillis;
   private long _lastFsyncTime;
+  /** null if the journal is not indexed */
+  private final EventLogJournal _journal;
+  /** Window starts seen by onEvent() which have not been written yet; only used with _journal */
+  private final ConcurrentLinkedQueue<PendingWindow> _pendingWindows;
+  private long _lastEopScn = -1;
+  private boolean _inWindow = false;
+  private File _currentWriteFile;
 
 
   /**
@@ -102,6 +114,29 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
                       int maxPendingWritesBeforeAbort,
                       long individualFileMaxBytes, int maxFiles, long fsyncIntervalInMillis)
   {
+    this(enabled, eventBuffer, writeDir, writeSessionDir, encoding, blockOnWrite,
+         writeBatchSizeInBytes, maxPendingWritesBeforeAbort, individualFileMaxBytes, maxFiles,
+         fsyncIntervalInMillis, false, EventLogJournal.DEFAULT_READ_AHEAD_BYTES);
+  }
+
+  /**
+   * @param indexed         if an {@link EventLogJournal} index of the windows is to be maintained
+   * @param readAheadBytes  the size of the read-ahead buffer when streaming from the journal
+   */
+  public EventLogWriter(boolean enabled, DbusEventBuffer eventBuffer,
+                      File writeDir, File writeSessionDir, Encoding encoding,
+                      boolean blockOnWrite, long writeBatchSizeInBytes,
+                      int maxPendingWritesBeforeAbort,
+                      long individualFileMaxBytes, int maxFiles, long fsyncIntervalInMillis,
+                      boolean indexed, int readAheadBytes)
+  {
+    if (indexed && Encoding.BINARY != encoding)
+    {
+      throw new IllegalArgumentException("only BINARY event logs can be indexed: " + encoding);
+    }
+    _journal = indexed ? new EventLogJournal(eventBuffer.getEventFactory(), readAheadBytes,
+                                             eventBuffer.getPayloadDictionaries()) : null;
+    _pendingWindows = new ConcurrentLinkedQueue<PendingWindow>();
     _enabled = enabled;
     _eventBuffer = eventBuffer;
     _lockProvider = eventBuffer.getRwLockProvider();
@@ -152,7 +187,14 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
          staticConfig.getWriteSessionDir(), staticConfig.getEncoding(), staticConfig.getBlockOnWrite(),
          staticConfig.getWriteBatchSizeInBytes(),staticConfig.getMaxPendingWrites(),
          staticConfig.getIndividualFileMaxBytes(), staticConfig.getMaxFiles(),
-         staticConfig.getFsyncIntervalInMillis());
+         staticConfig.getFsyncIntervalInMillis(), staticConfig.isIndexed(),
+         staticConfig.getJournalReadAheadBytes());
+  }
+
+  /** The index of the journal or null if the journal is not indexed */
+  public EventLogJournal getJournal()
+  {
+    return _journal;
   }
 
   @Override
@@ -178,7 +220,7 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
     }
     else
     {
-      if (!_writeSessionDir.mkdir())
+      if (!_writeSessionDir.mkdirs())
       {
         LOG.error("directory creation failed: " + _writeSessionDir);
         _stopRunning.set(true);
@@ -249,6 +291,10 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
     {
       if (LOG.isDebugEnabled())
         LOG.debug("EventLogWriter:onEvent:" +  event);
+      if (null != _journal)
+      {
+        trackWindowStart(event, offset);
+      }
       if (_batchState == BatchState.INIT)
       {
         _batchStartOffset = offset;
@@ -274,6 +320,43 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
 
   }
 
+  private void trackWindowStart(DbusEvent event, long offset)
+  {
+    if (event.isEndOfPeriodMarker())
+    {
+      _lastEopScn = event.sequence();
+      _inWindow = false;
+    }
+    else if (!_inWindow)
+    {
+      _inWindow = true;
+      //we only know the previous window for windows after the first end-of-period
+      if (0 <= _lastEopScn)
+      {
+        _pendingWindows.add(new PendingWindow(event.sequence(), _lastEopScn, offset));
+      }
+    }
+  }
+
+  /** Adds the windows starting in a range that has just been written to the journal index */
+  private void indexWrittenRange(Range range, long fileOffset)
+  {
+    BufferPositionParser parser = _eventBuffer.getBufferPositionParser();
+    PendingWindow window;
+    while (null != (window = _pendingWindows.peek()) && window.getBufferOffset() < range.end)
+    {
+      _pendingWindows.poll();
+      //windows before the range were in batches that have been dropped
+      if (window.getBufferOffset() >= range.start)
+      {
+        long windowFileOffset = fileOffset + parser.bufferOffset(window.getBufferOffset()) -
+                                parser.bufferOffset(range.start);
+        _journal.addWindow(window.getScn(), window.getPrevScn(), _currentWriteFile,
+                           windowFileOffset);
+      }
+    }
+  }
+
   private void queueWriteRequest()
   {
     // non-contiguous write
@@ -325,6 +408,10 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
         _lockProvider.releaseReaderLock(readRangeLockToken);
 
         // Delete all the files generated so far
+        if (null != _journal)
+        {
+          _journal.clear();
+        }
         if (_writeSessionDir.exists())
         {
           for (File f: _writeSessionDir.listFiles())
@@ -354,7 +441,12 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
       if (LOG.isDebugEnabled())
         LOG.debug("BatchWrite:"+readRangeLock.getRange().start + ":" + readRangeLock.getRange().end);
 
+      long fileOffset = writeChannel.position();
       int bytesWritten = _eventBuffer.batchWrite(readRangeLock.getRange(), writeChannel, _encoding);
+      if (null != _journal)
+      {
+        indexWrittenRange(readRangeLock.getRange(), fileOffset);
+      }
       _totalBytesWritten += bytesWritten;
       _currentFileBytesWritten += bytesWritten;
       if ((System.currentTimeMillis() - _lastFsyncTime) > _fsyncIntervalInMillis)
@@ -457,6 +549,11 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
       try
       {
         _currentWritableByteChannel = new FileOutputStream(writeFile).getChannel();
+        _currentWriteFile = writeFile;
+        if (null != _journal)
+        {
+          _journal.addFile(writeFile);
+        }
       }
       catch (FileNotFoundException e)
       {
@@ -507,6 +604,10 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
       File deleteHandle = _writeFileHandles.poll();
       if (deleteHandle != null)
       {
+        if (null != _journal)
+        {
+          _journal.removeFile(deleteHandle);
+        }
         if (!deleteHandle.delete())
         {
           LOG.error("deleting failed:" + deleteHandle.getAbsolutePath());
@@ -516,6 +617,35 @@ public class EventLogWriter extends InternalDatabusEventsListenerAbstract implem
     return writeFile;
   }
 
+  /** The start of a window in the event buffer */
+  private static class PendingWindow
+  {
+    private final long _scn;
+    private final long _prevScn;
+    private final long _bufferOffset;
+
+    public PendingWindow(long scn, long prevScn, long bufferOffset)
+    {
+      _scn = scn;
+      _prevScn = prevScn;
+      _bufferOffset = bufferOffset;
+    }
+
+    public long getScn()
+    {
+      return _scn;
+    }
+
+    public long getPrevScn()
+    {
+      return _prevScn;
+    }
+
+    public long getBufferOffset()
+    {
+      return _bufferOffset;
+    }
+  }
 
 public static class StaticConfig
 {
@@ -530,6 +660,8 @@ public static class StaticConfig
   private final int _maxFiles;
   private final int _maxPendingWrites;
   private final long _fsyncIntervalInMillis;
+  private final boolean _indexed;
+  private final int _journalReadAheadBytes;
   private EventLogWriter _existingLogWriter;
 
   public StaticConfig(DbusEventBuffer eventBuffer,
@@ -543,8 +675,29 @@ public static class StaticConfig
                       int maxFiles,
                       int maxPendingWrites,
                       long fsyncIntervalInMillis)
+  {
+    this(eventBuffer, enabled, topLevelLogsDir, writeSessionDir, encoding, writeBatchSizeInBytes,
+         blockOnWrite, individualFileMaxBytes, maxFiles, maxPendingWrites, fsyncIntervalInMillis,
+         false, EventLogJournal.DEFAULT_READ_AHEAD_BYTES);
+  }
+
+  public StaticConfig(DbusEventBuffer eventBuffer,
+                      boolean enabled,
+                      String topLevelLogsDir,
+                      String writeSessionDir,
+                      Encoding encoding,
+                      long writeBatchSizeInBytes,
+                      boolean blockOnWrite,
+                      long individualFileMaxBytes,
+                      int maxFiles,
+                      int maxPendingWrites,
+                      long fsyncIntervalInMillis,
+                      boolean indexed,
+                      int journalReadAheadBytes)
   {
     super();
+    _indexed = indexed;
+    _journalReadAheadBytes = journalReadAheadBytes;
     _eventBuffer = eventBuffer;
     _enabled = enabled;
     _topLevelLogDir = new File(topLevelLogsDir);
@@ -627,6 +780,21 @@ public static class StaticConfig
     return _fsyncIntervalInMillis;
   }
 
+  /**
+   * A flag if the writer keeps an index of the windows in the journal so that the relay can serve
+   * stream requests from it
+   */
+  public boolean isIndexed()
+  {
+    return _indexed;
+  }
+
+  /** The size of the read-ahead buffer used when streaming events from the journal */
+  public int getJournalReadAheadBytes()
+  {
+    return _journalReadAheadBytes;
+  }
+
   public EventLogWriter getOrCreateEventLogWriter(DbusEventBuffer eventBuffer)
   {
     _eventBuffer = eventBuffer;
@@ -634,6 +802,18 @@ public static class StaticConfig
     return _existingLogWriter;
   }
 
+  /**
+   * Creates a writer for one of the buffers of a relay. The journal of the buffer is written to
+   * its own subdirectory of the write session directory.
+   */
+  public EventLogWriter createEventLogWriter(DbusEventBuffer eventBuffer, String subdirName)
+  {
+    return new EventLogWriter(_enabled, eventBuffer, _topLevelLogDir,
+                              new File(_writeSessionDir, subdirName), _encoding, _blockOnWrite,
+                              _writeBatchSizeInBytes, _maxPendingWrites, _individualFileMaxBytes,
+                              _maxFiles, _fsyncIntervalInMillis, _indexed, _journalReadAheadBytes);
+  }
+
 
 }
 
@@ -652,6 +832,8 @@ public static class Config implements ConfigBuilder<StaticConfig>
   public static final int DEFAULT_MAX_FILES = 5;
   public static final long DEFAULT_FSYNC_INTERVAL_IN_MILLIS = 10000;
   public static final int DEFAULT_MAX_PENDING_WRITES = 20;
+  public static final boolean DEFAULT_INDEXED = false;
+  public static final int DEFAULT_JOURNAL_READ_AHEAD_BYTES = EventLogJournal.DEFAULT_READ_AHEAD_BYTES;
 
   protected DbusEventBuffer _eventBuffer;
   protected boolean _enabled;
@@ -667,6 +849,8 @@ public static class Config implements ConfigBuilder<StaticConfig>
   protected long _writeBatchSizeInBytes;
   protected int _maxPendingWrites;
   protected long _fsyncIntervalInMillis;
+  protected boolean _indexed;
+  protected int _journalReadAheadBytes;
 
   public Config()
   {
@@ -680,6 +864,8 @@ public static class Config implements ConfigBuilder<StaticConfig>
     _maxFiles = DEFAULT_MAX_FILES;
     _fsyncIntervalInMillis = DEFAULT_FSYNC_INTERVAL_IN_MILLIS;
     _maxPendingWrites = DEFAULT_MAX_PENDING_WRITES;
+    _indexed = DEFAULT_INDEXED;
+    _journalReadAheadBytes = DEFAULT_JOURNAL_READ_AHEAD_BYTES;
   }
 
   public Config(Config other)
@@ -694,6 +880,8 @@ public static class Config implements ConfigBuilder<StaticConfig>
     _maxFiles = other._maxFiles;
     _fsyncIntervalInMillis = other._fsyncIntervalInMillis;
     _maxPendingWrites = other._maxPendingWrites;
+    _indexed = other._indexed;
+    _journalReadAheadBytes = other._journalReadAheadBytes;
   }
 
   @Override
@@ -740,6 +928,17 @@ public static class Config implements ConfigBuilder<StaticConfig>
       throw new InvalidConfigException("EventLogWriter: maxPendingWrites configured <=0 : " + _maxPendingWrites);
     }
 
+    if (_indexed && Encoding.BINARY != encoding)
+    {
+      throw new InvalidConfigException("EventLogWriter: only BINARY journals can be indexed: " + _encoding);
+    }
+
+    if (_journalReadAheadBytes <= 0)
+    {
+      throw new InvalidConfigException("EventLogWriter: journalReadAheadBytes configured <=0 : " +
+                                       _journalReadAheadBytes);
+    }
+
 
     LOG.info("Event Log Writer encoding: " + _encoding);
     LOG.info("Event Log Writer writeBatchSizeInBytes: " + _writeBatchSizeInBytes);
@@ -748,12 +947,13 @@ public static class Config implements ConfigBuilder<StaticConfig>
     LOG.info("Event Log Writer maxFiles: " + _maxFiles);
     LOG.info("Event Log Writer maxPendingWrites: " + _maxPendingWrites);
     LOG.info("Event Log Writer fsyncIntervalInMillis: " + _fsyncIntervalInMillis);
+    LOG.info("Event Log Writer indexed: " + _indexed);
 
 
     return new StaticConfig(_eventBuffer, _enabled, _topLevelLogDir, _writeSessionDir, encoding,
                             _writeBatchSizeInBytes,
                             _blockOnWrite, _individualFileMaxBytes, _maxFiles, _maxPendingWrites,
-                            _fsyncIntervalInMillis);
+                            _fsyncIntervalInMillis, _indexed, _journalReadAheadBytes);
   }
 
   public boolean isEnabled()
@@ -856,6 +1056,26 @@ public static class Config implements ConfigBuilder<StaticConfig>
     _fsyncIntervalInMillis = fsyncIntervalInMillis;
   }
 
+  public boolean isIndexed()
+  {
+    return _indexed;
+  }
+
+  public void setIndexed(boolean indexed)
+  {
+    _indexed = indexed;
+  }
+
+  public int getJournalReadAheadBytes()
+  {
+    return _journalReadAheadBytes;
+  }
+
+  public void setJournalReadAheadBytes(int journalReadAheadBytes)
+  {
+    _journalReadAheadBytes = journalReadAheadBytes;
+  }
+
 
 }
 
@@ -0,0 +1,222 @@
+package com.linkedin.databus.core;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import com.linkedin.databus.core.DbusEventInternalReadable.EventScanStatus;
+import com.linkedin.databus.core.DbusEventInternalReadable.HeaderScanStatus;
+import com.linkedin.databus.core.util.NamedThreadFactory;
+
+/**
+ * Verifies the CRCs of a batch of serialized events for
+ * {@link DbusEventBuffer#readEvents(java.nio.channels.ReadableByteChannel)} using a pool of
+ * worker threads shared by all buffers in the process. The event boundaries are determined serially from the event headers and then the
+ * events are split into contiguous groups which are verified in parallel. The result is the end of
+ * the longest prefix of verified events; readEvents() still processes and commits the events in
+ * order and verifies serially anything past that prefix.
+ */
+class ParallelEventValidator
+{
+  public static final String MODULE = ParallelEventValidator.class.getName();
+  public static final Logger LOG = Logger.getLogger(MODULE);
+
+  /** The minimum number of bytes to be verified by a single worker */
+  static final int MIN_BYTES_PER_WORKER = 64 * 1024;
+
+  /** The worker pool shared by all validators; created on first use */
+  private static ExecutorService _sharedExecutor;
+
+  private final int _threadsNum;
+
+  /**
+   * @param threadsNum      the maximum number of event groups verified in parallel per batch
+   */
+  public ParallelEventValidator(int threadsNum)
+  {
+    _threadsNum = threadsNum;
+  }
+
+  private static synchronized ExecutorService getSharedExecutor()
+  {
+    if (null == _sharedExecutor)
+    {
+      _sharedExecutor =
+          Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                                       new NamedThreadFactory("readEventsValidator", true));
+    }
+    return _sharedExecutor;
+  }
+
+  /**
+   * Verifies the complete events in a byte range of a buffer.
+   *
+   * @param  buf        the buffer with the events
+   * @param  start      the offset of the first event
+   * @param  end        the offset after the last byte of data
+   * @return the offset after the last event of the longest verified prefix of the range; start if
+   *         the range was too small to be worth verifying in parallel
+   */
+  public int validate(ByteBuffer buf, int start, int end)
+  {
+    if (end - start < 2 * MIN_BYTES_PER_WORKER)
+    {
+      return start;
+    }
+
+    final ByteBuffer view = buf.duplicate().order(buf.order());
+    view.clear();
+    view.limit(end);
+    final List<Integer> eventOfs = findEventBoundaries(view, start, end);
+    if (eventOfs.size() < 2)
+    {
+      return start;
+    }
+    final int dataEnd = eventOfs.get(eventOfs.size() - 1);
+
+    //split the events in groups of roughly equal byte size
+    final int groupsNum = Math.max(1, Math.min(_threadsNum, (dataEnd - start) / MIN_BYTES_PER_WORKER));
+    final int groupBytes = (dataEnd - start + groupsNum - 1) / groupsNum;
+    final ExecutorService executor = getSharedExecutor();
+    List<Future<Integer>> results = new ArrayList<Future<Integer>>(groupsNum);
+    List<Integer> groupEnds = new ArrayList<Integer>(groupsNum);
+    int groupStartIdx = 0;
+    while (groupStartIdx < eventOfs.size() - 1)
+    {
+      int groupEndIdx = groupStartIdx + 1;
+      final int groupLimit = eventOfs.get(groupStartIdx) + groupBytes;
+      while (groupEndIdx < eventOfs.size() - 1 && eventOfs.get(groupEndIdx) < groupLimit)
+      {
+        ++groupEndIdx;
+      }
+      results.add(executor.submit(new GroupValidator(view.duplicate().order(view.order()), eventOfs,
+                                                      groupStartIdx, groupEndIdx)));
+      groupEnds.add(eventOfs.get(groupEndIdx));
+      groupStartIdx = groupEndIdx;
+    }
+
+    int verifiedEnd = start;
+    try
+    {
+      //the verified prefix ends at the first event that failed verification
+      for (int i = 0; i < results.size(); ++i)
+      {
+        verifiedEnd = results.get(i).get();
+        if (verifiedEnd != groupEnds.get(i))
+        {
+          break;
+        }
+      }
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      LOG.warn("interrupted while validating events");
+    }
+    catch (ExecutionException e)
+    {
+      LOG.error("error validating events: " + e.getCause(), e.getCause());
+    }
+
+    return verifiedEnd;
+  }
+
+  /**
+   * Finds the offsets of the complete events in a range. The returned list also contains the offset
+   * after the last complete event.
+   */
+  private static List<Integer> findEventBoundaries(ByteBuffer view, int start, int end)
+  {
+    List<Integer> result = new ArrayList<Integer>();
+    int pos = start;
+    DbusEventInternalReadable e = null;
+    try
+    {
+      while (pos < end)
+      {
+        e = null == e ? DbusEventFactory.createReadOnlyDbusEventFromBufferUnchecked(view, pos)
+                      : e.reset(view, pos);
+        if (HeaderScanStatus.OK != e.scanHeader(false))
+        {
+          break;
+        }
+        int size = e.size();
+        if (size <= 0 || pos + size > end)
+        {
+          break;
+        }
+        result.add(pos);
+        pos += size;
+      }
+    }
+    catch (RuntimeException re)
+    {
+      //unknown versions and other garbage will be reported by the serial scan in readEvents()
+      if (LOG.isDebugEnabled())
+        LOG.debug("stopping event boundary scan at " + pos + ": " + re);
+    }
+    result.add(pos);
+
+    return result;
+  }
+
+  /** Verifies the events [startIdx, endIdx) of a list of event offsets */
+  private class GroupValidator implements Callable<Integer>
+  {
+    private final ByteBuffer _buf;
+    private final List<Integer> _eventOfs;
+    private final int _startIdx;
+    private final int _endIdx;
+
+    public GroupValidator(ByteBuffer buf, List<Integer> eventOfs, int startIdx, int endIdx)
+    {
+      _buf = buf;
+      _eventOfs = eventOfs;
+      _startIdx = startIdx;
+      _endIdx = endIdx;
+    }
+
+    @Override
+    public Integer call()
+    {
+      DbusEventInternalReadable e = null;
+      for (int i = _startIdx; i < _endIdx; ++i)
+      {
+        final int ofs = _eventOfs.get(i);
+        e = null == e ? DbusEventFactory.createReadOnlyDbusEventFromBufferUnchecked(_buf, ofs)
+                      : e.reset(_buf, ofs);
+        if (EventScanStatus.OK != e.scanEvent(false))
+        {
+          return ofs;
+        }
+      }
+      return _eventOfs.get(_endIdx);
+    }
+  }
+}
@@ -246,6 +246,17 @@ public class ScnIndex extends InternalDatabusEventsListenerAbstract
     this.isFirstCheck = mi.getBool("isFirstCheck");
     this.updatedOnCurrentWindow = mi.getBool("updatedOnCurrentWindow");
 
+    // older meta files don't have the checksum
+    if(mi.getVal("checksum") != null) {
+      long miChecksum = mi.getLong("checksum");
+      long checksum = DbusEventBuffer.computeSegmentChecksums(new ByteBuffer[]{buffer},
+                                                               new int[]{buffer.limit()})[0];
+      if(miChecksum != checksum) {
+        throw new DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException(mi,
+              "ScnIndex checksum in meta file didn't match:" + miChecksum + " != " + checksum);
+      }
+    }
+
 
     // run some more validations
     assertHead();
@@ -281,6 +292,8 @@ public class ScnIndex extends InternalDatabusEventsListenerAbstract
     mi.setVal("individualBufferSize", Integer.toString(individualBufferSize));
     mi.setVal("isFirstCheck", Boolean.toString(isFirstCheck));
     mi.setVal("updatedOnCurrentWindow", Boolean.toString(updatedOnCurrentWindow));
+    mi.setVal("checksum", Long.toString(DbusEventBuffer.computeSegmentChecksums(new ByteBuffer[]{buffer},
+                                                                              new int[]{buffer.limit()})[0]));
 
 
     // AssertLevel _assertLevel - no need to save, may be changed between the calles.
@@ -574,6 +587,12 @@ public class ScnIndex extends InternalDatabusEventsListenerAbstract
     return (int) blockNumber;
   }
 
+  /** The number of blocks of the event buffer address space covered by the index entries */
+  int getBlocksNum()
+  {
+    return maxElements;
+  }
+
   void flushMMappedBuffers()
   {
     if (!isEnabled())
@@ -17,6 +17,8 @@ public class StreamEventsArgs
   private DbusFilter _filter;
   private DbusEventsStatisticsCollector _statsCollector;
   private int _maxClientEventVersion;
+  private int _compactionWindows;
+  private boolean _acceptCompressedPayloads;
 
   public StreamEventsArgs(int batchSize) {
     _batchFetchSize = batchSize;
@@ -91,5 +93,35 @@ public class StreamEventsArgs
     return _statsCollector;
   }
 
+  /**
+   * The maximum number of consecutive windows which are compacted into one, i.e., for which only
+   * the last event per source and key is streamed. 0 (the default) disables compaction.
+   */
+  public int getCompactionWindows()
+  {
+    return _compactionWindows;
+  }
+
+  public StreamEventsArgs setCompactionWindows(int compactionWindows)
+  {
+    this._compactionWindows = compactionWindows;
+    return this;
+  }
+
+  /**
+   * If the reader can handle {@link DbusEvent#isPayloadCompressed() compressed} payloads in binary
+   * encoding. If false (the default), compressed payloads are decompressed before streaming.
+   */
+  public boolean isAcceptCompressedPayloads()
+  {
+    return _acceptCompressedPayloads;
+  }
+
+  public StreamEventsArgs setAcceptCompressedPayloads(boolean acceptCompressedPayloads)
+  {
+    this._acceptCompressedPayloads = acceptCompressedPayloads;
+    return this;
+  }
+
 
 }
@@ -22,7 +22,13 @@ package com.linkedin.databus.core.async;
 import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -36,6 +42,15 @@ import com.linkedin.databus2.core.BackoffTimerStaticConfig;
 /**
  * A default implementation for an actor which let it be run in a thread and provides
  * controls for its lifecycle.
+ *
+ * <p>Instead of owning a thread through {@link #run()}, the actor can also be scheduled on an
+ * executor shared with other actors using {@link #runOn(ScheduledExecutorService)}. In that mode,
+ * the queued messages are processed by drain tasks. At most one drain task of an actor runs at a
+ * time, so the messages are still processed one by one in order. Subclasses must not block in
+ * that mode and should use {@link #delayNextMessage(long)} instead of sleeping. Waits for an
+ * external condition should use {@link #awaitWakeUp(long)} and have the condition call
+ * {@link #wakeUp()}. Messages which have to block (e.g. reading a response) are identified by
+ * {@link #isBlockingMessage(Object)} and processed on a separate blocking executor.
  */
 public abstract class AbstractActorMessageQueue implements Runnable, ActorMessageQueue
 {
@@ -45,6 +60,8 @@ public abstract class AbstractActorMessageQueue implements Runnable, ActorMessag
   public static final int MAX_QUEUED_MESSAGE_HISTORY_SIZE = 100;
   public static final int MAX_QUEUED_MESSAGES = 10;
   public static final long MESSAGE_QUEUE_POLL_TIMEOUT_MS = 100;
+  /** Max number of messages processed by a drain task before it yields to the other actors */
+  public static final int SHARED_EXECUTOR_QUANTUM = 16;
 
   private final String _name;
   private final Queue<Object> _messageQueue = new ArrayDeque<Object>(MAX_QUEUED_MESSAGES);
@@ -65,6 +82,34 @@ public abstract class AbstractActorMessageQueue implements Runnable, ActorMessag
   private long _numEnqueuedMessages = 0;
   private final boolean _enablePullerMessageQueueLogging;
 
+  /** The shared executor; null if the actor runs in its own thread */
+  private volatile ScheduledExecutorService _sharedExecutor;
+  /** True if there is a pending drain task for the message queue */
+  private final AtomicBoolean _drainScheduled = new AtomicBoolean(false);
+  /** Serializes the drain tasks */
+  private final Lock _drainLock = new ReentrantLock();
+  private final Runnable _drainTask = new Runnable()
+  {
+    @Override
+    public void run()
+    {
+      drainMessages();
+    }
+  };
+  /** The executor for blocking messages in shared mode; null if they run on the shared executor */
+  private volatile Executor _blockingExecutor;
+  /** Guarded by _drainLock */
+  private boolean _exited = false;
+  /** The delay before processing the next message in shared mode; guarded by _drainLock */
+  private long _nextMessageDelayMs = 0;
+  /** True if {@link #wakeUp()} may cut the delay short; guarded by _drainLock */
+  private boolean _nextMessageWakeable = true;
+  /** The pending delayed drain task which can be woken up */
+  private final AtomicReference<ScheduledFuture<?>> _wakeableDrain =
+      new AtomicReference<ScheduledFuture<?>>();
+  /** Set by {@link #wakeUp()}; cleared before each message is processed */
+  private final AtomicBoolean _wakeUpRequested = new AtomicBoolean(false);
+
   public AbstractActorMessageQueue(String name, BackoffTimerStaticConfig errorRetriesConf)
   {
 	  this(name, errorRetriesConf,false,null);
@@ -259,6 +304,18 @@ public abstract class AbstractActorMessageQueue implements Runnable, ActorMessag
       running = false;
     }
 
+    exitMessageLoop();
+  }
+
+  /**
+   * Cleans up after the message loop has finished and signals the threads waiting for the
+   * shutdown.
+   */
+  private void exitMessageLoop()
+  {
+    boolean isDebugEnabled = _log.isDebugEnabled();
+    Object nextState = null;
+
     if (isDebugEnabled)
     {
         StringBuilder sb = new StringBuilder(10240);
@@ -293,6 +350,289 @@ public abstract class AbstractActorMessageQueue implements Runnable, ActorMessag
     }
   }
 
+  /**
+   * Starts processing the messages of the actor as tasks on a shared executor instead of
+   * {@link #run()}.
+   */
+  public void runOn(ScheduledExecutorService executor)
+  {
+    runOn(executor, null);
+  }
+
+  /**
+   * Starts processing the messages of the actor as tasks on a shared executor. The messages for
+   * which {@link #isBlockingMessage(Object)} is true are processed on blockingExecutor so that
+   * they do not hold up the other actors on the shared executor.
+   * @param blockingExecutor    the executor for blocking messages; if null, they are processed
+   *                            on the shared executor
+   */
+  public void runOn(ScheduledExecutorService executor, Executor blockingExecutor)
+  {
+    if (null == executor)
+    {
+      throw new NullPointerException("executor");
+    }
+    _blockingExecutor = blockingExecutor;
+    _sharedExecutor = executor;
+    _log.info(getName() + ": running on shared executor");
+    scheduleDrain();
+  }
+
+  /** True if the actor runs on a shared executor */
+  public boolean isOnSharedExecutor()
+  {
+    return null != _sharedExecutor;
+  }
+
+  /**
+   * Delays the processing of the next message. On a shared executor, this only postpones the next
+   * drain task so that the executor thread can serve other actors. Otherwise, the calling thread
+   * sleeps.
+   * @return false if the sleep was interrupted
+   */
+  protected boolean delayNextMessage(long delayMs)
+  {
+    if (0 >= delayMs)
+    {
+      return true;
+    }
+    if (isOnSharedExecutor())
+    {
+      _nextMessageDelayMs = Math.max(_nextMessageDelayMs, delayMs);
+      _nextMessageWakeable = false;
+      return true;
+    }
+    try
+    {
+      Thread.sleep(delayMs);
+      return true;
+    }
+    catch (InterruptedException ie)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Waits for up to maxDelayMs or until {@link #wakeUp()} is called before processing the next
+   * message. Only a shared executor can be woken up; otherwise, the calling thread sleeps like in
+   * {@link #delayNextMessage(long)}.
+   * @return false if the sleep was interrupted
+   */
+  protected boolean awaitWakeUp(long maxDelayMs)
+  {
+    if (0 >= maxDelayMs || !isOnSharedExecutor())
+    {
+      return delayNextMessage(maxDelayMs);
+    }
+    if (0 == _nextMessageDelayMs)
+    {
+      _nextMessageDelayMs = maxDelayMs;
+    }
+    return true;
+  }
+
+  /**
+   * Cuts short a wait started with {@link #awaitWakeUp(long)}. If the actor is still processing
+   * the message which is about to wait, the wait is skipped. Does not affect the delays from
+   * {@link #delayNextMessage(long)}. Safe to call from any thread and without any locks.
+   */
+  public void wakeUp()
+  {
+    _wakeUpRequested.set(true);
+    ScheduledFuture<?> drain = _wakeableDrain.getAndSet(null);
+    if (null != drain && drain.cancel(false))
+    {
+      submitDrain(0);
+    }
+  }
+
+  /**
+   * Checks if a message blocks the processing thread, e.g. waiting for network data. On a shared
+   * executor with a blocking executor, such messages are processed on the blocking executor.
+   */
+  protected boolean isBlockingMessage(Object message)
+  {
+    return false;
+  }
+
+  private void scheduleDrain()
+  {
+    if (isOnSharedExecutor() && _drainScheduled.compareAndSet(false, true))
+    {
+      submitDrain(0);
+    }
+  }
+
+  private void submitDrain(long delayMs)
+  {
+    submitDrain(delayMs, false);
+  }
+
+  private void submitDrain(long delayMs, boolean wakeable)
+  {
+    try
+    {
+      if (0 < delayMs)
+      {
+        ScheduledFuture<?> drain = _sharedExecutor.schedule(_drainTask, delayMs,
+                                                            TimeUnit.MILLISECONDS);
+        _wakeableDrain.set(wakeable ? drain : null);
+      }
+      else
+      {
+        _sharedExecutor.execute(_drainTask);
+      }
+    }
+    catch (RejectedExecutionException e)
+    {
+      _log.error(getName() + ": shared executor rejected the message processing; shutting down");
+      _shutdownRequest = LifecycleMessage.createShutdownMessage();
+      drainMessages();
+    }
+  }
+
+  /**
+   * Processes queued messages on the shared executor. Yields after
+   * {@link #SHARED_EXECUTOR_QUANTUM} messages, when the next message has to be delayed or when a
+   * blocking message is handed to the blocking executor.
+   */
+  private void drainMessages()
+  {
+    boolean isDebugEnabled = _log.isDebugEnabled();
+
+    _drainLock.lock();
+    try
+    {
+      if (_exited)
+      {
+        return;
+      }
+
+      int processed = 0;
+      while (true)
+      {
+        if (checkForShutdownRequest())
+        {
+          _exited = true;
+          exitMessageLoop();
+          return;
+        }
+
+        Object nextState = pollNextStateNoWait();
+        if (null == nextState)
+        {
+          _drainScheduled.set(false);
+          // a message may have been enqueued after the poll but before the flag was cleared
+          if ((_hasMessages || checkForShutdownRequest()) && _drainScheduled.compareAndSet(false, true))
+          {
+            continue;
+          }
+          return;
+        }
+
+        if (isDebugEnabled) _log.debug(getName() + ": new state: " + nextState.toString());
+        Executor blockingExecutor = _blockingExecutor;
+        if (null != blockingExecutor && isBlockingMessage(nextState))
+        {
+          // _drainScheduled stays set until the blocking task submits the next drain
+          submitBlocking(blockingExecutor, nextState);
+          return;
+        }
+        if (!processMessage(nextState))
+        {
+          return;
+        }
+
+        if (0 < _nextMessageDelayMs || ++processed >= SHARED_EXECUTOR_QUANTUM)
+        {
+          submitNextDrain();
+          return;
+        }
+      }
+    }
+    finally
+    {
+      _drainLock.unlock();
+    }
+  }
+
+  /** Processes a message in shared mode; guarded by _drainLock. Returns false if the actor exited. */
+  private boolean processMessage(Object message)
+  {
+    _wakeUpRequested.set(false);
+    boolean running;
+    try
+    {
+      running = doExecuteAndChangeState(message);
+    }
+    catch (Exception e)
+    {
+      _log.error(getName() + ": stopping because of unhandled exception: ", e);
+      running = false;
+    }
+    if (!running)
+    {
+      _exited = true;
+      exitMessageLoop();
+    }
+    return running;
+  }
+
+  /** Submits the drain task after a processed message, honoring any delay; guarded by _drainLock */
+  private void submitNextDrain()
+  {
+    long delayMs = _nextMessageDelayMs;
+    boolean wakeable = _nextMessageWakeable;
+    _nextMessageDelayMs = 0;
+    _nextMessageWakeable = true;
+    if (0 >= delayMs || checkForShutdownRequest())
+    {
+      submitDrain(0);
+      return;
+    }
+
+    submitDrain(delayMs, wakeable);
+    // a wake-up may have come while the message was being processed
+    if (wakeable && _wakeUpRequested.get())
+    {
+      wakeUp();
+    }
+  }
+
+  private void submitBlocking(Executor blockingExecutor, final Object message)
+  {
+    Runnable blockingTask = new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        _drainLock.lock();
+        try
+        {
+          if (!_exited && processMessage(message))
+          {
+            submitNextDrain();
+          }
+        }
+        finally
+        {
+          _drainLock.unlock();
+        }
+      }
+    };
+
+    try
+    {
+      blockingExecutor.execute(blockingTask);
+    }
+    catch (RejectedExecutionException e)
+    {
+      _log.warn(getName() + ": blocking executor rejected " + message + "; processing it on the shared executor");
+      blockingTask.run();
+    }
+  }
+
   /*
    * Atomically filters the message queue and enqueues the passed message
    */
@@ -368,12 +708,36 @@ public abstract class AbstractActorMessageQueue implements Runnable, ActorMessag
     {
       _controlLock.unlock();
     }
+
+    if (_hasMessages)
+    {
+      scheduleDrain();
+    }
   }
 
   public void shutdown()
   {
     _log.info(getName() + ": shutdown requested.");
     _shutdownRequest = LifecycleMessage.createShutdownMessage();
+    if (isOnSharedExecutor())
+    {
+      // run the shutdown even if a (delayed) drain task is already pending. A blocking message
+      // may hold the drain lock, so wait for it on the blocking executor if there is one.
+      Executor blockingExecutor = _blockingExecutor;
+      if (null != blockingExecutor)
+      {
+        try
+        {
+          blockingExecutor.execute(_drainTask);
+          return;
+        }
+        catch (RejectedExecutionException e)
+        {
+          // fall through to the shared executor
+        }
+      }
+      submitDrain(0);
+    }
   }
 
   public void awaitShutdown()
@@ -443,6 +807,21 @@ public abstract class AbstractActorMessageQueue implements Runnable, ActorMessag
     return nextState;
   }
 
+  private Object pollNextStateNoWait()
+  {
+    _controlLock.lock();
+    try
+    {
+      Object nextState = _messageQueue.poll();
+      _hasMessages = _messageQueue.size() > 0;
+      return nextState;
+    }
+    finally
+    {
+      _controlLock.unlock();
+    }
+  }
+
   public DatabusComponentStatus getComponentStatus()
   {
     return _componentStatus;
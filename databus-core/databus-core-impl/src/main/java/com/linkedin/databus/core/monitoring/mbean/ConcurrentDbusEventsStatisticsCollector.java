@@ -0,0 +1,78 @@
+package com.linkedin.databus.core.monitoring.mbean;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import javax.management.MBeanServer;
+
+import com.linkedin.databus.core.monitoring.events.DbusEventsTotalStatsEvent;
+
+
+/**
+ * A {@link DbusEventsStatisticsCollector} for collectors that are updated for every event by
+ * many threads (e.g. the relay's per-partition inbound and outbound collectors). All total,
+ * per-source and per-peer stats are {@link ConcurrentDbusEventsTotalStats}, so registering an
+ * event does not take any locks once the source and peer have been seen.
+ */
+public class ConcurrentDbusEventsStatisticsCollector extends DbusEventsStatisticsCollector
+{
+  public ConcurrentDbusEventsStatisticsCollector(int relayId,
+                                                String name,
+                                                boolean enabled,
+                                                boolean threadSafe,
+                                                MBeanServer mbeanServer)
+  {
+    this(relayId, name, enabled, threadSafe, NO_PEER, mbeanServer);
+  }
+
+  protected ConcurrentDbusEventsStatisticsCollector(int relayId,
+                                                    String name,
+                                                    boolean enabled,
+                                                    boolean threadSafe,
+                                                    String client,
+                                                    MBeanServer mbeanServer)
+  {
+    super(relayId, name, enabled, threadSafe, client, mbeanServer);
+  }
+
+  /** The stats objects are always thread-safe as they are only locked on reads */
+  @Override
+  protected DbusEventsTotalStats makeDbusEventsTotalStats(int ownerId,
+                                                          String dimension,
+                                                          boolean enabled,
+                                                          boolean threadSafe,
+                                                          DbusEventsTotalStatsEvent initData)
+  {
+    return new ConcurrentDbusEventsTotalStats(ownerId, dimension, enabled, true, initData);
+  }
+
+  @Override
+  protected DbusEventsTotalStats makePerDimensionStats(int ownerId,
+                                                       String dimension,
+                                                       boolean threadSafe)
+  {
+    return new ConcurrentDbusEventsTotalStats(ownerId, dimension, true, true, null);
+  }
+
+  @Override
+  public DbusEventsStatisticsCollector createForPeerConnection(String client)
+  {
+    return new ConcurrentDbusEventsStatisticsCollector(getOwnerId(), client, true, false, client, null);
+  }
+}
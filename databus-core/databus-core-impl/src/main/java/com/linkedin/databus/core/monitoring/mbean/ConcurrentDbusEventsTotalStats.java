@@ -0,0 +1,257 @@
+package com.linkedin.databus.core.monitoring.mbean;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import com.linkedin.databus.core.DbusEvent;
+import com.linkedin.databus.core.DbusEventInternalReadable;
+import com.linkedin.databus.core.DbusEventInternalReadable.EventScanStatus;
+import com.linkedin.databus.core.monitoring.events.DbusEventsTotalStatsEvent;
+import com.linkedin.databus.core.util.StripedLongCounters;
+
+/**
+ * A {@link DbusEventsTotalStats} implementation for the per-event hot path. The per-event
+ * register methods do not take the read/write lock; instead they accumulate into striped
+ * counters ({@link StripedLongCounters}). The pending updates are folded into the Avro-backed
+ * _event snapshot only when the stats are read (JMX getters, /stats, merges into aggregates).
+ *
+ * <p>The per-window/per-batch register methods (buffer metrics, SCN ranges, peers) are not on the
+ * hot path and are still applied directly under the write lock.
+ */
+public class ConcurrentDbusEventsTotalStats extends AggregatedDbusEventsTotalStats
+{
+  //summed counters
+  private static final int NUM_DATA_EVENTS = 0;
+  private static final int SIZE_DATA_EVENTS = 1;
+  private static final int SIZE_DATA_EVENTS_PAYLOAD = 2;
+  private static final int LATENCY_EVENT = 3;
+  private static final int NUM_DATA_EVENTS_FILTERED = 4;
+  private static final int SIZE_DATA_EVENTS_FILTERED = 5;
+  private static final int SIZE_DATA_EVENTS_PAYLOAD_FILTERED = 6;
+  private static final int NUM_SYS_EVENTS = 7;
+  private static final int SIZE_SYS_EVENTS = 8;
+  private static final int NUM_INVALID_EVENTS = 9;
+  private static final int NUM_ERR_HEADER = 10;
+  private static final int NUM_ERR_PAYLOAD = 11;
+  //max counters
+  private static final int TIMESTAMP_MAX_SCN_EVENT = 12;
+  private static final int TIMESTAMP_ACCESSED = 13;
+  private static final int MAX_FILTERED_WIN_SCN = 14;
+  private static final int COUNTERS_NUM = 15;
+
+  private final StripedLongCounters _pending;
+  /** SCNs change only once per window so these are rarely written and not worth striping */
+  private final AtomicLong _pendingMaxSeenWinScn;
+  private final AtomicLong _pendingMinSeenWinScn;
+  private volatile long _pendingTimeLag;
+
+  public ConcurrentDbusEventsTotalStats(int ownerId,
+                                        String dimension,
+                                        boolean enabled,
+                                        boolean threadSafe,
+                                        DbusEventsTotalStatsEvent initData)
+  {
+    super(ownerId, dimension, enabled, threadSafe, initData);
+    _pending = new StripedLongCounters(COUNTERS_NUM);
+    _pendingMaxSeenWinScn = new AtomicLong(DEFAULT_MAX_LONG_VALUE);
+    _pendingMinSeenWinScn = new AtomicLong(DEFAULT_MIN_LONG_VALUE);
+    _pendingTimeLag = 0;
+  }
+
+  @Override
+  public AggregatedDbusEventsTotalStats clone(boolean threadSafe)
+  {
+    foldPendingUpdates(null);
+    return super.clone(threadSafe);
+  }
+
+  @Override
+  public long getTimestampMaxScnEvent()
+  {
+    foldPendingUpdates(null);
+    return super.getTimestampMaxScnEvent();
+  }
+
+  @Override
+  public void registerDataEvent(DbusEventInternalReadable e)
+  {
+    if (! _enabled.get()) return;
+
+    long eventTsInMs = e.timestampInNanos()/(1000*1000);
+    long now = System.currentTimeMillis();
+    _pending.accumulateMax(TIMESTAMP_MAX_SCN_EVENT, eventTsInMs);
+    _pending.accumulateMax(TIMESTAMP_ACCESSED, now);
+    _pending.add(LATENCY_EVENT, (now > eventTsInMs) ? now - eventTsInMs : 0);
+    _pending.increment(NUM_DATA_EVENTS);
+    _pending.add(SIZE_DATA_EVENTS, e.size());
+    _pending.add(SIZE_DATA_EVENTS_PAYLOAD, e.payloadLength());
+    updateSeenWinScn(e.sequence(), now, eventTsInMs);
+  }
+
+  @Override
+  public void registerDataEventFiltered(DbusEventInternalReadable e)
+  {
+    if (! _enabled.get()) return;
+
+    _pending.increment(NUM_DATA_EVENTS_FILTERED);
+    _pending.add(SIZE_DATA_EVENTS_FILTERED, e.size());
+    _pending.add(SIZE_DATA_EVENTS_PAYLOAD_FILTERED, e.payloadLength());
+    _pending.accumulateMax(MAX_FILTERED_WIN_SCN, e.sequence());
+  }
+
+  @Override
+  public void registerSysEvent(DbusEvent e)
+  {
+    if (! _enabled.get()) return;
+
+    _pending.increment(NUM_SYS_EVENTS);
+    _pending.add(SIZE_SYS_EVENTS, e.size());
+    long now = System.currentTimeMillis();
+    if (e.isEndOfPeriodMarker())
+    {
+      long eventTsInMs = e.timestampInNanos()/(1000*1000);
+      _pending.accumulateMax(TIMESTAMP_MAX_SCN_EVENT, eventTsInMs);
+      updateSeenWinScn(e.sequence(), now, eventTsInMs);
+    }
+    _pending.accumulateMax(TIMESTAMP_ACCESSED, now);
+  }
+
+  @Override
+  public void registerEventError(EventScanStatus writingEventStatus)
+  {
+    if (writingEventStatus == DbusEventInternalReadable.EventScanStatus.OK) return;
+    if (! _enabled.get()) return;
+
+    _pending.increment(NUM_INVALID_EVENTS);
+    switch (writingEventStatus)
+    {
+    case PARTIAL: _pending.increment(NUM_ERR_HEADER); break;
+    case ERR: _pending.increment(NUM_ERR_PAYLOAD); break;
+    case OK: break;//NOOP
+    }
+  }
+
+  private void updateSeenWinScn(long scn, long now, long eventTsInMs)
+  {
+    long curMax = _pendingMaxSeenWinScn.get();
+    while (scn > curMax)
+    {
+      if (_pendingMaxSeenWinScn.compareAndSet(curMax, scn))
+      {
+        // We have a new max event
+        _pendingTimeLag = (now > eventTsInMs) ? now - eventTsInMs : 0;
+        break;
+      }
+      curMax = _pendingMaxSeenWinScn.get();
+    }
+
+    long curMin = _pendingMinSeenWinScn.get();
+    while (DEFAULT_MIN_LONG_VALUE == curMin || scn < curMin)
+    {
+      if (_pendingMinSeenWinScn.compareAndSet(curMin, scn)) break;
+      curMin = _pendingMinSeenWinScn.get();
+    }
+  }
+
+  /**
+   * Folds the updates accumulated in the striped counters into the _event snapshot. Called before
+   * any read of the snapshot.
+   * @param  otherLock     a lock held by the caller on another object (can be null); used to
+   *                       avoid deadlocks when acquiring the write lock
+   */
+  protected void foldPendingUpdates(Lock otherLock)
+  {
+    //the constructor of the parent class reads the stats before our fields are initialized
+    if (null == _pending) return;
+    //cannot upgrade a read lock to a write lock; the caller will see the last folded state
+    if (isReadLockHeldByCurrentThread()) return;
+
+    Lock writeLock = acquireWriteLock(otherLock);
+    try
+    {
+      _event.numDataEvents += _pending.drainSum(NUM_DATA_EVENTS);
+      _event.sizeDataEvents += _pending.drainSum(SIZE_DATA_EVENTS);
+      _event.sizeDataEventsPayload += _pending.drainSum(SIZE_DATA_EVENTS_PAYLOAD);
+      _event.latencyEvent += _pending.drainSum(LATENCY_EVENT);
+      _event.numDataEventsFiltered += _pending.drainSum(NUM_DATA_EVENTS_FILTERED);
+      _event.sizeDataEventsFiltered += _pending.drainSum(SIZE_DATA_EVENTS_FILTERED);
+      _event.sizeDataEventsPayloadFiltered += _pending.drainSum(SIZE_DATA_EVENTS_PAYLOAD_FILTERED);
+      _event.numSysEvents += _pending.drainSum(NUM_SYS_EVENTS);
+      _event.sizeSysEvents += _pending.drainSum(SIZE_SYS_EVENTS);
+      _event.numInvalidEvents += _pending.drainSum(NUM_INVALID_EVENTS);
+      _event.numErrHeader += _pending.drainSum(NUM_ERR_HEADER);
+      _event.numErrPayload += _pending.drainSum(NUM_ERR_PAYLOAD);
+
+      long tsMaxScnEvent = _pending.drainMax(TIMESTAMP_MAX_SCN_EVENT, 0);
+      if (tsMaxScnEvent > 0)
+      {
+        _event.timestampMaxScnEvent = Math.max(_event.timestampMaxScnEvent, tsMaxScnEvent);
+      }
+      long tsAccessed = _pending.drainMax(TIMESTAMP_ACCESSED, 0);
+      if (tsAccessed > 0) _event.timestampAccessed = Math.max(_event.timestampAccessed, tsAccessed);
+      _event.maxFilteredWinScn = Math.max(_event.maxFilteredWinScn,
+                                          _pending.drainMax(MAX_FILTERED_WIN_SCN, 0));
+
+      long maxSeenWinScn = _pendingMaxSeenWinScn.get();
+      if (maxSeenWinScn > _event.maxSeenWinScn)
+      {
+        _event.maxSeenWinScn = maxSeenWinScn;
+        _event.timeLag = _pendingTimeLag;
+      }
+      _event.minSeenWinScn = minValue(_event.minSeenWinScn, _pendingMinSeenWinScn.get());
+    }
+    finally
+    {
+      releaseLock(writeLock);
+    }
+  }
+
+  @Override
+  protected Lock acquireReadLock()
+  {
+    foldPendingUpdates(null);
+    return super.acquireReadLock();
+  }
+
+  @Override
+  protected Lock acquireReadLock(Lock otherLock)
+  {
+    foldPendingUpdates(otherLock);
+    return super.acquireReadLock(otherLock);
+  }
+
+  @Override
+  protected void resetData()
+  {
+    super.resetData();
+    //the constructor of the parent class resets the stats before our fields are initialized
+    if (null == _pending) return;
+
+    for (int i = 0; i < COUNTERS_NUM; ++i)
+    {
+      _pending.reset(i, 0);
+    }
+    _pendingMaxSeenWinScn.set(DEFAULT_MAX_LONG_VALUE);
+    _pendingMinSeenWinScn.set(DEFAULT_MIN_LONG_VALUE);
+    _pendingTimeLag = 0;
+  }
+}
@@ -20,10 +20,10 @@ package com.linkedin.databus.core.monitoring.mbean;
 
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 
@@ -56,8 +56,9 @@ public class DbusEventsStatisticsCollector extends ReadWriteSyncedObject
 
   private final DbusEventsTotalStats _totalStats;
 
-  private final HashMap<Integer, DbusEventsTotalStats> _perSourceStats;
-  private final HashMap<String, DbusEventsTotalStats> _perPeerStats;
+  /** Lookups are lock-free; new entries are added only under the write lock */
+  private final ConcurrentHashMap<Integer, DbusEventsTotalStats> _perSourceStats;
+  private final ConcurrentHashMap<String, DbusEventsTotalStats> _perPeerStats;
 
   private final MBeanServer _mbeanServer;
   private final ObjectName _collectorObjName;
@@ -69,8 +70,6 @@ public class DbusEventsStatisticsCollector extends ReadWriteSyncedObject
   private final String _perSourceNamePrefix;
   private final String _perPeerNamePrefix;
   private final AtomicBoolean _enabled;
-  //cache the last event source index object
-  private Integer _lastUsedSrcIdx = Integer.valueOf(1);
 
   public DbusEventsStatisticsCollector(int relayId, String name, boolean enabled, boolean threadSafe,
                                        MBeanServer mbeanServer)
@@ -87,7 +86,15 @@ public class DbusEventsStatisticsCollector extends ReadWriteSyncedObject
     return new DbusEventsTotalStats(ownerId, dimension, enabled, threadSafe, initData);
   }
 
-  private DbusEventsStatisticsCollector(int relayId, String name, boolean enabled,
+  /** Creates the mergeable stats object used for a per-source or per-peer dimension */
+  protected DbusEventsTotalStats makePerDimensionStats(int ownerId,
+                                                       String dimension,
+                                                       boolean threadSafe)
+  {
+    return new AggregatedDbusEventsTotalStats(ownerId, dimension, true, threadSafe, null);
+  }
+
+  protected DbusEventsStatisticsCollector(int relayId, String name, boolean enabled,
                                         boolean threadSafe, String client,
                                         MBeanServer mbeanServer
                                         )
@@ -107,9 +114,9 @@ public class DbusEventsStatisticsCollector extends ReadWriteSyncedObject
     _totalStats = makeDbusEventsTotalStats(_id, _sanitizedName + ".total", enabled, false,
                                            null);
 
-    _perSourceStats = new HashMap<Integer, DbusEventsTotalStats>(100);
+    _perSourceStats = new ConcurrentHashMap<Integer, DbusEventsTotalStats>(100);
 
-    _perPeerStats = new HashMap<String, DbusEventsTotalStats>(1000);
+    _perPeerStats = new ConcurrentHashMap<String, DbusEventsTotalStats>(1000);
 
     ObjectName jmxName = null;
     try
@@ -238,18 +245,7 @@ public class DbusEventsStatisticsCollector extends ReadWriteSyncedObject
   @Override
   public DbusEventsTotalStats getSourceStats(int srcId)
   {
-    Lock readLock = acquireReadLock();
-    try
-    {
-      if (srcId != _lastUsedSrcIdx) _lastUsedSrcIdx = srcId;
-
-      DbusEventsTotalStats result = _perSourceStats.get(_lastUsedSrcIdx);
-      return result;
-    }
-    finally
-    {
-      releaseLock(readLock);
-    }
+    return _perSourceStats.get(srcId);
   }
 
   @Override
@@ -270,16 +266,7 @@ public class DbusEventsStatisticsCollector extends ReadWriteSyncedObject
   @Override
   public DbusEventsTotalStats getPeerStats(String peer)
   {
-    Lock readLock = acquireReadLock();
-    try
-    {
-      DbusEventsTotalStats result = _perPeerStats.get(peer);
-      return result;
-    }
-    finally
-    {
-      releaseLock(readLock);
-    }
+    return _perPeerStats.get(peer);
   }
 
   public void registerDataEvent(DbusEventInternalReadable e)
@@ -444,20 +431,22 @@ public class DbusEventsStatisticsCollector extends ReadWriteSyncedObject
 
   private DbusEventsTotalStats getOrAddPerSourceCollector(int srcId, Lock writeLock)
   {
+    //fast path: no locking once the source has been seen
+    DbusEventsTotalStats existing = _perSourceStats.get(srcId);
+    if (null != existing) return existing;
+
     Lock myWriteLock = null;
     if (null == writeLock) myWriteLock = acquireWriteLock();
 
 
     try
     {
-      if (srcId != _lastUsedSrcIdx) _lastUsedSrcIdx = srcId;
-
-      DbusEventsTotalStats data = _perSourceStats.get(_lastUsedSrcIdx);
+      DbusEventsTotalStats data = _perSourceStats.get(srcId);
 
       if (null == data)
       {
-        data = new AggregatedDbusEventsTotalStats(_id, _perSourceNamePrefix + srcId, true, isThreadSafe(), null);
-        _perSourceStats.put(_lastUsedSrcIdx, data);
+        data = makePerDimensionStats(_id, _perSourceNamePrefix + srcId, isThreadSafe());
+        _perSourceStats.put(srcId, data);
 
         if (null != _mbeanServer)
         {
@@ -475,6 +464,10 @@ public class DbusEventsStatisticsCollector extends ReadWriteSyncedObject
 
   private DbusEventsTotalStats getOrAddPerPeerCollector(String peer, Lock writeLock)
   {
+    //fast path: no locking once the peer has been seen
+    DbusEventsTotalStats existing = _perPeerStats.get(peer);
+    if (null != existing) return existing;
+
     Lock myWriteLock = null;
     if (null == writeLock) myWriteLock = acquireWriteLock();
     try
@@ -482,8 +475,7 @@ public class DbusEventsStatisticsCollector extends ReadWriteSyncedObject
       DbusEventsTotalStats peerStats = _perPeerStats.get(peer);
       if (null == peerStats)
       {
-        peerStats = new AggregatedDbusEventsTotalStats(_id, _perPeerNamePrefix + peer, true,
-                                               isThreadSafe(), null);
+        peerStats = makePerDimensionStats(_id, _perPeerNamePrefix + peer, isThreadSafe());
         _perPeerStats.put(peer, peerStats);
 
         if (null != _mbeanServer)
@@ -0,0 +1,173 @@
+package com.linkedin.databus.core.monitoring.mbean;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import com.codahale.metrics.MergeableLogLinearHistogram;
+import com.linkedin.databus2.core.mbean.BaseDatabusMBean;
+
+/**
+ * Latency distribution of an operation (e.g. a /stream call or a consumer callback), backed by a
+ * {@link MergeableLogLinearHistogram}. Recording a latency does not allocate or lock, so it is
+ * safe to call on every request.
+ *
+ * <p>Latencies are kept in microseconds with a relative error below 2%; latencies above one hour
+ * are counted as one hour, except for the max.
+ */
+public class LatencyHistogramStats extends BaseDatabusMBean implements LatencyHistogramStatsMBean
+{
+  private final int _ownerId;
+  private final String _name;
+  private final MergeableLogLinearHistogram _histogram;
+  private final AtomicBoolean _enabled;
+
+  public LatencyHistogramStats(int ownerId, String name)
+  {
+    this(ownerId, name, new MergeableLogLinearHistogram());
+  }
+
+  protected LatencyHistogramStats(int ownerId, String name, MergeableLogLinearHistogram histogram)
+  {
+    _ownerId = ownerId;
+    _name = name;
+    _histogram = histogram;
+    _enabled = new AtomicBoolean(true);
+  }
+
+  /** Records the latency of one operation */
+  public void registerLatency(long latency, TimeUnit unit)
+  {
+    if (!_enabled.get()) return;
+    _histogram.update(unit.toMicros(latency));
+  }
+
+  /** Records the latency of one operation that started at startNs (from {@link System#nanoTime()}) */
+  public void registerLatencySince(long startNs)
+  {
+    if (!_enabled.get()) return;
+    _histogram.update((System.nanoTime() - startNs) / 1000);
+  }
+
+  /** Adds all measurements of another stats object to this one */
+  public void merge(LatencyHistogramStats other)
+  {
+    _histogram.merge(other._histogram);
+  }
+
+  /** Creates a copy of the current measurements (not registered in JMX) */
+  public LatencyHistogramStats createSnapshot()
+  {
+    return new LatencyHistogramStats(_ownerId, _name, _histogram.copy());
+  }
+
+  @Override
+  public String getName()
+  {
+    return _name;
+  }
+
+  @Override
+  public long getCount()
+  {
+    return _histogram.getCount();
+  }
+
+  @Override
+  public long getMinUs()
+  {
+    return _histogram.getMin();
+  }
+
+  @Override
+  public long getMaxUs()
+  {
+    return _histogram.getMax();
+  }
+
+  @Override
+  public double getMeanUs()
+  {
+    return _histogram.getMean();
+  }
+
+  @Override
+  public long getP50Us()
+  {
+    return _histogram.getValueAtQuantile(0.5);
+  }
+
+  @Override
+  public long getP90Us()
+  {
+    return _histogram.getValueAtQuantile(0.9);
+  }
+
+  @Override
+  public long getP99Us()
+  {
+    return _histogram.getValueAtQuantile(0.99);
+  }
+
+  @Override
+  public long getP999Us()
+  {
+    return _histogram.getValueAtQuantile(0.999);
+  }
+
+  /** Returns the latency at a given quantile in [0.0, 1.0] in microseconds */
+  public long getQuantileUs(double quantile)
+  {
+    return _histogram.getValueAtQuantile(quantile);
+  }
+
+  @Override
+  public boolean isEnabled()
+  {
+    return _enabled.get();
+  }
+
+  @Override
+  public void setEnabled(boolean enabled)
+  {
+    _enabled.set(enabled);
+  }
+
+  @Override
+  public void reset()
+  {
+    _histogram.reset();
+  }
+
+  @Override
+  public ObjectName generateObjectName() throws MalformedObjectNameException
+  {
+    Hashtable<String, String> mbeanProps = generateBaseMBeanProps();
+    mbeanProps.put("name", _name);
+    mbeanProps.put("ownerId", Integer.toString(_ownerId));
+
+    return new ObjectName(JMX_DOMAIN, mbeanProps);
+  }
+}
@@ -0,0 +1,46 @@
+package com.linkedin.databus.core.monitoring.mbean;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+/**
+ * JMX interface for {@link LatencyHistogramStats}. All latencies are in microseconds.
+ */
+public interface LatencyHistogramStatsMBean
+{
+  /** The name of the measured operation */
+  String getName();
+
+  /** Number of measurements since the last reset */
+  long getCount();
+
+  long getMinUs();
+  long getMaxUs();
+  double getMeanUs();
+  long getP50Us();
+  long getP90Us();
+  long getP99Us();
+  long getP999Us();
+
+  boolean isEnabled();
+  void setEnabled(boolean enabled);
+
+  /** Clears all measurements */
+  void reset();
+}
@@ -0,0 +1,106 @@
+package com.linkedin.databus.core.monitoring.mbean;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanServer;
+
+/**
+ * A named collection of {@link LatencyHistogramStats} for a server container (relay, bootstrap
+ * server or client). The stats are registered in JMX and exposed through the
+ * containerStats/latency REST category.
+ */
+public class LatencyStatisticsCollector
+{
+  private final int _ownerId;
+  private final MBeanServer _mbeanServer;
+  private final ConcurrentHashMap<String, LatencyHistogramStats> _stats;
+
+  public LatencyStatisticsCollector(int ownerId, MBeanServer mbeanServer)
+  {
+    _ownerId = ownerId;
+    _mbeanServer = mbeanServer;
+    _stats = new ConcurrentHashMap<String, LatencyHistogramStats>(16);
+  }
+
+  /** Returns the stats for the given name, creating and registering them if necessary */
+  public LatencyHistogramStats getOrAddStats(String name)
+  {
+    LatencyHistogramStats result = _stats.get(name);
+    if (null == result)
+    {
+      LatencyHistogramStats newStats = new LatencyHistogramStats(_ownerId, name);
+      result = _stats.putIfAbsent(name, newStats);
+      if (null == result)
+      {
+        result = newStats;
+        result.registerAsMbean(_mbeanServer);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Adds stats that are owned by another component (e.g. an event producer), so they can be
+   * accessed through the container. Replaces existing stats with the same name.
+   */
+  public void addStats(LatencyHistogramStats stats)
+  {
+    _stats.put(stats.getName(), stats);
+  }
+
+  public void removeStats(String name)
+  {
+    _stats.remove(name);
+  }
+
+  /** Returns the stats for the given name or null if there are none */
+  public LatencyHistogramStats getStats(String name)
+  {
+    return _stats.get(name);
+  }
+
+  public List<String> getNames()
+  {
+    ArrayList<String> result = new ArrayList<String>(_stats.keySet());
+    Collections.sort(result);
+    return result;
+  }
+
+  public void reset()
+  {
+    for (LatencyHistogramStats stats: _stats.values())
+    {
+      stats.reset();
+    }
+  }
+
+  public void unregisterMBeans()
+  {
+    for (LatencyHistogramStats stats: _stats.values())
+    {
+      stats.unregisterMbean(_mbeanServer);
+    }
+  }
+}
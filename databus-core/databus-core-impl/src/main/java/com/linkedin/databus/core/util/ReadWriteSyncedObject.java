@@ -120,6 +120,17 @@ public class ReadWriteSyncedObject
     }
   }
 
+  /**
+   * Checks if the current thread holds the read lock. Useful for subclasses which need to upgrade
+   * to the write lock and want to avoid self-deadlocks.
+   * @return true iff the object is thread-safe and the current thread holds the read lock
+   */
+  protected boolean isReadLockHeldByCurrentThread()
+  {
+    return (_readWriteLock instanceof ReentrantReadWriteLock) &&
+           ((ReentrantReadWriteLock)_readWriteLock).getReadHoldCount() > 0;
+  }
+
   /**
    * Releases a previously acquired lock
    * @param  lock           the lock; if null, does nothing
@@ -0,0 +1,167 @@
+package com.linkedin.databus.core.util;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed set of long counters that can be updated concurrently by many threads without locking.
+ *
+ * <p>Every counter is replicated in a number of stripes; a thread always updates the stripe
+ * selected by its thread id so that, in the common case, different threads write to different
+ * cache lines. Readers obtain the current value by summing (or taking the max over) all stripes.
+ * The {@link #drainSum(int)} and {@link #drainMax(int, long)} methods atomically read and reset
+ * the stripes so that the accumulated deltas can be periodically folded into another (locked)
+ * data structure without losing concurrent updates.
+ */
+public class StripedLongCounters
+{
+  /** Number of longs in a 64-byte cache line */
+  private static final int CACHE_LINE_LONGS = 8;
+
+  private final AtomicLongArray _cells;
+  private final int _countersNum;
+  private final int _stride;
+  private final int _stripeMask;
+
+  /**
+   * @param countersNum     the number of distinct counters
+   * @param stripesNum      the number of stripes; rounded up to a power of 2
+   */
+  public StripedLongCounters(int countersNum, int stripesNum)
+  {
+    if (countersNum <= 0) throw new IllegalArgumentException("countersNum must be positive: " + countersNum);
+    int stripes = 1;
+    while (stripes < stripesNum) stripes <<= 1;
+
+    _countersNum = countersNum;
+    //pad each stripe to a whole number of cache lines to avoid false sharing between stripes
+    _stride = ((countersNum + CACHE_LINE_LONGS - 1) / CACHE_LINE_LONGS) * CACHE_LINE_LONGS;
+    _stripeMask = stripes - 1;
+    _cells = new AtomicLongArray(_stride * stripes);
+  }
+
+  /** Creates counters with a number of stripes suitable for the number of available CPUs */
+  public StripedLongCounters(int countersNum)
+  {
+    this(countersNum, 2 * Runtime.getRuntime().availableProcessors());
+  }
+
+  public int getCountersNum()
+  {
+    return _countersNum;
+  }
+
+  public int getStripesNum()
+  {
+    return _stripeMask + 1;
+  }
+
+  private int cellIndex(int counter)
+  {
+    int stripe = (int)Thread.currentThread().getId() & _stripeMask;
+    return stripe * _stride + counter;
+  }
+
+  /** Adds delta to a counter */
+  public void add(int counter, long delta)
+  {
+    _cells.addAndGet(cellIndex(counter), delta);
+  }
+
+  /** Increments a counter by one */
+  public void increment(int counter)
+  {
+    _cells.incrementAndGet(cellIndex(counter));
+  }
+
+  /**
+   * Updates the current thread's stripe of a counter to value if value is larger. The counter is
+   * expected to be used only with {@link #accumulateMax(int, long)} and {@link #drainMax(int, long)}.
+   */
+  public void accumulateMax(int counter, long value)
+  {
+    int idx = cellIndex(counter);
+    long cur = _cells.get(idx);
+    while (value > cur && !_cells.compareAndSet(idx, cur, value))
+    {
+      cur = _cells.get(idx);
+    }
+  }
+
+  /** The current sum of all stripes of a counter */
+  public long sum(int counter)
+  {
+    long result = 0;
+    for (int i = counter; i < _cells.length(); i += _stride)
+    {
+      result += _cells.get(i);
+    }
+    return result;
+  }
+
+  /** The current max of all stripes of a counter */
+  public long max(int counter, long identity)
+  {
+    long result = identity;
+    for (int i = counter; i < _cells.length(); i += _stride)
+    {
+      result = Math.max(result, _cells.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Atomically resets all stripes of a counter to 0 and returns the sum of their previous values.
+   * Updates concurrent with the drain are either included in the result or remain in the counter.
+   */
+  public long drainSum(int counter)
+  {
+    long result = 0;
+    for (int i = counter; i < _cells.length(); i += _stride)
+    {
+      result += _cells.getAndSet(i, 0);
+    }
+    return result;
+  }
+
+  /**
+   * Atomically resets all stripes of a counter to identity and returns the max of their previous
+   * values (or identity if no stripe has been updated).
+   */
+  public long drainMax(int counter, long identity)
+  {
+    long result = identity;
+    for (int i = counter; i < _cells.length(); i += _stride)
+    {
+      result = Math.max(result, _cells.getAndSet(i, identity));
+    }
+    return result;
+  }
+
+  /** Resets all stripes of a counter to value */
+  public void reset(int counter, long value)
+  {
+    for (int i = counter; i < _cells.length(); i += _stride)
+    {
+      _cells.set(i, value);
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.linkedin.databus.core.util;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+
+/**
+ * A registry of weakly referenced objects with O(1) registration and unregistration.
+ *
+ * <p>Each registered object gets a {@link Slot} which remembers its index in the registry. The
+ * owner keeps the slot and passes it back on {@link #unregister(Slot)}, so no scan of the registry
+ * is needed. Freed indices are reused. Slots whose objects have been garbage-collected without
+ * being unregistered stay in the registry until {@link #purge()} is called.
+ */
+public class WeakRefRegistry<T>
+{
+  private final ArrayList<Slot<T>> _slots;
+  private int[] _freeIndices;
+  private int _freeNum;
+  private int _size;
+
+  public WeakRefRegistry(int initialCapacity)
+  {
+    _slots = new ArrayList<Slot<T>>(initialCapacity);
+    _freeIndices = new int[Math.max(initialCapacity, 1)];
+    _freeNum = 0;
+    _size = 0;
+  }
+
+  /**
+   * Registers an object
+   * @return the slot to pass to {@link #unregister(Slot)}
+   */
+  public synchronized Slot<T> register(T obj)
+  {
+    int idx;
+    if (_freeNum > 0)
+    {
+      idx = _freeIndices[--_freeNum];
+    }
+    else
+    {
+      idx = _slots.size();
+      _slots.add(null);
+    }
+    Slot<T> slot = new Slot<T>(obj, idx);
+    _slots.set(idx, slot);
+    ++_size;
+    return slot;
+  }
+
+  /**
+   * Unregisters the object of a slot. Slots that have already been unregistered or purged are
+   * ignored.
+   */
+  public synchronized void unregister(Slot<T> slot)
+  {
+    if (null == slot) return;
+    int idx = slot._index;
+    if (idx >= 0 && idx < _slots.size() && _slots.get(idx) == slot)
+    {
+      free(idx);
+    }
+  }
+
+  /** Removes all slots whose objects have been garbage-collected */
+  public synchronized void purge()
+  {
+    for (int i = 0; i < _slots.size(); ++i)
+    {
+      Slot<T> slot = _slots.get(i);
+      if (null != slot && null == slot.get())
+      {
+        free(i);
+      }
+    }
+  }
+
+  private void free(int idx)
+  {
+    _slots.set(idx, null);
+    if (_freeNum == _freeIndices.length)
+    {
+      int[] newFree = new int[2 * _freeIndices.length];
+      System.arraycopy(_freeIndices, 0, newFree, 0, _freeNum);
+      _freeIndices = newFree;
+    }
+    _freeIndices[_freeNum++] = idx;
+    --_size;
+  }
+
+  /** The number of registered slots, including the ones with garbage-collected objects */
+  public synchronized int size()
+  {
+    return _size;
+  }
+
+  /** A registration of an object */
+  public static class Slot<T> extends WeakReference<T>
+  {
+    private final int _index;
+
+    Slot(T obj, int index)
+    {
+      super(obj);
+      _index = index;
+    }
+
+    public int getIndex()
+    {
+      return _index;
+    }
+  }
+}
@@ -25,7 +25,7 @@ import java.util.Collections;
 
 import com.linkedin.databus.core.DbusEvent;
 
-public class ConjunctionDbusFilter implements DbusFilter
+public class ConjunctionDbusFilter implements DbusFilter, DbusBlockFilter
 {
 
   private ArrayList<DbusFilter> _filterList = new ArrayList<DbusFilter>();
@@ -48,6 +48,19 @@ public class ConjunctionDbusFilter implements DbusFilter
     return true;
   }
 
+  @Override
+  public boolean mayAllow(DbusEventBlockSummary summary)
+  {
+    for (DbusFilter f: _filterList)
+    {
+      if (f instanceof DbusBlockFilter && !((DbusBlockFilter)f).mayAllow(summary))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public Collection<DbusFilter> getFilterList()
   {
     return Collections.unmodifiableList(_filterList);
@@ -0,0 +1,32 @@
+package com.linkedin.databus2.core.filter;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+
+/**
+ * A filter which can tell from a {@link DbusEventBlockSummary} that none of the data events in a
+ * block of the event buffer will pass it. This allows the relay to skip such blocks without
+ * evaluating {@link DbusFilter#allow(com.linkedin.databus.core.DbusEvent)} for every event.
+ */
+public interface DbusBlockFilter
+{
+  /** @return false if no data event summarized by the block summary can pass the filter */
+  public boolean mayAllow(DbusEventBlockSummary summary);
+}
@@ -0,0 +1,49 @@
+package com.linkedin.databus2.core.filter;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+
+import java.util.Collection;
+
+import com.linkedin.databus.core.util.Range;
+
+/**
+ * A summary of the data events in a block of the event buffer. All checks are conservative: they
+ * may return true even if the block contains no matching events but never return false if it does.
+ *
+ * @see DbusBlockFilter
+ */
+public interface DbusEventBlockSummary
+{
+  /** @return false if the block contains no events from the source */
+  public boolean mayContainSource(long srcId);
+
+  /** @return false if all events in the block are from the given sources */
+  public boolean mayContainOtherSources(Collection<Long> srcIds);
+
+  /**
+   * @return false if no event key in the block falls in the range of buckets for the given number
+   *         of buckets (see {@link KeyModFilter})
+   */
+  public boolean mayContainBuckets(long numBuckets, Range buckets);
+
+  /** @return false if no event key in the block falls in the key range (see {@link KeyRangeFilter}) */
+  public boolean mayContainKeys(Range keys);
+}
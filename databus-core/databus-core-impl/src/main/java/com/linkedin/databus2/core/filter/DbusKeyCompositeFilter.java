@@ -37,7 +37,7 @@ import com.linkedin.databus.core.DbusEventInternalReadable;
  * There is a DbusKeyFilter defined for each SourceId inside the compositeFilter
  *
  */
-public class DbusKeyCompositeFilter implements DbusFilter
+public class DbusKeyCompositeFilter implements DbusFilter, DbusBlockFilter
 {
 	public static final String MODULE = DbusKeyCompositeFilter.class.getName();
 	public static final Logger LOG = Logger.getLogger(MODULE);
@@ -94,6 +94,25 @@ public class DbusKeyCompositeFilter implements DbusFilter
 		return true;
 	}
 
+	@Override
+	public boolean mayAllow(DbusEventBlockSummary summary)
+	{
+		// events from sources without filters pass through
+		if (summary.mayContainOtherSources(filterMap.keySet()))
+		{
+			return true;
+		}
+		for (Map.Entry<Long, DbusKeyFilter> entry : filterMap.entrySet())
+		{
+			DbusKeyFilter filter = entry.getValue();
+			if (summary.mayContainSource(entry.getKey()) && (null == filter || filter.mayAllow(summary)))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/*
 	 * Merge Two DbusKeyCompositeFilters
 	 *
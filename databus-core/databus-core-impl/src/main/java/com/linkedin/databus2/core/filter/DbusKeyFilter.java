@@ -51,7 +51,7 @@ import com.linkedin.databus2.core.filter.KeyFilterConfigHolder.PartitionType;
  *
  *Further Details are available in : https://iwww.corp.linkedin.com/wiki/cf/display/ENGS/Databus+V2+Server+Side+Filtering+for+LIAR
  */
-public class DbusKeyFilter implements DbusFilter
+public class DbusKeyFilter implements DbusFilter, DbusBlockFilter
 {
 	public static final String MODULE = DbusKeyFilter.class.getName();
 	public static final Logger LOG = Logger.getLogger(MODULE);
@@ -181,6 +181,88 @@ public class DbusKeyFilter implements DbusFilter
 		return allow;
 	}
 
+	@Override
+	public boolean mayAllow(DbusEventBlockSummary summary)
+	{
+		if ( partitionType == PartitionType.NONE)
+		{
+			return true;
+		}
+
+		for (DbusFilter filter : filters )
+		{
+			if (!(filter instanceof DbusBlockFilter) || ((DbusBlockFilter)filter).mayAllow(summary))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Parses a string key the way Long.parseLong() does, without creating a String and an exception
+	 * for each non-numeric key.
+	 *
+	 * @return the number or null if the key is not a number
+	 */
+	public static Long parseLongKey(byte[] keyBytes)
+	{
+		final int len = keyBytes.length;
+		if (0 == len)
+		{
+			return null;
+		}
+
+		boolean negative = ('-' == keyBytes[0]);
+		int i = negative ? 1 : 0;
+		if (i == len)
+		{
+			return null;
+		}
+		final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		final long multmin = limit / 10;
+		long result = 0;
+		for (; i < len; ++i)
+		{
+			final int b = keyBytes[i];
+			if (b < '0' || b > '9')
+			{
+				// leave the rare signed and non-ASCII cases to Long.parseLong()
+				return isAscii(keyBytes) && '+' != keyBytes[0] ? null : parseLongKeySlow(keyBytes);
+			}
+			// accumulate negatively to handle Long.MIN_VALUE
+			final int digit = b - '0';
+			if (result < multmin)
+				return null;
+			result *= 10;
+			if (result < limit + digit)
+				return null;
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	private static boolean isAscii(byte[] bytes)
+	{
+		for (byte b: bytes)
+		{
+			if (b < 0)
+				return false;
+		}
+		return true;
+	}
+
+	/** Handles keys which may still be accepted by Long.parseLong() */
+	private static Long parseLongKeySlow(byte[] keyBytes)
+	{
+		try
+		{
+			return Long.parseLong(new String(keyBytes));
+		}
+		catch (NumberFormatException nfe)
+		{
+			return null;
+		}
+	}
+
 	/*
 	 * Merge Two DbusKeyFilters
 	 *
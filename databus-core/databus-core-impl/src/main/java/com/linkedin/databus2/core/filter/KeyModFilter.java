@@ -31,7 +31,7 @@ import com.linkedin.databus.core.util.Range;
  * Implements Mod based partitioning on DbusKey. 
  * This implementation allows clients to specify ranges of buckets that they are interested in.
  */
-public class KeyModFilter implements DbusFilter 
+public class KeyModFilter implements DbusFilter, DbusBlockFilter
 {
 
 	private long  numBuckets;
@@ -54,31 +54,34 @@ public class KeyModFilter implements DbusFilter
 	@Override
 	public boolean allow(DbusEvent e) 
 	{
-		long key = -1;
-	    if (e.isKeyNumber())
-	    {
-	    	key = e.key();
-	    } else {
-	      // key is string, so we need to convert it to a number
-	      String str = new String(e.keyBytes());
-	      try 
-	      {
-	    	  key = Long.parseLong(str);
-	      } 
-	      catch (NumberFormatException nfe) 
-	      {
-	    	 /**
-	    	  * Needed for load balancing client. 
-	    	  * For Mod partitioning, we use hash-code of string type keys containing non-numeric values to determine bktId.
-	    	  */
-	    	 key = str.hashCode();
-	      }
-	    }
-	    
+		long key = e.isKeyNumber() ? e.key() : getStringBucketKey(e.keyBytes());
 	    long bktId = Math.abs(key)%numBuckets;
 	    return bktRange.contains(bktId);	    
 	}
 
+	@Override
+	public boolean mayAllow(DbusEventBlockSummary summary)
+	{
+		return summary.mayContainBuckets(numBuckets, bktRange);
+	}
+
+	/**
+	 * Converts a string key to the number used to compute its bucket.
+	 */
+	public static long getStringBucketKey(byte[] keyBytes)
+	{
+		Long key = DbusKeyFilter.parseLongKey(keyBytes);
+		if (null != key)
+		{
+			return key;
+		}
+		/**
+		 * Needed for load balancing client. 
+		 * For Mod partitioning, we use hash-code of string type keys containing non-numeric values to determine bktId.
+		 */
+		return new String(keyBytes).hashCode();
+	}
+
 	public long getNumBuckets() {
 		return numBuckets;
 	}
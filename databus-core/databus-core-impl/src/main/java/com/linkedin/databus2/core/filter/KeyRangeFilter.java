@@ -22,7 +22,7 @@ package com.linkedin.databus2.core.filter;
 import com.linkedin.databus.core.DbusEvent;
 import com.linkedin.databus.core.util.Range;
 
-public class KeyRangeFilter implements DbusFilter
+public class KeyRangeFilter implements DbusFilter, DbusBlockFilter
 {
   // Comparison on non-numbers is not meaningful
   private Range keyRange;
@@ -47,17 +47,24 @@ public class KeyRangeFilter implements DbusFilter
     else
     {
       // key is string, so we need to convert it to a number
-      try {
-        long eventKey = Long.parseLong(new String(e.keyBytes()));
-        return keyRange.contains(eventKey);
-      } 
-      catch (NumberFormatException nfe) 
+      byte[] keyBytes = e.keyBytes();
+      Long eventKey = DbusKeyFilter.parseLongKey(keyBytes);
+      if (null == eventKey)
       {
-        throw new RuntimeException(nfe);
+        throw new RuntimeException(new NumberFormatException("For input string: \"" +
+                                                             new String(keyBytes) + "\""));
       }
+      return keyRange.contains(eventKey);
     }
   }
 
+  @Override
+  public boolean mayAllow(DbusEventBlockSummary summary)
+  {
+    return summary.mayContainKeys(keyRange);
+  }
+
+
   public Range getKeyRange() {
 	return keyRange;
   }
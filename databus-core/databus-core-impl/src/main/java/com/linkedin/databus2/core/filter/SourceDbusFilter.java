@@ -23,7 +23,7 @@ import java.util.Set;
 
 import com.linkedin.databus.core.DbusEvent;
 
-public class SourceDbusFilter implements DbusFilter
+public class SourceDbusFilter implements DbusFilter, DbusBlockFilter
 {
 
   private final Set<Integer> sources;
@@ -42,4 +42,17 @@ public class SourceDbusFilter implements DbusFilter
     return false;
   }
 
+  @Override
+  public boolean mayAllow(DbusEventBlockSummary summary)
+  {
+    for (Integer srcId: sources)
+    {
+      if (summary.mayContainSource(srcId))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
 }
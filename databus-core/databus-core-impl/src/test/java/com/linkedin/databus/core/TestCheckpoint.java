@@ -614,6 +614,52 @@ public class TestCheckpoint
     Assert.assertFalse(cp.equals(cp2));
   }
 
+  @Test
+  public void testSnapshotRanges() throws Exception
+  {
+    Checkpoint cp = new Checkpoint("{\"consumption_mode\":\"BOOTSTRAP_SNAPSHOT\", \"bootstrap_since_scn\":0," +
+        "\"bootstrap_start_scn\":1000,\"bootstrap_snapshot_source_index\":0," +
+        "\"snapshot_source\":\"source1\",\"snapshot_offset\":0}");
+    Assert.assertEquals(cp.getSnapshotRangesNum(), 0);
+    cp.setSnapshotRangesRequested(3);
+
+    // the server splits the snapshot and the client copies the ranges from the checkpoint event
+    Checkpoint serverCp = cp.clone();
+    serverCp.initSnapshotRanges(new long[]{100, 200, Long.MAX_VALUE});
+    cp.copyBootstrapSnapshotCheckpoint(new Checkpoint(serverCp.toString()));
+    Assert.assertEquals(cp.getSnapshotRangesNum(), 3);
+    Assert.assertEquals(cp.getSnapshotRangeIndex(), Checkpoint.UNSET_SNAPSHOT_RANGE_INDEX);
+    Assert.assertEquals(cp.getSnapshotRangeOffset(0), 0);
+    Assert.assertEquals(cp.getSnapshotRangeOffset(1), 100);
+    Assert.assertEquals(cp.getSnapshotRangeOffset(2), 200);
+    Assert.assertEquals(cp.getSnapshotRangeEndRid(1), 200);
+    Assert.assertEquals(cp.getSnapshotRangeEndRid(2), Long.MAX_VALUE);
+
+    // a range checkpoint tracks the progress of its range only
+    Checkpoint rangeCp = cp.createSnapshotRangeCheckpoint(1);
+    Assert.assertEquals(rangeCp.getSnapshotOffset().longValue(), 100);
+    Checkpoint serverRangeCp = new Checkpoint(rangeCp.toString());
+    serverRangeCp.setSnapshotOffset(150);
+    rangeCp.copyBootstrapSnapshotCheckpoint(new Checkpoint(serverRangeCp.toString()));
+    Assert.assertEquals(rangeCp.getSnapshotRangeOffset(1), 150);
+    Assert.assertEquals(rangeCp.getSnapshotRangeOffset(2), 200);
+    Assert.assertEquals(cp.getSnapshotRangeOffset(1), 100);
+    Assert.assertEquals(new Checkpoint(rangeCp.toString()), rangeCp);
+
+    cp.setSnapshotRangeOffset(1, rangeCp.getSnapshotOffset());
+    cp.setSnapshotRangeOffset(0, Checkpoint.FULLY_CONSUMED_WINDOW_OFFSET);
+    cp.setSnapshotRangeOffset(2, Checkpoint.FULLY_CONSUMED_WINDOW_OFFSET);
+    Assert.assertTrue(cp.isSnapshotRangeCompleted(0));
+    Assert.assertFalse(cp.areSnapshotRangesCompleted());
+    Assert.assertFalse(cp.isSnapShotSourceCompleted());
+    cp.setSnapshotRangeOffset(1, Checkpoint.FULLY_CONSUMED_WINDOW_OFFSET);
+    Assert.assertTrue(cp.areSnapshotRangesCompleted());
+
+    cp.resetBootstrap();
+    Assert.assertEquals(cp.getSnapshotRangesNum(), 0);
+    Assert.assertEquals(cp.getSnapshotRangesRequested(), 0);
+  }
+
   // Test the case where a manual checkpoint is created with scn set to 0 but timestamp is non-zero.
   @Test
   public void testTimestampBasedCheckpoint() throws Exception
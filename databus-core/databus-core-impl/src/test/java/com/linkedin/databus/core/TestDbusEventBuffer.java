@@ -1489,6 +1489,247 @@ public class TestDbusEventBuffer
     log.info("done");
   }
 
+  /**
+   * Verifies that readEvents() from a {@link ChunkedReadableByteChannel} gets the same events as
+   * from a plain channel when events span chunk boundaries and chunks contain multiple events.
+   */
+  @Test
+  public void testReadEventsChunkedChannel() throws Exception
+  {
+    final DbusEventBuffer srcBuf = new DbusEventBuffer(
+      getConfig(100000, 100000, 100, 500, AllocationPolicy.HEAP_MEMORY,
+                QueuePolicy.BLOCK_ON_WRITE, AssertLevel.ALL));
+    DbusEventGenerator generator = new DbusEventGenerator();
+    Vector<DbusEvent> events = new Vector<DbusEvent>();
+    generator.generateEvents(100, 10, 100, 10, events);
+    DbusEventAppender appender = new DbusEventAppender(events, srcBuf, null);
+    appender.run();
+
+    ByteBuffer[] buf = srcBuf.getBuffer();
+    final byte[] b = new byte[(int)srcBuf.getTail()];
+    buf[0].position(0);
+    buf[0].get(b);
+
+    final int[] chunkSizes = {1, 37, 400, 2500, 5000};
+    for (final int chunkSize: chunkSizes)
+    {
+      final DbusEventBuffer plainBuf = new DbusEventBuffer(
+        getConfig(100000, 100000, 100, 500, AllocationPolicy.HEAP_MEMORY,
+                  QueuePolicy.BLOCK_ON_WRITE, AssertLevel.ALL));
+      final DbusEventBuffer chunkedBuf = new DbusEventBuffer(
+        getConfig(100000, 100000, 100, 500, AllocationPolicy.HEAP_MEMORY,
+                  QueuePolicy.BLOCK_ON_WRITE, AssertLevel.ALL));
+
+      int plainNum = plainBuf.readEvents(Channels.newChannel(new ByteArrayInputStream(b)));
+      int chunkedNum = chunkedBuf.readEvents(new ChunkedReadableByteChannel()
+      {
+        private final ReadableByteChannel _delegate = Channels.newChannel(new ByteArrayInputStream(b));
+        private int _pos = 0;
+
+        @Override
+        public ByteBuffer readChunk() throws IOException
+        {
+          if (_pos >= b.length) return null;
+          int len = Math.min(chunkSize, b.length - _pos);
+          ByteBuffer chunk = ByteBuffer.wrap(b, _pos, len);
+          _pos += len;
+          return chunk;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException
+        {
+          if (_pos >= b.length) return -1;
+          int len = Math.min(dst.remaining(), b.length - _pos);
+          dst.put(b, _pos, len);
+          _pos += len;
+          return len;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+          return _delegate.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+          _delegate.close();
+        }
+      });
+
+      assertEquals("chunkSize=" + chunkSize, plainNum, chunkedNum);
+      assertEquals("chunkSize=" + chunkSize, plainBuf.getTail(), chunkedBuf.getTail());
+      DbusEventIterator plainIter = plainBuf.acquireIterator("plain");
+      DbusEventIterator chunkedIter = chunkedBuf.acquireIterator("chunked");
+      while (plainIter.hasNext())
+      {
+        assertTrue("chunkSize=" + chunkSize, chunkedIter.hasNext());
+        DbusEvent plainEvent = plainIter.next();
+        DbusEvent chunkedEvent = chunkedIter.next();
+        assertEquals("chunkSize=" + chunkSize, plainEvent.sequence(), chunkedEvent.sequence());
+        assertEquals("chunkSize=" + chunkSize, plainEvent.key(), chunkedEvent.key());
+      }
+      assertFalse("chunkSize=" + chunkSize, chunkedIter.hasNext());
+      plainBuf.releaseIterator(plainIter);
+      chunkedBuf.releaseIterator(chunkedIter);
+    }
+  }
+
+  /**
+   * Verifies readEvents() with parallel CRC validation and with disabled body CRC validation.
+   */
+  @Test
+  public void testReadEventsParallelValidation() throws Exception
+  {
+    final DbusEventBuffer srcBuf = new DbusEventBuffer(
+      getConfig(2000000, 2000000, 100, 500, AllocationPolicy.HEAP_MEMORY,
+                QueuePolicy.BLOCK_ON_WRITE, AssertLevel.NONE));
+    DbusEventGenerator generator = new DbusEventGenerator();
+    Vector<DbusEvent> events = new Vector<DbusEvent>();
+    generator.generateEvents(3000, 20, 500, 200, events);
+    DbusEventAppender appender = new DbusEventAppender(events, srcBuf, null);
+    appender.run();
+
+    ByteBuffer[] buf = srcBuf.getBuffer();
+    final byte[] b = new byte[(int)srcBuf.getTail()];
+    buf[0].position(0);
+    buf[0].get(b);
+    Assert.assertTrue(b.length > 4 * ParallelEventValidator.MIN_BYTES_PER_WORKER);
+
+    DbusEventBuffer.Config serialConfig = new DbusEventBuffer.Config();
+    serialConfig.setMaxSize(2000000);
+    serialConfig.setMaxIndividualBufferSize(2000000);
+    serialConfig.setScnIndexSize(100);
+    serialConfig.setAverageEventSize(b.length);
+    serialConfig.setAllocationPolicy(AllocationPolicy.HEAP_MEMORY.name());
+    serialConfig.setQueuePolicy(QueuePolicy.BLOCK_ON_WRITE.name());
+    DbusEventBuffer.Config parallelConfig = new DbusEventBuffer.Config(serialConfig);
+    parallelConfig.setReadEventsValidationThreads(3);
+
+    DbusEventBuffer serialBuf = new DbusEventBuffer(serialConfig);
+    DbusEventBuffer parallelBuf = new DbusEventBuffer(parallelConfig);
+    int serialNum = serialBuf.readEvents(Channels.newChannel(new ByteArrayInputStream(b)));
+    int parallelNum = parallelBuf.readEvents(Channels.newChannel(new ByteArrayInputStream(b)));
+    assertEquals(serialNum, parallelNum);
+    assertEquals(serialBuf.getTail(), parallelBuf.getTail());
+    assertEquals(serialBuf.lastWrittenScn(), parallelBuf.lastWrittenScn());
+    parallelBuf.closeBuffer(false);
+
+    //corrupt the body of an event in the middle of the batch
+    DbusEventIterator iter = srcBuf.acquireIterator("corrupt");
+    int ofs = 0;
+    for (int i = 0; i < events.size() / 2 && iter.hasNext(); ++i)
+    {
+      ofs += iter.next().size();
+    }
+    DbusEvent corruptedEvent = iter.next();
+    while (corruptedEvent.isControlMessage())
+    {
+      ofs += corruptedEvent.size();
+      corruptedEvent = iter.next();
+    }
+    int corruptedEventSize = corruptedEvent.size();
+    srcBuf.releaseIterator(iter);
+    final byte[] corrupted = Arrays.copyOf(b, b.length);
+    corrupted[ofs + corruptedEventSize - 1] ^= 0x5A;
+
+    parallelBuf = new DbusEventBuffer(parallelConfig);
+    try
+    {
+      parallelBuf.readEvents(Channels.newChannel(new ByteArrayInputStream(corrupted)));
+      fail("corrupted event not detected");
+    }
+    catch (InvalidEventException e)
+    {
+      //expected
+    }
+    //all events before the corrupted one have been committed
+    Assert.assertTrue(parallelBuf.getTail() > 0);
+    Assert.assertTrue(parallelBuf.getTail() <= ofs);
+    parallelBuf.closeBuffer(false);
+
+    //without body CRC validation the corruption goes through
+    DbusEventBuffer.Config trustedConfig = new DbusEventBuffer.Config(parallelConfig);
+    trustedConfig.setReadEventsValidateBodyCrc(false);
+    DbusEventBuffer trustedBuf = new DbusEventBuffer(trustedConfig);
+    int trustedNum = trustedBuf.readEvents(Channels.newChannel(new ByteArrayInputStream(corrupted)));
+    assertEquals(serialNum, trustedNum);
+    assertEquals(serialBuf.getTail(), trustedBuf.getTail());
+  }
+
+  /**
+   * Verifies that the events read into the staging buffer after it has been emptied are not taken
+   * as verified because the events read into it before have been verified.
+   */
+  @Test
+  public void testReadEventsParallelValidationOfConsecutiveReads() throws Exception
+  {
+    final DbusEventBuffer srcBuf = new DbusEventBuffer(
+      getConfig(4000000, 4000000, 100, 500, AllocationPolicy.HEAP_MEMORY,
+                QueuePolicy.BLOCK_ON_WRITE, AssertLevel.NONE));
+    DbusEventGenerator generator = new DbusEventGenerator();
+    Vector<DbusEvent> events = new Vector<DbusEvent>();
+    generator.generateEvents(6000, 20, 500, 200, events);
+    DbusEventAppender appender = new DbusEventAppender(events, srcBuf, null);
+    appender.run();
+
+    ByteBuffer[] buf = srcBuf.getBuffer();
+    final byte[] b = new byte[(int)srcBuf.getTail()];
+    buf[0].position(0);
+    buf[0].get(b);
+
+    //find the first window boundary after the middle and corrupt the body of the first data event
+    //after it
+    DbusEventIterator iter = srcBuf.acquireIterator("split");
+    int splitOfs = 0;
+    boolean passedMiddle = false;
+    while (iter.hasNext())
+    {
+      DbusEvent e = iter.next();
+      splitOfs += e.size();
+      passedMiddle = passedMiddle || splitOfs > b.length / 2;
+      if (passedMiddle && e.isEndOfPeriodMarker()) break;
+    }
+    int corruptOfs = splitOfs;
+    DbusEvent corruptedEvent = iter.next();
+    while (corruptedEvent.isControlMessage())
+    {
+      corruptOfs += corruptedEvent.size();
+      corruptedEvent = iter.next();
+    }
+    int corruptedEventSize = corruptedEvent.size();
+    srcBuf.releaseIterator(iter);
+    Assert.assertTrue(splitOfs > 2 * ParallelEventValidator.MIN_BYTES_PER_WORKER);
+    Assert.assertTrue(b.length - splitOfs > 2 * ParallelEventValidator.MIN_BYTES_PER_WORKER);
+    final byte[] corrupted = Arrays.copyOf(b, b.length);
+    corrupted[corruptOfs + corruptedEventSize - 1] ^= 0x5A;
+
+    //a staging buffer that holds exactly the events before the split is verified and emptied
+    //before the events after the split are read into it
+    DbusEventBuffer.Config config = new DbusEventBuffer.Config();
+    config.setMaxSize(4000000);
+    config.setMaxIndividualBufferSize(4000000);
+    config.setScnIndexSize(100);
+    config.setAverageEventSize(splitOfs);
+    config.setAllocationPolicy(AllocationPolicy.HEAP_MEMORY.name());
+    config.setQueuePolicy(QueuePolicy.BLOCK_ON_WRITE.name());
+    config.setReadEventsValidationThreads(3);
+    DbusEventBuffer parallelBuf = new DbusEventBuffer(config);
+    try
+    {
+      parallelBuf.readEvents(Channels.newChannel(new ByteArrayInputStream(corrupted)));
+      fail("corrupted event after the first read not detected");
+    }
+    catch (InvalidEventException e)
+    {
+      //expected
+    }
+    assertEquals(splitOfs, parallelBuf.getTail());
+    parallelBuf.closeBuffer(false);
+  }
+
   /**
    * TestCase to recreate the bug (DDSDBUS-387) where SCNIndex.head and EVB.Head do not match.
    */
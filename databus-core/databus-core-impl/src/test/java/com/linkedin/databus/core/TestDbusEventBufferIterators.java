@@ -319,6 +319,79 @@ public class TestDbusEventBufferIterators
     }, "waiting for iterators and locks to be gone", 15000, log);
   }
 
+  @Test
+  /** Verifies that released internal iterators are reused and that tracking can be disabled */
+  public void testInternalIteratorReuse() throws Exception
+  {
+    final DbusEventBuffer dbusBuf =
+        new DbusEventBuffer(TestDbusEventBuffer.getConfig(
+            100000, 100000, 100, 500, AllocationPolicy.HEAP_MEMORY, QueuePolicy.OVERWRITE_ON_WRITE,
+            AssertLevel.ALL));
+    final DbusEventGenerator generator = new DbusEventGenerator();
+    final Vector<DbusEvent> events = new Vector<DbusEvent>();
+    generator.generateEvents(5, 5, 120, 39, events);
+    injectEventsInBuffer(dbusBuf, events, false);
+
+    InternalEventIterator iter1 =
+        dbusBuf.acquireInternalIterator(dbusBuf.getHead(), dbusBuf.getTail(), "iter1");
+    readAndCompareIteratorEvents(iter1, events, false);
+    dbusBuf.releaseIterator(iter1);
+    //releasing twice must not make the iterator available twice
+    dbusBuf.releaseIterator(iter1);
+    Assert.assertEquals(dbusBuf._busyIteratorPool.size(), 0);
+    Assert.assertEquals(dbusBuf._rwLockProvider.getNumReaders(), 0);
+
+    InternalEventIterator iter2 =
+        dbusBuf.acquireInternalIterator(dbusBuf.getHead(), dbusBuf.getTail(), "iter2");
+    InternalEventIterator iter3 =
+        dbusBuf.acquireInternalIterator(dbusBuf.getHead(), dbusBuf.getTail(), "iter3");
+    Assert.assertSame(iter2, iter1);
+    Assert.assertNotSame(iter3, iter2);
+    Assert.assertEquals(iter2.getIdentifier(), "iter2");
+    Assert.assertEquals(dbusBuf._busyIteratorPool.size(), 2);
+    Assert.assertEquals(dbusBuf._rwLockProvider.getNumReaders(), 2);
+    readAndCompareIteratorEvents(iter2, events, false);
+    dbusBuf.releaseIterator(iter2);
+    dbusBuf.releaseIterator(iter3);
+    Assert.assertEquals(dbusBuf._busyIteratorPool.size(), 0);
+
+    //a late release by a previous owner must not close the iterator of the next owner
+    InternalEventIterator iter7 =
+        dbusBuf.acquireInternalIterator(dbusBuf.getHead(), dbusBuf.getTail(), "iter7");
+    //empty the pool so that iter7 is the next iterator handed out
+    InternalEventIterator iter9 =
+        dbusBuf.acquireInternalIterator(dbusBuf.getHead(), dbusBuf.getTail(), "iter9");
+    int staleGeneration = iter7.getGeneration();
+    dbusBuf.releaseIterator(iter7, staleGeneration);
+    InternalEventIterator iter8 =
+        dbusBuf.acquireInternalIterator(dbusBuf.getHead(), dbusBuf.getTail(), "iter8");
+    Assert.assertSame(iter8, iter7);
+    Assert.assertNotEquals(iter8.getGeneration(), staleGeneration);
+    dbusBuf.releaseIterator(iter7, staleGeneration);
+    Assert.assertEquals(dbusBuf._busyIteratorPool.size(), 2);
+    Assert.assertEquals(dbusBuf._rwLockProvider.getNumReaders(), 2);
+    readAndCompareIteratorEvents(iter8, events, false);
+    dbusBuf.releaseIterator(iter8, iter8.getGeneration());
+    dbusBuf.releaseIterator(iter9);
+    Assert.assertEquals(dbusBuf._busyIteratorPool.size(), 0);
+    Assert.assertEquals(dbusBuf._rwLockProvider.getNumReaders(), 0);
+
+    dbusBuf.setTrackIterators(false);
+    InternalEventIterator iter4 =
+        dbusBuf.acquireInternalIterator(dbusBuf.getHead(), dbusBuf.getTail(), "iter4");
+    InternalEventIterator iter5 =
+        dbusBuf.acquireInternalIterator(dbusBuf.getHead(), dbusBuf.getTail(), "iter5");
+    InternalEventIterator iter6 =
+        dbusBuf.acquireInternalIterator(dbusBuf.getHead(), dbusBuf.getTail(), "iter6");
+    Assert.assertEquals(dbusBuf._busyIteratorPool.size(), 0);
+    Assert.assertEquals(dbusBuf._rwLockProvider.getNumReaders(), 3);
+    readAndCompareIteratorEvents(iter6, events, false);
+    dbusBuf.releaseIterator(iter4);
+    dbusBuf.releaseIterator(iter5);
+    dbusBuf.releaseIterator(iter6);
+    Assert.assertEquals(dbusBuf._rwLockProvider.getNumReaders(), 0);
+  }
+
   @Test
   /** Verifies that managed iterators are automatically released*/
   public void testManagedIteratorRelease()
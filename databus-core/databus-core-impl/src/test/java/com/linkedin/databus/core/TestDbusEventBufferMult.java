@@ -28,6 +28,7 @@ import static org.testng.Assert.fail;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
@@ -541,6 +542,134 @@ public class TestDbusEventBufferMult {
                  Math.min(ppartStats[0].getTimeLag(), Math.min(ppartStats[1].getTimeLag(), ppartStats[2].getTimeLag())));
   }
 
+  /** Streams from the partitions until nothing more is returned and collects the response of each call */
+  private List<byte[]> streamAllBatches(PhysicalPartition[] p, int batchFetchSize,
+                                        StatsCollectors<DbusEventsStatisticsCollector> statsColl)
+      throws Exception
+  {
+    CheckpointMult cpMult = new CheckpointMult();
+    for (int i =0; i < p.length; ++i)
+    {
+      Checkpoint cp = new Checkpoint();
+      cp.setFlexible();
+      cp.setConsumptionMode(DbusClientMode.ONLINE_CONSUMPTION);
+      cpMult.addCheckpoint(p[i], cp);
+    }
+    List<PhysicalPartitionKey> pkeys = new ArrayList<PhysicalPartitionKey>();
+    for (PhysicalPartition pp: p)
+    {
+      pkeys.add(new PhysicalPartitionKey(pp));
+    }
+
+    List<byte[]> result = new ArrayList<byte[]>();
+    while (true)
+    {
+      DbusEventBufferBatchReadable reader =
+          _eventBufferMult.getDbusEventBufferBatchReadable(cpMult, pkeys, statsColl);
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      StreamEventsResult streamResult = reader.streamEvents(false, batchFetchSize, Channels.newChannel(baos),
+                                                            Encoding.BINARY, new AllowAllDbusFilter());
+      if (0 == streamResult.getNumEventsStreamed())
+      {
+        break;
+      }
+      result.add(baos.toByteArray());
+      cpMult = new CheckpointMult(reader.getCheckpointMult().toString());
+    }
+    return result;
+  }
+
+  @Test
+  public void testMultiPPartitionParallelStream() throws Exception
+  {
+    createBufMult();
+
+    PhysicalPartition[] p = {_pConfigs[0].getPhysicalPartition(),
+                             _pConfigs[1].getPhysicalPartition(),
+                             _pConfigs[2].getPhysicalPartition()
+                            };
+    byte [] schema = "abcdefghijklmnop".getBytes(Charset.defaultCharset());
+    for (int i = 1; i <= 10; ++i)
+    {
+      for (int j = 0; j < p.length; ++j)
+      {
+        DbusEventBufferAppendable buf = _eventBufferMult.getDbusEventBufferAppendable(p[j]);
+        buf.startEvents();
+        //windows of different sizes, so that some do not fit their share of the fetch size
+        for (int k = 0; k <= j * i % 4; ++k)
+        {
+          assertTrue(buf.appendEvent(new DbusEventKey(k), (short)101, (short)2,
+                                     System.currentTimeMillis() * 1000000, (short)2,
+                                     schema, new byte[10 + 50 * k], false, null));
+        }
+        buf.endEvents(100 * i + j, null);
+      }
+    }
+
+    String[] pnames = new String[p.length];
+    for (int j = 0; j < p.length; ++j)
+    {
+      pnames[j] = p[j].toSimpleString();
+    }
+    for (int batchFetchSize: new int[]{250, 600, 1000000})
+    {
+      StatsCollectors<DbusEventsStatisticsCollector> serialStats = createStats(pnames);
+      StatsCollectors<DbusEventsStatisticsCollector> parallelStats = createStats(pnames);
+      _eventBufferMult.setStreamPartitionsThreads(0);
+      List<byte[]> serial = streamAllBatches(p, batchFetchSize, serialStats);
+      _eventBufferMult.setStreamPartitionsThreads(3);
+      List<byte[]> parallel = streamAllBatches(p, batchFetchSize, parallelStats);
+
+      //staged reads that are re-read or not sent must not be counted
+      for (String pname: pnames)
+      {
+        DbusEventsTotalStats serialPartStats = serialStats.getStatsCollector(pname).getTotalStats();
+        DbusEventsTotalStats parallelPartStats = parallelStats.getStatsCollector(pname).getTotalStats();
+        assertEquals(parallelPartStats.getNumDataEvents(), serialPartStats.getNumDataEvents(),
+                     "batchFetchSize=" + batchFetchSize + "; partition=" + pname);
+        assertEquals(parallelPartStats.getNumSysEvents(), serialPartStats.getNumSysEvents(),
+                     "batchFetchSize=" + batchFetchSize + "; partition=" + pname);
+      }
+
+      assertTrue(serial.size() > 0);
+      assertEquals(parallel.size(), serial.size(), "batchFetchSize=" + batchFetchSize);
+      for (int i = 0; i < serial.size(); ++i)
+      {
+        assertTrue(Arrays.equals(parallel.get(i), serial.get(i)),
+                   "batchFetchSize=" + batchFetchSize + "; batch=" + i);
+      }
+    }
+    _eventBufferMult.setStreamPartitionsThreads(0);
+  }
+
+  @Test
+  public void testStagedEventsWriteError() throws Exception
+  {
+    DbusEventBufferMult.StagingWritableByteChannel staging = new DbusEventBufferMult.StagingWritableByteChannel();
+    staging.write(ByteBuffer.wrap(new byte[100]));
+    assertEquals(staging.size(), 100);
+
+    WritableByteChannel failingChannel = new WritableByteChannel()
+    {
+      @Override public boolean isOpen() { return true; }
+      @Override public void close() { }
+      @Override
+      public int write(ByteBuffer src) throws IOException
+      {
+        throw new IOException("connection reset");
+      }
+    };
+    try
+    {
+      staging.writeTo(failingChannel);
+      fail("write error not reported");
+    }
+    catch (IOException e)
+    {
+      // expected
+    }
+  }
+
   @Test
   public void testSinglePPartionStreamFromLatest() throws Exception
   {
@@ -26,12 +26,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Vector;
+import java.util.zip.CRC32;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -50,6 +52,7 @@ import com.linkedin.databus.core.DbusEventBuffer.DbusEventIterator;
 import com.linkedin.databus.core.DbusEventBufferMetaInfo.DbusEventBufferMetaInfoException;
 import com.linkedin.databus.core.test.DbusEventCorrupter;
 import com.linkedin.databus.core.test.DbusEventGenerator;
+import com.linkedin.databus.core.util.BufferPositionParser;
 import com.linkedin.databus.core.util.InvalidConfigException;
 import com.linkedin.databus2.core.AssertLevel;
 import com.linkedin.databus2.relay.config.PhysicalSourceConfig;
@@ -463,6 +466,98 @@ public class TestDbusEventBufferPersistence
     dbusBuf.releaseIterator(it);
   }
 
+  @Test
+  /**
+   * test:
+   * 1. create buffer with segment checksums enabled, push events and save meta info
+   * 2. create a new buffer - the checksums of the data up to the tail are validated
+   * 3. save again, corrupt the first segment - restoring should fail
+   */
+  public void testRestoringBufferWithSegmentChecksums() throws InvalidConfigException, IOException
+  {
+    int maxEventBufferSize = 1144;
+    int maxIndividualBufferSize = 500;
+    int numEvents = 10; // must be even
+
+    DbusEventBuffer.Config config = new DbusEventBuffer.Config();
+    config.setMaxSize(maxEventBufferSize);
+    config.setMaxIndividualBufferSize(maxIndividualBufferSize);
+    config.setScnIndexSize(100);
+    config.setAverageEventSize(500);
+    config.setAllocationPolicy(AllocationPolicy.MMAPPED_MEMORY.name());
+    config.setRestoreMMappedBuffers(true);
+    config.setRestoreMMappedBuffersValidateEvents(true);
+    config.setRestoreMMappedBuffersValidateChecksums(true);
+    config.setMmapDirectory(_mmapDirStr);
+    config.setAssertLevel(AssertLevel.NONE.toString());
+    DbusEventBuffer.StaticConfig conf = config.build();
+    Assert.assertTrue(conf.getRestoreMMappedBuffersValidateChecksums());
+
+    DbusEventBuffer dbusBuf = new DbusEventBuffer(conf);
+    pushEventsToBuffer(dbusBuf, numEvents);
+    long lastScn = dbusBuf.lastWrittenScn();
+    dbusBuf.saveBufferMetaInfo(false);
+
+    File metaFile = new File(_mmapDir, dbusBuf.metaFileName());
+    DbusEventBufferMetaInfo mi = new DbusEventBufferMetaInfo(metaFile);
+    mi.loadMetaInfo();
+    DbusEventBufferMetaInfo.SegmentChecksum[] checksums = mi.getSegmentChecksums();
+    Assert.assertNotNull(checksums);
+    Assert.assertEquals(checksums.length, dbusBuf.getBuffer().length);
+    // the checksummed data of the buffer with the tail ends at the tail
+    BufferPositionParser parser = dbusBuf.getBufferPositionParser();
+    long tail = parser.sanitize(dbusBuf.getTail(), dbusBuf.getBuffer());
+    Assert.assertEquals(checksums[parser.bufferIndex(tail)].getHighWaterMark(), parser.bufferOffset(tail));
+
+    // restore and validate
+    dbusBuf = new DbusEventBuffer(conf);
+    Assert.assertEquals(dbusBuf.lastWrittenScn(), lastScn);
+    DbusEventIterator it = dbusBuf.acquireIterator("alleventsNew");
+    int count=-1; // first event is "prev" event
+    while(it.hasNext()) {
+      DbusEvent e = it.next();
+      Assert.assertTrue(e.isValid());
+      count ++;
+    }
+    dbusBuf.releaseIterator(it);
+    Assert.assertEquals(count, numEvents);
+
+    // save again and corrupt the first segment
+    dbusBuf.saveBufferMetaInfo(false);
+    ByteBuffer buf = dbusBuf.getBuffer()[0];
+    buf.put(0, (byte)(buf.get(0) + 1));
+    try
+    {
+      new DbusEventBuffer(conf);
+      Assert.fail("restoring a corrupted buffer should fail");
+    }
+    catch (RuntimeException e)
+    {
+      Assert.assertTrue(e.getCause() instanceof DbusEventBufferMetaInfoException);
+    }
+  }
+
+  @Test
+  public void testSegmentChecksums()
+  {
+    ByteBuffer b1 = ByteBuffer.allocate(100);
+    ByteBuffer b2 = ByteBuffer.allocateDirect(200000);
+    for (int i = 0; i < b2.capacity(); ++i)
+    {
+      b2.put(i, (byte)i);
+    }
+    long[] checksums = DbusEventBuffer.computeSegmentChecksums(new ByteBuffer[]{b1, b2},
+                                                               new int[]{50, 150000});
+    CRC32 crc = new CRC32();
+    crc.update(new byte[50]);
+    Assert.assertEquals(checksums[0], crc.getValue());
+    byte[] bytes = new byte[150000];
+    b2.duplicate().get(bytes);
+    crc.reset();
+    crc.update(bytes);
+    Assert.assertEquals(checksums[1], crc.getValue());
+    Assert.assertEquals(b2.position(), 0);
+  }
 
   private void pushEventsToBuffer(DbusEventBuffer dbusBuf, int numEvents)
   {
@@ -19,9 +19,16 @@
 package com.linkedin.databus.core;
 
 import junit.framework.Assert;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
 import java.nio.channels.Channels;
+import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Vector;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -32,13 +39,24 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import com.linkedin.databus.core.DbusEventBuffer.AllocationPolicy;
+import com.linkedin.databus.core.DbusEventBuffer.DbusEventIterator;
 import com.linkedin.databus.core.DbusEventBuffer.QueuePolicy;
 import com.linkedin.databus.core.DbusEventBuffer.StreamingMode;
+import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
 import com.linkedin.databus.core.test.DbusEventAppender;
 import com.linkedin.databus.core.test.DbusEventGenerator;
 import com.linkedin.databus.core.util.UncaughtExceptionTrackingThread;
 import com.linkedin.databus2.core.AssertLevel;
 import com.linkedin.databus2.core.filter.AllowAllDbusFilter;
+import com.linkedin.databus2.core.filter.ConjunctionDbusFilter;
+import com.linkedin.databus2.core.filter.DbusBlockFilter;
+import com.linkedin.databus2.core.filter.DbusFilter;
+import com.linkedin.databus2.core.filter.DbusKeyCompositeFilter;
+import com.linkedin.databus2.core.filter.DbusKeyFilter;
+import com.linkedin.databus2.core.filter.KeyFilterConfigHolder.PartitionType;
+import com.linkedin.databus2.core.filter.KeyModFilter;
+import com.linkedin.databus2.core.filter.KeyRangeFilter;
+import com.linkedin.databus2.core.filter.SourceDbusFilter;
 import com.linkedin.databus2.test.TestUtil;
 
 /**
@@ -115,4 +133,533 @@ public class TestDbusEventBufferStreamEvents
     Assert.assertTrue(num.get() > 0);
   }
 
+  @Test
+  /** Tests streaming with compaction of consecutive windows */
+  public void testStreamCompactedWindows() throws Exception
+  {
+    final int numWindows = 10;
+    final int numKeys = 3;
+    final short srcId = 10;
+    final byte[] schemaId = "abcdefghijklmnop".getBytes(Charset.defaultCharset());
+    final DbusEventBuffer dbusBuf =
+        new DbusEventBuffer(TestDbusEventBuffer.getConfig(
+            100000, 100000, 1024, 5000, AllocationPolicy.HEAP_MEMORY, QueuePolicy.OVERWRITE_ON_WRITE,
+            AssertLevel.ALL));
+    dbusBuf.start(0);
+    for (int w = 1; w <= numWindows; ++w)
+    {
+      dbusBuf.startEvents();
+      for (int i = 0; i < 5; ++i)
+      {
+        long key = i % numKeys;
+        byte[] value = ("w" + w + "k" + key).getBytes(Charset.defaultCharset());
+        dbusBuf.appendEvent(new DbusEventKey(key), (short)0, (short)0, System.nanoTime() * 1000,
+                            srcId, schemaId, value, false);
+      }
+      dbusBuf.endEvents(10 * w);
+    }
+
+    // compact 4 windows at a time: [10-40], [50-80], [90-100]
+    Checkpoint cp = new Checkpoint();
+    cp.setFlexible();
+    cp.setConsumptionMode(DbusClientMode.ONLINE_CONSUMPTION);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    StreamEventsArgs args = new StreamEventsArgs(100000).setCompactionWindows(4);
+    StreamEventsResult result = dbusBuf.streamEvents(cp, Channels.newChannel(baos), args);
+    Assert.assertEquals(3 * (numKeys + 1), result.getNumEventsStreamed());
+    Assert.assertEquals(100, cp.getWindowScn());
+    Assert.assertEquals(-1L, cp.getWindowOffset().longValue());
+    Assert.assertEquals(4, args.getCompactionWindows());
+
+    // the client sees each group of compacted windows as a single window with the last SCN
+    DbusEventBuffer clientBuf =
+        new DbusEventBuffer(TestDbusEventBuffer.getConfig(
+            100000, 100000, 1024, 5000, AllocationPolicy.HEAP_MEMORY, QueuePolicy.OVERWRITE_ON_WRITE,
+            AssertLevel.ALL));
+    clientBuf.start(0);
+    int numRead = clientBuf.readEvents(Channels.newChannel(new ByteArrayInputStream(baos.toByteArray())));
+    Assert.assertEquals(result.getNumEventsStreamed(), numRead);
+
+    long[] expectedScns = {40, 80, 100};
+    int[] lastWindows = {4, 8, 10};
+    int group = 0;
+    int numDataEvents = 0;
+    DbusEventIterator iter = clientBuf.acquireIterator("testStreamCompactedWindows");
+    try
+    {
+      while (iter.hasNext())
+      {
+        DbusEvent e = iter.next();
+        if (e.sequence() <= 0) continue; // the initial marker of the client buffer
+        if (e.isEndOfPeriodMarker())
+        {
+          Assert.assertEquals(expectedScns[group], e.sequence());
+          ++group;
+          continue;
+        }
+        if (e.isControlMessage()) continue;
+        ++numDataEvents;
+        Assert.assertEquals(expectedScns[group], e.sequence());
+        byte[] value = new byte[e.valueLength()];
+        e.value().get(value);
+        // the latest value for the key in the compacted windows
+        Assert.assertEquals("w" + lastWindows[group] + "k" + e.key(),
+                            new String(value, Charset.defaultCharset()));
+      }
+    }
+    finally
+    {
+      clientBuf.releaseIterator(iter);
+    }
+    Assert.assertEquals(3, group);
+    Assert.assertEquals(3 * numKeys, numDataEvents);
+
+    // without enough space for the compacted windows, the request is served without compaction
+    cp = new Checkpoint();
+    cp.setFlexible();
+    cp.setConsumptionMode(DbusClientMode.ONLINE_CONSUMPTION);
+    baos = new ByteArrayOutputStream();
+    args = new StreamEventsArgs(200).setCompactionWindows(4);
+    result = dbusBuf.streamEvents(cp, Channels.newChannel(baos), args);
+    Assert.assertTrue(result.getNumEventsStreamed() > 0);
+    Assert.assertEquals(10L, cp.getWindowScn());
+    Assert.assertEquals(4, args.getCompactionWindows());
+  }
+
+
+  @Test
+  /** Tests that compressed payloads are only streamed to clients which accept them */
+  public void testStreamCompressedPayloads() throws Exception
+  {
+    final short srcId = 10;
+    final byte[] schemaId = "abcdefghijklmnop".getBytes(Charset.defaultCharset());
+    DbusEventBuffer.Config config = new DbusEventBuffer.Config();
+    config.setMaxSize(100000);
+    config.setScnIndexSize(1024);
+    config.setAverageEventSize(5000);
+    config.setAllocationPolicy(AllocationPolicy.HEAP_MEMORY.name());
+    config.setQueuePolicy(QueuePolicy.OVERWRITE_ON_WRITE.name());
+    config.setAssertLevel(AssertLevel.ALL.name());
+    config.setPayloadCompressionThreshold(100);
+    DbusEventBuffer.StaticConfig staticConfig = config.build();
+    DbusEventBuffer dbusBuf = new DbusEventBuffer(staticConfig, null, new DbusEventV2Factory());
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 50; ++i)
+    {
+      sb.append("column ").append(i).append(" with a repeating value;");
+    }
+    byte[] payload = sb.toString().getBytes(Charset.defaultCharset());
+    DbusEventInfo eventInfo = new DbusEventInfo(DbusOpcode.UPSERT, 0L, (short)0, (short)0,
+                                                System.nanoTime(), srcId, schemaId, payload,
+                                                false, true, DbusEventFactory.DBUS_EVENT_V2,
+                                                (short)1, null);
+    dbusBuf.start(0);
+    dbusBuf.startEvents();
+    for (long key = 0; key < 3; ++key)
+    {
+      Assert.assertTrue(dbusBuf.appendEvent(new DbusEventKey(key), eventInfo, null));
+    }
+    dbusBuf.endEvents(10);
+    // the caller's event info is not changed by the compression
+    Assert.assertFalse(eventInfo.isPayloadCompressed());
+    Assert.assertTrue(Arrays.equals(payload, eventInfo.getValueBytes()));
+
+    for (boolean acceptCompressed: new boolean[]{false, true})
+    {
+      Checkpoint cp = new Checkpoint();
+      cp.setFlexible();
+      cp.setConsumptionMode(DbusClientMode.ONLINE_CONSUMPTION);
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      StreamEventsArgs args = new StreamEventsArgs(100000)
+          .setMaxClientEventVersion(DbusEventFactory.DBUS_EVENT_V2)
+          .setAcceptCompressedPayloads(acceptCompressed);
+      dbusBuf.streamEvents(cp, Channels.newChannel(baos), args);
+
+      DbusEventBuffer clientBuf = new DbusEventBuffer(staticConfig, null, new DbusEventV2Factory());
+      clientBuf.start(0);
+      clientBuf.readEvents(Channels.newChannel(new ByteArrayInputStream(baos.toByteArray())));
+      int numDataEvents = 0;
+      DbusEventIterator iter = clientBuf.acquireIterator("testStreamCompressedPayloads");
+      try
+      {
+        while (iter.hasNext())
+        {
+          DbusEvent e = iter.next();
+          if (e.isControlMessage() || e.sequence() <= 0) continue;
+          ++numDataEvents;
+          Assert.assertEquals(acceptCompressed, e.isPayloadCompressed());
+          ByteBuffer value =
+              DbusEventPayloadCompressor.getUncompressedValue(e, dbusBuf.getPayloadDictionaries());
+          byte[] valueBytes = new byte[value.remaining()];
+          value.get(valueBytes);
+          Assert.assertTrue(Arrays.equals(payload, valueBytes));
+        }
+      }
+      finally
+      {
+        clientBuf.releaseIterator(iter);
+      }
+      Assert.assertEquals(3, numDataEvents);
+    }
+  }
+
+
+  @Test
+  /** Tests that skipping buffer blocks using the block summaries does not change the streamed events */
+  public void testStreamWithBlockSummaries() throws Exception
+  {
+    DbusEventBuffer.Config config = new DbusEventBuffer.Config();
+    config.setMaxSize(300000);
+    config.setMaxIndividualBufferSize(300000);
+    config.setScnIndexSize(500 * ScnIndex.SIZE_OF_SCN_OFFSET_RECORD);
+    config.setAverageEventSize(5000);
+    config.setAllocationPolicy(AllocationPolicy.HEAP_MEMORY.name());
+    config.setQueuePolicy(QueuePolicy.OVERWRITE_ON_WRITE.name());
+    config.setAssertLevel(AssertLevel.ALL.name());
+    DbusEventBuffer plainBuf = new DbusEventBuffer(config.build());
+    config.setEnableBlockSummaryIndex(true);
+    config.setBlockSummaryNumBuckets("4, 16");
+    DbusEventBuffer summaryBuf = new DbusEventBuffer(config.build());
+    DbusEventBuffer readBuf = new DbusEventBuffer(config.build());
+
+    appendBucketRuns(plainBuf);
+    appendBucketRuns(summaryBuf);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    Checkpoint cp = new Checkpoint();
+    cp.setFlexible();
+    cp.setConsumptionMode(DbusClientMode.ONLINE_CONSUMPTION);
+    plainBuf.streamEvents(cp, Channels.newChannel(baos), new StreamEventsArgs(1000000));
+    readBuf.readEvents(Channels.newChannel(new ByteArrayInputStream(baos.toByteArray())));
+
+    DbusFilter[] filters = {createModFilter(4, 1), createModFilter(16, 3), createModFilter(8, 5),
+                            createRangeFilter(4 * 3000, 4 * 3100), createSourceFilter(20),
+                            createSourceFilter(30), AllowAllDbusFilter.THE_INSTANCE};
+    for (DbusFilter filter: filters)
+    {
+      List<String> expected = streamDataEvents(plainBuf, filter);
+      Assert.assertEquals(expected, streamDataEvents(summaryBuf, filter));
+      Assert.assertEquals(expected, streamDataEvents(readBuf, filter));
+    }
+    Assert.assertEquals(8 * 50 + 8 * 40, streamDataEvents(summaryBuf, filters[0]).size());
+    Assert.assertEquals(0, streamDataEvents(summaryBuf, filters[5]).size());
+
+    // the blocks with other buckets are skipped
+    EventBlockSummaryIndex index = new EventBlockSummaryIndex(plainBuf.getScnIndex(), new long[]{4});
+    List<Long> positions = new ArrayList<Long>();
+    List<DbusEvent> events = new ArrayList<DbusEvent>();
+    DbusEventIterator iter = plainBuf.acquireIterator("testStreamWithBlockSummaries");
+    try
+    {
+      while (iter.hasNext())
+      {
+        long pos = iter.getCurrentPosition();
+        DbusEventInternalWritable e = iter.next();
+        index.onEvent(e, pos);
+        positions.add(pos);
+        events.add(e.createCopy());
+      }
+    }
+    finally
+    {
+      plainBuf.releaseIterator(iter);
+    }
+    EventBlockSummaryIndex.Cursor cursor =
+        index.createCursor((DbusBlockFilter)filters[0], positions.get(0));
+    int visited = 0;
+    int matched = 0;
+    for (int i = 0; i < positions.size(); ++i)
+    {
+      long nextPos = cursor.skipBlocks(positions.get(i), plainBuf.getTail());
+      i = positions.indexOf(nextPos);
+      Assert.assertTrue(i >= 0);
+      ++visited;
+      DbusEvent e = events.get(i);
+      if (!e.isControlMessage() && filters[0].allow(e))
+      {
+        Assert.assertTrue(cursor.mayMatch(nextPos));
+        ++matched;
+      }
+    }
+    Assert.assertEquals(8 * 50 + 8 * 40, matched);
+    Assert.assertTrue(cursor.getSkippedBlocksNum() > 0);
+    Assert.assertTrue("visited=" + visited, visited < positions.size() * 3 / 4);
+  }
+
+  @Test
+  /**
+   * Tests that sources whose ids are equal mod 64 are not confused by the block summaries: events
+   * of a source without a key filter must still stream when the filtered source has the same id
+   * mod 64
+   */
+  public void testStreamWithBlockSummariesSourceCollision() throws Exception
+  {
+    final short filteredSrcId = 101;
+    final short otherSrcId = 165;
+    DbusEventBuffer.Config config = new DbusEventBuffer.Config();
+    config.setMaxSize(300000);
+    config.setMaxIndividualBufferSize(300000);
+    config.setScnIndexSize(500 * ScnIndex.SIZE_OF_SCN_OFFSET_RECORD);
+    config.setAverageEventSize(5000);
+    config.setAllocationPolicy(AllocationPolicy.HEAP_MEMORY.name());
+    config.setQueuePolicy(QueuePolicy.OVERWRITE_ON_WRITE.name());
+    config.setAssertLevel(AssertLevel.ALL.name());
+    DbusEventBuffer plainBuf = new DbusEventBuffer(config.build());
+    config.setEnableBlockSummaryIndex(true);
+    config.setBlockSummaryNumBuckets("4");
+    DbusEventBuffer summaryBuf = new DbusEventBuffer(config.build());
+
+    appendSourceRuns(plainBuf, filteredSrcId, otherSrcId);
+    appendSourceRuns(summaryBuf, filteredSrcId, otherSrcId);
+
+    // only bucket 1 of the filtered source; the other source has no filter and all its events
+    // (all in bucket 0) pass
+    DbusKeyFilter keyFilter = new DbusKeyFilter();
+    keyFilter.setPartitionType(PartitionType.MOD);
+    keyFilter.getFilters().add(new KeyModFilter(1, 2, 4));
+    DbusKeyCompositeFilter filter = new DbusKeyCompositeFilter();
+    filter.getFilterMap().put((long)filteredSrcId, keyFilter);
+
+    List<String> expected = streamDataEvents(plainBuf, filter);
+    List<String> streamed = streamDataEvents(summaryBuf, filter);
+    Assert.assertEquals(expected, streamed);
+    int otherNum = 0;
+    for (String e: streamed)
+    {
+      if (e.contains(":" + otherSrcId + ":")) ++otherNum;
+    }
+    Assert.assertEquals(8 * 150, otherNum);
+
+    // a source filter on one of the sources does not match the blocks of the other one
+    DbusFilter srcFilter = createSourceFilter(otherSrcId);
+    Assert.assertEquals(streamDataEvents(plainBuf, srcFilter), streamDataEvents(summaryBuf, srcFilter));
+    Assert.assertEquals(8 * 150, streamDataEvents(summaryBuf, srcFilter).size());
+  }
+
+  /**
+   * Appends windows with a run of events of the filtered source in mod 4 bucket 1 followed by a
+   * run of events of the other source in mod 4 bucket 0
+   */
+  private static void appendSourceRuns(DbusEventBuffer buf, short filteredSrcId, short otherSrcId)
+  {
+    final byte[] schemaId = "abcdefghijklmnop".getBytes(Charset.defaultCharset());
+    final byte[] value = "0123456789".getBytes(Charset.defaultCharset());
+    buf.start(0);
+    for (int w = 1; w <= 8; ++w)
+    {
+      buf.startEvents();
+      for (int i = 0; i < 300; ++i)
+      {
+        short srcId = i < 150 ? filteredSrcId : otherSrcId;
+        long key = 4 * (w * 1000 + i) + (i < 150 ? 1 : 0);
+        buf.appendEvent(new DbusEventKey(key), (short)0, (short)0, System.nanoTime(), srcId,
+                        schemaId, value, false);
+      }
+      buf.endEvents(10 * w);
+    }
+  }
+
+  /**
+   * Appends windows with runs of events from the same mod 4 bucket of source 10 followed by a run of
+   * events of source 20
+   */
+  private static void appendBucketRuns(DbusEventBuffer buf)
+  {
+    final byte[] schemaId = "abcdefghijklmnop".getBytes(Charset.defaultCharset());
+    final byte[] value = "0123456789".getBytes(Charset.defaultCharset());
+    buf.start(0);
+    for (int w = 1; w <= 8; ++w)
+    {
+      buf.startEvents();
+      for (int i = 0; i < 240; ++i)
+      {
+        short srcId = i < 200 ? (short)10 : (short)20;
+        long key = 4 * (w * 1000 + i) + (i < 200 ? i / 50 : 1);
+        buf.appendEvent(new DbusEventKey(key), (short)0, (short)0, System.nanoTime(), srcId,
+                        schemaId, value, false);
+      }
+      buf.endEvents(10 * w);
+    }
+  }
+
+  private static DbusFilter createModFilter(long numBuckets, long bucket)
+  {
+    DbusKeyFilter keyFilter = new DbusKeyFilter();
+    keyFilter.setPartitionType(PartitionType.MOD);
+    keyFilter.getFilters().add(new KeyModFilter(bucket, bucket + 1, numBuckets));
+    DbusKeyCompositeFilter result = new DbusKeyCompositeFilter();
+    result.getFilterMap().put(10L, keyFilter);
+    return result;
+  }
+
+  private static DbusFilter createRangeFilter(long minKey, long maxKey)
+  {
+    DbusKeyFilter keyFilter = new DbusKeyFilter();
+    keyFilter.setPartitionType(PartitionType.RANGE);
+    keyFilter.getFilters().add(new KeyRangeFilter(minKey, maxKey));
+    DbusKeyCompositeFilter result = new DbusKeyCompositeFilter();
+    result.getFilterMap().put(10L, keyFilter);
+    return result;
+  }
+
+  private static DbusFilter createSourceFilter(int srcId)
+  {
+    ConjunctionDbusFilter result = new ConjunctionDbusFilter();
+    result.addFilter(new SourceDbusFilter(new HashSet<Integer>(Arrays.asList(srcId))));
+    return result;
+  }
+
+  /**
+   * Streams all events from a buffer one window per batch and returns the streamed data events. The
+   * batches hold whole windows since the checkpoint offset of a partial window counts only the events
+   * which passed the filter.
+   */
+  private static List<String> streamDataEvents(DbusEventBuffer buf, DbusFilter filter) throws Exception
+  {
+    List<String> result = new ArrayList<String>();
+    Checkpoint cp = new Checkpoint();
+    cp.setFlexible();
+    cp.setConsumptionMode(DbusClientMode.ONLINE_CONSUMPTION);
+    DbusEventFactory eventFactory = buf.getEventFactory();
+    for (int i = 0; i < 10000; ++i)
+    {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      StreamEventsArgs args = new StreamEventsArgs(100000).setSMode(StreamingMode.WINDOW_AT_TIME)
+                                                            .setFilter(filter);
+      if (0 == buf.streamEvents(cp, Channels.newChannel(baos), args).getNumEventsStreamed())
+      {
+        return result;
+      }
+      ByteBuffer bytes = ByteBuffer.wrap(baos.toByteArray()).order(eventFactory.getByteOrder());
+      int pos = 0;
+      while (pos < bytes.limit())
+      {
+        DbusEvent e = eventFactory.createReadOnlyDbusEventFromBuffer(bytes, pos);
+        if (!e.isControlMessage())
+        {
+          result.add(e.sequence() + ":" + e.srcId() + ":" + e.key());
+        }
+        pos += e.size();
+      }
+    }
+    Assert.fail("streaming did not complete");
+    return result;
+  }
+
+
+  /** Creates a buffer with 10 windows (SCNs 10 to 100) of 5 events each over 3 keys */
+  private DbusEventBuffer createCompactionTestBuffer() throws Exception
+  {
+    final short srcId = 10;
+    final byte[] schemaId = "abcdefghijklmnop".getBytes(Charset.defaultCharset());
+    final DbusEventBuffer dbusBuf =
+        new DbusEventBuffer(TestDbusEventBuffer.getConfig(
+            100000, 100000, 1024, 5000, AllocationPolicy.HEAP_MEMORY, QueuePolicy.OVERWRITE_ON_WRITE,
+            AssertLevel.ALL));
+    dbusBuf.start(0);
+    for (int w = 1; w <= 10; ++w)
+    {
+      dbusBuf.startEvents();
+      for (int i = 0; i < 5; ++i)
+      {
+        long key = i % 3;
+        byte[] value = ("w" + w + "k" + key).getBytes(Charset.defaultCharset());
+        dbusBuf.appendEvent(new DbusEventKey(key), (short)0, (short)0, System.nanoTime() * 1000,
+                            srcId, schemaId, value, false);
+      }
+      dbusBuf.endEvents(10 * w);
+    }
+    return dbusBuf;
+  }
+
+  private static Checkpoint createFlexibleCheckpoint()
+  {
+    Checkpoint cp = new Checkpoint();
+    cp.setFlexible();
+    cp.setConsumptionMode(DbusClientMode.ONLINE_CONSUMPTION);
+    return cp;
+  }
+
+  @Test
+  /** The scanned events of compacted windows are counted in a per-partition stats collector */
+  public void testCompactionStats() throws Exception
+  {
+    DbusEventBuffer dbusBuf = createCompactionTestBuffer();
+
+    DbusEventsStatisticsCollector plainStats =
+        new DbusEventsStatisticsCollector(1, "plain", true, false, null);
+    dbusBuf.streamEvents(createFlexibleCheckpoint(), Channels.newChannel(new ByteArrayOutputStream()),
+                         new StreamEventsArgs(100000).setStatsCollector(plainStats));
+
+    DbusEventsStatisticsCollector compactedStats =
+        new DbusEventsStatisticsCollector(1, "compacted", true, false, null);
+    StreamEventsArgs args = new StreamEventsArgs(100000).setCompactionWindows(4);
+    args.setStatsCollector(compactedStats);
+    StreamEventsResult result =
+        dbusBuf.streamEvents(createFlexibleCheckpoint(), Channels.newChannel(new ByteArrayOutputStream()), args);
+
+    //every scanned event is counted but only the compacted ones are streamed
+    Assert.assertEquals(50, plainStats.getTotalStats().getNumDataEvents());
+    Assert.assertEquals(50, compactedStats.getTotalStats().getNumDataEvents());
+    Assert.assertEquals(50, plainStats.getTotalStats().getNumDataEventsFiltered());
+    Assert.assertTrue(compactedStats.getTotalStats().getNumDataEventsFiltered() < 50);
+    Assert.assertTrue(compactedStats.getTotalStats().getNumDataEventsFiltered() <
+                      result.getNumEventsStreamed());
+  }
+
+  @Test
+  /** Windows that are dropped by compaction and streamed again without it are counted once */
+  public void testCompactionFallbackStats() throws Exception
+  {
+    DbusEventBuffer dbusBuf = createCompactionTestBuffer();
+
+    DbusEventsStatisticsCollector plainStats =
+        new DbusEventsStatisticsCollector(1, "plain", true, false, null);
+    dbusBuf.streamEvents(createFlexibleCheckpoint(), Channels.newChannel(new ByteArrayOutputStream()),
+                         new StreamEventsArgs(200).setStatsCollector(plainStats));
+
+    DbusEventsStatisticsCollector compactedStats =
+        new DbusEventsStatisticsCollector(1, "compacted", true, false, null);
+    StreamEventsArgs args = new StreamEventsArgs(200).setCompactionWindows(4);
+    args.setStatsCollector(compactedStats);
+    dbusBuf.streamEvents(createFlexibleCheckpoint(), Channels.newChannel(new ByteArrayOutputStream()), args);
+
+    Assert.assertTrue(plainStats.getTotalStats().getNumDataEvents() > 0);
+    Assert.assertEquals(plainStats.getTotalStats().getNumDataEvents(),
+                        compactedStats.getTotalStats().getNumDataEvents());
+    Assert.assertEquals(plainStats.getTotalStats().getNumDataEventsFiltered(),
+                        compactedStats.getTotalStats().getNumDataEventsFiltered());
+  }
+
+  @Test
+  /** A failed write of compacted windows leaves the checkpoint at the last complete group */
+  public void testCompactionWriteFailureCheckpoint() throws Exception
+  {
+    DbusEventBuffer dbusBuf = createCompactionTestBuffer();
+
+    // the first group (3 compacted events and the marker of window 40) is written completely;
+    // the channel fails in the middle of the second group
+    final AtomicInteger writesLeft = new AtomicInteger(6);
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final WritableByteChannel out = Channels.newChannel(baos);
+    WritableByteChannel failingChannel = new WritableByteChannel()
+    {
+      @Override public boolean isOpen() { return true; }
+      @Override public void close() { }
+      @Override
+      public int write(ByteBuffer src) throws java.io.IOException
+      {
+        if (writesLeft.decrementAndGet() < 0) throw new java.io.IOException("connection reset");
+        return out.write(src);
+      }
+    };
+
+    Checkpoint cp = createFlexibleCheckpoint();
+    StreamEventsResult result =
+        dbusBuf.streamEvents(cp, failingChannel, new StreamEventsArgs(100000).setCompactionWindows(4));
+    Assert.assertEquals(6, result.getNumEventsStreamed());
+    Assert.assertEquals(40, cp.getWindowScn());
+    Assert.assertEquals(-1L, cp.getWindowOffset().longValue());
+  }
+
 }
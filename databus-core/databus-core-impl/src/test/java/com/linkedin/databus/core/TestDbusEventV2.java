@@ -409,6 +409,98 @@ public class TestDbusEventV2
     LOG.debug("Null payload event: " + evt.toString());
   }
 
+  @Test
+  public void testCompressedPayload() throws Exception
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; ++i)
+    {
+      sb.append("row ").append(i).append(" of a wide table with repeating column values;");
+    }
+    byte[] bigPayload = sb.toString().getBytes(Charset.forName("UTF-8"));
+    byte[] dictionary = "of a wide table with repeating column values;".getBytes(Charset.forName("UTF-8"));
+
+    DbusEventPayloadCompressor compressor = new DbusEventPayloadCompressor(100);
+    Assert.assertNull(compressor.compress(srcId, payloadSchemaVersion, ByteBuffer.wrap(payload)));
+    ByteBuffer noDict = compressor.compress(srcId, payloadSchemaVersion, ByteBuffer.wrap(bigPayload));
+    compressor.addDictionary(srcId, payloadSchemaVersion, dictionary);
+    ByteBuffer compressed = compressor.compress(srcId, payloadSchemaVersion, ByteBuffer.wrap(bigPayload));
+    Assert.assertNotNull(noDict);
+    Assert.assertNotNull(compressed);
+    Assert.assertTrue(compressed.remaining() < bigPayload.length / 3);
+    Assert.assertTrue(Arrays.equals(compressor.decompress(noDict), bigPayload));
+    // only the dictionaries of the compressor can decompress the payload
+    Assert.assertTrue(Arrays.equals(DbusEventPayloadCompressor.decompress(compressed,
+                                                                          compressor.getDictionaries()),
+                                    bigPayload));
+    try
+    {
+      DbusEventPayloadCompressor.decompress(compressed, new DbusEventPayloadDictionaries());
+      Assert.fail("decompression without the dictionary should fail");
+    }
+    catch (DatabusRuntimeException e)
+    {
+      // expected
+    }
+
+    DbusEventInfo evInfo = new DbusEventInfo(DbusOpcode.UPSERT,
+                                             seq,
+                                             partitionId,
+                                             partitionId,
+                                             timeStamp,
+                                             srcId,
+                                             payloadSchemaMd5,
+                                             null,
+                                             false,  // enabletracing
+                                             true,  // auto-commit
+                                             DbusEventFactory.DBUS_EVENT_V2,
+                                             payloadSchemaVersion,
+                                             null
+                                             );
+    evInfo.setValueByteBuffer(compressed);
+    evInfo.setPayloadCompressed(true);
+
+    DbusEventKey key = new DbusEventKey(longKey);
+    ByteBuffer buf = ByteBuffer.allocate(maxEventLen).order(ByteOrder.BIG_ENDIAN);
+    int eventLen = DbusEventFactory.serializeEvent(key, buf, evInfo);
+    Assert.assertEquals(eventLen, DbusEventFactory.computeEventLength(key, evInfo));
+
+    DbusEventFactory eventFactory = new DbusEventV2Factory(ByteOrder.BIG_ENDIAN);
+    DbusEventInternalWritable evt = eventFactory.createWritableDbusEventFromBuffer(buf, 0);
+    Assert.assertEquals(evt.scanEvent(), DbusEventInternalReadable.EventScanStatus.OK);
+    Assert.assertTrue(evt.isValid());
+    Assert.assertTrue(evt.isPayloadCompressed());
+    Assert.assertEquals(evt.value().remaining(), compressed.remaining());
+    Assert.assertTrue(Arrays.equals(compressor.decompress(evt.value()), bigPayload));
+
+    // clients which don't accept compressed payloads get an uncompressed copy
+    DbusEventInternalWritable uncompressedEvt =
+        ((DbusEventV2)evt).createUncompressedCopy(compressor.getDictionaries());
+    Assert.assertTrue(uncompressedEvt.isValid());
+    Assert.assertFalse(uncompressedEvt.isPayloadCompressed());
+    Assert.assertEquals(uncompressedEvt.sequence(), seq);
+    Assert.assertEquals(uncompressedEvt.key(), longKey);
+    byte[] uncompressedValue = new byte[uncompressedEvt.valueLength()];
+    uncompressedEvt.value().get(uncompressedValue);
+    Assert.assertTrue(Arrays.equals(uncompressedValue, bigPayload));
+
+    // V1 clients get the uncompressed payload
+    DbusEventInternalWritable v1Evt =
+        DbusEventInternalWritable.convertToDifferentVersion(evt, DbusEventFactory.DBUS_EVENT_V1,
+                                                            compressor.getDictionaries());
+    Assert.assertFalse(v1Evt.isPayloadCompressed());
+    byte[] v1Value = new byte[v1Evt.valueLength()];
+    v1Evt.value().get(v1Value);
+    Assert.assertTrue(Arrays.equals(v1Value, bigPayload));
+
+    // payloads which are not compressed don't have the flag set
+    evInfo.setValueByteBuffer(ByteBuffer.wrap(payload));
+    evInfo.setPayloadCompressed(false);
+    buf.clear();
+    DbusEventFactory.serializeEvent(key, buf, evInfo);
+    Assert.assertFalse(eventFactory.createReadOnlyDbusEventFromBuffer(buf, 0).isPayloadCompressed());
+  }
+
   @Test
   public void testCreateErrorEvent() throws Exception
   {
@@ -0,0 +1,264 @@
+package com.linkedin.databus.core.async;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.linkedin.databus.core.DatabusComponentStatus;
+import com.linkedin.databus.core.util.NamedThreadFactory;
+import com.linkedin.databus2.test.ConditionCheck;
+import com.linkedin.databus2.test.TestUtil;
+
+public class TestAbstractActorMessageQueue
+{
+  @BeforeClass
+  public void setUpClass()
+  {
+    TestUtil.setupLogging(true, null, Level.ERROR);
+  }
+
+  /** An actor which records the integer messages it processes and checks they are not concurrent */
+  static class RecordingActor extends AbstractActorMessageQueue
+  {
+    final List<Integer> _processed = Collections.synchronizedList(new ArrayList<Integer>());
+    final AtomicInteger _active = new AtomicInteger(0);
+    volatile boolean _concurrentExecution = false;
+    volatile boolean _shutdownCalled = false;
+
+    RecordingActor(String name)
+    {
+      super(name);
+    }
+
+    @Override
+    protected boolean executeAndChangeState(Object message)
+    {
+      if (!(message instanceof Integer))
+      {
+        return super.executeAndChangeState(message);
+      }
+      if (1 != _active.incrementAndGet())
+      {
+        _concurrentExecution = true;
+      }
+      int value = (Integer)message;
+      _processed.add(value);
+      // every 10th message asks for a pause before the next one
+      if (0 == value % 10)
+      {
+        delayNextMessage(1);
+      }
+      _active.decrementAndGet();
+      return true;
+    }
+
+    @Override
+    protected void onShutdown()
+    {
+      _shutdownCalled = true;
+    }
+  }
+
+  /**
+   * An actor which also processes string commands: "await" waits for a wake-up, "delay" delays
+   * the next message and "block" is a blocking message
+   */
+  static class WaitingActor extends RecordingActor
+  {
+    volatile String _blockingThreadName;
+
+    WaitingActor(String name)
+    {
+      super(name);
+    }
+
+    @Override
+    protected boolean executeAndChangeState(Object message)
+    {
+      if ("await".equals(message))
+      {
+        awaitWakeUp(60000);
+        return true;
+      }
+      if ("delay".equals(message))
+      {
+        delayNextMessage(60000);
+        return true;
+      }
+      if ("block".equals(message))
+      {
+        _blockingThreadName = Thread.currentThread().getName();
+        return true;
+      }
+      return super.executeAndChangeState(message);
+    }
+
+    @Override
+    protected boolean isBlockingMessage(Object message)
+    {
+      return "block".equals(message);
+    }
+  }
+
+  @Test
+  public void testSharedExecutor() throws Exception
+  {
+    final int actorsNum = 20;
+    final int msgNum = 200;
+    ScheduledThreadPoolExecutor executor =
+        new ScheduledThreadPoolExecutor(3, new NamedThreadFactory("testSharedExecutor", true));
+    try
+    {
+      final RecordingActor[] actors = new RecordingActor[actorsNum];
+      for (int i = 0; i < actorsNum; ++i)
+      {
+        actors[i] = new RecordingActor("actor" + i);
+        actors[i].runOn(executor);
+        Assert.assertTrue(actors[i].isOnSharedExecutor());
+        actors[i].enqueueMessage(LifecycleMessage.createStartMessage());
+      }
+
+      //enqueue from several threads; each actor gets its messages from a single thread
+      Thread[] producers = new Thread[4];
+      for (int p = 0; p < producers.length; ++p)
+      {
+        final int producerId = p;
+        producers[p] = new Thread(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            for (int m = 0; m < msgNum; ++m)
+            {
+              for (int i = producerId; i < actorsNum; i += 4)
+              {
+                actors[i].enqueueMessage(m);
+              }
+            }
+          }
+        });
+        producers[p].start();
+      }
+      for (Thread t: producers) t.join(30000);
+
+      for (final RecordingActor actor: actors)
+      {
+        TestUtil.assertWithBackoff(new ConditionCheck()
+        {
+          @Override
+          public boolean check()
+          {
+            return actor._processed.size() == msgNum;
+          }
+        }, actor.getName() + " processed all messages", 10000, null);
+        for (int m = 0; m < msgNum; ++m)
+        {
+          Assert.assertEquals(actor._processed.get(m).intValue(), m);
+        }
+        Assert.assertFalse(actor._concurrentExecution);
+        Assert.assertEquals(actor.getComponentStatus().getStatus(), DatabusComponentStatus.Status.RUNNING);
+      }
+
+      for (RecordingActor actor: actors)
+      {
+        actor.shutdown();
+      }
+      for (RecordingActor actor: actors)
+      {
+        actor.awaitShutdown();
+        Assert.assertTrue(actor.isShutdown());
+        Assert.assertTrue(actor._shutdownCalled);
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testWakeUpAndBlockingMessages() throws Exception
+  {
+    ScheduledThreadPoolExecutor executor =
+        new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("testWakeUp", true));
+    ExecutorService blockingExecutor =
+        Executors.newCachedThreadPool(new NamedThreadFactory("testBlocking", true));
+    try
+    {
+      final WaitingActor actor = new WaitingActor("waitingActor");
+      actor.runOn(executor, blockingExecutor);
+      actor.enqueueMessage(LifecycleMessage.createStartMessage());
+
+      //the blocking message runs on the blocking executor and the next message still follows it
+      actor.enqueueMessage("block");
+      actor.enqueueMessage(1);
+      assertProcessed(actor, 1);
+      Assert.assertTrue(actor._blockingThreadName.startsWith("testBlocking"),
+                        actor._blockingThreadName);
+
+      //a wake-up cuts the wait short
+      actor.enqueueMessage("await");
+      actor.enqueueMessage(2);
+      Thread.sleep(100);
+      Assert.assertEquals(actor._processed.size(), 1);
+      actor.wakeUp();
+      assertProcessed(actor, 2);
+
+      //a wake-up does not cut a delay short but the shutdown does
+      actor.enqueueMessage("delay");
+      actor.enqueueMessage(3);
+      actor.wakeUp();
+      Thread.sleep(100);
+      Assert.assertEquals(actor._processed.size(), 2);
+      actor.shutdown();
+      actor.awaitShutdown();
+      Assert.assertTrue(actor._shutdownCalled);
+      Assert.assertFalse(actor._concurrentExecution);
+    }
+    finally
+    {
+      executor.shutdownNow();
+      blockingExecutor.shutdownNow();
+    }
+  }
+
+  private static void assertProcessed(final RecordingActor actor, final int msgNum)
+  {
+    TestUtil.assertWithBackoff(new ConditionCheck()
+    {
+      @Override
+      public boolean check()
+      {
+        return actor._processed.size() == msgNum;
+      }
+    }, actor.getName() + " processed " + msgNum + " messages", 5000, null);
+  }
+}
@@ -0,0 +1,134 @@
+package com.linkedin.databus2.core.monitoring;
+
+import java.util.Vector;
+
+import junit.framework.Assert;
+
+import org.testng.annotations.Test;
+
+import com.linkedin.databus.core.DbusEvent;
+import com.linkedin.databus.core.DbusEventInternalReadable;
+import com.linkedin.databus.core.monitoring.mbean.ConcurrentDbusEventsStatisticsCollector;
+import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
+import com.linkedin.databus.core.monitoring.mbean.DbusEventsTotalStats;
+import com.linkedin.databus.core.test.DbusEventGenerator;
+
+public class TestConcurrentDbusEventsStatisticsCollector
+{
+
+  private Vector<DbusEvent> generateEvents(int numEvents)
+  {
+    Vector<Short> srcIds = new Vector<Short>();
+    srcIds.add((short)1);
+    srcIds.add((short)2);
+    srcIds.add((short)3);
+    Vector<DbusEvent> events = new Vector<DbusEvent>(numEvents);
+    DbusEventGenerator eventGen = new DbusEventGenerator(100, srcIds);
+    eventGen.generateEvents(numEvents, 10, 200, 20, true, events);
+    return events;
+  }
+
+  private static void assertSameStats(DbusEventsTotalStats expected, DbusEventsTotalStats actual)
+  {
+    Assert.assertEquals(expected.getNumDataEvents(), actual.getNumDataEvents());
+    Assert.assertEquals(expected.getSizeDataEvents(), actual.getSizeDataEvents());
+    Assert.assertEquals(expected.getSizeDataEventsPayload(), actual.getSizeDataEventsPayload());
+    Assert.assertEquals(expected.getMaxSeenWinScn(), actual.getMaxSeenWinScn());
+    Assert.assertEquals(expected.getMinSeenWinScn(), actual.getMinSeenWinScn());
+    Assert.assertEquals(expected.getTimestampMaxScnEvent(), actual.getTimestampMaxScnEvent());
+    Assert.assertEquals(expected.getNumDataEventsFiltered(), actual.getNumDataEventsFiltered());
+    Assert.assertEquals(expected.getMaxFilteredWinScn(), actual.getMaxFilteredWinScn());
+  }
+
+  @Test
+  public void testSameResultsAsLockedCollector()
+  {
+    Vector<DbusEvent> events = generateEvents(1000);
+    DbusEventsStatisticsCollector locked =
+        new DbusEventsStatisticsCollector(1, "locked", true, true, null);
+    DbusEventsStatisticsCollector concurrent =
+        new ConcurrentDbusEventsStatisticsCollector(1, "concurrent", true, true, null);
+
+    int i = 0;
+    for (DbusEvent e: events)
+    {
+      DbusEventInternalReadable re = (DbusEventInternalReadable)e;
+      locked.registerDataEvent(re);
+      concurrent.registerDataEvent(re);
+      if (0 == (++i % 3))
+      {
+        locked.registerDataEventFiltered(re);
+        concurrent.registerDataEventFiltered(re);
+      }
+    }
+
+    assertSameStats(locked.getTotalStats(), concurrent.getTotalStats());
+    Assert.assertEquals(locked.getSources().size(), concurrent.getSources().size());
+    for (Integer srcId: locked.getSources())
+    {
+      assertSameStats(locked.getSourceStats(srcId), concurrent.getSourceStats(srcId));
+    }
+
+    //the snapshot should reflect the folded counters too
+    Assert.assertEquals(locked.getTotalStats().getStatistics(null).numDataEvents,
+                        concurrent.getTotalStats().getStatistics(null).numDataEvents);
+
+    concurrent.reset();
+    Assert.assertEquals(0, concurrent.getTotalStats().getNumDataEvents());
+    Assert.assertEquals(-1, concurrent.getTotalStats().getMaxSeenWinScn());
+  }
+
+  @Test
+  public void testConcurrentUpdates() throws Exception
+  {
+    final Vector<DbusEvent> events = generateEvents(2000);
+    final DbusEventsStatisticsCollector concurrent =
+        new ConcurrentDbusEventsStatisticsCollector(1, "concurrent", true, true, null);
+    final int numThreads = 8;
+    final int numIterations = 20;
+
+    Thread[] writers = new Thread[numThreads];
+    for (int t = 0; t < numThreads; ++t)
+    {
+      writers[t] = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          for (int i = 0; i < numIterations; ++i)
+          {
+            for (DbusEvent e: events)
+            {
+              concurrent.registerDataEvent((DbusEventInternalReadable)e);
+            }
+          }
+        }
+      });
+      writers[t].start();
+    }
+
+    //read while writing to exercise the folding
+    long lastNum = 0;
+    for (int i = 0; i < 100; ++i)
+    {
+      long num = concurrent.getTotalStats().getNumDataEvents();
+      Assert.assertTrue(num >= lastNum);
+      lastNum = num;
+      Thread.sleep(1);
+    }
+
+    for (Thread w: writers)
+    {
+      w.join();
+    }
+
+    long expected = (long)numThreads * numIterations * events.size();
+    Assert.assertEquals(expected, concurrent.getTotalStats().getNumDataEvents());
+    long perSourceSum = 0;
+    for (Integer srcId: concurrent.getSources())
+    {
+      perSourceSum += concurrent.getSourceStats(srcId).getNumDataEvents();
+    }
+    Assert.assertEquals(expected, perSourceSum);
+  }
+}
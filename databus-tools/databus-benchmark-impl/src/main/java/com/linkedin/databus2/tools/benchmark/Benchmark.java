@@ -0,0 +1,668 @@
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package com.linkedin.databus2.tools.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.linkedin.databus.client.DatabusHttpClientImpl;
+import com.linkedin.databus.client.DatabusHttpClientImpl.CheckpointPersistenceStaticConfig;
+import com.linkedin.databus.client.pub.ServerInfo.ServerInfoBuilder;
+import com.linkedin.databus.client.pub.ServerInfo.ServerInfoSetBuilder;
+import com.linkedin.databus.container.netty.HttpRelay;
+import com.linkedin.databus.core.BaseCli;
+import com.linkedin.databus.core.util.ConfigBuilder;
+import com.linkedin.databus.core.util.ConfigLoader;
+import com.linkedin.databus.core.util.InvalidConfigException;
+import com.linkedin.databus.eventgenerator.KeyGenerator;
+import com.linkedin.databus2.relay.config.PhysicalSourceConfig;
+import com.linkedin.databus2.relay.config.PhysicalSourceStaticConfig;
+import com.linkedin.databus2.relay.util.test.DatabusRelayTestUtil;
+
+/**
+ * An end-to-end load and soak benchmark. It runs in-process a relay fed by a synthetic producer
+ * and a number of clients which consume from the relay and, optionally, from existing bootstrap
+ * servers. After a warm-up period, it periodically reports the throughput, the end-to-end latency
+ * percentiles, the consumer lag, the relay buffer utilization and the GC activity.
+ *
+ * <p>The benchmark settings use the {@link #BENCHMARK_PROPS_PREFIX} prefix. The relay and the
+ * client configurations can be overridden using the {@link #RELAY_PROPS_PREFIX} and
+ * {@link #CLIENT_PROPS_PREFIX} prefixes respectively.
+ */
+public class Benchmark
+{
+  public static final Logger LOG = Logger.getLogger(Benchmark.class);
+
+  public static final String BENCHMARK_PROPS_PREFIX = "databus.benchmark.";
+  public static final String RELAY_PROPS_PREFIX = "databus.relay.";
+  public static final String CLIENT_PROPS_PREFIX = "databus.client.";
+
+  public static final String SOURCE_NAME = "com.linkedin.events.benchmark.BenchmarkEvent";
+  public static final short PHYSICAL_SOURCE_ID = 100;
+  public static final String EVENT_SCHEMA =
+      "{\"type\":\"record\",\"name\":\"BenchmarkEvent\"," +
+      "\"namespace\":\"com.linkedin.events.benchmark\",\"fields\":[" +
+      "{\"name\":\"key\",\"type\":\"long\"}," +
+      "{\"name\":\"timestamp\",\"type\":\"long\"}," +
+      "{\"name\":\"payload\",\"type\":\"bytes\"}]}";
+
+  private final StaticConfig _config;
+  private final Properties _props;
+  private final List<DatabusHttpClientImpl> _clients = new ArrayList<DatabusHttpClientImpl>();
+  private final List<BenchmarkConsumer> _consumers = new ArrayList<BenchmarkConsumer>();
+  private BenchmarkRelay _relay;
+
+  public Benchmark(StaticConfig config, Properties props)
+  {
+    _config = config;
+    _props = props;
+  }
+
+  public void run() throws Exception
+  {
+    try
+    {
+      startRelay();
+      for (int i = 0; i < _config.getClientsNum(); ++i)
+      {
+        startClient(i);
+      }
+
+      LOG.info("warming up for " + _config.getWarmupSec() + " s");
+      TimeUnit.SECONDS.sleep(_config.getWarmupSec());
+
+      BenchmarkReporter reporter = new BenchmarkReporter(_relay, _consumers, System.out);
+      reporter.start();
+      long endNs = System.nanoTime() + TimeUnit.SECONDS.toNanos(_config.getDurationSec());
+      for (long leftNs = endNs - System.nanoTime(); leftNs > 0; leftNs = endNs - System.nanoTime())
+      {
+        TimeUnit.NANOSECONDS.sleep(Math.min(leftNs,
+                                            TimeUnit.SECONDS.toNanos(_config.getReportIntervalSec())));
+        reporter.reportInterval();
+      }
+      reporter.reportFinal();
+    }
+    finally
+    {
+      shutdown();
+    }
+  }
+
+  private void startRelay() throws Exception
+  {
+    File schemaDir = File.createTempFile("benchmark-schemas", "");
+    if (!schemaDir.delete() || !schemaDir.mkdir())
+    {
+      throw new IOException("unable to create schema directory: " + schemaDir);
+    }
+    schemaDir.deleteOnExit();
+    File schemaFile = new File(schemaDir, SOURCE_NAME + ".1.avsc");
+    schemaFile.deleteOnExit();
+    FileWriter schemaWriter = new FileWriter(schemaFile);
+    try
+    {
+      schemaWriter.write(EVENT_SCHEMA);
+    }
+    finally
+    {
+      schemaWriter.close();
+    }
+
+    PhysicalSourceConfig pConfigBuilder =
+        DatabusRelayTestUtil.createPhysicalConfigBuilder(
+            PHYSICAL_SOURCE_ID, "benchmark", "benchmark:synthetic", 100,
+            _config.getEventRatePerSec(), 0, 1 * 1024 * 1024,
+            Math.max(5L * 1024 * 1024, 2L * _config.getWindowSize() * (_config.getEventSize() + 100)),
+            new String[]{SOURCE_NAME});
+    PhysicalSourceStaticConfig pConfig = pConfigBuilder.build();
+
+    HttpRelay.Config relayConfigBuilder =
+        DatabusRelayTestUtil.createHttpRelayConfig(_config.getRelayPort(), _config.getRelayPort(),
+                                                   _config.getBufferSize());
+    relayConfigBuilder.setSourceName(String.valueOf(pConfig.getSources()[0].getId()), SOURCE_NAME);
+    DatabusRelayTestUtil.setSchemaRegistryLocation(relayConfigBuilder, schemaDir.getAbsolutePath());
+    HttpRelay.StaticConfig relayConfig =
+        new ConfigLoader<HttpRelay.StaticConfig>(RELAY_PROPS_PREFIX, relayConfigBuilder).loadConfig(_props);
+
+    _relay = new BenchmarkRelay(relayConfig, new PhysicalSourceStaticConfig[]{pConfig}, _config);
+    _relay.initProducers();
+    _relay.start();
+    LOG.info("relay started on port " + _config.getRelayPort());
+  }
+
+  private void startClient(int idx) throws Exception
+  {
+    DatabusHttpClientImpl.Config clientConfigBuilder =
+        DatabusHttpClientImpl.createConfigBuilder(CLIENT_PROPS_PREFIX, _props);
+    int port = _config.getClientPortBase() + idx;
+    clientConfigBuilder.getContainer().setId(port);
+    clientConfigBuilder.getContainer().setHttpPort(port);
+    clientConfigBuilder.getContainer().getJmx().setRmiEnabled(false);
+    clientConfigBuilder.getCheckpointPersistence().setType(
+        CheckpointPersistenceStaticConfig.ProviderType.NONE.toString());
+    clientConfigBuilder.getRuntime().setRelaysList(
+        "localhost:" + _config.getRelayPort() + ServerInfoBuilder.SOURCES_LIST_SEPARATOR + SOURCE_NAME);
+
+    boolean withBootstrap = 0 < _config.getBootstrapServers().length();
+    if (withBootstrap)
+    {
+      StringBuilder services = new StringBuilder();
+      for (String server: _config.getBootstrapServers().split(","))
+      {
+        services.append(server.trim()).append(ServerInfoBuilder.SOURCES_LIST_SEPARATOR)
+                .append(SOURCE_NAME).append(ServerInfoSetBuilder.SERVER_INFO_SEPARATOR);
+      }
+      clientConfigBuilder.getRuntime().getBootstrap().setEnabled(true);
+      clientConfigBuilder.getRuntime().getBootstrap().setServicesList(services.toString());
+    }
+
+    DatabusHttpClientImpl client = new DatabusHttpClientImpl(clientConfigBuilder);
+    BenchmarkConsumer consumer = new BenchmarkConsumer(_config.getConsumerTimePerEventUs());
+    client.registerDatabusStreamListener(consumer, null, SOURCE_NAME);
+    if (withBootstrap)
+    {
+      client.registerDatabusBootstrapListener(consumer, null, SOURCE_NAME);
+    }
+    client.start();
+
+    _clients.add(client);
+    _consumers.add(consumer);
+    LOG.info("client started on port " + port);
+  }
+
+  private void shutdown()
+  {
+    for (DatabusHttpClientImpl client: _clients)
+    {
+      client.shutdown();
+    }
+    if (null != _relay)
+    {
+      _relay.shutdown();
+    }
+  }
+
+  public static void main(String[] args) throws Exception
+  {
+    Cli cli = new Cli();
+    if (!cli.processCommandLineArgs(args))
+    {
+      return;
+    }
+
+    Properties props = cli.getConfigProps();
+    Config configBuilder = new Config();
+    StaticConfig config =
+        new ConfigLoader<StaticConfig>(BENCHMARK_PROPS_PREFIX, configBuilder).loadConfig(props);
+
+    new Benchmark(config, props).run();
+  }
+
+  static class Cli extends BaseCli
+  {
+    public Cli()
+    {
+      super(constructCliHelp(), LOG);
+    }
+
+    private static BaseCli.CliHelp constructCliHelp()
+    {
+      return new BaseCli.CliHelpBuilder()
+         .className(Benchmark.class)
+         .startHeader()
+           .addSection("Description")
+           .addLine("An end-to-end load benchmark of an in-process relay and clients")
+           .addSection("Options")
+         .finish()
+         .startFooter()
+           .addSection("Examples")
+           .addLine("* Run 4 clients against 50000 events/s of 1KB events with zipfian keys for 10 minutes")
+           .addLine()
+           .addLine("bin/dbus-benchmark -p conf/benchmark.properties -c 'databus.benchmark.clientsNum=4;" +
+                    "databus.benchmark.eventRatePerSec=50000;databus.benchmark.eventSize=1024;" +
+                    "databus.benchmark.keyDistribution=ZIPFIAN;databus.benchmark.durationSec=600'")
+           .addLine()
+         .finish()
+         .build();
+    }
+  }
+
+  public static class StaticConfig
+  {
+    private final int _relayPort;
+    private final long _bufferSize;
+    private final int _eventRatePerSec;
+    private final int _eventSize;
+    private final int _windowSize;
+    private final long _keysNum;
+    private final KeyGenerator.Distribution _keyDistribution;
+    private final double _zipfExponent;
+    private final double _hotKeysFraction;
+    private final double _hotTrafficFraction;
+    private final long _seed;
+    private final int _clientsNum;
+    private final int _clientPortBase;
+    private final long _consumerTimePerEventUs;
+    private final String _bootstrapServers;
+    private final int _warmupSec;
+    private final int _durationSec;
+    private final int _reportIntervalSec;
+
+    public StaticConfig(int relayPort, long bufferSize, int eventRatePerSec, int eventSize,
+                        int windowSize, long keysNum, KeyGenerator.Distribution keyDistribution,
+                        double zipfExponent, double hotKeysFraction, double hotTrafficFraction,
+                        long seed, int clientsNum, int clientPortBase, long consumerTimePerEventUs,
+                        String bootstrapServers, int warmupSec, int durationSec,
+                        int reportIntervalSec)
+    {
+      _relayPort = relayPort;
+      _bufferSize = bufferSize;
+      _eventRatePerSec = eventRatePerSec;
+      _eventSize = eventSize;
+      _windowSize = windowSize;
+      _keysNum = keysNum;
+      _keyDistribution = keyDistribution;
+      _zipfExponent = zipfExponent;
+      _hotKeysFraction = hotKeysFraction;
+      _hotTrafficFraction = hotTrafficFraction;
+      _seed = seed;
+      _clientsNum = clientsNum;
+      _clientPortBase = clientPortBase;
+      _consumerTimePerEventUs = consumerTimePerEventUs;
+      _bootstrapServers = bootstrapServers;
+      _warmupSec = warmupSec;
+      _durationSec = durationSec;
+      _reportIntervalSec = reportIntervalSec;
+    }
+
+    /** The HTTP port of the relay */
+    public int getRelayPort()
+    {
+      return _relayPort;
+    }
+
+    /** The size of the relay event buffer in bytes */
+    public long getBufferSize()
+    {
+      return _bufferSize;
+    }
+
+    /** The target rate of the synthetic producer */
+    public int getEventRatePerSec()
+    {
+      return _eventRatePerSec;
+    }
+
+    /** The size of the random payload of each event in bytes */
+    public int getEventSize()
+    {
+      return _eventSize;
+    }
+
+    /** The number of events per window (transaction) */
+    public int getWindowSize()
+    {
+      return _windowSize;
+    }
+
+    /** The number of distinct event keys */
+    public long getKeysNum()
+    {
+      return _keysNum;
+    }
+
+    /** The distribution of the event keys */
+    public KeyGenerator.Distribution getKeyDistribution()
+    {
+      return _keyDistribution;
+    }
+
+    /** The skew of the ZIPFIAN key distribution; in (0, 1) */
+    public double getZipfExponent()
+    {
+      return _zipfExponent;
+    }
+
+    /** The fraction of the keys which are hot for the HOTSET key distribution */
+    public double getHotKeysFraction()
+    {
+      return _hotKeysFraction;
+    }
+
+    /** The fraction of the events with hot keys for the HOTSET key distribution */
+    public double getHotTrafficFraction()
+    {
+      return _hotTrafficFraction;
+    }
+
+    /** The seed of the key generators */
+    public long getSeed()
+    {
+      return _seed;
+    }
+
+    /** The number of clients consuming from the relay */
+    public int getClientsNum()
+    {
+      return _clientsNum;
+    }
+
+    /** The HTTP port of the first client; the i-th client uses clientPortBase + i */
+    public int getClientPortBase()
+    {
+      return _clientPortBase;
+    }
+
+    /** The simulated processing time per event in the consumer callbacks */
+    public long getConsumerTimePerEventUs()
+    {
+      return _consumerTimePerEventUs;
+    }
+
+    /** A comma-separated list of host:port of bootstrap servers; empty to disable bootstrapping */
+    public String getBootstrapServers()
+    {
+      return _bootstrapServers;
+    }
+
+    /** The time before the measurement starts */
+    public int getWarmupSec()
+    {
+      return _warmupSec;
+    }
+
+    /** The duration of the measurement */
+    public int getDurationSec()
+    {
+      return _durationSec;
+    }
+
+    /** The interval between the intermediate reports */
+    public int getReportIntervalSec()
+    {
+      return _reportIntervalSec;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "{relayPort:" + _relayPort + ", bufferSize:" + _bufferSize +
+             ", eventRatePerSec:" + _eventRatePerSec + ", eventSize:" + _eventSize +
+             ", windowSize:" + _windowSize + ", keysNum:" + _keysNum +
+             ", keyDistribution:" + _keyDistribution + ", clientsNum:" + _clientsNum +
+             ", bootstrapServers:\"" + _bootstrapServers + "\", durationSec:" + _durationSec + "}";
+    }
+  }
+
+  public static class Config implements ConfigBuilder<StaticConfig>
+  {
+    private int _relayPort = 11190;
+    private long _bufferSize = 100 * 1024 * 1024;
+    private int _eventRatePerSec = 10000;
+    private int _eventSize = 100;
+    private int _windowSize = 100;
+    private long _keysNum = 1000000;
+    private String _keyDistribution = KeyGenerator.Distribution.UNIFORM.toString();
+    private double _zipfExponent = 0.99;
+    private double _hotKeysFraction = 0.01;
+    private double _hotTrafficFraction = 0.9;
+    private long _seed = 1;
+    private int _clientsNum = 1;
+    private int _clientPortBase = 11200;
+    private long _consumerTimePerEventUs = 0;
+    private String _bootstrapServers = "";
+    private int _warmupSec = 10;
+    private int _durationSec = 60;
+    private int _reportIntervalSec = 5;
+
+    @Override
+    public StaticConfig build() throws InvalidConfigException
+    {
+      KeyGenerator.Distribution keyDistribution = null;
+      try
+      {
+        keyDistribution = KeyGenerator.Distribution.valueOf(_keyDistribution);
+      }
+      catch (IllegalArgumentException e)
+      {
+        throw new InvalidConfigException("invalid keyDistribution:" + _keyDistribution);
+      }
+      if (0 >= _eventRatePerSec) throw new InvalidConfigException("invalid eventRatePerSec:" + _eventRatePerSec);
+      if (0 > _eventSize) throw new InvalidConfigException("invalid eventSize:" + _eventSize);
+      if (0 >= _windowSize) throw new InvalidConfigException("invalid windowSize:" + _windowSize);
+      if (0 >= _keysNum) throw new InvalidConfigException("invalid keysNum:" + _keysNum);
+      if (KeyGenerator.Distribution.ZIPFIAN == keyDistribution &&
+          (0.0 >= _zipfExponent || 1.0 <= _zipfExponent))
+      {
+        throw new InvalidConfigException("invalid zipfExponent:" + _zipfExponent);
+      }
+      if (0.0 > _hotKeysFraction || 1.0 < _hotKeysFraction)
+      {
+        throw new InvalidConfigException("invalid hotKeysFraction:" + _hotKeysFraction);
+      }
+      if (0.0 > _hotTrafficFraction || 1.0 < _hotTrafficFraction)
+      {
+        throw new InvalidConfigException("invalid hotTrafficFraction:" + _hotTrafficFraction);
+      }
+      if (0 > _clientsNum) throw new InvalidConfigException("invalid clientsNum:" + _clientsNum);
+      if (0 > _warmupSec) throw new InvalidConfigException("invalid warmupSec:" + _warmupSec);
+      if (0 >= _durationSec) throw new InvalidConfigException("invalid durationSec:" + _durationSec);
+      if (0 >= _reportIntervalSec)
+      {
+        throw new InvalidConfigException("invalid reportIntervalSec:" + _reportIntervalSec);
+      }
+
+      StaticConfig newConfig = new StaticConfig(_relayPort, _bufferSize, _eventRatePerSec, _eventSize,
+                                                _windowSize, _keysNum, keyDistribution, _zipfExponent,
+                                                _hotKeysFraction, _hotTrafficFraction, _seed,
+                                                _clientsNum, _clientPortBase,
+                                                _consumerTimePerEventUs, _bootstrapServers.trim(),
+                                                _warmupSec, _durationSec, _reportIntervalSec);
+      LOG.info("Benchmark.Config:" + newConfig);
+      return newConfig;
+    }
+
+    public int getRelayPort()
+    {
+      return _relayPort;
+    }
+
+    public void setRelayPort(int relayPort)
+    {
+      _relayPort = relayPort;
+    }
+
+    public long getBufferSize()
+    {
+      return _bufferSize;
+    }
+
+    public void setBufferSize(long bufferSize)
+    {
+      _bufferSize = bufferSize;
+    }
+
+    public int getEventRatePerSec()
+    {
+      return _eventRatePerSec;
+    }
+
+    public void setEventRatePerSec(int eventRatePerSec)
+    {
+      _eventRatePerSec = eventRatePerSec;
+    }
+
+    public int getEventSize()
+    {
+      return _eventSize;
+    }
+
+    public void setEventSize(int eventSize)
+    {
+      _eventSize = eventSize;
+    }
+
+    public int getWindowSize()
+    {
+      return _windowSize;
+    }
+
+    public void setWindowSize(int windowSize)
+    {
+      _windowSize = windowSize;
+    }
+
+    public long getKeysNum()
+    {
+      return _keysNum;
+    }
+
+    public void setKeysNum(long keysNum)
+    {
+      _keysNum = keysNum;
+    }
+
+    public String getKeyDistribution()
+    {
+      return _keyDistribution;
+    }
+
+    public void setKeyDistribution(String keyDistribution)
+    {
+      _keyDistribution = keyDistribution;
+    }
+
+    public double getZipfExponent()
+    {
+      return _zipfExponent;
+    }
+
+    public void setZipfExponent(double zipfExponent)
+    {
+      _zipfExponent = zipfExponent;
+    }
+
+    public double getHotKeysFraction()
+    {
+      return _hotKeysFraction;
+    }
+
+    public void setHotKeysFraction(double hotKeysFraction)
+    {
+      _hotKeysFraction = hotKeysFraction;
+    }
+
+    public double getHotTrafficFraction()
+    {
+      return _hotTrafficFraction;
+    }
+
+    public void setHotTrafficFraction(double hotTrafficFraction)
+    {
+      _hotTrafficFraction = hotTrafficFraction;
+    }
+
+    public long getSeed()
+    {
+      return _seed;
+    }
+
+    public void setSeed(long seed)
+    {
+      _seed = seed;
+    }
+
+    public int getClientsNum()
+    {
+      return _clientsNum;
+    }
+
+    public void setClientsNum(int clientsNum)
+    {
+      _clientsNum = clientsNum;
+    }
+
+    public int getClientPortBase()
+    {
+      return _clientPortBase;
+    }
+
+    public void setClientPortBase(int clientPortBase)
+    {
+      _clientPortBase = clientPortBase;
+    }
+
+    public long getConsumerTimePerEventUs()
+    {
+      return _consumerTimePerEventUs;
+    }
+
+    public void setConsumerTimePerEventUs(long consumerTimePerEventUs)
+    {
+      _consumerTimePerEventUs = consumerTimePerEventUs;
+    }
+
+    public String getBootstrapServers()
+    {
+      return _bootstrapServers;
+    }
+
+    public void setBootstrapServers(String bootstrapServers)
+    {
+      _bootstrapServers = bootstrapServers;
+    }
+
+    public int getWarmupSec()
+    {
+      return _warmupSec;
+    }
+
+    public void setWarmupSec(int warmupSec)
+    {
+      _warmupSec = warmupSec;
+    }
+
+    public int getDurationSec()
+    {
+      return _durationSec;
+    }
+
+    public void setDurationSec(int durationSec)
+    {
+      _durationSec = durationSec;
+    }
+
+    public int getReportIntervalSec()
+    {
+      return _reportIntervalSec;
+    }
+
+    public void setReportIntervalSec(int reportIntervalSec)
+    {
+      _reportIntervalSec = reportIntervalSec;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package com.linkedin.databus2.tools.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.codahale.metrics.MergeableLogLinearHistogram;
+import com.linkedin.databus.client.consumer.AbstractDatabusCombinedConsumer;
+import com.linkedin.databus.client.pub.ConsumerCallbackResult;
+import com.linkedin.databus.client.pub.DbusEventDecoder;
+import com.linkedin.databus.core.DbusEvent;
+
+/**
+ * A consumer which records the end-to-end latency of the online events and counts the streamed and
+ * bootstrapped events. Latencies are in microseconds but, since they are derived from the event
+ * timestamps, have millisecond granularity. Optionally, the consumer spins for a configured time per
+ * event to simulate the processing cost of a real application.
+ */
+public class BenchmarkConsumer extends AbstractDatabusCombinedConsumer
+{
+  private final long _processingTimePerEventNs;
+  private final MergeableLogLinearHistogram _latencyUs = new MergeableLogLinearHistogram();
+  private final MergeableLogLinearHistogram _intervalLatencyUs = new MergeableLogLinearHistogram();
+  private final AtomicLong _eventsNum = new AtomicLong();
+  private final AtomicLong _bytesNum = new AtomicLong();
+  private final AtomicLong _bootstrapEventsNum = new AtomicLong();
+  private volatile long _lastSequence = -1;
+
+  public BenchmarkConsumer(long processingTimePerEventUs)
+  {
+    _processingTimePerEventNs = TimeUnit.MICROSECONDS.toNanos(processingTimePerEventUs);
+  }
+
+  @Override
+  public ConsumerCallbackResult onDataEvent(DbusEvent e, DbusEventDecoder eventDecoder)
+  {
+    long latencyUs = System.currentTimeMillis() * 1000 - e.timestampInNanos() / 1000;
+    if (latencyUs < 0) latencyUs = 0;
+    _latencyUs.update(latencyUs);
+    _intervalLatencyUs.update(latencyUs);
+    _eventsNum.incrementAndGet();
+    _bytesNum.addAndGet(e.size());
+    _lastSequence = e.sequence();
+    simulateProcessing();
+    return ConsumerCallbackResult.SUCCESS;
+  }
+
+  @Override
+  public ConsumerCallbackResult onBootstrapEvent(DbusEvent e, DbusEventDecoder eventDecoder)
+  {
+    _bootstrapEventsNum.incrementAndGet();
+    _bytesNum.addAndGet(e.size());
+    simulateProcessing();
+    return ConsumerCallbackResult.SUCCESS;
+  }
+
+  private void simulateProcessing()
+  {
+    if (0 >= _processingTimePerEventNs) return;
+    long endNs = System.nanoTime() + _processingTimePerEventNs;
+    while (System.nanoTime() < endNs);
+  }
+
+  /** the latencies since the start of the run */
+  public MergeableLogLinearHistogram getLatencyUs()
+  {
+    return _latencyUs;
+  }
+
+  /** the latencies since the last call to {@link #resetInterval()} */
+  public MergeableLogLinearHistogram getIntervalLatencyUs()
+  {
+    return _intervalLatencyUs;
+  }
+
+  public void resetInterval()
+  {
+    _intervalLatencyUs.reset();
+  }
+
+  /** Clears all counters; used at the end of the warm-up */
+  public void reset()
+  {
+    _latencyUs.reset();
+    _intervalLatencyUs.reset();
+    _eventsNum.set(0);
+    _bytesNum.set(0);
+    _bootstrapEventsNum.set(0);
+  }
+
+  public long getEventsNum()
+  {
+    return _eventsNum.get();
+  }
+
+  public long getBytesNum()
+  {
+    return _bytesNum.get();
+  }
+
+  public long getBootstrapEventsNum()
+  {
+    return _bootstrapEventsNum.get();
+  }
+
+  /** the sequence number of the last streamed event or -1 if none */
+  public long getLastSequence()
+  {
+    return _lastSequence;
+  }
+}
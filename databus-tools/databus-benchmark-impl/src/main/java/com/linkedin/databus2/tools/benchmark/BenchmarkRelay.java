@@ -0,0 +1,88 @@
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package com.linkedin.databus2.tools.benchmark;
+
+import java.io.IOException;
+
+import org.apache.avro.Schema;
+import org.apache.log4j.Logger;
+
+import com.linkedin.databus.container.netty.HttpRelay;
+import com.linkedin.databus.core.DbusEventBufferAppendable;
+import com.linkedin.databus.core.data_model.PhysicalPartition;
+import com.linkedin.databus.core.util.InvalidConfigException;
+import com.linkedin.databus.eventgenerator.KeyGenerator;
+import com.linkedin.databus2.core.DatabusException;
+import com.linkedin.databus2.relay.DatabusRelayMain;
+import com.linkedin.databus2.relay.config.LogicalSourceStaticConfig;
+import com.linkedin.databus2.relay.config.PhysicalSourceStaticConfig;
+import com.linkedin.databus2.schemas.utils.SchemaHelper;
+
+/**
+ * A relay whose physical sources are all fed by {@link SyntheticEventProducer}s.
+ */
+public class BenchmarkRelay extends DatabusRelayMain
+{
+  public static final Logger LOG = Logger.getLogger(BenchmarkRelay.class);
+
+  private final Benchmark.StaticConfig _benchmarkConfig;
+  private final Schema _eventSchema;
+  private final byte[] _eventSchemaId;
+
+  public BenchmarkRelay(HttpRelay.StaticConfig config, PhysicalSourceStaticConfig[] pConfigs,
+                        Benchmark.StaticConfig benchmarkConfig)
+         throws IOException, InvalidConfigException, DatabusException
+  {
+    super(config, pConfigs);
+    _benchmarkConfig = benchmarkConfig;
+    _eventSchema = Schema.parse(Benchmark.EVENT_SCHEMA);
+    _eventSchemaId = SchemaHelper.getSchemaId(Benchmark.EVENT_SCHEMA);
+  }
+
+  @Override
+  public void addOneProducer(PhysicalSourceStaticConfig pConfig) throws DatabusException
+  {
+    PhysicalPartition pPartition = pConfig.getPhysicalPartition();
+    DbusEventBufferAppendable dbusEventBuffer = getEventBuffer().getDbusEventBufferAppendable(pPartition);
+    addPhysicalPartitionCollectors(pPartition);
+
+    LogicalSourceStaticConfig[] lSources = pConfig.getSources();
+    if (1 != lSources.length)
+    {
+      throw new DatabusException("benchmark physical source expected to have one logical source: " +
+                                 pConfig.getName());
+    }
+
+    KeyGenerator keyGenerator = new KeyGenerator(_benchmarkConfig.getKeyDistribution(),
+                                                 _benchmarkConfig.getKeysNum(),
+                                                 _benchmarkConfig.getZipfExponent(),
+                                                 _benchmarkConfig.getHotKeysFraction(),
+                                                 _benchmarkConfig.getHotTrafficFraction(),
+                                                 _benchmarkConfig.getSeed() + pConfig.getId());
+    SyntheticEventProducer producer =
+        new SyntheticEventProducer(pConfig.getName(), (short)pConfig.getId(), lSources[0].getId(),
+                                   _eventSchemaId, _eventSchema, dbusEventBuffer,
+                                   _inBoundStatsCollectors.getStatsCollector(pPartition.toSimpleString()),
+                                   keyGenerator, _benchmarkConfig.getEventRatePerSec(),
+                                   _benchmarkConfig.getWindowSize(), _benchmarkConfig.getEventSize());
+    LOG.info("adding synthetic producer for " + pPartition + ": " + keyGenerator.getDistribution() +
+             " keys over " + keyGenerator.getKeysNum());
+    _producers.put(pPartition, producer);
+  }
+}
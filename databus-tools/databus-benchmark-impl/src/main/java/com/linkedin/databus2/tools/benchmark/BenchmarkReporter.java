@@ -0,0 +1,247 @@
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package com.linkedin.databus2.tools.benchmark;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import com.codahale.metrics.MergeableLogLinearHistogram;
+import com.linkedin.databus.core.DbusEventBuffer;
+import com.linkedin.databus2.producers.EventProducer;
+import com.linkedin.databus2.relay.DatabusRelayMain;
+
+/**
+ * Prints the interval and the final reports of a benchmark run: producer and consumer throughput,
+ * end-to-end latency percentiles, consumer lag, relay buffer utilization and GC activity.
+ */
+public class BenchmarkReporter
+{
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  private final DatabusRelayMain _relay;
+  private final List<BenchmarkConsumer> _consumers;
+  private final PrintStream _out;
+
+  private long _startNs;
+  private long _startGcCount;
+  private long _startGcTimeMs;
+  private long _startProducedNum;
+
+  private long _lastNs;
+  private long _lastGcCount;
+  private long _lastGcTimeMs;
+  private long _lastProducedNum;
+  private long _lastConsumedNum;
+  private long _lastConsumedBytes;
+
+  public BenchmarkReporter(DatabusRelayMain relay, List<BenchmarkConsumer> consumers, PrintStream out)
+  {
+    _relay = relay;
+    _consumers = consumers;
+    _out = out;
+  }
+
+  /** Starts the measurement; all counters are relative to this point */
+  public void start()
+  {
+    for (BenchmarkConsumer consumer: _consumers)
+    {
+      consumer.reset();
+    }
+    _startNs = _lastNs = System.nanoTime();
+    _startGcCount = _lastGcCount = getGcCount();
+    _startGcTimeMs = _lastGcTimeMs = getGcTimeMs();
+    _startProducedNum = _lastProducedNum = getProducedNum();
+    _lastConsumedNum = 0;
+    _lastConsumedBytes = 0;
+  }
+
+  public void reportInterval()
+  {
+    long nowNs = System.nanoTime();
+    double sec = (nowNs - _lastNs) / 1e9;
+    long producedNum = getProducedNum();
+    long consumedNum = getConsumedNum();
+    long consumedBytes = getConsumedBytes();
+    long gcCount = getGcCount();
+    long gcTimeMs = getGcTimeMs();
+
+    MergeableLogLinearHistogram latency = new MergeableLogLinearHistogram();
+    for (BenchmarkConsumer consumer: _consumers)
+    {
+      latency.merge(consumer.getIntervalLatencyUs());
+      consumer.resetInterval();
+    }
+
+    _out.printf("[%6.1fs] produced: %.0f ev/s; consumed: %.0f ev/s %.2f MB/s; latency(us): %s; " +
+                "lag: %d; buffer: %s; gc: %d in %d ms%n",
+                (nowNs - _startNs) / 1e9,
+                (producedNum - _lastProducedNum) / sec,
+                (consumedNum - _lastConsumedNum) / sec,
+                (consumedBytes - _lastConsumedBytes) / sec / (1024 * 1024),
+                formatLatency(latency), getMaxLag(), formatBuffers(),
+                gcCount - _lastGcCount, gcTimeMs - _lastGcTimeMs);
+
+    _lastNs = nowNs;
+    _lastProducedNum = producedNum;
+    _lastConsumedNum = consumedNum;
+    _lastConsumedBytes = consumedBytes;
+    _lastGcCount = gcCount;
+    _lastGcTimeMs = gcTimeMs;
+  }
+
+  public void reportFinal()
+  {
+    double sec = (System.nanoTime() - _startNs) / 1e9;
+    long bootstrapNum = 0;
+    MergeableLogLinearHistogram latency = new MergeableLogLinearHistogram();
+    for (BenchmarkConsumer consumer: _consumers)
+    {
+      latency.merge(consumer.getLatencyUs());
+      bootstrapNum += consumer.getBootstrapEventsNum();
+    }
+    long scheduleResetsNum = 0;
+    for (EventProducer producer: _relay.getProducers())
+    {
+      if (producer instanceof SyntheticEventProducer)
+      {
+        scheduleResetsNum += ((SyntheticEventProducer)producer).getScheduleResetsNum();
+      }
+    }
+    Runtime rt = Runtime.getRuntime();
+
+    _out.println("==== benchmark results ====");
+    _out.printf("duration:            %.1f s%n", sec);
+    _out.printf("produced:            %d events (%.0f ev/s); rate misses: %d%n",
+                getProducedNum() - _startProducedNum, (getProducedNum() - _startProducedNum) / sec,
+                scheduleResetsNum);
+    _out.printf("consumed:            %d events (%.0f ev/s, %.2f MB/s) by %d consumers%n",
+                getConsumedNum(), getConsumedNum() / sec,
+                getConsumedBytes() / sec / (1024 * 1024), _consumers.size());
+    _out.printf("bootstrapped:        %d events%n", bootstrapNum);
+    _out.printf("latency (us):        %s mean=%.0f%n", formatLatency(latency), latency.getMean());
+    _out.printf("max consumer lag:    %d windows%n", getMaxLag());
+    _out.printf("relay buffers:       %s%n", formatBuffers());
+    _out.printf("gc:                  %d collections in %d ms (%.2f%% of the run)%n",
+                getGcCount() - _startGcCount, getGcTimeMs() - _startGcTimeMs,
+                (getGcTimeMs() - _startGcTimeMs) / (sec * 10));
+    _out.printf("heap used:           %d MB of %d MB%n",
+                (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024), rt.maxMemory() / (1024 * 1024));
+  }
+
+  private static String formatLatency(MergeableLogLinearHistogram h)
+  {
+    if (0 == h.getCount()) return "n/a";
+    StringBuilder res = new StringBuilder();
+    for (double q: QUANTILES)
+    {
+      res.append('p').append(q * 100).append('=').append(h.getValueAtQuantile(q)).append(' ');
+    }
+    res.append("max=").append(h.getMax());
+    return res.toString();
+  }
+
+  private String formatBuffers()
+  {
+    StringBuilder res = new StringBuilder();
+    for (DbusEventBuffer buf: _relay.getEventBuffer().bufIterable())
+    {
+      long allocated = buf.getAllocatedSize();
+      double used = 0 == allocated ? 0.0 : 100.0 * (allocated - buf.getBufferFreeSpace()) / allocated;
+      if (res.length() > 0) res.append(", ");
+      res.append(String.format("%.1f%% used, scns [%d, %d]", used, buf.getMinScn(),
+                               buf.lastWrittenScn()));
+    }
+    return res.toString();
+  }
+
+  /** the largest difference in windows between the relay and a consumer */
+  private long getMaxLag()
+  {
+    long relayScn = -1;
+    for (DbusEventBuffer buf: _relay.getEventBuffer().bufIterable())
+    {
+      relayScn = Math.max(relayScn, buf.lastWrittenScn());
+    }
+    long maxLag = 0;
+    for (BenchmarkConsumer consumer: _consumers)
+    {
+      if (0 <= consumer.getLastSequence())
+      {
+        maxLag = Math.max(maxLag, relayScn - consumer.getLastSequence());
+      }
+    }
+    return maxLag;
+  }
+
+  private long getProducedNum()
+  {
+    long res = 0;
+    for (EventProducer producer: _relay.getProducers())
+    {
+      if (producer instanceof SyntheticEventProducer)
+      {
+        res += ((SyntheticEventProducer)producer).getEventsNum();
+      }
+    }
+    return res;
+  }
+
+  private long getConsumedNum()
+  {
+    long res = 0;
+    for (BenchmarkConsumer consumer: _consumers)
+    {
+      res += consumer.getEventsNum();
+    }
+    return res;
+  }
+
+  private long getConsumedBytes()
+  {
+    long res = 0;
+    for (BenchmarkConsumer consumer: _consumers)
+    {
+      res += consumer.getBytesNum();
+    }
+    return res;
+  }
+
+  private static long getGcCount()
+  {
+    long res = 0;
+    for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans())
+    {
+      res += Math.max(0, gc.getCollectionCount());
+    }
+    return res;
+  }
+
+  private static long getGcTimeMs()
+  {
+    long res = 0;
+    for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans())
+    {
+      res += Math.max(0, gc.getCollectionTime());
+    }
+    return res;
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package com.linkedin.databus2.tools.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.log4j.Logger;
+
+import com.linkedin.databus.core.DbusEventBufferAppendable;
+import com.linkedin.databus.core.DbusEventKey;
+import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
+import com.linkedin.databus.eventgenerator.KeyGenerator;
+import com.linkedin.databus2.producers.EventProducer;
+
+/**
+ * Appends windows of synthetic events to a relay buffer at a target rate. The event payloads are
+ * Avro records of {@link Benchmark#EVENT_SCHEMA} with a payload of a configured size. The event
+ * timestamps are the wall-clock append times, which the benchmark consumers use to measure the
+ * end-to-end latency.
+ */
+public class SyntheticEventProducer implements EventProducer
+{
+  public static final String MODULE = SyntheticEventProducer.class.getName();
+  public static final Logger LOG = Logger.getLogger(MODULE);
+
+  /** how far the producer may fall behind its schedule before it stops trying to catch up */
+  private static final long MAX_SCHEDULE_LAG_NS = TimeUnit.SECONDS.toNanos(1);
+
+  private final String _name;
+  private final short _pPartitionId;
+  private final short _srcId;
+  private final byte[] _schemaId;
+  private final Schema _schema;
+  private final DbusEventBufferAppendable _buffer;
+  private final DbusEventsStatisticsCollector _statsCollector;
+  private final KeyGenerator _keyGenerator;
+  private final int _windowSize;
+  private final long _windowIntervalNs;
+  private final byte[] _payload;
+
+  private final AtomicLong _eventsNum = new AtomicLong();
+  private final AtomicLong _windowsNum = new AtomicLong();
+  private final AtomicLong _scheduleResetsNum = new AtomicLong();
+  private volatile long _scn = 0;
+  private volatile boolean _shutdownRequested = false;
+  private volatile boolean _pauseRequested = false;
+  private volatile boolean _paused = false;
+  private Thread _worker;
+
+  public SyntheticEventProducer(String name, short pPartitionId, short srcId, byte[] schemaId,
+                                Schema schema, DbusEventBufferAppendable buffer,
+                                DbusEventsStatisticsCollector statsCollector,
+                                KeyGenerator keyGenerator, int eventRatePerSec, int windowSize,
+                                int payloadSize)
+  {
+    _name = name;
+    _pPartitionId = pPartitionId;
+    _srcId = srcId;
+    _schemaId = schemaId;
+    _schema = schema;
+    _buffer = buffer;
+    _statsCollector = statsCollector;
+    _keyGenerator = keyGenerator;
+    _windowSize = windowSize;
+    _windowIntervalNs = TimeUnit.SECONDS.toNanos(windowSize) / eventRatePerSec;
+    _payload = new byte[payloadSize];
+    new Random(payloadSize).nextBytes(_payload);
+  }
+
+  @Override
+  public String getName()
+  {
+    return _name;
+  }
+
+  @Override
+  public long getSCN()
+  {
+    return _scn;
+  }
+
+  @Override
+  public synchronized void start(long sinceSCN)
+  {
+    if (null != _worker)
+    {
+      LOG.error("producer already started: " + _name);
+      return;
+    }
+    _scn = sinceSCN > 0 ? sinceSCN : 1;
+    _worker = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        produce();
+      }
+    }, _name + "-producer");
+    _worker.setDaemon(true);
+    _worker.start();
+  }
+
+  private void produce()
+  {
+    LOG.info("starting producer " + _name + " from scn " + _scn);
+    _buffer.start(_scn - 1);
+
+    GenericRecord record = new GenericData.Record(_schema);
+    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<GenericRecord>(_schema);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(_payload.length + 32);
+    BinaryEncoder encoder = new BinaryEncoder(out);
+    record.put("payload", ByteBuffer.wrap(_payload));
+
+    long nextWindowNs = System.nanoTime();
+    try
+    {
+      while (!_shutdownRequested)
+      {
+        if (_pauseRequested)
+        {
+          waitWhilePaused();
+          nextWindowNs = System.nanoTime();
+          continue;
+        }
+
+        _buffer.startEvents();
+        for (int i = 0; i < _windowSize; ++i)
+        {
+          long key = _keyGenerator.next();
+          long tsNanos = System.currentTimeMillis() * 1000000L;
+          record.put("key", key);
+          record.put("timestamp", tsNanos);
+          out.reset();
+          writer.write(record, encoder);
+          encoder.flush();
+          _buffer.appendEvent(new DbusEventKey(key), _pPartitionId, (short)0, tsNanos, _srcId,
+                              _schemaId, out.toByteArray(), false, _statsCollector);
+        }
+        _buffer.endEvents(_scn, _statsCollector);
+        ++_scn;
+        _eventsNum.addAndGet(_windowSize);
+        _windowsNum.incrementAndGet();
+
+        nextWindowNs += _windowIntervalNs;
+        long sleepNs = nextWindowNs - System.nanoTime();
+        if (sleepNs > 0)
+        {
+          TimeUnit.NANOSECONDS.sleep(sleepNs);
+        }
+        else if (-sleepNs > MAX_SCHEDULE_LAG_NS)
+        {
+          //the target rate cannot be sustained; do not try to make up for the lost time
+          _scheduleResetsNum.incrementAndGet();
+          nextWindowNs = System.nanoTime();
+        }
+      }
+    }
+    catch (InterruptedException e)
+    {
+      LOG.info("producer interrupted: " + _name);
+    }
+    catch (IOException e)
+    {
+      LOG.error("unable to serialize event: " + e.getMessage(), e);
+    }
+    LOG.info("producer stopped: " + _name + "; events: " + _eventsNum.get());
+  }
+
+  private synchronized void waitWhilePaused() throws InterruptedException
+  {
+    _paused = true;
+    while (_pauseRequested && !_shutdownRequested)
+    {
+      wait();
+    }
+    _paused = false;
+  }
+
+  @Override
+  public synchronized boolean isRunning()
+  {
+    return null != _worker && _worker.isAlive() && !_paused;
+  }
+
+  @Override
+  public synchronized boolean isPaused()
+  {
+    return _paused;
+  }
+
+  @Override
+  public synchronized void unpause()
+  {
+    _pauseRequested = false;
+    notifyAll();
+  }
+
+  @Override
+  public synchronized void pause()
+  {
+    _pauseRequested = true;
+  }
+
+  @Override
+  public synchronized void shutdown()
+  {
+    _shutdownRequested = true;
+    notifyAll();
+  }
+
+  @Override
+  public void waitForShutdown() throws InterruptedException, IllegalStateException
+  {
+    Thread worker = getWorker();
+    if (null != worker) worker.join();
+  }
+
+  @Override
+  public void waitForShutdown(long timeout) throws InterruptedException, IllegalStateException
+  {
+    Thread worker = getWorker();
+    if (null != worker) worker.join(timeout);
+  }
+
+  private synchronized Thread getWorker()
+  {
+    return _worker;
+  }
+
+  public long getEventsNum()
+  {
+    return _eventsNum.get();
+  }
+
+  public long getWindowsNum()
+  {
+    return _windowsNum.get();
+  }
+
+  /** the number of times the producer fell too far behind the target rate */
+  public long getScheduleResetsNum()
+  {
+    return _scheduleResetsNum.get();
+  }
+}
@@ -121,6 +121,14 @@ public class Dtail
                     "com.linkedin.events.example.Company -R relay.host.com:12345 " +
                     "--scn 987654321 -u 5min -F EVENT_INFO")
            .addLine()
+           .addLine("* Extract the key and firstName fields of all events for source " +
+                    "com.linkedin.events.example.Person from the relay relay.host.com:12345 " +
+                    "into a compressed Avro container file, decoding in 4 threads")
+           .addLine()
+           .addLine("bin/dtail -s com.linkedin.events.example.Person -R relay.host.com:12345 " +
+                    "-F AVRO_CONTAINER --fields key,firstName --compress --decode_threads 4 " +
+                    "-o person.avro")
+           .addLine()
          .finish()
          .build();
     }
@@ -471,6 +479,24 @@ public class Dtail
     {
       _consumer = (DatabusCombinedConsumer)cli.getConsumerClass().newInstance();
     }
+    else if (0 < cli.getDecodeThreadsNum())
+    {
+      if (DtailCliBase.OutputFormat.AVRO_CONTAINER == cli.getOutputFormat() && 1 != cli.getSources().length)
+      {
+        throw new InvalidConfigException("output format " + cli.getOutputFormat() +
+                                         " supports a single source");
+      }
+      ParallelDtailPrinter.StaticConfigBuilder pconfBuilder = new ParallelDtailPrinter.StaticConfigBuilder();
+      pconfBuilder.setPrintPrintVerbosity(cli.getPrintVerbosity());
+      pconfBuilder.setMaxEventsNum(cli.getMaxEventNum());
+      pconfBuilder.setMaxDurationMs(cli.getDurationMs());
+      pconfBuilder.setPrintStats(cli.isShowStats());
+      pconfBuilder.setOutputFormat(cli.getOutputFormat().toString());
+      pconfBuilder.setDecodeThreadsNum(cli.getDecodeThreadsNum());
+      pconfBuilder.setFields(cli.getFields());
+      pconfBuilder.setCompress(cli.isCompress());
+      _consumer = new ParallelDtailPrinter(_client, pconfBuilder.build(), cli.getOut());
+    }
     else
     {
       switch (cli.getOutputFormat())
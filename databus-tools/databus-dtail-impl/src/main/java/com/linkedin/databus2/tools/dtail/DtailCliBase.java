@@ -38,10 +38,13 @@ import com.linkedin.databus2.tools.dtail.DtailPrinter.PrintVerbosity;
  */
 public class DtailCliBase extends BaseCli
 {
+  public static final String COMPRESS_OPT_NAME = "compress";
+  public static final String DECODE_THREADS_OPT_NAME = "decode_threads";
   public static final String DURATION_OPTION_NAME = "duration";
   public static final char DURATION_OPTION_CHAR = 'u';
   public static final String EVENT_NUM_OPT_NAME = "event_num";
   public static final char EVENT_NUM_OPT_CHAR = 'n';
+  public static final String FIELDS_OPT_NAME = "fields";
   public static final String OUTPUT_FORMAT_OPT_NAME = "output_format";
   public static final char OUTPUT_FORMAT_OPT_CHAR = 'F';
   public static final String OUTPUT_OPT_NAME = "output";
@@ -60,7 +63,8 @@ public class DtailCliBase extends BaseCli
     AVRO_JSON,
     AVRO_BIN,
     NOOP,
-    EVENT_INFO
+    EVENT_INFO,
+    AVRO_CONTAINER
   }
   public static final String BOB_SCN_STRING = "BOB";
   public static final String EOB_SCN_STRING = "EOB";
@@ -72,7 +76,10 @@ public class DtailCliBase extends BaseCli
   public static final PrintVerbosity DEFAULT_PRINT_VERBOSITY = PrintVerbosity.EVENT;
 
   protected String _checkpointDirName;
+  protected boolean _compress = false;
+  protected int _decodeThreadsNum = 0;
   protected long _durationMs = Long.MAX_VALUE;
+  protected String _fields;
   protected long _maxEventNum = Long.MAX_VALUE;
   protected OutputFormat _outputFormat = DEFAUL_OUTPUT_FORMAT;
   protected PrintVerbosity _printVerbosity = DEFAULT_PRINT_VERBOSITY;
@@ -139,6 +146,25 @@ public class DtailCliBase extends BaseCli
                                               "EOB for current end of buffer; Default: BOB")
                                          .create();
 
+    Option decodeThreadsOption = OptionBuilder.withLongOpt(DECODE_THREADS_OPT_NAME)
+                                              .hasArg()
+                                              .withArgName("num")
+                                              .withDescription("decode events in num parallel threads with ordered output; " +
+                                                  "0 decodes on the consumer thread; default: 0, or the number " +
+                                                  "of CPUs - 1 if --fields, --compress or " + OutputFormat.AVRO_CONTAINER +
+                                                  " is used")
+                                              .create();
+    Option fieldsOption = OptionBuilder.withLongOpt(FIELDS_OPT_NAME)
+                                       .hasArg()
+                                       .withArgName("field_list")
+                                       .withDescription("comma-separated list of the payload fields to output; " +
+                                           "default: all")
+                                       .create();
+    Option compressOption = OptionBuilder.withLongOpt(COMPRESS_OPT_NAME)
+                                         .withDescription("gzip the " + OutputFormat.AVRO_JSON + " output or deflate the " +
+                                             OutputFormat.AVRO_CONTAINER + " output; Default: off")
+                                         .create();
+
     _cliOptions.addOption(eventNumOption);
     _cliOptions.addOption(outputFormatOption);
     _cliOptions.addOption(outputOption);
@@ -148,6 +174,9 @@ public class DtailCliBase extends BaseCli
     _cliOptions.addOption(durationOption);
     _cliOptions.addOption(statsOption);
     _cliOptions.addOption(sinceScnOption);
+    _cliOptions.addOption(decodeThreadsOption);
+    _cliOptions.addOption(fieldsOption);
+    _cliOptions.addOption(compressOption);
   }
 
   @Override
@@ -178,6 +207,10 @@ public class DtailCliBase extends BaseCli
     }
     processStats();
     processSinceScn();
+    if (!processPipeline())
+    {
+      return false;
+    }
 
     return true;
   }
@@ -309,6 +342,51 @@ public class DtailCliBase extends BaseCli
     _log.info("starting from SCN: " + _sinceScn);
   }
 
+  private boolean processPipeline()
+  {
+    _compress = _cmd.hasOption(COMPRESS_OPT_NAME);
+    if (_cmd.hasOption(FIELDS_OPT_NAME))
+    {
+      _fields = _cmd.getOptionValue(FIELDS_OPT_NAME);
+    }
+    if (_cmd.hasOption(DECODE_THREADS_OPT_NAME))
+    {
+      try
+      {
+        _decodeThreadsNum = Integer.parseInt(_cmd.getOptionValue(DECODE_THREADS_OPT_NAME));
+      }
+      catch (NumberFormatException e)
+      {
+        printError("invalid number of decode threads: " + _cmd.getOptionValue(DECODE_THREADS_OPT_NAME),
+                   false);
+        return false;
+      }
+      if (0 > _decodeThreadsNum)
+      {
+        printError("invalid number of decode threads: " + _decodeThreadsNum, false);
+        return false;
+      }
+    }
+
+    boolean pipelineNeeded = _compress || null != _fields || OutputFormat.AVRO_CONTAINER == _outputFormat;
+    if (pipelineNeeded && 0 == _decodeThreadsNum)
+    {
+      _decodeThreadsNum = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+    if (0 < _decodeThreadsNum && OutputFormat.AVRO_JSON != _outputFormat &&
+        OutputFormat.AVRO_CONTAINER != _outputFormat)
+    {
+      printError("parallel decoding supports only " + OutputFormat.AVRO_JSON + " and " +
+                 OutputFormat.AVRO_CONTAINER + " output formats", true);
+      return false;
+    }
+    if (0 < _decodeThreadsNum)
+    {
+      _log.info("decoding with threads: " + _decodeThreadsNum);
+    }
+    return true;
+  }
+
   public String getCheckpointDirName()
   {
     return _checkpointDirName;
@@ -349,4 +427,19 @@ public class DtailCliBase extends BaseCli
     return _sinceScn;
   }
 
+  public int getDecodeThreadsNum()
+  {
+    return _decodeThreadsNum;
+  }
+
+  public String getFields()
+  {
+    return _fields;
+  }
+
+  public boolean isCompress()
+  {
+    return _compress;
+  }
+
 }
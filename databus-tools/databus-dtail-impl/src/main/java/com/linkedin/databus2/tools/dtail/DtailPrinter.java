@@ -300,8 +300,9 @@ public abstract class DtailPrinter extends AbstractDatabusCombinedConsumer
     String statsStr = fmt.toString();
     try
     {
-      _out.write(statsStr.getBytes(Charset.defaultCharset()));
-      _out.flush();
+      OutputStream statsOut = getStatsOut();
+      statsOut.write(statsStr.getBytes(Charset.defaultCharset()));
+      statsOut.flush();
     }
     catch (IOException e)
     {
@@ -309,6 +310,12 @@ public abstract class DtailPrinter extends AbstractDatabusCombinedConsumer
     }
   }
 
+  /** The stream the statistics are printed to */
+  protected OutputStream getStatsOut()
+  {
+    return _out;
+  }
+
   @Override
   public ConsumerCallbackResult onStartDataEventSequence(SCN startScn)
   {
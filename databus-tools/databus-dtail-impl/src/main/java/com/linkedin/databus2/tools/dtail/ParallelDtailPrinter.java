@@ -0,0 +1,833 @@
+package com.linkedin.databus2.tools.dtail;
+/*
+*
+* Copyright 2013 LinkedIn Corp. All rights reserved
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+*/
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.JsonEncoder;
+import org.apache.log4j.Logger;
+
+import com.linkedin.databus.client.DatabusHttpClientImpl;
+import com.linkedin.databus.client.pub.ConsumerCallbackResult;
+import com.linkedin.databus.client.pub.DbusEventDecoder;
+import com.linkedin.databus.client.pub.SCN;
+import com.linkedin.databus.core.DbusEventInternalReadable;
+import com.linkedin.databus.core.DbusEventPayloadCompressor;
+import com.linkedin.databus.core.DbusEventPayloadDictionaries;
+import com.linkedin.databus.core.util.ConfigBuilder;
+import com.linkedin.databus.core.util.InvalidConfigException;
+import com.linkedin.databus2.schemas.VersionedSchema;
+
+/**
+ * A pipelined event printer for tailing busy sources.
+ *
+ * <p>The dispatcher thread only copies the raw payload of each event into the current batch. Full
+ * batches are decoded by a pool of decode threads and written out by a single writer thread in
+ * the order in which they were dispatched. Back-pressure is provided by a bounded queue of
+ * pending batches: if the decoders or the output cannot keep up, the dispatcher blocks.
+ *
+ * <p>If a list of fields is given, payloads are decoded with a reader schema that contains only
+ * those fields so the Avro schema resolution skips the rest without materializing them. The
+ * output is either newline-separated Avro JSON, optionally gzip-compressed, or an Avro container
+ * file, optionally deflate-compressed.
+ */
+public class ParallelDtailPrinter extends DtailPrinter
+{
+  public static final Logger LOG = Logger.getLogger(ParallelDtailPrinter.class);
+
+  public static enum OutputFormat
+  {
+    AVRO_JSON,
+    AVRO_CONTAINER
+  }
+
+  public static class StaticConfig extends DtailPrinter.StaticConfig
+  {
+    private final OutputFormat _outputFormat;
+    private final int _decodeThreadsNum;
+    private final int _batchSize;
+    private final long _maxBatchDelayMs;
+    private final int _outputBufferSize;
+    private final boolean _compress;
+    private final String[] _fields;
+
+    public StaticConfig(PrintVerbosity printPrintVerbosity, long maxEventsNum, long maxDurationMs,
+                        boolean printStats, OutputFormat outputFormat, int decodeThreadsNum,
+                        int batchSize, long maxBatchDelayMs, int outputBufferSize,
+                        boolean compress, String[] fields)
+    {
+      super(printPrintVerbosity, maxEventsNum, maxDurationMs, printStats);
+      _outputFormat = outputFormat;
+      _decodeThreadsNum = decodeThreadsNum;
+      _batchSize = batchSize;
+      _maxBatchDelayMs = maxBatchDelayMs;
+      _outputBufferSize = outputBufferSize;
+      _compress = compress;
+      _fields = fields;
+    }
+
+    public OutputFormat getOutputFormat()
+    {
+      return _outputFormat;
+    }
+
+    /** number of threads decoding batches */
+    public int getDecodeThreadsNum()
+    {
+      return _decodeThreadsNum;
+    }
+
+    /** max number of events in a batch */
+    public int getBatchSize()
+    {
+      return _batchSize;
+    }
+
+    /** a non-full batch is handed to the decoders at the end of a window if it is that old */
+    public long getMaxBatchDelayMs()
+    {
+      return _maxBatchDelayMs;
+    }
+
+    public int getOutputBufferSize()
+    {
+      return _outputBufferSize;
+    }
+
+    public boolean isCompress()
+    {
+      return _compress;
+    }
+
+    /** the top-level payload fields to output or null for all */
+    public String[] getFields()
+    {
+      return _fields;
+    }
+  }
+
+  public static class StaticConfigBuilder extends StaticConfigBuilderBase
+                                          implements ConfigBuilder<StaticConfig>
+  {
+    private String _outputFormat = OutputFormat.AVRO_JSON.toString();
+    private int _decodeThreadsNum = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private int _batchSize = 1000;
+    private long _maxBatchDelayMs = 100;
+    private int _outputBufferSize = 1024 * 1024;
+    private boolean _compress = false;
+    private String _fields = null;
+
+    @Override
+    public StaticConfig build() throws InvalidConfigException
+    {
+      OutputFormat outputFormat = null;
+      try
+      {
+        outputFormat = OutputFormat.valueOf(_outputFormat);
+      }
+      catch (IllegalArgumentException e)
+      {
+        throw new InvalidConfigException("invalid pipelined output format: " + _outputFormat);
+      }
+      if (0 >= _decodeThreadsNum)
+      {
+        throw new InvalidConfigException("invalid number of decode threads: " + _decodeThreadsNum);
+      }
+      if (0 >= _batchSize)
+      {
+        throw new InvalidConfigException("invalid batch size: " + _batchSize);
+      }
+      if (0 >= _outputBufferSize)
+      {
+        throw new InvalidConfigException("invalid output buffer size: " + _outputBufferSize);
+      }
+
+      String[] fields = null;
+      if (null != _fields && 0 < _fields.trim().length())
+      {
+        fields = _fields.trim().split("\\s*,\\s*");
+      }
+
+      return new StaticConfig(getPrintPrintVerbosity(), getMaxEventsNum(), getMaxDurationMs(),
+                              isPrintStats(), outputFormat, _decodeThreadsNum, _batchSize,
+                              _maxBatchDelayMs, _outputBufferSize, _compress, fields);
+    }
+
+    public String getOutputFormat()
+    {
+      return _outputFormat;
+    }
+
+    public void setOutputFormat(String outputFormat)
+    {
+      _outputFormat = outputFormat;
+    }
+
+    public int getDecodeThreadsNum()
+    {
+      return _decodeThreadsNum;
+    }
+
+    public void setDecodeThreadsNum(int decodeThreadsNum)
+    {
+      _decodeThreadsNum = decodeThreadsNum;
+    }
+
+    public int getBatchSize()
+    {
+      return _batchSize;
+    }
+
+    public void setBatchSize(int batchSize)
+    {
+      _batchSize = batchSize;
+    }
+
+    public long getMaxBatchDelayMs()
+    {
+      return _maxBatchDelayMs;
+    }
+
+    public void setMaxBatchDelayMs(long maxBatchDelayMs)
+    {
+      _maxBatchDelayMs = maxBatchDelayMs;
+    }
+
+    public int getOutputBufferSize()
+    {
+      return _outputBufferSize;
+    }
+
+    public void setOutputBufferSize(int outputBufferSize)
+    {
+      _outputBufferSize = outputBufferSize;
+    }
+
+    public boolean isCompress()
+    {
+      return _compress;
+    }
+
+    public void setCompress(boolean compress)
+    {
+      _compress = compress;
+    }
+
+    public String getFields()
+    {
+      return _fields;
+    }
+
+    public void setFields(String fields)
+    {
+      _fields = fields;
+    }
+  }
+
+  private final StaticConfig _pconf;
+  private final ExecutorService _decoders;
+  /** batches in dispatch order; the writer thread consumes them in that order */
+  private final ArrayBlockingQueue<Future<DecodedBatch>> _pending;
+  private final Future<DecodedBatch> _endOfStream;
+  private final WriterThread _writer;
+  /** the dictionaries of the client event buffers to decompress compressed payloads with */
+  private final DbusEventPayloadDictionaries _payloadDictionaries;
+  /** reader schema by the writer schema of the payload (identity, as they come from the registry) */
+  private final IdentityHashMap<Schema, Schema> _readerSchemas = new IdentityHashMap<Schema, Schema>();
+  /** reader schema by record name so that all versions of a source are output with the same schema */
+  private final HashMap<String, Schema> _readerSchemasByName = new HashMap<String, Schema>();
+
+  private EventBatch _curBatch;
+  private long _submittedBatchesNum = 0;
+  private boolean _closed = false;
+
+  /** guarded by this */
+  private long _writtenBatchesNum = 0;
+  private volatile Throwable _writeError = null;
+
+  public ParallelDtailPrinter(DatabusHttpClientImpl client, StaticConfig conf, OutputStream out)
+  {
+    super(client, conf, out);
+    _pconf = conf;
+    _payloadDictionaries =
+        client.getClientStaticConfig().getConnectionDefaults().getEventBuffer().getPayloadDictionaries();
+    _decoders = Executors.newFixedThreadPool(conf.getDecodeThreadsNum(), new ThreadFactory()
+    {
+      private final AtomicInteger _threadsNum = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable r)
+      {
+        Thread t = new Thread(r, "dtail-decoder-" + _threadsNum.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    _pending = new ArrayBlockingQueue<Future<DecodedBatch>>(2 * conf.getDecodeThreadsNum());
+    FutureTask<DecodedBatch> endOfStream = new FutureTask<DecodedBatch>(new Callable<DecodedBatch>()
+    {
+      @Override
+      public DecodedBatch call()
+      {
+        return null;
+      }
+    });
+    endOfStream.run();
+    _endOfStream = endOfStream;
+    _curBatch = new EventBatch(conf.getBatchSize(), 64 * 1024);
+    _writer = new WriterThread();
+    _writer.start();
+  }
+
+  @Override
+  public ConsumerCallbackResult printEvent(DbusEventInternalReadable e, DbusEventDecoder eventDecoder)
+  {
+    if (null != _writeError || _closed)
+    {
+      return ConsumerCallbackResult.ERROR;
+    }
+
+    VersionedSchema writerSchema = eventDecoder.getPayloadSchema(e);
+    if (null == writerSchema)
+    {
+      LOG.error("unable to find the payload schema for event " + e);
+      return ConsumerCallbackResult.ERROR;
+    }
+    Schema readerSchema = getReaderSchema(writerSchema.getSchema());
+    if (null == readerSchema)
+    {
+      return ConsumerCallbackResult.ERROR;
+    }
+
+    _curBatch.add(e.value(), e.isPayloadCompressed(), writerSchema.getSchema(), readerSchema);
+    if (_curBatch._eventsNum >= _pconf.getBatchSize())
+    {
+      if (!submitBatch()) return ConsumerCallbackResult.ERROR;
+    }
+    return ConsumerCallbackResult.SUCCESS;
+  }
+
+  /**
+   * Returns the (projected) schema used to decode payloads with the given writer schema, or null
+   * if a projected field is missing.
+   */
+  private Schema getReaderSchema(Schema writerSchema)
+  {
+    Schema result = _readerSchemas.get(writerSchema);
+    if (null != result) return result;
+
+    result = _readerSchemasByName.get(writerSchema.getFullName());
+    if (null == result)
+    {
+      result = null == _pconf.getFields() ? writerSchema : project(writerSchema, _pconf.getFields());
+      if (null == result) return null;
+      _readerSchemasByName.put(writerSchema.getFullName(), result);
+      LOG.info("output schema for " + writerSchema.getFullName() + ": " + result);
+    }
+    _readerSchemas.put(writerSchema, result);
+    return result;
+  }
+
+  static Schema project(Schema schema, String[] fieldNames)
+  {
+    List<Field> fields = new ArrayList<Field>(fieldNames.length);
+    for (String fieldName: fieldNames)
+    {
+      Field field = schema.getField(fieldName);
+      if (null == field)
+      {
+        LOG.error("field " + fieldName + " not found in " + schema.getFullName());
+        return null;
+      }
+      fields.add(new Field(field.name(), field.schema(), field.doc(), field.defaultValue()));
+    }
+    Schema result = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(),
+                                        false);
+    result.setFields(fields);
+    return result;
+  }
+
+  /** Hands the current batch to the decoders; blocks if too many batches are pending */
+  private boolean submitBatch()
+  {
+    if (0 == _curBatch._eventsNum) return true;
+
+    EventBatch batch = _curBatch;
+    _curBatch = new EventBatch(_pconf.getBatchSize(), batch._size);
+    try
+    {
+      _pending.put(_decoders.submit(new DecodeTask(batch)));
+      ++_submittedBatchesNum;
+      return true;
+    }
+    catch (InterruptedException ie)
+    {
+      LOG.warn("interrupted while submitting a batch");
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /** Submits the current batch and waits until all submitted batches have been written */
+  private boolean drain()
+  {
+    if (!submitBatch()) return false;
+    synchronized (this)
+    {
+      while (_writtenBatchesNum < _submittedBatchesNum && null == _writeError)
+      {
+        try
+        {
+          wait();
+        }
+        catch (InterruptedException ie)
+        {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    }
+    return null == _writeError;
+  }
+
+  private synchronized void batchWritten()
+  {
+    ++_writtenBatchesNum;
+    notifyAll();
+  }
+
+  private synchronized void writeFailed(Throwable t)
+  {
+    _writeError = t;
+    notifyAll();
+  }
+
+  @Override
+  public ConsumerCallbackResult onEndDataEventSequence(SCN endScn)
+  {
+    if (System.currentTimeMillis() - _curBatch._startTs >= _pconf.getMaxBatchDelayMs())
+    {
+      if (!submitBatch()) return ConsumerCallbackResult.ERROR;
+    }
+    return super.onEndDataEventSequence(endScn);
+  }
+
+  @Override
+  public ConsumerCallbackResult onEndBootstrapSequence(SCN endScn)
+  {
+    if (System.currentTimeMillis() - _curBatch._startTs >= _pconf.getMaxBatchDelayMs())
+    {
+      if (!submitBatch()) return ConsumerCallbackResult.ERROR;
+    }
+    return super.onEndBootstrapSequence(endScn);
+  }
+
+  /** Make sure that a checkpoint is never ahead of the output */
+  @Override
+  public ConsumerCallbackResult onCheckpoint(SCN checkpointScn)
+  {
+    return drain() ? super.onCheckpoint(checkpointScn) : ConsumerCallbackResult.ERROR;
+  }
+
+  @Override
+  public ConsumerCallbackResult onBootstrapCheckpoint(SCN batchCheckpointScn)
+  {
+    return drain() ? super.onBootstrapCheckpoint(batchCheckpointScn) : ConsumerCallbackResult.ERROR;
+  }
+
+  @Override
+  public ConsumerCallbackResult onStopBootstrap()
+  {
+    drain();
+    return super.onStopBootstrap();
+  }
+
+  @Override
+  public ConsumerCallbackResult onStopConsumption()
+  {
+    close();
+    return super.onStopConsumption();
+  }
+
+  /** Writes out all pending events and closes the output */
+  public void close()
+  {
+    if (_closed) return;
+    _closed = true;
+
+    submitBatch();
+    try
+    {
+      _pending.put(_endOfStream);
+      _writer.join();
+    }
+    catch (InterruptedException ie)
+    {
+      LOG.warn("interrupted while closing the output");
+      Thread.currentThread().interrupt();
+    }
+    _decoders.shutdown();
+  }
+
+  /** Statistics are not mixed into compressed or binary output */
+  @Override
+  protected OutputStream getStatsOut()
+  {
+    return _pconf.isCompress() || OutputFormat.AVRO_CONTAINER == _pconf.getOutputFormat() ?
+        System.err : _out;
+  }
+
+  /** Raw payloads of consecutive events copied out of the event buffer */
+  private static class EventBatch
+  {
+    private final long _startTs = System.currentTimeMillis();
+    private final int[] _ends;
+    private final boolean[] _compressed;
+    private final Schema[] _writerSchemas;
+    private final Schema[] _readerSchemas;
+    private byte[] _data;
+    private int _size = 0;
+    private int _eventsNum = 0;
+
+    EventBatch(int maxEventsNum, int dataSizeHint)
+    {
+      _ends = new int[maxEventsNum];
+      _compressed = new boolean[maxEventsNum];
+      _writerSchemas = new Schema[maxEventsNum];
+      _readerSchemas = new Schema[maxEventsNum];
+      _data = new byte[Math.max(1024, dataSizeHint)];
+    }
+
+    void add(ByteBuffer value, boolean compressed, Schema writerSchema, Schema readerSchema)
+    {
+      int len = value.remaining();
+      if (_size + len > _data.length)
+      {
+        byte[] newData = new byte[Math.max(_size + len, 2 * _data.length)];
+        System.arraycopy(_data, 0, newData, 0, _size);
+        _data = newData;
+      }
+      value.get(_data, _size, len);
+      _size += len;
+      _ends[_eventsNum] = _size;
+      _compressed[_eventsNum] = compressed;
+      _writerSchemas[_eventsNum] = writerSchema;
+      _readerSchemas[_eventsNum] = readerSchema;
+      ++_eventsNum;
+    }
+  }
+
+  /** The output of a batch: the encoded JSON or the records to append to the container file */
+  private static class DecodedBatch
+  {
+    private ByteArrayOutputStream _json;
+    private List<GenericRecord> _records;
+  }
+
+  /** Per decode thread state; Avro readers, writers and decoders are not thread-safe */
+  private static class DecoderState
+  {
+    private final IdentityHashMap<Schema, GenericDatumReader<GenericRecord>> _readers =
+        new IdentityHashMap<Schema, GenericDatumReader<GenericRecord>>();
+    private final IdentityHashMap<Schema, GenericDatumWriter<GenericRecord>> _jsonWriters =
+        new IdentityHashMap<Schema, GenericDatumWriter<GenericRecord>>();
+    private BinaryDecoder _decoder;
+    private int _jsonSizeHint = 64 * 1024;
+  }
+
+  private static final ThreadLocal<DecoderState> DECODER_STATE = new ThreadLocal<DecoderState>()
+  {
+    @Override
+    protected DecoderState initialValue()
+    {
+      return new DecoderState();
+    }
+  };
+
+  private class DecodeTask implements Callable<DecodedBatch>
+  {
+    private final EventBatch _batch;
+
+    DecodeTask(EventBatch batch)
+    {
+      _batch = batch;
+    }
+
+    @Override
+    public DecodedBatch call() throws IOException
+    {
+      DecoderState state = DECODER_STATE.get();
+      DecodedBatch result = new DecodedBatch();
+      boolean json = OutputFormat.AVRO_JSON == _pconf.getOutputFormat();
+      IdentityHashMap<Schema, JsonEncoder> jsonEncoders = null;
+      if (json)
+      {
+        result._json = new ByteArrayOutputStream(state._jsonSizeHint);
+        jsonEncoders = new IdentityHashMap<Schema, JsonEncoder>(4);
+      }
+      else
+      {
+        result._records = new ArrayList<GenericRecord>(_batch._eventsNum);
+      }
+
+      int start = 0;
+      for (int i = 0; i < _batch._eventsNum; start = _batch._ends[i], ++i)
+      {
+        Schema writerSchema = _batch._writerSchemas[i];
+        Schema readerSchema = _batch._readerSchemas[i];
+        GenericRecord record = null;
+        try
+        {
+          GenericDatumReader<GenericRecord> reader = state._readers.get(writerSchema);
+          if (null == reader)
+          {
+            reader = new GenericDatumReader<GenericRecord>(writerSchema, readerSchema);
+            state._readers.put(writerSchema, reader);
+          }
+          if (_batch._compressed[i])
+          {
+            byte[] payload =
+                DbusEventPayloadCompressor.decompress(ByteBuffer.wrap(_batch._data, start,
+                                                                      _batch._ends[i] - start),
+                                                      _payloadDictionaries);
+            state._decoder = DecoderFactory.defaultFactory().createBinaryDecoder(payload,
+                                                                                 state._decoder);
+          }
+          else
+          {
+            state._decoder = DecoderFactory.defaultFactory().createBinaryDecoder(
+                _batch._data, start, _batch._ends[i] - start, state._decoder);
+          }
+          record = reader.read(null, state._decoder);
+        }
+        catch (RuntimeException e)  // ArrayIndexOutOfBoundsException, AvroRuntimeException, ...
+        {
+          // fail the batch so that the event is not skipped by the next checkpoint
+          throw new IOException("event decoding error: " + e.getMessage(), e);
+        }
+
+        if (json)
+        {
+          JsonEncoder jsonEnc = jsonEncoders.get(readerSchema);
+          if (null == jsonEnc)
+          {
+            jsonEnc = new JsonEncoder(readerSchema, result._json);
+            jsonEncoders.put(readerSchema, jsonEnc);
+          }
+          GenericDatumWriter<GenericRecord> datumWriter = state._jsonWriters.get(readerSchema);
+          if (null == datumWriter)
+          {
+            datumWriter = new GenericDatumWriter<GenericRecord>(readerSchema);
+            state._jsonWriters.put(readerSchema, datumWriter);
+          }
+          datumWriter.write(record, jsonEnc);
+          jsonEnc.flush();
+          result._json.write('\n');
+        }
+        else
+        {
+          result._records.add(record);
+        }
+      }
+      if (json)
+      {
+        state._jsonSizeHint = Math.max(state._jsonSizeHint, result._json.size());
+      }
+
+      return result;
+    }
+  }
+
+  /** Writes the decoded batches in dispatch order */
+  private class WriterThread extends Thread
+  {
+    private OutputStream _dataOut;
+    private DataFileWriter<GenericRecord> _fileWriter;
+    private Schema _fileSchema;
+
+    WriterThread()
+    {
+      super("dtail-writer");
+      setDaemon(true);
+    }
+
+    @Override
+    public void run()
+    {
+      OutputStream bufferedOut = new BufferedOutputStream(_out, _pconf.getOutputBufferSize());
+      try
+      {
+        if (OutputFormat.AVRO_JSON == _pconf.getOutputFormat() && _pconf.isCompress())
+        {
+          _dataOut = new GZIPOutputStream(bufferedOut, 64 * 1024);
+        }
+        else
+        {
+          _dataOut = bufferedOut;
+        }
+      }
+      catch (IOException ioe)
+      {
+        failed(ioe);
+      }
+
+      // after a failure, keep consuming the batches so that the dispatcher never blocks
+      while (true)
+      {
+        Future<DecodedBatch> next = null;
+        try
+        {
+          next = _pending.take();
+        }
+        catch (InterruptedException ie)
+        {
+          LOG.warn("dtail writer interrupted");
+          failed(ie);
+          break;
+        }
+        if (_endOfStream == next) break;
+
+        if (null == _writeError)
+        {
+          try
+          {
+            DecodedBatch batch = next.get();
+            if (null != batch._json)
+            {
+              batch._json.writeTo(_dataOut);
+            }
+            else
+            {
+              appendRecords(batch._records);
+            }
+            // keep the output current for interactive tailing; large writes otherwise
+            if (_pending.isEmpty()) flush();
+          }
+          catch (InterruptedException ie)
+          {
+            LOG.warn("dtail writer interrupted");
+            failed(ie);
+          }
+          catch (ExecutionException ee)
+          {
+            failed(ee.getCause());
+          }
+          catch (IOException ioe)
+          {
+            failed(ioe);
+          }
+          catch (RuntimeException re)
+          {
+            failed(re);
+          }
+        }
+        batchWritten();
+      }
+
+      if (null == _writeError)
+      {
+        try
+        {
+          if (null != _fileWriter)
+          {
+            _fileWriter.close();
+          }
+          else
+          {
+            _dataOut.close();
+          }
+        }
+        catch (IOException ioe)
+        {
+          LOG.error("unable to close the output: " + ioe.getMessage(), ioe);
+        }
+      }
+    }
+
+    private void failed(Throwable t)
+    {
+      LOG.error("event write error: " + t.getMessage(), t);
+      writeFailed(t);
+      LOG.info("Dtail shutting down ...");
+      _client.shutdownAsynchronously();
+    }
+
+    private void appendRecords(List<GenericRecord> records) throws IOException
+    {
+      for (GenericRecord record: records)
+      {
+        if (null == _fileWriter)
+        {
+          _fileSchema = record.getSchema();
+          _fileWriter = new DataFileWriter<GenericRecord>(new GenericDatumWriter<GenericRecord>(_fileSchema));
+          if (_pconf.isCompress())
+          {
+            _fileWriter.setCodec(CodecFactory.deflateCodec(6));
+          }
+          _fileWriter.create(_fileSchema, _dataOut);
+        }
+        else if (_fileSchema != record.getSchema())
+        {
+          throw new IOException("an Avro container file supports a single schema; unexpected: " +
+                                record.getSchema().getFullName());
+        }
+        _fileWriter.append(record);
+      }
+    }
+
+    private void flush() throws IOException
+    {
+      if (null != _fileWriter)
+      {
+        _fileWriter.flush();
+      }
+      else
+      {
+        _dataOut.flush();
+      }
+    }
+  }
+}
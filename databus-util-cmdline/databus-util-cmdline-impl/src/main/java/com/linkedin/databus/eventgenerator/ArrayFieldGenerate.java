@@ -29,6 +29,16 @@ public class ArrayFieldGenerate extends SchemaFiller {
   
   private static int maxArrayLength = 10;
 
+  public static int getMaxArrayLength()
+  {
+    return maxArrayLength;
+  }
+
+  public static void setMaxArrayLength(int maxArrayLength)
+  {
+    ArrayFieldGenerate.maxArrayLength = maxArrayLength;
+  }
+
   public ArrayFieldGenerate(Field field) {
     super(field);
   }
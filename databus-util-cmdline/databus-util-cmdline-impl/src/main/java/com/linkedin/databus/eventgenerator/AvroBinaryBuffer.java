@@ -0,0 +1,155 @@
+package com.linkedin.databus.eventgenerator;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.nio.ByteBuffer;
+
+
+/*
+ * A growable byte array with the Avro binary encoding primitives. It is meant to be reused across
+ * many records to avoid the per-record allocations of a BinaryEncoder over a ByteArrayOutputStream.
+ * Not thread-safe.
+ */
+public class AvroBinaryBuffer
+{
+  private byte[] _buf;
+  private int _size;
+
+  public AvroBinaryBuffer(int initialCapacity)
+  {
+    _buf = new byte[Math.max(16, initialCapacity)];
+    _size = 0;
+  }
+
+  public void reset()
+  {
+    _size = 0;
+  }
+
+  public int size()
+  {
+    return _size;
+  }
+
+  /* @return the backing array; valid up to {@link #size()} until the next write */
+  public byte[] array()
+  {
+    return _buf;
+  }
+
+  /* @return a buffer positioned over the bytes in [start, end) of the backing array (no copy) */
+  public ByteBuffer wrap(int start, int end)
+  {
+    return ByteBuffer.wrap(_buf, start, end - start);
+  }
+
+  private void ensureCapacity(int extra)
+  {
+    int required = _size + extra;
+    if (required > _buf.length)
+    {
+      byte[] newBuf = new byte[Math.max(required, _buf.length * 2)];
+      System.arraycopy(_buf, 0, newBuf, 0, _size);
+      _buf = newBuf;
+    }
+  }
+
+  public void writeBoolean(boolean b)
+  {
+    ensureCapacity(1);
+    _buf[_size++] = (byte)(b ? 1 : 0);
+  }
+
+  public void writeInt(int n)
+  {
+    writeLong(n);
+  }
+
+  /* zig-zag variable-length encoding */
+  public void writeLong(long n)
+  {
+    ensureCapacity(10);
+    long z = (n << 1) ^ (n >> 63);
+    while (0 != (z & ~0x7FL))
+    {
+      _buf[_size++] = (byte)((z & 0x7F) | 0x80);
+      z >>>= 7;
+    }
+    _buf[_size++] = (byte)z;
+  }
+
+  public void writeFloat(float f)
+  {
+    ensureCapacity(4);
+    int bits = Float.floatToRawIntBits(f);
+    for (int i = 0; i < 4; ++i, bits >>>= 8)
+    {
+      _buf[_size++] = (byte)bits;
+    }
+  }
+
+  public void writeDouble(double d)
+  {
+    ensureCapacity(8);
+    long bits = Double.doubleToRawLongBits(d);
+    for (int i = 0; i < 8; ++i, bits >>>= 8)
+    {
+      _buf[_size++] = (byte)bits;
+    }
+  }
+
+  /* Writes len random bytes without a length prefix (for fixed) */
+  public void writeRandomFixed(SplitMixRandom rng, int len)
+  {
+    ensureCapacity(len);
+    rng.nextBytes(_buf, _size, len);
+    _size += len;
+  }
+
+  /* Writes len random bytes with a length prefix (for bytes) */
+  public void writeRandomBytes(SplitMixRandom rng, int len)
+  {
+    writeLong(len);
+    writeRandomFixed(rng, len);
+  }
+
+  /* Writes a random ASCII string of len characters with a length prefix */
+  public void writeRandomString(SplitMixRandom rng, int len)
+  {
+    writeLong(len);
+    ensureCapacity(len);
+    for (int i = 0; i < len; ++i)
+    {
+      _buf[_size++] = (byte)rng.nextChar();
+    }
+  }
+
+  /* Writes a string with a length prefix; the string must be ASCII */
+  public void writeAsciiString(String s)
+  {
+    int len = s.length();
+    writeLong(len);
+    ensureCapacity(len);
+    for (int i = 0; i < len; ++i)
+    {
+      _buf[_size++] = (byte)s.charAt(i);
+    }
+  }
+}
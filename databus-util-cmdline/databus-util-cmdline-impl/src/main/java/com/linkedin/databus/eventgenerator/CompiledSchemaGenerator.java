@@ -0,0 +1,347 @@
+package com.linkedin.databus.eventgenerator;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.avro.Schema;
+import org.apache.avro.Schema.Field;
+import org.apache.log4j.Logger;
+
+
+/*
+ * Generates random data for an Avro schema directly in the Avro binary encoding.
+ *
+ * Unlike {@link SchemaFiller}, which looks up a filler for each field of each record and builds a
+ * GenericRecord, the schema is compiled once into a tree of generators. Generating a record is then
+ * a walk of the tree which writes into a reusable {@link AvroBinaryBuffer}. The tree is immutable,
+ * so a single instance can be shared by any number of threads, each with its own
+ * {@link SplitMixRandom} and buffer.
+ *
+ * The generated values follow the same rules as the *FieldGenerate classes (value ranges, string,
+ * bytes, array and map lengths, the first non-null union branch). The limits are read at compile
+ * time.
+ */
+public class CompiledSchemaGenerator
+{
+  public final static String MODULE = CompiledSchemaGenerator.class.getName();
+  public final static Logger LOG = Logger.getLogger(MODULE);
+
+  private final Schema _schema;
+  private final Node _root;
+
+  public CompiledSchemaGenerator(Schema schema) throws UnknownTypeException
+  {
+    _schema = schema;
+    _root = compile(schema, new HashSet<String>());
+  }
+
+  public CompiledSchemaGenerator(String schema) throws UnknownTypeException
+  {
+    this(Schema.parse(schema));
+  }
+
+  public Schema getSchema()
+  {
+    return _schema;
+  }
+
+  /*
+   * Appends the binary encoding of a random datum to the buffer
+   * @param rng   the generator thread's random generator
+   * @param out   the buffer to append to
+   */
+  public void generate(SplitMixRandom rng, AvroBinaryBuffer out)
+  {
+    _root.write(rng, out);
+  }
+
+  private static Node compile(Schema schema, Set<String> recordsInProgress) throws UnknownTypeException
+  {
+    switch (schema.getType())
+    {
+    case NULL: return new NullNode();
+    case BOOLEAN: return new BooleanNode();
+    case INT: return new IntNode(IntegerFieldGenerate.getMinIntLength(),
+                                 IntegerFieldGenerate.getMaxIntLength());
+    case LONG: return new LongNode();
+    case FLOAT: return new FloatNode();
+    case DOUBLE: return new DoubleNode();
+    case STRING: return new StringNode(StringFieldGenerate.getMinStringLength(),
+                                       StringFieldGenerate.getMaxStringLength());
+    case BYTES: return new BytesNode(BytesFieldGenerate.getMaxBytesLength());
+    case FIXED: return new FixedNode(schema.getFixedSize());
+    case ENUM: return new EnumNode(schema.getEnumSymbols().size());
+    case ARRAY: return new ArrayNode(ArrayFieldGenerate.getMaxArrayLength(),
+                                     compile(schema.getElementType(), recordsInProgress));
+    case MAP: return new MapNode(MapFieldGenerate.getMaxNumberOfMapFields(),
+                                 compile(schema.getValueType(), recordsInProgress));
+    case UNION:
+    {
+      List<Schema> branches = schema.getTypes();
+      int idx = 0;
+      while (idx < branches.size() - 1 && Schema.Type.NULL == branches.get(idx).getType()) ++idx;
+      return new UnionNode(idx, compile(branches.get(idx), recordsInProgress));
+    }
+    case RECORD:
+    {
+      if (!recordsInProgress.add(schema.getFullName()))
+      {
+        LOG.error("recursive schemas are not supported: " + schema.getFullName());
+        throw new UnknownTypeException();
+      }
+      List<Field> fields = schema.getFields();
+      Node[] fieldNodes = new Node[fields.size()];
+      for (int i = 0; i < fieldNodes.length; ++i)
+      {
+        fieldNodes[i] = compile(fields.get(i).schema(), recordsInProgress);
+      }
+      recordsInProgress.remove(schema.getFullName());
+      return new RecordNode(fieldNodes);
+    }
+    default: throw new UnknownTypeException();
+    }
+  }
+
+  private static abstract class Node
+  {
+    abstract void write(SplitMixRandom rng, AvroBinaryBuffer out);
+  }
+
+  private static class NullNode extends Node
+  {
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+    }
+  }
+
+  private static class BooleanNode extends Node
+  {
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      out.writeBoolean(rng.nextBoolean());
+    }
+  }
+
+  private static class IntNode extends Node
+  {
+    private final int _min;
+    private final int _max;
+
+    IntNode(int min, int max)
+    {
+      _min = min;
+      _max = max;
+    }
+
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      out.writeInt(rng.getNextInt(_min, _max));
+    }
+  }
+
+  private static class LongNode extends Node
+  {
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      out.writeLong(rng.getNextLong());
+    }
+  }
+
+  private static class FloatNode extends Node
+  {
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      out.writeFloat(rng.nextFloat());
+    }
+  }
+
+  private static class DoubleNode extends Node
+  {
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      out.writeDouble(rng.nextDouble());
+    }
+  }
+
+  private static class StringNode extends Node
+  {
+    private final int _minLen;
+    private final int _maxLen;
+
+    StringNode(int minLen, int maxLen)
+    {
+      _minLen = minLen;
+      _maxLen = maxLen;
+    }
+
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      out.writeRandomString(rng, rng.getNextInt(_minLen, _maxLen));
+    }
+  }
+
+  private static class BytesNode extends Node
+  {
+    private final int _maxLen;
+
+    BytesNode(int maxLen)
+    {
+      _maxLen = maxLen;
+    }
+
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      out.writeRandomBytes(rng, rng.getNextInt(0, _maxLen));
+    }
+  }
+
+  private static class FixedNode extends Node
+  {
+    private final int _size;
+
+    FixedNode(int size)
+    {
+      _size = size;
+    }
+
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      out.writeRandomFixed(rng, _size);
+    }
+  }
+
+  private static class EnumNode extends Node
+  {
+    private final int _symbolsNum;
+
+    EnumNode(int symbolsNum)
+    {
+      _symbolsNum = symbolsNum;
+    }
+
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      out.writeInt(rng.nextInt(_symbolsNum));
+    }
+  }
+
+  private static class UnionNode extends Node
+  {
+    private final int _branchIdx;
+    private final Node _branch;
+
+    UnionNode(int branchIdx, Node branch)
+    {
+      _branchIdx = branchIdx;
+      _branch = branch;
+    }
+
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      out.writeInt(_branchIdx);
+      _branch.write(rng, out);
+    }
+  }
+
+  private static class ArrayNode extends Node
+  {
+    private final int _maxLen;
+    private final Node _item;
+
+    ArrayNode(int maxLen, Node item)
+    {
+      _maxLen = maxLen;
+      _item = item;
+    }
+
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      int count = rng.nextInt(_maxLen);
+      if (count > 0)
+      {
+        out.writeLong(count);
+        for (int i = 0; i < count; ++i) _item.write(rng, out);
+      }
+      out.writeLong(0);
+    }
+  }
+
+  private static class MapNode extends Node
+  {
+    private final int _maxLen;
+    private final Node _value;
+    private final String[] _keys;
+
+    MapNode(int maxLen, Node value)
+    {
+      _maxLen = maxLen;
+      _value = value;
+      _keys = new String[maxLen];
+      for (int i = 0; i < maxLen; ++i) _keys[i] = "key" + i;
+    }
+
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      int count = rng.nextInt(_maxLen);
+      if (count > 0)
+      {
+        out.writeLong(count);
+        for (int i = 0; i < count; ++i)
+        {
+          out.writeAsciiString(_keys[i]);
+          _value.write(rng, out);
+        }
+      }
+      out.writeLong(0);
+    }
+  }
+
+  private static class RecordNode extends Node
+  {
+    private final Node[] _fields;
+
+    RecordNode(Node[] fields)
+    {
+      _fields = fields;
+    }
+
+    @Override
+    void write(SplitMixRandom rng, AvroBinaryBuffer out)
+    {
+      for (Node field: _fields) field.write(rng, out);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.linkedin.databus.eventgenerator;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+/*
+ * Generates event keys with a configurable skew. Not thread-safe; each generator thread has its own
+ * instance.
+ */
+public class KeyGenerator
+{
+  public static enum Distribution
+  {
+    /** all keys are equally likely */
+    UNIFORM,
+    /** the key ranks follow a Zipf distribution; the ranks are scattered over the key space */
+    ZIPFIAN,
+    /** a fraction of the traffic goes to a small set of hot keys */
+    HOTSET
+  }
+
+  private final Distribution _distribution;
+  private final long _keysNum;
+  private final SplitMixRandom _rng;
+
+  // zipfian state; see Gray et al., "Quickly Generating Billion-Record Synthetic Databases"
+  private final double _theta;
+  private final double _zetan;
+  private final double _alpha;
+  private final double _eta;
+
+  // hot-set state
+  private final long _hotKeysNum;
+  private final double _hotTrafficFraction;
+
+  /**
+   * @param keysNum               the number of distinct keys
+   * @param zipfExponent          the skew of the ZIPFIAN distribution; must be in (0, 1)
+   * @param hotKeysFraction       the fraction of the keys which are hot for HOTSET
+   * @param hotTrafficFraction    the fraction of the events with hot keys for HOTSET
+   */
+  public KeyGenerator(Distribution distribution, long keysNum, double zipfExponent,
+                      double hotKeysFraction, double hotTrafficFraction, long seed)
+  {
+    _distribution = distribution;
+    _keysNum = keysNum;
+    _rng = new SplitMixRandom(seed);
+
+    if (Distribution.ZIPFIAN == distribution)
+    {
+      _theta = zipfExponent;
+      _zetan = zeta(keysNum, zipfExponent);
+      _alpha = 1.0 / (1.0 - zipfExponent);
+      _eta = (1.0 - Math.pow(2.0 / keysNum, 1.0 - zipfExponent)) /
+             (1.0 - zeta(2, zipfExponent) / _zetan);
+    }
+    else
+    {
+      _theta = _zetan = _alpha = _eta = 0.0;
+    }
+
+    _hotKeysNum = Math.max(1, (long)(keysNum * hotKeysFraction));
+    _hotTrafficFraction = hotTrafficFraction;
+  }
+
+  private static double zeta(long n, double theta)
+  {
+    double sum = 0.0;
+    for (long i = 1; i <= n; ++i)
+    {
+      sum += 1.0 / Math.pow(i, theta);
+    }
+    return sum;
+  }
+
+  /** Maps a rank to a key so that the popular keys are not clustered at the start of the key space */
+  private long scatter(long rank)
+  {
+    //FNV-1a of the rank bytes
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < 8; ++i)
+    {
+      h ^= (rank >>> (8 * i)) & 0xff;
+      h *= 0x100000001b3L;
+    }
+    return (h & Long.MAX_VALUE) % _keysNum;
+  }
+
+  public long next()
+  {
+    switch (_distribution)
+    {
+    case ZIPFIAN:
+    {
+      double u = _rng.nextDouble();
+      double uz = u * _zetan;
+      long rank;
+      if (uz < 1.0) rank = 0;
+      else if (uz < 1.0 + Math.pow(0.5, _theta)) rank = 1;
+      else rank = Math.min(_keysNum - 1, (long)(_keysNum * Math.pow(_eta * u - _eta + 1, _alpha)));
+      return scatter(rank);
+    }
+    case HOTSET:
+    {
+      if (_hotKeysNum >= _keysNum || _rng.nextDouble() < _hotTrafficFraction)
+      {
+        return scatter(_rng.nextLong(_hotKeysNum));
+      }
+      return scatter(_hotKeysNum + _rng.nextLong(_keysNum - _hotKeysNum));
+    }
+    default: return _rng.nextLong(_keysNum);
+    }
+  }
+
+  public Distribution getDistribution()
+  {
+    return _distribution;
+  }
+
+  public long getKeysNum()
+  {
+    return _keysNum;
+  }
+}
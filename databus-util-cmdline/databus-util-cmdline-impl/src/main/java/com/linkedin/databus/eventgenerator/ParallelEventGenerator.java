@@ -0,0 +1,579 @@
+package com.linkedin.databus.eventgenerator;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.linkedin.databus.core.DbusEventBufferAppendable;
+import com.linkedin.databus.core.DbusEventFactory;
+import com.linkedin.databus.core.DbusEventInfo;
+import com.linkedin.databus.core.DbusEventKey;
+import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
+import com.linkedin.databus.core.util.ConfigBuilder;
+import com.linkedin.databus.core.util.InvalidConfigException;
+
+
+/*
+ * Feeds a {@link DbusEventBufferAppendable} with random events at a target rate.
+ *
+ * The payloads are generated by a pool of threads, each with its own {@link SplitMixRandom},
+ * {@link KeyGenerator} and reusable batch buffers, from a shared {@link CompiledSchemaGenerator}.
+ * Each batch holds the Avro-encoded payloads of a full window back-to-back in a single array. A
+ * single appender thread (the buffer is single-writer) paces the windows and appends the payloads
+ * straight from the batch arrays before returning the batches to their generator threads.
+ */
+public class ParallelEventGenerator
+{
+  public final static String MODULE = ParallelEventGenerator.class.getName();
+  public final static Logger LOG = Logger.getLogger(MODULE);
+
+  /** how far the appender may fall behind its schedule before it stops trying to catch up */
+  private static final long MAX_SCHEDULE_LAG_NS = TimeUnit.SECONDS.toNanos(1);
+  private static final long POLL_TIMEOUT_MS = 100;
+
+  private final StaticConfig _config;
+  private final CompiledSchemaGenerator _schemaGenerator;
+  private final byte[] _schemaId;
+  private final DbusEventBufferAppendable _buffer;
+  private final DbusEventsStatisticsCollector _statsCollector;
+  private final BlockingQueue<EventBatch> _readyBatches;
+
+  private final AtomicLong _eventsNum = new AtomicLong();
+  private final AtomicLong _windowsNum = new AtomicLong();
+  private final AtomicLong _rateMissesNum = new AtomicLong();
+  private final List<Thread> _threads = new ArrayList<Thread>();
+  private volatile boolean _shutdownRequested = false;
+  private volatile long _scn = -1;
+
+  public ParallelEventGenerator(StaticConfig config, CompiledSchemaGenerator schemaGenerator,
+                                byte[] schemaId, DbusEventBufferAppendable buffer,
+                                DbusEventsStatisticsCollector statsCollector)
+  {
+    _config = config;
+    _schemaGenerator = schemaGenerator;
+    _schemaId = schemaId;
+    _buffer = buffer;
+    _statsCollector = statsCollector;
+    _readyBatches = new ArrayBlockingQueue<EventBatch>(config.getThreadsNum() * config.getBatchesPerThread());
+  }
+
+  /*
+   * Starts the generator threads and the appender
+   * @param startScn    the scn of the first window
+   */
+  public synchronized void start(long startScn)
+  {
+    if (!_threads.isEmpty())
+    {
+      LOG.error("event generator already started");
+      return;
+    }
+    _scn = startScn;
+
+    SplitMixRandom seeds = new SplitMixRandom(_config.getSeed());
+    for (int i = 0; i < _config.getThreadsNum(); ++i)
+    {
+      _threads.add(new Thread(new GeneratorWorker(seeds.split(), seeds.nextLong()),
+                              "eventGenerator-" + i));
+    }
+    _threads.add(new Thread(new Appender(), "eventAppender"));
+    for (Thread t: _threads)
+    {
+      t.setDaemon(true);
+      t.start();
+    }
+    LOG.info("started " + _config.getThreadsNum() + " event generator threads; config: " + _config);
+  }
+
+  public synchronized void shutdown()
+  {
+    _shutdownRequested = true;
+    for (Thread t: _threads)
+    {
+      t.interrupt();
+    }
+  }
+
+  public void awaitShutdown() throws InterruptedException
+  {
+    List<Thread> threads;
+    synchronized (this)
+    {
+      threads = new ArrayList<Thread>(_threads);
+    }
+    for (Thread t: threads)
+    {
+      t.join();
+    }
+  }
+
+  public synchronized boolean isRunning()
+  {
+    return !_shutdownRequested && 0 < _threads.size();
+  }
+
+  /** the number of appended events */
+  public long getEventsNum()
+  {
+    return _eventsNum.get();
+  }
+
+  /** the number of appended windows */
+  public long getWindowsNum()
+  {
+    return _windowsNum.get();
+  }
+
+  /** the number of times the appender fell too far behind the target rate */
+  public long getRateMissesNum()
+  {
+    return _rateMissesNum.get();
+  }
+
+  /** the scn of the last appended window or the start scn - 1 */
+  public long getScn()
+  {
+    return _scn - 1;
+  }
+
+  private static class EventBatch
+  {
+    final long[] _keys;
+    final int[] _ends;
+    final AvroBinaryBuffer _data;
+    final BlockingQueue<EventBatch> _owner;
+
+    EventBatch(int eventsNum, int initialDataSize, BlockingQueue<EventBatch> owner)
+    {
+      _keys = new long[eventsNum];
+      _ends = new int[eventsNum];
+      _data = new AvroBinaryBuffer(initialDataSize);
+      _owner = owner;
+    }
+  }
+
+  private class GeneratorWorker implements Runnable
+  {
+    private final SplitMixRandom _rng;
+    private final KeyGenerator _keyGenerator;
+    private final BlockingQueue<EventBatch> _freeBatches;
+
+    GeneratorWorker(SplitMixRandom rng, long keySeed)
+    {
+      _rng = rng;
+      _keyGenerator = new KeyGenerator(_config.getKeyDistribution(), _config.getKeysNum(),
+                                       _config.getZipfExponent(), _config.getHotKeysFraction(),
+                                       _config.getHotTrafficFraction(), keySeed);
+      _freeBatches = new ArrayBlockingQueue<EventBatch>(_config.getBatchesPerThread());
+      for (int i = 0; i < _config.getBatchesPerThread(); ++i)
+      {
+        _freeBatches.add(new EventBatch(_config.getWindowSize(), 64 * _config.getWindowSize(),
+                                        _freeBatches));
+      }
+    }
+
+    @Override
+    public void run()
+    {
+      try
+      {
+        while (!_shutdownRequested)
+        {
+          EventBatch batch = _freeBatches.take();
+          batch._data.reset();
+          for (int i = 0; i < batch._keys.length; ++i)
+          {
+            batch._keys[i] = _keyGenerator.next();
+            _schemaGenerator.generate(_rng, batch._data);
+            batch._ends[i] = batch._data.size();
+          }
+          _readyBatches.put(batch);
+        }
+      }
+      catch (InterruptedException e)
+      {
+        //shutdown
+      }
+    }
+  }
+
+  private class Appender implements Runnable
+  {
+    @Override
+    public void run()
+    {
+      _buffer.start(_scn - 1);
+      long windowIntervalNs = 0 < _config.getEventRatePerSec() ?
+          TimeUnit.SECONDS.toNanos(_config.getWindowSize()) / _config.getEventRatePerSec() : 0;
+      long nextWindowNs = System.nanoTime();
+      try
+      {
+        while (!_shutdownRequested)
+        {
+          EventBatch batch = _readyBatches.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+          if (null == batch) continue;
+
+          appendWindow(batch);
+          batch._owner.put(batch);
+
+          if (0 < windowIntervalNs)
+          {
+            nextWindowNs += windowIntervalNs;
+            long sleepNs = nextWindowNs - System.nanoTime();
+            if (sleepNs > 0)
+            {
+              TimeUnit.NANOSECONDS.sleep(sleepNs);
+            }
+            else if (-sleepNs > MAX_SCHEDULE_LAG_NS)
+            {
+              //the target rate cannot be sustained; do not try to make up for the lost time
+              _rateMissesNum.incrementAndGet();
+              nextWindowNs = System.nanoTime();
+            }
+          }
+        }
+      }
+      catch (InterruptedException e)
+      {
+        //shutdown
+      }
+      LOG.info("event appender stopped; windows: " + _windowsNum.get() + "; events: " + _eventsNum.get());
+    }
+
+    private void appendWindow(EventBatch batch)
+    {
+      _buffer.startEvents();
+      int start = 0;
+      for (int i = 0; i < batch._keys.length; ++i)
+      {
+        DbusEventInfo eventInfo = new DbusEventInfo(null, 0L, _config.getPhysicalPartitionId(),
+                                                    (short)0, System.currentTimeMillis() * 1000000L,
+                                                    _config.getSrcId(), _schemaId, null, false,
+                                                    false);
+        eventInfo.setEventSerializationVersion(DbusEventFactory.DBUS_EVENT_V1);
+        eventInfo.setValueByteBuffer(batch._data.wrap(start, batch._ends[i]));
+        _buffer.appendEvent(new DbusEventKey(batch._keys[i]), eventInfo, _statsCollector);
+        start = batch._ends[i];
+      }
+      _buffer.endEvents(_scn, _statsCollector);
+      ++_scn;
+      _eventsNum.addAndGet(batch._keys.length);
+      _windowsNum.incrementAndGet();
+    }
+  }
+
+  public static class StaticConfig
+  {
+    private final int _threadsNum;
+    private final int _batchesPerThread;
+    private final int _eventRatePerSec;
+    private final int _windowSize;
+    private final short _srcId;
+    private final short _pPartitionId;
+    private final KeyGenerator.Distribution _keyDistribution;
+    private final long _keysNum;
+    private final double _zipfExponent;
+    private final double _hotKeysFraction;
+    private final double _hotTrafficFraction;
+    private final long _seed;
+
+    public StaticConfig(int threadsNum, int batchesPerThread, int eventRatePerSec, int windowSize,
+                        short srcId, short pPartitionId, KeyGenerator.Distribution keyDistribution,
+                        long keysNum, double zipfExponent, double hotKeysFraction,
+                        double hotTrafficFraction, long seed)
+    {
+      _threadsNum = threadsNum;
+      _batchesPerThread = batchesPerThread;
+      _eventRatePerSec = eventRatePerSec;
+      _windowSize = windowSize;
+      _srcId = srcId;
+      _pPartitionId = pPartitionId;
+      _keyDistribution = keyDistribution;
+      _keysNum = keysNum;
+      _zipfExponent = zipfExponent;
+      _hotKeysFraction = hotKeysFraction;
+      _hotTrafficFraction = hotTrafficFraction;
+      _seed = seed;
+    }
+
+    /** The number of payload generator threads */
+    public int getThreadsNum()
+    {
+      return _threadsNum;
+    }
+
+    /** The number of window batches each generator thread can have in flight */
+    public int getBatchesPerThread()
+    {
+      return _batchesPerThread;
+    }
+
+    /** The target append rate; 0 means as fast as possible */
+    public int getEventRatePerSec()
+    {
+      return _eventRatePerSec;
+    }
+
+    /** The number of events per window */
+    public int getWindowSize()
+    {
+      return _windowSize;
+    }
+
+    /** The logical source id of the events */
+    public short getSrcId()
+    {
+      return _srcId;
+    }
+
+    /** The physical partition id of the events */
+    public short getPhysicalPartitionId()
+    {
+      return _pPartitionId;
+    }
+
+    public KeyGenerator.Distribution getKeyDistribution()
+    {
+      return _keyDistribution;
+    }
+
+    /** The number of distinct keys */
+    public long getKeysNum()
+    {
+      return _keysNum;
+    }
+
+    /** The skew of the ZIPFIAN key distribution; in (0, 1) */
+    public double getZipfExponent()
+    {
+      return _zipfExponent;
+    }
+
+    /** The fraction of the keys which are hot for the HOTSET key distribution */
+    public double getHotKeysFraction()
+    {
+      return _hotKeysFraction;
+    }
+
+    /** The fraction of the events with hot keys for the HOTSET key distribution */
+    public double getHotTrafficFraction()
+    {
+      return _hotTrafficFraction;
+    }
+
+    /** The seed from which the seeds of all generator threads are derived */
+    public long getSeed()
+    {
+      return _seed;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "{threadsNum:" + _threadsNum + ", batchesPerThread:" + _batchesPerThread +
+             ", eventRatePerSec:" + _eventRatePerSec + ", windowSize:" + _windowSize +
+             ", srcId:" + _srcId + ", pPartitionId:" + _pPartitionId +
+             ", keyDistribution:" + _keyDistribution + ", keysNum:" + _keysNum +
+             ", seed:" + _seed + "}";
+    }
+  }
+
+  public static class Config implements ConfigBuilder<StaticConfig>
+  {
+    private int _threadsNum = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private int _batchesPerThread = 2;
+    private int _eventRatePerSec = 10000;
+    private int _windowSize = 100;
+    private short _srcId = 1;
+    private short _pPartitionId = 0;
+    private String _keyDistribution = KeyGenerator.Distribution.UNIFORM.toString();
+    private long _keysNum = 1000000;
+    private double _zipfExponent = 0.99;
+    private double _hotKeysFraction = 0.01;
+    private double _hotTrafficFraction = 0.9;
+    private long _seed = System.currentTimeMillis();
+
+    @Override
+    public StaticConfig build() throws InvalidConfigException
+    {
+      KeyGenerator.Distribution keyDistribution = null;
+      try
+      {
+        keyDistribution = KeyGenerator.Distribution.valueOf(_keyDistribution);
+      }
+      catch (IllegalArgumentException e)
+      {
+        throw new InvalidConfigException("invalid keyDistribution:" + _keyDistribution);
+      }
+      if (0 >= _threadsNum) throw new InvalidConfigException("invalid threadsNum:" + _threadsNum);
+      if (0 >= _batchesPerThread)
+      {
+        throw new InvalidConfigException("invalid batchesPerThread:" + _batchesPerThread);
+      }
+      if (0 > _eventRatePerSec) throw new InvalidConfigException("invalid eventRatePerSec:" + _eventRatePerSec);
+      if (0 >= _windowSize) throw new InvalidConfigException("invalid windowSize:" + _windowSize);
+      if (0 >= _keysNum) throw new InvalidConfigException("invalid keysNum:" + _keysNum);
+      if (KeyGenerator.Distribution.ZIPFIAN == keyDistribution &&
+          (0.0 >= _zipfExponent || 1.0 <= _zipfExponent))
+      {
+        throw new InvalidConfigException("invalid zipfExponent:" + _zipfExponent);
+      }
+      if (0.0 > _hotKeysFraction || 1.0 < _hotKeysFraction)
+      {
+        throw new InvalidConfigException("invalid hotKeysFraction:" + _hotKeysFraction);
+      }
+      if (0.0 > _hotTrafficFraction || 1.0 < _hotTrafficFraction)
+      {
+        throw new InvalidConfigException("invalid hotTrafficFraction:" + _hotTrafficFraction);
+      }
+
+      return new StaticConfig(_threadsNum, _batchesPerThread, _eventRatePerSec, _windowSize, _srcId,
+                              _pPartitionId, keyDistribution, _keysNum, _zipfExponent,
+                              _hotKeysFraction, _hotTrafficFraction, _seed);
+    }
+
+    public int getThreadsNum()
+    {
+      return _threadsNum;
+    }
+
+    public void setThreadsNum(int threadsNum)
+    {
+      _threadsNum = threadsNum;
+    }
+
+    public int getBatchesPerThread()
+    {
+      return _batchesPerThread;
+    }
+
+    public void setBatchesPerThread(int batchesPerThread)
+    {
+      _batchesPerThread = batchesPerThread;
+    }
+
+    public int getEventRatePerSec()
+    {
+      return _eventRatePerSec;
+    }
+
+    public void setEventRatePerSec(int eventRatePerSec)
+    {
+      _eventRatePerSec = eventRatePerSec;
+    }
+
+    public int getWindowSize()
+    {
+      return _windowSize;
+    }
+
+    public void setWindowSize(int windowSize)
+    {
+      _windowSize = windowSize;
+    }
+
+    public short getSrcId()
+    {
+      return _srcId;
+    }
+
+    public void setSrcId(short srcId)
+    {
+      _srcId = srcId;
+    }
+
+    public short getPhysicalPartitionId()
+    {
+      return _pPartitionId;
+    }
+
+    public void setPhysicalPartitionId(short pPartitionId)
+    {
+      _pPartitionId = pPartitionId;
+    }
+
+    public String getKeyDistribution()
+    {
+      return _keyDistribution;
+    }
+
+    public void setKeyDistribution(String keyDistribution)
+    {
+      _keyDistribution = keyDistribution;
+    }
+
+    public long getKeysNum()
+    {
+      return _keysNum;
+    }
+
+    public void setKeysNum(long keysNum)
+    {
+      _keysNum = keysNum;
+    }
+
+    public double getZipfExponent()
+    {
+      return _zipfExponent;
+    }
+
+    public void setZipfExponent(double zipfExponent)
+    {
+      _zipfExponent = zipfExponent;
+    }
+
+    public double getHotKeysFraction()
+    {
+      return _hotKeysFraction;
+    }
+
+    public void setHotKeysFraction(double hotKeysFraction)
+    {
+      _hotKeysFraction = hotKeysFraction;
+    }
+
+    public double getHotTrafficFraction()
+    {
+      return _hotTrafficFraction;
+    }
+
+    public void setHotTrafficFraction(double hotTrafficFraction)
+    {
+      _hotTrafficFraction = hotTrafficFraction;
+    }
+
+    public long getSeed()
+    {
+      return _seed;
+    }
+
+    public void setSeed(long seed)
+    {
+      _seed = seed;
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package com.linkedin.databus.eventgenerator;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+/*
+ * A fast, non-synchronized and splittable random generator based on the SplitMix64 algorithm.
+ * Unlike java.util.Random, it does no CAS per call, so each generator thread should get its own
+ * instance through {@link #split()}. The instances created by split() produce statistically
+ * independent streams.
+ *
+ * The class also implements {@link RandomDataGenerator}, so it can be plugged into the existing
+ * {@link SchemaFiller}s.
+ */
+public class SplitMixRandom implements RandomDataGenerator
+{
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+  private static final float FLOAT_UNIT = 1.0f / (1 << 24);
+  private static final char[] VALID_CHARS =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+  private long _seed;
+  private final long _gamma;
+
+  public SplitMixRandom(long seed)
+  {
+    this(seed, GOLDEN_GAMMA);
+  }
+
+  public SplitMixRandom()
+  {
+    this(System.nanoTime() ^ Thread.currentThread().getId() * GOLDEN_GAMMA);
+  }
+
+  private SplitMixRandom(long seed, long gamma)
+  {
+    _seed = seed;
+    _gamma = gamma;
+  }
+
+  private static long mix64(long z)
+  {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  private static long mixGamma(long z)
+  {
+    z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+    z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    z = (z ^ (z >>> 33)) | 1L;
+    //weak gammas with few bit transitions produce correlated streams
+    return (Long.bitCount(z ^ (z >>> 1)) < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+  }
+
+  /*
+   * Creates a new generator whose stream is independent from this one. Not thread-safe; split all
+   * generators in the parent thread before handing them to the workers.
+   */
+  public SplitMixRandom split()
+  {
+    return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+  }
+
+  private long nextSeed()
+  {
+    return _seed += _gamma;
+  }
+
+  public long nextLong()
+  {
+    return mix64(nextSeed());
+  }
+
+  public int nextInt()
+  {
+    return (int)(nextLong() >>> 32);
+  }
+
+  /* @return a uniformly distributed int in [0, bound) */
+  public int nextInt(int bound)
+  {
+    //Lemire's multiply-shift; the bias is negligible for the purpose of load generation
+    return (int)(((nextLong() >>> 33) * bound) >>> 31);
+  }
+
+  /* @return a uniformly distributed long in [0, bound) */
+  public long nextLong(long bound)
+  {
+    return (long)(nextDouble() * bound);
+  }
+
+  public double nextDouble()
+  {
+    return (nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+
+  public float nextFloat()
+  {
+    return (nextLong() >>> 40) * FLOAT_UNIT;
+  }
+
+  public boolean nextBoolean()
+  {
+    return nextLong() < 0;
+  }
+
+  public void nextBytes(byte[] bytes, int offset, int len)
+  {
+    int i = offset;
+    int end = offset + len;
+    while (i < end)
+    {
+      long rnd = nextLong();
+      for (int n = Math.min(end - i, 8); n-- > 0; rnd >>>= 8)
+      {
+        bytes[i++] = (byte)rnd;
+      }
+    }
+  }
+
+  /* @return a random character from the same set as {@link DefaultRandomGenerator} */
+  public char nextChar()
+  {
+    return VALID_CHARS[nextInt(VALID_CHARS.length)];
+  }
+
+  // RandomDataGenerator methods with the same semantics as DefaultRandomGenerator
+
+  @Override
+  public int getNextInt()
+  {
+    return getNextInt(0, IntegerFieldGenerate.getMaxIntLength());
+  }
+
+  @Override
+  public int getNextInt(int min, int max)
+  {
+    if (max == min) return min;
+    long range = (long)max - min;
+    return (int)(min + nextLong(range));
+  }
+
+  @Override
+  public String getNextString()
+  {
+    return getNextString(StringFieldGenerate.getMinStringLength(),
+                         StringFieldGenerate.getMaxStringLength());
+  }
+
+  @Override
+  public String getNextString(int min, int max)
+  {
+    int length = getNextInt(min, max);
+    char[] chars = new char[length];
+    for (int i = 0; i < length; ++i)
+    {
+      chars[i] = nextChar();
+    }
+    return new String(chars);
+  }
+
+  @Override
+  public double getNextDouble()
+  {
+    return nextDouble();
+  }
+
+  @Override
+  public float getNextFloat()
+  {
+    return nextFloat();
+  }
+
+  @Override
+  public long getNextLong()
+  {
+    return nextLong() & Long.MAX_VALUE;
+  }
+
+  @Override
+  public boolean getNextBoolean()
+  {
+    return nextBoolean();
+  }
+
+  @Override
+  public byte[] getNextBytes(int maxBytesLength)
+  {
+    byte[] bytes = new byte[getNextInt(0, maxBytesLength)];
+    nextBytes(bytes, 0, bytes.length);
+    return bytes;
+  }
+}
@@ -0,0 +1,210 @@
+package com.linkedin.databus.eventgenerator;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DecoderFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.databus.core.DbusEvent;
+import com.linkedin.databus.core.DbusEventBuffer;
+import com.linkedin.databus.core.DbusEventBuffer.AllocationPolicy;
+import com.linkedin.databus.core.DbusEventBuffer.DbusEventIterator;
+
+public class TestCompiledSchemaGenerator
+{
+  static final String SCHEMA =
+      "{\"type\":\"record\",\"name\":\"AllTypes\",\"namespace\":\"com.linkedin.events.test\",\"fields\":[" +
+      "{\"name\":\"b\",\"type\":\"boolean\"}," +
+      "{\"name\":\"i\",\"type\":\"int\"}," +
+      "{\"name\":\"l\",\"type\":[\"null\",\"long\"]}," +
+      "{\"name\":\"f\",\"type\":\"float\"}," +
+      "{\"name\":\"d\",\"type\":\"double\"}," +
+      "{\"name\":\"s\",\"type\":[\"string\",\"null\"]}," +
+      "{\"name\":\"bytes\",\"type\":\"bytes\"}," +
+      "{\"name\":\"fx\",\"type\":{\"type\":\"fixed\",\"name\":\"Md5\",\"size\":16}}," +
+      "{\"name\":\"e\",\"type\":{\"type\":\"enum\",\"name\":\"Color\",\"symbols\":[\"RED\",\"GREEN\",\"BLUE\"]}}," +
+      "{\"name\":\"a\",\"type\":{\"type\":\"array\",\"items\":\"int\"}}," +
+      "{\"name\":\"m\",\"type\":{\"type\":\"map\",\"values\":\"string\"}}," +
+      "{\"name\":\"n\",\"type\":\"null\"}," +
+      "{\"name\":\"r\",\"type\":{\"type\":\"record\",\"name\":\"Inner\",\"fields\":[" +
+      "  {\"name\":\"x\",\"type\":\"long\"},{\"name\":\"y\",\"type\":\"string\"}]}}" +
+      "]}";
+
+  static final String RECURSIVE_SCHEMA =
+      "{\"type\":\"record\",\"name\":\"Node\",\"fields\":[" +
+      "{\"name\":\"next\",\"type\":[\"null\",\"Node\"]}]}";
+
+  /**
+   * Each generated record is followed by a marker; decoding the record with the schema must stop
+   * exactly at the marker.
+   */
+  @Test
+  public void testBinaryEncoding() throws Exception
+  {
+    Schema schema = Schema.parse(SCHEMA);
+    CompiledSchemaGenerator generator = new CompiledSchemaGenerator(schema);
+    SplitMixRandom rng = new SplitMixRandom(12345);
+    AvroBinaryBuffer buf = new AvroBinaryBuffer(16);
+
+    final int recordsNum = 500;
+    for (int i = 0; i < recordsNum; ++i)
+    {
+      generator.generate(rng, buf);
+      buf.writeLong(-1000000L - i);
+    }
+
+    GenericDatumReader<GenericRecord> reader = new GenericDatumReader<GenericRecord>(schema);
+    BinaryDecoder decoder = DecoderFactory.defaultFactory().createBinaryDecoder(buf.array(), 0,
+                                                                               buf.size(), null);
+    for (int i = 0; i < recordsNum; ++i)
+    {
+      GenericRecord record = reader.read(null, decoder);
+      Assert.assertNotNull(record.get("l"));
+      Assert.assertNotNull(record.get("s"));
+      Assert.assertEquals(decoder.readLong(), -1000000L - i, "record " + i);
+    }
+  }
+
+  @Test
+  public void testSplitMixRandom()
+  {
+    SplitMixRandom rng1 = new SplitMixRandom(42);
+    SplitMixRandom rng2 = new SplitMixRandom(42);
+    for (int i = 0; i < 100; ++i)
+    {
+      Assert.assertEquals(rng1.nextLong(), rng2.nextLong());
+    }
+
+    SplitMixRandom child1 = rng1.split();
+    SplitMixRandom child2 = rng1.split();
+    int sameNum = 0;
+    for (int i = 0; i < 1000; ++i)
+    {
+      int v1 = child1.nextInt(1000);
+      int v2 = child2.nextInt(1000);
+      Assert.assertTrue(0 <= v1 && v1 < 1000);
+      if (v1 == v2) ++sameNum;
+    }
+    Assert.assertTrue(sameNum < 20, "split streams look correlated: " + sameNum);
+  }
+
+  @Test(expectedExceptions = UnknownTypeException.class)
+  public void testRecursiveSchema() throws Exception
+  {
+    new CompiledSchemaGenerator(RECURSIVE_SCHEMA);
+  }
+
+  @Test
+  public void testKeySkew()
+  {
+    final int keysNum = 1000;
+    final int samplesNum = 100000;
+    for (KeyGenerator.Distribution dist: KeyGenerator.Distribution.values())
+    {
+      KeyGenerator keyGen = new KeyGenerator(dist, keysNum, 0.99, 0.01, 0.9, 7);
+      int[] counts = new int[keysNum];
+      for (int i = 0; i < samplesNum; ++i)
+      {
+        long key = keyGen.next();
+        Assert.assertTrue(0 <= key && key < keysNum, dist + " key out of range: " + key);
+        ++counts[(int)key];
+      }
+      Arrays.sort(counts);
+      long top10 = 0;
+      for (int i = keysNum - 10; i < keysNum; ++i) top10 += counts[i];
+      double top10Fraction = (double)top10 / samplesNum;
+      if (KeyGenerator.Distribution.UNIFORM == dist)
+      {
+        Assert.assertTrue(top10Fraction < 0.05, dist + ": " + top10Fraction);
+      }
+      else
+      {
+        Assert.assertTrue(top10Fraction > 0.2, dist + ": " + top10Fraction);
+      }
+    }
+  }
+
+  /** Appended events must form complete windows with decodable payloads */
+  @Test
+  public void testParallelEventGenerator() throws Exception
+  {
+    DbusEventBuffer.Config bufConfig = new DbusEventBuffer.Config();
+    bufConfig.setMaxSize(20 * 1024 * 1024);
+    bufConfig.setScnIndexSize(64 * 1024);
+    bufConfig.setAverageEventSize(1024 * 1024);
+    bufConfig.setAllocationPolicy(AllocationPolicy.HEAP_MEMORY.name());
+    DbusEventBuffer dbusBuf = new DbusEventBuffer(bufConfig);
+
+    ParallelEventGenerator.Config genConfig = new ParallelEventGenerator.Config();
+    genConfig.setThreadsNum(3);
+    genConfig.setWindowSize(5);
+    genConfig.setEventRatePerSec(1000);
+    genConfig.setSrcId((short)11);
+    genConfig.setKeyDistribution(KeyGenerator.Distribution.HOTSET.toString());
+    genConfig.setKeysNum(100);
+    genConfig.setSeed(1);
+
+    String schemaStr =
+        "{\"type\":\"record\",\"name\":\"Small\",\"fields\":[" +
+        "{\"name\":\"id\",\"type\":\"long\"},{\"name\":\"tags\",\"type\":{\"type\":\"array\",\"items\":\"int\"}}]}";
+    Schema schema = Schema.parse(schemaStr);
+    ParallelEventGenerator gen =
+        new ParallelEventGenerator(genConfig.build(), new CompiledSchemaGenerator(schema),
+                                   new byte[16], dbusBuf, null);
+    gen.start(10);
+    for (int i = 0; i < 100 && gen.getWindowsNum() < 10; ++i)
+    {
+      Thread.sleep(50);
+    }
+    gen.shutdown();
+    gen.awaitShutdown();
+    Assert.assertTrue(gen.getWindowsNum() >= 10, "windows: " + gen.getWindowsNum());
+    Assert.assertEquals(gen.getEventsNum(), 5 * gen.getWindowsNum());
+    Assert.assertEquals(gen.getScn(), 10 + gen.getWindowsNum() - 1);
+
+    GenericDatumReader<GenericRecord> reader = new GenericDatumReader<GenericRecord>(schema);
+    long dataEventsNum = 0;
+    DbusEventIterator it = dbusBuf.acquireIterator("testParallelEventGenerator");
+    while (it.hasNext())
+    {
+      DbusEvent e = it.next();
+      if (e.isEndOfPeriodMarker() || e.isControlMessage()) continue;
+      ++dataEventsNum;
+      Assert.assertEquals(e.srcId(), (short)11);
+      Assert.assertTrue(0 <= e.key() && e.key() < 100);
+      ByteBuffer value = e.value();
+      byte[] payload = new byte[value.remaining()];
+      value.get(payload);
+      GenericRecord record =
+          reader.read(null, DecoderFactory.defaultFactory().createBinaryDecoder(payload, null));
+      Assert.assertNotNull(record.get("id"));
+    }
+    dbusBuf.releaseIterator(it);
+    Assert.assertEquals(dataEventsNum, gen.getEventsNum());
+  }
+}
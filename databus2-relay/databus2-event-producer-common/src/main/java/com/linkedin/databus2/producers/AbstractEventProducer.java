@@ -29,6 +29,7 @@ import org.apache.log4j.Logger;
 import com.linkedin.databus.core.DatabusComponentStatus;
 import com.linkedin.databus.core.DbusEventBufferAppendable;
 import com.linkedin.databus.core.UnsupportedKeyException;
+import com.linkedin.databus.core.monitoring.mbean.LatencyHistogramStats;
 import com.linkedin.databus2.core.DatabusException;
 import com.linkedin.databus2.core.mbean.DatabusReadOnlyStatus;
 import com.linkedin.databus2.core.seq.MaxSCNReaderWriter;
@@ -58,6 +59,7 @@ public abstract class AbstractEventProducer implements EventProducer
   private final MaxSCNReaderWriter _maxScnReaderWriter;
   private final DatabusComponentStatus _status;
   private final DatabusReadOnlyStatus _statusMBean;
+  private final LatencyHistogramStats _readCycleLatencyStats;
   protected final MBeanServer _mbeanServer;
   private long _restartScnOffset;
   private boolean _coldStart= true;
@@ -81,6 +83,8 @@ public abstract class AbstractEventProducer implements EventProducer
     _mbeanServer = mbeanServer;
     _statusMBean = new DatabusReadOnlyStatus(_name, _status, -1);
     _statusMBean.registerAsMbean(_mbeanServer);
+    _readCycleLatencyStats = new LatencyHistogramStats(-1, _name + ".readCycle");
+    _readCycleLatencyStats.registerAsMbean(_mbeanServer);
     _log = Logger.getLogger(getClass().getName() + "_" + _name);
     _eventsLog = Logger.getLogger("com.linkedin.databus2.producers.db.events." + _name);
   }
@@ -90,6 +94,12 @@ public abstract class AbstractEventProducer implements EventProducer
     return _eventsLog;
   }
 
+  /** Distribution of the durations of the {@link #readEventsFromAllSources(long)} cycles */
+  public LatencyHistogramStats getReadCycleLatencyStats()
+  {
+    return _readCycleLatencyStats;
+  }
+
   @Override
   public String getName()
   {
@@ -204,6 +214,7 @@ public abstract class AbstractEventProducer implements EventProducer
       _thread.interrupt();
     }
     _statusMBean.unregisterMbean(_mbeanServer);
+    _readCycleLatencyStats.unregisterMbean(_mbeanServer);
   }
 
   @Override
@@ -270,7 +281,9 @@ public abstract class AbstractEventProducer implements EventProducer
         try
         {
           // Read events from all sources
+          long cycleStartNs = System.nanoTime();
           ReadEventCycleSummary summary = readEventsFromAllSources(_sinceSCN.get());
+          _readCycleLatencyStats.registerLatencySince(cycleStartNs);
 
           // Find the new max SCN across all sources and update _sinceSCN
           long newSinceSCN = Math.max(summary.getEndOfWindowScn(), _sinceSCN.get());
@@ -54,6 +54,7 @@ import com.linkedin.databus.core.DbusEventBufferMult;
 import com.linkedin.databus.core.DbusEventBufferMult.PhysicalPartitionKey;
 import com.linkedin.databus.core.DbusEventFactory;
 import com.linkedin.databus.core.DbusEventV1Factory;
+import com.linkedin.databus.core.EventLogJournal;
 import com.linkedin.databus.core.EventLogReader;
 import com.linkedin.databus.core.EventLogWriter;
 import com.linkedin.databus.core.UnsupportedKeyException;
@@ -118,6 +119,9 @@ public class HttpRelay extends ServerContainer implements AddRemovePartitionInte
     protected DbusEventStatsCollectorsPartitioner _dbInboundStatsCollectors;
     // DB level outbound stats aggregate
     protected DbusEventStatsCollectorsPartitioner _dbOutboundStatsCollectors;
+    // Event log journal writers for the buffers (if enabled)
+    private final Map<PhysicalPartition, EventLogWriter> _eventLogWriters =
+        new ConcurrentHashMap<PhysicalPartition, EventLogWriter>();
 
     public HttpRelay(Config config, PhysicalSourceStaticConfig [] pConfigs)
     throws IOException, InvalidConfigException, DatabusException
@@ -199,11 +203,11 @@ public class HttpRelay extends ServerContainer implements AddRemovePartitionInte
                                               .getExistingStatsCollector();
       if (null == httpStatsColl)
       {
-        httpStatsColl = new HttpStatisticsCollector(getContainerStaticConfig().getId(),
-                                                    "httpOutbound",
-                                                    _relayStaticConfig.getRuntime().getHttpStatsCollector().isEnabled(),
-                                                    true,
-                                                    getMbeanServer());
+        httpStatsColl = _relayStaticConfig.getHttpStatsCollector().createStatsCollector(
+            getContainerStaticConfig().getId(),
+            "httpOutbound",
+            _relayStaticConfig.getRuntime().getHttpStatsCollector().isEnabled(),
+            getMbeanServer());
       }
       _httpStatisticsCollector = httpStatsColl;
 
@@ -273,6 +277,50 @@ public class HttpRelay extends ServerContainer implements AddRemovePartitionInte
     protected void doStart()
     {
       super.doStart();
+      if (_relayStaticConfig.getEventLogWriterConfig().isEnabled())
+      {
+        for (DbusEventBuffer buf: getEventBuffer().bufIterable())
+        {
+          startEventLogWriter(buf);
+        }
+      }
+    }
+
+    /** Starts journaling the events of a buffer to disk */
+    protected synchronized void startEventLogWriter(DbusEventBuffer buf)
+    {
+      PhysicalPartition pPartition = buf.getPhysicalPartition();
+      if (_eventLogWriters.containsKey(pPartition)) return;
+
+      String subdirName = pPartition.getName() + "_" + pPartition.getId();
+      EventLogWriter logWriter =
+          _relayStaticConfig.getEventLogWriterConfig().createEventLogWriter(buf, subdirName);
+      Thread writerThread = new Thread(logWriter, "EventLogWriter_" + subdirName);
+      writerThread.setDaemon(true);
+      writerThread.start();
+      _eventLogWriters.put(pPartition, logWriter);
+      LOG.info("started event log writer for " + pPartition);
+    }
+
+    protected synchronized void stopEventLogWriter(PhysicalPartition pPartition)
+    {
+      EventLogWriter logWriter = _eventLogWriters.remove(pPartition);
+      if (null != logWriter)
+      {
+        logWriter.stop();
+        LOG.info("stopped event log writer for " + pPartition);
+      }
+    }
+
+    /**
+     * The indexed event log journal of a partition which can be used to serve clients that have
+     * fallen behind the event buffer
+     * @return the journal or null if there is no indexed journal for the partition
+     */
+    public EventLogJournal getEventLogJournal(PhysicalPartition pPartition)
+    {
+      EventLogWriter logWriter = _eventLogWriters.get(pPartition);
+      return null != logWriter ? logWriter.getJournal() : null;
     }
 
     public void disconnectDBusClients()
@@ -318,6 +366,11 @@ public class HttpRelay extends ServerContainer implements AddRemovePartitionInte
 
       // unregister PhysicalSrcBased inbound collector
       _dbOutboundStatsCollectors.removeAllStatsCollector();
+
+      for (PhysicalPartition pPartition: new ArrayList<PhysicalPartition>(_eventLogWriters.keySet()))
+      {
+        stopEventLogWriter(pPartition);
+      }
     }
 
     /**
@@ -332,6 +385,10 @@ public class HttpRelay extends ServerContainer implements AddRemovePartitionInte
     {
       DbusEventBufferMult eventMult = getEventBuffer();
       DbusEventBuffer buf = eventMult.addNewBuffer(pConfig, config.getEventBuffer());
+      if (isRunningStatus() && config.getEventLogWriterConfig().isEnabled())
+      {
+        startEventLogWriter(buf);
+      }
       return buf;
     }
 
@@ -349,6 +406,7 @@ public class HttpRelay extends ServerContainer implements AddRemovePartitionInte
     public void removeBuffer(PhysicalSourceStaticConfig pConfig) {
       DbusEventBufferMult eventMult = getEventBuffer();
       eventMult.removeBuffer(pConfig);
+      stopEventLogWriter(pConfig.getPhysicalPartition());
     }
 
     @Override
@@ -1210,11 +1268,8 @@ public class HttpRelay extends ServerContainer implements AddRemovePartitionInte
         {
           if (null == _inBoundStatsCollectors.getStatsCollector(statsCollectorName))
           {
-            DbusEventsStatisticsCollector collector = new DbusEventsStatisticsCollector(getContainerStaticConfig().getId(),
-                                              statsCollectorName+".inbound",
-                                              true,
-                                              false,
-                                              getMbeanServer());
+            DbusEventsStatisticsCollector collector = createEventStatsCollector(statsCollectorName+".inbound",
+                                                                                false);
             _inBoundStatsCollectors.addStatsCollector(statsCollectorName, collector);
             _dbInboundStatsCollectors.addStatsCollector(pPartition, collector);
           }
@@ -1227,11 +1282,8 @@ public class HttpRelay extends ServerContainer implements AddRemovePartitionInte
         {
           if (null == _outBoundStatsCollectors.getStatsCollector(statsCollectorName))
           {
-            DbusEventsStatisticsCollector collector = new DbusEventsStatisticsCollector(getContainerStaticConfig().getId(),
-                                                                                        statsCollectorName+".outbound",
-                                                                                        true,
-                                                                                        false,
-                                                                                        getMbeanServer());
+            DbusEventsStatisticsCollector collector = createEventStatsCollector(statsCollectorName+".outbound",
+                                                                                false);
             _outBoundStatsCollectors.addStatsCollector(statsCollectorName, collector);
             _dbOutboundStatsCollectors.addStatsCollector(pPartition, collector);
           }
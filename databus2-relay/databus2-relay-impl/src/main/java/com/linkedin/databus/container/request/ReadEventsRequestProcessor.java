@@ -21,6 +21,7 @@ package com.linkedin.databus.container.request;
 
 
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import java.security.spec.InvalidParameterSpecException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,6 +30,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 
@@ -44,13 +46,16 @@ import com.linkedin.databus.core.DbusEventBufferMult;
 import com.linkedin.databus.core.DbusEventBufferMult.PhysicalPartitionKey;
 import com.linkedin.databus.core.DbusEventFactory;
 import com.linkedin.databus.core.Encoding;
+import com.linkedin.databus.core.EventLogJournal;
 import com.linkedin.databus.core.OffsetNotFoundException;
 import com.linkedin.databus.core.ScnNotFoundException;
+import com.linkedin.databus.core.StreamEventsArgs;
 import com.linkedin.databus.core.StreamEventsResult;
 import com.linkedin.databus.core.data_model.DatabusSubscription;
 import com.linkedin.databus.core.data_model.LogicalSource;
 import com.linkedin.databus.core.data_model.PhysicalPartition;
 import com.linkedin.databus.core.monitoring.mbean.DbusEventsStatisticsCollector;
+import com.linkedin.databus.core.monitoring.mbean.LatencyHistogramStats;
 import com.linkedin.databus.core.monitoring.mbean.StatsCollectors;
 import com.linkedin.databus2.core.DatabusException;
 import com.linkedin.databus2.core.container.DatabusHttpHeaders;
@@ -86,10 +91,16 @@ public class ReadEventsRequestProcessor implements RequestProcessor
   public final static String PARTITION_INFO_STRING = "filters";
   public final static String STREAM_FROM_LATEST_SCN = "streamFromLatestScn";
   public final static String SUBS_PARAM = "subs";
+  /** Max number of consecutive windows to compact into one (only the last event per key is sent) */
+  public final static String COMPACTION_WINDOWS_PARAM = "compactWindows";
+  /** If true, the client can handle compressed payloads; otherwise they are decompressed before sending */
+  public final static String ACCEPT_COMPRESSED_PAYLOADS_PARAM = "compressedPayloads";
+  public final static String STREAM_LATENCY_STATS_NAME = "relay.stream";
 
   private final ExecutorService _executorService;
   private final DbusEventBufferMult _eventBuffer;
   private final HttpRelay _relay;
+  private final LatencyHistogramStats _streamLatencyStats;
 
   public ReadEventsRequestProcessor(ExecutorService executorService,
                                     HttpRelay relay)
@@ -97,6 +108,7 @@ public class ReadEventsRequestProcessor implements RequestProcessor
     _executorService = executorService;
     _relay = relay;
     _eventBuffer = _relay.getEventBuffer();
+    _streamLatencyStats = _relay.getLatencyStatisticsCollector().getOrAddStats(STREAM_LATENCY_STATS_NAME);
   }
 
   @Override
@@ -105,11 +117,60 @@ public class ReadEventsRequestProcessor implements RequestProcessor
     return _executorService;
   }
 
+  /**
+   * Tries to serve a request whose checkpoint is no longer in the event buffer from the indexed
+   * event log journal of the buffer. Only requests for sources from a single physical partition
+   * are supported.
+   * @return the result or null if the journal cannot serve the request
+   */
+  private StreamEventsResult streamFromEventLogJournal(Set<Integer> sourceIds,
+                                                       CheckpointMult cpMult,
+                                                       int fetchSize,
+                                                       WritableByteChannel writeChannel,
+                                                       Encoding enc,
+                                                       DbusFilter filter,
+                                                       int clientEventVersion,
+                                                       boolean acceptCompressedPayloads)
+  {
+    PhysicalPartition pPartition = null;
+    for (Integer srcId: sourceIds)
+    {
+      PhysicalPartition srcPartition = _eventBuffer.getPhysicalPartition(srcId);
+      if (null == srcPartition || (null != pPartition && !pPartition.equals(srcPartition)))
+      {
+        return null;
+      }
+      pPartition = srcPartition;
+    }
+    if (null == pPartition) return null;
+
+    EventLogJournal journal = _relay.getEventLogJournal(pPartition);
+    Checkpoint cp = cpMult.getCheckpoint(pPartition);
+    if (null == journal || null == cp) return null;
+
+    StreamEventsArgs args = new StreamEventsArgs(fetchSize);
+    args.setEncoding(enc).setFilter(filter).setMaxClientEventVersion(clientEventVersion);
+    args.setAcceptCompressedPayloads(acceptCompressedPayloads);
+    try
+    {
+      StreamEventsResult result = journal.streamEvents(cp, writeChannel, args);
+      if (LOG.isDebugEnabled())
+        LOG.debug("streamed " + result.getNumEventsStreamed() + " events for " + pPartition +
+                  " from the event log journal");
+      return result;
+    }
+    catch (ScnNotFoundException e)
+    {
+      return null;
+    }
+  }
+
   @Override
   public DatabusRequest process(DatabusRequest request) throws IOException,
       RequestProcessingException, DatabusException
   {
 	boolean isDebug = LOG.isDebugEnabled();
+    long startNs = System.nanoTime();
     try {
       ObjectMapper objMapper = new ObjectMapper();
       String checkpointString = request.getParams().getProperty(CHECKPOINT_PARAM, null);
@@ -132,6 +193,15 @@ public class ReadEventsRequestProcessor implements RequestProcessor
                                                     clientMaxEventVersionStr);
       }
 
+      int compactionWindows = request.getOptionalIntParam(COMPACTION_WINDOWS_PARAM, 0);
+      if (compactionWindows < 0)
+      {
+        throw new InvalidRequestParamValueException(COMMAND_NAME, COMPACTION_WINDOWS_PARAM,
+                                                    Integer.toString(compactionWindows));
+      }
+      boolean acceptCompressedPayloads =
+          Boolean.parseBoolean(request.getParams().getProperty(ACCEPT_COMPRESSED_PAYLOADS_PARAM));
+
       if (null == sourcesListStr && null == subsStr)
       {
         throw new InvalidRequestParamValueException(COMMAND_NAME, SOURCES_PARAM + "|" + SUBS_PARAM, "null");
@@ -369,11 +439,24 @@ public class ReadEventsRequestProcessor implements RequestProcessor
         StreamEventsResult result = null;
 
         bufRead.setClientMaxEventVersion(clientEventVersion);
+        bufRead.setCompactionWindows(compactionWindows);
+        bufRead.setAcceptCompressedPayloads(acceptCompressedPayloads);
 
         if (v2Mode)
         {
-          result = bufRead.streamEvents(streamFromLatestSCN, fetchSize,
-                                            request.getResponseContent(), enc, filters);
+          try
+          {
+            result = bufRead.streamEvents(streamFromLatestSCN, fetchSize,
+                                          request.getResponseContent(), enc, filters);
+          }
+          catch (ScnNotFoundException snfe)
+          {
+            // the checkpoint may still be in the event log journal
+            result = streamFromEventLogJournal(sourceIds, cpMult, fetchSize,
+                                               request.getResponseContent(), enc, filters,
+                                               clientEventVersion, acceptCompressedPayloads);
+            if (null == result) throw snfe;
+          }
           eventsRead = result.getNumEventsStreamed();
           minPendingEventSize = result.getSizeOfPendingEvent();
           if(isDebug) {
@@ -440,6 +523,7 @@ public class ReadEventsRequestProcessor implements RequestProcessor
       {
         globalHttpStatsCollector.registerStreamResponse(System.currentTimeMillis()-start);
       }
+      _streamLatencyStats.registerLatencySince(startNs);
     }
     catch (InvalidRequestParamValueException e)
     {
@@ -22,7 +22,9 @@ package com.linkedin.databus2.producers;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -70,6 +72,16 @@ import com.linkedin.databus2.relay.config.PhysicalSourceStaticConfig;
 /*
  * Relay that uses DatabusSources connection (the client library to connect to other relays - Relay Chaining )
  * Operates with parameters used by other 'Event Producers' including RelayConfig
+ *
+ * The uri of the physical source is the list of the upstream relays, e.g. "relay1:11140,relay2:11140".
+ * An edge relay pulls a single stream per physical partition from one of the upstream relays and
+ * fails over to the others on errors. When several chained physical sources map to the same
+ * physical partition, they share one producer whose upstream subscription is the superset of their
+ * logical sources and whose upstream relays are the union of their uris. All downstream clients of
+ * the partition are served from the local buffer with their own filters, so the upstream tier sees
+ * one connection per edge relay and partition regardless of the number of clients.
+ *
+ * The upstream relays are not discovered: they are taken from the uris of the physical sources.
  */
 
 public class RelayEventProducer implements EventProducer
@@ -94,6 +106,7 @@ public class RelayEventProducer implements EventProducer
 
   public static final String MODULE = RelayEventProducer.class.getName();
   public static final Logger LOG = Logger.getLogger(MODULE);
+  public static final String UPSTREAM_RELAYS_SEPARATOR = ",";
 
   public RelayEventProducer(PhysicalSourceStaticConfig config,
                             DbusEventBufferAppendable consumerBuffer,
@@ -109,6 +122,23 @@ public class RelayEventProducer implements EventProducer
                             MaxSCNReaderWriter scnReaderWriter,
                             DatabusClientNettyThreadPools nettyThreadpools)
   {
+    this(Collections.singletonList(config), consumerBuffer, statsCollector, scnReaderWriter,
+         nettyThreadpools);
+  }
+
+  /**
+   * Creates a producer with a single upstream subscription for all the chained physical sources of a
+   * physical partition
+   * @param configs     the physical sources of the partition; the first one provides the name, the
+   *                    restart offset and the retries
+   */
+  public RelayEventProducer(List<PhysicalSourceStaticConfig> configs,
+                            DbusEventBufferAppendable consumerBuffer,
+                            DbusEventsStatisticsCollector statsCollector,
+                            MaxSCNReaderWriter scnReaderWriter,
+                            DatabusClientNettyThreadPools nettyThreadpools)
+  {
+    PhysicalSourceStaticConfig config = configs.get(0);
     try
     {
       _name = config.getName();
@@ -120,10 +150,16 @@ public class RelayEventProducer implements EventProducer
               + _name);
       _restartScnOffset = config.getRestartScnOffset();
 
-      int largestEventSize = config.getLargestEventSizeInBytes();
+      int largestEventSize = 0;
+      long largestWindowSize = 0;
+      for (PhysicalSourceStaticConfig c: configs)
+      {
+        largestEventSize = Math.max(largestEventSize, c.getLargestEventSizeInBytes());
+        largestWindowSize = Math.max(largestWindowSize, c.getLargestWindowSizeInBytes());
+      }
       //let the internal buffer contain at least 2 windows
       //Assumption: internalBufferSize > largestEventSize; enforced in PhysicalSourcesConfig
-      long internalBufferSize = 2 * config.getLargestWindowSizeInBytes() ;
+      long internalBufferSize = 2 * largestWindowSize ;
       //10s : write to buffers should be fast; the only exception is when scn's are saved. That's why 10s
       //average event size : assumed to be 10% of largestEventSize or 20K whichever is higher
       int averageEventSize = Math.max((int)(largestEventSize*0.1), 20*1024);
@@ -140,14 +176,16 @@ public class RelayEventProducer implements EventProducer
        _consumerEventBuffer = new DatabusConsumerEventBuffer(consumerBuffer, statsCollector,scnReaderWriter);
 
       // get subscription info
-      String subscriptionString = createSubscriptionString(config);
-      LOG.info("Subscription string=" + subscriptionString);
+      String subscriptionString = createSubscriptionString(configs);
+      String upstreamRelays = createUpstreamRelaysString(configs);
+      LOG.info("Subscription string=" + subscriptionString + " upstream relays=" + upstreamRelays);
 
 
 
        int id = (RngUtils.randomPositiveInt() % 10000) + 1;
-      _nettyThreadPools = _nettyThreadPools == null ? DatabusClientNettyThreadPools.createNettyThreadPools(id) : nettyThreadpools;
-      _dbusConnection = createDatabusSourcesConnection(_name, id,config.getUri(),
+      // share the relay's netty pools across all chained partitions when they are provided
+      _nettyThreadPools = nettyThreadpools == null ? DatabusClientNettyThreadPools.createNettyThreadPools(id) : nettyThreadpools;
+      _dbusConnection = createDatabusSourcesConnection(_name, id,upstreamRelays,
           subscriptionString, _consumerEventBuffer,
           internalBufferSize, largestEventSize, consumerTimeoutMs,
           pollIntervalMs, connTimeoutMs, consumerParallelism, true,
@@ -371,23 +409,96 @@ public class RelayEventProducer implements EventProducer
 
   static String createSubscriptionString(PhysicalSourceStaticConfig config)
   {
+    return createSubscriptionString(Collections.singletonList(config));
+  }
+
+  /**
+   * @return the superset of the logical sources of the physical sources in the order in which they
+   *         first appear
+   */
+  static String createSubscriptionString(List<PhysicalSourceStaticConfig> configs)
+  {
+    Set<String> names = new LinkedHashSet<String>();
+    for (PhysicalSourceStaticConfig config: configs)
+    {
+      for (LogicalSourceStaticConfig sourceConfig : config.getSources())
+      {
+        names.add(sourceConfig.getName());
+      }
+    }
     StringBuilder s = new StringBuilder();
-    for (LogicalSourceStaticConfig sourceConfig : config.getSources())
+    for (String name: names)
     {
       if (s.length() > 0)
         s.append(",");
-      s.append(sourceConfig.getName());
+      s.append(name);
     }
     return s.toString();
   }
 
-  static Set<ServerInfo> createServerInfo(String serverName, String subscriptions) throws InvalidConfigException
+  /**
+   * @return the union of the upstream relays of the physical sources
+   */
+  static String createUpstreamRelaysString(List<PhysicalSourceStaticConfig> configs)
+      throws InvalidConfigException
+  {
+    Set<String> relays = new LinkedHashSet<String>();
+    for (PhysicalSourceStaticConfig config: configs)
+    {
+      relays.addAll(parseUpstreamRelays(config.getUri()));
+    }
+    StringBuilder s = new StringBuilder();
+    for (String relay: relays)
+    {
+      if (s.length() > 0)
+        s.append(UPSTREAM_RELAYS_SEPARATOR);
+      s.append(relay);
+    }
+    return s.toString();
+  }
+
+  /**
+   * Parses the list of upstream relays of a chained physical source
+   * @param  serverNames      comma-separated host:port of the upstream relays
+   * @return the host:port of each upstream relay
+   */
+  static List<String> parseUpstreamRelays(String serverNames) throws InvalidConfigException
+  {
+    if (null == serverNames)
+    {
+      throw new InvalidConfigException("upstream relays expected");
+    }
+    List<String> result = new ArrayList<String>();
+    for (String s: serverNames.split(UPSTREAM_RELAYS_SEPARATOR))
+    {
+      s = s.trim();
+      if (s.length() > 0 && !result.contains(s))
+      {
+        result.add(s);
+      }
+    }
+    if (result.isEmpty())
+    {
+      throw new InvalidConfigException("no upstream relays in: " + serverNames);
+    }
+    return result;
+  }
+
+  /**
+   * Creates a server entry for each upstream relay. All of them serve the same subscriptions so the
+   * puller can pick any of them and switch to another one on errors.
+   */
+  static Set<ServerInfo> createServerInfo(String serverNames, String subscriptions) throws InvalidConfigException
   {
     Set<ServerInfo> serverInfo = new HashSet<ServerInfo>();
-    ServerInfoBuilder sBuilder = new ServerInfoBuilder();
-    sBuilder.setAddress(serverName + ":" + subscriptions);
-    // sBuilder.setSources(subscriptions);
-    serverInfo.add(sBuilder.build());
+    for (String serverName: parseUpstreamRelays(serverNames))
+    {
+      ServerInfoBuilder sBuilder = new ServerInfoBuilder();
+      sBuilder.setAddress(serverName + ":" + subscriptions);
+      // sBuilder.setSources(subscriptions);
+      serverInfo.add(sBuilder.build());
+    }
+    LOG.info("upstream relays for " + subscriptions + ": " + serverInfo);
     return serverInfo;
   }
 
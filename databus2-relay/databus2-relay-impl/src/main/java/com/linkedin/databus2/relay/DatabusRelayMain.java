@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -45,6 +46,7 @@ import com.linkedin.databus2.core.container.request.RequestProcessorRegistry;
 import com.linkedin.databus2.core.seq.MaxSCNReaderWriter;
 import com.linkedin.databus2.core.seq.MultiServerSequenceNumberHandler;
 import com.linkedin.databus2.core.seq.SequenceNumberHandlerFactory;
+import com.linkedin.databus2.producers.AbstractEventProducer;
 import com.linkedin.databus2.producers.EventCreationException;
 import com.linkedin.databus2.producers.EventProducer;
 import com.linkedin.databus2.producers.EventProducerServiceProvider;
@@ -70,6 +72,9 @@ public class DatabusRelayMain extends HttpRelay {
     private final RelayEventProducersRegistry _producersRegistry = RelayEventProducersRegistry.getInstance();
 	MultiServerSequenceNumberHandler _maxScnReaderWriters;
 	protected Map<PhysicalPartition, EventProducer> _producers;
+	/** the chained physical sources of each partition; they share one upstream subscription */
+	private final Map<PhysicalPartition, List<PhysicalSourceStaticConfig>> _chainedConfigs =
+			new HashMap<PhysicalPartition, List<PhysicalSourceStaticConfig>>();
 	Map<PhysicalPartition, MonitoringEventProducer> _monitoringProducers;
 	ControlSourceEventsRequestProcessor _csEventRequestProcessor;
 	private boolean _dbPullerStart = false;
@@ -114,8 +119,17 @@ public class DatabusRelayMain extends HttpRelay {
 
 		List<EventProducer> plist = new ArrayList<EventProducer>();
 
+		_chainedConfigs.remove(pPartition);
 		if (_producers != null && _producers.containsKey(pPartition))
-			plist.add(_producers.remove(pPartition));
+		{
+			EventProducer producer = _producers.remove(pPartition);
+			plist.add(producer);
+			if (producer instanceof AbstractEventProducer)
+			{
+				getLatencyStatisticsCollector().removeStats(
+						((AbstractEventProducer)producer).getReadCycleLatencyStats().getName());
+			}
+		}
 
 		// if(_maxScnReaderWriters != null &&
 		// _maxScnReaderWriters.getHandler(pPartition)
@@ -220,14 +234,26 @@ public class DatabusRelayMain extends HttpRelay {
 			RelayEventProducer.DatabusClientNettyThreadPools nettyThreadPools =
 						new RelayEventProducer.DatabusClientNettyThreadPools(0,getNetworkTimeoutTimer(),getBossExecutorService(),
 																				getIoExecutorService(), getHttpChannelGroup());
-			producer = new RelayEventProducer(pConfig, dbusEventBuffer,
+			// all chained physical sources of the partition share one upstream subscription; the
+			// producer of the previous ones is replaced by one with the superset of the sources
+			List<PhysicalSourceStaticConfig> chainedConfigs = addChainedConfig(pConfig);
+			boolean restart = replaceChainedProducer(pPartition);
+			producer = new RelayEventProducer(chainedConfigs, dbusEventBuffer,
 					_inBoundStatsCollectors
 							.getStatsCollector(statsCollectorName),
 					maxScnReaderWriters,nettyThreadPools);
+			if (restart) {
+				producer.start(-1L);
+			}
 		}
 
 		// if a buffer for this partiton exists - we are overwriting it.
 		_producers.put(pPartition, producer);
+		if (producer instanceof AbstractEventProducer)
+		{
+			getLatencyStatisticsCollector().addStats(
+					((AbstractEventProducer)producer).getReadCycleLatencyStats());
+		}
 
 		plist.add(producer);
 		// append 'monitoring event producer'
@@ -253,6 +279,56 @@ public class DatabusRelayMain extends HttpRelay {
 				_csEventRequestProcessor);
 	}
 
+	/**
+	 * Adds a chained physical source to the sources of its partition; replaces an earlier config
+	 * of the same physical source
+	 * @return the chained physical sources of the partition
+	 */
+	private List<PhysicalSourceStaticConfig> addChainedConfig(PhysicalSourceStaticConfig pConfig) {
+		PhysicalPartition pPartition = pConfig.getPhysicalPartition();
+		List<PhysicalSourceStaticConfig> configs = _chainedConfigs.get(pPartition);
+		if (null == configs) {
+			configs = new ArrayList<PhysicalSourceStaticConfig>();
+			_chainedConfigs.put(pPartition, configs);
+		}
+		for (Iterator<PhysicalSourceStaticConfig> iter = configs.iterator(); iter.hasNext();) {
+			PhysicalSourceStaticConfig c = iter.next();
+			if (c.getName().equals(pConfig.getName()) && c.getUri().equals(pConfig.getUri())) {
+				iter.remove();
+			}
+		}
+		configs.add(pConfig);
+		return new ArrayList<PhysicalSourceStaticConfig>(configs);
+	}
+
+	/**
+	 * Shuts down the chained producer of a partition before it is replaced
+	 * @return true if the producer was running and its replacement needs to be started
+	 */
+	private boolean replaceChainedProducer(PhysicalPartition pPartition) {
+		EventProducer oldProducer = _producers.get(pPartition);
+		if (!(oldProducer instanceof RelayEventProducer)) {
+			return false;
+		}
+		boolean wasRunning = oldProducer.isRunning() || oldProducer.isPaused();
+		LOG.info("replacing chained producer " + oldProducer.getName() + " of " + pPartition +
+				"; running=" + wasRunning);
+		oldProducer.shutdown();
+		if (wasRunning) {
+			try {
+				oldProducer.waitForShutdown();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (_csEventRequestProcessor != null) {
+			List<EventProducer> plist = new ArrayList<EventProducer>();
+			plist.add(oldProducer);
+			_csEventRequestProcessor.removeEventProducers(plist);
+		}
+		return wasRunning;
+	}
+
 	public void initProducers() throws InvalidConfigException,
 			DatabusException, EventCreationException, UnsupportedKeyException,
 			SQLException, ProcessorRegistrationConflictException {
@@ -19,10 +19,18 @@ package com.linkedin.databus.core;
 */
 
 
+import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
 
 import org.apache.log4j.BasicConfigurator;
@@ -361,4 +369,198 @@ public class TestEventLogWriter
 
   }
 
+  @Test
+  public void testStreamFromIndexedJournal() throws Exception
+  {
+    // a small buffer so that the older windows are only available in the journal
+    DbusEventBuffer dbuf  = new DbusEventBuffer(getConfig(100000, DbusEventBuffer.Config.DEFAULT_INDIVIDUAL_BUFFER_SIZE, 100000, 10000, AllocationPolicy.HEAP_MEMORY, QueuePolicy.OVERWRITE_ON_WRITE));
+    String sessionDir = _writeDir + File.separator + "indexedJournalTest";
+    EventLogWriter logWriter = new EventLogWriter(true, dbuf, _writeDir, new File(sessionDir),
+                                                  Encoding.BINARY, true, 64000, 20, 100000, 100,
+                                                  1000, true, 4096);
+    EventLogJournal journal = logWriter.getJournal();
+    assertNotNull(journal);
+
+    Thread logWriterThread = new Thread(logWriter);
+    logWriterThread.start();
+    int eventWindowSize = 20;
+    int numWindows = 200;
+    dbuf.start(1);
+    long lastWindowScn = 1;
+    for (int w = 0; w < numWindows; ++w)
+    {
+      dbuf.startEvents();
+      for (int j = 0; j < eventWindowSize; ++j)
+      {
+        DbusEventKey key = new DbusEventKey(RngUtils.randomLong());
+        String value = RngUtils.randomString(20);
+        assertTrue(dbuf.appendEvent(key, (short)0, partitionId, timeStamp, srcId, schemaId, value.getBytes(Charset.defaultCharset()), false));
+      }
+      lastWindowScn += eventWindowSize;
+      dbuf.endEvents(lastWindowScn);
+    }
+    logWriter.stop();
+    logWriterThread.join();
+
+    assertEquals(lastWindowScn, journal.getMaxScn());
+    // the journal has more history than the buffer
+    assertTrue(journal.getMinScn() < dbuf.getMinScn());
+
+    // a checkpoint that has fallen out of the buffer
+    long cpScn = journal.getMinScn() + 5 * eventWindowSize;
+    assertTrue(cpScn < dbuf.getMinScn());
+    Checkpoint cp = new Checkpoint();
+    cp.setConsumptionMode(DbusClientMode.ONLINE_CONSUMPTION);
+    cp.setWindowScn(cpScn);
+    cp.setWindowOffset(-1);
+    try
+    {
+      dbuf.streamEvents(cp, Channels.newChannel(new ByteArrayOutputStream()), new StreamEventsArgs(100000));
+      fail("ScnNotFoundException expected");
+    }
+    catch (ScnNotFoundException e)
+    {
+      // expected
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamEventsResult result = journal.streamEvents(cp, Channels.newChannel(out), new StreamEventsArgs(10000000));
+    int expectedWindows = (int)((lastWindowScn - cpScn) / eventWindowSize);
+    assertEquals(expectedWindows * (eventWindowSize + 1), result.getNumEventsStreamed());
+    checkStreamedWindows(out.toByteArray(), cpScn, eventWindowSize);
+
+    // a limited fetch size only streams whole events
+    out = new ByteArrayOutputStream();
+    cp.setWindowScn(cpScn);
+    cp.setWindowOffset(-1);
+    result = journal.streamEvents(cp, Channels.newChannel(out), new StreamEventsArgs(1000));
+    assertTrue(result.getNumEventsStreamed() > 0);
+    assertTrue(out.size() <= 1000);
+
+    // checkpoints before the journal cannot be served
+    cp.setWindowScn(journal.getMinScn() - eventWindowSize - 1);
+    cp.setWindowOffset(-1);
+    try
+    {
+      journal.streamEvents(cp, Channels.newChannel(new ByteArrayOutputStream()), new StreamEventsArgs(100000));
+      fail("ScnNotFoundException expected");
+    }
+    catch (ScnNotFoundException e)
+    {
+      // expected
+    }
+  }
+
+  @Test
+  public void testStreamFromJournalStopsAtInvalidEvent() throws Exception
+  {
+    DbusEventBuffer dbuf  = new DbusEventBuffer(getConfig(100000, DbusEventBuffer.Config.DEFAULT_INDIVIDUAL_BUFFER_SIZE, 100000, 10000, AllocationPolicy.HEAP_MEMORY, QueuePolicy.OVERWRITE_ON_WRITE));
+    String sessionDir = _writeDir + File.separator + "invalidJournalTest";
+    EventLogWriter logWriter = new EventLogWriter(true, dbuf, _writeDir, new File(sessionDir),
+                                                  Encoding.BINARY, true, 64000, 20, 100000, 100,
+                                                  1000, true, 4096);
+    EventLogJournal journal = logWriter.getJournal();
+    assertNotNull(journal);
+
+    Thread logWriterThread = new Thread(logWriter);
+    logWriterThread.start();
+    int eventWindowSize = 20;
+    dbuf.start(1);
+    long lastWindowScn = 1;
+    for (int w = 0; w < 50; ++w)
+    {
+      dbuf.startEvents();
+      for (int j = 0; j < eventWindowSize; ++j)
+      {
+        DbusEventKey key = new DbusEventKey(RngUtils.randomLong());
+        String value = RngUtils.randomString(20);
+        assertTrue(dbuf.appendEvent(key, (short)0, partitionId, timeStamp, srcId, schemaId, value.getBytes(Charset.defaultCharset()), false));
+      }
+      lastWindowScn += eventWindowSize;
+      dbuf.endEvents(lastWindowScn);
+    }
+    logWriter.stop();
+    logWriterThread.join();
+
+    // corrupt the payload of the first event of the third window after the checkpoint
+    long cpScn = journal.getMinScn() + 5 * eventWindowSize;
+    EventLogJournal.WindowEntry badWindow = journal.findWindowAfter(cpScn + 2 * eventWindowSize);
+    assertNotNull(badWindow);
+    RandomAccessFile raf = new RandomAccessFile(badWindow.getFile(), "rw");
+    try
+    {
+      byte[] header = new byte[1000];
+      raf.seek(badWindow.getFileOffset());
+      raf.readFully(header);
+      DbusEvent badEvent = dbuf.getEventFactory().createReadOnlyDbusEventFromBuffer(
+          ByteBuffer.wrap(header).order(dbuf.getEventFactory().getByteOrder()), 0);
+      long lastPayloadByte = badWindow.getFileOffset() + badEvent.size() - 1;
+      raf.seek(lastPayloadByte);
+      int b = raf.read();
+      raf.seek(lastPayloadByte);
+      raf.write(b ^ 0xFF);
+    }
+    finally
+    {
+      raf.close();
+    }
+
+    // only the windows before the invalid event are streamed
+    Checkpoint cp = new Checkpoint();
+    cp.setConsumptionMode(DbusClientMode.ONLINE_CONSUMPTION);
+    cp.setWindowScn(cpScn);
+    cp.setWindowOffset(-1);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StreamEventsResult result = journal.streamEvents(cp, Channels.newChannel(out), new StreamEventsArgs(10000000));
+    assertEquals(2 * (eventWindowSize + 1), result.getNumEventsStreamed());
+    checkStreamedWindows(out.toByteArray(), cpScn, eventWindowSize);
+
+    // a request that starts at the invalid event falls back
+    cp.setWindowScn(cpScn + 2 * eventWindowSize);
+    cp.setWindowOffset(-1);
+    try
+    {
+      journal.streamEvents(cp, Channels.newChannel(new ByteArrayOutputStream()), new StreamEventsArgs(10000000));
+      fail("ScnNotFoundException expected");
+    }
+    catch (ScnNotFoundException e)
+    {
+      // expected
+    }
+  }
+
+  private void checkStreamedWindows(byte[] data, long cpScn, int eventWindowSize)
+      throws InvalidEventException, InvalidConfigException
+  {
+    DbusEventBuffer readDbuf = new DbusEventBuffer(getConfig(10000000, DbusEventBuffer.Config.DEFAULT_INDIVIDUAL_BUFFER_SIZE, 100000, 10000, AllocationPolicy.HEAP_MEMORY, QueuePolicy.OVERWRITE_ON_WRITE));
+    readDbuf.start(cpScn);
+    readDbuf.readEvents(Channels.newChannel(new ByteArrayInputStream(data)));
+    DbusEventIterator iter = readDbuf.acquireIterator("testIterator");
+    long expectedScn = cpScn + eventWindowSize;
+    int numInWindow = 0;
+    boolean first = true;
+    while (iter.hasNext())
+    {
+      DbusEvent e = iter.next();
+      if (first)
+      {
+        // skip the end-of-period from start()
+        first = false;
+        continue;
+      }
+      assertEquals(expectedScn, e.sequence());
+      if (e.isEndOfPeriodMarker())
+      {
+        assertEquals(eventWindowSize, numInWindow);
+        numInWindow = 0;
+        expectedScn += eventWindowSize;
+      }
+      else
+      {
+        ++numInWindow;
+      }
+    }
+    readDbuf.releaseIterator(iter);
+  }
+
 }
@@ -0,0 +1,202 @@
+package com.linkedin.databus2.producers;
+/*
+ *
+ * Copyright 2013 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.linkedin.databus.client.consumer.DatabusConsumerEventBuffer;
+import com.linkedin.databus.client.pub.ConsumerCallbackResult;
+import com.linkedin.databus.client.pub.ServerInfo;
+import com.linkedin.databus.client.SingleSourceSCN;
+import com.linkedin.databus.core.Checkpoint;
+import com.linkedin.databus.core.DbusClientMode;
+import com.linkedin.databus.core.DbusEvent;
+import com.linkedin.databus.core.DbusEventBuffer;
+import com.linkedin.databus.core.DbusEventBufferMult;
+import com.linkedin.databus.core.DbusEventFactory;
+import com.linkedin.databus.core.DbusEventInfo;
+import com.linkedin.databus.core.DbusEventKey;
+import com.linkedin.databus.core.DbusEventV2Factory;
+import com.linkedin.databus.core.DbusOpcode;
+import com.linkedin.databus.core.StreamEventsArgs;
+import com.linkedin.databus.core.data_model.LogicalSource;
+import com.linkedin.databus.core.util.InvalidConfigException;
+import com.linkedin.databus2.core.filter.ConjunctionDbusFilter;
+import com.linkedin.databus2.core.filter.SourceDbusFilter;
+import com.linkedin.databus2.relay.config.LogicalSourceConfig;
+import com.linkedin.databus2.relay.config.PhysicalSourceStaticConfig;
+import com.linkedin.databus2.relay.util.test.DatabusRelayTestUtil;
+
+public class TestRelayEventProducer
+{
+  @Test
+  public void testUpstreamRelays() throws Exception
+  {
+    Assert.assertEquals(RelayEventProducer.parseUpstreamRelays("localhost:11140"),
+                        Arrays.asList("localhost:11140"));
+    Assert.assertEquals(RelayEventProducer.parseUpstreamRelays(" localhost:11140, localhost:11141,,localhost:11140"),
+                        Arrays.asList("localhost:11140", "localhost:11141"));
+
+    Set<ServerInfo> servers = RelayEventProducer.createServerInfo("localhost:11140,localhost:11141",
+                                                                  "com.linkedin.events.example.Person,com.linkedin.events.example.Address");
+    Assert.assertEquals(servers.size(), 2);
+    for (ServerInfo s: servers)
+    {
+      Assert.assertEquals(s.getSources().size(), 2);
+      Assert.assertTrue(s.getAddress().getPort() == 11140 || s.getAddress().getPort() == 11141);
+    }
+
+    try
+    {
+      RelayEventProducer.parseUpstreamRelays(" , ");
+      Assert.fail("InvalidConfigException expected");
+    }
+    catch (InvalidConfigException e)
+    {
+      //expected
+    }
+  }
+
+  /**
+   * Two chained physical sources of the same partition share one upstream subscription with the
+   * superset of their sources, and the events it brings in are served to downstream subscribers of
+   * different sources from the shared buffer
+   */
+  @Test
+  public void testSharedUpstreamSubscription() throws Exception
+  {
+    PhysicalSourceStaticConfig pConfig1 = createChainedConfig("localhost:11140", new short[]{2, 3},
+                                                              new String[]{"SourceA", "SourceB"});
+    PhysicalSourceStaticConfig pConfig2 = createChainedConfig("localhost:11141,localhost:11140",
+                                                              new short[]{3, 4},
+                                                              new String[]{"SourceB", "SourceC"});
+    List<PhysicalSourceStaticConfig> configs = Arrays.asList(pConfig1, pConfig2);
+    Assert.assertEquals(pConfig1.getPhysicalPartition(), pConfig2.getPhysicalPartition());
+
+    // a single subscription with the superset of the sources from any of the upstream relays
+    String subscription = RelayEventProducer.createSubscriptionString(configs);
+    Assert.assertEquals(subscription, "SourceA,SourceB,SourceC");
+    String upstreamRelays = RelayEventProducer.createUpstreamRelaysString(configs);
+    Assert.assertEquals(upstreamRelays, "localhost:11140,localhost:11141");
+    Set<ServerInfo> servers = RelayEventProducer.createServerInfo(upstreamRelays, subscription);
+    Assert.assertEquals(servers.size(), 2);
+    for (ServerInfo s: servers)
+    {
+      Assert.assertEquals(s.getSources().size(), 3);
+    }
+
+    // the partition buffer serves the sources of both physical sources
+    DbusEventBuffer.Config bufConfig = DatabusRelayTestUtil.createBufferConfig(100000, 10000, 1024);
+    bufConfig.setAllocationPolicy(DbusEventBuffer.AllocationPolicy.HEAP_MEMORY.name());
+    DbusEventBufferMult multBuf =
+        new DbusEventBufferMult(new PhysicalSourceStaticConfig[]{pConfig1, pConfig2},
+                                bufConfig.build(), new DbusEventV2Factory());
+    DbusEventBuffer buf = multBuf.getOneBuffer(pConfig1.getPhysicalPartition());
+    Assert.assertNotNull(buf);
+    Assert.assertSame(multBuf.getOneBuffer(new LogicalSource(2, "SourceA"), null), buf);
+    Assert.assertSame(multBuf.getOneBuffer(new LogicalSource(4, "SourceC"), null), buf);
+
+    // the consumer of the upstream subscription writes one window with events of all sources
+    DatabusConsumerEventBuffer upstreamConsumer = new DatabusConsumerEventBuffer(buf, null, null);
+    Assert.assertEquals(upstreamConsumer.onStartDataEventSequence(new SingleSourceSCN(-1, 10)),
+                        ConsumerCallbackResult.SUCCESS);
+    for (short srcId = 2; srcId <= 4; ++srcId)
+    {
+      for (long key = 0; key < 3; ++key)
+      {
+        Assert.assertEquals(upstreamConsumer.onDataEvent(createEvent(srcId, key), null),
+                            ConsumerCallbackResult.SUCCESS);
+      }
+    }
+    Assert.assertEquals(upstreamConsumer.onEndDataEventSequence(new SingleSourceSCN(-1, 10)),
+                        ConsumerCallbackResult.SUCCESS);
+
+    // downstream subscribers of different sources are all served from the shared buffer
+    Assert.assertEquals(streamSources(buf, 2), Arrays.asList(2, 2, 2));
+    Assert.assertEquals(streamSources(buf, 4), Arrays.asList(4, 4, 4));
+    Assert.assertEquals(streamSources(buf, 2, 3, 4), Arrays.asList(2, 2, 2, 3, 3, 3, 4, 4, 4));
+  }
+
+  private static PhysicalSourceStaticConfig createChainedConfig(String uri, short[] srcIds,
+                                                                String[] srcNames)
+      throws InvalidConfigException
+  {
+    LogicalSourceConfig[] lConfigs = new LogicalSourceConfig[srcIds.length];
+    for (int i = 0; i < srcIds.length; ++i)
+    {
+      lConfigs[i] = DatabusRelayTestUtil.createLogicalSourceConfig(srcIds[i], srcNames[i], srcNames[i],
+                                                                   "constant:1");
+    }
+    return DatabusRelayTestUtil.createPhysicalConfigBuilder((short)1, "chainedDb", uri, 100, 0, 0,
+                                                            10 * 1024, 50 * 1024, lConfigs).build();
+  }
+
+  private static DbusEvent createEvent(short srcId, long key) throws Exception
+  {
+    byte[] value = ("value" + key).getBytes(Charset.defaultCharset());
+    DbusEventInfo eventInfo = new DbusEventInfo(DbusOpcode.UPSERT, 10L, (short)1, (short)1,
+                                                System.nanoTime(), srcId,
+                                                "abcdefghijklmnop".getBytes(Charset.defaultCharset()),
+                                                value, false, true, DbusEventFactory.DBUS_EVENT_V2,
+                                                (short)1, null);
+    ByteBuffer serialized = ByteBuffer.allocate(1000).order(ByteOrder.BIG_ENDIAN);
+    DbusEventFactory.serializeEvent(new DbusEventKey(key), serialized, eventInfo);
+    return new DbusEventV2Factory().createReadOnlyDbusEventFromBuffer(serialized, 0);
+  }
+
+  /** Streams the data events of the given sources as a downstream client would get them */
+  private static List<Integer> streamSources(DbusEventBuffer buf, Integer... srcIds) throws Exception
+  {
+    ConjunctionDbusFilter filter = new ConjunctionDbusFilter();
+    filter.addFilter(new SourceDbusFilter(new HashSet<Integer>(Arrays.asList(srcIds))));
+    Checkpoint cp = new Checkpoint();
+    cp.setFlexible();
+    cp.setConsumptionMode(DbusClientMode.ONLINE_CONSUMPTION);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    buf.streamEvents(cp, Channels.newChannel(baos), new StreamEventsArgs(100000).setFilter(filter));
+
+    List<Integer> result = new ArrayList<Integer>();
+    DbusEventFactory eventFactory = buf.getEventFactory();
+    ByteBuffer bytes = ByteBuffer.wrap(baos.toByteArray()).order(eventFactory.getByteOrder());
+    int pos = 0;
+    while (pos < bytes.limit())
+    {
+      DbusEvent e = eventFactory.createReadOnlyDbusEventFromBuffer(bytes, pos);
+      if (!e.isControlMessage())
+      {
+        result.add((int)e.srcId());
+      }
+      pos += e.size();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2014 LinkedIn, Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codahale.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of non-negative {@code long} values with log-linear buckets, in the spirit
+ * of HdrHistogram.  Values below {@code 2^subBucketBits} are counted exactly; above that, every
+ * power-of-two range is split into {@code 2^(subBucketBits-1)} equal-width buckets, so the relative
+ * error of any reported value is bounded by {@code 2^-(subBucketBits-1)} (< 1.6% for the default of
+ * 7 bits).
+ *
+ * <p>Unlike {@link MergeableExponentiallyDecayingReservoir}, updates do not allocate and do not lock:
+ * each update is a handful of atomic increments on a preallocated array.  The histogram covers all
+ * values since the last {@link #reset()}; there is no time decay.  Two histograms with the same
+ * layout can be merged, which makes it suitable for per-connection or per-partition histograms that
+ * get aggregated.
+ *
+ * <p>Values above {@code highestTrackableValue} are counted in the last bucket; {@link #getMax()}
+ * still reports the true maximum.
+ */
+public class MergeableLogLinearHistogram
+{
+    public static final int DEFAULT_SUB_BUCKET_BITS = 7;
+    /** One hour in microseconds */
+    public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 3600L * 1000 * 1000;
+
+    private final long _highestTrackableValue;
+    private final int _subBucketBits;
+    private final int _subBucketCount;
+    private final int _subBucketHalfCount;
+    private final AtomicLongArray _counts;
+    private final AtomicLong _totalCount;
+    private final AtomicLong _totalSum;
+    private final AtomicLong _min;
+    private final AtomicLong _max;
+
+    public MergeableLogLinearHistogram() {
+        this(DEFAULT_HIGHEST_TRACKABLE_VALUE, DEFAULT_SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param highestTrackableValue the highest value that is tracked with the full precision
+     * @param subBucketBits         the log2 of the number of sub-buckets; determines the precision
+     */
+    public MergeableLogLinearHistogram(long highestTrackableValue, int subBucketBits) {
+        if (subBucketBits < 1 || subBucketBits > 30) {
+            throw new IllegalArgumentException("subBucketBits must be in [1, 30]: " + subBucketBits);
+        }
+        if (highestTrackableValue < 1) {
+            throw new IllegalArgumentException("invalid highestTrackableValue: " + highestTrackableValue);
+        }
+        _highestTrackableValue = highestTrackableValue;
+        _subBucketBits = subBucketBits;
+        _subBucketCount = 1 << subBucketBits;
+        _subBucketHalfCount = _subBucketCount >> 1;
+        _counts = new AtomicLongArray(bucketIndex(highestTrackableValue) + 1);
+        _totalCount = new AtomicLong(0);
+        _totalSum = new AtomicLong(0);
+        _min = new AtomicLong(Long.MAX_VALUE);
+        _max = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    /** Creates a histogram with the same layout and no values */
+    public MergeableLogLinearHistogram createEmptyCopy() {
+        return new MergeableLogLinearHistogram(_highestTrackableValue, _subBucketBits);
+    }
+
+    /** Creates a histogram with the same layout and a copy of the current values */
+    public MergeableLogLinearHistogram copy() {
+        MergeableLogLinearHistogram result = createEmptyCopy();
+        result.merge(this);
+        return result;
+    }
+
+    /**
+     * Records a value. Negative values are counted as 0.
+     */
+    public void update(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        _counts.incrementAndGet(bucketIndex(Math.min(value, _highestTrackableValue)));
+        _totalCount.incrementAndGet();
+        _totalSum.addAndGet(value);
+        updateMin(value);
+        updateMax(value);
+    }
+
+    /**
+     * Adds all values from another histogram with the same layout to this one.  The other
+     * histogram may be updated concurrently; the merge is not atomic with respect to those updates.
+     */
+    public void merge(MergeableLogLinearHistogram other) {
+        if (other._highestTrackableValue != _highestTrackableValue ||
+            other._subBucketBits != _subBucketBits) {
+            throw new IllegalArgumentException("cannot merge histograms with different layouts");
+        }
+        long otherCount = 0;
+        for (int i = 0; i < other._counts.length(); ++i) {
+            long c = other._counts.get(i);
+            if (0 != c) {
+                _counts.addAndGet(i, c);
+                otherCount += c;
+            }
+        }
+        if (0 == otherCount) {
+            return;
+        }
+        _totalCount.addAndGet(otherCount);
+        _totalSum.addAndGet(other._totalSum.get());
+        updateMin(other._min.get());
+        updateMax(other._max.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < _counts.length(); ++i) {
+            _counts.set(i, 0);
+        }
+        _totalCount.set(0);
+        _totalSum.set(0);
+        _min.set(Long.MAX_VALUE);
+        _max.set(Long.MIN_VALUE);
+    }
+
+    public long getCount() {
+        return _totalCount.get();
+    }
+
+    /** The smallest recorded value, or 0 if there are none */
+    public long getMin() {
+        long min = _min.get();
+        return Long.MAX_VALUE == min ? 0 : min;
+    }
+
+    /** The largest recorded value, or 0 if there are none */
+    public long getMax() {
+        long max = _max.get();
+        return Long.MIN_VALUE == max ? 0 : max;
+    }
+
+    public double getMean() {
+        long count = _totalCount.get();
+        return 0 == count ? 0.0 : (double)_totalSum.get() / count;
+    }
+
+    /**
+     * Returns the value at the given quantile, i.e. the highest value in the bucket that contains
+     * the quantile, capped by the largest recorded value.
+     *
+     * @param quantile  a quantile in [0.0, 1.0]
+     * @return the value or 0 if there are no values
+     */
+    public long getValueAtQuantile(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+            throw new IllegalArgumentException(quantile + " is not in [0..1]");
+        }
+        //the counts may change while we iterate; compute the total from the same pass
+        long total = 0;
+        for (int i = 0; i < _counts.length(); ++i) {
+            total += _counts.get(i);
+        }
+        if (0 == total) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long)Math.ceil(quantile * total));
+        long seen = 0;
+        int lastNonEmpty = 0;
+        for (int i = 0; i < _counts.length(); ++i) {
+            long c = _counts.get(i);
+            if (0 == c) {
+                continue;
+            }
+            lastNonEmpty = i;
+            seen += c;
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), getMax());
+            }
+        }
+        return Math.min(highestEquivalentValue(lastNonEmpty), getMax());
+    }
+
+    /** The number of buckets; the memory used by the histogram is 8 bytes per bucket */
+    public int getBucketsNum() {
+        return _counts.length();
+    }
+
+    public long getHighestTrackableValue() {
+        return _highestTrackableValue;
+    }
+
+    public int getSubBucketBits() {
+        return _subBucketBits;
+    }
+
+    int bucketIndex(long value) {
+        if (value < _subBucketCount) {
+            return (int)value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - _subBucketBits + 1;
+        //subBucket is in [_subBucketHalfCount, _subBucketCount)
+        int subBucket = (int)(value >>> shift);
+        return shift * _subBucketHalfCount + subBucket;
+    }
+
+    long lowestEquivalentValue(int index) {
+        if (index < _subBucketCount) {
+            return index;
+        }
+        int shift = index / _subBucketHalfCount - 1;
+        long subBucket = index - shift * _subBucketHalfCount;
+        return subBucket << shift;
+    }
+
+    long highestEquivalentValue(int index) {
+        if (index < _subBucketCount) {
+            return index;
+        }
+        int shift = index / _subBucketHalfCount - 1;
+        long subBucket = index - shift * _subBucketHalfCount;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    private void updateMin(long value) {
+        long cur = _min.get();
+        while (value < cur) {
+            if (_min.compareAndSet(cur, value)) {
+                break;
+            }
+            cur = _min.get();
+        }
+    }
+
+    private void updateMax(long value) {
+        long cur = _max.get();
+        while (value > cur) {
+            if (_max.compareAndSet(cur, value)) {
+                break;
+            }
+            cur = _max.get();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 LinkedIn Corp. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.codahale.metrics;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+public class TestMergeableLogLinearHistogram
+{
+  @Test
+  public void testEmptyHistogram()
+  {
+    MergeableLogLinearHistogram hist = new MergeableLogLinearHistogram();
+    assertEquals(0, hist.getCount());
+    assertEquals(0, hist.getMin());
+    assertEquals(0, hist.getMax());
+    assertEquals(0.0, hist.getMean());
+    assertEquals(0, hist.getValueAtQuantile(0.99));
+  }
+
+  @Test
+  public void testBucketBoundaries()
+  {
+    MergeableLogLinearHistogram hist = new MergeableLogLinearHistogram(1L << 40, 7);
+    int lastIndex = -1;
+    for (long v = 0; v < 100000; ++v)
+    {
+      int idx = hist.bucketIndex(v);
+      assertTrue("value " + v, idx == lastIndex || idx == lastIndex + 1);
+      assertTrue("value " + v, hist.lowestEquivalentValue(idx) <= v);
+      assertTrue("value " + v, hist.highestEquivalentValue(idx) >= v);
+      lastIndex = idx;
+    }
+    //small values are exact
+    for (int v = 0; v < 128; ++v)
+    {
+      assertEquals(v, hist.highestEquivalentValue(hist.bucketIndex(v)));
+    }
+    assertEquals(hist.getBucketsNum() - 1, hist.bucketIndex(1L << 40));
+  }
+
+  @Test
+  public void testQuantilesAccuracy()
+  {
+    MergeableLogLinearHistogram hist = new MergeableLogLinearHistogram();
+    Random rng = new Random(1);
+    int n = 100000;
+    long[] values = new long[n];
+    for (int i = 0; i < n; ++i)
+    {
+      //long-tailed distribution
+      values[i] = (long)(1000 * Math.exp(3 * rng.nextDouble())) + (0 == i % 1000 ? 1000000 : 0);
+      hist.update(values[i]);
+    }
+    Arrays.sort(values);
+
+    assertEquals(n, hist.getCount());
+    assertEquals(values[0], hist.getMin());
+    assertEquals(values[n - 1], hist.getMax());
+    for (double q: new double[]{0.5, 0.9, 0.99, 0.999})
+    {
+      long expected = values[(int)Math.ceil(q * n) - 1];
+      long actual = hist.getValueAtQuantile(q);
+      assertTrue("q=" + q + " expected=" + expected + " actual=" + actual,
+                 Math.abs(actual - expected) <= expected / 64 + 1);
+    }
+  }
+
+  @Test
+  public void testMerge()
+  {
+    MergeableLogLinearHistogram h1 = new MergeableLogLinearHistogram();
+    MergeableLogLinearHistogram h2 = h1.createEmptyCopy();
+    MergeableLogLinearHistogram all = h1.createEmptyCopy();
+    for (long v = 1; v <= 10000; ++v)
+    {
+      (0 == v % 2 ? h1 : h2).update(v);
+      all.update(v);
+    }
+
+    MergeableLogLinearHistogram aggr = h1.copy();
+    aggr.merge(h2);
+    assertEquals(all.getCount(), aggr.getCount());
+    assertEquals(all.getMin(), aggr.getMin());
+    assertEquals(all.getMax(), aggr.getMax());
+    assertEquals(all.getMean(), aggr.getMean());
+    assertEquals(all.getValueAtQuantile(0.99), aggr.getValueAtQuantile(0.99));
+    assertEquals(5000, h1.getCount());
+
+    aggr.reset();
+    assertEquals(0, aggr.getCount());
+    assertEquals(0, aggr.getMax());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testMergeDifferentLayouts()
+  {
+    new MergeableLogLinearHistogram(1000, 7).merge(new MergeableLogLinearHistogram(1000, 5));
+  }
+}